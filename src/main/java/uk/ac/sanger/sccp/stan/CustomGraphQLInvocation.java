@@ -20,31 +20,61 @@ import java.util.concurrent.CompletableFuture;
 @Primary
 public class CustomGraphQLInvocation implements GraphQLInvocation {
     public static final String API_KEY_HEADER = "STAN-APIKEY";
+    /** Header giving the SHA-256 hash of the query, so that clients can omit the text of a query sent previously */
+    public static final String QUERY_HASH_HEADER = "STAN-QUERY-HASH";
+    public static final String PERSISTED_QUERY_NOT_FOUND = "PersistedQueryNotFound";
     public static final String API_KEY_CONTEXT_KEY = "apikey", USERNAME_CONTEXT_KEY = "username";
 
     private final GraphQL graphQL;
     private final ApiKeyConfig apiKeyConfig;
+    private final GraphQLBatchLoaders batchLoaders;
+    private final GraphQLDocumentCache documentCache;
 
     @Autowired
-    public CustomGraphQLInvocation(GraphQL graphQL, ApiKeyConfig apiKeyConfig) {
+    public CustomGraphQLInvocation(GraphQL graphQL, ApiKeyConfig apiKeyConfig, GraphQLBatchLoaders batchLoaders,
+                                   GraphQLDocumentCache documentCache) {
         this.graphQL = graphQL;
         this.apiKeyConfig = apiKeyConfig;
+        this.batchLoaders = batchLoaders;
+        this.documentCache = documentCache;
     }
 
     @Override
     public CompletableFuture<ExecutionResult> invoke(GraphQLInvocationData invocationData, WebRequest request) {
+        String query = invocationData.getQuery();
+        String queryHash = request.getHeader(QUERY_HASH_HEADER);
+        if (queryHash!=null) {
+            if (query.isBlank()) {
+                query = documentCache.getPersistedQuery(queryHash);
+                if (query==null) {
+                    return errorResult(PERSISTED_QUERY_NOT_FOUND);
+                }
+            } else {
+                try {
+                    documentCache.persistQuery(queryHash, query);
+                } catch (IllegalArgumentException e) {
+                    return errorResult(e.getMessage());
+                }
+            }
+        }
         Map<String, Object> variables = invocationData.getVariables();
         Map<String, Object> contextMap = getStoreRequestContext(request, variables);
 
         ExecutionInput executionInput = ExecutionInput.newExecutionInput()
-                .query(invocationData.getQuery())
+                .query(query)
                 .operationName(invocationData.getOperationName())
                 .variables(variables)
                 .graphQLContext(contextMap)
+                .dataLoaderRegistry(batchLoaders.newRegistry())
                 .build();
         return graphQL.executeAsync(executionInput);
     }
 
+    private static CompletableFuture<ExecutionResult> errorResult(String message) {
+        GraphQLError error = GraphqlErrorBuilder.newError().message(message).build();
+        return CompletableFuture.completedFuture(ExecutionResultImpl.newExecutionResult().addError(error).build());
+    }
+
     private String getHeaderOrVariable(String name, WebRequest request, Map<String, ?> variables) {
         String value = request.getHeader(name);
         if (value!=null) {
@@ -3,8 +3,6 @@ package uk.ac.sanger.sccp.stan;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.Resource;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
 import org.springframework.security.authentication.InsufficientAuthenticationException;
@@ -14,8 +12,12 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import uk.ac.sanger.sccp.stan.model.StanFile;
 import uk.ac.sanger.sccp.stan.model.User;
+import uk.ac.sanger.sccp.stan.service.FileDownloadService;
 import uk.ac.sanger.sccp.stan.service.FileStoreService;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
 import java.net.*;
 import java.nio.charset.Charset;
 import java.util.Collection;
@@ -32,23 +34,23 @@ public class FileStoreController {
     private final Logger log = LoggerFactory.getLogger(FileStoreController.class);
 
     private final FileStoreService fileService;
+    private final FileDownloadService downloadService;
     private final AuthenticationComponent authComp;
 
     @Autowired
-    public FileStoreController(FileStoreService fileService, AuthenticationComponent authComp) {
+    public FileStoreController(FileStoreService fileService, FileDownloadService downloadService,
+                               AuthenticationComponent authComp) {
         this.fileService = fileService;
+        this.downloadService = downloadService;
         this.authComp = authComp;
     }
 
     @GetMapping("/files/{id}")
-    @ResponseBody
-    public ResponseEntity<Resource> serveFile(@PathVariable int id) {
+    public void serveFile(@PathVariable int id, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
         StanFile sf = fileService.lookUp(id);
-
-        Resource resource = fileService.loadResource(sf);
         log.debug("Serving file {}", sf.getPath());
-        return ResponseEntity.ok().header(HttpHeaders.CONTENT_DISPOSITION,
-                "attachment; filename=\"" + sf.getName() + "\"").body(resource);
+        downloadService.serve(sf, request, response);
     }
 
     @PostMapping("/files")
@@ -0,0 +1,165 @@
+package uk.ac.sanger.sccp.stan;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.*;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+import uk.ac.sanger.sccp.stan.model.StanFile;
+import uk.ac.sanger.sccp.stan.model.User;
+import uk.ac.sanger.sccp.stan.service.upload.ChunkedUpload;
+import uk.ac.sanger.sccp.stan.service.upload.ChunkedUploadService;
+
+import javax.persistence.EntityNotFoundException;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.*;
+import java.nio.charset.Charset;
+import java.util.*;
+
+import static uk.ac.sanger.sccp.utils.BasicUtils.asCollection;
+
+/**
+ * Controller for uploading files in chunks, so that an interrupted upload can be resumed.
+ * <ul>
+ *     <li>{@code POST /files/uploads} starts an upload;</li>
+ *     <li>{@code PUT /files/uploads/{id}/chunks/{index}} sends one chunk as the request body,
+ *     optionally with its SHA-256 in the {@value #CHECKSUM_HEADER} header;</li>
+ *     <li>{@code GET /files/uploads/{id}} reports which chunks have been received;</li>
+ *     <li>{@code POST /files/uploads/{id}/complete} saves the file, like {@code POST /files};</li>
+ *     <li>{@code DELETE /files/uploads/{id}} abandons the upload.</li>
+ * </ul>
+ * @author dr6
+ */
+@Controller
+public class FileUploadController {
+    private final Logger log = LoggerFactory.getLogger(FileUploadController.class);
+
+    static final String CHECKSUM_HEADER = "X-Chunk-SHA256";
+
+    private final ChunkedUploadService uploadService;
+    private final AuthenticationComponent authComp;
+
+    @Autowired
+    public FileUploadController(ChunkedUploadService uploadService, AuthenticationComponent authComp) {
+        this.uploadService = uploadService;
+        this.authComp = authComp;
+    }
+
+    @PostMapping(value = "/files/uploads", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> initiate(@RequestParam("name") String name, @RequestParam("size") long size,
+                                      @RequestParam(name = "chunkSize", required = false) Integer chunkSize,
+                                      @RequestParam("workNumber") List<String> workNumbers)
+            throws IOException, URISyntaxException {
+        User user = checkUserForUpload();
+        final Charset cs = Charset.defaultCharset();
+        workNumbers = workNumbers.stream()
+                .map(s -> URLDecoder.decode(s, cs))
+                .toList();
+        ChunkedUpload upload = uploadService.initiate(user, name, size, chunkSize, workNumbers);
+        return ResponseEntity.created(new URI("/files/uploads/" + upload.getId())).body(progress(upload, false));
+    }
+
+    @PutMapping(value = "/files/uploads/{id}/chunks/{index}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> receiveChunk(@PathVariable String id, @PathVariable int index,
+                                          @RequestHeader(name = CHECKSUM_HEADER, required = false) String checksum,
+                                          HttpServletRequest request) throws IOException {
+        User user = checkUserForUpload();
+        ChunkedUpload upload;
+        try (InputStream in = request.getInputStream()) {
+            upload = uploadService.receiveChunk(user, id, index, checksum, in);
+        }
+        return ResponseEntity.ok(progress(upload, false));
+    }
+
+    @GetMapping(value = "/files/uploads/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> getProgress(@PathVariable String id) throws IOException {
+        User user = checkUserForUpload();
+        return ResponseEntity.ok(progress(uploadService.getUpload(user, id), true));
+    }
+
+    @PostMapping("/files/uploads/{id}/complete")
+    public ResponseEntity<?> complete(@PathVariable String id) throws IOException, URISyntaxException {
+        User user = checkUserForUpload();
+        Collection<StanFile> sfs = asCollection(uploadService.complete(user, id));
+        log.info("Saved files {}", sfs);
+        StanFile firstSf = sfs.iterator().next();
+        return ResponseEntity.created(new URI(firstSf.getUrl())).build();
+    }
+
+    @DeleteMapping("/files/uploads/{id}")
+    public ResponseEntity<?> abort(@PathVariable String id) throws IOException {
+        User user = checkUserForUpload();
+        uploadService.abort(user, id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> handleBadRequest(IllegalArgumentException e) {
+        return problem(HttpStatus.BAD_REQUEST, e);
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<?> handleConflict(IllegalStateException e) {
+        return problem(HttpStatus.CONFLICT, e);
+    }
+
+    @ExceptionHandler(EntityNotFoundException.class)
+    public ResponseEntity<?> handleNotFound(EntityNotFoundException e) {
+        return problem(HttpStatus.NOT_FOUND, e);
+    }
+
+    private ResponseEntity<?> problem(HttpStatus status, Exception e) {
+        log.error("Chunked upload failed.", e);
+        return ResponseEntity.status(status).body(Map.of("problem", String.valueOf(e.getMessage())));
+    }
+
+    /**
+     * Describes the progress of an upload
+     * @param upload the upload
+     * @param listMissing should the indexes of the missing chunks be included?
+     * @return a map of information about the upload, to be serialised in the response
+     */
+    protected Map<String, ?> progress(ChunkedUpload upload, boolean listMissing) {
+        Map<String, Object> output = new LinkedHashMap<>();
+        output.put("id", upload.getId());
+        output.put("name", upload.getName());
+        output.put("size", upload.getSize());
+        output.put("chunkSize", upload.getChunkSize());
+        output.put("numChunks", upload.getNumChunks());
+        output.put("receivedChunks", upload.getChunkChecksums().size());
+        output.put("receivedBytes", upload.getReceivedBytes());
+        if (listMissing) {
+            output.put("missingChunks", upload.getMissingChunks());
+        }
+        output.put("complete", upload.isComplete());
+        return output;
+    }
+
+    protected User getUser() {
+        Authentication auth = authComp.getAuthentication();
+        if (auth != null) {
+            Object principal = auth.getPrincipal();
+            if (principal instanceof User) {
+                return (User) principal;
+            }
+        }
+        return null;
+    }
+
+    protected User checkUserForUpload() {
+        User user = getUser();
+        if (user==null) {
+            throw new AuthenticationCredentialsNotFoundException("Not logged in");
+        }
+        if (!user.hasRole(User.Role.enduser)) {
+            throw new InsufficientAuthenticationException("User "+user.getUsername()+" does not have privilege to upload files.");
+        }
+        return user;
+    }
+}
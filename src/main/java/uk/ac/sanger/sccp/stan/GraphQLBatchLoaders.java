@@ -0,0 +1,170 @@
+package uk.ac.sanger.sccp.stan;
+
+import graphql.schema.DataFetcher;
+import graphql.schema.DataFetchingEnvironment;
+import org.dataloader.*;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.*;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import static uk.ac.sanger.sccp.utils.BasicUtils.inMap;
+
+/**
+ * Batch loaders for lazily loaded entity relationships that are traversed by GraphQL queries.
+ * Instead of each entity loading its own relationship when its field is fetched,
+ * the entities needing a relationship loaded are collected and then loaded in a single query.
+ * A new {@link DataLoaderRegistry} should be created for each request.
+ * @author dr6
+ */
+@Component
+public class GraphQLBatchLoaders {
+    public static final String LABWARE_LOADER = "labwareWithSlots", SLOT_LOADER = "slotWithSamples",
+            OPERATION_LOADER = "operationWithActions", WORK_LOADER = "workWithTreatmentTypes";
+
+    private final LabwareRepo lwRepo;
+    private final SlotRepo slotRepo;
+    private final OperationRepo opRepo;
+    private final WorkRepo workRepo;
+
+    @Autowired
+    public GraphQLBatchLoaders(LabwareRepo lwRepo, SlotRepo slotRepo, OperationRepo opRepo, WorkRepo workRepo) {
+        this.lwRepo = lwRepo;
+        this.slotRepo = slotRepo;
+        this.opRepo = opRepo;
+        this.workRepo = workRepo;
+    }
+
+    /**
+     * Creates a new registry of data loaders, to be used for a single request
+     * @return a new data loader registry
+     */
+    public DataLoaderRegistry newRegistry() {
+        DataLoaderRegistry registry = new DataLoaderRegistry();
+        registry.register(LABWARE_LOADER, DataLoaderFactory.newMappedDataLoader(this::loadLabwareWithSlots));
+        registry.register(SLOT_LOADER, DataLoaderFactory.newMappedDataLoader(this::loadSlotsWithSamples));
+        registry.register(OPERATION_LOADER, DataLoaderFactory.newMappedDataLoader(this::loadOperationsWithActions));
+        registry.register(WORK_LOADER, DataLoaderFactory.newMappedDataLoader(this::loadWorksWithTreatmentTypes));
+        return registry;
+    }
+
+    /** Fetcher for the slots of labware */
+    public DataFetcher<CompletableFuture<List<Slot>>> labwareSlots() {
+        return dfe -> {
+            Labware lw = dfe.getSource();
+            if (Hibernate.isInitialized(lw.getSlots())) {
+                return CompletableFuture.completedFuture(lw.getSlots());
+            }
+            return this.<Labware>load(dfe, LABWARE_LOADER, lw.getId()).thenApply(Labware::getSlots);
+        };
+    }
+
+    /** Fetcher for the state of labware, which depends on the contents of its slots */
+    public DataFetcher<CompletableFuture<Labware.State>> labwareState() {
+        return dfe -> {
+            Labware lw = dfe.getSource();
+            if (slotsAndSamplesInitialized(lw)) {
+                return CompletableFuture.completedFuture(lw.getState());
+            }
+            return this.<Labware>load(dfe, LABWARE_LOADER, lw.getId()).thenApply(Labware::getState);
+        };
+    }
+
+    /** Fetcher for the samples in slots */
+    public DataFetcher<CompletableFuture<List<Sample>>> slotSamples() {
+        return dfe -> {
+            Slot slot = dfe.getSource();
+            if (Hibernate.isInitialized(slot.getSamples())) {
+                return CompletableFuture.completedFuture(slot.getSamples());
+            }
+            return this.<Slot>load(dfe, SLOT_LOADER, slot.getId()).thenApply(Slot::getSamples);
+        };
+    }
+
+    /** Fetcher for the actions of operations */
+    public DataFetcher<CompletableFuture<List<Action>>> operationActions() {
+        return dfe -> {
+            Operation op = dfe.getSource();
+            if (Hibernate.isInitialized(op.getActions())) {
+                return CompletableFuture.completedFuture(op.getActions());
+            }
+            return this.<Operation>load(dfe, OPERATION_LOADER, op.getId()).thenApply(Operation::getActions);
+        };
+    }
+
+    /** Fetcher for the treatment types of works */
+    public DataFetcher<CompletableFuture<Set<TreatmentType>>> workTreatmentTypes() {
+        return dfe -> {
+            Work work = dfe.getSource();
+            if (Hibernate.isInitialized(work.getTreatmentTypes())) {
+                return CompletableFuture.completedFuture(work.getTreatmentTypes());
+            }
+            return this.<Work>load(dfe, WORK_LOADER, work.getId()).thenApply(Work::getTreatmentTypes);
+        };
+    }
+
+    private <V> CompletableFuture<V> load(DataFetchingEnvironment dfe, String loaderName, Integer id) {
+        DataLoader<Integer, V> loader = dfe.getDataLoader(loaderName);
+        return loader.load(id);
+    }
+
+    /**
+     * Loads the specified labware with its slots and the samples in its slots
+     * @param labwareIds the ids of the labware
+     * @return a future map of labware id to labware
+     */
+    public CompletableFuture<Map<Integer, Labware>> loadLabwareWithSlots(Set<Integer> labwareIds) {
+        List<Labware> labware = lwRepo.findAllWithSlotsByIdIn(labwareIds);
+        List<Integer> slotIds = labware.stream()
+                .flatMap(lw -> lw.getSlots().stream())
+                .filter(slot -> !Hibernate.isInitialized(slot.getSamples()))
+                .map(Slot::getId)
+                .toList();
+        if (!slotIds.isEmpty()) {
+            slotRepo.findAllWithSamplesByIdIn(slotIds);
+        }
+        return completedMap(labware, Labware::getId);
+    }
+
+    /**
+     * Loads the specified slots with their samples
+     * @param slotIds the ids of the slots
+     * @return a future map of slot id to slot
+     */
+    public CompletableFuture<Map<Integer, Slot>> loadSlotsWithSamples(Set<Integer> slotIds) {
+        return completedMap(slotRepo.findAllWithSamplesByIdIn(slotIds), Slot::getId);
+    }
+
+    /**
+     * Loads the specified operations with their actions
+     * @param opIds the ids of the operations
+     * @return a future map of operation id to operation
+     */
+    public CompletableFuture<Map<Integer, Operation>> loadOperationsWithActions(Set<Integer> opIds) {
+        return completedMap(opRepo.findAllWithActionsByIdIn(opIds), Operation::getId);
+    }
+
+    /**
+     * Loads the specified works with their treatment types
+     * @param workIds the ids of the works
+     * @return a future map of work id to work
+     */
+    public CompletableFuture<Map<Integer, Work>> loadWorksWithTreatmentTypes(Set<Integer> workIds) {
+        return completedMap(workRepo.findAllWithTreatmentTypesByIdIn(workIds), Work::getId);
+    }
+
+    private static boolean slotsAndSamplesInitialized(Labware lw) {
+        return (Hibernate.isInitialized(lw.getSlots())
+                && lw.getSlots().stream().allMatch(slot -> Hibernate.isInitialized(slot.getSamples())));
+    }
+
+    private static <E> CompletableFuture<Map<Integer, E>> completedMap(Collection<E> items, Function<E, Integer> idFunc) {
+        Map<Integer, E> map = items.stream().collect(inMap(idFunc));
+        return CompletableFuture.completedFuture(map);
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import graphql.schema.DataFetcher;
 import graphql.schema.DataFetchingEnvironment;
+import org.hibernate.Hibernate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import uk.ac.sanger.sccp.stan.config.SessionConfig;
@@ -28,6 +29,7 @@ import uk.ac.sanger.sccp.stan.service.work.WorkSummaryService;
 import uk.ac.sanger.sccp.utils.BasicUtils;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import static java.util.stream.Collectors.toList;
@@ -94,6 +96,7 @@ public class GraphQLDataFetchers extends BaseGraphQLResource {
     final SlotCopyRecordService slotCopyRecordService;
     final CompletionService completionService;
     final OpLookupService opLookupService;
+    final ReferenceDataCache refDataCache;
 
     @Autowired
     public GraphQLDataFetchers(ObjectMapper objectMapper, AuthenticationComponent authComp, UserRepo userRepo,
@@ -122,7 +125,7 @@ public class GraphQLDataFetchers extends BaseGraphQLResource {
                                GraphService graphService, CommentRepo commentRepo,
                                AnalyserScanDataService analyserScanDataService, LabwareNoteService lwNoteService,
                                SlotCopyRecordService slotCopyRecordService, CompletionService completionService,
-                               OpLookupService opLookupService) {
+                               OpLookupService opLookupService, ReferenceDataCache refDataCache) {
         super(objectMapper, authComp, userRepo);
         this.sessionConfig = sessionConfig;
         this.versionInfo = versionInfo;
@@ -179,6 +182,7 @@ public class GraphQLDataFetchers extends BaseGraphQLResource {
         this.slotCopyRecordService = slotCopyRecordService;
         this.completionService = completionService;
         this.opLookupService = opLookupService;
+        this.refDataCache = refDataCache;
     }
 
     public DataFetcher<User> getUser() {
@@ -186,19 +190,20 @@ public class GraphQLDataFetchers extends BaseGraphQLResource {
     }
 
     public DataFetcher<Iterable<TissueType>> getTissueTypes() {
-        return allOrEnabled(tissueTypeRepo::findAll, tissueTypeRepo::findAllByEnabled);
+        return cachedAllOrEnabled(TissueType.class, tissueTypeRepo::findAll, tissueTypeRepo::findAllByEnabled,
+                tt -> Hibernate.initialize(tt.getSpatialLocations()));
     }
 
     public DataFetcher<Iterable<LabwareType>> getLabwareTypes() {
-        return allOrEnabled(labwareTypeRepo::findAll, labwareTypeRepo::findAllByEnabled);
+        return cachedAllOrEnabled(LabwareType.class, labwareTypeRepo::findAll, labwareTypeRepo::findAllByEnabled);
     }
 
     public DataFetcher<Iterable<Medium>> getMediums() {
-        return dfe -> mediumRepo.findAll();
+        return dfe -> refDataCache.get(Medium.class, null, () -> BasicUtils.asList(mediumRepo.findAll()));
     }
 
     public DataFetcher<Iterable<Species>> getSpecies() {
-        return allOrEnabled(speciesRepo::findAll, speciesRepo::findAllByEnabled);
+        return cachedAllOrEnabled(Species.class, speciesRepo::findAll, speciesRepo::findAllByEnabled);
     }
 
     public DataFetcher<Iterable<Hmdmc>> getHmdmcs() {
@@ -210,7 +215,7 @@ public class GraphQLDataFetchers extends BaseGraphQLResource {
     }
 
     public DataFetcher<Iterable<Fixative>> getFixatives() {
-        return allOrEnabled(fixativeRepo::findAll, fixativeRepo::findAllByEnabled);
+        return cachedAllOrEnabled(Fixative.class, fixativeRepo::findAll, fixativeRepo::findAllByEnabled);
     }
 
     public DataFetcher<Iterable<ProteinPanel>> getProteinPanels() {
@@ -256,7 +261,8 @@ public class GraphQLDataFetchers extends BaseGraphQLResource {
         return dfe -> {
             String category = dfe.getArgument("category");
             boolean includeDisabled = argOrFalse(dfe, "includeDisabled");
-            return commentAdminService.getComments(category, includeDisabled);
+            return refDataCache.get(Comment.class, Arrays.asList(category, includeDisabled),
+                    () -> BasicUtils.asList(commentAdminService.getComments(category, includeDisabled)));
         };
     }
 
@@ -264,16 +270,17 @@ public class GraphQLDataFetchers extends BaseGraphQLResource {
         return dfe -> {
             String category = dfe.getArgument("category");
             boolean includeDisabled = argOrFalse(dfe, "includeDisabled");
-            return equipmentAdminService.getEquipment(category, includeDisabled);
+            return refDataCache.get(Equipment.class, Arrays.asList(category, includeDisabled),
+                    () -> BasicUtils.asList(equipmentAdminService.getEquipment(category, includeDisabled)));
         };
     }
 
     public DataFetcher<Iterable<ReleaseDestination>> getReleaseDestinations() {
-        return allOrEnabled(releaseDestinationRepo::findAll, releaseDestinationRepo::findAllByEnabled);
+        return cachedAllOrEnabled(ReleaseDestination.class, releaseDestinationRepo::findAll, releaseDestinationRepo::findAllByEnabled);
     }
 
     public DataFetcher<Iterable<ReleaseRecipient>> getReleaseRecipients() {
-        return allOrEnabled(releaseRecipientRepo::findAll, releaseRecipientRepo::findAllByEnabled);
+        return cachedAllOrEnabled(ReleaseRecipient.class, releaseRecipientRepo::findAll, releaseRecipientRepo::findAllByEnabled);
     }
 
     public DataFetcher<Iterable<ReleaseFileOption>> getReleaseColumnOptions() {
@@ -294,15 +301,15 @@ public class GraphQLDataFetchers extends BaseGraphQLResource {
     }
 
     public DataFetcher<Iterable<Project>> getProjects() {
-        return allOrEnabled(projectRepo::findAll, projectRepo::findAllByEnabled);
+        return cachedAllOrEnabled(Project.class, projectRepo::findAll, projectRepo::findAllByEnabled);
     }
 
     public DataFetcher<Iterable<Program>> getPrograms() {
-        return allOrEnabled(programRepo::findAll, programRepo::findAllByEnabled);
+        return cachedAllOrEnabled(Program.class, programRepo::findAll, programRepo::findAllByEnabled);
     }
 
     public DataFetcher<Iterable<CostCode>> getCostCodes() {
-        return allOrEnabled(costCodeRepo::findAll, costCodeRepo::findAllByEnabled);
+        return cachedAllOrEnabled(CostCode.class, costCodeRepo::findAll, costCodeRepo::findAllByEnabled);
     }
 
     public DataFetcher<Iterable<DnapStudy>> getDnapStudies() {
@@ -325,18 +332,24 @@ public class GraphQLDataFetchers extends BaseGraphQLResource {
     }
 
     public DataFetcher<Iterable<SlotRegion>> getSlotRegions() {
-        return dfe -> slotRegionService.loadSlotRegions(argOrFalse(dfe, "includeDisabled"));
+        return dfe -> {
+            boolean includeDisabled = argOrFalse(dfe, "includeDisabled");
+            return refDataCache.get(SlotRegion.class, includeDisabled,
+                    () -> BasicUtils.asList(slotRegionService.loadSlotRegions(includeDisabled)));
+        };
     }
 
     public DataFetcher<Iterable<ProbePanel>> getProbePanels() {
         return dfe -> {
             ProbePanel.ProbeType type = arg(dfe, "type", ProbePanel.ProbeType.class);
             boolean includeDisabled = argOrFalse(dfe, "includeDisabled");
-            if (includeDisabled) {
-                return probePanelRepo.findAllByType(type);
-            } else {
-                return probePanelRepo.findAllByTypeAndEnabled(type, true);
-            }
+            return refDataCache.get(ProbePanel.class, Arrays.asList(type, includeDisabled), () -> {
+                if (includeDisabled) {
+                    return probePanelRepo.findAllByType(type);
+                } else {
+                    return probePanelRepo.findAllByTypeAndEnabled(type, true);
+                }
+            });
         };
     }
 
@@ -345,7 +358,7 @@ public class GraphQLDataFetchers extends BaseGraphQLResource {
     }
 
     public DataFetcher<Iterable<WorkType>> getWorkTypes() {
-        return allOrEnabled(workTypeRepo::findAll, workTypeRepo::findAllByEnabled);
+        return cachedAllOrEnabled(WorkType.class, workTypeRepo::findAll, workTypeRepo::findAllByEnabled);
     }
 
     public DataFetcher<Iterable<CellClass>> getCellClasses() {
@@ -610,7 +623,7 @@ public class GraphQLDataFetchers extends BaseGraphQLResource {
     }
 
     public DataFetcher<List<StainType>> getEnabledStainTypes() {
-        return dfe -> stainService.getEnabledStainTypes();
+        return dfe -> refDataCache.get(StainType.class, null, stainService::getEnabledStainTypes);
     }
 
     public DataFetcher<List<Comment>> getStainReagentTypes() {
@@ -676,6 +689,39 @@ public class GraphQLDataFetchers extends BaseGraphQLResource {
         };
     }
 
+    /**
+     * Like {@link #allOrEnabled}, but the results are kept in the {@link ReferenceDataCache}
+     * @param entityType the type of entity, identifying the category of data in the cache
+     * @param findAll function to find all the entities
+     * @param findByEnabled function to find entities by their enabled status
+     */
+    private <E> DataFetcher<Iterable<E>> cachedAllOrEnabled(Class<E> entityType, Supplier<? extends Iterable<E>> findAll,
+                                                            BoolObjFunction<? extends Iterable<E>> findByEnabled) {
+        return cachedAllOrEnabled(entityType, findAll, findByEnabled, null);
+    }
+
+    /**
+     * Like {@link #allOrEnabled}, but the results are kept in the {@link ReferenceDataCache}
+     * @param entityType the type of entity, identifying the category of data in the cache
+     * @param findAll function to find all the entities
+     * @param findByEnabled function to find entities by their enabled status
+     * @param prepare initialises anything in each entity that must be loaded before it is cached; may be null
+     */
+    private <E> DataFetcher<Iterable<E>> cachedAllOrEnabled(Class<E> entityType, Supplier<? extends Iterable<E>> findAll,
+                                                            BoolObjFunction<? extends Iterable<E>> findByEnabled,
+                                                            Consumer<? super E> prepare) {
+        return dfe -> {
+            boolean includeDisabled = argOrFalse(dfe, "includeDisabled");
+            return refDataCache.get(entityType, includeDisabled, () -> {
+                List<E> entities = BasicUtils.asList(includeDisabled ? findAll.get() : findByEnabled.apply(true));
+                if (prepare!=null) {
+                    entities.forEach(prepare);
+                }
+                return entities;
+            });
+        };
+    }
+
     private boolean requestsField(DataFetchingEnvironment dfe, String glob) {
        return dfe.getSelectionSet().contains(glob);
     }
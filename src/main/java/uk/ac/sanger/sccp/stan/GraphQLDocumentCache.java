@@ -0,0 +1,99 @@
+package uk.ac.sanger.sccp.stan;
+
+import com.google.common.cache.*;
+import com.google.common.hash.Hashing;
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import uk.ac.sanger.sccp.stan.config.GraphQLConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of parsed and validated GraphQL documents, keyed by query text and operation name.
+ * Documents that fail to parse or validate are not cached.
+ * <p>This also remembers query texts by their SHA-256 hashes, so that clients can send a
+ * persisted query hash in place of a query they have sent before.
+ * @author dr6
+ */
+@Component
+public class GraphQLDocumentCache implements PreparsedDocumentProvider {
+    record DocumentKey(String query, String operationName) {}
+
+    private final Cache<DocumentKey, PreparsedDocumentEntry> documents;
+    private final Cache<String, String> persistedQueries;
+
+    @Autowired
+    public GraphQLDocumentCache(GraphQLConfig config) {
+        this(config.getDocumentCacheSize(), config.getPersistedQueryCacheSize());
+    }
+
+    public GraphQLDocumentCache(int documentCacheSize, int persistedQueryCacheSize) {
+        this.documents = CacheBuilder.newBuilder()
+                .maximumSize(documentCacheSize)
+                .recordStats()
+                .build();
+        this.persistedQueries = CacheBuilder.newBuilder()
+                .maximumSize(persistedQueryCacheSize)
+                .build();
+    }
+
+    @Override
+    public PreparsedDocumentEntry getDocument(ExecutionInput executionInput,
+                                              Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidateFunction) {
+        DocumentKey key = new DocumentKey(executionInput.getQuery(), executionInput.getOperationName());
+        PreparsedDocumentEntry entry = documents.getIfPresent(key);
+        if (entry==null) {
+            entry = parseAndValidateFunction.apply(executionInput);
+            if (!entry.hasErrors()) {
+                documents.put(key, entry);
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Remembers the given query text under its hash
+     * @param hash the SHA-256 hash of the query, as a hex string
+     * @param query the query text
+     * @exception IllegalArgumentException if the hash does not match the query
+     */
+    public void persistQuery(String hash, String query) {
+        if (!sha256Hex(query).equalsIgnoreCase(hash)) {
+            throw new IllegalArgumentException("The query hash does not match the query.");
+        }
+        persistedQueries.put(hash.toLowerCase(), query);
+    }
+
+    /**
+     * Gets the query text previously persisted under the given hash
+     * @param hash the SHA-256 hash of the query, as a hex string
+     * @return the query text, or null if it is not known
+     */
+    public String getPersistedQuery(String hash) {
+        return persistedQueries.getIfPresent(hash.toLowerCase());
+    }
+
+    /** Gets the hit and miss counts for the document cache */
+    public CacheStats getStats() {
+        return documents.stats();
+    }
+
+    /** The number of documents currently cached */
+    public long getSize() {
+        return documents.size();
+    }
+
+    /** The number of persisted query texts currently remembered */
+    public long getPersistedQueryCount() {
+        return persistedQueries.size();
+    }
+
+    /** Gets the SHA-256 hash of the given query as a lower case hex string */
+    public static String sha256Hex(String query) {
+        return Hashing.sha256().hashString(query, StandardCharsets.UTF_8).toString();
+    }
+}
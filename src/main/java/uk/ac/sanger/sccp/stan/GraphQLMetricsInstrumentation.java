@@ -0,0 +1,92 @@
+package uk.ac.sanger.sccp.stan;
+
+import graphql.ExecutionResult;
+import graphql.execution.ExecutionContext;
+import graphql.execution.ExecutionStepInfo;
+import graphql.execution.instrumentation.*;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.language.OperationDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import uk.ac.sanger.sccp.stan.config.GraphQLConfig;
+
+/**
+ * Instrumentation recording how long GraphQL operations and the fields in them take to fetch,
+ * and how many SQL statements each operation runs.
+ * Fields fetched by trivial (property) data fetchers are not timed.
+ * @author dr6
+ */
+@Component
+public class GraphQLMetricsInstrumentation extends SimplePerformantInstrumentation {
+    private static final Logger log = LoggerFactory.getLogger(GraphQLMetricsInstrumentation.class);
+
+    private final StanMetrics metrics;
+    private final SqlStatementCounter sqlStatementCounter;
+    private final GraphQLConfig graphQLConfig;
+
+    @Autowired
+    public GraphQLMetricsInstrumentation(StanMetrics metrics, SqlStatementCounter sqlStatementCounter,
+                                         GraphQLConfig graphQLConfig) {
+        this.metrics = metrics;
+        this.sqlStatementCounter = sqlStatementCounter;
+        this.graphQLConfig = graphQLConfig;
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(InstrumentationExecuteOperationParameters parameters,
+                                                                         InstrumentationState state) {
+        final ExecutionContext executionContext = parameters.getExecutionContext();
+        final String operationKey = operationKey(executionContext.getOperationDefinition());
+        final Thread thread = Thread.currentThread();
+        final long startStatements = sqlStatementCounter.getCount();
+        final long start = System.nanoTime();
+        return SimpleInstrumentationContext.whenCompleted((result, throwable) -> {
+            long nanos = System.nanoTime() - start;
+            metrics.recordOperation(operationKey, nanos);
+            Long statements = null;
+            // The statement count is per thread, so it is only meaningful if the operation completed on this thread
+            if (thread==Thread.currentThread()) {
+                statements = sqlStatementCounter.getCount() - startStatements;
+                metrics.recordOperationStatements(operationKey, statements);
+            }
+            long slowQueryMs = graphQLConfig.getSlowQueryMs();
+            if (slowQueryMs > 0 && nanos >= slowQueryMs * 1_000_000L) {
+                log.warn("Slow GraphQL {} took {} ms with {} SQL statements (user: {})",
+                        operationKey, nanos / 1_000_000L, statements==null ? "unknown" : statements,
+                        executionContext.getGraphQLContext().get(CustomGraphQLInvocation.USERNAME_CONTEXT_KEY));
+            }
+        });
+    }
+
+    @Override
+    public InstrumentationContext<Object> beginFieldFetch(InstrumentationFieldFetchParameters parameters,
+                                                          InstrumentationState state) {
+        if (parameters.isTrivialDataFetcher()) {
+            return SimpleInstrumentationContext.noOp();
+        }
+        final String fieldKey = fieldKey(parameters.getExecutionStepInfo(), parameters.getField().getName());
+        final long start = System.nanoTime();
+        return SimpleInstrumentationContext.whenCompleted(
+                (value, throwable) -> metrics.recordField(fieldKey, System.nanoTime() - start)
+        );
+    }
+
+    /**
+     * The key under which an operation's metrics are recorded: its type and name, e.g. <tt>query FindLabware</tt>
+     */
+    static String operationKey(OperationDefinition opDef) {
+        String type = opDef.getOperation().name().toLowerCase();
+        String name = opDef.getName();
+        return type + " " + (name==null || name.isEmpty() ? "(anonymous)" : name);
+    }
+
+    /**
+     * The key under which a field's metrics are recorded: its parent type and name, e.g. <tt>Labware.slots</tt>
+     */
+    static String fieldKey(ExecutionStepInfo stepInfo, String fieldName) {
+        return stepInfo.getObjectType().getName() + "." + fieldName;
+    }
+}
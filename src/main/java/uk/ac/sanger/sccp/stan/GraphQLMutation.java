@@ -112,6 +112,7 @@ public class GraphQLMutation extends BaseGraphQLResource {
     final CytassistOverviewService cytassistOverviewService;
     final ProteinPanelAdminService proteinPanelAdminService;
     final TreatmentTypeService treatmentTypeService;
+    final WorkProgressService workProgressService;
 
     @Autowired
     public GraphQLMutation(ObjectMapper objectMapper, AuthenticationComponent authComp,
@@ -148,7 +149,8 @@ public class GraphQLMutation extends BaseGraphQLResource {
                            UserAdminService userAdminService, SlotCopyRecordService slotCopyRecordService,
                            TissueTypeService tissueTypeService, WorkChangeService workChangeService,
                            CellClassService cellClassService, CytassistOverviewService cytassistOverviewService,
-                           ProteinPanelAdminService proteinPanelAdminService, TreatmentTypeService treatmentTypeService) {
+                           ProteinPanelAdminService proteinPanelAdminService, TreatmentTypeService treatmentTypeService,
+                           WorkProgressService workProgressService) {
         super(objectMapper, authComp, userRepo);
         this.authService = authService;
         this.blockRegisterService = blockRegisterService;
@@ -219,6 +221,7 @@ public class GraphQLMutation extends BaseGraphQLResource {
         this.cytassistOverviewService = cytassistOverviewService;
         this.proteinPanelAdminService = proteinPanelAdminService;
         this.treatmentTypeService = treatmentTypeService;
+        this.workProgressService = workProgressService;
     }
 
     private void logRequest(String name, User user, Object request) {
@@ -1094,4 +1097,12 @@ public class GraphQLMutation extends BaseGraphQLResource {
             return true; // arbitrary return value
         };
     }
+
+    public DataFetcher<Integer> rebuildWorkProgress() {
+        return dfe -> {
+            User user = checkUser(dfe, User.Role.admin);
+            logRequest("rebuild work progress", user, null);
+            return workProgressService.rebuild();
+        };
+    }
 }
@@ -31,14 +31,22 @@ public class GraphQLProvider {
     final GraphQLDataFetchers graphQLDataFetchers;
     final GraphQLMutation graphQLMutation;
     final GraphQLStore graphQLStore;
+    final GraphQLBatchLoaders graphQLBatchLoaders;
+    final GraphQLDocumentCache graphQLDocumentCache;
+    final GraphQLMetricsInstrumentation graphQLMetricsInstrumentation;
 
     @Autowired
     public GraphQLProvider(Transactor transactor,
-                           GraphQLDataFetchers graphQLDataFetchers, GraphQLMutation graphQLMutation, GraphQLStore graphQLStore) {
+                           GraphQLDataFetchers graphQLDataFetchers, GraphQLMutation graphQLMutation, GraphQLStore graphQLStore,
+                           GraphQLBatchLoaders graphQLBatchLoaders, GraphQLDocumentCache graphQLDocumentCache,
+                           GraphQLMetricsInstrumentation graphQLMetricsInstrumentation) {
         this.transactor = transactor;
         this.graphQLDataFetchers = graphQLDataFetchers;
         this.graphQLMutation = graphQLMutation;
         this.graphQLStore = graphQLStore;
+        this.graphQLBatchLoaders = graphQLBatchLoaders;
+        this.graphQLDocumentCache = graphQLDocumentCache;
+        this.graphQLMetricsInstrumentation = graphQLMetricsInstrumentation;
     }
 
     @Bean
@@ -54,6 +62,8 @@ public class GraphQLProvider {
         this.graphQL = GraphQL.newGraphQL(graphQLSchema)
                 .mutationExecutionStrategy(new AsyncSerialExecutionStrategy(new StanExceptionHandler()))
                 .queryExecutionStrategy(new AsyncExecutionStrategy(new StanExceptionHandler()))
+                .preparsedDocumentProvider(graphQLDocumentCache)
+                .instrumentation(graphQLMetricsInstrumentation)
                 .build();
     }
 
@@ -257,6 +267,7 @@ public class GraphQLProvider {
                         .dataFetcher("saveSlotCopy", transact(graphQLMutation.saveSlotCopy()))
                         .dataFetcher("setOperationWork", transact(graphQLMutation.setOperationWork()))
                         .dataFetcher("updateCytassistOverview", graphQLMutation.updateCytassistOverview())
+                        .dataFetcher("rebuildWorkProgress", graphQLMutation.rebuildWorkProgress()) // internal transactions
 
                         .dataFetcher("addUser", transact(graphQLMutation.addUser()))
                         .dataFetcher("setUserRole", transact(graphQLMutation.setUserRole()))
@@ -269,6 +280,19 @@ public class GraphQLProvider {
                         .dataFetcher("transfer", graphQLStore.transfer())
                         .dataFetcher("setLocationCustomName", graphQLStore.setLocationCustomName())
                 )
+                .type(newTypeWiring("Labware")
+                        .dataFetcher("slots", graphQLBatchLoaders.labwareSlots())
+                        .dataFetcher("state", graphQLBatchLoaders.labwareState())
+                )
+                .type(newTypeWiring("Slot")
+                        .dataFetcher("samples", graphQLBatchLoaders.slotSamples())
+                )
+                .type(newTypeWiring("Operation")
+                        .dataFetcher("actions", graphQLBatchLoaders.operationActions())
+                )
+                .type(newTypeWiring("Work")
+                        .dataFetcher("treatmentTypes", graphQLBatchLoaders.workTreatmentTypes())
+                )
                 .scalar(GraphQLCustomTypes.ADDRESS)
                 .scalar(GraphQLCustomTypes.TIMESTAMP)
                 .scalar(GraphQLCustomTypes.DATE)
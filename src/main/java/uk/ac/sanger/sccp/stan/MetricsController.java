@@ -0,0 +1,78 @@
+package uk.ac.sanger.sccp.stan;
+
+import com.google.common.cache.CacheStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.*;
+import uk.ac.sanger.sccp.stan.service.flag.FlagFilter;
+
+import java.util.*;
+
+/**
+ * Controller for reporting performance metrics as json.
+ * @author dr6
+ */
+@Controller
+public class MetricsController {
+    private final GraphQLDocumentCache documentCache;
+    private final StanMetrics metrics;
+    private final FlagFilter flagFilter;
+
+    @Autowired
+    public MetricsController(GraphQLDocumentCache documentCache, StanMetrics metrics, FlagFilter flagFilter) {
+        this.documentCache = documentCache;
+        this.metrics = metrics;
+        this.flagFilter = flagFilter;
+    }
+
+    @RequestMapping(value="/metrics", method=RequestMethod.GET, produces="application/json")
+    @ResponseBody
+    public Map<String, Object> getMetricNames() {
+        return Map.of("names", List.of("graphql/operations", "graphql/fields", "graphql/documents", "transactions", "stages", "flagfilter"));
+    }
+
+    @RequestMapping(value="/metrics/graphql/operations", method=RequestMethod.GET, produces="application/json")
+    @ResponseBody
+    public Map<String, Map<String, Object>> getOperationMetrics() {
+        return metrics.getOperationMetrics();
+    }
+
+    @RequestMapping(value="/metrics/graphql/fields", method=RequestMethod.GET, produces="application/json")
+    @ResponseBody
+    public Map<String, Map<String, Object>> getFieldMetrics() {
+        return metrics.getFieldMetrics();
+    }
+
+    @RequestMapping(value="/metrics/transactions", method=RequestMethod.GET, produces="application/json")
+    @ResponseBody
+    public Map<String, Map<String, Object>> getTransactionMetrics() {
+        return metrics.getTransactionWaitMetrics();
+    }
+
+    @RequestMapping(value="/metrics/stages", method=RequestMethod.GET, produces="application/json")
+    @ResponseBody
+    public Map<String, Map<String, Object>> getStageMetrics() {
+        return metrics.getStageMetrics();
+    }
+
+    @RequestMapping(value="/metrics/graphql/documents", method=RequestMethod.GET, produces="application/json")
+    @ResponseBody
+    public Map<String, Object> getDocumentCacheMetrics() {
+        CacheStats stats = documentCache.getStats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("size", documentCache.getSize());
+        map.put("requests", stats.requestCount());
+        map.put("hits", stats.hitCount());
+        map.put("misses", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictions", stats.evictionCount());
+        map.put("persistedQueries", documentCache.getPersistedQueryCount());
+        return map;
+    }
+
+    @RequestMapping(value="/metrics/flagfilter", method=RequestMethod.GET, produces="application/json")
+    @ResponseBody
+    public Map<String, Object> getFlagFilterMetrics() {
+        return flagFilter.getStats();
+    }
+}
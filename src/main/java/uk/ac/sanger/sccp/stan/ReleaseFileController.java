@@ -5,8 +5,8 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.*;
 import uk.ac.sanger.sccp.stan.model.ReleaseFileOption;
 import uk.ac.sanger.sccp.stan.service.releasefile.*;
-import uk.ac.sanger.sccp.utils.tsv.TsvColumn;
-import uk.ac.sanger.sccp.utils.tsv.TsvFile;
+import uk.ac.sanger.sccp.utils.tsv.StreamingTsvFile;
+import uk.ac.sanger.sccp.utils.tsv.TableSpool;
 
 import java.util.*;
 
@@ -14,7 +14,8 @@ import static uk.ac.sanger.sccp.utils.BasicUtils.nullOrEmpty;
 import static uk.ac.sanger.sccp.utils.BasicUtils.repr;
 
 /**
- * Controller for delivering release files (tsv).
+ * Controller for delivering release files (tsv or xlsx).
+ * The entries are loaded in chunks and spooled before the file is written.
  * @author dr6
  */
 @Controller
@@ -28,13 +29,12 @@ public class ReleaseFileController {
 
     @RequestMapping(value="/release", method = RequestMethod.GET, produces = "text/tsv")
     @ResponseBody
-    public TsvFile<ReleaseEntry> getReleaseFile(@RequestParam(name="id") List<Integer> ids,
-                                                @RequestParam(name="groups", required=false) List<String> groupNames,
-                                                @RequestParam(name="type", required=false) String fileType) {
+    public StreamingTsvFile<TableSpool.Row> getReleaseFile(@RequestParam(name="id") List<Integer> ids,
+                                                           @RequestParam(name="groups", required=false) List<String> groupNames,
+                                                           @RequestParam(name="type", required=false) String fileType) {
         final String filename = filenameForType(fileType);
-        ReleaseFileContent rfc = releaseFileService.getReleaseFileContent(ids, parseOptions(groupNames));
-        List<? extends TsvColumn<ReleaseEntry>> columns = releaseFileService.computeColumns(rfc);
-        return new TsvFile<>(filename, rfc.getEntries(), columns);
+        ReleaseFileStream rfs = releaseFileService.streamReleaseFileContent(ids, parseOptions(groupNames));
+        return new StreamingTsvFile<>(filename, rfs.columns(), rfs.rows());
     }
 
     /**
@@ -0,0 +1,26 @@
+package uk.ac.sanger.sccp.stan;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the SQL statements prepared by Hibernate on each thread.
+ * The count for a thread only increases, so the number of statements run for some piece of work
+ * is the difference between the counts before and after it, read on the same thread.
+ * @author dr6
+ */
+@Component
+public class SqlStatementCounter implements StatementInspector {
+    private final ThreadLocal<long[]> counts = ThreadLocal.withInitial(() -> new long[1]);
+
+    @Override
+    public String inspect(String sql) {
+        ++counts.get()[0];
+        return sql;
+    }
+
+    /** The number of statements prepared on the current thread so far */
+    public long getCount() {
+        return counts.get()[0];
+    }
+}
@@ -0,0 +1,156 @@
+package uk.ac.sanger.sccp.stan;
+
+import org.springframework.stereotype.Component;
+import uk.ac.sanger.sccp.utils.LatencyHistogram;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Timings collected from GraphQL requests, transactions and loading stages, kept in memory since the application started.
+ * Some names (such as GraphQL operation names) are chosen by clients, so each kind of metric records at most
+ * a fixed number of distinct names; anything recorded under a new name after that is counted as {@link #OTHER}.
+ * @author dr6
+ */
+@Component
+public class StanMetrics {
+    /** The name under which metrics are recorded once the limit on distinct names is reached */
+    public static final String OTHER = "(other)";
+    static final int DEFAULT_MAX_NAMES = 500;
+
+    private final int maxNames;
+    private final Map<String, LatencyHistogram> fieldTimes = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> operationTimes = new ConcurrentHashMap<>();
+    private final Map<String, CountStats> operationStatements = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> transactionWaits = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> stageTimes = new ConcurrentHashMap<>();
+
+    public StanMetrics() {
+        this(DEFAULT_MAX_NAMES);
+    }
+
+    StanMetrics(int maxNames) {
+        this.maxNames = maxNames;
+    }
+
+    /**
+     * Records the time taken to fetch a field
+     * @param field the field, as <tt>Type.field</tt>
+     * @param nanos the time taken in nanoseconds
+     */
+    public void recordField(String field, long nanos) {
+        stat(fieldTimes, field, LatencyHistogram::new).record(nanos);
+    }
+
+    /**
+     * Records the time taken to execute an operation
+     * @param operation the operation type and name
+     * @param nanos the time taken in nanoseconds
+     */
+    public void recordOperation(String operation, long nanos) {
+        stat(operationTimes, operation, LatencyHistogram::new).record(nanos);
+    }
+
+    /**
+     * Records the number of SQL statements run by an operation.
+     * The time taken by the operation should be recorded first, so that the statements are counted
+     * under the same name as its time.
+     * @param operation the operation type and name
+     * @param statements the number of statements
+     */
+    public void recordOperationStatements(String operation, long statements) {
+        String key = (operationTimes.containsKey(operation) ? operation : OTHER);
+        stat(operationStatements, key, CountStats::new).record(statements);
+    }
+
+    /**
+     * Records the time spent waiting to begin (or join) a transaction
+     * @param transactionName the name of the transaction
+     * @param nanos the time waited in nanoseconds
+     */
+    public void recordTransactionWait(String transactionName, long nanos) {
+        stat(transactionWaits, transactionName, LatencyHistogram::new).record(nanos);
+    }
+
+    /**
+     * Records the time taken by a stage of loading some data
+     * @param stage the name of the stage, prefixed by what is being loaded
+     * @param nanos the time taken in nanoseconds
+     */
+    public void recordStage(String stage, long nanos) {
+        stat(stageTimes, stage, LatencyHistogram::new).record(nanos);
+    }
+
+    /** Field timings, keyed by <tt>Type.field</tt> */
+    public Map<String, Map<String, Object>> getFieldMetrics() {
+        return describe(fieldTimes);
+    }
+
+    /** Operation timings and SQL statement counts, keyed by operation type and name */
+    public Map<String, Map<String, Object>> getOperationMetrics() {
+        Map<String, Map<String, Object>> map = describe(operationTimes);
+        map.forEach((name, values) -> {
+            CountStats statements = operationStatements.get(name);
+            if (statements!=null) {
+                values.put("sqlStatements", statements.toMap());
+            }
+        });
+        return map;
+    }
+
+    /** Transaction wait timings, keyed by transaction name */
+    public Map<String, Map<String, Object>> getTransactionWaitMetrics() {
+        return describe(transactionWaits);
+    }
+
+    /** Loading stage timings, keyed by stage name */
+    public Map<String, Map<String, Object>> getStageMetrics() {
+        return describe(stageTimes);
+    }
+
+    /**
+     * Gets the stat recorded under the given name, creating it if necessary.
+     * If the map already holds the maximum number of names, a new name is replaced with {@link #OTHER}.
+     */
+    private <V> V stat(Map<String, V> map, String name, Supplier<V> creator) {
+        V value = map.get(name);
+        if (value!=null) {
+            return value;
+        }
+        String key = (map.size() < maxNames ? name : OTHER);
+        return map.computeIfAbsent(key, k -> creator.get());
+    }
+
+    private static Map<String, Map<String, Object>> describe(Map<String, LatencyHistogram> histograms) {
+        Map<String, Map<String, Object>> map = new TreeMap<>();
+        histograms.forEach((name, histogram) -> map.put(name, histogram.toMap()));
+        return map;
+    }
+
+    /** Count, total and maximum of some recorded number */
+    static class CountStats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long value) {
+            count.increment();
+            total.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        Map<String, Object> toMap() {
+            long n = count.sum();
+            long sum = total.sum();
+            Map<String, Object> map = new LinkedHashMap<>(4);
+            map.put("count", n);
+            map.put("total", sum);
+            map.put("mean", n==0 ? 0.0 : (double) sum / n);
+            map.put("max", max.get());
+            return map;
+        }
+    }
+}
@@ -16,66 +16,86 @@ import java.util.function.Supplier;
 @Component
 public class Transactor {
     private final PlatformTransactionManager platformTransactionManager;
+    private final StanMetrics metrics;
 
     @Autowired
-    public Transactor(PlatformTransactionManager platformTransactionManager) {
+    public Transactor(PlatformTransactionManager platformTransactionManager, StanMetrics metrics) {
         this.platformTransactionManager = platformTransactionManager;
+        this.metrics = metrics;
     }
 
     public <T> DataFetcher<T> dataFetcher(String transactionName, DataFetcher<T> dataFetcher) {
-        return new TransactionDataFetcher<>(platformTransactionManager, transactionName, dataFetcher);
+        return new TransactionDataFetcher<>(this, transactionName, dataFetcher);
     }
 
     public <T> Supplier<T> supplier(String transactionName, Supplier<T> supplier) {
-        return new TransactingSupplier<>(platformTransactionManager, transactionName, supplier);
+        return new TransactingSupplier<>(this, transactionName, supplier);
     }
 
     public <T> T transact(String transactionName, Supplier<T> supplier) {
-        return transactSupplier(platformTransactionManager, transactionName, supplier);
+        return transactSupplier(transactionName, false, supplier);
+    }
+
+    /**
+     * Runs the supplier in a new transaction, which commits independently of any transaction already in progress.
+     * Any transaction in progress is suspended until the new one completes.
+     */
+    public <T> T transactNew(String transactionName, Supplier<T> supplier) {
+        return transactSupplier(transactionName, TransactionDefinition.PROPAGATION_REQUIRES_NEW, false, supplier);
+    }
+
+    /**
+     * Runs the supplier in a read-only transaction.
+     * If there is already a transaction in progress, the supplier joins it.
+     */
+    public <T> T transactReadOnly(String transactionName, Supplier<T> supplier) {
+        return transactSupplier(transactionName, true, supplier);
     }
 
     private static class TransactingSupplier<T> implements Supplier<T> {
-        private final PlatformTransactionManager platformTransactionManager;
+        private final Transactor transactor;
         private final String transactionName;
         private final Supplier<T> supplier;
 
-        public TransactingSupplier(PlatformTransactionManager platformTransactionManager,
-                                   String transactionName, Supplier<T> supplier) {
-            this.platformTransactionManager = platformTransactionManager;
+        public TransactingSupplier(Transactor transactor, String transactionName, Supplier<T> supplier) {
+            this.transactor = transactor;
             this.transactionName = transactionName;
             this.supplier = supplier;
         }
 
         @Override
         public T get() {
-            return transactSupplier(platformTransactionManager, transactionName, supplier);
+            return transactor.transactSupplier(transactionName, false, supplier);
         }
     }
 
     private static class TransactionDataFetcher<T> implements DataFetcher<T> {
-        private final PlatformTransactionManager platformTransactionManager;
+        private final Transactor transactor;
         private final String transactionName;
         private final DataFetcher<T> dataFetcher;
 
-        private TransactionDataFetcher(PlatformTransactionManager platformTransactionManager, String transactionName,
-                                       DataFetcher<T> dataFetcher) {
-            this.platformTransactionManager = platformTransactionManager;
+        private TransactionDataFetcher(Transactor transactor, String transactionName, DataFetcher<T> dataFetcher) {
+            this.transactor = transactor;
             this.transactionName = transactionName;
             this.dataFetcher = dataFetcher;
         }
 
         @Override
         public T get(DataFetchingEnvironment dfe) throws Exception {
-            return transactDataFetcher(platformTransactionManager, transactionName, dataFetcher, dfe);
+            return transactor.transactDataFetcher(transactionName, dataFetcher, dfe);
         }
     }
 
-    private static <T> T transactSupplier(PlatformTransactionManager platformTransactionManager,
-                                  String transactionName, Supplier<T> supplier) {
+    private <T> T transactSupplier(String transactionName, boolean readOnly, Supplier<T> supplier) {
+        return transactSupplier(transactionName, TransactionDefinition.PROPAGATION_REQUIRED, readOnly, supplier);
+    }
+
+    private <T> T transactSupplier(String transactionName, int propagation, boolean readOnly, Supplier<T> supplier) {
         DefaultTransactionDefinition transactionDefinition = new DefaultTransactionDefinition();
         transactionDefinition.setName(transactionName);
-        transactionDefinition.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
-        TransactionStatus status = platformTransactionManager.getTransaction(transactionDefinition);
+        transactionDefinition.setPropagationBehavior(propagation);
+        transactionDefinition.setReadOnly(readOnly);
+        TransactionStatus status = getTransaction(transactionDefinition);
         boolean success = false;
         try {
             T value = supplier.get();
@@ -90,13 +110,12 @@ public class Transactor {
         }
     }
 
-    private static <T> T transactDataFetcher(PlatformTransactionManager platformTransactionManager,
-                                             String transactionName, DataFetcher<T> dataFetcher, DataFetchingEnvironment dfe)
+    private <T> T transactDataFetcher(String transactionName, DataFetcher<T> dataFetcher, DataFetchingEnvironment dfe)
             throws Exception {
         DefaultTransactionDefinition transactionDefinition = new DefaultTransactionDefinition();
         transactionDefinition.setName(transactionName);
         transactionDefinition.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
-        TransactionStatus status = platformTransactionManager.getTransaction(transactionDefinition);
+        TransactionStatus status = getTransaction(transactionDefinition);
         boolean success = false;
         try {
             T value = dataFetcher.get(dfe);
@@ -110,4 +129,15 @@ public class Transactor {
             }
         }
     }
+
+    /**
+     * Begins or joins a transaction, recording how long it took.
+     * Beginning a new transaction includes waiting for a database connection.
+     */
+    private TransactionStatus getTransaction(DefaultTransactionDefinition transactionDefinition) {
+        long start = System.nanoTime();
+        TransactionStatus status = platformTransactionManager.getTransaction(transactionDefinition);
+        metrics.recordTransactionWait(transactionDefinition.getName(), System.nanoTime() - start);
+        return status;
+    }
 }
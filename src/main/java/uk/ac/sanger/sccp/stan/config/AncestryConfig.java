@@ -0,0 +1,33 @@
+package uk.ac.sanger.sccp.stan.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser;
+
+/**
+ * Config controlling how ancestry and posterity are looked up
+ * @author dr6
+ */
+@Configuration
+public class AncestryConfig {
+    @Value("${stan.ancestry.mode:ITERATIVE}")
+    Ancestoriser.Mode mode;
+    @Value("${stan.lineage.record:false}")
+    boolean recordLineage;
+
+    /** Gets the mode the ancestoriser should use to look up ancestry and posterity. */
+    public Ancestoriser.Mode getMode() {
+        return this.mode;
+    }
+
+    /**
+     * Should the slot-sample lineage be recorded as operations are created?
+     * Recording costs extra statements for every operation, so it is only done when it is asked for,
+     * or when the ancestoriser needs the lineage table.
+     * Every instance writing to the same database should have the same setting, otherwise the table
+     * will have gaps until it is backfilled again.
+     */
+    public boolean isRecordLineage() {
+        return (this.recordLineage || this.mode==Ancestoriser.Mode.CLOSURE);
+    }
+}
@@ -0,0 +1,29 @@
+package uk.ac.sanger.sccp.stan.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Config controlling how barcode seeds are reserved
+ * @author dr6
+ */
+@Configuration
+public class BarcodeConfig {
+    @Value("${stan.barcode.block_size:20}")
+    int blockSize;
+    @Value("${stan.barcode.reservation_lease_minutes:60}")
+    int leaseMinutes;
+
+    /** The number of barcode seeds each instance of the application reserves at a time */
+    public int getBlockSize() {
+        return this.blockSize;
+    }
+
+    /**
+     * How long (in minutes) a reservation of barcode seeds lasts.
+     * Reserved seeds that have not been used by then may be reserved again, e.g. after a restart.
+     */
+    public int getLeaseMinutes() {
+        return this.leaseMinutes;
+    }
+}
@@ -0,0 +1,61 @@
+package uk.ac.sanger.sccp.stan.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Config controlling how labware flags are looked up
+ * @author dr6
+ */
+@Configuration
+public class FlagLookupConfig {
+    @Value("${stan.flag.lookup.effective:false}")
+    boolean useEffectiveFlags;
+    @Value("${stan.flag.filter.enabled:false}")
+    boolean filterEnabled;
+    @Value("${stan.flag.filter.expected:200000}")
+    int filterExpectedLabware;
+    @Value("${stan.flag.filter.fpp:0.01}")
+    double filterFpp;
+    @Value("${stan.flag.filter.poll_ms:1000}")
+    long filterPollMs;
+
+    /**
+     * Should flags be looked up in the effective flags table, rather than by following the ancestry of the labware?
+     * The effective flags table is only complete once it has been backfilled.
+     * New operations only pass on flags in the table while this is set, so the table must be backfilled
+     * again (see {@code stan.flag.effective.backfill.schedule}) when this is switched on.
+     */
+    public boolean isUseEffectiveFlags() {
+        return this.useEffectiveFlags;
+    }
+
+    /**
+     * Should the in-memory filter of possibly flagged labware be used to skip flag lookups
+     * for labware that is definitely not flagged?
+     * Each instance of the application has its own filter, and reloads it when it sees that another
+     * instance has recorded a change to the flagged labware.
+     */
+    public boolean isFilterEnabled() {
+        return this.filterEnabled;
+    }
+
+    /** The number of flagged labware the filter is sized for */
+    public int getFilterExpectedLabware() {
+        return this.filterExpectedLabware;
+    }
+
+    /** The false positive probability the filter aims for when it holds the expected number of labware */
+    public double getFilterFpp() {
+        return this.filterFpp;
+    }
+
+    /**
+     * How often (in milliseconds) the shared version of the flag filter is checked.
+     * Labware flagged by another instance of the application may be missed by this instance's filter
+     * for up to this long.
+     */
+    public long getFilterPollMs() {
+        return this.filterPollMs;
+    }
+}
@@ -0,0 +1,33 @@
+package uk.ac.sanger.sccp.stan.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Config controlling how GraphQL requests are executed
+ * @author dr6
+ */
+@Configuration
+public class GraphQLConfig {
+    @Value("${stan.graphql.document_cache_size:500}")
+    int documentCacheSize;
+    @Value("${stan.graphql.persisted_query_cache_size:1000}")
+    int persistedQueryCacheSize;
+    @Value("${stan.graphql.slow_query_ms:0}")
+    long slowQueryMs;
+
+    /** The maximum number of parsed and validated query documents to keep. Zero disables the cache. */
+    public int getDocumentCacheSize() {
+        return this.documentCacheSize;
+    }
+
+    /** The maximum number of persisted query texts to remember by their hashes. */
+    public int getPersistedQueryCacheSize() {
+        return this.persistedQueryCacheSize;
+    }
+
+    /** Operations taking at least this many milliseconds are logged. Zero disables the slow query log. */
+    public long getSlowQueryMs() {
+        return this.slowQueryMs;
+    }
+}
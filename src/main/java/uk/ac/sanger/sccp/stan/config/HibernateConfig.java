@@ -0,0 +1,160 @@
+package uk.ac.sanger.sccp.stan.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.ehcache.config.CacheConfiguration;
+import org.ehcache.config.builders.*;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uk.ac.sanger.sccp.stan.SqlStatementCounter;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Adds Stan's own components to the Hibernate configuration
+ * @author dr6
+ */
+@Configuration
+public class HibernateConfig {
+    /** More than the number of tables, so no table's update timestamp is ever evicted */
+    static final long TIMESTAMPS_REGION_SIZE = 10_000;
+
+    @Value("${stan.hibernate.cache.enabled:true}")
+    boolean secondLevelCacheEnabled;
+    @Value("${stan.hibernate.cache.query_cache_size:1000}")
+    long queryCacheSize;
+    @Value("${stan.hibernate.cache.region_size:1000}")
+    long regionSize;
+    @Value("${stan.hibernate.cache.ttl_seconds:300}")
+    long cacheTtlSeconds;
+    @Value("${stan.hibernate.jdbc_batch_size:50}")
+    int jdbcBatchSize;
+
+    @Bean
+    public HibernatePropertiesCustomizer statementInspectorCustomizer(SqlStatementCounter sqlStatementCounter) {
+        return props -> props.put(AvailableSettings.STATEMENT_INSPECTOR, sqlStatementCounter);
+    }
+
+    /**
+     * Groups inserts and updates into JDBC batches.
+     * Batching only applies to entities whose ids are not generated by the database on insert,
+     * such as those using the pooled table generator.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer jdbcBatchingCustomizer() {
+        return props -> {
+            props.put(AvailableSettings.STATEMENT_BATCH_SIZE, jdbcBatchSize);
+            props.put(AvailableSettings.ORDER_INSERTS, true);
+            props.put(AvailableSettings.ORDER_UPDATES, true);
+            props.put(AvailableSettings.BATCH_VERSIONED_DATA, true);
+        };
+    }
+
+    /**
+     * Tells the MySQL driver to rewrite batched inserts as multi-row inserts, which is what makes
+     * JDBC batching worthwhile. It is set on the connection pool's data source so that it applies
+     * in every environment, whatever datasource url is configured.
+     */
+    @Bean
+    public static BeanPostProcessor rewriteBatchedStatementsPostProcessor(
+            @Value("${stan.jdbc.rewrite_batched_statements:true}") boolean rewriteBatchedStatements) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (rewriteBatchedStatements && bean instanceof HikariDataSource ds
+                        && !ds.getDataSourceProperties().containsKey("rewriteBatchedStatements")) {
+                    ds.addDataSourceProperty("rewriteBatchedStatements", "true");
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Enables the second-level cache and query cache, used for the entities annotated with
+     * {@link org.hibernate.annotations.Cache @Cache} and for queries marked as cacheable.
+     * Each instance of the application has its own cache, so entries expire after a while in case another
+     * instance has changed them; they are also evicted when the shared reference data versions change
+     * (see {@link uk.ac.sanger.sccp.stan.service.ReferenceDataCache ReferenceDataCache}).
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(CacheManager hibernateCacheManager) {
+        return props -> {
+            props.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, secondLevelCacheEnabled);
+            props.put(AvailableSettings.USE_QUERY_CACHE, secondLevelCacheEnabled);
+            if (secondLevelCacheEnabled) {
+                props.put(AvailableSettings.CACHE_REGION_FACTORY, new BoundedRegionFactory(regionSize, cacheTtl()));
+                props.put(ConfigSettings.CACHE_MANAGER, hibernateCacheManager);
+            }
+        };
+    }
+
+    /**
+     * The cache manager holding Hibernate's cache regions.
+     * The entity regions are created on demand by {@link BoundedRegionFactory}.
+     * The query results region holds a result for every distinct name looked up, and expires like the entity regions.
+     * The update timestamps region holds an entry per table, and must not expire, since a missing timestamp
+     * would let out-of-date query results be used.
+     * Each application context gets its own cache manager, so closing one context does not affect another.
+     */
+    @Bean(destroyMethod = "close")
+    public CacheManager hibernateCacheManager() {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        org.ehcache.config.Configuration config = ConfigurationBuilder.newConfigurationBuilder()
+                .withCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                        expiringRegion(queryCacheSize, cacheTtl()))
+                .withCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                        CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                                ResourcePoolsBuilder.heap(TIMESTAMPS_REGION_SIZE)))
+                .build();
+        return provider.getCacheManager(URI.create("stan:hibernate:"+UUID.randomUUID()), config);
+    }
+
+    private Duration cacheTtl() {
+        return Duration.ofSeconds(cacheTtlSeconds);
+    }
+
+    /**
+     * The configuration of a cache region holding at most the given number of entries,
+     * each expiring the given time after it was added
+     */
+    static CacheConfiguration<Object, Object> expiringRegion(long size, Duration ttl) {
+        return CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                        ResourcePoolsBuilder.heap(size))
+                .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(ttl))
+                .build();
+    }
+
+    /**
+     * Region factory that creates each entity and collection region bounded in size,
+     * with its entries expiring after the given time.
+     */
+    static class BoundedRegionFactory extends JCacheRegionFactory {
+        private final long regionSize;
+        private final Duration ttl;
+
+        BoundedRegionFactory(long regionSize, Duration ttl) {
+            this.regionSize = regionSize;
+            this.ttl = ttl;
+        }
+
+        @Override
+        protected Cache<Object, Object> createCache(String regionName) {
+            return getCacheManager().createCache(regionName,
+                    Eh107Configuration.fromEhcacheCacheConfiguration(expiringRegion(regionSize, ttl)));
+        }
+    }
+}
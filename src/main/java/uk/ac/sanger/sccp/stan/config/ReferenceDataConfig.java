@@ -0,0 +1,29 @@
+package uk.ac.sanger.sccp.stan.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Config controlling the cache of reference data (tissue types, fixatives, etc.)
+ * @author dr6
+ */
+@Configuration
+public class ReferenceDataConfig {
+    @Value("${stan.refdata.cache.enabled:true}")
+    boolean cacheEnabled;
+    @Value("${stan.refdata.cache.poll_ms:10000}")
+    long pollMs;
+
+    /** Whether reference data is cached. If not, it is loaded from the database every time it is requested. */
+    public boolean isCacheEnabled() {
+        return this.cacheEnabled;
+    }
+
+    /**
+     * How often (in milliseconds) the shared reference data versions are checked,
+     * so that changes made by other instances of the application are noticed.
+     */
+    public long getPollMs() {
+        return this.pollMs;
+    }
+}
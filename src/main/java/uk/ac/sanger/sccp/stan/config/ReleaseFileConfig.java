@@ -0,0 +1,33 @@
+package uk.ac.sanger.sccp.stan.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uk.ac.sanger.sccp.stan.service.load.LoaderExecutor;
+
+/**
+ * Config controlling how release files are loaded
+ * @author dr6
+ */
+@Configuration
+public class ReleaseFileConfig {
+    @Value("${stan.releasefile.loader.threads:0}")
+    int loaderThreads;
+
+    /**
+     * Gets the number of threads used to run independent release file loading stages concurrently.
+     * Each thread uses its own database connection.
+     * Zero means the stages are run one after another on the requesting thread.
+     */
+    public int getLoaderThreads() {
+        return this.loaderThreads;
+    }
+
+    /**
+     * The pool of threads used to run release file loading stages, shut down with the application
+     */
+    @Bean(destroyMethod="shutdown")
+    public LoaderExecutor releaseFileLoaderExecutor() {
+        return new LoaderExecutor(loaderThreads, "release-loader-");
+    }
+}
@@ -13,6 +13,12 @@ public class StanFileConfig {
     String root;
     @Value("${stan.store.directory}")
     String dir;
+    @Value("${stan.store.upload.chunk-size:8388608}")
+    int uploadChunkSize;
+    @Value("${stan.store.upload.max-chunk-size:67108864}")
+    int uploadMaxChunkSize;
+    @Value("${stan.store.upload.expiry-hours:48}")
+    int uploadExpiryHours;
 
     public String getRoot() {
         return this.root;
@@ -21,4 +27,19 @@ public class StanFileConfig {
     public String getDir() {
         return this.dir;
     }
+
+    /** The chunk size used for a chunked upload if the client does not ask for one */
+    public int getUploadChunkSize() {
+        return this.uploadChunkSize;
+    }
+
+    /** The largest chunk size a client may ask for in a chunked upload */
+    public int getUploadMaxChunkSize() {
+        return this.uploadMaxChunkSize;
+    }
+
+    /** How long an unfinished chunked upload is kept after its last chunk is received */
+    public int getUploadExpiryHours() {
+        return this.uploadExpiryHours;
+    }
 }
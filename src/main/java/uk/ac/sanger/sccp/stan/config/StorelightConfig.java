@@ -13,6 +13,16 @@ public class StorelightConfig {
     String host;
     @Value("${storelight.apikey}")
     String apiKey;
+    @Value("${storelight.timeout:10000}")
+    int timeout;
+    @Value("${storelight.connect-timeout:2000}")
+    int connectTimeout;
+    @Value("${storelight.threads:4}")
+    int threads;
+    @Value("${storelight.max-requests:16}")
+    int maxRequests;
+    @Value("${storelight.http2:true}")
+    boolean http2;
 
     public String getHost() {
         return this.host;
@@ -21,4 +31,29 @@ public class StorelightConfig {
     public String getApiKey() {
         return this.apiKey;
     }
+
+    /** The timeout for each request to storelight, in milliseconds */
+    public int getTimeout() {
+        return this.timeout;
+    }
+
+    /** The timeout for connecting to storelight, in milliseconds */
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /** The number of threads handling asynchronous responses from storelight */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /** The most requests sent to storelight at once (and so the most connections open to it) */
+    public int getMaxRequests() {
+        return this.maxRequests;
+    }
+
+    /** Should HTTP/2 be used when storelight supports it? */
+    public boolean isHttp2() {
+        return this.http2;
+    }
 }
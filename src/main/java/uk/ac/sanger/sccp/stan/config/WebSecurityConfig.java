@@ -23,6 +23,7 @@ public class WebSecurityConfig extends WebSecurityConfigurerAdapter {
         http.authorizeRequests()
                 .antMatchers("/graphql").permitAll()
                 .antMatchers("/graphiql").permitAll()
+                .antMatchers("/metrics", "/metrics/**").authenticated()
             .and()
                 .csrf().disable();
     }
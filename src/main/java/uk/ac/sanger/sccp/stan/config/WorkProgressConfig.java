@@ -0,0 +1,24 @@
+package uk.ac.sanger.sccp.stan.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Config controlling how work progress is looked up
+ * @author dr6
+ */
+@Configuration
+public class WorkProgressConfig {
+    @Value("${stan.workprogress.stored:false}")
+    boolean readStored;
+
+    /**
+     * Should the work progress query read the stored progress table?
+     * The table is always kept up to date as operations and releases are recorded, but it only covers
+     * works whose earlier history has been rebuilt (on a schedule, or by the rebuild mutation).
+     * Until then, progress is worked out from the operations of each work when it is requested.
+     */
+    public boolean isReadStored() {
+        return this.readStored;
+    }
+}
@@ -1,5 +1,8 @@
 package uk.ac.sanger.sccp.stan.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.util.Objects;
 
@@ -8,6 +11,8 @@ import java.util.Objects;
  * @author dr6
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class BioState {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
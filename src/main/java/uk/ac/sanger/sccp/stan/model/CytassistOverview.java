@@ -4,6 +4,8 @@ import uk.ac.sanger.sccp.utils.BasicUtils;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author dr6
@@ -13,6 +15,7 @@ public class CytassistOverview {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
+    private Integer cytassistOperationId;
     private String workNumber;
     private Integer sampleId;
     private String section;
@@ -59,6 +62,14 @@ public class CytassistOverview {
         this.id = id;
     }
 
+    public Integer getCytassistOperationId() {
+        return this.cytassistOperationId;
+    }
+
+    public void setCytassistOperationId(Integer cytassistOperationId) {
+        this.cytassistOperationId = cytassistOperationId;
+    }
+
     public String getWorkNumber() {
         return this.workNumber;
     }
@@ -355,10 +366,26 @@ public class CytassistOverview {
         this.users = users;
     }
 
+    /**
+     * The values of every field except the id, for comparing rows compiled at different times
+     * @return a list of field values, which may include nulls
+     */
+    public List<Object> contentValues() {
+        return Arrays.asList(cytassistOperationId, workNumber, sampleId, section, sourceBarcode, sourceSlotAddress,
+                sourceLabwareType, sourceExternalName, sourceLabwareCreated, stainType, stainPerformed, imagePerformed,
+                probePanels, probeHybStart, probeHybEnd, cytassistBarcode, cytassistLabwareType, cytassistSlotAddress,
+                cytassistLp, cytassistPerformed, tissueCoverage, qpcrResult, amplificationCq, amplificationCycles,
+                dualIndexPlateType, dualIndexPlateWell, visiumConcentrationType, visiumConcentrationValue,
+                visiumConcentrationAverageSize, visiumConcentrationMainPeakSize, visiumConcentrationRange,
+                visiumConcentrationPerformed, latestBarcode, latestLwState, latestBioState, latestBarcodeReleased,
+                flags, users);
+    }
+
     @Override
     public String toString() {
         return BasicUtils.describe(this)
                 .add("id", id)
+                .add("cytassistOperationId", cytassistOperationId)
                 .add("workNumber", workNumber)
                 .add("sampleId", sampleId)
                 .add("section", section)
@@ -0,0 +1,58 @@
+package uk.ac.sanger.sccp.stan.model;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.util.Objects;
+
+/**
+ * The highest id of some table that has been processed by a named incremental job,
+ * so that the next run of the job can start after it.
+ * @author dr6
+ */
+@Entity
+public class HighWaterMark {
+    @Id
+    private String name;
+    private int lastId;
+
+    public HighWaterMark() {}
+
+    public HighWaterMark(String name, int lastId) {
+        this.name = name;
+        this.lastId = lastId;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getLastId() {
+        return this.lastId;
+    }
+
+    public void setLastId(int lastId) {
+        this.lastId = lastId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        HighWaterMark that = (HighWaterMark) o;
+        return (this.lastId == that.lastId && Objects.equals(this.name, that.name));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, lastId);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HighWaterMark(%s, %s)", name, lastId);
+    }
+}
@@ -1,11 +1,12 @@
 package uk.ac.sanger.sccp.stan.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
-import org.hibernate.annotations.Generated;
-import org.hibernate.annotations.GenerationTime;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
 
 import static uk.ac.sanger.sccp.utils.BasicUtils.newArrayList;
@@ -25,7 +26,15 @@ public class Labware implements HasIntId {
     }
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "labware_id")
+    @GenericGenerator(name = "labware_id", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+            @Parameter(name = "table_name", value = "id_generator"),
+            @Parameter(name = "segment_column_name", value = "name"),
+            @Parameter(name = "value_column_name", value = "next_val"),
+            @Parameter(name = "segment_value", value = "labware"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo"),
+    })
     private Integer id;
     private String barcode;
     private String externalBarcode;
@@ -33,8 +42,9 @@ public class Labware implements HasIntId {
     @ManyToOne
     private LabwareType labwareType;
 
+    /** The slots' labware ids are set on the slots themselves, so the collection never updates them. */
     @OneToMany
-    @JoinColumn(name="labware_id")
+    @JoinColumn(name="labware_id", insertable=false, updatable=false)
     @OrderBy("address.row, address.column")
     private List<Slot> slots;
 
@@ -43,7 +53,7 @@ public class Labware implements HasIntId {
     private boolean destroyed;
     private boolean used;
 
-    @Generated(GenerationTime.INSERT)
+    @Column(updatable=false)
     private LocalDateTime created;
 
     public Labware() {}
@@ -115,6 +125,18 @@ public class Labware implements HasIntId {
         return this.created;
     }
 
+    /**
+     * Sets the created timestamp when the labware is first persisted, if it has not already been set.
+     * Labware created through {@code LabwareService} is given the database time before it is saved;
+     * this covers labware saved directly, without reading back the column default after each insert.
+     */
+    @PrePersist
+    void prePersist() {
+        if (this.created==null) {
+            this.created = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        }
+    }
+
     /**
      * Returns the slot with the given address from this labware.
      * Throws an exception if no such slot exists
@@ -1,5 +1,8 @@
 package uk.ac.sanger.sccp.stan.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.util.List;
 import java.util.Objects;
@@ -12,6 +15,8 @@ import static uk.ac.sanger.sccp.utils.BasicUtils.containsIgnoreCase;
  * @author dr6
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class LabwareType implements HasIntId, HasName, HasEnabled {
     public static final String FETAL_WASTE_NAME = "Fetal waste container",
             PROVIASETTE_NAME = "Proviasette",
@@ -1,5 +1,8 @@
 package uk.ac.sanger.sccp.stan.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import javax.persistence.*;
 import java.util.List;
 import java.util.Objects;
@@ -9,6 +12,8 @@ import java.util.Objects;
  * @author dr6
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
 public class Printer {
     public enum Service { sprint }
 
@@ -18,6 +23,7 @@ public class Printer {
 
     private String name;
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_ONLY)
     @JoinTable(name = "printer_label_type", inverseJoinColumns = @JoinColumn(name="label_type_id"))
     @OrderBy("id")
     private List<LabelType> labelTypes;
@@ -0,0 +1,58 @@
+package uk.ac.sanger.sccp.stan.model;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import java.util.Objects;
+
+/**
+ * A counter that is incremented whenever a category of reference data is changed,
+ * so that cached copies of that data can be recognised as stale.
+ * @author dr6
+ */
+@Entity
+public class ReferenceDataVersion {
+    @Id
+    private String name;
+    private long version;
+
+    public ReferenceDataVersion() {}
+
+    public ReferenceDataVersion(String name, long version) {
+        this.name = name;
+        this.version = version;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ReferenceDataVersion that = (ReferenceDataVersion) o;
+        return (this.version == that.version && Objects.equals(this.name, that.name));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, version);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ReferenceDataVersion(%s, %s)", name, version);
+    }
+}
@@ -1,5 +1,8 @@
 package uk.ac.sanger.sccp.stan.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
 import javax.persistence.*;
@@ -13,6 +16,8 @@ import static uk.ac.sanger.sccp.utils.BasicUtils.startsWithIgnoreCase;
  * @author dr6
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class StainType implements HasEnabled, HasName, HasIntId {
     /** The measurements supported for the {@code H&E} stain types. */
     public static final List<String> H_AND_E_MEASUREMENTS = List.of("Haematoxylin", "Blueing", "Eosin");
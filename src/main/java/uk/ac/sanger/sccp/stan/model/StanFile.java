@@ -16,6 +16,8 @@ import java.util.Objects;
 public class StanFile {
     /** Max length of field in db */
     public static final int MAX_NAME_LENGTH = 100, MAX_PATH_LENGTH = 128;
+    /** The content hash algorithm */
+    public static final String HASH_ALGORITHM = "SHA-256";
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer id;
@@ -29,6 +31,7 @@ public class StanFile {
     private String name;
     private String path;
     private LocalDateTime deprecated;
+    private String contentHash;
 
 
     public StanFile() {}
@@ -93,6 +96,18 @@ public class StanFile {
         this.path = filePath;
     }
 
+    /**
+     * The hex-encoded {@link #HASH_ALGORITHM} hash of the file's content.
+     * This may be null for files stored before hashes were recorded.
+     */
+    public String getContentHash() {
+        return this.contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     /** Is this file active? (Not deprecated) */
     public boolean isActive() {
         return (this.deprecated==null);
@@ -131,6 +146,7 @@ public class StanFile {
                 && Objects.equals(this.deprecated, that.deprecated)
                 && Objects.equals(this.name, that.name)
                 && Objects.equals(this.path, that.path)
+                && Objects.equals(this.contentHash, that.contentHash)
                 && Objects.equals(this.work, that.work)
                 && Objects.equals(this.user, that.user));
     }
@@ -150,6 +166,7 @@ public class StanFile {
                 .addRepr("name", name)
                 .addRepr("path", path)
                 .addIfNotNull("deprecated", deprecated)
+                .addIfNotNull("contentHash", contentHash)
                 .toString();
     }
 }
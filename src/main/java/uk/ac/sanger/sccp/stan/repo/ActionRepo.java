@@ -1,13 +1,18 @@
 package uk.ac.sanger.sccp.stan.repo;
 
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.model.Action;
 import uk.ac.sanger.sccp.stan.model.Slot;
 
+import javax.persistence.QueryHint;
 import java.util.Collection;
 import java.util.List;
 
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
 public interface ActionRepo extends CrudRepository<Action, Integer> {
     List<Action> findAllByDestinationIn(Collection<Slot> destinations);
     List<Action> findAllBySourceIn(Collection<Slot> slots);
@@ -15,4 +20,117 @@ public interface ActionRepo extends CrudRepository<Action, Integer> {
     @Query("select distinct a.source.labwareId from Action a " +
             "where a.destination.labwareId IN (?1)")
     List<Integer> findSourceLabwareIdsForDestinationLabwareIds(Collection<Integer> destLabwareIds);
+
+    /**
+     * Loads every action whose destination is in the recorded lineage of the given slots and samples.
+     * The result may include actions for combinations of the given slots and samples that were not
+     * asked for; the caller is expected to filter them.
+     * @param slotIds the ids of the slots to find the ancestral actions of
+     * @param sampleIds the ids of the samples to find the ancestral actions of
+     * @return the actions leading into the specified slot-samples and all their ancestors
+     */
+    @Query(value = "select distinct a.* from slot_sample_lineage l " +
+            "join action a on (a.dest_slot_id=l.ancestor_slot_id and a.sample_id=l.ancestor_sample_id) " +
+            "where l.slot_id in (?1) and l.sample_id in (?2)", nativeQuery = true)
+    List<Action> findAllAncestralActions(Collection<Integer> slotIds, Collection<Integer> sampleIds);
+
+    /**
+     * Loads every action whose source is in the recorded posterity of the given slots and samples.
+     * The result may include actions for combinations of the given slots and samples that were not
+     * asked for; the caller is expected to filter them.
+     * @param slotIds the ids of the slots to find the descendant actions of
+     * @param sampleIds the ids of the samples to find the descendant actions of
+     * @return the actions leading out of the specified slot-samples and all their descendants
+     */
+    @Query(value = "select distinct a.* from slot_sample_lineage l " +
+            "join action a on (a.source_slot_id=l.slot_id and a.source_sample_id=l.sample_id) " +
+            "where l.ancestor_slot_id in (?1) and l.ancestor_sample_id in (?2)", nativeQuery = true)
+    List<Action> findAllDescendantActions(Collection<Integer> slotIds, Collection<Integer> sampleIds);
+
+    /**
+     * Loads every action reachable backwards from the given slots and samples, following the action
+     * graph in the database using a recursive query.
+     * The result may include actions for combinations of the given slots and samples that were not
+     * asked for; the caller is expected to filter them.
+     * @param slotIds the ids of the slots to find the ancestral actions of
+     * @param sampleIds the ids of the samples to find the ancestral actions of
+     * @return the actions leading into the specified slot-samples and all their ancestors
+     */
+    @Query(value = "with recursive anc (slot_id, sample_id) as (" +
+            "select distinct a.dest_slot_id, a.sample_id from action a " +
+            "where a.dest_slot_id in (?1) and a.sample_id in (?2) " +
+            "union select a.source_slot_id, a.source_sample_id from action a " +
+            "join anc on (a.dest_slot_id=anc.slot_id and a.sample_id=anc.sample_id)" +
+            ") select distinct a.* from anc " +
+            "join action a on (a.dest_slot_id=anc.slot_id and a.sample_id=anc.sample_id)", nativeQuery = true)
+    List<Action> findAllAncestralActionsRecursive(Collection<Integer> slotIds, Collection<Integer> sampleIds);
+
+    /**
+     * Loads every action reachable forwards from the given slots and samples, following the action
+     * graph in the database using a recursive query.
+     * The result may include actions for combinations of the given slots and samples that were not
+     * asked for; the caller is expected to filter them.
+     * @param slotIds the ids of the slots to find the descendant actions of
+     * @param sampleIds the ids of the samples to find the descendant actions of
+     * @return the actions leading out of the specified slot-samples and all their descendants
+     */
+    @Query(value = "with recursive des (slot_id, sample_id) as (" +
+            "select distinct a.source_slot_id, a.source_sample_id from action a " +
+            "where a.source_slot_id in (?1) and a.source_sample_id in (?2) " +
+            "union select a.dest_slot_id, a.sample_id from action a " +
+            "join des on (a.source_slot_id=des.slot_id and a.source_sample_id=des.sample_id)" +
+            ") select distinct a.* from des " +
+            "join action a on (a.source_slot_id=des.slot_id and a.source_sample_id=des.sample_id)", nativeQuery = true)
+    List<Action> findAllDescendantActionsRecursive(Collection<Integer> slotIds, Collection<Integer> sampleIds);
+
+    /**
+     * Adds the reflexive lineage rows for the sources and destinations of the actions in the given
+     * range of operations.
+     * @param minOpId the lowest operation id to include
+     * @param maxOpId the highest operation id to include
+     * @return the number of rows inserted
+     */
+    @Modifying
+    @QueryHints({@QueryHint(name=HINT_NATIVE_SPACES, value="slot_sample_lineage"),
+            @QueryHint(name=HINT_NATIVE_SPACES, value="action")})
+    @Query(value = "insert ignore into slot_sample_lineage (slot_id, sample_id, ancestor_slot_id, ancestor_sample_id) " +
+            "select a.dest_slot_id, a.sample_id, a.dest_slot_id, a.sample_id from action a " +
+            "where a.operation_id between ?1 and ?2 " +
+            "union select a.source_slot_id, a.source_sample_id, a.source_slot_id, a.source_sample_id from action a " +
+            "where a.operation_id between ?1 and ?2", nativeQuery = true)
+    int insertReflexiveLineage(int minOpId, int maxOpId);
+
+    /**
+     * Links every ancestor of the source of each action in the given range of operations to every
+     * descendant of the destination of the action.
+     * Chains of actions inside the range are only closed by calling this repeatedly until it inserts nothing.
+     * @param minOpId the lowest operation id to include
+     * @param maxOpId the highest operation id to include
+     * @return the number of rows inserted
+     */
+    @Modifying
+    @QueryHints({@QueryHint(name=HINT_NATIVE_SPACES, value="slot_sample_lineage"),
+            @QueryHint(name=HINT_NATIVE_SPACES, value="action")})
+    @Query(value = "insert ignore into slot_sample_lineage (slot_id, sample_id, ancestor_slot_id, ancestor_sample_id) " +
+            "select distinct d.slot_id, d.sample_id, anc.ancestor_slot_id, anc.ancestor_sample_id from action a " +
+            "join slot_sample_lineage anc on (anc.slot_id=a.source_slot_id and anc.sample_id=a.source_sample_id) " +
+            "join slot_sample_lineage d on (d.ancestor_slot_id=a.dest_slot_id and d.ancestor_sample_id=a.sample_id) " +
+            "where a.operation_id between ?1 and ?2 " +
+            "and not (a.source_slot_id=a.dest_slot_id and a.source_sample_id=a.sample_id)", nativeQuery = true)
+    int insertLineageClosure(int minOpId, int maxOpId);
+
+    @Query("select max(a.operationId) from Action a")
+    Integer findMaxOperationId();
+
+    /**
+     * Is there any action moving a sample into a different slot or sample whose direct link is missing
+     * from the lineage table? If not, the lineage has been recorded or backfilled for every existing action.
+     * @return 1 if such an action exists, otherwise 0
+     */
+    @Query(value = "select exists(select 1 from action a " +
+            "where not (a.source_slot_id=a.dest_slot_id and a.source_sample_id=a.sample_id) " +
+            "and not exists(select 1 from slot_sample_lineage l " +
+            "where l.slot_id=a.dest_slot_id and l.sample_id=a.sample_id " +
+            "and l.ancestor_slot_id=a.source_slot_id and l.ancestor_sample_id=a.source_sample_id))", nativeQuery = true)
+    int existsActionMissingLineage();
 }
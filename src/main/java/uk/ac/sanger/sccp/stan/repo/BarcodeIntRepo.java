@@ -5,9 +5,16 @@ import org.springframework.transaction.support.TransactionSynchronizationManager
 import uk.ac.sanger.sccp.stan.service.BarcodeUtils;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
-/** Repo for getting barcode seeds */
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
+/**
+ * Repo for getting barcode seeds.
+ * Updates declare barcode_int as their query space, so that they do not evict the second-level cache.
+ */
 @Repository
 public class BarcodeIntRepo {
     @PersistenceContext
@@ -18,9 +25,10 @@ public class BarcodeIntRepo {
         if (!TransactionSynchronizationManager.isActualTransactionActive()) {
             throw new TransactionRequiredException();
         }
-        Query select = entityManager.createNativeQuery("select seed from barcode_int where not used order by id limit 1");
+        Query select = entityManager.createNativeQuery("select seed from barcode_int where not used and reserved_by is null order by id limit 1");
         int seed = (int) select.getSingleResult();
         Query update = entityManager.createNativeQuery("update barcode_int set used=true where seed=?1");
+        update.setHint(HINT_NATIVE_SPACES, "barcode_int");
         update.setParameter(1, seed);
         update.executeUpdate();
         return seed;
@@ -31,16 +39,78 @@ public class BarcodeIntRepo {
         if (!TransactionSynchronizationManager.isActualTransactionActive()) {
             throw new TransactionRequiredException();
         }
-        Query select = entityManager.createNativeQuery("select seed from barcode_int where not used order by id limit ?1");
+        Query select = entityManager.createNativeQuery("select seed from barcode_int where not used and reserved_by is null order by id limit ?1");
         select.setParameter(1, n);
         //noinspection unchecked
         List<Integer> seeds = select.getResultList();
         Query update = entityManager.createNativeQuery("update barcode_int set used=true where seed in (?1)");
+        update.setHint(HINT_NATIVE_SPACES, "barcode_int");
         update.setParameter(1, seeds);
         update.executeUpdate();
         return seeds;
     }
 
+    /**
+     * Reserves up to <tt>n</tt> unused seeds that are not already reserved.
+     * Rows locked by other transactions are skipped rather than waited for.
+     * The reservation commits with the current transaction.
+     * @param reservedBy the identifier of the reserver
+     * @param reservedAt the time of the reservation
+     * @param n the number of seeds to reserve
+     * @return the reserved seeds, which may be fewer than requested
+     */
+    public List<Integer> reserve(String reservedBy, LocalDateTime reservedAt, int n) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new TransactionRequiredException();
+        }
+        Query select = entityManager.createNativeQuery("select seed from barcode_int where not used and reserved_by is null " +
+                "order by id limit ?1 for update skip locked");
+        select.setParameter(1, n);
+        //noinspection unchecked
+        List<Integer> seeds = select.getResultList();
+        if (!seeds.isEmpty()) {
+            Query update = entityManager.createNativeQuery("update barcode_int set reserved_by=?1, reserved_at=?2 where seed in (?3)");
+            update.setHint(HINT_NATIVE_SPACES, "barcode_int");
+            update.setParameter(1, reservedBy);
+            update.setParameter(2, reservedAt);
+            update.setParameter(3, seeds);
+            update.executeUpdate();
+        }
+        return seeds;
+    }
+
+    /**
+     * Releases reservations of unused seeds made before the given time, so that they can be reserved again
+     * @param cutoff the time before which reservations have expired
+     * @return the number of seeds released
+     */
+    public int releaseExpired(LocalDateTime cutoff) {
+        Query update = entityManager.createNativeQuery("update barcode_int set reserved_by=null, reserved_at=null " +
+                "where not used and reserved_at < ?1");
+        update.setHint(HINT_NATIVE_SPACES, "barcode_int");
+        update.setParameter(1, cutoff);
+        return update.executeUpdate();
+    }
+
+    /**
+     * Marks the given reserved seeds as used.
+     * Seeds that are already used, or are no longer reserved by the given reserver, are not changed.
+     * @param reservedBy the identifier of the reserver
+     * @param seeds the seeds to mark
+     * @return the number of seeds marked
+     */
+    public int markUsed(String reservedBy, Collection<Integer> seeds) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new TransactionRequiredException();
+        }
+        Query update = entityManager.createNativeQuery("update barcode_int set used=true " +
+                "where seed in (?1) and not used and reserved_by=?2");
+        update.setHint(HINT_NATIVE_SPACES, "barcode_int");
+        update.setParameter(1, seeds);
+        update.setParameter(2, reservedBy);
+        return update.executeUpdate();
+    }
+
     /** Creates a new barcode with the given prefix */
     public String createBarcode(String prefix) {
         int seed = next();
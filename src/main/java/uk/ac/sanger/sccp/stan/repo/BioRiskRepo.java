@@ -2,15 +2,18 @@ package uk.ac.sanger.sccp.stan.repo;
 
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.model.BioRisk;
 import uk.ac.sanger.sccp.stan.model.Sample;
 
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.QueryHint;
 import java.util.*;
 
 import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
 import static uk.ac.sanger.sccp.utils.BasicUtils.*;
 
 /** Repo for {@link BioRisk} */
@@ -85,6 +88,7 @@ public interface BioRiskRepo extends CrudRepository<BioRisk, Integer> {
      * @param opId operation id
      */
     @Modifying
+    @QueryHints(@QueryHint(name=HINT_NATIVE_SPACES, value="sample_bio_risk"))
     @Query(value = "insert INTO sample_bio_risk (sample_id, bio_risk_id, operation_id) " +
             "values (?, ?, ?)", nativeQuery = true)
     void recordBioRisk(int sampleId, int bioRiskId, Integer opId);
@@ -1,14 +1,18 @@
 package uk.ac.sanger.sccp.stan.repo;
 
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.model.BioState;
 
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.QueryHint;
 import java.util.*;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
 import static uk.ac.sanger.sccp.utils.BasicUtils.repr;
 
 public interface BioStateRepo extends CrudRepository<BioState, Integer> {
+    @QueryHints(@QueryHint(name=HINT_CACHEABLE, value="true"))
     Optional<BioState> findByName(String name);
 
     List<BioState> findAllByNameIn(Collection<String> names);
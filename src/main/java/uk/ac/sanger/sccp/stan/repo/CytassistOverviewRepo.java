@@ -5,9 +5,54 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.model.CytassistOverview;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface CytassistOverviewRepo extends CrudRepository<CytassistOverview, Integer> {
     /** Deletes all rows in one statement */
     @Modifying
     @Query("delete from CytassistOverview")
     void deleteAllInBatch();
+
+    /** Deletes the rows for the given cytassist operations in one statement */
+    @Modifying
+    @Query("delete from CytassistOverview co where co.cytassistOperationId in (?1)")
+    void deleteAllByCytassistOperationIdIn(Collection<Integer> opIds);
+
+    /**
+     * Finds the cytassist operations whose overview rows may be changed by operations or releases
+     * recorded after the given ids.
+     * That is cytassist operations that are themselves new; those whose sources have new operations;
+     * and those whose destinations, or anything descended from them in the slot-sample lineage,
+     * have new operations or releases.
+     * Each way of being affected is a separate branch of a union, so that each join can use an index.
+     * The lineage branches are only correct if the lineage table is {@link uk.ac.sanger.sccp.stan.service.LineageService#isComplete complete}.
+     * @param cytOpTypeId the id of the cytassist operation type
+     * @param afterOpId only operations with ids greater than this are considered new
+     * @param afterReleaseId only releases with ids greater than this are considered new
+     * @return the ids of the affected cytassist operations
+     */
+    @Query(value = "select cyt.operation_id from action cyt " +
+            "join operation cop on (cyt.operation_id=cop.id) " +
+            "where cop.operation_type_id=?1 and cyt.operation_id > ?2 " +
+            "union select cyt.operation_id from action a " +
+            "join action cyt on (cyt.source_slot_id=a.dest_slot_id) " +
+            "join operation cop on (cyt.operation_id=cop.id) " +
+            "where a.operation_id > ?2 and cop.operation_type_id=?1 " +
+            "union select cyt.operation_id from action a " +
+            "join action cyt on (cyt.source_slot_id=a.source_slot_id) " +
+            "join operation cop on (cyt.operation_id=cop.id) " +
+            "where a.operation_id > ?2 and cop.operation_type_id=?1 " +
+            "union select cyt.operation_id from action a " +
+            "join slot_sample_lineage l on (l.slot_id=a.source_slot_id and l.sample_id=a.source_sample_id) " +
+            "join action cyt on (cyt.dest_slot_id=l.ancestor_slot_id and cyt.sample_id=l.ancestor_sample_id) " +
+            "join operation cop on (cyt.operation_id=cop.id) " +
+            "where a.operation_id > ?2 and cop.operation_type_id=?1 " +
+            "union select cyt.operation_id from labware_release r " +
+            "join slot on (slot.labware_id=r.labware_id) " +
+            "join slot_sample_lineage l on (l.slot_id=slot.id) " +
+            "join action cyt on (cyt.dest_slot_id=l.ancestor_slot_id and cyt.sample_id=l.ancestor_sample_id) " +
+            "join operation cop on (cyt.operation_id=cop.id) " +
+            "where r.id > ?3 and cop.operation_type_id=?1", nativeQuery = true)
+    List<Integer> findAffectedCytassistOperationIds(int cytOpTypeId, int afterOpId, int afterReleaseId);
 }
@@ -1,14 +1,18 @@
 package uk.ac.sanger.sccp.stan.repo;
 
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.model.Fixative;
 
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.QueryHint;
 import java.util.*;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
 import static uk.ac.sanger.sccp.utils.BasicUtils.repr;
 
 public interface FixativeRepo extends CrudRepository<Fixative, Integer> {
+    @QueryHints(@QueryHint(name=HINT_CACHEABLE, value="true"))
     Optional<Fixative> findByName(String name);
 
     default Fixative getByName(String name) throws EntityNotFoundException {
@@ -0,0 +1,11 @@
+package uk.ac.sanger.sccp.stan.repo;
+
+import org.springframework.data.repository.CrudRepository;
+import uk.ac.sanger.sccp.stan.model.HighWaterMark;
+
+/**
+ * Repo for the high-water marks of incremental jobs
+ * @author dr6
+ */
+public interface HighWaterMarkRepo extends CrudRepository<HighWaterMark, String> {
+}
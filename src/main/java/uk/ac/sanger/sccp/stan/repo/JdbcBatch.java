@@ -0,0 +1,57 @@
+package uk.ac.sanger.sccp.stan.repo;
+
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * Helper for repos that write rows directly with JDBC batches on the entity manager's connection.
+ * @author dr6
+ */
+final class JdbcBatch {
+    /** The number of rows sent to the database in each JDBC batch */
+    static final int BATCH_SIZE = 500;
+
+    private JdbcBatch() {}
+
+    /**
+     * Runs the given statement once for each item, sending the statements to the database in batches.
+     * Pending changes are flushed first, since the statements may refer to rows not yet written.
+     * @param entityManager the entity manager whose connection should be used
+     * @param sql the statement to run
+     * @param items the items to run the statement for
+     * @param setter sets the parameters of the statement for each item
+     * @param <E> the type of item
+     */
+    static <E> void update(EntityManager entityManager, String sql, Collection<? extends E> items,
+                           ParameterSetter<E> setter) {
+        if (items.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                int count = 0;
+                for (E item : items) {
+                    setter.set(ps, item);
+                    ps.addBatch();
+                    if (++count % BATCH_SIZE == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                if (count % BATCH_SIZE != 0) {
+                    ps.executeBatch();
+                }
+            }
+        });
+    }
+
+    /** Sets the parameters of a statement for one item */
+    @FunctionalInterface
+    interface ParameterSetter<E> {
+        void set(PreparedStatement ps, E item) throws SQLException;
+    }
+}
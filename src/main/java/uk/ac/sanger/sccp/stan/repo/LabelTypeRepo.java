@@ -1,12 +1,17 @@
 package uk.ac.sanger.sccp.stan.repo;
 
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.model.LabelType;
 
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.QueryHint;
 import java.util.Optional;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
 public interface LabelTypeRepo extends CrudRepository<LabelType, Integer> {
+    @QueryHints(@QueryHint(name=HINT_CACHEABLE, value="true"))
     Optional<LabelType> findByName(String name);
 
     default LabelType getByName(String name) throws EntityNotFoundException {
@@ -0,0 +1,162 @@
+package uk.ac.sanger.sccp.stan.repo;
+
+import com.google.common.collect.Lists;
+import org.springframework.stereotype.Repository;
+import uk.ac.sanger.sccp.stan.model.LabwareFlag.Priority;
+
+import javax.persistence.*;
+import java.util.*;
+
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
+/**
+ * Repo for the effective labware flags: the {@code labware_flag_effective} table, recording for each
+ * slot-sample the flags that apply to it, either directly or through its ancestors.
+ * Each row also records the labware containing the slot, so the flags applicable to some labware can be
+ * found in one indexed query.
+ * Only slot-samples still present in the labware are considered when flags are looked up.
+ * @author dr6
+ */
+@Repository
+public class LabwareFlagEffectiveRepo {
+    /** The number of labware included in each lookup query */
+    static final int BATCH_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** A flag applying to a sample in a slot of some labware */
+    public record EffectiveFlag(int slotId, int sampleId, int labwareId, int flagId) {}
+
+    /**
+     * Records the given effective flags. Rows that are already recorded are ignored.
+     * @param rows the effective flags to record
+     */
+    public void insertFlags(Collection<EffectiveFlag> rows) {
+        JdbcBatch.update(entityManager, "insert ignore into labware_flag_effective " +
+                "(slot_id, sample_id, labware_id, flag_id) values (?,?,?,?)", rows, (ps, row) -> {
+            ps.setInt(1, row.slotId());
+            ps.setInt(2, row.sampleId());
+            ps.setInt(3, row.labwareId());
+            ps.setInt(4, row.flagId());
+        });
+    }
+
+    /**
+     * Records the flags in the given id range against the slot-samples their flagging operations were
+     * recorded on.
+     * @param minFlagId the lowest flag id to include
+     * @param maxFlagId the highest flag id to include
+     * @return the number of rows inserted
+     */
+    public int insertDirectFlags(int minFlagId, int maxFlagId) {
+        Query query = entityManager.createNativeQuery("insert ignore into labware_flag_effective " +
+                "(slot_id, sample_id, labware_id, flag_id) " +
+                "select a.dest_slot_id, a.sample_id, slot.labware_id, lf.id from labware_flag lf " +
+                "join action a on (a.operation_id=lf.operation_id) " +
+                "join slot on (a.dest_slot_id=slot.id and slot.labware_id=lf.labware_id) " +
+                "where lf.id between ?1 and ?2");
+        query.setHint(HINT_NATIVE_SPACES, "labware_flag_effective");
+        query.setParameter(1, minFlagId);
+        query.setParameter(2, maxFlagId);
+        return query.executeUpdate();
+    }
+
+    /**
+     * Copies the effective flags on the sources of the actions in the given range of operations
+     * to the destinations of those actions.
+     * Chains of actions inside the range are only followed to the end by calling this repeatedly
+     * until it inserts nothing.
+     * @param minOpId the lowest operation id to include
+     * @param maxOpId the highest operation id to include
+     * @return the number of rows inserted
+     */
+    public int propagate(int minOpId, int maxOpId) {
+        Query query = entityManager.createNativeQuery("insert ignore into labware_flag_effective " +
+                "(slot_id, sample_id, labware_id, flag_id) " +
+                "select distinct a.dest_slot_id, a.sample_id, slot.labware_id, e.flag_id from action a " +
+                "join labware_flag_effective e on (e.slot_id=a.source_slot_id and e.sample_id=a.source_sample_id) " +
+                "join slot on (a.dest_slot_id=slot.id) " +
+                "where a.operation_id between ?1 and ?2 " +
+                "and not (a.source_slot_id=a.dest_slot_id and a.source_sample_id=a.sample_id)");
+        query.setHint(HINT_NATIVE_SPACES, "labware_flag_effective");
+        query.setParameter(1, minOpId);
+        query.setParameter(2, maxOpId);
+        return query.executeUpdate();
+    }
+
+    /**
+     * Gets the highest flag id
+     * @return the highest flag id, or null if there are no flags
+     */
+    public Integer findMaxFlagId() {
+        Object value = entityManager.createNativeQuery("select max(id) from labware_flag").getSingleResult();
+        return (value==null ? null : ((Number) value).intValue());
+    }
+
+    /**
+     * Gets the ids of all labware with effective flags recorded against it, whether or not the flagged
+     * slot-samples are still present in the labware
+     * @return the ids of labware with effective flags
+     */
+    public Set<Integer> findFlaggedLabwareIds() {
+        //noinspection unchecked
+        List<Object> values = entityManager.createNativeQuery("select distinct labware_id from labware_flag_effective")
+                .getResultList();
+        Set<Integer> labwareIds = new HashSet<>(values.size());
+        for (Object value : values) {
+            labwareIds.add(intValue(value));
+        }
+        return labwareIds;
+    }
+
+    /**
+     * Finds the ids of the flags applicable to the current contents of the given labware
+     * @param labwareIds the ids of the labware
+     * @return a map from labware id to the ids of the flags applicable to it, for the flagged labware
+     */
+    public Map<Integer, Set<Integer>> findFlagIds(Collection<Integer> labwareIds) {
+        Map<Integer, Set<Integer>> lwFlagIds = new HashMap<>();
+        for (Object[] row : lookUp("select distinct e.labware_id, e.flag_id", labwareIds)) {
+            lwFlagIds.computeIfAbsent(intValue(row[0]), k -> new TreeSet<>()).add(intValue(row[1]));
+        }
+        return lwFlagIds;
+    }
+
+    /**
+     * Finds the highest priority of the flags applicable to the current contents of the given labware
+     * @param labwareIds the ids of the labware
+     * @return a map from labware id to the highest flag priority, for the flagged labware
+     */
+    public Map<Integer, Priority> findPriorities(Collection<Integer> labwareIds) {
+        Map<Integer, Priority> lwPriorities = new HashMap<>();
+        for (Object[] row : lookUp("select distinct e.labware_id, lf.priority", labwareIds)) {
+            Priority priority = Priority.valueOf((String) row[1]);
+            lwPriorities.merge(intValue(row[0]), priority, (a, b) -> a.compareTo(b) < 0 ? b : a);
+        }
+        return lwPriorities;
+    }
+
+    /**
+     * Runs the given select over the effective flags on the current contents of the given labware,
+     * for each batch of labware ids.
+     */
+    private List<Object[]> lookUp(String select, Collection<Integer> labwareIds) {
+        List<Object[]> results = new ArrayList<>();
+        for (List<Integer> batch : Lists.partition(new ArrayList<>(labwareIds), BATCH_SIZE)) {
+            Query query = entityManager.createNativeQuery(select + " from labware_flag_effective e " +
+                    "join slot_sample ss on (ss.slot_id=e.slot_id and ss.sample_id=e.sample_id) " +
+                    "join labware_flag lf on (e.flag_id=lf.id) " +
+                    "where e.labware_id in (:labwareIds)");
+            query.setParameter("labwareIds", batch);
+            //noinspection unchecked
+            List<Object[]> rows = query.getResultList();
+            results.addAll(rows);
+        }
+        return results;
+    }
+
+    private static int intValue(Object value) {
+        return ((Number) value).intValue();
+    }
+}
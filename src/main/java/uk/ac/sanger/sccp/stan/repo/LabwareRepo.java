@@ -6,6 +6,7 @@ import uk.ac.sanger.sccp.stan.model.Labware;
 import uk.ac.sanger.sccp.utils.UCMap;
 
 import javax.persistence.EntityNotFoundException;
+import java.sql.Timestamp;
 import java.util.*;
 
 import static uk.ac.sanger.sccp.utils.BasicUtils.repr;
@@ -37,6 +38,21 @@ public interface LabwareRepo extends CrudRepository<Labware, Integer> {
 
     List<Labware> findAllByIdIn(Collection<Integer> ids);
 
+    /**
+     * Gets the current time from the database, which is the clock the created column defaults to
+     * @return the database's current timestamp
+     */
+    @Query(value="select current_timestamp", nativeQuery=true)
+    Timestamp getDatabaseTimestamp();
+
+    /**
+     * Loads the specified labware with its slots
+     * @param ids the ids of the labware
+     * @return the labware found, with its slots initialised
+     */
+    @Query("select distinct lw from Labware lw left join fetch lw.slots where lw.id in (?1)")
+    List<Labware> findAllWithSlotsByIdIn(Collection<Integer> ids);
+
     /**
      * Gets an exact sequence of labware identified by barcodes.
      * @param barcodes the barcodes to find
@@ -1,12 +1,17 @@
 package uk.ac.sanger.sccp.stan.repo;
 
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.model.LabwareType;
 
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.QueryHint;
 import java.util.*;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
 public interface LabwareTypeRepo extends CrudRepository<LabwareType, Integer> {
+    @QueryHints(@QueryHint(name=HINT_CACHEABLE, value="true"))
     Optional<LabwareType> findByName(String name);
     default LabwareType getByName(final String name) throws EntityNotFoundException {
         return findByName(name).orElseThrow(() -> new EntityNotFoundException("Labware type not found: "+name));
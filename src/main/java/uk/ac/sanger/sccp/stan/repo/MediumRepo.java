@@ -1,14 +1,18 @@
 package uk.ac.sanger.sccp.stan.repo;
 
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.model.Medium;
 
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.QueryHint;
 import java.util.*;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
 import static uk.ac.sanger.sccp.utils.BasicUtils.repr;
 
 public interface MediumRepo extends CrudRepository<Medium, Integer> {
+    @QueryHints(@QueryHint(name=HINT_CACHEABLE, value="true"))
     Optional<Medium> findByName(String name);
 
     List<Medium> findAllByNameIn(Collection<String> names);
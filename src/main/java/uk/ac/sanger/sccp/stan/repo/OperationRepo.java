@@ -9,6 +9,14 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 public interface OperationRepo extends CrudRepository<Operation, Integer> {
+    /**
+     * Loads the specified operations with their actions
+     * @param ids the ids of the operations
+     * @return the operations found, with their actions initialised
+     */
+    @Query("select distinct op from Operation op left join fetch op.actions where op.id in (?1)")
+    List<Operation> findAllWithActionsByIdIn(Collection<Integer> ids);
+
     @Query("select distinct op from Operation op join Action a on (a.operationId=op.id) " +
             "where op.operationType=?1 and a.sample.id in (?2)")
     List<Operation> findAllByOperationTypeAndSampleIdIn(OperationType opType, Collection<Integer> sampleIds);
@@ -36,6 +44,9 @@ public interface OperationRepo extends CrudRepository<Operation, Integer> {
 
     List<Operation> findAllByOperationType(OperationType opType);
 
+    @Query("select max(op.id) from Operation op")
+    Integer findMaxId();
+
     @Query(value = "select distinct a.operation_id, a.dest_slot_id, a.sample_id " +
             "from action a " +
             "where a.operation_id in (?1)", nativeQuery = true)
@@ -1,13 +1,19 @@
 package uk.ac.sanger.sccp.stan.repo;
 
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.model.OperationType;
 
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.QueryHint;
 import java.util.*;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
 public interface OperationTypeRepo extends CrudRepository<OperationType, Integer> {
+    @QueryHints(@QueryHint(name=HINT_CACHEABLE, value="true"))
     Optional<OperationType> findByName(String name);
+    @QueryHints(@QueryHint(name=HINT_CACHEABLE, value="true"))
     List<OperationType> findByNameIn(Collection<String> names);
 
     /**
@@ -1,16 +1,20 @@
 package uk.ac.sanger.sccp.stan.repo;
 
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.model.LabelType;
 import uk.ac.sanger.sccp.stan.model.Printer;
 
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
 
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
 import static uk.ac.sanger.sccp.utils.BasicUtils.repr;
 
 public interface PrinterRepo extends CrudRepository<Printer, Integer> {
+    @QueryHints(@QueryHint(name=HINT_CACHEABLE, value="true"))
     Optional<Printer> findByName(String name);
 
     default Printer getByName(String name) throws EntityNotFoundException {
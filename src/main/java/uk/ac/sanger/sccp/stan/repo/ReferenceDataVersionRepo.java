@@ -0,0 +1,28 @@
+package uk.ac.sanger.sccp.stan.repo;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.CrudRepository;
+import uk.ac.sanger.sccp.stan.model.ReferenceDataVersion;
+
+import javax.persistence.QueryHint;
+
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
+/**
+ * Repo for the version counters of reference data categories
+ * @author dr6
+ */
+public interface ReferenceDataVersionRepo extends CrudRepository<ReferenceDataVersion, String> {
+    /**
+     * Increments the version of the named category, creating it if it does not exist.
+     * This must be called inside a transaction.
+     * @param name the name of the category
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name=HINT_NATIVE_SPACES, value="reference_data_version"))
+    @Query(value="INSERT INTO reference_data_version (name, version) VALUES (?1, 1) " +
+            "ON DUPLICATE KEY UPDATE version = version + 1", nativeQuery=true)
+    void increment(String name);
+}
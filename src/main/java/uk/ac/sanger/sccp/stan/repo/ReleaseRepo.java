@@ -16,6 +16,9 @@ public interface ReleaseRepo extends CrudRepository<Release, Integer> {
 
     List<Release> findAllByLabwareIdIn(Collection<Integer> labwareIds);
 
+    @Query("select max(r.id) from Release r")
+    Integer findMaxId();
+
     /**
      * Gets the releases matching the corresponding ids.
      * @param ids the ids to find
@@ -16,6 +16,14 @@ public interface SlotRepo extends CrudRepository<Slot, Integer> {
 
     List<Slot> findAllByIdIn(Collection<Integer> ids);
 
+    /**
+     * Loads the specified slots with their samples
+     * @param ids the ids of the slots
+     * @return the slots found, with their samples initialised
+     */
+    @Query("select distinct s from Slot s left join fetch s.samples where s.id in (?1)")
+    List<Slot> findAllWithSamplesByIdIn(Collection<Integer> ids);
+
     @Query("select id from Slot where labwareId in (?1)")
     List<Integer> findSlotIdsByLabwareIdIn(Collection<Integer> labwareIds);
 }
@@ -2,16 +2,21 @@ package uk.ac.sanger.sccp.stan.repo;
 
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.model.StainType;
 
+import javax.persistence.QueryHint;
 import java.util.*;
 
 import static java.util.stream.Collectors.toSet;
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
 
 public interface StainTypeRepo extends CrudRepository<StainType, Integer> {
     List<StainType> findAllByEnabled(boolean enabled);
 
+    @QueryHints(@QueryHint(name=HINT_CACHEABLE, value="true"))
     Optional<StainType> findByName(String name);
 
     List<StainType> findAllByNameIn(Collection<String> names);
@@ -49,6 +54,7 @@ public interface StainTypeRepo extends CrudRepository<StainType, Integer> {
     }
 
     @Modifying
+    @QueryHints(@QueryHint(name=HINT_NATIVE_SPACES, value="stain"))
     @Query(value="insert into stain (operation_id, stain_type_id) values ((?1), (?2))", nativeQuery=true)
     void _saveStain(Integer operationId, Integer stainTypeId);
 
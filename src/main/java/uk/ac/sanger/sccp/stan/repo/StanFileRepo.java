@@ -21,6 +21,27 @@ public interface StanFileRepo extends CrudRepository<StanFile, Integer> {
     /** Does a file exist with the given path? */
     boolean existsByPath(String path);
 
+    /** Finds all active stan files. */
+    @Query("select f from StanFile f where f.deprecated is null")
+    List<StanFile> findAllActive();
+
+    /** Finds all stan files (active or not) stored at the given path. */
+    List<StanFile> findAllByPath(String path);
+
+    /** Counts the active stan files stored at the given path. */
+    @Query("select count(f) from StanFile f where f.path=?1 and f.deprecated is null")
+    long countActiveByPath(String path);
+
+    /**
+     * Locks the blob store until the end of the current transaction.
+     * Adding a blob and linking files to it, and checking a blob is unused and deleting it, are done holding this
+     * lock, so that different instances of the application cannot interleave them.
+     * This must be called inside a transaction.
+     * @return the name of the lock
+     */
+    @Query(value="select name from stan_file_lock where name='blobs' for update", nativeQuery=true)
+    String lockBlobs();
+
     /**
      * Gets the stan file with the given id
      * @param id the id of the stan file
@@ -0,0 +1,232 @@
+package uk.ac.sanger.sccp.stan.repo;
+
+import org.hibernate.Hibernate;
+import org.springframework.stereotype.Repository;
+import uk.ac.sanger.sccp.stan.model.Work;
+import uk.ac.sanger.sccp.stan.model.Work.SampleSlotId;
+
+import javax.persistence.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
+/**
+ * Repo for the links between work and operations, releases and samples in slots.
+ * Links are inserted and deleted directly in the link tables, without loading the collections
+ * in {@link uk.ac.sanger.sccp.stan.model.Work Work}, so the cost of linking does not grow with the number
+ * of existing links. Inserting a link that already exists has no effect.
+ * Since the collections in a loaded work do not see these changes, callers should
+ * {@link #refreshLinks refresh} a work after changing its links.
+ * Reads are paged by id, so a large work's links need not be loaded all at once.
+ * @author dr6
+ */
+@Repository
+public class WorkLinkRepo {
+    /** The number of ids loaded in each page when streaming links */
+    static final int PAGE_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Links the given operations to the given work
+     * @param workId the id of the work
+     * @param opIds the ids of the operations
+     */
+    public void insertOperationLinks(int workId, Collection<Integer> opIds) {
+        batchUpdate("insert into work_op (work_id, operation_id) values (?,?) " +
+                "on duplicate key update work_id=work_id", opIds, (ps, opId) -> {
+            ps.setInt(1, workId);
+            ps.setInt(2, opId);
+        });
+    }
+
+    /**
+     * Links the given releases to the given work
+     * @param workId the id of the work
+     * @param releaseIds the ids of the releases
+     */
+    public void insertReleaseLinks(int workId, Collection<Integer> releaseIds) {
+        batchUpdate("insert into work_release (work_id, release_id) values (?,?) " +
+                "on duplicate key update work_id=work_id", releaseIds, (ps, releaseId) -> {
+            ps.setInt(1, workId);
+            ps.setInt(2, releaseId);
+        });
+    }
+
+    /**
+     * Links the given samples in slots to the given work
+     * @param workId the id of the work
+     * @param ssIds the sample and slot ids
+     */
+    public void insertSampleSlotLinks(int workId, Collection<SampleSlotId> ssIds) {
+        batchUpdate("insert into work_sample (work_id, sample_id, slot_id) values (?,?,?) " +
+                "on duplicate key update work_id=work_id", ssIds, (ps, ssId) -> {
+            ps.setInt(1, workId);
+            ps.setInt(2, ssId.getSampleId());
+            ps.setInt(3, ssId.getSlotId());
+        });
+    }
+
+    /**
+     * Removes the links between the given work and the given operations
+     * @param workId the id of the work
+     * @param opIds the ids of the operations
+     */
+    public void deleteOperationLinks(int workId, Collection<Integer> opIds) {
+        batchUpdate("delete from work_op where work_id=? and operation_id=?", opIds, (ps, opId) -> {
+            ps.setInt(1, workId);
+            ps.setInt(2, opId);
+        });
+    }
+
+    /**
+     * Removes the links between the given work and the given samples in slots
+     * @param workId the id of the work
+     * @param ssIds the sample and slot ids
+     */
+    public void deleteSampleSlotLinks(int workId, Collection<SampleSlotId> ssIds) {
+        batchUpdate("delete from work_sample where work_id=? and sample_id=? and slot_id=?", ssIds, (ps, ssId) -> {
+            ps.setInt(1, workId);
+            ps.setInt(2, ssId.getSampleId());
+            ps.setInt(3, ssId.getSlotId());
+        });
+    }
+
+    /**
+     * Brings a work's link collections up to date after its links have been changed directly.
+     * If the work is in the current session and any of its link collections has been loaded,
+     * the work is refreshed from the database; otherwise its collections will be read from the
+     * database when they are first used, so nothing needs to be done.
+     * Pending changes are flushed first, so refreshing loses nothing.
+     * @param work the work whose links have changed
+     */
+    public void refreshLinks(Work work) {
+        if (entityManager.contains(work) && (Hibernate.isInitialized(work.getOperationIds())
+                || Hibernate.isInitialized(work.getReleaseIds())
+                || Hibernate.isInitialized(work.getSampleSlotIds()))) {
+            entityManager.flush();
+            entityManager.refresh(work);
+        }
+    }
+
+    /**
+     * Finds which of the given operations are linked to the given work
+     * @param workId the id of the work
+     * @param opIds the ids of the operations to check
+     * @return the subset of the given operation ids that are linked to the work
+     */
+    public Set<Integer> findLinkedOperationIds(int workId, Collection<Integer> opIds) {
+        if (opIds.isEmpty()) {
+            return Set.of();
+        }
+        Query query = entityManager.createNativeQuery("select operation_id from work_op where work_id=?1 and operation_id in (?2)");
+        query.setHint(HINT_NATIVE_SPACES, "work_op");
+        query.setParameter(1, workId);
+        query.setParameter(2, opIds);
+        return new HashSet<>(intList(query.getResultList()));
+    }
+
+    /**
+     * Gets a page of the ids of operations linked to the given work, in ascending order
+     * @param workId the id of the work
+     * @param afterOpId only ids greater than this are returned
+     * @param limit the maximum number of ids to return
+     * @return the operation ids
+     */
+    public List<Integer> findOperationIds(int workId, int afterOpId, int limit) {
+        Query query = entityManager.createNativeQuery("select operation_id from work_op " +
+                "where work_id=?1 and operation_id > ?2 order by operation_id limit ?3");
+        query.setHint(HINT_NATIVE_SPACES, "work_op");
+        query.setParameter(1, workId);
+        query.setParameter(2, afterOpId);
+        query.setParameter(3, limit);
+        return intList(query.getResultList());
+    }
+
+    /**
+     * Gets a page of the ids of releases linked to the given work, in ascending order
+     * @param workId the id of the work
+     * @param afterReleaseId only ids greater than this are returned
+     * @param limit the maximum number of ids to return
+     * @return the release ids
+     */
+    public List<Integer> findReleaseIds(int workId, int afterReleaseId, int limit) {
+        Query query = entityManager.createNativeQuery("select release_id from work_release " +
+                "where work_id=?1 and release_id > ?2 order by release_id limit ?3");
+        query.setHint(HINT_NATIVE_SPACES, "work_release");
+        query.setParameter(1, workId);
+        query.setParameter(2, afterReleaseId);
+        query.setParameter(3, limit);
+        return intList(query.getResultList());
+    }
+
+    /**
+     * Gets a page of the samples in slots linked to the given work, ordered by slot id then sample id
+     * @param workId the id of the work
+     * @param after only links after this one are returned; null to start at the beginning
+     * @param limit the maximum number of links to return
+     * @return the sample and slot ids
+     */
+    public List<SampleSlotId> findSampleSlotIds(int workId, SampleSlotId after, int limit) {
+        int afterSlotId = (after==null ? 0 : after.getSlotId());
+        int afterSampleId = (after==null ? 0 : after.getSampleId());
+        Query query = entityManager.createNativeQuery("select sample_id, slot_id from work_sample " +
+                "where work_id=?1 and (slot_id > ?2 or (slot_id = ?2 and sample_id > ?3)) " +
+                "order by slot_id, sample_id limit ?4");
+        query.setHint(HINT_NATIVE_SPACES, "work_sample");
+        query.setParameter(1, workId);
+        query.setParameter(2, afterSlotId);
+        query.setParameter(3, afterSampleId);
+        query.setParameter(4, limit);
+        //noinspection unchecked
+        List<Object[]> rows = query.getResultList();
+        return rows.stream()
+                .map(row -> new SampleSlotId(((Number) row[0]).intValue(), ((Number) row[1]).intValue()))
+                .toList();
+    }
+
+    /**
+     * Streams the ids of operations linked to the given work, loading them a page at a time
+     * @param workId the id of the work
+     * @return a stream of operation ids in ascending order
+     */
+    public Stream<Integer> streamOperationIds(int workId) {
+        return Stream.iterate(findOperationIds(workId, 0, PAGE_SIZE), page -> !page.isEmpty(),
+                        page -> page.size() < PAGE_SIZE ? List.of() : findOperationIds(workId, page.getLast(), PAGE_SIZE))
+                .flatMap(List::stream);
+    }
+
+    /**
+     * Streams the ids of releases linked to the given work, loading them a page at a time
+     * @param workId the id of the work
+     * @return a stream of release ids in ascending order
+     */
+    public Stream<Integer> streamReleaseIds(int workId) {
+        return Stream.iterate(findReleaseIds(workId, 0, PAGE_SIZE), page -> !page.isEmpty(),
+                        page -> page.size() < PAGE_SIZE ? List.of() : findReleaseIds(workId, page.getLast(), PAGE_SIZE))
+                .flatMap(List::stream);
+    }
+
+    /**
+     * Streams the samples in slots linked to the given work, loading them a page at a time
+     * @param workId the id of the work
+     * @return a stream of sample and slot ids, ordered by slot id then sample id
+     */
+    public Stream<SampleSlotId> streamSampleSlotIds(int workId) {
+        return Stream.iterate(findSampleSlotIds(workId, null, PAGE_SIZE), page -> !page.isEmpty(),
+                        page -> page.size() < PAGE_SIZE ? List.of() : findSampleSlotIds(workId, page.getLast(), PAGE_SIZE))
+                .flatMap(List::stream);
+    }
+
+    private <E> void batchUpdate(String sql, Collection<? extends E> items, JdbcBatch.ParameterSetter<E> setter) {
+        JdbcBatch.update(entityManager, sql, items, setter);
+    }
+
+    private static List<Integer> intList(List<?> results) {
+        return results.stream()
+                .map(value -> ((Number) value).intValue())
+                .toList();
+    }
+}
@@ -0,0 +1,245 @@
+package uk.ac.sanger.sccp.stan.repo;
+
+import com.google.common.collect.Lists;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.*;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
+
+/**
+ * Repo for work progress.
+ * The aggregate queries cover many works at once and return the latest time for each combination
+ * of work and whatever else is grouped on, so the progress of many works can be worked out
+ * in a handful of queries. They may be restricted to particular operations, to find what those operations
+ * add to the progress of the works they are linked to.
+ * Works are queried in batches of {@link #BATCH_SIZE} to keep the parameter lists bounded.
+ * <p>
+ * The worked-out progress is stored in the {@code work_progress} table, holding the latest timestamp
+ * for each work and event label.
+ * @author dr6
+ */
+@Repository
+public class WorkProgressRepo {
+    /** The number of works included in each query */
+    static final int BATCH_SIZE = 1000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /** The latest time an operation of a particular type was recorded against a work */
+    public record OpTypeTime(int workId, int opTypeId, LocalDateTime time) {}
+
+    /**
+     * The latest time a stain operation was recorded against a work into a particular labware type
+     * with a particular stain type. Either the labware type or the stain type may be null.
+     */
+    public record StainTime(int workId, String labwareTypeName, String stainTypeName, LocalDateTime time) {}
+
+    /** The latest release of labware of a particular type that was a destination of an operation in a work */
+    public record ReleaseTime(int workId, String labwareTypeName, LocalDateTime time) {}
+
+    /**
+     * Finds the latest time each of the given operation types was performed for each of the given works
+     * @param workIds the ids of the works
+     * @param opIds the ids of the operations to include; null to include all operations
+     * @param opTypeIds the ids of the operation types to include
+     * @return the latest times found
+     */
+    public List<OpTypeTime> findOpTypeTimes(Collection<Integer> workIds, Collection<Integer> opIds,
+                                            Collection<Integer> opTypeIds) {
+        if (opTypeIds.isEmpty()) {
+            return List.of();
+        }
+        return query(workIds, opIds, "select wo.work_id, op.operation_type_id, max(op.performed) from work_op wo " +
+                        "join operation op on (wo.operation_id=op.id) " +
+                        "where wo.work_id in (:workIds) and op.operation_type_id in (:values)%s " +
+                        "group by wo.work_id, op.operation_type_id",
+                opTypeIds, row -> new OpTypeTime(intValue(row[0]), intValue(row[1]), toTime(row[2])));
+    }
+
+    /**
+     * Finds the latest time operations of the given (stain) types were performed for each of the given works,
+     * for each destination labware type and stain type recorded against those operations
+     * @param workIds the ids of the works
+     * @param opIds the ids of the operations to include; null to include all operations
+     * @param stainOpTypeIds the ids of the stain operation types
+     * @return the latest times found
+     */
+    public List<StainTime> findStainTimes(Collection<Integer> workIds, Collection<Integer> opIds,
+                                          Collection<Integer> stainOpTypeIds) {
+        if (stainOpTypeIds.isEmpty()) {
+            return List.of();
+        }
+        return query(workIds, opIds, "select wo.work_id, lt.name, st.name, max(op.performed) from work_op wo " +
+                        "join operation op on (wo.operation_id=op.id) " +
+                        "left join stain s on (s.operation_id=op.id) " +
+                        "left join stain_type st on (s.stain_type_id=st.id) " +
+                        "left join action a on (a.operation_id=op.id) " +
+                        "left join slot on (a.dest_slot_id=slot.id) " +
+                        "left join labware lw on (slot.labware_id=lw.id) " +
+                        "left join labware_type lt on (lw.labware_type_id=lt.id) " +
+                        "where wo.work_id in (:workIds) and op.operation_type_id in (:values)%s " +
+                        "group by wo.work_id, lt.name, st.name",
+                stainOpTypeIds, row -> new StainTime(intValue(row[0]), (String) row[1], (String) row[2], toTime(row[3])));
+    }
+
+    /**
+     * Finds the latest release of destination labware of the given types for each of the given works
+     * @param workIds the ids of the works
+     * @param opIds the ids of the operations to include; null to include all operations
+     * @param labwareTypeNames the names of labware types to include (lower case)
+     * @return the latest times found
+     */
+    public List<ReleaseTime> findReleaseTimes(Collection<Integer> workIds, Collection<Integer> opIds,
+                                              Collection<String> labwareTypeNames) {
+        if (labwareTypeNames.isEmpty()) {
+            return List.of();
+        }
+        return query(workIds, opIds, "select wo.work_id, lt.name, max(r.released) from work_op wo " +
+                        "join action a on (a.operation_id=wo.operation_id) " +
+                        "join slot on (a.dest_slot_id=slot.id) " +
+                        "join labware lw on (slot.labware_id=lw.id) " +
+                        "join labware_type lt on (lw.labware_type_id=lt.id) " +
+                        "join labware_release r on (r.labware_id=lw.id) " +
+                        "where wo.work_id in (:workIds) and lower(lt.name) in (:values)%s " +
+                        "group by wo.work_id, lt.name",
+                labwareTypeNames, row -> new ReleaseTime(intValue(row[0]), (String) row[1], toTime(row[2])));
+    }
+
+    /**
+     * Finds the given releases of labware of the given types, for each work with an operation into that labware
+     * @param releaseIds the ids of the releases
+     * @param labwareTypeNames the names of labware types to include (lower case)
+     * @return the latest times found
+     */
+    public List<ReleaseTime> findReleaseTimesForReleases(Collection<Integer> releaseIds,
+                                                         Collection<String> labwareTypeNames) {
+        if (releaseIds.isEmpty() || labwareTypeNames.isEmpty()) {
+            return List.of();
+        }
+        Query query = entityManager.createNativeQuery("select wo.work_id, lt.name, max(r.released) " +
+                "from labware_release r " +
+                "join labware lw on (r.labware_id=lw.id) " +
+                "join labware_type lt on (lw.labware_type_id=lt.id) " +
+                "join slot on (slot.labware_id=lw.id) " +
+                "join action a on (a.dest_slot_id=slot.id) " +
+                "join work_op wo on (wo.operation_id=a.operation_id) " +
+                "where r.id in (:releaseIds) and lower(lt.name) in (:values) " +
+                "group by wo.work_id, lt.name");
+        query.setParameter("releaseIds", releaseIds);
+        query.setParameter("values", labwareTypeNames);
+        //noinspection unchecked
+        List<Object[]> rows = query.getResultList();
+        return rows.stream()
+                .map(row -> new ReleaseTime(intValue(row[0]), (String) row[1], toTime(row[2])))
+                .toList();
+    }
+
+    /**
+     * Gets the ids of all works, in ascending order
+     * @return the ids of all works
+     */
+    public List<Integer> findAllWorkIds() {
+        //noinspection unchecked
+        List<Object> rows = entityManager.createNativeQuery("select id from work order by id").getResultList();
+        return rows.stream().map(WorkProgressRepo::intValue).toList();
+    }
+
+    /**
+     * Loads the stored progress of the given works
+     * @param workIds the ids of the works
+     * @return a map from work id to a map from event label to its latest timestamp
+     */
+    public Map<Integer, Map<String, LocalDateTime>> loadStoredTimes(Collection<Integer> workIds) {
+        Map<Integer, Map<String, LocalDateTime>> workTimes = new HashMap<>();
+        for (List<Integer> batch : batches(workIds)) {
+            Query query = entityManager.createNativeQuery("select work_id, label, timestamp from work_progress " +
+                    "where work_id in (:workIds)");
+            query.setHint(HINT_NATIVE_SPACES, "work_progress");
+            query.setParameter("workIds", batch);
+            //noinspection unchecked
+            List<Object[]> rows = query.getResultList();
+            for (Object[] row : rows) {
+                workTimes.computeIfAbsent(intValue(row[0]), k -> new HashMap<>())
+                        .put((String) row[1], toTime(row[2]));
+            }
+        }
+        return workTimes;
+    }
+
+    /**
+     * Stores the given timestamps, keeping any later timestamp already stored for the same work and label
+     * @param workTimes a map from work id to a map from event label to timestamp
+     */
+    public void storeTimes(Map<Integer, Map<String, LocalDateTime>> workTimes) {
+        List<Map.Entry<Integer, Map.Entry<String, LocalDateTime>>> rows = workTimes.entrySet().stream()
+                .flatMap(e -> e.getValue().entrySet().stream().map(lt -> Map.entry(e.getKey(), lt)))
+                .toList();
+        JdbcBatch.update(entityManager, "insert into work_progress (work_id, label, timestamp) values (?,?,?) " +
+                "on duplicate key update timestamp=greatest(timestamp, values(timestamp))", rows, (ps, row) -> {
+            ps.setInt(1, row.getKey());
+            ps.setString(2, row.getValue().getKey());
+            ps.setTimestamp(3, Timestamp.valueOf(row.getValue().getValue()));
+        });
+    }
+
+    /**
+     * Deletes the stored progress of the given works
+     * @param workIds the ids of the works
+     */
+    public void deleteStoredTimes(Collection<Integer> workIds) {
+        for (List<Integer> batch : batches(workIds)) {
+            Query query = entityManager.createNativeQuery("delete from work_progress where work_id in (:workIds)");
+            query.setHint(HINT_NATIVE_SPACES, "work_progress");
+            query.setParameter("workIds", batch);
+            query.executeUpdate();
+        }
+    }
+
+    /**
+     * Runs the given query for each batch of work ids, and converts the rows using the given function.
+     * The query should contain {@code %s} where the restriction on operation ids may be added.
+     */
+    private <R> List<R> query(Collection<Integer> workIds, Collection<Integer> opIds, String sql, Collection<?> values,
+                              Function<Object[], R> rowFunction) {
+        if (workIds.isEmpty() || opIds!=null && opIds.isEmpty()) {
+            return List.of();
+        }
+        final String filteredSql = sql.formatted(opIds==null ? "" : " and wo.operation_id in (:opIds)");
+        List<R> results = new ArrayList<>();
+        for (List<Integer> batch : batches(workIds)) {
+            Query query = entityManager.createNativeQuery(filteredSql);
+            query.setParameter("workIds", batch);
+            query.setParameter("values", values);
+            if (opIds!=null) {
+                query.setParameter("opIds", opIds);
+            }
+            //noinspection unchecked
+            List<Object[]> rows = query.getResultList();
+            for (Object[] row : rows) {
+                results.add(rowFunction.apply(row));
+            }
+        }
+        return results;
+    }
+
+    private static List<List<Integer>> batches(Collection<Integer> workIds) {
+        return Lists.partition(new ArrayList<>(workIds), BATCH_SIZE);
+    }
+
+    private static int intValue(Object value) {
+        return ((Number) value).intValue();
+    }
+
+    private static LocalDateTime toTime(Object value) {
+        if (value instanceof Timestamp ts) {
+            return ts.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+}
@@ -2,17 +2,20 @@ package uk.ac.sanger.sccp.stan.repo;
 
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.model.Work.Status;
 import uk.ac.sanger.sccp.utils.UCMap;
 
 import javax.persistence.EntityNotFoundException;
+import javax.persistence.QueryHint;
 import java.util.*;
 import java.util.function.Function;
 
 import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
+import static org.hibernate.jpa.QueryHints.HINT_NATIVE_SPACES;
 import static uk.ac.sanger.sccp.utils.BasicUtils.*;
 
 public interface WorkRepo extends CrudRepository<Work, Integer> {
@@ -22,6 +25,14 @@ public interface WorkRepo extends CrudRepository<Work, Integer> {
         return findByWorkNumber(workNumber).orElseThrow(() -> new EntityNotFoundException("Unknown work number: "+workNumber));
     }
 
+    /**
+     * Loads the specified works with their treatment types
+     * @param ids the ids of the works
+     * @return the works found, with their treatment types initialised
+     */
+    @Query("select distinct w from Work w left join fetch w.treatmentTypes where w.id in (?1)")
+    List<Work> findAllWithTreatmentTypesByIdIn(Collection<Integer> ids);
+
     @Query(value = "select prefix from work_sequence", nativeQuery = true)
     List<String> getPrefixes();
 
@@ -33,6 +44,7 @@ public interface WorkRepo extends CrudRepository<Work, Integer> {
      * @param prefix the work prefix to increment
      */
     @Modifying
+    @QueryHints(@QueryHint(name=HINT_NATIVE_SPACES, value="work_sequence"))
     @Query(value = "update work_sequence set counter = (counter + 1) where prefix = ?1", nativeQuery = true)
     void _incrementCount(String prefix);
 
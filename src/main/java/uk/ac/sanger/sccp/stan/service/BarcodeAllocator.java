@@ -0,0 +1,40 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import java.util.List;
+
+/**
+ * Service for allocating new barcodes.
+ * Barcodes must be allocated inside a transaction; if the transaction is rolled back,
+ * the barcodes it allocated may be allocated again.
+ * @author dr6
+ */
+public interface BarcodeAllocator {
+    /**
+     * Allocates the given number of barcode seeds
+     * @param number the number of seeds to allocate
+     * @return the allocated seeds
+     */
+    List<Integer> nextSeeds(int number);
+
+    /**
+     * Allocates the given number of barcodes with the given prefix
+     * @param prefix the prefix for the barcodes
+     * @param number the number of barcodes to allocate
+     * @return the allocated barcodes
+     */
+    default List<String> createBarcodes(String prefix, int number) {
+        return nextSeeds(number).stream()
+                .map(seed -> BarcodeUtils.barcode(prefix, seed))
+                .toList();
+    }
+
+    /** Allocates a new Stan barcode */
+    default String createStanBarcode() {
+        return createBarcodes(BarcodeUtils.STAN_PREFIX, 1).getFirst();
+    }
+
+    /** Allocates <tt>n</tt> new Stan barcodes */
+    default List<String> createStanBarcodes(int n) {
+        return createBarcodes(BarcodeUtils.STAN_PREFIX, n);
+    }
+}
@@ -0,0 +1,130 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uk.ac.sanger.sccp.stan.Transactor;
+import uk.ac.sanger.sccp.stan.config.BarcodeConfig;
+import uk.ac.sanger.sccp.stan.repo.BarcodeIntRepo;
+
+import javax.persistence.TransactionRequiredException;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Allocates barcodes from blocks of seeds reserved in advance.
+ * <p>Each instance of the application reserves a block of seeds in a short transaction of its own,
+ * skipping rows locked by other instances, and then hands seeds out of the block without touching
+ * any shared rows. A seed is marked as used in the transaction that allocates it.
+ * <p>Reservations expire after a lease. Seeds are only handed out during the first half of their lease,
+ * so that reservations left behind (e.g. by a restart) can be reclaimed safely once they expire.
+ * @author dr6
+ */
+@Service
+public class BarcodeAllocatorImp implements BarcodeAllocator {
+    private final BarcodeIntRepo barcodeIntRepo;
+    private final Transactor transactor;
+    private final BarcodeConfig config;
+    private final Clock clock;
+    private final String reserverId;
+
+    private final Queue<ReservedSeed> available = new ConcurrentLinkedQueue<>();
+    private final Object reserveLock = new Object();
+
+    record ReservedSeed(int seed, long expiresAt) {}
+
+    @Autowired
+    public BarcodeAllocatorImp(BarcodeIntRepo barcodeIntRepo, Transactor transactor, BarcodeConfig config, Clock clock) {
+        this.barcodeIntRepo = barcodeIntRepo;
+        this.transactor = transactor;
+        this.config = config;
+        this.clock = clock;
+        this.reserverId = UUID.randomUUID().toString();
+    }
+
+    @Override
+    public List<Integer> nextSeeds(int number) {
+        if (number < 0) {
+            throw new IllegalArgumentException("Cannot allocate a negative number of barcodes.");
+        }
+        if (number==0) {
+            return List.of();
+        }
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new TransactionRequiredException();
+        }
+        List<ReservedSeed> taken = take(number);
+        List<Integer> seeds = taken.stream().map(ReservedSeed::seed).toList();
+        int marked = barcodeIntRepo.markUsed(reserverId, seeds);
+        if (marked != seeds.size()) {
+            throw new IllegalStateException("Reserved barcode seeds are no longer available.");
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status==STATUS_ROLLED_BACK) {
+                    available.addAll(taken);
+                }
+            }
+        });
+        return seeds;
+    }
+
+    /**
+     * Takes the given number of unexpired seeds from the reserved seeds, reserving more as necessary
+     * @param number the number of seeds to take
+     * @return the seeds taken
+     */
+    List<ReservedSeed> take(int number) {
+        List<ReservedSeed> taken = new ArrayList<>(number);
+        while (taken.size() < number) {
+            ReservedSeed rs = available.poll();
+            if (rs==null) {
+                reserve(number - taken.size());
+            } else if (rs.expiresAt() > clock.millis()) {
+                taken.add(rs);
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * Reserves a new block of seeds, unless some are already available.
+     * If there are not enough free seeds, expired reservations are released and reserved again.
+     * @param needed the minimum number of seeds wanted
+     * @exception IllegalStateException if no seeds could be reserved
+     */
+    void reserve(int needed) {
+        synchronized (reserveLock) {
+            if (!available.isEmpty()) {
+                return;
+            }
+            final int blockSize = Math.max(needed, config.getBlockSize());
+            final LocalDateTime now = LocalDateTime.now(clock);
+            final long expiresAt = clock.millis() + config.getLeaseMinutes() * 30_000L;
+            List<Integer> seeds = transactor.transactNew("Reserve barcode seeds", () -> {
+                List<Integer> reserved = barcodeIntRepo.reserve(reserverId, now, blockSize);
+                if (reserved.size() < blockSize
+                        && barcodeIntRepo.releaseExpired(now.minusMinutes(config.getLeaseMinutes())) > 0) {
+                    reserved = new ArrayList<>(reserved);
+                    reserved.addAll(barcodeIntRepo.reserve(reserverId, now, blockSize - reserved.size()));
+                }
+                return reserved;
+            });
+            if (seeds.isEmpty()) {
+                throw new IllegalStateException("No barcode seeds are available.");
+            }
+            for (Integer seed : seeds) {
+                available.add(new ReservedSeed(seed, expiresAt));
+            }
+        }
+    }
+
+    /** The identifier recorded against the seeds reserved by this instance */
+    String getReserverId() {
+        return this.reserverId;
+    }
+}
@@ -1,5 +1,6 @@
 package uk.ac.sanger.sccp.stan.service;
 
+import org.hibernate.Hibernate;
 import org.springframework.data.repository.CrudRepository;
 import uk.ac.sanger.sccp.stan.Transactor;
 import uk.ac.sanger.sccp.stan.model.HasEnabled;
@@ -24,16 +25,18 @@ public abstract class BaseAdminService<E extends HasEnabled, R extends CrudRepos
     final Validator<String> stringValidator;
     final Transactor transactor;
     final AdminNotifyService notifyService;
+    final ReferenceDataCache refDataCache;
 
     protected BaseAdminService(R repo, String entityTypeName, String stringFieldName,
                                Validator<String> stringValidator, Transactor transactor,
-                               AdminNotifyService notifyService) {
+                               AdminNotifyService notifyService, ReferenceDataCache refDataCache) {
         this.repo = repo;
         this.entityTypeName = entityTypeName;
         this.missingFieldMessage = stringFieldName+" not supplied.";
         this.stringValidator = stringValidator;
         this.transactor = transactor;
         this.notifyService = notifyService;
+        this.refDataCache = refDataCache;
     }
 
     /**
@@ -48,6 +51,7 @@ public abstract class BaseAdminService<E extends HasEnabled, R extends CrudRepos
     public E addNew(User creator, String string) {
         E newValue = transactor.transact("Add "+entityTypeName,
                 () -> repo.save(newEntity(validateEntity(string))));
+        refDataCache.invalidate(Hibernate.getClass(newValue));
         if (creator != null && creator.getRole() == User.Role.enduser) {
             sendNewEntityEmail(creator, newValue);
         }
@@ -110,7 +114,9 @@ public abstract class BaseAdminService<E extends HasEnabled, R extends CrudRepos
             return entity;
         }
         entity.setEnabled(enabled);
-        return repo.save(entity);
+        entity = repo.save(entity);
+        refDataCache.invalidate(Hibernate.getClass(entity));
+        return entity;
     }
 
     /**
@@ -26,8 +26,9 @@ public class BioRiskService extends BaseAdminService<BioRisk, BioRiskRepo> {
     @Autowired
     public BioRiskService(BioRiskRepo repo,
                           @Qualifier("bioRiskCodeValidator") Validator<String> bioRiskCodeValidator,
-                          Transactor transactor, AdminNotifyService notifyService) {
-        super(repo, "BioRisk", "Code", bioRiskCodeValidator, transactor, notifyService);
+                          Transactor transactor, AdminNotifyService notifyService,
+                          ReferenceDataCache refDataCache) {
+        super(repo, "BioRisk", "Code", bioRiskCodeValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
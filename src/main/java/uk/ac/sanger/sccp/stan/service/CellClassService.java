@@ -18,8 +18,9 @@ public class CellClassService extends BaseAdminService<CellClass, CellClassRepo>
     @Autowired
     public CellClassService(CellClassRepo repo,
                             @Qualifier("cellClassValidator") Validator<String> cellClassValidator,
-                            Transactor transactor, AdminNotifyService notifyService) {
-        super(repo, "CellClass", "Name", cellClassValidator, transactor, notifyService);
+                            Transactor transactor, AdminNotifyService notifyService,
+                            ReferenceDataCache refDataCache) {
+        super(repo, "CellClass", "Name", cellClassValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
@@ -21,14 +21,17 @@ public class CommentAdminService {
     private final CommentRepo commentRepo;
     private final Validator<String> commentCategoryValidator;
     private final Validator<String> commentTextValidator;
+    private final ReferenceDataCache refDataCache;
 
     @Autowired
     public CommentAdminService(CommentRepo commentRepo,
                                @Qualifier("commentCategoryValidator") Validator<String> commentCategoryValidator,
-                               @Qualifier("commentTextValidator") Validator<String> commentTextValidator) {
+                               @Qualifier("commentTextValidator") Validator<String> commentTextValidator,
+                               ReferenceDataCache refDataCache) {
         this.commentRepo = commentRepo;
         this.commentCategoryValidator = commentCategoryValidator;
         this.commentTextValidator = commentTextValidator;
+        this.refDataCache = refDataCache;
     }
 
     /**
@@ -63,7 +66,9 @@ public class CommentAdminService {
                     repr(category), repr(text)));
         }
 
-        return commentRepo.save(new Comment(null, text, category));
+        Comment comment = commentRepo.save(new Comment(null, text, category));
+        refDataCache.invalidate(Comment.class);
+        return comment;
     }
 
     /**
@@ -79,6 +84,7 @@ public class CommentAdminService {
         if (comment.isEnabled() != enabled) {
             comment.setEnabled(enabled);
             comment = commentRepo.save(comment);
+            refDataCache.invalidate(Comment.class);
         }
         return comment;
     }
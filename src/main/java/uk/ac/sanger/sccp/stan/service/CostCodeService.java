@@ -18,8 +18,9 @@ public class CostCodeService extends BaseAdminService<CostCode, CostCodeRepo> {
     @Autowired
     public CostCodeService(CostCodeRepo costCodeRepo,
                            @Qualifier("costCodeValidator") Validator<String> costCodeValidator,
-                           Transactor transactor, AdminNotifyService notifyService) {
-        super(costCodeRepo, "CostCode", "Code", costCodeValidator, transactor, notifyService);
+                           Transactor transactor, AdminNotifyService notifyService,
+                           ReferenceDataCache refDataCache) {
+        super(costCodeRepo, "CostCode", "Code", costCodeValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
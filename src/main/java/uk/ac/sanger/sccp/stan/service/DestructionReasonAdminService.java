@@ -18,9 +18,10 @@ public class DestructionReasonAdminService extends BaseAdminService<DestructionR
     @Autowired
     public DestructionReasonAdminService(DestructionReasonRepo destructionReasonRepo,
                                          @Qualifier("destructionReasonValidator") Validator<String> destructionReasonValidator,
-                                         Transactor transactor, AdminNotifyService notifyService) {
+                                         Transactor transactor, AdminNotifyService notifyService,
+                                         ReferenceDataCache refDataCache) {
         super(destructionReasonRepo, "Destruction reason", "Text",
-                destructionReasonValidator, transactor, notifyService);
+                destructionReasonValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
@@ -19,13 +19,16 @@ public class EquipmentAdminService {
     private final EquipmentRepo equipmentRepo;
     private final Validator<String> equipmentCategoryValidator;
     private final Validator<String> equipmentNameValidator;
+    private final ReferenceDataCache refDataCache;
 
     public EquipmentAdminService(EquipmentRepo equipmentRepo,
                                  @Qualifier("equipmentCategoryValidator") Validator<String> equipmentCategoryValidator,
-                                 @Qualifier("equipmentNameValidator") Validator<String> equipmentNameValidator) {
+                                 @Qualifier("equipmentNameValidator") Validator<String> equipmentNameValidator,
+                                 ReferenceDataCache refDataCache) {
         this.equipmentRepo = equipmentRepo;
         this.equipmentCategoryValidator = equipmentCategoryValidator;
         this.equipmentNameValidator = equipmentNameValidator;
+        this.refDataCache = refDataCache;
     }
 
     public Iterable<Equipment> getEquipment(String category, boolean includeDisabled) {
@@ -45,7 +48,9 @@ public class EquipmentAdminService {
             throw new EntityExistsException(String.format("Equipment already exists: (category=%s, name=%s)",
                     repr(category), repr(name)));
         }
-        return equipmentRepo.save(new Equipment(name, category.toLowerCase()));
+        Equipment eq = equipmentRepo.save(new Equipment(name, category.toLowerCase()));
+        refDataCache.invalidate(Equipment.class);
+        return eq;
     }
 
     public Equipment renameEquipment(int equipmentId, String newName) {
@@ -56,7 +61,9 @@ public class EquipmentAdminService {
             return eq;
         }
         eq.setName(newName);
-        return equipmentRepo.save(eq);
+        eq = equipmentRepo.save(eq);
+        refDataCache.invalidate(Equipment.class);
+        return eq;
     }
 
     public Equipment setEquipmentEnabled(int equipmentId, boolean enabled) {
@@ -64,6 +71,7 @@ public class EquipmentAdminService {
         if (eq.isEnabled() != enabled) {
             eq.setEnabled(enabled);
             eq = equipmentRepo.save(eq);
+            refDataCache.invalidate(Equipment.class);
         }
         return eq;
     }
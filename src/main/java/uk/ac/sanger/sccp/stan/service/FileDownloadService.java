@@ -0,0 +1,25 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import uk.ac.sanger.sccp.stan.model.StanFile;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Service for sending stored files in HTTP responses, supporting byte ranges and conditional requests.
+ * @author dr6
+ */
+public interface FileDownloadService {
+    /**
+     * Writes the indicated file to the given response.
+     * Honours the {@code Range}, {@code If-Range} and {@code If-None-Match} headers of the request,
+     * so the response may be the whole file, part of it, or a {@code 304 Not Modified}.
+     * @param stanFile the file to send
+     * @param request the request for the file
+     * @param response the response to write
+     * @exception IllegalStateException if the file is deprecated
+     * @exception IOException if the file cannot be read or the response cannot be written
+     */
+    void serve(StanFile stanFile, HttpServletRequest request, HttpServletResponse response) throws IOException;
+}
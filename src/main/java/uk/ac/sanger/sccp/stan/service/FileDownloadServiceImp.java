@@ -0,0 +1,190 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.*;
+import org.springframework.stereotype.Service;
+import uk.ac.sanger.sccp.stan.model.StanFile;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+
+/**
+ * Sends stored files using {@link FileChannel#transferTo}, so the file data is not copied through the heap.
+ * When the servlet container supports it (Tomcat's NIO connector without TLS), the file is instead
+ * handed to the container's sendfile support, so the data goes straight from the file to the socket.
+ * <p>
+ * A single byte range may be requested; requests for multiple ranges are answered with the whole file.
+ * The ETag of a file is strong if the file has a stored content hash, and weak (derived from the size and
+ * modification time) otherwise. Since {@code If-Range} requires a strong validator, ranges of files without
+ * a content hash can only be resumed using a date.
+ * @author dr6
+ */
+@Service
+public class FileDownloadServiceImp implements FileDownloadService {
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support",
+            SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename",
+            SENDFILE_START = "org.apache.tomcat.sendfile.start",
+            SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    /** Responses smaller than this are written directly rather than using sendfile (as in Tomcat's DefaultServlet) */
+    static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    private final FileStoreService fileStoreService;
+
+    @Autowired
+    public FileDownloadServiceImp(FileStoreService fileStoreService) {
+        this.fileStoreService = fileStoreService;
+    }
+
+    @Override
+    public void serve(StanFile stanFile, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Path path = fileStoreService.getStoredPath(stanFile);
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        final long length = attrs.size();
+        final long lastModified = attrs.lastModifiedTime().toMillis();
+        final String eTag = eTag(stanFile, length, lastModified);
+
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (noneMatch(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + stanFile.getName() + "\"");
+        response.setContentType(MediaTypeFactory.getMediaType(stanFile.getName())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        HttpRange range = requestedRange(request, eTag, lastModified);
+        if (range==null) {
+            response.setStatus(HttpServletResponse.SC_OK);
+            send(path, 0, length, request, response);
+            return;
+        }
+        long start = range.getRangeStart(length);
+        long end = range.getRangeEnd(length);
+        if (start >= length || start > end) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        send(path, start, end + 1 - start, request, response);
+    }
+
+    /**
+     * Gets the ETag for a file: strong if the file has a content hash; otherwise weak.
+     * @param stanFile the file
+     * @param length the size of the file in bytes
+     * @param lastModified the modification time of the file
+     * @return the ETag, including its quotes
+     */
+    public String eTag(StanFile stanFile, long length, long lastModified) {
+        if (stanFile.getContentHash()!=null) {
+            return '"' + stanFile.getContentHash() + '"';
+        }
+        return "W/\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + '"';
+    }
+
+    /**
+     * Checks the value of an {@code If-None-Match} header against the given ETag, using weak comparison
+     * @param header the value of the header, or null
+     * @param eTag the current ETag of the file
+     * @return true if the header matches the ETag (so the file is not modified); false if it does not
+     */
+    public boolean noneMatch(String header, String eTag) {
+        if (header==null) {
+            return false;
+        }
+        String opaqueTag = opaqueTag(eTag);
+        for (String part : header.split(",")) {
+            String tag = part.trim();
+            if (tag.equals("*") || opaqueTag(tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the single byte range requested, if the range applies.
+     * The range applies if there is no {@code If-Range} header, or if the header has the same strong ETag
+     * or the same last modified date as the file.
+     * A missing, malformed or multiple range request is treated as a request for the whole file.
+     * @return the single requested range, or null if the whole file should be sent
+     */
+    public HttpRange requestedRange(HttpServletRequest request, String eTag, long lastModified) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader==null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange!=null) {
+            ifRange = ifRange.trim();
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+                if (eTag.startsWith("W/") || !ifRange.equals(eTag)) {
+                    return null;
+                }
+            } else {
+                long date;
+                try {
+                    date = request.getDateHeader(HttpHeaders.IF_RANGE);
+                } catch (IllegalArgumentException e) {
+                    return null;
+                }
+                if (date / 1000 != lastModified / 1000) {
+                    return null;
+                }
+            }
+        }
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return (ranges.size()==1 ? ranges.getFirst() : null);
+    }
+
+    /**
+     * Sends part of the file as the body of the response
+     * @param path the path of the file
+     * @param start the index of the first byte to send
+     * @param count the number of bytes to send
+     */
+    void send(Path path, long start, long count, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setContentLengthLong(count);
+        if (count==0) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT)) && count >= SENDFILE_MIN_SIZE) {
+            request.setAttribute(SENDFILE_FILENAME, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + count);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            final long end = start + count;
+            long position = start;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, out);
+                if (sent <= 0) {
+                    throw new EOFException("File ended before byte "+end+": "+path);
+                }
+                position += sent;
+            }
+        }
+    }
+
+    private static String opaqueTag(String tag) {
+        return (tag.startsWith("W/") ? tag.substring(2) : tag);
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.web.multipart.MultipartFile;
 import uk.ac.sanger.sccp.stan.model.StanFile;
 import uk.ac.sanger.sccp.stan.model.User;
 
+import java.nio.file.Path;
 import java.util.Collection;
 import java.util.List;
 
@@ -12,6 +13,7 @@ import java.util.List;
 public interface FileStoreService {
     /**
      * Saves a file, creating one or more new entries in the files table (with an internal transaction).
+     * The data is stored by content, so uploading the same data again does not store it again.
      * @param user user uploading the file
      * @param multipartFile the file data
      * @param workNumbers the work numbers to save the file in association with
@@ -21,6 +23,42 @@ public interface FileStoreService {
      */
     Iterable<StanFile> save(User user, MultipartFile multipartFile, List<String> workNumbers);
 
+    /**
+     * Saves a file whose data has already been written to disk inside the store, in the same way as
+     * {@link #save(User, MultipartFile, List)}.
+     * The data file is linked (or copied) into the store if its content is not already stored, and is always
+     * left in place, so it is not lost if saving fails. The caller should delete it once this returns.
+     * @param user user uploading the file
+     * @param name the name of the file
+     * @param data the path of the file data, in the same volume as the store
+     * @param workNumbers the work numbers to save the file in association with
+     * @return one or more new stanfiles from the database
+     * @exception java.io.UncheckedIOException if saving the file causes an IOException
+     * @exception javax.persistence.EntityNotFoundException if referenced entities do not exist
+     */
+    Iterable<StanFile> save(User user, String name, Path data, List<String> workNumbers);
+
+    /**
+     * Checks that a file with the given name could be saved by the given user in association with the given works
+     * @param user user uploading the file
+     * @param name the name of the file
+     * @param workNumbers the work numbers to save the file in association with
+     * @return the name that would be recorded for the file
+     * @exception IllegalArgumentException if the name is too long or no work numbers are given
+     * @exception javax.persistence.EntityNotFoundException if referenced entities do not exist
+     * @exception org.springframework.security.authentication.InsufficientAuthenticationException
+     *            if the user is not allowed to upload files for the works
+     */
+    String validateUpload(User user, String name, List<String> workNumbers);
+
+    /**
+     * Gets the location where the data for the given stan file is stored
+     * @param stanFile an existing StanFile object
+     * @return the path to the stored data
+     * @exception IllegalStateException if the indicated is deprecated (i.e. replaced by a newer version)
+     */
+    Path getStoredPath(StanFile stanFile);
+
     /**
      * Loads the data for the given stan file
      * @param stanFile an existing StanFile object
@@ -45,4 +83,12 @@ public interface FileStoreService {
      * @exception javax.persistence.EntityNotFoundException if any of the indicated work cannot be found
      */
     List<StanFile> list(Collection<String> workNumbers);
+
+    /**
+     * Moves active files that were stored at their own paths into the content-addressed blob store,
+     * so that files with the same content share a single copy.
+     * Each file is moved in its own transaction; files that cannot be moved are logged and skipped.
+     * @return the number of stored files moved
+     */
+    int dedupe();
 }
@@ -5,6 +5,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.UrlResource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.authentication.InsufficientAuthenticationException;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -13,11 +14,10 @@ import uk.ac.sanger.sccp.stan.config.StanFileConfig;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.repo.*;
 
-import java.io.IOException;
-import java.io.UncheckedIOException;
+import java.io.*;
 import java.net.MalformedURLException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.*;
+import java.security.*;
 import java.time.Clock;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -27,12 +27,26 @@ import static java.util.stream.Collectors.toSet;
 import static uk.ac.sanger.sccp.utils.BasicUtils.*;
 
 /**
+ * Files are stored by content: each upload is written to a temporary file while it is hashed, then saved once,
+ * as a blob named after its hash, under {@code <dir>/blobs}. The blob is a hard link to (or a copy of) the
+ * uploaded data, which is only deleted once the stan files have been saved. Every stan file with the same
+ * content points at the same blob.
+ * A blob is deleted when no active stan file uses it any more.
+ * <p>Several instances of the application may share the store, so adding a blob and linking files to it,
+ * and checking that a blob is unused and deleting it, are each done in a transaction holding a
+ * {@link StanFileRepo#lockBlobs database lock}.
+ * Files stored before this used their own paths; {@link #dedupe} moves those into the blob store.
  * @author dr6
  */
 @Service
 public class FileStoreServiceImp implements FileStoreService {
     private static final Logger log = LoggerFactory.getLogger(FileStoreServiceImp.class);
 
+    /** The subdirectory of the store directory containing blobs */
+    static final String BLOB_DIR = "blobs";
+    /** The subdirectory of the store directory where uploads are written before they are hashed */
+    static final String TEMP_DIR = "tmp";
+
     private final StanFileConfig config;
     private final Clock clock;
     private final Transactor transactor;
@@ -53,51 +67,111 @@ public class FileStoreServiceImp implements FileStoreService {
 
     @Override
     public Iterable<StanFile> save(User user, MultipartFile fileData, List<String> workNumbers) {
+        Set<Work> works = loadWorks(user, workNumbers);
+        final String filename = checkFilename(fileData.getOriginalFilename());
+        Path temp = null;
+        try {
+            temp = createTempFile();
+            String contentHash = store(fileData, temp);
+            return saveBlob(user, filename, works, temp, contentHash);
+        } catch (IOException e) {
+            log.error("Saving file failed: {}", filename);
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteTempFile(temp);
+        }
+    }
+
+    @Override
+    public Iterable<StanFile> save(User user, String name, Path data, List<String> workNumbers) {
+        Set<Work> works = loadWorks(user, workNumbers);
+        final String filename = checkFilename(name);
+        try {
+            String contentHash = hash(data);
+            return saveBlob(user, filename, works, data, contentHash);
+        } catch (IOException e) {
+            log.error("Saving file failed: {}", filename);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String validateUpload(User user, String name, List<String> workNumbers) {
+        loadWorks(user, workNumbers);
+        return checkFilename(name);
+    }
+
+    /**
+     * Loads the indicated works and checks that the user is allowed to upload files to them
+     * @param user the user uploading a file
+     * @param workNumbers the work numbers
+     * @return the works
+     * @exception IllegalArgumentException if no work numbers are specified
+     * @exception javax.persistence.EntityNotFoundException if any of the works do not exist
+     * @exception InsufficientAuthenticationException if the user is not authorised
+     */
+    Set<Work> loadWorks(User user, List<String> workNumbers) {
         if (nullOrEmpty(workNumbers)) {
             throw new IllegalArgumentException("No work numbers specified.");
         }
         Set<Work> works = workRepo.getSetByWorkNumberIn(workNumbers);
         checkAuthorisation(user, works);
+        return works;
+    }
 
-        String filename = getFilename(fileData);
+    /**
+     * Gets the name to record for an uploaded file: the name without any directories, or "unnamed"
+     * @param name the name supplied with the upload
+     * @return the name to record
+     * @exception IllegalArgumentException if the name is too long
+     */
+    String checkFilename(String name) {
+        if (name!=null) {
+            int c = name.lastIndexOf('/');
+            if (c >= 0) {
+                name = name.substring(c+1);
+            }
+        }
+        String filename = (name==null || name.isEmpty() ? "unnamed" : name);
         if (filename.length() > StanFile.MAX_NAME_LENGTH) {
             throw new IllegalArgumentException("Filename too long: "+repr(filename));
         }
-        String san = filename.replaceAll("[^a-zA-Z0-9_-]+", "");
-        if (san.isEmpty()) {
-            san = "unnamed";
-        }
+        return filename;
+    }
 
+    /**
+     * Adds the given data to the blob store and creates stan files for it, deprecating the files it replaces.
+     * Blobs that are no longer used afterwards are deleted.
+     * @param user the user uploading the file
+     * @param filename the name of the file
+     * @param works the works to link the file to
+     * @param data the file containing the data, which is linked into the blob store if the blob is new,
+     *        and left in place for the caller to delete
+     * @param contentHash the hash of the data
+     * @return the new stan files
+     * @exception UncheckedIOException the data could not be added to the blob store
+     */
+    Iterable<StanFile> saveBlob(User user, String filename, Collection<Work> works, Path data, String contentHash) {
         LocalDateTime now = LocalDateTime.now(clock);
-
-        String savedFilename = now + "_" + san;
-        Path path = Paths.get(config.getDir(), savedFilename);
-        int len = path.toString().length();
-        if (len > StanFile.MAX_PATH_LENGTH) {
-            int excess = len - StanFile.MAX_PATH_LENGTH;
-            savedFilename = savedFilename.substring(0, savedFilename.length()-excess);
-            path = Paths.get(config.getDir(), savedFilename);
-        }
-
-        final String pathString = path.toString();
-
-        synchronized (FileStoreServiceImp.class) {
-            if (fileRepo.existsByPath(pathString)) {
-                throw new IllegalArgumentException("The database already contains a file with path " + pathString);
-            }
-
-            final Path fullDestPath = Paths.get(config.getRoot(), config.getDir(), savedFilename);
-
-            try {
-                fileData.transferTo(fullDestPath);
-            } catch (IOException e) {
-                log.error("Saving file failed: {}", fullDestPath);
-                throw new UncheckedIOException(e);
-            }
-
-            return transactor.transact("updateStanFiles",
-                    () -> updateStanFiles(user, filename, works, now, pathString));
+        final String blobPath = blobPath(contentHash);
+        final Set<String> deprecatedPaths = new HashSet<>();
+        Iterable<StanFile> stanFiles;
+        try {
+            stanFiles = transactor.transact("updateStanFiles", () -> {
+                fileRepo.lockBlobs();
+                try {
+                    linkBlob(data, Paths.get(config.getRoot(), blobPath));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return updateStanFiles(user, filename, works, now, blobPath, contentHash, deprecatedPaths);
+            });
+        } catch (RuntimeException e) {
+            releaseBlobs(List.of(blobPath));
+            throw e;
         }
+        releaseBlobs(deprecatedPaths);
+        return stanFiles;
     }
 
     /**
@@ -130,33 +204,145 @@ public class FileStoreServiceImp implements FileStoreService {
         }
     }
 
+    /**
+     * Writes the uploaded data to the given path, hashing it as it is written
+     * @param fileData the uploaded data
+     * @param dest the path to write to
+     * @return the hex-encoded hash of the data
+     * @exception IOException the data could not be written
+     */
+    public String store(MultipartFile fileData, Path dest) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(fileData.getInputStream(), digest)) {
+            Files.copy(in, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Creates a temporary file in the store, in which an upload can be written before it is hashed
+     * @return the path of the new file
+     * @exception IOException the file could not be created
+     */
+    Path createTempFile() throws IOException {
+        Path tempDir = Paths.get(config.getRoot(), config.getDir(), TEMP_DIR);
+        Files.createDirectories(tempDir);
+        return Files.createTempFile(tempDir, "upload", ".tmp");
+    }
+
+    private static void deleteTempFile(Path path) {
+        if (path!=null) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.error("Failed to delete temporary file "+path, e);
+            }
+        }
+    }
+
+    /**
+     * Gets the path (relative to the store root) of the blob for the given hash
+     * @param hash the hex-encoded hash of some data
+     * @return the path of the blob for the data
+     */
+    public String blobPath(String hash) {
+        String path = Paths.get(config.getDir(), BLOB_DIR, hash.substring(0, 2), hash).toString();
+        if (path.length() > StanFile.MAX_PATH_LENGTH) {
+            throw new IllegalStateException("Blob path is too long: "+path);
+        }
+        return path;
+    }
+
+    /**
+     * Is the given path (relative to the store root) in the blob store?
+     * Files stored before the blob store was introduced are not, and are never deleted automatically.
+     */
+    public boolean isBlobPath(String path) {
+        return path.startsWith(Paths.get(config.getDir(), BLOB_DIR) + File.separator);
+    }
+
+    /**
+     * Deletes any of the given blobs that are no longer used by any active stan file.
+     * The blobs are checked and deleted in a transaction holding the {@link StanFileRepo#lockBlobs blob lock},
+     * so another instance cannot link a file to a blob as it is deleted.
+     * Failure to delete a blob is logged and otherwise ignored.
+     * This should be called after the changes to the stan files have been committed.
+     * @param paths the paths (relative to the store root) of blobs that may no longer be used
+     */
+    public void releaseBlobs(Collection<String> paths) {
+        List<String> blobPaths = paths.stream().filter(this::isBlobPath).toList();
+        if (blobPaths.isEmpty()) {
+            return;
+        }
+        transactor.transact("releaseBlobs", () -> {
+            fileRepo.lockBlobs();
+            for (String path : blobPaths) {
+                if (fileRepo.countActiveByPath(path) > 0) {
+                    continue;
+                }
+                try {
+                    if (Files.deleteIfExists(Paths.get(config.getRoot(), path))) {
+                        log.info("Deleted unused blob {}", path);
+                    }
+                } catch (IOException e) {
+                    log.error("Failed to delete unused blob "+path, e);
+                }
+            }
+            return null;
+        });
+    }
+
+    /** Creates a digest for {@link StanFile#HASH_ALGORITHM} */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(StanFile.HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the given file to get its hash
+     * @param path the file to read
+     * @return the hex-encoded hash of the file's data
+     * @exception IOException the file could not be read
+     */
+    public String hash(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new DigestInputStream(Files.newInputStream(path), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
     private Iterable<StanFile> updateStanFiles(User user, String originalName, Collection<Work> works,
-                                               LocalDateTime now, String storedPath) {
+                                               LocalDateTime now, String storedPath, String contentHash,
+                                               Set<String> deprecatedPaths) {
         List<Integer> workIds = works.stream().map(Work::getId).collect(toList());
-        deprecateOldFiles(originalName, workIds, now);
+        for (StanFile sf : deprecateOldFiles(originalName, workIds, now)) {
+            deprecatedPaths.add(sf.getPath());
+        }
         List<StanFile> newStanFiles = works.stream()
-                .map(work -> new StanFile(work, user, originalName, storedPath))
+                .map(work -> {
+                    StanFile sf = new StanFile(work, user, originalName, storedPath);
+                    sf.setContentHash(contentHash);
+                    return sf;
+                })
                 .collect(toList());
         return fileRepo.saveAll(newStanFiles);
     }
 
-    private String getFilename(MultipartFile file) {
-        String name = file.getOriginalFilename();
-        if (name!=null) {
-            int c = name.lastIndexOf('/');
-            if (c >= 0) {
-                name = name.substring(c+1);
-            }
+    @Override
+    public Path getStoredPath(StanFile stanFile) {
+        if (!stanFile.isActive()) {
+            throw new IllegalStateException("File is inactive: "+stanFile.getPath());
         }
-        return (name==null || name.isEmpty() ? "unnamed" : name);
+        return Paths.get(config.getRoot(), stanFile.getPath());
     }
 
     @Override
     public Resource loadResource(StanFile stanFile) {
-        if (!stanFile.isActive()) {
-            throw new IllegalStateException("File is inactive: "+stanFile.getPath());
-        }
-        Path path = Paths.get(config.getRoot(), stanFile.getPath());
+        Path path = getStoredPath(stanFile);
         try {
             return new UrlResource(path.toUri());
         } catch (MalformedURLException e) {
@@ -169,15 +355,119 @@ public class FileStoreServiceImp implements FileStoreService {
         return fileRepo.getById(id);
     }
 
-    public void deprecateOldFiles(String name, Collection<Integer> workIds, LocalDateTime timestamp) {
+    /**
+     * Deprecates the active files with the given name linked to any of the given works
+     * @param name the name of the files
+     * @param workIds the ids of the works
+     * @param timestamp the deprecation time to record
+     * @return the files that have been deprecated
+     */
+    public List<StanFile> deprecateOldFiles(String name, Collection<Integer> workIds, LocalDateTime timestamp) {
         List<StanFile> oldFiles = fileRepo.findAllActiveByWorkIdAndName(workIds, name);
         if (oldFiles.isEmpty()) {
-            return;
+            return oldFiles;
         }
         for (StanFile f : oldFiles) {
             f.setDeprecated(timestamp);
         }
         fileRepo.saveAll(oldFiles);
+        return oldFiles;
+    }
+
+    @Override
+    public int dedupe() {
+        Set<String> legacyPaths = transactor.transactReadOnly("find legacy files",
+                () -> fileRepo.findAllActive().stream()
+                        .map(StanFile::getPath)
+                        .filter(path -> !isBlobPath(path))
+                        .collect(toLinkedHashSet()));
+        if (legacyPaths.isEmpty()) {
+            log.info("No files found to move into the blob store");
+            return 0;
+        }
+        log.info("Moving {} files into the blob store", legacyPaths.size());
+        int count = 0;
+        for (String path : legacyPaths) {
+            try {
+                if (moveToBlob(path)) {
+                    ++count;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to move file "+path+" into the blob store", e);
+            }
+        }
+        log.info("Moved {} files into the blob store", count);
+        return count;
+    }
+
+    /**
+     * Moves files into the blob store, triggered on a schedule.
+     */
+    @Scheduled(cron = "${stan.store.dedupe.schedule:-}", zone = "GMT")
+    public void scheduledDedupe() {
+        dedupe();
+    }
+
+    /**
+     * Moves a file stored at its own path into the blob store.
+     * The blob is linked (or, if linking is not possible, copied) and the stan files updated to use it
+     * in one transaction holding the {@link StanFileRepo#lockBlobs blob lock},
+     * and the old file is only deleted after that, so a failure part way through loses nothing.
+     * If a blob with the same content already exists, the old file is just deleted.
+     * @param path the path of the file, relative to the store root
+     * @return true if the file was moved; false if it could not be found
+     * @exception IOException the file could not be read or the blob could not be written
+     */
+    public boolean moveToBlob(String path) throws IOException {
+        Path source = Paths.get(config.getRoot(), path);
+        if (!Files.isRegularFile(source)) {
+            log.warn("Stored file not found: {}", source);
+            return false;
+        }
+        final String hash = hash(source);
+        final String blobPath = blobPath(hash);
+        final Path dest = Paths.get(config.getRoot(), blobPath);
+        transactor.transact("move file to blob", () -> {
+            fileRepo.lockBlobs();
+            try {
+                linkBlob(source, dest);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            List<StanFile> stanFiles = fileRepo.findAllByPath(path);
+            for (StanFile sf : stanFiles) {
+                sf.setPath(blobPath);
+                sf.setContentHash(hash);
+            }
+            return fileRepo.saveAll(stanFiles);
+        });
+        Files.delete(source);
+        return true;
+    }
+
+    /**
+     * Links (or, if linking is not possible, copies) the given file to the given blob, unless the blob already exists.
+     * The caller should hold the {@link StanFileRepo#lockBlobs blob lock}.
+     * @param source the file containing the data
+     * @param dest the path of the blob
+     * @exception IOException the blob could not be written
+     */
+    void linkBlob(Path source, Path dest) throws IOException {
+        if (Files.exists(dest)) {
+            return;
+        }
+        Files.createDirectories(dest.getParent());
+        try {
+            Files.createLink(dest, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            Path temp = createTempFile();
+            try {
+                Files.copy(source, temp, StandardCopyOption.REPLACE_EXISTING);
+                Files.move(temp, dest, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                deleteTempFile(temp);
+            }
+        }
     }
 
     @Override
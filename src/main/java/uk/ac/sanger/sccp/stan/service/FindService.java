@@ -1,5 +1,6 @@
 package uk.ac.sanger.sccp.stan.service;
 
+import com.google.common.collect.Iterators;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import uk.ac.sanger.sccp.stan.model.*;
@@ -27,6 +28,9 @@ import static uk.ac.sanger.sccp.utils.BasicUtils.*;
  */
 @Service
 public class FindService {
+    /** The number of a work's slots loaded at once when finding by work number */
+    static final int SLOT_PAGE_SIZE = 1000;
+
     private final LabwareService labwareService;
     private final StoreService storeService;
 
@@ -37,11 +41,12 @@ public class FindService {
     private final TissueTypeRepo tissueTypeRepo;
     private final WorkRepo workRepo;
     private final SlotRepo slotRepo;
+    private final WorkLinkRepo workLinkRepo;
 
     @Autowired
     public FindService(LabwareService labwareService, StoreService storeService,
                        LabwareRepo labwareRepo, DonorRepo donorRepo, TissueRepo tissueRepo, SampleRepo sampleRepo,
-                       TissueTypeRepo tissueTypeRepo, WorkRepo workRepo, SlotRepo slotRepo) {
+                       TissueTypeRepo tissueTypeRepo, WorkRepo workRepo, SlotRepo slotRepo, WorkLinkRepo workLinkRepo) {
         this.labwareService = labwareService;
         this.storeService = storeService;
         this.labwareRepo = labwareRepo;
@@ -51,6 +56,7 @@ public class FindService {
         this.tissueTypeRepo = tissueTypeRepo;
         this.workRepo = workRepo;
         this.slotRepo = slotRepo;
+        this.workLinkRepo = workLinkRepo;
     }
 
     /**
@@ -189,9 +195,17 @@ public class FindService {
      */
     public List<LabwareSample> findByWorkNumber(String workNumber) {
         Work work = workRepo.getByWorkNumber(workNumber);
-        List<Integer> slotIds = work.getSampleSlotIds().stream().map(Work.SampleSlotId::getSlotId).collect(toList());
-        List<Slot> slots = slotRepo.findAllByIdIn(slotIds);
-        Set<Integer> labwareIds = slots.stream().map(Slot::getLabwareId).collect(toSet());
+        // The work's samples in slots are read a page at a time, since a work may have a great many
+        Iterator<Integer> slotIds = workLinkRepo.streamSampleSlotIds(work.getId())
+                .map(Work.SampleSlotId::getSlotId)
+                .distinct()
+                .iterator();
+        Set<Integer> labwareIds = new HashSet<>();
+        Iterators.partition(slotIds, SLOT_PAGE_SIZE).forEachRemaining(page -> {
+            for (Slot slot : slotRepo.findAllByIdIn(page)) {
+                labwareIds.add(slot.getLabwareId());
+            }
+        });
         List<Labware> labware = labwareRepo.findAllByIdIn(labwareIds);
 
         return labware.stream().flatMap(lw -> lw.getSlots().stream()
@@ -18,8 +18,9 @@ public class FixativeService extends BaseAdminService<Fixative, FixativeRepo> {
     @Autowired
     public FixativeService(FixativeRepo fixativeRepo,
                            @Qualifier("fixativeNameValidator") Validator<String> fixativeNameValidator,
-                           Transactor transactor, AdminNotifyService notifyService) {
-        super(fixativeRepo, "Fixative", "Name", fixativeNameValidator, transactor, notifyService);
+                           Transactor transactor, AdminNotifyService notifyService,
+                           ReferenceDataCache refDataCache) {
+        super(fixativeRepo, "Fixative", "Name", fixativeNameValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
@@ -17,8 +17,9 @@ import java.util.Optional;
 public class HmdmcAdminService extends BaseAdminService<Hmdmc, HmdmcRepo> {
     @Autowired
     public HmdmcAdminService(HmdmcRepo repo, @Qualifier("hmdmcValidator") Validator<String> hmdmcValidator,
-                             Transactor transactor, AdminNotifyService notifyService) {
-        super(repo, "HuMFre", "HuMFre", hmdmcValidator, transactor, notifyService);
+                             Transactor transactor, AdminNotifyService notifyService,
+                             ReferenceDataCache refDataCache) {
+        super(repo, "HuMFre", "HuMFre", hmdmcValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
@@ -1,19 +1,20 @@
 package uk.ac.sanger.sccp.stan.service;
 
-import com.google.common.collect.Streams;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.repo.*;
 
 import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.stream.IntStream;
 
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
+import static uk.ac.sanger.sccp.utils.BasicUtils.asList;
 import static uk.ac.sanger.sccp.utils.BasicUtils.repr;
-import static uk.ac.sanger.sccp.utils.BasicUtils.stream;
 
 /**
  * Service to help with labware, including creating labware with appropriate slots.
@@ -23,7 +24,7 @@ import static uk.ac.sanger.sccp.utils.BasicUtils.stream;
 public class LabwareService {
     private final LabwareRepo labwareRepo;
     private final SlotRepo slotRepo;
-    private final BarcodeIntRepo barcodeIntRepo;
+    private final BarcodeAllocator barcodeAllocator;
     private final EntityManager entityManager;
     private final LabelTypeRepo labelTypeRepo;
     private final OperationRepo operationRepo;
@@ -33,11 +34,11 @@ public class LabwareService {
 
     @Autowired
     public LabwareService(EntityManager entityManager, LabwareRepo labwareRepo, SlotRepo slotRepo,
-                          BarcodeIntRepo barcodeIntRepo, LabelTypeRepo labelTypeRepo, OperationRepo operationRepo,
+                          BarcodeAllocator barcodeAllocator, LabelTypeRepo labelTypeRepo, OperationRepo operationRepo,
                           OperationTypeRepo operationTypeRepo, LabwareNoteRepo lwNoteRepo, BioRiskRepo bioRiskRepo) {
         this.labwareRepo = labwareRepo;
         this.slotRepo = slotRepo;
-        this.barcodeIntRepo = barcodeIntRepo;
+        this.barcodeAllocator = barcodeAllocator;
         this.entityManager = entityManager;
         this.labelTypeRepo = labelTypeRepo;
         this.operationRepo = operationRepo;
@@ -63,6 +64,18 @@ public class LabwareService {
      * @return the new labware
      */
     public Labware create(LabwareType labwareType, String barcode, String externalBarcode) {
+        return create(newLabware(labwareType, barcode, externalBarcode));
+    }
+
+    /**
+     * Makes a new unsaved labware object, suitable for passing to {@link #createAll}.
+     * The barcodes are converted to upper case.
+     * @param labwareType the labware type
+     * @param barcode the barcode for the labware, or null if one should be created
+     * @param externalBarcode the external barcode, if any
+     * @return a new unsaved labware object
+     */
+    public static Labware newLabware(LabwareType labwareType, String barcode, String externalBarcode) {
         if (barcode!=null) {
             barcode = barcode.toUpperCase();
         }
@@ -71,7 +84,7 @@ public class LabwareService {
         }
         Labware unsaved = new Labware(null, barcode, labwareType, null);
         unsaved.setExternalBarcode(externalBarcode);
-        return create(unsaved);
+        return unsaved;
     }
 
     /**
@@ -88,23 +101,10 @@ public class LabwareService {
             return List.of();
         }
         requireNonNull(labwareType, "Labware type is null.");
-        List<String> barcodes = barcodeIntRepo.createStanBarcodes(number);
-        List<Labware> newLabware = barcodes.stream()
-                .map(bc -> new Labware(null, bc, labwareType, null))
-                .toList();
-        Iterable<Labware> savedLabware = labwareRepo.saveAll(newLabware);
-
-        final int numRows = labwareType.getNumRows();
-        final int numColumns = labwareType.getNumColumns();
-        final List<Slot> newSlots = stream(savedLabware).flatMap(lw -> {
-            assert lw != null;
-            return Address.stream(numRows, numColumns).map(address ->
-                            new Slot(null, lw.getId(), address, null));
-        }).toList();
-        slotRepo.saveAll(newSlots);
-        return Streams.stream(savedLabware)
-                .peek(entityManager::refresh)
+        List<Labware> unsaved = IntStream.range(0, number)
+                .mapToObj(i -> new Labware(null, null, labwareType, null))
                 .toList();
+        return createAll(unsaved);
     }
 
     /**
@@ -114,18 +114,49 @@ public class LabwareService {
      * @return the new labware, complete with its slots
      */
     public Labware create(Labware unsaved) {
-        if (unsaved.getBarcode()==null) {
-            unsaved.setBarcode(barcodeIntRepo.createStanBarcode());
+        return createAll(List.of(unsaved)).getFirst();
+    }
+
+    /**
+     * Creates new empty labware with slots from the given unsaved labware objects.
+     * Labware that does not specify a barcode is given a new Stan barcode.
+     * The labware and slots are inserted in batches, and the slots are attached to each labware
+     * as they are created, rather than by reloading the labware.
+     * Labware without a created time is given the database's current time, read once for the whole list,
+     * as it would have been given by the column default.
+     * @param unsaved unsaved labware objects
+     * @return the new labware, complete with their slots, in the order given
+     */
+    public List<Labware> createAll(List<Labware> unsaved) {
+        if (unsaved.isEmpty()) {
+            return List.of();
+        }
+        List<Labware> unbarcoded = unsaved.stream()
+                .filter(lw -> lw.getBarcode()==null)
+                .toList();
+        if (!unbarcoded.isEmpty()) {
+            Iterator<String> barcodes = barcodeAllocator.createStanBarcodes(unbarcoded.size()).iterator();
+            unbarcoded.forEach(lw -> lw.setBarcode(barcodes.next()));
+        }
+        if (unsaved.stream().anyMatch(lw -> lw.getCreated()==null)) {
+            LocalDateTime created = labwareRepo.getDatabaseTimestamp().toLocalDateTime().truncatedTo(ChronoUnit.SECONDS);
+            unsaved.stream()
+                    .filter(lw -> lw.getCreated()==null)
+                    .forEach(lw -> lw.setCreated(created));
+        }
+        List<Labware> labware = asList(labwareRepo.saveAll(unsaved));
+        List<Slot> newSlots = new ArrayList<>();
+        for (Labware lw : labware) {
+            LabwareType labwareType = lw.getLabwareType();
+            List<Slot> slots = Address.stream(labwareType.getNumRows(), labwareType.getNumColumns())
+                    .map(address -> new Slot(null, lw.getId(), address, null))
+                    .toList();
+            lw.setSlots(slots);
+            newSlots.addAll(slots);
         }
-        Labware labware = labwareRepo.save(unsaved);
-        LabwareType labwareType = unsaved.getLabwareType();
-        final int numRows = labwareType.getNumRows();
-        final int numColumns = labwareType.getNumColumns();
-        List<Slot> newSlots = Address.stream(numRows, numColumns)
-                .map(address -> new Slot(null, labware.getId(), address, null))
-                .collect(toList());
         slotRepo.saveAll(newSlots);
-        entityManager.refresh(labware);
+        // Insert the new rows now, in case the labware is refreshed or queried by native sql
+        entityManager.flush();
         return labware;
     }
 
@@ -0,0 +1,44 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import uk.ac.sanger.sccp.stan.model.Action;
+import uk.ac.sanger.sccp.stan.model.Operation;
+
+import java.util.Collection;
+
+/**
+ * Service for maintaining the slot-sample lineage table, a closure of the action graph
+ * linking each slot-sample to every slot-sample it is descended from.
+ * @author dr6
+ */
+public interface LineageService {
+    /**
+     * Is lineage being recorded for new operations?
+     * It is only recorded when {@code stan.lineage.record} is set or the ancestoriser is in closure mode.
+     */
+    boolean isRecording();
+
+    /**
+     * Is the lineage table complete for every existing operation?
+     * That is, is lineage {@link #isRecording being recorded}, and has every earlier operation been backfilled?
+     * Once this is true it stays true while lineage is recorded, so it is only checked in the database until it is.
+     * @return true if the lineage table can be relied on
+     */
+    boolean isComplete();
+
+    /**
+     * Records the lineage resulting from the given actions of a newly saved operation.
+     * This should be called inside the transaction that saved the actions.
+     * This does nothing unless lineage is {@link #isRecording being recorded}.
+     * @param op the operation
+     * @param actions the saved actions of the operation
+     */
+    void recordLineage(Operation op, Collection<Action> actions);
+
+    /**
+     * Fills in the lineage table for all existing operations.
+     * Each batch of operations is processed in its own transaction.
+     * This is idempotent, so it can safely be rerun if it is interrupted.
+     * @return the number of lineage rows added
+     */
+    int backfill();
+}
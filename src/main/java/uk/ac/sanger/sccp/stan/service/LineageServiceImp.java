@@ -0,0 +1,135 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uk.ac.sanger.sccp.stan.Transactor;
+import uk.ac.sanger.sccp.stan.config.AncestryConfig;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.ActionRepo;
+
+import java.util.*;
+
+/**
+ * @author dr6
+ */
+@Service
+public class LineageServiceImp implements LineageService {
+    Logger log = LoggerFactory.getLogger(LineageServiceImp.class);
+
+    /** The number of operations to process in each backfill transaction */
+    static final int BACKFILL_BATCH_SIZE = 1000;
+
+    private final Transactor transactor;
+    private final ActionRepo actionRepo;
+    private final boolean recording;
+    private volatile boolean complete;
+
+    @Autowired
+    public LineageServiceImp(Transactor transactor, ActionRepo actionRepo, AncestryConfig ancestryConfig) {
+        this.transactor = transactor;
+        this.actionRepo = actionRepo;
+        this.recording = ancestryConfig.isRecordLineage();
+    }
+
+    @Override
+    public boolean isRecording() {
+        return this.recording;
+    }
+
+    @Override
+    public boolean isComplete() {
+        if (!recording) {
+            return false;
+        }
+        if (!complete && actionRepo.existsActionMissingLineage()==0) {
+            complete = true;
+        }
+        return complete;
+    }
+
+    @Override
+    public void recordLineage(Operation op, Collection<Action> actions) {
+        if (!recording || actions.stream().allMatch(LineageServiceImp::isInPlace)) {
+            return;
+        }
+        final int opId = op.getId();
+        actionRepo.insertReflexiveLineage(opId, opId);
+        int added = actionRepo.insertLineageClosure(opId, opId);
+        if (added > 0 && hasInternalChain(actions)) {
+            while (actionRepo.insertLineageClosure(opId, opId) > 0) {
+                // repeat until the chain inside this operation is closed
+            }
+        }
+    }
+
+    @Override
+    public int backfill() {
+        Integer maxOpId = actionRepo.findMaxOperationId();
+        if (maxOpId==null) {
+            log.info("No actions found to backfill lineage");
+            return 0;
+        }
+        log.info("Backfilling slot-sample lineage for operations up to {}", maxOpId);
+        int total = 0;
+        for (int minId = 0; minId <= maxOpId; minId += BACKFILL_BATCH_SIZE) {
+            final int lo = minId;
+            final int hi = Math.min(maxOpId, minId + BACKFILL_BATCH_SIZE - 1);
+            total += transactor.transact("backfill lineage", () -> backfillRange(lo, hi));
+        }
+        log.info("Backfill of slot-sample lineage added {} rows", total);
+        return total;
+    }
+
+    /**
+     * Backfills the lineage table, triggered on a schedule.
+     */
+    @Scheduled(cron = "${stan.lineage.backfill.schedule:-}", zone = "GMT")
+    public void scheduledBackfill() {
+        backfill();
+    }
+
+    /**
+     * Adds lineage for the operations in the given range, repeating the closure until nothing more is added.
+     * This should be called inside a transaction.
+     * @param minOpId the lowest operation id to include
+     * @param maxOpId the highest operation id to include
+     * @return the number of lineage rows added
+     */
+    int backfillRange(int minOpId, int maxOpId) {
+        int total = actionRepo.insertReflexiveLineage(minOpId, maxOpId);
+        int added;
+        do {
+            added = actionRepo.insertLineageClosure(minOpId, maxOpId);
+            total += added;
+        } while (added > 0);
+        return total;
+    }
+
+    /**
+     * Is the given action in place (the same slot and sample for its source and destination)?
+     * In-place actions contribute nothing to the lineage.
+     */
+    public static boolean isInPlace(Action action) {
+        return (action.getSource().getId().equals(action.getDestination().getId())
+                && action.getSourceSample().getId().equals(action.getSample().getId()));
+    }
+
+    /**
+     * Does any action in the given collection take as its source the destination of another?
+     * If so, a single closure pass over the collection will not be enough.
+     */
+    static boolean hasInternalChain(Collection<Action> actions) {
+        Set<List<Integer>> destinations = new HashSet<>();
+        for (Action action : actions) {
+            if (!isInPlace(action)) {
+                destinations.add(List.of(action.getDestination().getId(), action.getSample().getId()));
+            }
+        }
+        return actions.stream()
+                .anyMatch(action -> !isInPlace(action)
+                        && destinations.contains(List.of(action.getSource().getId(), action.getSourceSample().getId())));
+    }
+}
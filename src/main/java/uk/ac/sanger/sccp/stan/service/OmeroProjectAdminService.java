@@ -18,8 +18,9 @@ public class OmeroProjectAdminService extends BaseAdminService<OmeroProject, Ome
     @Autowired
     public OmeroProjectAdminService(OmeroProjectRepo repo,
                                     @Qualifier("omeroProjectNameValidator") Validator<String> omeroProjectValidator,
-                                    Transactor transactor, AdminNotifyService notifyService) {
-        super(repo, "Omero project", "Name", omeroProjectValidator, transactor, notifyService);
+                                    Transactor transactor, AdminNotifyService notifyService,
+                                    ReferenceDataCache refDataCache) {
+        super(repo, "Omero project", "Name", omeroProjectValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
@@ -5,6 +5,7 @@ import org.springframework.stereotype.Service;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.repo.ActionRepo;
 import uk.ac.sanger.sccp.stan.repo.OperationRepo;
+import uk.ac.sanger.sccp.stan.service.flag.FlagEffectiveService;
 
 import javax.persistence.EntityManager;
 import java.util.List;
@@ -21,12 +22,17 @@ public class OperationService {
     private final EntityManager entityManager;
     private final OperationRepo opRepo;
     private final ActionRepo actionRepo;
+    private final LineageService lineageService;
+    private final FlagEffectiveService flagEffectiveService;
 
     @Autowired
-    public OperationService(EntityManager entityManager, OperationRepo opRepo, ActionRepo actionRepo) {
+    public OperationService(EntityManager entityManager, OperationRepo opRepo, ActionRepo actionRepo,
+                            LineageService lineageService, FlagEffectiveService flagEffectiveService) {
         this.entityManager = entityManager;
         this.opRepo = opRepo;
         this.actionRepo = actionRepo;
+        this.lineageService = lineageService;
+        this.flagEffectiveService = flagEffectiveService;
     }
 
     /**
@@ -64,6 +70,12 @@ public class OperationService {
             action.setOperationId(op.getId());
         }
         actionRepo.saveAll(actions);
+        if (lineageService.isRecording() || flagEffectiveService.isPropagating()) {
+            // The lineage and effective flags are written by native queries that read the new actions
+            entityManager.flush();
+        }
+        lineageService.recordLineage(op, actions);
+        flagEffectiveService.recordOperation(op, actions);
         entityManager.refresh(op);
         return op;
     }
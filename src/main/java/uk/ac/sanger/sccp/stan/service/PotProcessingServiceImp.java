@@ -359,9 +359,9 @@ public class PotProcessingServiceImp implements PotProcessingService {
      */
     public List<Labware> createDestinations(List<PotProcessingDestination> destinations,
                                             UCMap<LabwareType> lwTypes, List<Sample> samples) {
-        List<Labware> labware = destinations.stream()
-                .map(dest -> lwService.create(lwTypes.get(dest.getLabwareType())))
-                .collect(toList());
+        List<Labware> labware = lwService.createAll(destinations.stream()
+                .map(dest -> new Labware(null, null, lwTypes.get(dest.getLabwareType()), null))
+                .toList());
         final Iterator<Sample> sampleIter = samples.iterator();
         for (Labware lw : labware) {
             Sample sample = sampleIter.next();
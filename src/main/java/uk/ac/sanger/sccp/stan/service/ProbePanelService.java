@@ -19,12 +19,15 @@ import static uk.ac.sanger.sccp.utils.BasicUtils.nullOrEmpty;
 public class ProbePanelService {
     private final ProbePanelRepo probePanelRepo;
     private final Validator<String> probePanelValidator;
+    private final ReferenceDataCache refDataCache;
 
     @Autowired
     public ProbePanelService(ProbePanelRepo probePanelRepo,
-                             @Qualifier("probePanelNameValidator") Validator<String> probePanelValidator) {
+                             @Qualifier("probePanelNameValidator") Validator<String> probePanelValidator,
+                             ReferenceDataCache refDataCache) {
         this.probePanelRepo = probePanelRepo;
         this.probePanelValidator = probePanelValidator;
+        this.refDataCache = refDataCache;
     }
 
     /** Adds a new probe panel. Call this in a transaction. */
@@ -42,7 +45,9 @@ public class ProbePanelService {
         if (probePanelRepo.existsByTypeAndName(type, name)) {
             throw new EntityExistsException("Probe panel already exists: "+type+" "+name);
         }
-        return probePanelRepo.save(new ProbePanel(type, name));
+        ProbePanel probe = probePanelRepo.save(new ProbePanel(type, name));
+        refDataCache.invalidate(ProbePanel.class);
+        return probe;
     }
 
     /** Enables or disables an existing probe panel. Call this in a transaction. */
@@ -52,7 +57,9 @@ public class ProbePanelService {
             return probe;
         }
         probe.setEnabled(enabled);
-        return probePanelRepo.save(probe);
+        probe = probePanelRepo.save(probe);
+        refDataCache.invalidate(ProbePanel.class);
+        return probe;
     }
 
 }
@@ -18,8 +18,9 @@ public class ProgramService extends BaseAdminService<Program, ProgramRepo> {
     @Autowired
     public ProgramService(ProgramRepo ProgramRepo,
                           @Qualifier("programNameValidator") Validator<String> ProgramNameValidator,
-                          Transactor transactor, AdminNotifyService notifyService) {
-        super(ProgramRepo, "Program", "Name", ProgramNameValidator, transactor, notifyService);
+                          Transactor transactor, AdminNotifyService notifyService,
+                          ReferenceDataCache refDataCache) {
+        super(ProgramRepo, "Program", "Name", ProgramNameValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
@@ -18,8 +18,9 @@ public class ProjectService extends BaseAdminService<Project, ProjectRepo> {
     @Autowired
     public ProjectService(ProjectRepo projectRepo,
                           @Qualifier("projectNameValidator") Validator<String> projectNameValidator,
-                          Transactor transactor, AdminNotifyService notifyService) {
-        super(projectRepo, "Project", "Name", projectNameValidator, transactor, notifyService);
+                          Transactor transactor, AdminNotifyService notifyService,
+                          ReferenceDataCache refDataCache) {
+        super(projectRepo, "Project", "Name", projectNameValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
@@ -14,8 +14,9 @@ public class ProteinPanelAdminService extends BaseAdminService<ProteinPanel, Pro
     @Autowired
     public ProteinPanelAdminService(ProteinPanelRepo repo,
                                     @Qualifier("proteinPanelNameValidator") Validator<String> proteinPanelNameValidator,
-                                    Transactor transactor, AdminNotifyService notifyService) {
-        super(repo, "Protein panel", "Name", proteinPanelNameValidator, transactor, notifyService);
+                                    Transactor transactor, AdminNotifyService notifyService,
+                                    ReferenceDataCache refDataCache) {
+        super(repo, "Protein panel", "Name", proteinPanelNameValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
@@ -0,0 +1,182 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uk.ac.sanger.sccp.stan.config.ReferenceDataConfig;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * An in-process cache of reference data that rarely changes, such as the lists of tissue types or fixatives.
+ * <p>Each category of data is identified by its entity class. Services that change a category
+ * must call {@link #invalidate}, which drops the cached entries for the category and increments its
+ * shared version counter. Each instance of the application periodically checks the version counters,
+ * and drops its entries for any category whose version has changed.
+ * When it sees a change made by another instance, it also evicts the Hibernate second-level cache,
+ * so that entities and query results cached from the old data are not served until they expire.
+ * <p>Cached values are shared between requests, so they should not be modified,
+ * and any lazy relationships that will be read from them must be initialised before they are cached.
+ * @author dr6
+ */
+@Service
+public class ReferenceDataCache {
+    private static final Logger log = LoggerFactory.getLogger(ReferenceDataCache.class);
+    private static final Object NO_KEY = new Object();
+
+    private final ReferenceDataConfig config;
+    private final ReferenceDataVersionService versionService;
+    private final Clock clock;
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final Map<String, Category> categories = new ConcurrentHashMap<>();
+    private final Map<String, Long> knownVersions = new ConcurrentHashMap<>();
+    private final AtomicLong nextPollTime = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicBoolean versionsLoaded = new AtomicBoolean(false);
+
+    @Autowired
+    public ReferenceDataCache(ReferenceDataConfig config, ReferenceDataVersionService versionService, Clock clock,
+                              EntityManagerFactory entityManagerFactory) {
+        this.config = config;
+        this.versionService = versionService;
+        this.clock = clock;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    /**
+     * Gets the cached value for the given category and key, loading it if it is not cached.
+     * @param entityType the type of entity identifying the category of data
+     * @param key the key for the value within the category (e.g. the arguments used to load it); may be null
+     * @param loader the function to load the value if it is not cached
+     * @return the cached or loaded value
+     * @param <T> the type of value
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Class<?> entityType, Object key, Supplier<T> loader) {
+        if (!config.isCacheEnabled()) {
+            return loader.get();
+        }
+        checkVersions();
+        Category category = categories.computeIfAbsent(categoryName(entityType), k -> new Category());
+        final Object mapKey = (key==null ? NO_KEY : key);
+        T value = (T) category.values.get(mapKey);
+        if (value==null) {
+            long generation = category.generation.get();
+            value = loader.get();
+            if (value!=null) {
+                category.putIfCurrent(mapKey, value, generation);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Drops the cached values for the given category, here and (via the shared version counter) in
+     * every other instance of the application.
+     * If called inside a transaction, the local values are dropped again after the transaction commits,
+     * in case they were reloaded from the old data in the meantime.
+     * @param entityType the type of entity identifying the category of data
+     */
+    public void invalidate(Class<?> entityType) {
+        final String name = categoryName(entityType);
+        clearLocal(name);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    clearLocal(name);
+                }
+            });
+        }
+        versionService.increment(name);
+    }
+
+    /**
+     * Checks the shared version counters if it is time to do so,
+     * and drops the cached values of any category whose version has changed.
+     * If any version has changed since the previous check, the Hibernate second-level cache is also evicted.
+     */
+    public void checkVersions() {
+        long now = clock.millis();
+        long next = nextPollTime.get();
+        if (now < next || !nextPollTime.compareAndSet(next, now + config.getPollMs())) {
+            return;
+        }
+        Map<String, Long> versions;
+        try {
+            versions = versionService.loadVersions();
+        } catch (RuntimeException e) {
+            log.error("Failed to load reference data versions", e);
+            return;
+        }
+        boolean anyChanged = false;
+        for (var entry : versions.entrySet()) {
+            final String name = entry.getKey();
+            final Long version = entry.getValue();
+            Long oldVersion = knownVersions.put(name, version);
+            if (!version.equals(oldVersion)) {
+                clearLocal(name);
+                anyChanged = true;
+            }
+        }
+        // Nothing can have been cached from stale data before the first check
+        if (versionsLoaded.getAndSet(true) && anyChanged) {
+            evictSecondLevelCache();
+        }
+    }
+
+    /**
+     * Evicts the entities, collections and query results in the Hibernate second-level cache.
+     * The update timestamps region is left alone, since it is what keeps cached queries consistent.
+     */
+    void evictSecondLevelCache() {
+        try {
+            org.hibernate.Cache cache = entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class);
+            cache.evictEntityData();
+            cache.evictCollectionData();
+            cache.evictQueryRegions();
+        } catch (RuntimeException e) {
+            log.error("Failed to evict second-level cache", e);
+        }
+    }
+
+    /** Drops the cached values for the named category in this instance only */
+    void clearLocal(String name) {
+        Category category = categories.get(name);
+        if (category!=null) {
+            category.clear();
+        }
+    }
+
+    /** The name of the category for the given entity type, used for its shared version counter */
+    public static String categoryName(Class<?> entityType) {
+        return entityType.getSimpleName();
+    }
+
+    /** The cached values for one category */
+    private static class Category {
+        final Map<Object, Object> values = new ConcurrentHashMap<>();
+        /** Incremented whenever the category is cleared, so that values loaded before then are not cached */
+        final AtomicLong generation = new AtomicLong();
+
+        synchronized void putIfCurrent(Object key, Object value, long loadedGeneration) {
+            if (generation.get()==loadedGeneration) {
+                values.put(key, value);
+            }
+        }
+
+        synchronized void clear() {
+            generation.incrementAndGet();
+            values.clear();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import java.util.Map;
+
+/**
+ * Service for the shared version counters of reference data categories.
+ * Every instance of the application sees the same versions, so a change made through one instance
+ * can be noticed by the others.
+ * @author dr6
+ */
+public interface ReferenceDataVersionService {
+    /**
+     * Loads the current version of each category that has one
+     * @return a map of category name to version
+     */
+    Map<String, Long> loadVersions();
+
+    /**
+     * Loads the current version of the given category
+     * @param category the name of the category
+     * @return the version of the category, or zero if it has none
+     */
+    long loadVersion(String category);
+
+    /**
+     * Increments the version of the given category
+     * @param category the name of the category
+     */
+    void increment(String category);
+}
@@ -0,0 +1,48 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import uk.ac.sanger.sccp.stan.Transactor;
+import uk.ac.sanger.sccp.stan.model.ReferenceDataVersion;
+import uk.ac.sanger.sccp.stan.repo.ReferenceDataVersionRepo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the reference data versions in the database
+ * @author dr6
+ */
+@Service
+public class ReferenceDataVersionServiceImp implements ReferenceDataVersionService {
+    private final ReferenceDataVersionRepo versionRepo;
+    private final Transactor transactor;
+
+    @Autowired
+    public ReferenceDataVersionServiceImp(ReferenceDataVersionRepo versionRepo, Transactor transactor) {
+        this.versionRepo = versionRepo;
+        this.transactor = transactor;
+    }
+
+    @Override
+    public Map<String, Long> loadVersions() {
+        Map<String, Long> versions = new HashMap<>();
+        for (ReferenceDataVersion rdv : versionRepo.findAll()) {
+            versions.put(rdv.getName(), rdv.getVersion());
+        }
+        return versions;
+    }
+
+    @Override
+    public long loadVersion(String category) {
+        return versionRepo.findById(category).map(ReferenceDataVersion::getVersion).orElse(0L);
+    }
+
+    @Override
+    public void increment(String category) {
+        transactor.transact("Increment reference data version", () -> {
+            versionRepo.increment(category);
+            return null;
+        });
+    }
+}
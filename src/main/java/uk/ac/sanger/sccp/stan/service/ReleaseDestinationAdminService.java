@@ -18,8 +18,9 @@ public class ReleaseDestinationAdminService extends BaseAdminService<ReleaseDest
     @Autowired
     public ReleaseDestinationAdminService(ReleaseDestinationRepo repo,
                                           @Qualifier("releaseDestinationValidator") Validator<String> releaseDestinationValidator,
-                                          Transactor transactor, AdminNotifyService notifyService) {
-        super(repo, "Release destination", "Name", releaseDestinationValidator, transactor, notifyService);
+                                          Transactor transactor, AdminNotifyService notifyService,
+                                          ReferenceDataCache refDataCache) {
+        super(repo, "Release destination", "Name", releaseDestinationValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
@@ -23,13 +23,16 @@ public class ReleaseRecipientAdminService extends BaseAdminService<ReleaseRecipi
     @Autowired
     public ReleaseRecipientAdminService(ReleaseRecipientRepo repo,
                                         @Qualifier("releaseRecipientValidator") Validator<String> releaseRecipientValidator,
-                                        Transactor transactor, AdminNotifyService notifyService) {
-        super(repo, "Release recipient", "Username", releaseRecipientValidator, transactor, notifyService);
+                                        Transactor transactor, AdminNotifyService notifyService,
+                                        ReferenceDataCache refDataCache) {
+        super(repo, "Release recipient", "Username", releaseRecipientValidator, transactor, notifyService, refDataCache);
     }
 
     public ReleaseRecipient addNew(String username, String fullName) {
         username = validateEntity(username);
-        return repo.save(new ReleaseRecipient(null, username, fullName));
+        ReleaseRecipient recipient = repo.save(new ReleaseRecipient(null, username, fullName));
+        refDataCache.invalidate(ReleaseRecipient.class);
+        return recipient;
     }
 
     /**
@@ -48,7 +51,9 @@ public class ReleaseRecipientAdminService extends BaseAdminService<ReleaseRecipi
             return recipient;
         }
         recipient.setFullName(fullName);
-        return repo.save(recipient);
+        recipient = repo.save(recipient);
+        refDataCache.invalidate(ReleaseRecipient.class);
+        return recipient;
     }
     
     @Override
@@ -38,12 +38,14 @@ public class ReleaseServiceImp implements ReleaseService {
     private final SnapshotService snapshotService;
     private final EmailService emailService;
     private final WorkService workService;
+    private final WorkProgressService workProgressService;
 
     @Autowired
     public ReleaseServiceImp(StanConfig stanConfig, Transactor transactor, EntityManager entityManager,
                              ReleaseDestinationRepo destinationRepo, ReleaseRecipientRepo recipientRepo,
                              LabwareRepo labwareRepo, StoreService storeService, ReleaseRepo releaseRepo,
-                             SnapshotService snapshotService, EmailService emailService, WorkService workService) {
+                             SnapshotService snapshotService, EmailService emailService, WorkService workService,
+                             WorkProgressService workProgressService) {
         this.stanConfig = stanConfig;
         this.transactor = transactor;
         this.entityManager = entityManager;
@@ -55,6 +57,7 @@ public class ReleaseServiceImp implements ReleaseService {
         this.snapshotService = snapshotService;
         this.emailService = emailService;
         this.workService = workService;
+        this.workProgressService = workProgressService;
     }
 
     @Override
@@ -175,6 +178,7 @@ public class ReleaseServiceImp implements ReleaseService {
         labware = updateReleasedLabware(labware);
         final List<Release> releases = recordReleases(user, destination, recipient, otherRecs, labware, locations);
         link(releases, workMap);
+        workProgressService.recordReleases(releases.stream().map(Release::getId).toList());
         return releases;
     }
 
@@ -145,13 +145,18 @@ public class SlotCopyServiceImp implements SlotCopyService {
         }
         // cache for looked up bio states
         UCMap<BioState> bsCache = new UCMap<>();
+        Iterator<Labware> newLabwareIter = createNewDestinations(dests, lwTypes, existingDests).iterator();
         for (SlotCopyDestination dest : dests) {
+            Labware destLw = existingDests.get(dest.getBarcode());
+            if (destLw==null) {
+                destLw = newLabwareIter.next();
+            }
             OperationResult opres = executeOp(user, dest.getContents(), opType, lwTypes.get(dest.getLabwareType()),
                     dest.getPreBarcode(), sources,sourceLpNumbers, dest.getCosting(), dest.getLotNumber(),
                     dest.getProbeLotNumber(), bioStates.get(dest.getBioState()), dest.getLpNumber(),
                     dest.getReagentLot(), dest.getReagentALot(), dest.getReagentBLot(), dest.getCassetteLot(),
                     dest.getReagentCosting(),
-                    existingDests.get(dest.getBarcode()), executionType, bsCache);
+                    destLw, executionType, bsCache);
             ops.addAll(opres.getOperations());
             destLabware.addAll(opres.getLabware());
         }
@@ -162,6 +167,23 @@ public class SlotCopyServiceImp implements SlotCopyService {
         return new OperationResult(ops, destLabware);
     }
 
+    /**
+     * Creates the new labware for the destinations that do not specify existing labware
+     * @param dests the destinations
+     * @param lwTypes the labware types, mapped from their names
+     * @param existingDests existing destination labware, mapped from their barcodes
+     * @return the new labware, in the order of the destinations that need new labware
+     */
+    public List<Labware> createNewDestinations(Collection<SlotCopyDestination> dests, UCMap<LabwareType> lwTypes,
+                                               UCMap<Labware> existingDests) {
+        List<Labware> unsaved = dests.stream()
+                .filter(dest -> existingDests.get(dest.getBarcode())==null)
+                .map(dest -> LabwareService.newLabware(lwTypes.get(dest.getLabwareType()),
+                        dest.getPreBarcode(), dest.getPreBarcode()))
+                .toList();
+        return lwService.createAll(unsaved);
+    }
+
     /** Finds the LP number for new labware where it can be inherited from the source */
     public String inheritedLpNumber(Collection<SlotCopyContent> contents,
                                     UCMap<String> sourceLps) {
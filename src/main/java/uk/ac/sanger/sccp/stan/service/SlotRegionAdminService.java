@@ -18,8 +18,9 @@ public class SlotRegionAdminService extends BaseAdminService<SlotRegion, SlotReg
     @Autowired
     public SlotRegionAdminService(SlotRegionRepo repo,
                                   @Qualifier("slotRegionNameValidator") Validator<String> nameValidator,
-                                  Transactor transactor, AdminNotifyService notifyService) {
-        super(repo, "SlotRegion", "name", nameValidator, transactor, notifyService);
+                                  Transactor transactor, AdminNotifyService notifyService,
+                                  ReferenceDataCache refDataCache) {
+        super(repo, "SlotRegion", "name", nameValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
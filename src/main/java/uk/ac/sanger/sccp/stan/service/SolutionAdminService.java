@@ -18,8 +18,9 @@ public class SolutionAdminService extends BaseAdminService<Solution, SolutionRep
     @Autowired
     public SolutionAdminService(SolutionRepo solutionRepo,
                                 @Qualifier("solutionValidator") Validator<String> solutionValidator,
-                                Transactor transactor, AdminNotifyService notifyService) {
-        super(solutionRepo, "Solution", "Name", solutionValidator, transactor, notifyService);
+                                Transactor transactor, AdminNotifyService notifyService,
+                                ReferenceDataCache refDataCache) {
+        super(solutionRepo, "Solution", "Name", solutionValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
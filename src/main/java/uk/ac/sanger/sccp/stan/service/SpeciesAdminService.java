@@ -18,8 +18,9 @@ public class SpeciesAdminService extends BaseAdminService<Species, SpeciesRepo>
     @Autowired
     public SpeciesAdminService(SpeciesRepo repo,
                                @Qualifier("speciesValidator") Validator<String> speciesValidator,
-                               Transactor transactor, AdminNotifyService notifyService) {
-        super(repo, "Species", "Name", speciesValidator, transactor, notifyService);
+                               Transactor transactor, AdminNotifyService notifyService,
+                               ReferenceDataCache refDataCache) {
+        super(repo, "Species", "Name", speciesValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
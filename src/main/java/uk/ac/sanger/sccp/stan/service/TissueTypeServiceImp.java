@@ -23,18 +23,21 @@ public class TissueTypeServiceImp implements TissueTypeService {
     private final TissueTypeRepo ttRepo;
     private final SpatialLocationRepo slRepo;
     private final Validator<String> ttNameValidator, ttCodeValidator, slNameValidator;
+    private final ReferenceDataCache refDataCache;
     private final Comparator<SpatialLocation> SL_ORDER = Comparator.comparing(SpatialLocation::getCode);
 
     @Autowired
     public TissueTypeServiceImp(TissueTypeRepo ttRepo, SpatialLocationRepo slRepo,
                                 @Qualifier("tissueTypeNameValidator") Validator<String> ttNameValidator,
                                 @Qualifier("tissueTypeCodeValidator") Validator<String> ttCodeValidator,
-                                @Qualifier("spatialLocationNameValidator") Validator<String> slNameValidator) {
+                                @Qualifier("spatialLocationNameValidator") Validator<String> slNameValidator,
+                                ReferenceDataCache refDataCache) {
         this.ttRepo = ttRepo;
         this.slRepo = slRepo;
         this.ttNameValidator = ttNameValidator;
         this.ttCodeValidator = ttCodeValidator;
         this.slNameValidator = slNameValidator;
+        this.refDataCache = refDataCache;
     }
 
     @Override
@@ -215,6 +218,7 @@ public class TissueTypeServiceImp implements TissueTypeService {
                 .sorted(SL_ORDER)
                 .toList();
         tissueType.setSpatialLocations(asList(slRepo.saveAll(sls)));
+        refDataCache.invalidate(TissueType.class);
         return tissueType;
     }
 
@@ -235,6 +239,7 @@ public class TissueTypeServiceImp implements TissueTypeService {
         combinedSpatialLocations.addAll(asList(slRepo.saveAll(sls)));
         combinedSpatialLocations.sort(SL_ORDER);
         tt.setSpatialLocations(combinedSpatialLocations);
+        refDataCache.invalidate(TissueType.class);
         return tt;
     }
 }
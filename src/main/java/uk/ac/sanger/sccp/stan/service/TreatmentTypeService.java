@@ -18,8 +18,8 @@ public class TreatmentTypeService extends BaseAdminService<TreatmentType, Treatm
     @Autowired
     public TreatmentTypeService(TreatmentTypeRepo repo,
                                 @Qualifier("treatmentTypeNameValidator") Validator<String> nameValidator,
-                                Transactor transactor) {
-        super(repo, "Treatment type", "Name", nameValidator, transactor, null);
+                                Transactor transactor, ReferenceDataCache refDataCache) {
+        super(repo, "Treatment type", "Name", nameValidator, transactor, null, refDataCache);
     }
 
     @Override
@@ -3,10 +3,14 @@ package uk.ac.sanger.sccp.stan.service;
 import uk.ac.sanger.sccp.stan.model.Work;
 import uk.ac.sanger.sccp.stan.request.WorkProgress;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
  * Service to answer queries about the progress of {@link Work}.
+ * The progress of each work is kept in a stored projection, which is updated as operations are linked to works
+ * and as labware is released. The projection is only read once it is switched on with
+ * {@code stan.workprogress.stored}, after it has been {@link #rebuild rebuilt}.
  * @author dr6
  */
 public interface WorkProgressService {
@@ -21,4 +25,34 @@ public interface WorkProgressService {
      */
     List<WorkProgress> getProgress(String workNumber, List<String> workTypeNames, List<String> programNames,
                                    List<Work.Status> statuses, List<String> requesterNames);
+
+    /**
+     * Updates the stored progress of the given works to include the given operations.
+     * This should be called inside the transaction that linked the operations to the works.
+     * @param workIds the ids of the works
+     * @param opIds the ids of the operations newly linked to the works
+     */
+    void recordOperations(Collection<Integer> workIds, Collection<Integer> opIds);
+
+    /**
+     * Updates the stored progress of works to include the given releases.
+     * This should be called inside the transaction that recorded the releases.
+     * @param releaseIds the ids of the new releases
+     */
+    void recordReleases(Collection<Integer> releaseIds);
+
+    /**
+     * Recalculates the stored progress of the given works from scratch.
+     * This is needed when operations are unlinked from works.
+     * @param workIds the ids of the works
+     */
+    void refresh(Collection<Integer> workIds);
+
+    /**
+     * Recalculates the stored progress of every work.
+     * Each batch of works is processed in its own transaction.
+     * This is idempotent, so it can safely be rerun if it is interrupted.
+     * @return the number of works processed
+     */
+    int rebuild();
 }
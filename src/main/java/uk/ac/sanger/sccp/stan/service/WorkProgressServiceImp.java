@@ -1,8 +1,14 @@
 package uk.ac.sanger.sccp.stan.service;
 
 
+import com.google.common.collect.Lists;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import uk.ac.sanger.sccp.stan.Transactor;
+import uk.ac.sanger.sccp.stan.config.WorkProgressConfig;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.model.Work.Status;
 import uk.ac.sanger.sccp.stan.repo.*;
@@ -13,25 +19,28 @@ import uk.ac.sanger.sccp.utils.*;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toSet;
 
 /**
  * @author dr6
  */
 @Service
 public class WorkProgressServiceImp implements WorkProgressService {
+    Logger log = LoggerFactory.getLogger(WorkProgressServiceImp.class);
+
+    /** The number of works processed in each rebuild transaction */
+    static final int REBUILD_BATCH_SIZE = 1000;
+
+    private final Transactor transactor;
+    private final WorkProgressConfig workProgressConfig;
     private final WorkRepo workRepo;
     private final WorkTypeRepo workTypeRepo;
     private final ProgramRepo programRepo;
-    private final OperationRepo opRepo;
-    private final LabwareRepo lwRepo;
-    private final ReleaseRepo releaseRepo;
-    private final StainTypeRepo stainTypeRepo;
+    private final OperationTypeRepo opTypeRepo;
+    private final WorkProgressRepo workProgressRepo;
     private final ReleaseRecipientRepo recipientRepo;
     private final WorkEventService workEventService;
     // Consider for the future moving these sets to a config class and injecting them
@@ -43,16 +52,16 @@ public class WorkProgressServiceImp implements WorkProgressService {
     private final Set<String> releaseLabwareTypes = Set.of("96 well plate");
 
     @Autowired
-    public WorkProgressServiceImp(WorkRepo workRepo, WorkTypeRepo workTypeRepo, ProgramRepo programRepo, OperationRepo opRepo,
-                                  LabwareRepo lwRepo, ReleaseRepo releaseRepo, StainTypeRepo stainTypeRepo, ReleaseRecipientRepo recipientRepo,
-                                  WorkEventService workEventService) {
+    public WorkProgressServiceImp(Transactor transactor, WorkProgressConfig workProgressConfig, WorkRepo workRepo, WorkTypeRepo workTypeRepo, ProgramRepo programRepo,
+                                  OperationTypeRepo opTypeRepo, WorkProgressRepo workProgressRepo,
+                                  ReleaseRecipientRepo recipientRepo, WorkEventService workEventService) {
+        this.transactor = transactor;
+        this.workProgressConfig = workProgressConfig;
         this.workRepo = workRepo;
         this.workTypeRepo = workTypeRepo;
         this.programRepo = programRepo;
-        this.opRepo = opRepo;
-        this.lwRepo = lwRepo;
-        this.releaseRepo = releaseRepo;
-        this.stainTypeRepo = stainTypeRepo;
+        this.opTypeRepo = opTypeRepo;
+        this.workProgressRepo = workProgressRepo;
         this.recipientRepo = recipientRepo;
         this.workEventService = workEventService;
     }
@@ -101,108 +110,146 @@ public class WorkProgressServiceImp implements WorkProgressService {
             ws.setSource((Supplier<? extends Iterable<Work>>) workRepo::findAll);
         }
 
-        EntityNameFilter<OperationType> opTypeFilter = new EntityNameFilter<>(includedOpTypes);
-        EntityNameFilter<StainType> stainTypeFilter = new EntityNameFilter<>(specialStainTypes);
-        EntityNameFilter<LabwareType> labwareTypeFilter = new EntityNameFilter<>(specialLabwareTypes);
-        EntityNameFilter<LabwareType> releaseLabwareTypeFilter = new EntityNameFilter<>(releaseLabwareTypes);
+        return getProgressForWorks(ws.filterStream().toList());
+    }
 
-        final Map<Integer, Labware> labwareIdToLabware = new HashMap<>();
+    /**
+     * Gets the work progress for each of the given works.
+     * The timestamps for all the works are loaded together: from the stored progress if
+     * {@link WorkProgressConfig#isReadStored() configured}, otherwise from the works' operations.
+     * The comments are loaded together.
+     * @param works the works
+     * @return the work progress for each work, in the same order as the works
+     */
+    public List<WorkProgress> getProgressForWorks(List<Work> works) {
+        if (works.isEmpty()) {
+            return List.of();
+        }
+        List<Integer> workIds = works.stream().map(Work::getId).toList();
+        Map<Integer, Map<String, LocalDateTime>> workOpTimes = (workProgressConfig.isReadStored()
+                ? workProgressRepo.loadStoredTimes(workIds) : loadOpTimes(workIds, null));
+        Map<Integer, String> workComments = loadWorkComments(works);
+        List<WorkProgress> wps = new ArrayList<>(works.size());
+        for (Work work : works) {
+            List<WorkProgressTimestamp> workTimes = workOpTimes.getOrDefault(work.getId(), Map.of())
+                    .entrySet().stream()
+                    .map(e -> new WorkProgressTimestamp(e.getKey(), e.getValue()))
+                    .collect(toList());
+            wps.add(new WorkProgress(work, workTimes, getMostRecentOperation(workTimes), workComments.get(work.getId())));
+        }
+        return wps;
+    }
 
-        return ws.filterStream()
-                .map(work -> getProgressForWork(work, opTypeFilter, stainTypeFilter, labwareTypeFilter,
-                        releaseLabwareTypeFilter, labwareIdToLabware, labwareTypeToStainMap))
-                .collect(toList());
+    @Override
+    public void recordOperations(Collection<Integer> workIds, Collection<Integer> opIds) {
+        if (workIds.isEmpty() || opIds.isEmpty()) {
+            return;
+        }
+        workProgressRepo.storeTimes(loadOpTimes(workIds, opIds));
+    }
+
+    @Override
+    public void recordReleases(Collection<Integer> releaseIds) {
+        if (releaseIds.isEmpty()) {
+            return;
+        }
+        Map<Integer, Map<String, LocalDateTime>> workTimes = new HashMap<>();
+        for (var releaseTime : workProgressRepo.findReleaseTimesForReleases(releaseIds, releaseLabwareTypes)) {
+            addTime(workTimes, releaseTime.workId(), "Release "+releaseTime.labwareTypeName(), releaseTime.time());
+        }
+        workProgressRepo.storeTimes(workTimes);
+    }
+
+    @Override
+    public void refresh(Collection<Integer> workIds) {
+        if (workIds.isEmpty()) {
+            return;
+        }
+        workProgressRepo.deleteStoredTimes(workIds);
+        workProgressRepo.storeTimes(loadOpTimes(workIds, null));
+    }
+
+    @Override
+    public int rebuild() {
+        List<Integer> workIds = workProgressRepo.findAllWorkIds();
+        log.info("Rebuilding work progress for {} works", workIds.size());
+        for (List<Integer> batch : Lists.partition(workIds, REBUILD_BATCH_SIZE)) {
+            transactor.transact("rebuild work progress", () -> {
+                refresh(batch);
+                return null;
+            });
+        }
+        log.info("Rebuilt work progress for {} works", workIds.size());
+        return workIds.size();
     }
 
     /**
-     * Gets the work progress for a particular work
-     * @param work the work
-     * @param includeOpType predicate to filter operation types
-     * @param specialStainType predicate to filter stain types for the special stain time
-     * @param specialLabwareType predicate to filter labware types where they are mentioned specifically
-     * @param releaseLabwareType predicate to filter release labware types where they are mentioned specifically
-     * @param labwareIdToLabware a cache of labware id to its labware
-     * @param labwareTypeToStainMap a map of labware id to stain types to record
-     * @return the work progress for the given work
+     * Rebuilds the stored work progress, triggered on a schedule.
      */
-    public WorkProgress getProgressForWork(Work work,
-                                           Predicate<OperationType> includeOpType,
-                                           Predicate<StainType> specialStainType,
-                                           Predicate<LabwareType> specialLabwareType,
-                                           Predicate<LabwareType> releaseLabwareType,
-                                           Map<Integer, Labware> labwareIdToLabware,
-                                           Map<String, Set<String>> labwareTypeToStainMap) {
-        Map<String, LocalDateTime> opTimes = loadOpTimes(work, includeOpType, specialStainType, specialLabwareType,
-                releaseLabwareType, labwareIdToLabware, labwareTypeToStainMap);
-        List<WorkProgressTimestamp> workTimes = opTimes.entrySet().stream()
-                .map(e -> new WorkProgressTimestamp(e.getKey(), e.getValue()))
-                .collect(toList());
-        String mostRecentOperation = getMostRecentOperation(workTimes);
-        String workComment = getWorkComment(work);
-        return new WorkProgress(work, workTimes, mostRecentOperation, workComment);
+    @Scheduled(cron = "${stan.workprogress.rebuild.schedule:-}", zone = "GMT")
+    public void scheduledRebuild() {
+        rebuild();
     }
 
     /**
-     * Gets a map of different events to latest matching operation timestamps
-     * @param work the work for the events
-     * @param includeOpType predicate to filter op types
-     * @param specialStainType predicate to filter stain types for the special stain time
-     * @param specialLabwareType predicate to filter labware types where they are mentioned specifically
-     * @param releaseLabwareType predicate to filter release labware types where they are mentioned specifically
-     * @param labwareIdToLabware a cache of labware id to its labware
-     * @param labwareTypeToStainMap a map of labware id to stain types to record
-     * @return a map from event labels to the latest matching operation timestamp
+     * Works out, for each of the given works, a map of different events to the latest matching timestamps
+     * @param workIds the ids of the works
+     * @param opIds the ids of the operations to include; null to include all the operations in the works
+     * @return a map from work id to a map from event labels to the latest matching timestamp
      */
-    public Map<String, LocalDateTime> loadOpTimes(Work work,
-                                                  Predicate<OperationType> includeOpType,
-                                                  Predicate<StainType> specialStainType,
-                                                  Predicate<LabwareType> specialLabwareType,
-                                                  Predicate<LabwareType> releaseLabwareType,
-                                                  Map<Integer, Labware> labwareIdToLabware,
-                                                  Map<String, Set<String>> labwareTypeToStainMap) {
-        final var opIds = work.getOperationIds();
-        Iterable<Operation> ops = opRepo.findAllById(opIds);
-        Map<String, LocalDateTime> opTimes = new HashMap<>();
-        var opStainTypes = stainTypeRepo.loadOperationStainTypes(opIds);
-
-        for (Operation op : ops) {
-            OperationType opType = op.getOperationType();
-            if (!includeOpType.test(opType)) {
-                continue;
-            }
-            String key = opType.getName();
-            if (opType.has(OperationTypeFlag.STAIN)) {
-                Set<LabwareType> labwareTypes = opLabwares(op, labwareIdToLabware).stream()
-                        .map(Labware::getLabwareType)
-                        .collect(toSet());
-                labwareTypes.stream().filter(specialLabwareType)
-                        .forEach(lt -> addTime(opTimes, "Stain "+lt.getName(), op.getPerformed()));
+    public Map<Integer, Map<String, LocalDateTime>> loadOpTimes(Collection<Integer> workIds, Collection<Integer> opIds) {
+        EntityNameFilter<OperationType> opTypeFilter = new EntityNameFilter<>(includedOpTypes);
+        Map<Integer, OperationType> opTypes = BasicUtils.stream(opTypeRepo.findAll())
+                .filter(opTypeFilter)
+                .collect(BasicUtils.inMap(OperationType::getId));
+        List<Integer> stainOpTypeIds = opTypes.values().stream()
+                .filter(opType -> opType.has(OperationTypeFlag.STAIN))
+                .map(OperationType::getId)
+                .toList();
+        Map<Integer, Map<String, LocalDateTime>> workOpTimes = new HashMap<>();
 
-                for (LabwareType lt : labwareTypes) {
-                    var soughtStainTypes = labwareTypeToStainMap.get(lt.getName().toLowerCase());
-                    var thisOpStainTypes = opStainTypes.get(op.getId());
+        for (var opTypeTime : workProgressRepo.findOpTypeTimes(workIds, opIds, opTypes.keySet())) {
+            OperationType opType = opTypes.get(opTypeTime.opTypeId());
+            // RIN/DV200 analysis
+            String key = (opType.has(OperationTypeFlag.ANALYSIS) ? "Analysis" : opType.getName());
+            addTime(workOpTimes, opTypeTime.workId(), key, opTypeTime.time());
+        }
 
-                    if (soughtStainTypes!=null && thisOpStainTypes!=null) {
-                        for (StainType st : thisOpStainTypes) {
-                            if (soughtStainTypes.contains(st.getName().toLowerCase())) {
-                                addTime(opTimes, lt.getName()+" "+st.getName() + " stain", op.getPerformed());
-                            }
-                        }
+        for (var stainTime : workProgressRepo.findStainTimes(workIds, opIds, stainOpTypeIds)) {
+            String ltName = stainTime.labwareTypeName();
+            String stName = stainTime.stainTypeName();
+            if (ltName!=null && specialLabwareTypes.contains(ltName.toLowerCase())) {
+                addTime(workOpTimes, stainTime.workId(), "Stain "+ltName, stainTime.time());
+            }
+            if (stName!=null) {
+                if (ltName!=null) {
+                    var soughtStainTypes = labwareTypeToStainMap.get(ltName.toLowerCase());
+                    if (soughtStainTypes!=null && soughtStainTypes.contains(stName.toLowerCase())) {
+                        addTime(workOpTimes, stainTime.workId(), ltName+" "+stName+" stain", stainTime.time());
                     }
                 }
-                List<StainType> sts = opStainTypes.get(op.getId());
-                if (sts!=null && sts.stream().anyMatch(specialStainType)) {
-                    addTime(opTimes, "RNAscope/IHC stain", op.getPerformed());
+                if (specialStainTypes.contains(stName.toLowerCase())) {
+                    addTime(workOpTimes, stainTime.workId(), "RNAscope/IHC stain", stainTime.time());
                 }
             }
-            if (opType.has(OperationTypeFlag.ANALYSIS)) {
-                key = "Analysis"; // RIN/DV200 analysis
-            }
-            addTime(opTimes, key, op.getPerformed());
         }
 
-        loadReleases(opTimes, ops, releaseLabwareType, labwareIdToLabware);
-        return opTimes;
+        for (var releaseTime : workProgressRepo.findReleaseTimes(workIds, opIds, releaseLabwareTypes)) {
+            addTime(workOpTimes, releaseTime.workId(), "Release "+releaseTime.labwareTypeName(), releaseTime.time());
+        }
+        return workOpTimes;
+    }
+
+    /**
+     * Incorporates a given timestamp for a given work in the given map.
+     * @param workOpTimes map from work id to the latest timestamp for each key
+     * @param workId the id of the work
+     * @param key the key indicating the meaning of the time
+     * @param thisTime the new time
+     */
+    private void addTime(Map<Integer, Map<String, LocalDateTime>> workOpTimes, int workId, String key,
+                         LocalDateTime thisTime) {
+        addTime(workOpTimes.computeIfAbsent(workId, k -> new HashMap<>()), key, thisTime);
     }
 
     /**
@@ -220,56 +267,6 @@ public class WorkProgressServiceImp implements WorkProgressService {
         return null;
     }
 
-    /**
-     * Loads releases dates of (filtered) destination labware from any of the given operations.
-     * @param opTimes the map of event labels to times
-     * @param ops the operations to get the labware from
-     * @param releaseLabwareFilter the filter specifying whether each labware should be included
-     * @param labwareIdCache a cache of labware from its id
-     */
-    public void loadReleases(Map<String, LocalDateTime> opTimes, Iterable<Operation> ops,
-                             Predicate<LabwareType> releaseLabwareFilter,
-                             Map<Integer, Labware> labwareIdCache) {
-        Set<Integer> lwIdsToCheckForReleases = BasicUtils.stream(ops)
-                .flatMap(op -> op.getActions().stream()
-                        .map(ac -> ac.getDestination().getLabwareId()))
-                .filter(lwid -> releaseLabwareFilter.test(getLabware(lwid, labwareIdCache).getLabwareType()))
-                .collect(toSet());
-
-        for (Release release : releaseRepo.findAllByLabwareIdIn(lwIdsToCheckForReleases)) {
-            addTime(opTimes, "Release " + release.getLabware().getLabwareType().getName(), release.getReleased());
-        }
-    }
-
-    /**
-     * Gets all labware of destinations of the given operation
-     * @param op the operation
-     * @param lwIdToLabware a cache of labware id to its labwares to avoid repeated lookups
-     * @return the distinct labware types of destinations in the given operation
-     */
-    public Set<Labware> opLabwares(Operation op, final Map<Integer, Labware> lwIdToLabware) {
-        return op.getActions().stream()
-                .map(a -> a.getDestination().getLabwareId())
-                .distinct()
-                .map(id -> getLabware(id, lwIdToLabware))
-                .collect(toSet());
-    }
-
-    /**
-     * Gets the labware type for the given labware id
-     * @param labwareId the labware id
-     * @param lwIdToLabware a cache to avoid repeated lookups
-     * @return the labware type of the given labware id
-     */
-    public Labware getLabware(Integer labwareId, Map<Integer, Labware> lwIdToLabware) {
-        Labware lw = lwIdToLabware.get(labwareId);
-        if (lw==null) {
-            lw = lwRepo.getById(labwareId);
-            lwIdToLabware.put(labwareId, lw);
-        }
-        return lw;
-    }
-
     /**
      * Incorporates a given timestamp in the given map.
      * If the key is not already in the map, or if the new timestamp is later than the saved timestamp,
@@ -287,26 +284,37 @@ public class WorkProgressServiceImp implements WorkProgressService {
     }
 
     /**
-     * Retrieves the last comment associated with a work if the comment relates to the work status.
-     * If the work is completed, unstarted or active, it returns null.
-     * If the work is failed, paused or withdrawn, it returns the comment text stating the reason for the current status.
-     * @param work the work to retrieve the comment for
-     * @return the string with the associated comment's text, if any; otherwise null
+     * Retrieves the last comment associated with each work if the comment relates to the work status.
+     * If the work is completed, unstarted or active, it has no comment.
+     * If the work is failed, paused or withdrawn, its comment is the text stating the reason for the current status.
+     * The latest events for all the relevant works are loaded together.
+     * @param works the works to retrieve comments for
+     * @return a map from work id to the associated comment's text, for those works that have one
      */
-    public String getWorkComment(Work work) {
-        WorkEvent.Type neededType = switch(work.getStatus()) {
-            case paused -> WorkEvent.Type.pause;
-            case failed -> WorkEvent.Type.fail;
-            case withdrawn -> WorkEvent.Type.withdraw;
-            default -> null;
-        };
-        if (neededType != null) {
-            Map<Integer, WorkEvent> workEvents = workEventService.loadLatestEvents(List.of(work.getId()));
-            WorkEvent event = workEvents.get(work.getId());
-            if (event != null && event.getType() == neededType && event.getComment() != null) {
-                return event.getComment().getText();
+    public Map<Integer, String> loadWorkComments(Collection<Work> works) {
+        Map<Integer, WorkEvent.Type> neededTypes = new HashMap<>();
+        for (Work work : works) {
+            WorkEvent.Type neededType = switch(work.getStatus()) {
+                case paused -> WorkEvent.Type.pause;
+                case failed -> WorkEvent.Type.fail;
+                case withdrawn -> WorkEvent.Type.withdraw;
+                default -> null;
+            };
+            if (neededType != null) {
+                neededTypes.put(work.getId(), neededType);
             }
         }
-        return null;
+        if (neededTypes.isEmpty()) {
+            return Map.of();
+        }
+        Map<Integer, WorkEvent> workEvents = workEventService.loadLatestEvents(neededTypes.keySet());
+        Map<Integer, String> comments = new HashMap<>(neededTypes.size());
+        neededTypes.forEach((workId, neededType) -> {
+            WorkEvent event = workEvents.get(workId);
+            if (event != null && event.getType() == neededType && event.getComment() != null) {
+                comments.put(workId, event.getComment().getText());
+            }
+        });
+        return comments;
     }
 }
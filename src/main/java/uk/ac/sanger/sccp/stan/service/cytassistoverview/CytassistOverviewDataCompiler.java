@@ -2,6 +2,7 @@ package uk.ac.sanger.sccp.stan.service.cytassistoverview;
 
 import uk.ac.sanger.sccp.stan.model.CytassistOverview;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -13,4 +14,10 @@ public interface CytassistOverviewDataCompiler {
      * Compiles the cytassist overview data
      */
     List<CytassistOverview> execute();
+
+    /**
+     * Compiles the cytassist overview data for the specified cytassist operations
+     * @param cytOpIds the ids of the cytassist operations
+     */
+    List<CytassistOverview> execute(Collection<Integer> cytOpIds);
 }
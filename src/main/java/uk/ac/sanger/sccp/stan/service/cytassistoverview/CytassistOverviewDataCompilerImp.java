@@ -1,11 +1,18 @@
 package uk.ac.sanger.sccp.stan.service.cytassistoverview;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import uk.ac.sanger.sccp.stan.StanMetrics;
+import uk.ac.sanger.sccp.stan.Transactor;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.model.reagentplate.ReagentAction;
 import uk.ac.sanger.sccp.stan.model.reagentplate.ReagentPlate;
 import uk.ac.sanger.sccp.stan.repo.*;
+import uk.ac.sanger.sccp.stan.service.load.LoadStages;
+import uk.ac.sanger.sccp.stan.service.load.LoaderExecutor;
 import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser;
 import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.Posterity;
 import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.SlotSample;
@@ -13,6 +20,7 @@ import uk.ac.sanger.sccp.utils.UCMap;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.Executor;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
@@ -21,10 +29,23 @@ import static java.util.stream.Collectors.toSet;
 import static uk.ac.sanger.sccp.utils.BasicUtils.*;
 
 /**
+ * The data for the overview is loaded in {@link LoadStages stages}, which run concurrently if
+ * {@link uk.ac.sanger.sccp.stan.config.CytassistOverviewConfig#getLoaderThreads loader threads} are configured.
+ * The stages that fill in the labware of the cytassist ops run on the calling thread.
+ * Each of the others finds its data from slot, labware and op ids in its own transaction, and then
+ * sets its own fields of the rows (and adds to each row's set of users) on the calling thread.
  * @author dr6
  */
 @Service
 public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCompiler {
+    private static final Logger log = LoggerFactory.getLogger(CytassistOverviewDataCompilerImp.class);
+    static final String STAGE_DESCRIPTION = "Cytassist overview";
+    static final UCMap<BiConsumer<CytassistOverview, String>> QPCR_SETTERS = new UCMap<>(Map.of(
+            "Cq value", CytassistOverview::setQpcrResult));
+    static final UCMap<BiConsumer<CytassistOverview, String>> AMP_SETTERS = new UCMap<>(Map.of(
+            "Cq value", CytassistOverview::setAmplificationCq,
+            "Cycles", CytassistOverview::setAmplificationCycles));
+
     private final OperationTypeRepo opTypeRepo;
     private final OperationRepo opRepo;
     private final LabwareRepo lwRepo;
@@ -40,6 +61,9 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
     private final WorkRepo workRepo;
 
     private final Ancestoriser ancestoriser;
+    private final Transactor transactor;
+    private final StanMetrics metrics;
+    private final Executor loaderExecutor;
 
     @Autowired
     public CytassistOverviewDataCompilerImp(OperationTypeRepo opTypeRepo, OperationRepo opRepo, LabwareRepo lwRepo,
@@ -48,7 +72,8 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
                                             ReagentActionRepo reagentActionRepo, ReagentPlateRepo reagentPlateRepo,
                                             OperationCommentRepo opComRepo, ReleaseRepo releaseRepo,
                                             LabwareFlagRepo lwFlagRepo, WorkRepo workRepo,
-                                            Ancestoriser ancestoriser) {
+                                            Ancestoriser ancestoriser, Transactor transactor, StanMetrics metrics,
+                                            @Qualifier("cytassistLoaderExecutor") LoaderExecutor loaderExecutor) {
         this.opTypeRepo = opTypeRepo;
         this.opRepo = opRepo;
         this.lwRepo = lwRepo;
@@ -63,12 +88,34 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
         this.lwFlagRepo = lwFlagRepo;
         this.workRepo = workRepo;
         this.ancestoriser = ancestoriser;
+        this.transactor = transactor;
+        this.metrics = metrics;
+        this.loaderExecutor = loaderExecutor.getExecutor();
     }
 
     @Override
     public List<CytassistOverview> execute() {
         OperationType cyt = opTypeRepo.getByName("cytassist");
-        List<Operation> cytOps = opRepo.findAllByOperationType(cyt);
+        return compile(opRepo.findAllByOperationType(cyt));
+    }
+
+    @Override
+    public List<CytassistOverview> execute(Collection<Integer> cytOpIds) {
+        if (cytOpIds.isEmpty()) {
+            return List.of();
+        }
+        OperationType cyt = opTypeRepo.getByName("cytassist");
+        List<Operation> cytOps = opRepo.findAllWithActionsByIdIn(cytOpIds).stream()
+                .filter(op -> op.getOperationType().equals(cyt))
+                .toList();
+        return compile(cytOps);
+    }
+
+    /** Compiles the overview rows for the given cytassist operations */
+    List<CytassistOverview> compile(List<Operation> cytOps) {
+        if (cytOps.isEmpty()) {
+            return List.of();
+        }
         List<CytData> data = cytOps.stream()
                 .flatMap(op -> op.getActions().stream()
                         .map(ac -> new CytData(ac, op)))
@@ -77,23 +124,42 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
         Posterity posterity = loadPosterity(data);
         Set<Integer> allDestSlotIds = destSlotIds(posterity);
         Set<Integer> cytDestIds = data.stream().map(d -> d.cytAction.getDestination().getId()).collect(toSet());
-        loadCytLabware(data);
-        loadSourceCreation(data, sourceSlotIds);
-        fillCytassistData(data);
-        loadLp(data);
-        loadStains(data, sourceSlotIds);
-        loadImages(data, sourceSlotIds);
-        loadProbes(data, sourceSlotIds);
-        loadProbeQC(data, sourceSlotIds);
-        loadTissueCoverage(data, cytDestIds);
-        loadQPCR(data, posterity, allDestSlotIds);
-        loadAmpMeasurements(data, posterity, allDestSlotIds);
-        loadDualIndex(data, posterity, allDestSlotIds);
-        loadVisiumConcentration(data, posterity, allDestSlotIds);
-        loadLatestLabware(data, posterity);
-        loadFlags(data, posterity);
-        loadWorkNumbers(data);
+        Set<Integer> cytOpIds = cytOpIds(data);
+        Set<Integer> leafLabwareIds = leafLabwareIds(posterity);
+        Set<Integer> flagLabwareIds = flagLabwareIds(data, posterity);
+        final long start = System.nanoTime();
+        LoadStages stages = new LoadStages(loaderExecutor, transactor, STAGE_DESCRIPTION);
+        stages.addSessionBound("labware", () -> loadCytLabware(data));
+        stages.addSessionBound("cytassist", () -> fillCytassistData(data), "labware");
+        stages.add("source creation", () -> findSourceCreation(sourceSlotIds),
+                ops -> setSourceCreation(data, ops));
+        stages.add("lp", () -> findLp(cytOpIds), lps -> setLp(data, lps), "labware");
+        stages.add("stains", () -> findStains(sourceSlotIds), stains -> setStains(data, stains));
+        stages.add("images", () -> findLatestOps("Image", sourceSlotIds),
+                ops -> setImages(data, ops));
+        stages.add("probes", () -> findProbes(sourceSlotIds), probes -> setProbes(data, probes));
+        stages.add("probe qc", () -> findLatestOps("Probe hybridisation QC", sourceSlotIds),
+                ops -> setProbeQC(data, ops));
+        stages.add("tissue coverage", () -> findTissueCoverage(cytDestIds),
+                coverage -> setTissueCoverage(data, coverage));
+        stages.add("qpcr", () -> findMeasurements(allDestSlotIds, "qPCR results", QPCR_SETTERS),
+                found -> setMeasurements(data, posterity, QPCR_SETTERS, found));
+        stages.add("amplification", () -> findMeasurements(allDestSlotIds, "Amplification", AMP_SETTERS),
+                found -> setMeasurements(data, posterity, AMP_SETTERS, found));
+        stages.add("dual index", () -> findDualIndex(allDestSlotIds),
+                dualIndex -> setDualIndex(data, posterity, dualIndex));
+        stages.add("visium concentration", () -> findVisiumConcentration(allDestSlotIds),
+                conc -> setVisiumConcentration(data, posterity, conc));
+        stages.add("latest labware", () -> findLatestLabware(leafLabwareIds),
+                latest -> setLatestLabware(data, posterity, latest));
+        stages.add("flags", () -> findFlags(flagLabwareIds), flags -> setFlags(data, posterity, flags), "labware");
+        stages.add("work numbers", () -> workRepo.findWorkNumbersForOpIds(cytOpIds),
+                workNumbers -> setWorkNumbers(data, workNumbers));
+        Map<String, Long> timings = stages.run();
         setUsers(data);
+        timings.forEach((stage, millis) -> metrics.recordStage(STAGE_DESCRIPTION+" "+stage, millis * 1_000_000));
+        log.info("Compiled {} cytassist overview rows in {} ms. Stage times (ms): {}",
+                data.size(), (System.nanoTime()-start)/1_000_000, timings);
         return data.stream().map(d -> d.row).toList();
     }
 
@@ -122,7 +188,11 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
 
     /** Loads LP numbers (lw notes) for the cyt ops */
     void loadLp(List<CytData> data) {
-        Set<Integer> opIds = data.stream().map(d -> d.cytOp.getId()).collect(toSet());
+        setLp(data, findLp(cytOpIds(data)));
+    }
+
+    /** Finds LP numbers (lw notes) for the given ops, mapped from labware id and op id */
+    Map<List<Integer>, String> findLp(Set<Integer> opIds) {
         List<LabwareNote> lwNotes = lwNoteRepo.findAllByOperationIdIn(opIds);
         Map<List<Integer>, String> lwOpLp = new HashMap<>();
         for (LabwareNote lwNote : lwNotes) {
@@ -131,6 +201,11 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
                 lwOpLp.put(lwOpId, lwNote.getValue());
             }
         }
+        return lwOpLp;
+    }
+
+    /** Sets LP numbers in the rows */
+    void setLp(List<CytData> data, Map<List<Integer>, String> lwOpLp) {
         for (CytData d : data) {
             List<Integer> lwOpId = List.of(d.destLabware.getId(), d.cytOp.getId());
             d.row.setCytassistLp(lwOpLp.get(lwOpId));
@@ -139,8 +214,11 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
 
     /** Loads work numbers for the cyt ops */
     void loadWorkNumbers(List<CytData> data) {
-        Set<Integer> opIds = data.stream().map(d -> d.cytOp.getId()).collect(toSet());
-        Map<Integer, Set<String>> opWorkNumbers = workRepo.findWorkNumbersForOpIds(opIds);
+        setWorkNumbers(data, workRepo.findWorkNumbersForOpIds(cytOpIds(data)));
+    }
+
+    /** Sets work numbers in the rows from the given map of op id to work numbers */
+    void setWorkNumbers(List<CytData> data, Map<Integer, Set<String>> opWorkNumbers) {
         for (CytData d : data) {
             Set<String> workNumbers = opWorkNumbers.get(d.cytOp.getId());
             if (!nullOrEmpty(workNumbers)) {
@@ -151,6 +229,11 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
 
     /** Finds the date of the register or sample op that created the sources of the cyt ops */
     void loadSourceCreation(List<CytData> data, Set<Integer> sourceSlotIds) {
+        setSourceCreation(data, findSourceCreation(sourceSlotIds));
+    }
+
+    /** Finds the register or section op that created each labware of the given slots, mapped from labware id */
+    Map<Integer, Operation> findSourceCreation(Set<Integer> sourceSlotIds) {
         OperationType reg = opTypeRepo.getByName("Register");
         OperationType sec = opTypeRepo.getByName("Section");
         List<Operation> regOps = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(reg, sourceSlotIds);
@@ -161,6 +244,11 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
                 creationOps.put(action.getDestination().getLabwareId(), op);
             }
         }
+        return creationOps;
+    }
+
+    /** Sets the creation of the sources of the cyt ops in the rows */
+    void setSourceCreation(List<CytData> data, Map<Integer, Operation> creationOps) {
         for (CytData d : data) {
             Operation op = creationOps.get(d.cytAction.getSource().getLabwareId());
             if (op != null) {
@@ -173,6 +261,7 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
     /** Fills in a bunch of fields related to the cyt ops */
     void fillCytassistData(List<CytData> data) {
         for (CytData d : data) {
+            d.row.setCytassistOperationId(d.cytOp.getId());
             d.row.setSection(d.cytAction.getSourceSample().getSection());
             d.row.setSourceBarcode(d.sourceLabware.getBarcode());
             d.row.setSourceSlotAddress(d.cytAction.getSource().getAddress().toString());
@@ -188,6 +277,11 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
 
     /** Loads info for stain ops on the cyt sources */
     void loadStains(List<CytData> data, Set<Integer> sourceSlotIds) {
+        setStains(data, findStains(sourceSlotIds));
+    }
+
+    /** Finds the latest stain op into each of the given slots, and the description of its stain types */
+    StainData findStains(Set<Integer> sourceSlotIds) {
         OperationType stainOpType = opTypeRepo.getByName("Stain");
         List<Operation> stainOps = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(stainOpType, sourceSlotIds);
         Map<Integer, Operation> slotOps = new HashMap<>();
@@ -202,25 +296,35 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
         }
         Set<Integer> stainOpIds = slotOps.values().stream().map(Operation::getId).collect(toSet());
         Map<Integer, List<StainType>> opStains = stainTypeRepo.loadOperationStainTypes(stainOpIds);
+        Map<Integer, String> opStainDescs = new HashMap<>(stainOpIds.size());
+        for (Integer opId : stainOpIds) {
+            opStainDescs.put(opId, opStains.get(opId).stream()
+                    .map(StainType::getName)
+                    .collect(joining(", ")));
+        }
+        return new StainData(slotOps, opStainDescs);
+    }
+
+    /** Sets the info for stain ops on the cyt sources in the rows */
+    void setStains(List<CytData> data, StainData stains) {
         for (CytData d : data) {
-            Operation op = slotOps.get(d.cytAction.getSource().getId());
+            Operation op = stains.slotOps().get(d.cytAction.getSource().getId());
             if (op == null) {
                 continue;
             }
             d.users.add(op.getUser());
             d.row.setStainPerformed(op.getPerformed());
-            String stainDesc = opStains.get(op.getId()).stream()
-                    .map(StainType::getName)
-                    .collect(joining(", "));
-            d.row.setStainType(stainDesc);
+            d.row.setStainType(stains.opStainDescs().get(op.getId()));
         }
     }
 
     /** Loads info for Image ops on the cyt sources */
     void loadImages(List<CytData> data, Set<Integer> sourceSlotIds) {
-        OperationType imageOpType = opTypeRepo.getByName("Image");
-        List<Operation> imageOps = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(imageOpType, sourceSlotIds);
-        Map<Integer, Operation> opMap = latestOps(imageOps);
+        setImages(data, findLatestOps("Image", sourceSlotIds));
+    }
+
+    /** Sets the info for Image ops on the cyt sources in the rows */
+    void setImages(List<CytData> data, Map<Integer, Operation> opMap) {
         for (CytData d : data) {
             Operation op = opMap.get(d.cytAction.getSource().getId());
             if (op != null) {
@@ -232,6 +336,11 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
 
     /** Loads info for probe hybridisation ops on the cyt sources */
     void loadProbes(List<CytData> data, Set<Integer> sourceSlotIds) {
+        setProbes(data, findProbes(sourceSlotIds));
+    }
+
+    /** Finds probe hybridisation ops from the given slots, and the probe panels used on their labware */
+    ProbeData findProbes(Set<Integer> sourceSlotIds) {
         OperationType probeOpType = opTypeRepo.getByName("Probe hybridisation Cytassist");
         List<Operation> probeOps = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(probeOpType, sourceSlotIds);
         Map<Integer, Set<Operation>> slotProbeOps = new HashMap<>();
@@ -247,8 +356,13 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
         for (LabwareProbe p : probes) {
             lwIdProbePanels.computeIfAbsent(p.getLabwareId(), k -> new HashSet<>()).add(p.getProbePanel());
         }
+        return new ProbeData(slotProbeOps, lwIdProbePanels);
+    }
+
+    /** Sets the info for probe hybridisation ops on the cyt sources in the rows */
+    void setProbes(List<CytData> data, ProbeData probeData) {
         for (CytData d : data) {
-            Set<Operation> ops = slotProbeOps.get(d.cytAction.getSource().getId());
+            Set<Operation> ops = probeData.slotProbeOps().get(d.cytAction.getSource().getId());
             if (!nullOrEmpty(ops)) {
                 Operation op = ops.stream()
                         .max(Comparator.naturalOrder())
@@ -258,7 +372,7 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
                     d.users.add(op.getUser());
                 }
             }
-            Set<ProbePanel> probePanels = lwIdProbePanels.get(d.cytAction.getSource().getLabwareId());
+            Set<ProbePanel> probePanels = probeData.labwareProbePanels().get(d.cytAction.getSource().getLabwareId());
             if (!nullOrEmpty(probePanels)) {
                 String probeNames = probePanels.stream()
                         .map(ProbePanel::getName)
@@ -271,9 +385,11 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
 
     /** Loads info for probe hyb qc on the cyt sources */
     void loadProbeQC(List<CytData> data, Set<Integer> sourceSlotIds) {
-        OperationType qcOpType = opTypeRepo.getByName("Probe hybridisation QC");
-        List<Operation> ops = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(qcOpType, sourceSlotIds);
-        Map<Integer, Operation> opMap = latestOps(ops);
+        setProbeQC(data, findLatestOps("Probe hybridisation QC", sourceSlotIds));
+    }
+
+    /** Sets the info for probe hyb qc on the cyt sources in the rows */
+    void setProbeQC(List<CytData> data, Map<Integer, Operation> opMap) {
         for (CytData d : data) {
             Operation op = opMap.get(d.cytAction.getSource().getId());
             if (op != null) {
@@ -285,6 +401,11 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
 
     /** Loads tissue coverage measurement for the cyt destinations */
     void loadTissueCoverage(List<CytData> data, Set<Integer> slotIds) {
+        setTissueCoverage(data, findTissueCoverage(slotIds));
+    }
+
+    /** Finds tissue coverage measurements in the given slots, and the ops that recorded them */
+    CoverageData findTissueCoverage(Set<Integer> slotIds) {
         List<Measurement> measurements = measurementRepo.findAllBySlotIdInAndName(slotIds, "Tissue coverage");
         Map<SlotIdSampleId, Measurement> ssCoverage = new HashMap<>();
         for (Measurement m : measurements) {
@@ -292,11 +413,16 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
         }
         Set<Integer> opIds = ssCoverage.values().stream().map(Measurement::getOperationId).collect(toSet());
         Map<Integer, Operation> opMap = stream(opRepo.findAllById(opIds)).collect(inMap(Operation::getId));
+        return new CoverageData(ssCoverage, opMap);
+    }
+
+    /** Sets the tissue coverage of the cyt destinations in the rows */
+    void setTissueCoverage(List<CytData> data, CoverageData coverage) {
         for (CytData d : data) {
-            Measurement m = ssCoverage.get(new SlotIdSampleId(d.cytAction.getDestination(), d.cytAction.getSample()));
+            Measurement m = coverage.ssCoverage().get(new SlotIdSampleId(d.cytAction.getDestination(), d.cytAction.getSample()));
             if (m != null) {
                 d.row.setTissueCoverage(m.getValue());
-                Operation op = opMap.get(m.getOperationId());
+                Operation op = coverage.opMap().get(m.getOperationId());
                 if (op != null) {
                     d.users.add(op.getUser());
                 }
@@ -311,14 +437,16 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
 
     /** Loads measurements from amplification ops on future lw */
     void loadAmpMeasurements(List<CytData> data, Posterity posterity, Set<Integer> allDestSlotIds) {
-        UCMap<BiConsumer<CytassistOverview, String>> measSetters = new UCMap<>(2);
-        measSetters.put("Cq value", CytassistOverview::setAmplificationCq);
-        measSetters.put("Cycles", CytassistOverview::setAmplificationCycles);
-        loadMeasurements(data, posterity, allDestSlotIds, "Amplification", measSetters);
+        loadMeasurements(data, posterity, allDestSlotIds, "Amplification", AMP_SETTERS);
     }
 
     /** Loads details of dual index ops on future lw */
     void loadDualIndex(List<CytData> data, Posterity posterity, Set<Integer> allDestSlotIds) {
+        setDualIndex(data, posterity, findDualIndex(allDestSlotIds));
+    }
+
+    /** Finds the latest reagent action from a dual index op into each of the given slots */
+    DualIndexData findDualIndex(Set<Integer> allDestSlotIds) {
         OperationType opType = opTypeRepo.getByName("Dual index plate");
         List<Operation> ops = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(opType, allDestSlotIds);
         Map<Integer, Operation> opMap = ops.stream().collect(inMap(Operation::getId));
@@ -337,10 +465,16 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
                 slotRa.put(slotId, ra);
             }
         }
+        return new DualIndexData(opMap, slotRa, rpMap);
+    }
+
+    /** Sets the details of dual index ops on future lw in the rows */
+    void setDualIndex(List<CytData> data, Posterity posterity, DualIndexData dualIndex) {
+        final Map<Integer, Operation> opMap = dualIndex.opMap();
         for (CytData d : data) {
             ReagentAction found = null;
             for (SlotSample ss : posterity.descendents(new SlotSample(d.cytAction.getSource(), d.cytAction.getSourceSample()))) {
-                ReagentAction ra = slotRa.get(ss.slotId());
+                ReagentAction ra = dualIndex.slotReagentActions().get(ss.slotId());
                 if (raSupersedes(ra, found, opMap)) {
                     found = ra;
                 }
@@ -351,7 +485,7 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
                     d.users.add(op.getUser());
                 }
                 d.row.setDualIndexPlateWell(found.getReagentSlot().getAddress().toString());
-                ReagentPlate rp = rpMap.get(found.getReagentSlot().getPlateId());
+                ReagentPlate rp = dualIndex.reagentPlates().get(found.getReagentSlot().getPlateId());
                 d.row.setDualIndexPlateType(rp==null ? null : rp.getPlateType());
             }
         }
@@ -359,6 +493,11 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
 
     /** Loads details (including measurements and comments) of Visium concentration ops on future lw */
     void loadVisiumConcentration(List<CytData> data, Posterity posterity, Set<Integer> allDestSlotIds) {
+        setVisiumConcentration(data, posterity, findVisiumConcentration(allDestSlotIds));
+    }
+
+    /** Finds the latest Visium concentration op into each of the given slots, and its measurements and comments */
+    VisiumConcentrationData findVisiumConcentration(Set<Integer> allDestSlotIds) {
         OperationType opType = opTypeRepo.getByName("Visium concentration");
         List<Operation> ops = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(opType, allDestSlotIds);
         Set<Integer> opIds = ops.stream().map(Operation::getId).collect(toSet());
@@ -377,6 +516,12 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
                 }
             }
         }
+        return new VisiumConcentrationData(ssIdOps, opMeasurements, opComments);
+    }
+
+    /** Sets the details of Visium concentration ops on future lw in the rows */
+    void setVisiumConcentration(List<CytData> data, Posterity posterity, VisiumConcentrationData conc) {
+        final Map<SlotIdSampleId, Operation> ssIdOps = conc.ssIdOps();
         for (CytData d : data) {
             Operation found = null;
             Set<SlotIdSampleId> foundSsIds = null;
@@ -396,7 +541,7 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
             }
             if (found != null) {
                 d.users.add(found.getUser());
-                Set<Measurement> measurements = opMeasurements.get(found.getId());
+                Set<Measurement> measurements = conc.opMeasurements().get(found.getId());
                 if (!nullOrEmpty(measurements)) {
                     for (Measurement meas : measurements) {
                         if (measurementApplies(meas, foundSsIds)) {
@@ -413,7 +558,7 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
                         }
                     }
                 }
-                Set<OperationComment> opComs = opComments.get(found.getId());
+                Set<OperationComment> opComs = conc.opComments().get(found.getId());
                 if (!nullOrEmpty(opComs)) {
                     for (OperationComment oc : opComs) {
                         if (oc.getComment().getCategory().equalsIgnoreCase("size range")
@@ -432,9 +577,14 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
      * Looks up releases on those labware, if they are set as released
      **/
     void loadLatestLabware(List<CytData> data, Posterity posterity) {
-        Set<Integer> labwareIds = posterity.getLeafs().stream()
-                .map(ss -> ss.slot().getLabwareId())
-                .collect(toSet());
+        setLatestLabware(data, posterity, findLatestLabware(leafLabwareIds(posterity)));
+    }
+
+    /**
+     * Loads the given labware, the earliest time an op was performed into each,
+     * and the latest release time of those that are released
+     */
+    LatestLabwareData findLatestLabware(Set<Integer> labwareIds) {
         Map<Integer, Labware> lwMap = lwRepo.findAllByIdIn(labwareIds).stream().collect(inMap(Labware::getId));
         Map<Integer, LocalDateTime> lwTimes = opRepo.findEarliestPerformedIntoLabware(labwareIds);
         Set<Integer> releasedLwIds = lwTimes.keySet()
@@ -449,6 +599,13 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
                 releaseTime.put(release.getLabware().getId(), release.getReleased());
             }
         }
+        return new LatestLabwareData(lwMap, lwTimes, releaseTime);
+    }
+
+    /** Sets the details of the latest future labware in the rows */
+    void setLatestLabware(List<CytData> data, Posterity posterity, LatestLabwareData latest) {
+        final Map<Integer, Labware> lwMap = latest.labware();
+        final Map<Integer, LocalDateTime> lwTimes = latest.labwareTimes();
         for (CytData d : data) {
             Labware foundLw = null;
             LocalDateTime foundTime = null;
@@ -466,7 +623,7 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
                 d.row.setLatestBarcode(foundLw.getBarcode());
                 d.row.setLatestLwState(foundLw.getState().toString());
                 d.row.setLatestBioState(foundBioState.getName());
-                LocalDateTime time = releaseTime.get(foundLw.getId());
+                LocalDateTime time = latest.releaseTimes().get(foundLw.getId());
                 d.row.setLatestBarcodeReleased(time);
             }
         }
@@ -474,18 +631,20 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
 
     /** Loads flags on the involved lw and all future lw */
     void loadFlags(List<CytData> data, Posterity posterity) {
-        Set<Integer> labwareIds = new HashSet<>();
-        for (CytData d : data) {
-            labwareIds.add(d.sourceLabware.getId());
-            labwareIds.add(d.destLabware.getId());
-        }
-        for (SlotSample ss : posterity.keySet()) {
-            labwareIds.add(ss.slot().getLabwareId());
-        }
+        setFlags(data, posterity, findFlags(flagLabwareIds(data, posterity)));
+    }
+
+    /** Finds the descriptions of flags on the given labware, mapped from labware id */
+    Map<Integer, Set<String>> findFlags(Set<Integer> labwareIds) {
         Map<Integer, Set<String>> lwFlags = new HashMap<>();
         for (LabwareFlag lf : lwFlagRepo.findAllByLabwareIdIn(labwareIds)) {
             lwFlags.computeIfAbsent(lf.getLabware().getId(), k -> new HashSet<>()).add(lf.getDescription());
         }
+        return lwFlags;
+    }
+
+    /** Sets the flags on the involved lw and all future lw in the rows */
+    void setFlags(List<CytData> data, Posterity posterity, Map<Integer, Set<String>> lwFlags) {
         for (CytData d : data) {
             Set<String> flags = new HashSet<>();
             Set<String> newFlags = lwFlags.get(d.sourceLabware.getId());
@@ -557,6 +716,37 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
         return (aOp != null && bOp != null && aOp.compareTo(bOp) > 0);
     }
 
+    /** Collects the ids of the cyt ops of the given cyt data */
+    Set<Integer> cytOpIds(List<CytData> data) {
+        return data.stream().map(d -> d.cytOp.getId()).collect(toSet());
+    }
+
+    /** Gets the ids of the labware containing the leaf slots of the posterity */
+    Set<Integer> leafLabwareIds(Posterity posterity) {
+        return posterity.getLeafs().stream()
+                .map(ss -> ss.slot().getLabwareId())
+                .collect(toSet());
+    }
+
+    /** Gets the ids of the labware involved in the cyt ops, and all future labware */
+    Set<Integer> flagLabwareIds(List<CytData> data, Posterity posterity) {
+        Set<Integer> labwareIds = new HashSet<>();
+        for (CytData d : data) {
+            labwareIds.add(d.cytAction.getSource().getLabwareId());
+            labwareIds.add(d.cytAction.getDestination().getLabwareId());
+        }
+        for (SlotSample ss : posterity.keySet()) {
+            labwareIds.add(ss.slot().getLabwareId());
+        }
+        return labwareIds;
+    }
+
+    /** Finds the latest op of the given name into each of the given slots */
+    Map<Integer, Operation> findLatestOps(String opName, Set<Integer> slotIds) {
+        OperationType opType = opTypeRepo.getByName(opName);
+        return latestOps(opRepo.findAllByOperationTypeAndDestinationSlotIdIn(opType, slotIds));
+    }
+
     /** Collects the source slot ids of the given cyt data */
     Set<Integer> sourceSlotIds(List<CytData> data) {
         return data.stream()
@@ -612,14 +802,16 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
      */
     void loadMeasurements(List<CytData> data, Posterity posterity, Set<Integer> destSlotIds,
                          String opName, UCMap<BiConsumer<CytassistOverview, String>> measurementSetters) {
+        setMeasurements(data, posterity, measurementSetters,
+                findMeasurements(destSlotIds, opName, measurementSetters));
+    }
 
-        /* A name (converted to upper case) and a slot sample id, used as a hashmap key. */
-        record NameSs(String name, SlotIdSampleId ssId) {
-            NameSs(String name, SlotIdSampleId ssId) {
-                this.name = name.toUpperCase();
-                this.ssId = ssId;
-            }
-        }
+    /**
+     * Finds the latest measurement of each of the names in the given setter map recorded by ops of
+     * the given name into each of the given slots.
+     */
+    MeasurementData findMeasurements(Set<Integer> destSlotIds, String opName,
+                                     UCMap<BiConsumer<CytassistOverview, String>> measurementSetters) {
         OperationType opType = opTypeRepo.getByName(opName);
         List<Operation> ops = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(opType, destSlotIds);
         Map<Integer, Operation> opMap = ops.stream().collect(inMap(Operation::getId));
@@ -638,6 +830,15 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
                 }
             }
         }
+        return new MeasurementData(nameSsMeas, nameSsOp);
+    }
+
+    /**
+     * Sets the latest of the given measurements on the future labware of each row,
+     * using the given setter functions.
+     */
+    void setMeasurements(List<CytData> data, Posterity posterity,
+                         UCMap<BiConsumer<CytassistOverview, String>> measurementSetters, MeasurementData found) {
         for (CytData d : data) {
             SlotSample start = new SlotSample(d.cytAction.getSource(), d.cytAction.getSourceSample());
             UCMap<Operation> nameFoundOps = new UCMap<>();
@@ -646,10 +847,10 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
                 SlotIdSampleId ssId = new SlotIdSampleId(ss.slotId(), ss.sampleId());
                 for (String measurementName : measurementSetters.keySet()) {
                     NameSs key = new NameSs(measurementName, ssId);
-                    Operation op = nameSsOp.get(new NameSs(measurementName, ssId));
+                    Operation op = found.ops().get(key);
                     if (op != null && (nameFoundOps.get(measurementName)==null || nameFoundOps.get(measurementName).compareTo(op) < 0)) {
                         nameFoundOps.put(measurementName, op);
-                        nameFoundValues.put(measurementName, nameSsMeas.get(key));
+                        nameFoundValues.put(measurementName, found.values().get(key));
                     }
                 }
             }
@@ -662,6 +863,39 @@ public class CytassistOverviewDataCompilerImp implements CytassistOverviewDataCo
         }
     }
 
+    /** A name (converted to upper case) and a slot sample id, used as a hashmap key. */
+    record NameSs(String name, SlotIdSampleId ssId) {
+        NameSs(String name, SlotIdSampleId ssId) {
+            this.name = name.toUpperCase();
+            this.ssId = ssId;
+        }
+    }
+
+    /** The latest values of measurements, and the ops that recorded them */
+    record MeasurementData(Map<NameSs, String> values, Map<NameSs, Operation> ops) {}
+
+    /** The latest stain op into each slot, and the description of the stain types of each op */
+    record StainData(Map<Integer, Operation> slotOps, Map<Integer, String> opStainDescs) {}
+
+    /** The probe hybridisation ops from each slot, and the probe panels used on each labware */
+    record ProbeData(Map<Integer, Set<Operation>> slotProbeOps, Map<Integer, Set<ProbePanel>> labwareProbePanels) {}
+
+    /** Tissue coverage measurements, and the ops that recorded them */
+    record CoverageData(Map<SlotIdSampleId, Measurement> ssCoverage, Map<Integer, Operation> opMap) {}
+
+    /** Dual index ops, the latest reagent action into each slot, and the reagent plates */
+    record DualIndexData(Map<Integer, Operation> opMap, Map<Integer, ReagentAction> slotReagentActions,
+                         Map<Integer, ReagentPlate> reagentPlates) {}
+
+    /** The latest Visium concentration op into each slot sample, and the measurements and comments of the ops */
+    record VisiumConcentrationData(Map<SlotIdSampleId, Operation> ssIdOps,
+                                   Map<Integer, Set<Measurement>> opMeasurements,
+                                   Map<Integer, Set<OperationComment>> opComments) {}
+
+    /** Labware, the earliest time an op was performed into each, and the latest release of each */
+    record LatestLabwareData(Map<Integer, Labware> labware, Map<Integer, LocalDateTime> labwareTimes,
+                             Map<Integer, LocalDateTime> releaseTimes) {}
+
     /**
      * Intermediate data used to build CytassistOverviews.
      * Each element of this data corresponds to an action in a cytassist op.
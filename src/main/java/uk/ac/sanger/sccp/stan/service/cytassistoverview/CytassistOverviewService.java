@@ -2,6 +2,20 @@ package uk.ac.sanger.sccp.stan.service.cytassistoverview;
 
 /** Service to update the cytassist overview table */
 public interface CytassistOverviewService {
-    /** Updates the cytassist overview table */
+    /** Updates the cytassist overview table, rebuilding every row */
     void update();
+
+    /**
+     * Updates the cytassist overview table, replacing only the rows that may have been affected by
+     * operations or releases recorded since the last update.
+     * If the table has never been fully updated, this performs a full update instead.
+     * @return the number of cytassist operations whose rows were replaced
+     */
+    int updateIncremental();
+
+    /**
+     * Compiles the whole table and compares it to the rows currently stored, logging any differences.
+     * @return the number of rows that differ
+     */
+    int checkConsistency();
 }
@@ -1,31 +1,62 @@
 package uk.ac.sanger.sccp.stan.service.cytassistoverview;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import uk.ac.sanger.sccp.stan.Transactor;
 import uk.ac.sanger.sccp.stan.model.CytassistOverview;
-import uk.ac.sanger.sccp.stan.repo.CytassistOverviewRepo;
+import uk.ac.sanger.sccp.stan.model.HighWaterMark;
+import uk.ac.sanger.sccp.stan.repo.*;
+import uk.ac.sanger.sccp.stan.service.LineageService;
+import uk.ac.sanger.sccp.utils.BasicUtils;
 
 import javax.persistence.EntityManager;
-import java.util.List;
+import java.util.*;
+
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
 
 /**
+ * The full update recompiles every row in one transaction.
+ * The incremental update uses high-water marks of the operation and release ids seen by the last update,
+ * and replaces only the rows of cytassist operations linked to anything newer.
+ * Descendants of cytassist destinations are found through the slot-sample lineage, so until the lineage
+ * is recorded and complete, the incremental update falls back to a full update.
+ * Changes that are not recorded as new operations or releases (such as moving operations to different work),
+ * and operations committed out of id order, are only picked up by the full update,
+ * so the full update should still be run periodically.
  * @author dr6
  */
 @Service
 public class CytassistOverviewServiceImp implements CytassistOverviewService {
+    Logger log = LoggerFactory.getLogger(CytassistOverviewServiceImp.class);
+
+    static final String OP_MARK_NAME = "cytassist overview operation", RELEASE_MARK_NAME = "cytassist overview release";
+
     private final CytassistOverviewDataCompiler dataCompiler;
     private final CytassistOverviewRepo coRepo;
+    private final OperationTypeRepo opTypeRepo;
+    private final OperationRepo opRepo;
+    private final ReleaseRepo releaseRepo;
+    private final HighWaterMarkRepo markRepo;
+    private final LineageService lineageService;
     private final EntityManager entityManager;
     private final Transactor transactor;
 
     @Autowired
     public CytassistOverviewServiceImp(CytassistOverviewDataCompiler dataCompiler,
-                                       CytassistOverviewRepo coRepo,
-                                       EntityManager entityManager, Transactor transactor) {
+                                       CytassistOverviewRepo coRepo, OperationTypeRepo opTypeRepo,
+                                       OperationRepo opRepo, ReleaseRepo releaseRepo, HighWaterMarkRepo markRepo,
+                                       LineageService lineageService, EntityManager entityManager, Transactor transactor) {
         this.dataCompiler = dataCompiler;
         this.coRepo = coRepo;
+        this.opTypeRepo = opTypeRepo;
+        this.opRepo = opRepo;
+        this.releaseRepo = releaseRepo;
+        this.markRepo = markRepo;
+        this.lineageService = lineageService;
         this.entityManager = entityManager;
         this.transactor = transactor;
     }
@@ -33,14 +64,97 @@ public class CytassistOverviewServiceImp implements CytassistOverviewService {
     @Override
     public void update() {
         transactor.transact("cytassist overview update", () -> {
+            int[] marks = currentMaxIds();
             List<CytassistOverview> data = dataCompiler.execute();
             coRepo.deleteAllInBatch();
             entityManager.flush();
             coRepo.saveAll(data);
+            saveMarks(marks);
             return null;
         });
     }
 
+    @Override
+    public int updateIncremental() {
+        if (!transactor.transactReadOnly("cytassist overview lineage check", lineageService::isComplete)) {
+            log.info("Slot-sample lineage is not complete, so performing a full cytassist overview update.");
+            update();
+            return 0;
+        }
+        Integer count = transactor.transact("cytassist overview incremental update", () -> {
+            Optional<HighWaterMark> opMark = markRepo.findById(OP_MARK_NAME);
+            Optional<HighWaterMark> releaseMark = markRepo.findById(RELEASE_MARK_NAME);
+            if (opMark.isEmpty() || releaseMark.isEmpty()) {
+                return null;
+            }
+            int[] marks = currentMaxIds();
+            int cytOpTypeId = opTypeRepo.getByName("cytassist").getId();
+            List<Integer> cytOpIds = coRepo.findAffectedCytassistOperationIds(cytOpTypeId,
+                    opMark.get().getLastId(), releaseMark.get().getLastId());
+            if (!cytOpIds.isEmpty()) {
+                List<CytassistOverview> data = dataCompiler.execute(cytOpIds);
+                coRepo.deleteAllByCytassistOperationIdIn(cytOpIds);
+                entityManager.flush();
+                coRepo.saveAll(data);
+            }
+            saveMarks(marks);
+            return cytOpIds.size();
+        });
+        if (count==null) {
+            log.info("No cytassist overview high-water marks found, so performing a full update.");
+            update();
+            return 0;
+        }
+        log.info("Incremental cytassist overview update replaced the rows for {} operations.", count);
+        return count;
+    }
+
+    @Override
+    public int checkConsistency() {
+        return transactor.transactReadOnly("cytassist overview consistency check", () -> {
+            Map<List<Object>, Long> expected = countContents(dataCompiler.execute());
+            Map<List<Object>, Long> stored = countContents(BasicUtils.asList(coRepo.findAll()));
+            int differences = 0;
+            for (List<Object> key : union(expected.keySet(), stored.keySet())) {
+                long diff = expected.getOrDefault(key, 0L) - stored.getOrDefault(key, 0L);
+                if (diff != 0) {
+                    log.warn("Cytassist overview row {} {}: {}", diff > 0 ? "missing" : "unexpected",
+                            Math.abs(diff), key);
+                    differences += (int) Math.abs(diff);
+                }
+            }
+            if (differences==0) {
+                log.info("Cytassist overview table is consistent.");
+            } else {
+                log.warn("Cytassist overview table has {} inconsistent rows.", differences);
+            }
+            return differences;
+        });
+    }
+
+    /** Gets the highest operation id and release id currently recorded */
+    int[] currentMaxIds() {
+        Integer maxOpId = opRepo.findMaxId();
+        Integer maxReleaseId = releaseRepo.findMaxId();
+        return new int[] { maxOpId==null ? 0 : maxOpId, maxReleaseId==null ? 0 : maxReleaseId };
+    }
+
+    /** Saves the given operation id and release id as the high-water marks */
+    void saveMarks(int[] marks) {
+        markRepo.saveAll(List.of(new HighWaterMark(OP_MARK_NAME, marks[0]),
+                new HighWaterMark(RELEASE_MARK_NAME, marks[1])));
+    }
+
+    private static Map<List<Object>, Long> countContents(Collection<CytassistOverview> rows) {
+        return rows.stream().collect(groupingBy(CytassistOverview::contentValues, counting()));
+    }
+
+    private static <E> Set<E> union(Set<E> a, Set<E> b) {
+        Set<E> union = new HashSet<>(a);
+        union.addAll(b);
+        return union;
+    }
+
     /**
      * Updates the cytassist overview table, triggered on a schedule.
      */
@@ -48,4 +162,20 @@ public class CytassistOverviewServiceImp implements CytassistOverviewService {
     public void scheduledUpdate() {
         update();
     }
+
+    /**
+     * Incrementally updates the cytassist overview table, triggered on a schedule.
+     */
+    @Scheduled(cron = "${spring.cytassist.incremental.schedule:-}", zone = "GMT")
+    public void scheduledIncrementalUpdate() {
+        updateIncremental();
+    }
+
+    /**
+     * Checks the consistency of the cytassist overview table, triggered on a schedule.
+     */
+    @Scheduled(cron = "${spring.cytassist.check.schedule:-}", zone = "GMT")
+    public void scheduledCheck() {
+        checkConsistency();
+    }
 }
@@ -0,0 +1,60 @@
+package uk.ac.sanger.sccp.stan.service.flag;
+
+import uk.ac.sanger.sccp.stan.model.*;
+
+import java.util.Collection;
+
+/**
+ * Service for maintaining the effective labware flags: the flags that apply to each slot-sample,
+ * either because they were recorded on it or because they were recorded on one of its ancestors.
+ * It also keeps the {@link FlagFilter} of possibly flagged labware up to date.
+ * @author dr6
+ */
+public interface FlagEffectiveService {
+    /**
+     * Records the effect of the given newly saved flags on the flagged labware and all its descendants.
+     * This should be called inside the transaction that saved the flags.
+     * @param flags the saved flags
+     */
+    void recordFlags(Collection<LabwareFlag> flags);
+
+    /**
+     * Are flags passed on to the destinations of new operations in the effective flags table?
+     * They are only passed on when effective flags are used to look up flags ({@code stan.flag.lookup.effective}).
+     * Otherwise the table is brought up to date by {@link #backfill}.
+     */
+    boolean isPropagating();
+
+    /**
+     * Passes on the flags on the sources of the given actions of a newly saved operation to their destinations.
+     * The flags are only passed on in the effective flags table if it is {@link #isPropagating propagating};
+     * the flag filter is updated either way.
+     * This should be called inside the transaction that saved the actions, after they have been flushed.
+     * @param op the operation
+     * @param actions the saved actions of the operation
+     */
+    void recordOperation(Operation op, Collection<Action> actions);
+
+    /**
+     * Fills in the effective flags for all existing flags and operations.
+     * Each batch of flags or operations is processed in its own transaction.
+     * This is idempotent, so it can safely be rerun if it is interrupted.
+     * @return the number of rows added
+     */
+    int backfill();
+
+    /**
+     * Loads the ids of all labware that might be flagged into the {@link FlagFilter},
+     * and then marks the filter as ready for use.
+     * @return the number of labware ids loaded
+     */
+    int loadFilter();
+
+    /**
+     * Checks whether the {@link FlagFilter} can be used to exclude labware from flag lookups.
+     * The shared version of the filter is polled periodically; if another instance has recorded a change
+     * since the filter was loaded, the filter is reloaded. While it is being reloaded, it is not used.
+     * @return true if the filter is active and not being reloaded
+     */
+    boolean checkFilter();
+}
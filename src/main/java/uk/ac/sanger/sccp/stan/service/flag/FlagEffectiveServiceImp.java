@@ -0,0 +1,271 @@
+package uk.ac.sanger.sccp.stan.service.flag;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import uk.ac.sanger.sccp.stan.Transactor;
+import uk.ac.sanger.sccp.stan.config.FlagLookupConfig;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.*;
+import uk.ac.sanger.sccp.stan.repo.LabwareFlagEffectiveRepo.EffectiveFlag;
+import uk.ac.sanger.sccp.stan.service.LineageServiceImp;
+import uk.ac.sanger.sccp.stan.service.ReferenceDataVersionService;
+import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser;
+import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.Posterity;
+import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.SlotSample;
+
+import java.time.Clock;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.stream.Collectors.toSet;
+
+/**
+ * @author dr6
+ */
+@Service
+public class FlagEffectiveServiceImp implements FlagEffectiveService {
+    Logger log = LoggerFactory.getLogger(FlagEffectiveServiceImp.class);
+
+    /** The number of flags or operations to process in each backfill transaction */
+    static final int BACKFILL_BATCH_SIZE = 1000;
+
+    private final Transactor transactor;
+    private final Ancestoriser ancestoriser;
+    private final ActionRepo actionRepo;
+    private final LabwareFlagEffectiveRepo effectiveRepo;
+    private final LabwareFlagRepo flagRepo;
+    private final FlagFilter flagFilter;
+    private final ReferenceDataVersionService versionService;
+    private final Clock clock;
+    private final boolean useEffectiveFlags;
+    private final long filterPollMs;
+
+    private final AtomicLong nextFilterPollTime = new AtomicLong(Long.MIN_VALUE);
+    private volatile boolean filterReloading;
+
+    @Autowired
+    public FlagEffectiveServiceImp(Transactor transactor, Ancestoriser ancestoriser, ActionRepo actionRepo,
+                                   LabwareFlagEffectiveRepo effectiveRepo, LabwareFlagRepo flagRepo,
+                                   FlagFilter flagFilter, ReferenceDataVersionService versionService,
+                                   Clock clock, FlagLookupConfig config) {
+        this.transactor = transactor;
+        this.ancestoriser = ancestoriser;
+        this.actionRepo = actionRepo;
+        this.effectiveRepo = effectiveRepo;
+        this.flagRepo = flagRepo;
+        this.flagFilter = flagFilter;
+        this.versionService = versionService;
+        this.clock = clock;
+        this.useEffectiveFlags = config.isUseEffectiveFlags();
+        this.filterPollMs = config.getFilterPollMs();
+    }
+
+    @Override
+    public void recordFlags(Collection<LabwareFlag> flags) {
+        if (flags.isEmpty()) {
+            return;
+        }
+        Set<SlotSample> flaggedSlotSamples = flags.stream()
+                .flatMap(flag -> SlotSample.stream(flag.getLabware()))
+                .collect(toSet());
+        Posterity posterity = ancestoriser.findPosterity(flaggedSlotSamples);
+        Set<EffectiveFlag> rows = new LinkedHashSet<>();
+        for (LabwareFlag flag : flags) {
+            SlotSample.stream(flag.getLabware()).forEach(flagged -> {
+                for (SlotSample ss : posterity.descendents(flagged)) {
+                    rows.add(new EffectiveFlag(ss.slotId(), ss.sampleId(), ss.slot().getLabwareId(), flag.getId()));
+                }
+            });
+        }
+        effectiveRepo.insertFlags(rows);
+        flagFilter.add(rows.stream().map(EffectiveFlag::labwareId).collect(toSet()));
+        filterChanged();
+    }
+
+    @Override
+    public boolean isPropagating() {
+        return this.useEffectiveFlags;
+    }
+
+    @Override
+    public void recordOperation(Operation op, Collection<Action> actions) {
+        if (actions.stream().allMatch(LineageServiceImp::isInPlace)) {
+            return;
+        }
+        Set<Integer> possiblyFlaggedIds = actions.stream()
+                .filter(ac -> !LineageServiceImp.isInPlace(ac) && flagFilter.mightBeFlagged(ac.getSource().getLabwareId()))
+                .map(ac -> ac.getDestination().getLabwareId())
+                .collect(toSet());
+        flagFilter.add(possiblyFlaggedIds);
+        int total = 0;
+        // The table is only read when effective flags are used; otherwise the backfill catches it up
+        // before they are switched on, so the insert is not run for every operation in the meantime.
+        if (useEffectiveFlags) {
+            final int opId = op.getId();
+            int added;
+            while ((added = effectiveRepo.propagate(opId, opId)) > 0) {
+                // repeat until flags are passed along any chain inside this operation
+                total += added;
+            }
+        }
+        if (!possiblyFlaggedIds.isEmpty() || total > 0) {
+            filterChanged();
+        }
+    }
+
+    /**
+     * Records a change to the possibly flagged labware in the shared version, so that the filters in
+     * other instances of the application are reloaded.
+     * The increment joins the caller's transaction, so it is only seen once the change is committed.
+     */
+    void filterChanged() {
+        if (flagFilter.isEnabled()) {
+            versionService.increment(FlagFilter.VERSION_NAME);
+        }
+    }
+
+    @Override
+    public int backfill() {
+        Integer maxFlagId = effectiveRepo.findMaxFlagId();
+        if (maxFlagId==null) {
+            log.info("No flags found to backfill effective flags");
+            return 0;
+        }
+        log.info("Backfilling effective flags for flags up to {}", maxFlagId);
+        int total = 0;
+        for (int minId = 0; minId <= maxFlagId; minId += BACKFILL_BATCH_SIZE) {
+            final int lo = minId;
+            final int hi = Math.min(maxFlagId, minId + BACKFILL_BATCH_SIZE - 1);
+            total += transactor.transact("backfill direct flags", () -> effectiveRepo.insertDirectFlags(lo, hi));
+        }
+        Integer maxOpId = actionRepo.findMaxOperationId();
+        if (maxOpId!=null) {
+            int added;
+            do {
+                added = 0;
+                for (int minId = 0; minId <= maxOpId; minId += BACKFILL_BATCH_SIZE) {
+                    final int lo = minId;
+                    final int hi = Math.min(maxOpId, minId + BACKFILL_BATCH_SIZE - 1);
+                    added += transactor.transact("backfill effective flags", () -> propagateRange(lo, hi));
+                }
+                total += added;
+            } while (added > 0);
+        }
+        log.info("Backfill of effective flags added {} rows", total);
+        return total;
+    }
+
+    /**
+     * Backfills the effective flags, triggered on a schedule.
+     */
+    @Scheduled(cron = "${stan.flag.effective.backfill.schedule:-}", zone = "GMT")
+    public void scheduledBackfill() {
+        backfill();
+    }
+
+    @Override
+    public int loadFilter() {
+        long start = System.nanoTime();
+        // Read the version first: a change committed while loading leaves the filter marked stale
+        long version = versionService.loadVersion(FlagFilter.VERSION_NAME);
+        Set<Integer> labwareIds = transactor.transactReadOnly("load flag filter", this::loadPossiblyFlaggedLabwareIds);
+        flagFilter.add(labwareIds);
+        flagFilter.markReady(version);
+        log.info("Loaded {} possibly flagged labware into the flag filter in {} ms", labwareIds.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        return labwareIds.size();
+    }
+
+    @Override
+    public boolean checkFilter() {
+        if (!flagFilter.isActive()) {
+            return false;
+        }
+        long now = clock.millis();
+        long next = nextFilterPollTime.get();
+        if (now < next || !nextFilterPollTime.compareAndSet(next, now + filterPollMs)) {
+            // Not time to poll, or another thread is polling
+            return !filterReloading;
+        }
+        try {
+            if (versionService.loadVersion(FlagFilter.VERSION_NAME)==flagFilter.getVersion()) {
+                return true;
+            }
+            filterReloading = true;
+            try {
+                loadFilter();
+            } finally {
+                filterReloading = false;
+            }
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to reload the flag filter", e);
+            return false;
+        }
+    }
+
+    /**
+     * Loads the flag filter when the application starts.
+     * If loading fails, the filter is left unused and flags are looked up for all labware.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadFilterOnStartup() {
+        if (!flagFilter.isEnabled()) {
+            return;
+        }
+        try {
+            loadFilter();
+        } catch (RuntimeException e) {
+            log.error("Failed to load the flag filter", e);
+        }
+    }
+
+    /**
+     * Finds the ids of all labware that might be flagged: the flagged labware and all its descendants.
+     * These are read from the effective flags table if that is in use; otherwise they are found by
+     * following the posterity of all the flagged labware.
+     * This should be called inside a transaction.
+     * @return the ids of labware that might be flagged
+     */
+    Set<Integer> loadPossiblyFlaggedLabwareIds() {
+        if (useEffectiveFlags) {
+            return effectiveRepo.findFlaggedLabwareIds();
+        }
+        Set<Integer> labwareIds = new HashSet<>();
+        Set<SlotSample> flaggedSlotSamples = new HashSet<>();
+        for (LabwareFlag flag : flagRepo.findAll()) {
+            labwareIds.add(flag.getLabware().getId());
+            SlotSample.stream(flag.getLabware()).forEach(flaggedSlotSamples::add);
+        }
+        if (!flaggedSlotSamples.isEmpty()) {
+            for (SlotSample ss : ancestoriser.findPosterity(flaggedSlotSamples).keySet()) {
+                labwareIds.add(ss.slot().getLabwareId());
+            }
+        }
+        return labwareIds;
+    }
+
+    /**
+     * Passes on flags through the operations in the given range, repeating until nothing more is added.
+     * This should be called inside a transaction.
+     * Flags recorded on a chain of operations extending out of the range are only passed to the end of the chain
+     * by repeated passes over all operations.
+     * @param minOpId the lowest operation id to include
+     * @param maxOpId the highest operation id to include
+     * @return the number of rows added
+     */
+    int propagateRange(int minOpId, int maxOpId) {
+        int total = 0;
+        int added;
+        do {
+            added = effectiveRepo.propagate(minOpId, maxOpId);
+            total += added;
+        } while (added > 0);
+        return total;
+    }
+}
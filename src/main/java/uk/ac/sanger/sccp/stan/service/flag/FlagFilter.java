@@ -0,0 +1,131 @@
+package uk.ac.sanger.sccp.stan.service.flag;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import uk.ac.sanger.sccp.stan.config.FlagLookupConfig;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory bloom filter of the ids of labware that might be flagged.
+ * Labware is added when it is flagged, when it receives samples from labware that might be flagged,
+ * and when the filter is loaded from the database.
+ * Nothing is ever removed, so labware missing from the filter is definitely not flagged,
+ * and labware in the filter needs its flags looked up.
+ * <p>Until the filter has been loaded (or if it is disabled), all labware might be flagged.
+ * <p>Other instances of the application may flag labware too, so changes are counted in the shared
+ * {@link #VERSION_NAME reference data version}, and the filter records the version it was loaded at.
+ * When an instance sees that the shared version has moved on, it reloads its filter.
+ * @author dr6
+ */
+@Component
+public class FlagFilter {
+    /** The name of the shared version counting changes to the possibly flagged labware */
+    public static final String VERSION_NAME = "labware flag filter";
+
+    private final boolean enabled;
+    private final BloomFilter<Integer> filter;
+    private volatile boolean ready;
+    private volatile long version;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder excluded = new LongAdder();
+    private final LongAdder possibleHits = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+
+    @Autowired
+    public FlagFilter(FlagLookupConfig config) {
+        this(config.isFilterEnabled(), config.getFilterExpectedLabware(), config.getFilterFpp());
+    }
+
+    public FlagFilter(boolean enabled, int expectedLabware, double fpp) {
+        this.enabled = enabled;
+        this.filter = (enabled ? BloomFilter.create(Funnels.integerFunnel(), expectedLabware, fpp) : null);
+    }
+
+    /** Is the filter enabled in the config? */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /** Is the filter enabled and loaded, so that it can be used to exclude labware from flag lookups? */
+    public boolean isActive() {
+        return (enabled && ready);
+    }
+
+    /**
+     * Marks the filter as loaded, so it can start excluding labware from flag lookups
+     * @param version the shared version read before the filter was loaded
+     */
+    public void markReady(long version) {
+        this.version = version;
+        this.ready = true;
+    }
+
+    /** The shared version the filter was last loaded at */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Adds the given labware ids to the filter
+     * @param labwareIds ids of labware that might be flagged
+     */
+    public void add(Collection<Integer> labwareIds) {
+        if (enabled) {
+            for (Integer id : labwareIds) {
+                filter.put(id);
+            }
+        }
+    }
+
+    /**
+     * Could the indicated labware be flagged?
+     * This is always true if the filter is not {@link #isActive active}.
+     * @param labwareId the id of the labware
+     * @return false if the labware is definitely not flagged; true if it might be
+     */
+    public boolean mightBeFlagged(int labwareId) {
+        return (!isActive() || filter.mightContain(labwareId));
+    }
+
+    /**
+     * Records the outcome of a lookup that used the filter
+     * @param numChecked the number of labware checked in the filter
+     * @param numPossible the number of those labware that might be flagged
+     * @param numFlagged the number of those labware that were actually found to be flagged
+     */
+    public void recordLookup(int numChecked, int numPossible, int numFlagged) {
+        checked.add(numChecked);
+        excluded.add(numChecked - numPossible);
+        possibleHits.add(numPossible);
+        falsePositives.add(numPossible - numFlagged);
+    }
+
+    /**
+     * Gets stats about the filter and lookups that used it.
+     * The observed false positive rate is the proportion of unflagged labware that the filter
+     * did not exclude.
+     * @return a map of stat names to values
+     */
+    public Map<String, Object> getStats() {
+        long numExcluded = excluded.sum();
+        long numFalsePositives = falsePositives.sum();
+        long numUnflagged = numExcluded + numFalsePositives;
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("enabled", enabled);
+        map.put("ready", ready);
+        map.put("version", version);
+        map.put("approximateLabware", enabled ? filter.approximateElementCount() : 0L);
+        map.put("expectedFpp", enabled ? filter.expectedFpp() : 0.0);
+        map.put("checked", checked.sum());
+        map.put("excluded", numExcluded);
+        map.put("possibleHits", possibleHits.sum());
+        map.put("falsePositives", numFalsePositives);
+        map.put("falsePositiveRate", numUnflagged==0 ? 0.0 : (double) numFalsePositives / numUnflagged);
+        return map;
+    }
+}
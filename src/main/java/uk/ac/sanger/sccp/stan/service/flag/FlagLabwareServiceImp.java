@@ -26,6 +26,7 @@ public class FlagLabwareServiceImp implements FlagLabwareService {
 
     private final OperationService opService;
     private final WorkService workService;
+    private final FlagEffectiveService flagEffectiveService;
 
     private final LabwareFlagRepo flagRepo;
     private final LabwareRepo lwRepo;
@@ -33,9 +34,11 @@ public class FlagLabwareServiceImp implements FlagLabwareService {
 
     @Autowired
     public FlagLabwareServiceImp(OperationService opService, WorkService workService,
+                                 FlagEffectiveService flagEffectiveService,
                                  LabwareFlagRepo flagRepo, LabwareRepo lwRepo, OperationTypeRepo opTypeRepo) {
         this.opService = opService;
         this.workService = workService;
+        this.flagEffectiveService = flagEffectiveService;
         this.flagRepo = flagRepo;
         this.lwRepo = lwRepo;
         this.opTypeRepo = opTypeRepo;
@@ -158,6 +161,7 @@ public class FlagLabwareServiceImp implements FlagLabwareService {
             flags.add(flag);
         }
         flagRepo.saveAll(flags);
+        flagEffectiveService.recordFlags(flags);
         if (work!=null) {
             workService.link(work, ops);
         }
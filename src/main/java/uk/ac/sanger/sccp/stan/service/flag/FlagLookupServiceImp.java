@@ -3,10 +3,10 @@ package uk.ac.sanger.sccp.stan.service.flag;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import uk.ac.sanger.sccp.stan.config.FlagLookupConfig;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.model.LabwareFlag.Priority;
-import uk.ac.sanger.sccp.stan.repo.LabwareFlagRepo;
-import uk.ac.sanger.sccp.stan.repo.OperationRepo;
+import uk.ac.sanger.sccp.stan.repo.*;
 import uk.ac.sanger.sccp.stan.request.FlagDetail;
 import uk.ac.sanger.sccp.stan.request.FlagDetail.FlagSummary;
 import uk.ac.sanger.sccp.stan.request.LabwareFlagged;
@@ -20,9 +20,14 @@ import java.util.*;
 import static java.util.Objects.requireNonNull;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
-import static uk.ac.sanger.sccp.utils.BasicUtils.nullOrEmpty;
+import static uk.ac.sanger.sccp.utils.BasicUtils.*;
 
 /**
+ * Flags can be looked up either by following the ancestry of the labware, or (if
+ * {@link FlagLookupConfig#isUseEffectiveFlags configured}) from the effective flags table
+ * maintained by {@link FlagEffectiveService}.
+ * <p>When checking whether labware is flagged, labware that the {@link FlagFilter} says is definitely
+ * not flagged is not looked up at all.
  * @author dr6
  */
 @Service
@@ -32,12 +37,23 @@ public class FlagLookupServiceImp implements FlagLookupService {
     private final Ancestoriser ancestoriser;
     private final LabwareFlagRepo flagRepo;
     private final OperationRepo opRepo;
+    private final LabwareFlagEffectiveRepo effectiveRepo;
+    private final FlagFilter flagFilter;
+    private final FlagEffectiveService flagEffectiveService;
+    private final boolean useEffectiveFlags;
 
     @Autowired
-    public FlagLookupServiceImp(Ancestoriser ancestoriser, LabwareFlagRepo flagRepo, OperationRepo opRepo) {
+    public FlagLookupServiceImp(Ancestoriser ancestoriser, LabwareFlagRepo flagRepo, OperationRepo opRepo,
+                                LabwareFlagEffectiveRepo effectiveRepo, FlagFilter flagFilter,
+                                FlagEffectiveService flagEffectiveService,
+                                FlagLookupConfig config) {
         this.ancestoriser = ancestoriser;
         this.flagRepo = flagRepo;
         this.opRepo = opRepo;
+        this.effectiveRepo = effectiveRepo;
+        this.flagFilter = flagFilter;
+        this.flagEffectiveService = flagEffectiveService;
+        this.useEffectiveFlags = config.isUseEffectiveFlags();
     }
 
     @Override
@@ -46,6 +62,9 @@ public class FlagLookupServiceImp implements FlagLookupService {
         if (labware.isEmpty()) {
             return new UCMap<>(0);
         }
+        if (useEffectiveFlags) {
+            return lookUpEffective(labware);
+        }
 
         Ancestry ancestry = loadAncestry(labware);
         Map<SlotSample, List<LabwareFlag>> ssFlags = loadDirectFlags(ancestry.keySet());
@@ -61,6 +80,30 @@ public class FlagLookupServiceImp implements FlagLookupService {
         return lwFlags;
     }
 
+    /**
+     * Looks up the flags on the given labware in the effective flags table
+     * @param labware the labware to look up flags on
+     * @return a map from labware barcodes to the found flags
+     */
+    @NotNull
+    UCMap<List<LabwareFlag>> lookUpEffective(Collection<Labware> labware) {
+        Map<Integer, Set<Integer>> lwFlagIds = effectiveRepo.findFlagIds(labware.stream().map(Labware::getId).toList());
+        if (lwFlagIds.isEmpty()) {
+            return new UCMap<>(0);
+        }
+        Set<Integer> flagIds = lwFlagIds.values().stream().flatMap(Set::stream).collect(toSet());
+        Map<Integer, LabwareFlag> flagMap = stream(flagRepo.findAllById(flagIds)).collect(inMap(LabwareFlag::getId));
+        UCMap<List<LabwareFlag>> lwFlags = new UCMap<>(labware.size());
+        for (Labware lw : labware) {
+            List<LabwareFlag> flags = lwFlagIds.getOrDefault(lw.getId(), Set.of()).stream()
+                    .map(flagMap::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+            lwFlags.put(lw.getBarcode(), flags);
+        }
+        return lwFlags;
+    }
+
     /**
      * Loads the ancestry for the given labware
      * @param labware the labware to look up ancestry for
@@ -167,6 +210,9 @@ public class FlagLookupServiceImp implements FlagLookupService {
 
     Priority labwareFlagPriority(Labware lw) {
         requireNonNull(lw, "Labware is null");
+        if (useEffectiveFlags) {
+            return effectiveRepo.findPriorities(List.of(lw.getId())).get(lw.getId());
+        }
         Set<SlotSample> slotSamples = SlotSample.stream(lw).collect(toSet());
         Ancestry ancestry = ancestoriser.findAncestry(slotSamples);
         Set<SlotSample> ancestorSS = ancestry.keySet();
@@ -197,6 +243,35 @@ public class FlagLookupServiceImp implements FlagLookupService {
         if (labware.isEmpty()) {
             return List.of();
         }
+        if (!flagEffectiveService.checkFilter()) {
+            return loadLabwareFlagged(labware);
+        }
+        List<Labware> possible = labware.stream()
+                .filter(lw -> flagFilter.mightBeFlagged(lw.getId()))
+                .toList();
+        Map<Integer, Priority> lwPriorities = new HashMap<>();
+        if (!possible.isEmpty()) {
+            for (LabwareFlagged lf : loadLabwareFlagged(possible)) {
+                if (lf.getFlagPriority()!=null) {
+                    lwPriorities.put(lf.getId(), lf.getFlagPriority());
+                }
+            }
+        }
+        int numFlagged = (int) possible.stream().filter(lw -> lwPriorities.containsKey(lw.getId())).count();
+        flagFilter.recordLookup(labware.size(), possible.size(), numFlagged);
+        return labware.stream().map(lw -> new LabwareFlagged(lw, lwPriorities.get(lw.getId()))).toList();
+    }
+
+    /**
+     * Looks up whether each of the given labware is flagged, without using the flag filter
+     * @param labware the labware to look up
+     * @return the labware with their flag priorities
+     */
+    List<LabwareFlagged> loadLabwareFlagged(Collection<Labware> labware) {
+        if (useEffectiveFlags) {
+            Map<Integer, Priority> lwPriorities = effectiveRepo.findPriorities(labware.stream().map(Labware::getId).toList());
+            return labware.stream().map(lw -> new LabwareFlagged(lw, lwPriorities.get(lw.getId()))).toList();
+        }
         Set<SlotSample> slotSamples = labware.stream()
                 .flatMap(SlotSample::stream)
                 .collect(toSet());
@@ -235,7 +310,17 @@ public class FlagLookupServiceImp implements FlagLookupService {
 
     @Override
     public LabwareFlagged getLabwareFlagged(Labware lw) {
-        return new LabwareFlagged(lw, labwareFlagPriority(lw));
+        if (!flagEffectiveService.checkFilter()) {
+            return new LabwareFlagged(lw, labwareFlagPriority(lw));
+        }
+        requireNonNull(lw, "Labware is null");
+        if (!flagFilter.mightBeFlagged(lw.getId())) {
+            flagFilter.recordLookup(1, 0, 0);
+            return new LabwareFlagged(lw, null);
+        }
+        Priority priority = labwareFlagPriority(lw);
+        flagFilter.recordLookup(1, 1, priority==null ? 0 : 1);
+        return new LabwareFlagged(lw, priority);
     }
 
     /**
@@ -1,5 +1,6 @@
 package uk.ac.sanger.sccp.stan.service.history;
 
+import com.google.common.collect.Iterators;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -32,6 +33,8 @@ import static uk.ac.sanger.sccp.utils.BasicUtils.*;
 public class HistoryServiceImp implements HistoryService {
     static final String RELEASE_EVENT_TYPE = "Release", DESTRUCTION_EVENT_TYPE = "Destruction",
             SOLUTION_TRANSFER_OP_NAME = "Solution transfer";
+    /** The number of a work's linked operations or releases loaded at once */
+    static final int LINK_PAGE_SIZE = 1000;
 
     private final OperationRepo opRepo;
     private final OperationTypeRepo opTypeRepo;
@@ -45,6 +48,7 @@ public class HistoryServiceImp implements HistoryService {
     private final RoiRepo roiRepo;
     private final SnapshotRepo snapshotRepo;
     private final WorkRepo workRepo;
+    private final WorkLinkRepo workLinkRepo;
     private final MeasurementRepo measurementRepo;
     private final LabwareNoteRepo labwareNoteRepo;
     private final ResultOpRepo resultOpRepo;
@@ -63,7 +67,7 @@ public class HistoryServiceImp implements HistoryService {
     public HistoryServiceImp(OperationRepo opRepo, OperationTypeRepo opTypeRepo, LabwareRepo lwRepo, SampleRepo sampleRepo, TissueRepo tissueRepo,
                              DonorRepo donorRepo, ReleaseRepo releaseRepo,
                              DestructionRepo destructionRepo, OperationCommentRepo opCommentRepo, RoiRepo roiRepo,
-                             SnapshotRepo snapshotRepo, WorkRepo workRepo, MeasurementRepo measurementRepo,
+                             SnapshotRepo snapshotRepo, WorkRepo workRepo, WorkLinkRepo workLinkRepo, MeasurementRepo measurementRepo,
                              LabwareNoteRepo labwareNoteRepo, ResultOpRepo resultOpRepo,
                              StainTypeRepo stainTypeRepo, LabwareProbeRepo lwProbeRepo, LabwareFlagRepo flagRepo, OperationSolutionRepo opSolRepo, SolutionRepo solutionRepo, OpPanelRepo opPanelRepo,
                              ReagentActionDetailService reagentActionDetailService,
@@ -81,6 +85,7 @@ public class HistoryServiceImp implements HistoryService {
         this.roiRepo = roiRepo;
         this.snapshotRepo = snapshotRepo;
         this.workRepo = workRepo;
+        this.workLinkRepo = workLinkRepo;
         this.measurementRepo = measurementRepo;
         this.labwareNoteRepo = labwareNoteRepo;
         this.resultOpRepo = resultOpRepo;
@@ -341,22 +346,11 @@ public class HistoryServiceImp implements HistoryService {
 
     public History getHistoryForWorkNumber(String workNumber, @NotNull EventTypeFilter etFilter) {
         Work work = workRepo.getByWorkNumber(workNumber);
-        Set<Integer> opIds = etFilter.ops ? work.getOperationIds() : Set.of();
-        Set<Integer> releaseIds = etFilter.releases ? work.getReleaseIds() : Set.of();
-        if (opIds.isEmpty() && releaseIds.isEmpty()) {
+        List<Operation> ops = etFilter.ops ? loadWorkOps(work, etFilter.opType) : List.of();
+        List<Release> releases = etFilter.releases ? loadWorkReleases(work) : List.of();
+        if (ops.isEmpty() && releases.isEmpty()) {
             return new History();
         }
-        Collection<Operation> ops;
-        if (opIds.isEmpty()) {
-            ops = List.of();
-        } else if (etFilter.opType != null) {
-            ops = stream(opRepo.findAllById(opIds))
-                    .filter(op -> op.getOperationType().equals(etFilter.opType))
-                    .collect(toList());
-        } else {
-            ops = asCollection(opRepo.findAllById(opIds));
-        }
-        List<Release> releases = releaseIds.isEmpty() ? List.of() : releaseRepo.findAllByIdIn(releaseIds);
         Set<Integer> labwareIds = labwareIdsFromOps(ops);
         List<Labware> opLabware = lwRepo.findAllByIdIn(labwareIds);
         List<HistoryEntry> opEntries = createEntriesForOps(ops, null, opLabware, null, work.getWorkNumber());
@@ -377,6 +371,37 @@ public class HistoryServiceImp implements HistoryService {
         return new History(entries, samples, allLabware, loadFlaggedBarcodes(allLabware));
     }
 
+    /**
+     * Loads the operations linked to the given work, reading the links a page at a time
+     * @param work the work
+     * @param opType the type of operation to include, or null to include all
+     * @return the operations linked to the work
+     */
+    public List<Operation> loadWorkOps(Work work, OperationType opType) {
+        List<Operation> ops = new ArrayList<>();
+        Iterators.partition(workLinkRepo.streamOperationIds(work.getId()).iterator(), LINK_PAGE_SIZE)
+                .forEachRemaining(page -> {
+                    for (Operation op : opRepo.findAllById(page)) {
+                        if (opType==null || op.getOperationType().equals(opType)) {
+                            ops.add(op);
+                        }
+                    }
+                });
+        return ops;
+    }
+
+    /**
+     * Loads the releases linked to the given work, reading the links a page at a time
+     * @param work the work
+     * @return the releases linked to the work
+     */
+    public List<Release> loadWorkReleases(Work work) {
+        List<Release> releases = new ArrayList<>();
+        Iterators.partition(workLinkRepo.streamReleaseIds(work.getId()).iterator(), LINK_PAGE_SIZE)
+                .forEachRemaining(page -> releases.addAll(releaseRepo.findAllByIdIn(page)));
+        return releases;
+    }
+
     /**
      * Gets all labware ids referenced in the given operations
      * @param ops operations
@@ -0,0 +1,223 @@
+package uk.ac.sanger.sccp.stan.service.load;
+
+import uk.ac.sanger.sccp.stan.Transactor;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A set of named loading stages, each of which may depend on earlier stages.
+ * <p>Without an executor, the stages are run one after another in the order they were added.
+ * <p>With an executor, each stage is started as soon as the stages it depends on are finished.
+ * Ordinary stages are in two parts. The loader is run on the executor in its own read-only transaction,
+ * and must not use any entities belonging to the caller: it should be given the ids it needs,
+ * and return plain values (or entities it has loaded itself) for the applier.
+ * The applier is run on the calling thread, and puts the loaded values into the caller's objects.
+ * Session-bound stages are run entirely on the calling thread, in the order they were added, because they
+ * rely on the entities they load being the same instances as entities already loaded by the caller.
+ * <p>Appliers of different stages may run in any order, so stages must not update the same fields.
+ * @author dr6
+ */
+public class LoadStages {
+    private record Stage(String name, Supplier<?> loader, Consumer<Object> applier,
+                         boolean sessionBound, List<String> dependencies) {}
+
+    private final Executor executor;
+    private final Transactor transactor;
+    private final String description;
+    private final Map<String, Stage> stages = new LinkedHashMap<>();
+
+    /**
+     * Creates a new set of stages
+     * @param executor the executor to run stages on, or null to run them all sequentially on the calling thread
+     * @param transactor the transactor used to run concurrent stages in read-only transactions
+     * @param description what is being loaded, used as the start of the transaction name for each stage
+     */
+    public LoadStages(Executor executor, Transactor transactor, String description) {
+        this.executor = executor;
+        this.transactor = transactor;
+        this.description = description;
+    }
+
+    /**
+     * Adds a stage whose loader may run on another thread in its own transaction
+     * @param name the name of the stage
+     * @param loader loads the data for the stage, using only ids and its own queries
+     * @param applier applies the loaded data on the calling thread
+     * @param dependencies the names of previously added stages that must finish before this one starts
+     * @return this object
+     * @param <R> the type of data loaded by the stage
+     */
+    @SuppressWarnings("unchecked")
+    public <R> LoadStages add(String name, Supplier<? extends R> loader, Consumer<? super R> applier,
+                              String... dependencies) {
+        requireNonNull(loader, "Stage loader is null.");
+        requireNonNull(applier, "Stage applier is null.");
+        return add(new Stage(name, loader, (Consumer<Object>) applier, false, List.of(dependencies)));
+    }
+
+    /**
+     * Adds a stage that must run on the calling thread
+     * @param name the name of the stage
+     * @param action the action performed by the stage
+     * @param dependencies the names of previously added stages that must finish before this one starts
+     * @return this object
+     */
+    public LoadStages addSessionBound(String name, Runnable action, String... dependencies) {
+        requireNonNull(action, "Stage action is null.");
+        return add(new Stage(name, () -> { action.run(); return null; }, r -> {}, true, List.of(dependencies)));
+    }
+
+    private LoadStages add(Stage stage) {
+        requireNonNull(stage.name(), "Stage name is null.");
+        if (stages.containsKey(stage.name())) {
+            throw new IllegalArgumentException("Repeated stage name: "+stage.name());
+        }
+        for (String dep : stage.dependencies()) {
+            if (!stages.containsKey(dep)) {
+                throw new IllegalArgumentException("Stage "+stage.name()+" depends on unknown stage "+dep);
+            }
+        }
+        stages.put(stage.name(), stage);
+        return this;
+    }
+
+    /** The names of the stages, in the order they were added */
+    public Set<String> getStageNames() {
+        return Collections.unmodifiableSet(stages.keySet());
+    }
+
+    /**
+     * Runs all the stages.
+     * If any stage fails, this waits for the loaders already running to finish,
+     * and then throws the first exception.
+     * @return a map of stage name to the time it took in milliseconds, in the order the stages were added
+     */
+    public Map<String, Long> run() {
+        Map<String, Long> timings = new ConcurrentHashMap<>(stages.size());
+        if (executor==null) {
+            for (Stage stage : stages.values()) {
+                Object result = timed(stage, stage.loader(), timings).get();
+                timed(stage, () -> { stage.applier().accept(result); return null; }, timings).get();
+            }
+        } else {
+            runConcurrently(timings);
+        }
+        Map<String, Long> ordered = new LinkedHashMap<>(stages.size());
+        for (String name : stages.keySet()) {
+            Long time = timings.get(name);
+            if (time!=null) {
+                ordered.put(name, time);
+            }
+        }
+        return ordered;
+    }
+
+    private void runConcurrently(Map<String, Long> timings) {
+        Map<String, CompletableFuture<Object>> futures = new HashMap<>(stages.size());
+        List<Stage> sessionBoundStages = new ArrayList<>();
+        for (Stage stage : stages.values()) {
+            CompletableFuture<Object> future;
+            if (stage.sessionBound()) {
+                future = new CompletableFuture<>();
+                sessionBoundStages.add(stage);
+            } else {
+                Supplier<Object> task = transactional(stage, timed(stage, stage.loader(), timings));
+                future = dependencyFuture(stage, futures).thenApplyAsync(v -> task.get(), executor);
+            }
+            futures.put(stage.name(), future);
+        }
+        Set<String> applied = new HashSet<>(stages.size());
+        RuntimeException failure = null;
+        for (Stage stage : sessionBoundStages) {
+            CompletableFuture<Object> future = futures.get(stage.name());
+            if (failure!=null) {
+                future.completeExceptionally(failure);
+                continue;
+            }
+            try {
+                for (String dep : stage.dependencies()) {
+                    apply(stages.get(dep), futures, applied, timings);
+                }
+                timed(stage, stage.loader(), timings).get();
+                applied.add(stage.name());
+                future.complete(null);
+            } catch (RuntimeException e) {
+                failure = unwrap(e);
+                future.completeExceptionally(failure);
+            }
+        }
+        CompletableFuture<?>[] all = futures.values().toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(all).join();
+        } catch (RuntimeException e) {
+            if (failure==null) {
+                failure = unwrap(e);
+            }
+        }
+        if (failure!=null) {
+            throw failure;
+        }
+        for (Stage stage : stages.values()) {
+            apply(stage, futures, applied, timings);
+        }
+    }
+
+    /**
+     * Waits for the loader of the given stage (and the stages it depends on) to finish,
+     * and runs the appliers that have not already been run.
+     */
+    private void apply(Stage stage, Map<String, CompletableFuture<Object>> futures, Set<String> applied,
+                       Map<String, Long> timings) {
+        if (applied.contains(stage.name())) {
+            return;
+        }
+        for (String dep : stage.dependencies()) {
+            apply(stages.get(dep), futures, applied, timings);
+        }
+        Object result = futures.get(stage.name()).join();
+        long start = System.nanoTime();
+        stage.applier().accept(result);
+        timings.merge(stage.name(), (System.nanoTime() - start) / 1_000_000, Long::sum);
+        applied.add(stage.name());
+    }
+
+    private static CompletableFuture<Void> dependencyFuture(Stage stage, Map<String, CompletableFuture<Object>> futures) {
+        return CompletableFuture.allOf(stage.dependencies().stream()
+                .map(futures::get)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    private Supplier<Object> transactional(Stage stage, Supplier<Object> task) {
+        return () -> transactor.transactReadOnly(description+" "+stage.name(), task);
+    }
+
+    private static Supplier<Object> timed(Stage stage, Supplier<?> task, Map<String, Long> timings) {
+        return () -> {
+            long start = System.nanoTime();
+            try {
+                return task.get();
+            } finally {
+                timings.merge(stage.name(), (System.nanoTime() - start) / 1_000_000, Long::sum);
+            }
+        };
+    }
+
+    private static RuntimeException unwrap(RuntimeException e) {
+        Throwable cause = e;
+        while (cause instanceof CompletionException && cause.getCause()!=null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new CompletionException(cause);
+    }
+}
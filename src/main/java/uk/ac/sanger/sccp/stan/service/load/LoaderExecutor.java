@@ -0,0 +1,35 @@
+package uk.ac.sanger.sccp.stan.service.load;
+
+import java.util.concurrent.*;
+
+/**
+ * A bounded pool of daemon threads for running {@link LoadStages loading stages}.
+ * With no threads configured, there is no pool, and the stages are run on the calling thread.
+ * Instances are created as beans, so that the pool is shut down with the application context.
+ * @author dr6
+ */
+public class LoaderExecutor {
+    private final ExecutorService executorService;
+
+    /**
+     * Creates a loader executor
+     * @param threads the number of threads; zero or fewer for no pool
+     * @param threadNamePrefix the prefix of the thread names
+     */
+    public LoaderExecutor(int threads, String threadNamePrefix) {
+        this.executorService = (threads <= 0 ? null
+                : Executors.newFixedThreadPool(threads, Thread.ofPlatform().name(threadNamePrefix, 1).daemon().factory()));
+    }
+
+    /** The executor to run stages on, or null if the stages should be run on the calling thread */
+    public Executor getExecutor() {
+        return this.executorService;
+    }
+
+    /** Shuts down the pool, if there is one */
+    public void shutdown() {
+        if (executorService!=null) {
+            executorService.shutdownNow();
+        }
+    }
+}
@@ -18,15 +18,17 @@ public class OpLookupServiceImp implements OpLookupService {
     private final OperationTypeRepo opTypeRepo;
     private final LabwareRepo lwRepo;
     private final WorkRepo workRepo;
+    private final WorkLinkRepo workLinkRepo;
     private final OperationRepo opRepo;
     private final LabwareNoteRepo lwNoteRepo;
 
     @Autowired
     public OpLookupServiceImp(OperationTypeRepo opTypeRepo, LabwareRepo lwRepo, WorkRepo workRepo,
-                              OperationRepo opRepo, LabwareNoteRepo lwNoteRepo) {
+                              WorkLinkRepo workLinkRepo, OperationRepo opRepo, LabwareNoteRepo lwNoteRepo) {
         this.opTypeRepo = opTypeRepo;
         this.lwRepo = lwRepo;
         this.workRepo = workRepo;
+        this.workLinkRepo = workLinkRepo;
         this.opRepo = opRepo;
         this.lwNoteRepo = lwNoteRepo;
     }
@@ -51,8 +53,10 @@ public class OpLookupServiceImp implements OpLookupService {
             work = null;
         }
         List<Operation> ops = opRepo.findAllByOperationTypeAndDestinationLabwareIdIn(opType, List.of(lw.getId()));
-        if (work != null) {
-            ops = ops.stream().filter(op -> work.getOperationIds().contains(op.getId())).toList();
+        if (work != null && !ops.isEmpty()) {
+            Set<Integer> linkedOpIds = workLinkRepo.findLinkedOperationIds(work.getId(),
+                    ops.stream().map(Operation::getId).toList());
+            ops = ops.stream().filter(op -> linkedOpIds.contains(op.getId())).toList();
         }
         if (!ops.isEmpty() && run != null) {
             List<LabwareNote> lwNotes = lwNoteRepo.findAllByLabwareIdInAndName(List.of(lw.getId()), "run");
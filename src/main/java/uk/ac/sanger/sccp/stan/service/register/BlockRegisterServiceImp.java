@@ -173,9 +173,13 @@ public class BlockRegisterServiceImp implements IRegisterService<BlockRegisterRe
         List<Operation> opList = new ArrayList<>();
         OperationType opType = opTypeRepo.getByName("Register");
         BioState bioState = opType.getNewBioState();
+        List<Labware> unsaved = request.getLabware().stream()
+                .map(brl -> LabwareService.newLabware(validation.getLabwareType(brl.getLabwareType()),
+                        null, brl.getExternalBarcode()))
+                .toList();
+        Iterator<Labware> newLabwareIter = labwareService.createAll(unsaved).iterator();
         for (BlockRegisterLabware brl : request.getLabware()) {
-            LabwareType labwareType = validation.getLabwareType(brl.getLabwareType());
-            Labware lw = labwareService.create(labwareType, null, brl.getExternalBarcode());
+            Labware lw = newLabwareIter.next();
             lwList.add(lw);
             Set<Slot> slotsToUpdate = new HashSet<>();
             List<Action> actions = new ArrayList<>();
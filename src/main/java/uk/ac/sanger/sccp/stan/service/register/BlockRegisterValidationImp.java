@@ -14,6 +14,7 @@ import java.util.*;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.toSet;
 import static uk.ac.sanger.sccp.utils.BasicUtils.*;
 
 /**
@@ -158,6 +159,7 @@ public class BlockRegisterValidationImp implements RegisterValidation {
 
     /** Checks the donor info for problems */
     public void validateDonors() {
+        loadSpecies();
         for (BlockRegisterSample brs : iter(blockSamples())) {
             boolean skip = false;
             Species species = null;
@@ -171,15 +173,6 @@ public class BlockRegisterValidationImp implements RegisterValidation {
                 addProblem("Missing species.");
             } else {
                 species = speciesMap.get(brs.getSpecies());
-                if (species==null && !speciesMap.containsKey(brs.getSpecies())) {
-                    species = speciesRepo.findByName(brs.getSpecies()).orElse(null);
-                    speciesMap.put(brs.getSpecies(), species);
-                    if (species==null) {
-                        addProblem("Unknown species: "+repr(brs.getSpecies()));
-                    } else if (!species.isEnabled()) {
-                        addProblem("Species is not enabled: "+species.getName());
-                    }
-                }
             }
             if (skip) {
                 continue;
@@ -197,12 +190,15 @@ public class BlockRegisterValidationImp implements RegisterValidation {
                 }
             }
         }
+        if (donorMap.isEmpty()) {
+            return;
+        }
+        UCMap<Donor> realDonors = loadByName(donorMap.keySet(), donorRepo::findAllByDonorNameIn, Donor::getDonorName);
         for (Map.Entry<String, Donor> entry : donorMap.entrySet()) {
-            Optional<Donor> optDonor = donorRepo.findByDonorName(entry.getKey());
-            if (optDonor.isEmpty()) {
+            Donor realDonor = realDonors.get(entry.getKey());
+            if (realDonor==null) {
                 continue;
             }
-            Donor realDonor = optDonor.get();
             Donor newDonor = entry.getValue();
             if (realDonor.getLifeStage()!=newDonor.getLifeStage()) {
                 addProblem("Wrong life stage given for existing donor "+realDonor.getDonorName());
@@ -214,11 +210,32 @@ public class BlockRegisterValidationImp implements RegisterValidation {
         }
     }
 
+    /** Loads the species named in the request into the species map and checks them for problems */
+    void loadSpecies() {
+        Set<String> names = blockSamples().map(BlockRegisterSample::getSpecies)
+                .filter(name -> !nullOrEmpty(name))
+                .collect(toLinkedHashSet());
+        UCMap<Species> found = loadByName(names, speciesRepo::findAllByNameIn, Species::getName);
+        for (String name : names) {
+            if (speciesMap.containsKey(name)) {
+                continue;
+            }
+            Species species = found.get(name);
+            speciesMap.put(name, species);
+            if (species==null) {
+                addProblem("Unknown species: "+repr(name));
+            } else if (!species.isEnabled()) {
+                addProblem("Species is not enabled: "+species.getName());
+            }
+        }
+    }
+
     /** Checks the HMDMCs for problems */
     public void validateHmdmcs() {
         Set<String> unknownHmdmcs = new LinkedHashSet<>();
         boolean unwanted = false;
         boolean missing = false;
+        Set<String> hmdmcStrings = new LinkedHashSet<>();
         for (BlockRegisterSample brs : iter(blockSamples())) {
             boolean needsHmdmc = false;
             boolean needsNoHmdmc = false;
@@ -237,11 +254,14 @@ public class BlockRegisterValidationImp implements RegisterValidation {
                 unwanted = true;
                 continue;
             }
-
+            hmdmcStrings.add(hmdmcString);
+        }
+        UCMap<Hmdmc> found = loadByName(hmdmcStrings, hmdmcRepo::findAllByHmdmcIn, Hmdmc::getHmdmc);
+        for (String hmdmcString : hmdmcStrings) {
             if (hmdmcMap.containsKey(hmdmcString)) {
                 continue;
             }
-            Hmdmc hmdmc = hmdmcRepo.findByHmdmc(hmdmcString).orElse(null);
+            Hmdmc hmdmc = found.get(hmdmcString);
             hmdmcMap.put(hmdmcString, hmdmc);
             if (hmdmc==null) {
                 unknownHmdmcs.add(hmdmcString);
@@ -267,7 +287,11 @@ public class BlockRegisterValidationImp implements RegisterValidation {
 
     /** Checks tissue types and spatial locations for problems */
     public void validateSpatialLocations() {
-        UCMap<TissueType> tissueTypeMap = new UCMap<>();
+        Set<String> tissueTypeNames = blockSamples().map(BlockRegisterSample::getTissueType)
+                .filter(name -> !nullOrEmpty(name))
+                .collect(toLinkedHashSet());
+        UCMap<TissueType> tissueTypeMap = loadByName(tissueTypeNames, ttRepo::findAllByNameIn, TissueType::getName);
+        Set<String> checkedTissueTypes = new HashSet<>();
         Set<String> unknownTissueTypes = new LinkedHashSet<>();
         for (BlockRegisterSample block : iter(blockSamples())) {
             if (nullOrEmpty(block.getTissueType())) {
@@ -283,16 +307,11 @@ public class BlockRegisterValidationImp implements RegisterValidation {
             }
             TissueType tt = tissueTypeMap.get(key.string);
             if (tt==null) {
-                Optional<TissueType> ttOpt = ttRepo.findByName(key.string);
-                if (ttOpt.isEmpty()) {
-                    unknownTissueTypes.add(block.getTissueType());
-                    continue;
-                }
-                tt = ttOpt.get();
-                tissueTypeMap.put(key.string, tt);
-                if (!tt.isEnabled()) {
-                    addProblem(String.format("Tissue type \"%s\" is disabled.", tt.getName()));
-                }
+                unknownTissueTypes.add(block.getTissueType());
+                continue;
+            }
+            if (checkedTissueTypes.add(key.string) && !tt.isEnabled()) {
+                addProblem(String.format("Tissue type \"%s\" is disabled.", tt.getName()));
             }
             final int slCode = block.getSpatialLocation();
             Optional<SpatialLocation> slOpt = tt.getSpatialLocations().stream()
@@ -319,17 +338,20 @@ public class BlockRegisterValidationImp implements RegisterValidation {
 
     /** Loads and checks the labware types for problems */
     public void validateLabwareTypes() {
-        validateByName("labware type", BlockRegisterLabware::getLabwareType, ltRepo::findByName, labwareTypeMap);
+        validateByName("labware type", BlockRegisterLabware::getLabwareType, ltRepo::findAllByNameIn,
+                LabwareType::getName, labwareTypeMap);
     }
 
     /** Loads and checks the mediums for problems */
     public void validateMediums() {
-        validateByName("medium", BlockRegisterLabware::getMedium, mediumRepo::findByName, mediumMap);
+        validateByName("medium", BlockRegisterLabware::getMedium, mediumRepo::findAllByNameIn,
+                Medium::getName, mediumMap);
     }
 
     /** Loads and checks the fixatives for problems */
     public void validateFixatives() {
-        validateByName("fixative", BlockRegisterLabware::getFixative, fixativeRepo::findByName, fixativeMap);
+        validateByName("fixative", BlockRegisterLabware::getFixative, fixativeRepo::findAllByNameIn,
+                Fixative::getName, fixativeMap);
     }
 
     /** Checks the collection dates for problems */
@@ -413,6 +435,15 @@ public class BlockRegisterValidationImp implements RegisterValidation {
     public void validateNewTissues() {
         // NB repeated new external identifier in one request is still disallowed
         Set<String> externalNames = new HashSet<>();
+        Set<String> newExternalNames = blockSamples().filter(brs -> !brs.isExistingTissue())
+                .map(BlockRegisterSample::getExternalIdentifier)
+                .filter(xn -> !nullOrEmpty(xn))
+                .collect(toLinkedHashSet());
+        // External names are not unique in the database, so only the names that exist are collected
+        Set<String> existingExternalNames = (newExternalNames.isEmpty() ? Set.of()
+                : tissueRepo.findAllByExternalNameIn(newExternalNames).stream()
+                .map(t -> t.getExternalName().toUpperCase())
+                .collect(toSet()));
         for (BlockRegisterSample brs : iter(blockSamples())) {
             if (brs.isExistingTissue()) {
                 continue;
@@ -433,7 +464,7 @@ public class BlockRegisterValidationImp implements RegisterValidation {
                 }
                 if (!externalNames.add(brs.getExternalIdentifier().toUpperCase())) {
                     addProblem("Repeated external identifier: " + brs.getExternalIdentifier());
-                } else if (!tissueRepo.findAllByExternalName(brs.getExternalIdentifier()).isEmpty()) {
+                } else if (existingExternalNames.contains(brs.getExternalIdentifier().toUpperCase())) {
                     addProblem(String.format("There is already tissue in the database with external identifier %s.",
                             brs.getExternalIdentifier()));
                 }
@@ -551,33 +582,34 @@ public class BlockRegisterValidationImp implements RegisterValidation {
      * @param <E> type of entity to load
      * @param entityName name of the type of entity
      * @param nameFunction function to extract the name from the request
-     * @param lkp function to load the entity from the database
+     * @param lkp function to load the entities with the given names from the database
+     * @param entityNameFunction function to get the name of a loaded entity
      * @param map map to load the entity into
      */
     <E> void validateByName(String entityName,
                             Function<BlockRegisterLabware, String> nameFunction,
-                            Function<String, Optional<E>> lkp,
+                            Function<? super Set<String>, ? extends Collection<E>> lkp,
+                            Function<? super E, String> entityNameFunction,
                             UCMap<E> map) {
         Set<String> unknownNames = new LinkedHashSet<>();
+        Set<String> names = new LinkedHashSet<>();
         boolean missing = false;
         for (BlockRegisterLabware brl : request.getLabware()) {
             String name = nameFunction.apply(brl);
             if (nullOrEmpty(name)) {
                 missing = true;
-                continue;
-            }
-            if (unknownNames.contains(name)) {
-                continue;
-            }
-            if (map.containsKey(name)) {
-                continue;
+            } else {
+                names.add(name);
             }
-            Optional<E> opt = lkp.apply(name);
-            if (opt.isEmpty()) {
+        }
+        UCMap<E> found = loadByName(names, lkp, entityNameFunction);
+        for (String name : names) {
+            E entity = found.get(name);
+            if (entity==null) {
                 unknownNames.add(repr(name));
-                continue;
+            } else {
+                map.put(name, entity);
             }
-            map.put(name, opt.get());
         }
         if (missing) {
             addProblem(String.format("Missing %s.", entityName));
@@ -587,6 +619,22 @@ public class BlockRegisterValidationImp implements RegisterValidation {
         }
     }
 
+    /**
+     * Loads the entities with the given names in a single lookup
+     * @param <E> type of entity to load
+     * @param names the names to look up
+     * @param lkp function to load the entities with the given names from the database
+     * @param entityNameFunction function to get the name of a loaded entity
+     * @return a map of the loaded entities from their names
+     */
+    <E> UCMap<E> loadByName(Set<String> names, Function<? super Set<String>, ? extends Collection<E>> lkp,
+                            Function<? super E, String> entityNameFunction) {
+        if (names.isEmpty()) {
+            return new UCMap<>(0);
+        }
+        return lkp.apply(names).stream().collect(UCMap.toUCMap(entityNameFunction));
+    }
+
     Collection<String> getProblems() {
         return problems;
     }
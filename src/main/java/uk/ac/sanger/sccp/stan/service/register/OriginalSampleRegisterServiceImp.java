@@ -117,12 +117,18 @@ public class OriginalSampleRegisterServiceImp implements IRegisterService<Origin
         checkCollectionDates(problems, request);
 
         List<DataStruct> datas = request.getSamples().stream().map(DataStruct::new).collect(toList());
-        checkExistence(problems, datas, "HuMFre number", OriginalSampleData::getHmdmc, hmdmcRepo::findByHmdmc, DataStruct::setHmdmc);
-        checkExistence(problems, datas, "species", OriginalSampleData::getSpecies, speciesRepo::findByName, DataStruct::setSpecies);
-        checkExistence(problems, datas, "fixative", OriginalSampleData::getFixative, fixativeRepo::findByName, DataStruct::setFixative);
-        checkExistence(problems, datas, "solution", OriginalSampleData::getSolution, solutionRepo::findByName, DataStruct::setSolution);
-        checkExistence(problems, datas, "labware type", OriginalSampleData::getLabwareType, ltRepo::findByName, DataStruct::setLabwareType);
-        checkExistence(problems, datas, "cellular classification", OriginalSampleData::getCellClass, cellClassRepo::findByName, DataStruct::setCellClass);
+        checkExistence(problems, datas, "HuMFre number", OriginalSampleData::getHmdmc, hmdmcRepo::findAllByHmdmcIn,
+                Hmdmc::getHmdmc, DataStruct::setHmdmc);
+        checkExistence(problems, datas, "species", OriginalSampleData::getSpecies, speciesRepo::findAllByNameIn,
+                Species::getName, DataStruct::setSpecies);
+        checkExistence(problems, datas, "fixative", OriginalSampleData::getFixative, fixativeRepo::findAllByNameIn,
+                Fixative::getName, DataStruct::setFixative);
+        checkExistence(problems, datas, "solution", OriginalSampleData::getSolution, solutionRepo::findAllByNameIn,
+                Solution::getName, DataStruct::setSolution);
+        checkExistence(problems, datas, "labware type", OriginalSampleData::getLabwareType, ltRepo::findAllByNameIn,
+                LabwareType::getName, DataStruct::setLabwareType);
+        checkExistence(problems, datas, "cellular classification", OriginalSampleData::getCellClass, cellClassRepo::findAllByNameIn,
+                CellClass::getName, DataStruct::setCellClass);
         checkHmdmcsForSpecies(problems, datas);
         checkWorks(problems, datas);
         loadDonors(datas);
@@ -184,24 +190,30 @@ public class OriginalSampleRegisterServiceImp implements IRegisterService<Origin
 
     <T> void checkExistence(Collection<String> problems, List<DataStruct> datas, String fieldName,
                                    Function<OriginalSampleData, String> function,
-                                   Function<String, Optional<T>> repoFunction,
+                                   Function<? super Set<String>, ? extends Collection<T>> repoFunction,
+                                   Function<? super T, String> entityNameFunction,
                                    BiConsumer<DataStruct, T> setter) {
-        UCMap<T> entities = new UCMap<>();
+        UCMap<String> values = new UCMap<>();
+        for (DataStruct data : datas) {
+            String value = function.apply(data.getOriginalSampleData());
+            if (!nullOrEmpty(value)) {
+                values.putIfAbsent(value, value);
+            }
+        }
+        if (values.isEmpty()) {
+            return;
+        }
+        UCMap<T> entities = repoFunction.apply(new LinkedHashSet<>(values.values())).stream()
+                .collect(UCMap.toUCMap(entityNameFunction));
         Set<String> unknownValues = new LinkedHashSet<>();
         for (DataStruct data : datas) {
             String value = function.apply(data.getOriginalSampleData());
             if (!nullOrEmpty(value)) {
-                if (entities.containsKey(value)) {
-                    T entity = entities.get(value);
-                    setter.accept(data, entity);
+                T entity = entities.get(value);
+                if (entity==null) {
+                    unknownValues.add(values.get(value));
                 } else {
-                    Optional<T> opt = repoFunction.apply(value);
-                    if (opt.isEmpty()) {
-                        unknownValues.add(value);
-                    } else {
-                        setter.accept(data, opt.get());
-                    }
-                    entities.put(value, opt.orElse(null));
+                    setter.accept(data, entity);
                 }
             }
         }
@@ -599,15 +611,21 @@ public class OriginalSampleRegisterServiceImp implements IRegisterService<Origin
      * @param groups the data under construction
      */
     void createNewLabware(List<List<DataStruct>> groups) {
+        List<Labware> unsaved = groups.stream()
+                .map(group -> new Labware(null, null, group.getFirst().labwareType, null))
+                .toList();
+        Iterator<Labware> lwIter = labwareService.createAll(unsaved).iterator();
+        List<Slot> slotsToSave = new ArrayList<>(groups.size());
         for (List<DataStruct> group : groups) {
-            final Labware lw = labwareService.create(group.getFirst().labwareType);
+            final Labware lw = lwIter.next();
             final Slot slot = lw.getFirstSlot();
             for (DataStruct data : group) {
                 slot.addSample(data.sample);
                 data.labware = lw;
             }
-            slotRepo.save(slot);
+            slotsToSave.add(slot);
         }
+        slotRepo.saveAll(slotsToSave);
     }
 
     /**
@@ -173,34 +173,51 @@ public class SectionRegisterServiceImp implements IRegisterService<SectionRegist
      */
     public UCMap<Labware> createAllLabware(SectionRegisterRequest request, UCMap<LabwareType> labwareTypes,
                                            UCMap<Sample> sampleMap) {
-        return request.getLabware().stream()
-                .map(srl -> createLabware(srl, labwareTypes, sampleMap))
-                .collect(toUCMap(Labware::getExternalBarcode));
+        List<Labware> unsaved = request.getLabware().stream()
+                .map(srl -> unsavedLabware(srl, labwareTypes))
+                .toList();
+        List<Labware> labware = lwService.createAll(unsaved);
+        List<Slot> slotsToSave = new ArrayList<>();
+        Iterator<Labware> lwIter = labware.iterator();
+        for (SectionRegisterLabware srl : request.getLabware()) {
+            slotsToSave.addAll(fillLabware(srl, lwIter.next(), sampleMap));
+        }
+        slotRepo.saveAll(slotsToSave);
+        return labware.stream().collect(toUCMap(Labware::getExternalBarcode));
     }
 
     /**
-     * Creates a new item of labware containing the samples as described in the request
+     * Creates an unsaved labware object as described in the request
      * @param srl the specification of the labware
      * @param labwareTypes a map of name (upper case) to labware type
-     * @param sampleMap the available samples, a map from external identifier (upper case) to sample
-     * @return an item of labware containing samples from the given sample map as specified in the request
+     * @return an unsaved labware object with the appropriate type and barcodes
      */
-    public Labware createLabware(SectionRegisterLabware srl, UCMap<LabwareType> labwareTypes,
-                                 UCMap<Sample> sampleMap) {
+    public Labware unsavedLabware(SectionRegisterLabware srl, UCMap<LabwareType> labwareTypes) {
         LabwareType lt = labwareTypes.get(srl.getLabwareType());
         String externalBarcode = srl.getExternalBarcode();
         String prebarcode = emptyToNull(srl.getPreBarcode());
         if (lt.isPrebarcoded() && prebarcode==null) {
             prebarcode = externalBarcode;
         }
-        Labware lw = lwService.create(lt, prebarcode, externalBarcode);
+        return LabwareService.newLabware(lt, prebarcode, externalBarcode);
+    }
+
+    /**
+     * Adds samples to the slots of the given new labware as described in the request
+     * @param srl the specification of the labware
+     * @param lw the new labware
+     * @param sampleMap the available samples, a map from external identifier (upper case) to sample
+     * @return the slots that have been given samples
+     */
+    public List<Slot> fillLabware(SectionRegisterLabware srl, Labware lw, UCMap<Sample> sampleMap) {
+        List<Slot> filledSlots = new ArrayList<>();
         for (var content : srl.getContents()) {
             Sample sample = sampleMap.get(content.getExternalIdentifier());
             List<Slot> slots = lwSlots(lw, content.getAddresses()).toList();
             slots.forEach(slot -> slot.addSample(sample));
-            slotRepo.saveAll(slots);
+            filledSlots.addAll(slots);
         }
-        return lw;
+        return filledSlots;
     }
 
     /**
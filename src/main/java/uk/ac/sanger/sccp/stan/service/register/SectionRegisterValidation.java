@@ -233,7 +233,16 @@ public class SectionRegisterValidation {
         }
     }
 
-    public String findBarcodeProblem(String barcode, Set<String> seen) {
+    /**
+     * Finds a problem with the given barcode, if there is one
+     * @param barcode the barcode to check
+     * @param seen the (upper case) barcodes already seen in the request
+     * @param usedExternalBarcodes the (upper case) external barcodes already used in the database
+     * @param usedBarcodes the (upper case) labware barcodes already used in the database
+     * @return a description of the problem, or null if there is no problem
+     */
+    public String findBarcodeProblem(String barcode, Set<String> seen,
+                                     Set<String> usedExternalBarcodes, Set<String> usedBarcodes) {
         String upper = barcode.toUpperCase();
         if (!seen.add(upper)) {
             return "Repeated barcode{s}";
@@ -241,10 +250,10 @@ public class SectionRegisterValidation {
         if (upper.startsWith("STAN-") || upper.startsWith("STO-")) {
             return "Invalid external barcode prefix";
         }
-        if (lwRepo.existsByExternalBarcode(upper)) {
+        if (usedExternalBarcodes.contains(upper)) {
             return "External barcode{s} already used";
         }
-        if (lwRepo.existsByBarcode(upper)) {
+        if (usedBarcodes.contains(upper)) {
             return "Labware barcode{s} already used";
         }
         return null;
@@ -257,6 +266,22 @@ public class SectionRegisterValidation {
         BiConsumer<String, String> bcProblem = (problem, bc) ->
                 bcProblemMap.computeIfAbsent(problem, k -> new LinkedHashSet<>()).add(bc);
         checkForPrebarcodeMismatch();
+        Set<String> requestBarcodes = request.getLabware().stream()
+                .flatMap(lw -> Stream.of(lw.getExternalBarcode(), lw.getPreBarcode()))
+                .filter(bc -> !nullOrEmpty(bc))
+                .map(String::toUpperCase)
+                .collect(toSet());
+        final Set<String> usedExternalBarcodes, usedBarcodes;
+        if (requestBarcodes.isEmpty()) {
+            usedExternalBarcodes = usedBarcodes = Set.of();
+        } else {
+            usedExternalBarcodes = lwRepo.findExternalBarcodesIn(requestBarcodes).stream()
+                    .map(String::toUpperCase)
+                    .collect(toSet());
+            usedBarcodes = lwRepo.findBarcodesByBarcodeIn(requestBarcodes).stream()
+                    .map(String::toUpperCase)
+                    .collect(toSet());
+        }
         for (var lw : request.getLabware()) {
             String bc = lw.getExternalBarcode();
             if (nullOrEmpty(bc)) {
@@ -273,7 +298,7 @@ public class SectionRegisterValidation {
                 bcVal = externalBarcodeValidation;
             }
 
-            String problem = findBarcodeProblem(bc, seenBarcodes);
+            String problem = findBarcodeProblem(bc, seenBarcodes, usedExternalBarcodes, usedBarcodes);
             if (problem!=null) {
                 bcProblem.accept(problem, bc);
             } else if (separatePrebarcode) {
@@ -283,7 +308,7 @@ public class SectionRegisterValidation {
             }
             String pbc = lw.getPreBarcode();
             if (!nullOrEmpty(pbc) && !pbc.equalsIgnoreCase(bc)) {
-                problem = findBarcodeProblem(pbc, seenBarcodes);
+                problem = findBarcodeProblem(pbc, seenBarcodes, usedExternalBarcodes, usedBarcodes);
                 if (problem!=null) {
                     bcProblem.accept(problem, pbc);
                 } else {
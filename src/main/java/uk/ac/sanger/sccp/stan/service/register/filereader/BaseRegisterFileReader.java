@@ -1,11 +1,15 @@
 package uk.ac.sanger.sccp.stan.service.register.filereader;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.poifs.filesystem.FileMagic;
 import org.apache.poi.ss.usermodel.*;
+import org.springframework.web.multipart.MultipartFile;
 import uk.ac.sanger.sccp.stan.model.Address;
 import uk.ac.sanger.sccp.stan.model.LifeStage;
 import uk.ac.sanger.sccp.stan.service.ValidationException;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -25,12 +29,13 @@ public abstract class BaseRegisterFileReader<RequestType, ColumnType extends Enu
 
     protected static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/uuuu");
 
-    protected int headingRowIndex, dataRowIndex;
+    protected int sheetIndex, headingRowIndex, dataRowIndex;
 
     protected Class<ColumnType> columnClass;
 
-    protected BaseRegisterFileReader(Class<ColumnType> columnClass, int headingRowIndex, int dataRowIndex) {
+    protected BaseRegisterFileReader(Class<ColumnType> columnClass, int sheetIndex, int headingRowIndex, int dataRowIndex) {
         this.columnClass = columnClass;
+        this.sheetIndex = sheetIndex;
         this.headingRowIndex = headingRowIndex;
         this.dataRowIndex = dataRowIndex;
     }
@@ -49,6 +54,29 @@ public abstract class BaseRegisterFileReader<RequestType, ColumnType extends Enu
         return IColumn.forHeading(columnClass.getEnumConstants(), heading);
     }
 
+    /**
+     * Reads the given MultipartFile as an Excel file.
+     * An xlsx file is {@link #readStreaming streamed} a row at a time;
+     * any other kind of workbook is loaded and {@link #read(Sheet) read} from the relevant sheet.
+     * @param multipartFile an uploaded file
+     * @return a request read from the file data
+     * @exception IOException the file cannot be read
+     * @exception ValidationException the request is invalid
+     */
+    public RequestType read(MultipartFile multipartFile) throws IOException, ValidationException {
+        try (InputStream in = FileMagic.prepareToCheckMagic(multipartFile.getInputStream())) {
+            if (FileMagic.valueOf(in)==FileMagic.OOXML) {
+                return readStreaming(in);
+            }
+            try (Workbook wb = WorkbookFactory.create(in)) {
+                if (sheetIndex < 0 || sheetIndex >= wb.getNumberOfSheets()) {
+                    throw new ValidationException(List.of("Workbook does not have a worksheet at index "+sheetIndex));
+                }
+                return read(wb.getSheetAt(sheetIndex));
+            }
+        }
+    }
+
     public RequestType read(Sheet sheet) {
         final Collection<String> problems = new LinkedHashSet<>();
         Map<ColumnType, Integer> columnIndex = indexColumns(problems, sheet.getRow(headingRowIndex));
@@ -60,6 +88,39 @@ public abstract class BaseRegisterFileReader<RequestType, ColumnType extends Enu
                 .map(row -> readRow(problems, columnIndex, row))
                 .filter(map -> !map.isEmpty())
                 .collect(toList());
+        return createRequestFromRows(problems, rows);
+    }
+
+    /**
+     * Reads the request from the given xlsx data, streaming the rows of the relevant sheet so that
+     * the workbook is never loaded in memory.
+     * The rows are read into the same column maps as {@link #read(Sheet)}, with the same conversions
+     * and problems.
+     * @param in xlsx data
+     * @return a request read from the data
+     * @exception IOException the data cannot be read as an xlsx file
+     * @exception ValidationException the request is invalid
+     */
+    public RequestType readStreaming(InputStream in) throws IOException, ValidationException {
+        StreamedRows streamedRows = new StreamedRows();
+        StreamingSheetReader.read(in, sheetIndex, streamedRows);
+        if (streamedRows.columnIndex==null) {
+            indexStreamedColumns(streamedRows.problems, Map.of());
+        }
+        if (!streamedRows.problems.isEmpty() && !streamedRows.headingsValid) {
+            throw new ValidationException("The file contents are invalid.", streamedRows.problems);
+        }
+        return createRequestFromRows(streamedRows.problems, streamedRows.rows);
+    }
+
+    /**
+     * Checks for problems with the rows read from a file, and creates a request from them
+     * @param problems the problems found so far
+     * @param rows the rows read from the file
+     * @return the request
+     * @exception ValidationException if any problems are found
+     */
+    protected RequestType createRequestFromRows(Collection<String> problems, List<Map<ColumnType, Object>> rows) {
         if (problems.isEmpty() && rows.isEmpty()) {
             problems.add("No registrations requested.");
         }
@@ -69,6 +130,29 @@ public abstract class BaseRegisterFileReader<RequestType, ColumnType extends Enu
         return createRequest(problems, rows);
     }
 
+    /**
+     * Receives the streamed rows of a sheet, indexing the headings and reading the data rows
+     */
+    class StreamedRows implements StreamingSheetReader.RowHandler {
+        final Collection<String> problems = new LinkedHashSet<>();
+        final List<Map<ColumnType, Object>> rows = new ArrayList<>();
+        Map<ColumnType, Integer> columnIndex;
+        boolean headingsValid;
+
+        @Override
+        public void row(int rowIndex, Map<Integer, SheetCell> cells) {
+            if (rowIndex==headingRowIndex) {
+                columnIndex = indexStreamedColumns(problems, cells);
+                headingsValid = problems.isEmpty();
+            } else if (rowIndex >= dataRowIndex && headingsValid) {
+                Map<ColumnType, Object> row = readStreamedRow(problems, columnIndex, cells);
+                if (!row.isEmpty()) {
+                    rows.add(row);
+                }
+            }
+        }
+    }
+
 
     /**
      * Finds the indexes of {@link IColumn} headings in the given row.
@@ -81,19 +165,58 @@ public abstract class BaseRegisterFileReader<RequestType, ColumnType extends Enu
         Map<ColumnType, Integer> map = makeColumnMap();
         for (Cell cell : row) {
             String heading = (cell==null ? null : cell.getStringCellValue());
-            if (StringUtils.isBlank(heading)) {
-                continue;
+            if (!StringUtils.isBlank(heading)) {
+                indexHeading(problems, map, heading, cell.getColumnIndex());
             }
-            heading = heading.trim();
-            ColumnType column = columnForHeading(heading);
-            if (column==null) {
-                problems.add("Unexpected column heading: "+repr(heading));
-            } else if (map.get(column)!=null) {
-                problems.add("Repeated column: "+column);
-            } else if (column.isRequired() || column.getDataType()!=Void.class) {
-                map.put(column, cell.getColumnIndex());
+        }
+        checkMissingColumns(problems, map);
+        return map;
+    }
+
+    /**
+     * Finds the indexes of {@link IColumn} headings in the given streamed row.
+     * This matches headings in the same way as {@link #indexColumns}.
+     * @param problems receptacle for problems found
+     * @param cells the cells of the headings row, mapped from their column index
+     * @return a map of column to index
+     */
+    public Map<ColumnType, Integer> indexStreamedColumns(Collection<String> problems, Map<Integer, SheetCell> cells) {
+        Map<ColumnType, Integer> map = makeColumnMap();
+        for (SheetCell cell : new TreeMap<>(cells).values()) {
+            String heading = cell.getStringCellValue();
+            if (!StringUtils.isBlank(heading)) {
+                indexHeading(problems, map, heading, cell.columnIndex());
             }
         }
+        checkMissingColumns(problems, map);
+        return map;
+    }
+
+    /**
+     * Adds the column matching the given heading to the map of column indexes.
+     * @param problems receptacle for problems found
+     * @param map the map of column indexes
+     * @param heading the (nonblank) heading found
+     * @param index the index of the column containing the heading
+     */
+    private void indexHeading(Collection<String> problems, Map<ColumnType, Integer> map, String heading, int index) {
+        heading = heading.trim();
+        ColumnType column = columnForHeading(heading);
+        if (column==null) {
+            problems.add("Unexpected column heading: "+repr(heading));
+        } else if (map.get(column)!=null) {
+            problems.add("Repeated column: "+column);
+        } else if (column.isRequired() || column.getDataType()!=Void.class) {
+            map.put(column, index);
+        }
+    }
+
+    /**
+     * Adds a problem if any required columns are missing from the given map
+     * @param problems receptacle for problems found
+     * @param map the map of column indexes
+     */
+    private void checkMissingColumns(Collection<String> problems, Map<ColumnType, Integer> map) {
         List<String> missingColumns = getColumns()
                 .filter(c -> c.isRequired() && map.get(c)==null)
                 .map(Object::toString)
@@ -101,7 +224,6 @@ public abstract class BaseRegisterFileReader<RequestType, ColumnType extends Enu
         if (!missingColumns.isEmpty()) {
             problems.add("Missing columns: "+missingColumns);
         }
-        return map;
     }
 
     /**
@@ -140,6 +262,34 @@ public abstract class BaseRegisterFileReader<RequestType, ColumnType extends Enu
         return null;
     }
 
+    /**
+     * Reads values from the given streamed row as linked to the given map of columns and integers.
+     * @param problems receptacle for problems found
+     * @param columnIndex map of {@link IColumn} to index in the row
+     * @param cells the cells of the row, mapped from their column index
+     * @return a map of {@link IColumn} to value from the row
+     */
+    public Map<ColumnType, Object> readStreamedRow(final Collection<String> problems, Map<ColumnType, Integer> columnIndex,
+                                                   Map<Integer, SheetCell> cells) {
+        final Map<ColumnType, Object> map = makeColumnMap();
+        for (var entry : columnIndex.entrySet()) {
+            ColumnType key = entry.getKey();
+            SheetCell cell = cells.get(entry.getValue());
+            if (cell==null) {
+                continue;
+            }
+            try {
+                Object value = sheetCellValue(key.getDataType(), cell);
+                if (value != null) {
+                    map.put(key, value);
+                }
+            } catch (RuntimeException e) {
+                problems.add("At cell "+cell.getAddress()+": "+e.getMessage());
+            }
+        }
+        return map;
+    }
+
     public LifeStage valueToLifeStage(Collection<String> problems, String lifeStageString) {
         if (!nullOrEmpty(lifeStageString) && !lifeStageString.equalsIgnoreCase("n/a")) {
             try {
@@ -184,6 +334,26 @@ public abstract class BaseRegisterFileReader<RequestType, ColumnType extends Enu
      * @exception IllegalStateException may be thrown from the POI cells if they are of the wrong type
      */
     public LocalDate cellDate(Cell cell) {
+        return cellDataDate(CellData.of(cell));
+    }
+
+    /**
+     * Tries to get a date out of a streamed cell, in the same way as {@link #cellDate}.
+     * @param cell a streamed cell
+     * @return the date found, or null if the cell seems to be empty
+     * @exception IllegalArgumentException if the cell value can't be interpreted as a date
+     * @exception IllegalStateException if the cell is of the wrong type
+     */
+    public LocalDate sheetCellDate(SheetCell cell) {
+        return cellDataDate(cell);
+    }
+
+    /**
+     * Tries to get a date out of a cell's data, for {@link #cellDate} and {@link #sheetCellDate}.
+     * @param cell the cell's data
+     * @return the date found, or null if the cell seems to be empty
+     */
+    LocalDate cellDataDate(CellData cell) {
         if (cell.getCellType()==CellType.STRING) {
             String string = cell.getStringCellValue();
             if (nullOrEmpty(string)) {
@@ -198,6 +368,19 @@ public abstract class BaseRegisterFileReader<RequestType, ColumnType extends Enu
         return ldt.toLocalDate();
     }
 
+    /**
+     * Gets a streamed cell value, trying to make it appropriate for the indicated type.
+     * The conversions are the same as for {@link #cellValue}.
+     * @param type a type ({@link String}, {@link Integer} or {@link LocalDate})
+     * @param cell the cell to read
+     * @return the value read
+     * @param <T> the type of value read
+     * @exception IllegalArgumentException if the specified type cannot be read from the given cell
+     * @exception IllegalStateException if the cell is of the wrong type
+     */
+    public <T> T sheetCellValue(Class<T> type, SheetCell cell) {
+        return cellDataValue(type, cell);
+    }
 
     /**
      * Gets a cell value, trying to make it appropriate for the indicated type.
@@ -211,14 +394,25 @@ public abstract class BaseRegisterFileReader<RequestType, ColumnType extends Enu
      * @exception IllegalArgumentException if the specified type cannot be read from the given cell
      * @exception IllegalStateException may be thrown from the POI cells if they are of the wrong type
      */
-    @SuppressWarnings("unchecked")
     public <T> T cellValue(Class<T> type, Cell cell) {
+        return cellDataValue(type, cell==null ? null : CellData.of(cell));
+    }
+
+    /**
+     * Gets a value from a cell's data, for {@link #cellValue} and {@link #sheetCellValue}.
+     * @param type a type ({@link String}, {@link Integer} or {@link LocalDate})
+     * @param cell the cell's data, or null
+     * @return the value read
+     * @param <T> the type of value read
+     */
+    @SuppressWarnings("unchecked")
+    <T> T cellDataValue(Class<T> type, CellData cell) {
         CellType cellType = (cell==null ? null : cell.getCellType());
         if (cellType==null || cellType==CellType.BLANK || type==Void.class) {
             return null;
         }
         if (type==LocalDate.class) {
-            return (T) cellDate(cell);
+            return (T) cellDataDate(cell);
         }
         if (type==Integer.class) {
             if (cellType==CellType.NUMERIC || cellType==CellType.FORMULA) {
@@ -27,7 +27,7 @@ public class BlockRegisterFileReaderImp extends BaseRegisterFileReader<BlockRegi
         implements BlockRegisterFileReader {
 
     protected BlockRegisterFileReaderImp() {
-        super(Column.class, 1, 3);
+        super(Column.class, SHEET_INDEX, 1, 3);
     }
 
     @Override
@@ -0,0 +1,51 @@
+package uk.ac.sanger.sccp.stan.service.register.filereader;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+
+import java.time.LocalDateTime;
+
+/**
+ * The values of a worksheet cell, whether it was loaded in a POI workbook or streamed by
+ * {@link StreamingSheetReader}, so that both can be converted in the same way.
+ * The methods behave like the corresponding methods of a POI {@link Cell}.
+ * @author dr6
+ */
+public interface CellData {
+    CellType getCellType();
+
+    double getNumericCellValue();
+
+    String getStringCellValue();
+
+    LocalDateTime getLocalDateTimeCellValue();
+
+    /**
+     * Gets the data of a POI cell
+     * @param cell a cell in a loaded workbook
+     * @return the data of the cell
+     */
+    static CellData of(Cell cell) {
+        return new CellData() {
+            @Override
+            public CellType getCellType() {
+                return cell.getCellType();
+            }
+
+            @Override
+            public double getNumericCellValue() {
+                return cell.getNumericCellValue();
+            }
+
+            @Override
+            public String getStringCellValue() {
+                return cell.getStringCellValue();
+            }
+
+            @Override
+            public LocalDateTime getLocalDateTimeCellValue() {
+                return cell.getLocalDateTimeCellValue();
+            }
+        };
+    }
+}
@@ -26,7 +26,7 @@ public class OriginalSampleRegisterFileReaderImp extends BaseRegisterFileReader<
     static final Pattern POT_NUMBER_PTN = Pattern.compile("(?:pot\\s*)?(\\d{1,5})", Pattern.CASE_INSENSITIVE);
 
     public OriginalSampleRegisterFileReaderImp() {
-        super(Column.class, HEADING_ROW, FIRST_DATA_ROW);
+        super(Column.class, SHEET_INDEX, HEADING_ROW, FIRST_DATA_ROW);
     }
 
     @Override
@@ -23,7 +23,7 @@ public class SectionRegisterFileReaderImp extends BaseRegisterFileReader<Section
         implements SectionRegisterFileReader {
 
     public SectionRegisterFileReaderImp() {
-        super(Column.class, 1, 3);
+        super(Column.class, SHEET_INDEX, 1, 3);
     }
 
     /**
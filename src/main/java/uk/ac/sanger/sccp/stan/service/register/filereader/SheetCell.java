@@ -0,0 +1,79 @@
+package uk.ac.sanger.sccp.stan.service.register.filereader;
+
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.time.LocalDateTime;
+
+/**
+ * A cell read from a worksheet by {@link StreamingSheetReader}.
+ * The getters behave like the corresponding methods of a POI {@link org.apache.poi.ss.usermodel.Cell Cell}:
+ * formula cells give their cached result, and asking for the wrong type of value throws an
+ * {@code IllegalStateException}.
+ * @param columnIndex the index of the column containing the cell
+ * @param address the address of the cell, e.g. {@code "B4"}
+ * @param type the type of the cell
+ * @param resultType the type of the cell's value: the same as {@code type}, except for formula cells
+ * @param text the string value of the cell, if it has one
+ * @param number the numeric value of the cell, if it has one
+ * @param date1904 whether the workbook uses the 1904 date system
+ * @author dr6
+ */
+public record SheetCell(int columnIndex, String address, CellType type, CellType resultType,
+                        String text, double number, boolean date1904) implements CellData {
+
+    @Override
+    public CellType getCellType() {
+        return this.type;
+    }
+
+    public String getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Gets the numeric value of the cell; zero for a blank cell
+     * @exception IllegalStateException if the cell's value is not numeric
+     */
+    @Override
+    public double getNumericCellValue() {
+        if (resultType==CellType.BLANK) {
+            return 0.0;
+        }
+        if (resultType!=CellType.NUMERIC) {
+            throw wrongType(CellType.NUMERIC);
+        }
+        return number;
+    }
+
+    /**
+     * Gets the string value of the cell; an empty string for a blank cell
+     * @exception IllegalStateException if the cell's value is not a string
+     */
+    @Override
+    public String getStringCellValue() {
+        if (resultType==CellType.BLANK) {
+            return "";
+        }
+        if (resultType!=CellType.STRING) {
+            throw wrongType(CellType.STRING);
+        }
+        return text;
+    }
+
+    /**
+     * Interprets the numeric value of the cell as a date and time; null for a blank cell
+     * @exception IllegalStateException if the cell's value is not numeric
+     */
+    @Override
+    public LocalDateTime getLocalDateTimeCellValue() {
+        if (type==CellType.BLANK) {
+            return null;
+        }
+        return DateUtil.getLocalDateTime(getNumericCellValue(), date1904);
+    }
+
+    private IllegalStateException wrongType(CellType expected) {
+        return new IllegalStateException("Cannot get a "+expected+" value from a "+resultType+" cell");
+    }
+}
@@ -0,0 +1,243 @@
+package uk.ac.sanger.sccp.stan.service.register.filereader;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.*;
+import org.xml.sax.helpers.DefaultHandler;
+import uk.ac.sanger.sccp.stan.service.ValidationException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Reads rows from a worksheet in an xlsx file by streaming the sheet's XML,
+ * without building the workbook in memory.
+ * Each row is passed to a {@link RowHandler} as it is read.
+ * <p>The xlsx file is opened read-only from disk, so that POI reads its zip entries as they are needed
+ * rather than buffering the whole package; data from a stream is first spooled to a temporary file.
+ * @author dr6
+ */
+public class StreamingSheetReader {
+    /** Receives the rows of a worksheet */
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * Receives a row from the worksheet
+         * @param rowIndex the (zero-based) index of the row
+         * @param cells the cells in the row, mapped from their column index
+         */
+        void row(int rowIndex, Map<Integer, SheetCell> cells);
+    }
+
+    private StreamingSheetReader() {}
+
+    /**
+     * Reads the indicated worksheet from the given xlsx data.
+     * The data is spooled to a temporary file, which is deleted afterwards.
+     * Rows missing from the file are skipped.
+     * @param in the xlsx data
+     * @param sheetIndex the index of the sheet to read
+     * @param handler receptacle for the rows of the sheet
+     * @exception IOException the data could not be read as an xlsx file
+     * @exception ValidationException the workbook does not have a sheet at the given index
+     */
+    public static void read(InputStream in, int sheetIndex, RowHandler handler) throws IOException {
+        Path temp = Files.createTempFile("upload", ".xlsx");
+        try {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            read(temp, sheetIndex, handler);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Reads the indicated worksheet from the given xlsx file, which is opened read-only.
+     * Rows missing from the file are skipped.
+     * @param file the xlsx file
+     * @param sheetIndex the index of the sheet to read
+     * @param handler receptacle for the rows of the sheet
+     * @exception IOException the file could not be read as an xlsx file
+     * @exception ValidationException the workbook does not have a sheet at the given index
+     */
+    public static void read(Path file, int sheetIndex, RowHandler handler) throws IOException {
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(file.toFile(), PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new IOException(e);
+        }
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            boolean date1904 = isDate1904(reader);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            for (int index = 0; sheets.hasNext(); ++index) {
+                try (InputStream sheetData = sheets.next()) {
+                    if (index==sheetIndex) {
+                        parse(sheetData, new SheetHandler(strings, date1904, handler));
+                        return;
+                    }
+                }
+            }
+            throw new ValidationException(List.of("Workbook does not have a worksheet at index "+sheetIndex));
+        } catch (OpenXML4JException | SAXException e) {
+            throw new IOException(e);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    private static void parse(InputStream data, ContentHandler handler) throws IOException, SAXException {
+        XMLReader parser;
+        try {
+            parser = XMLHelper.newXMLReader();
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e);
+        }
+        parser.setContentHandler(handler);
+        parser.parse(new InputSource(data));
+    }
+
+    /**
+     * Checks the workbook properties to see if the workbook uses the 1904 date system
+     */
+    static boolean isDate1904(XSSFReader reader) throws IOException, OpenXML4JException, SAXException {
+        boolean[] date1904 = {false};
+        try (InputStream data = reader.getWorkbookData()) {
+            parse(data, new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if (localName.equals("workbookPr")) {
+                        String value = attributes.getValue("date1904");
+                        date1904[0] = ("1".equals(value) || "true".equalsIgnoreCase(value));
+                    }
+                }
+            });
+        }
+        return date1904[0];
+    }
+
+    /**
+     * Handler for the XML of a worksheet, assembling the cells of each row
+     */
+    static class SheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable strings;
+        private final boolean date1904;
+        private final RowHandler rowHandler;
+
+        private int rowIndex = -1;
+        private int columnIndex;
+        private Map<Integer, SheetCell> cells;
+        private String cellAddress, cellType;
+        private boolean formula, hasValue, inValue, inInlineString;
+        private final StringBuilder value = new StringBuilder();
+
+        SheetHandler(ReadOnlySharedStringsTable strings, boolean date1904, RowHandler rowHandler) {
+            this.strings = strings;
+            this.date1904 = date1904;
+            this.rowHandler = rowHandler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row" -> {
+                    String ref = attributes.getValue("r");
+                    rowIndex = (ref==null ? rowIndex + 1 : Integer.parseInt(ref) - 1);
+                    columnIndex = -1;
+                    cells = new HashMap<>();
+                }
+                case "c" -> {
+                    String ref = attributes.getValue("r");
+                    if (ref==null) {
+                        columnIndex += 1;
+                        cellAddress = new CellReference(rowIndex, columnIndex).formatAsString(false);
+                    } else {
+                        columnIndex = new CellReference(ref).getCol();
+                        cellAddress = ref;
+                    }
+                    cellType = attributes.getValue("t");
+                    formula = false;
+                    hasValue = false;
+                    value.setLength(0);
+                }
+                case "f" -> formula = true;
+                case "v" -> inValue = true;
+                case "is" -> inInlineString = true;
+                default -> {}
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue || inInlineString) {
+                value.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v" -> {
+                    inValue = false;
+                    hasValue = true;
+                }
+                case "is" -> {
+                    inInlineString = false;
+                    hasValue = true;
+                }
+                case "c" -> {
+                    SheetCell cell = makeCell();
+                    cells.put(cell.columnIndex(), cell);
+                }
+                case "row" -> rowHandler.row(rowIndex, cells);
+                default -> {}
+            }
+        }
+
+        /** Makes a cell from the details collected since the start of the current cell */
+        SheetCell makeCell() {
+            CellType resultType;
+            String text = null;
+            double number = 0.0;
+            if (!hasValue || (value.isEmpty() && cellType==null)) {
+                resultType = CellType.BLANK;
+            } else if (cellType==null || cellType.equals("n")) {
+                resultType = CellType.NUMERIC;
+                number = Double.parseDouble(value.toString());
+            } else if (cellType.equals("s")) {
+                resultType = CellType.STRING;
+                text = strings.getItemAt(Integer.parseInt(value.toString())).getString();
+            } else if (cellType.equals("b")) {
+                resultType = CellType.BOOLEAN;
+                text = value.toString();
+            } else if (cellType.equals("e")) {
+                resultType = CellType.ERROR;
+                text = value.toString();
+            } else {
+                // inlineStr, str (formula result) and d (ISO date) are all read as strings
+                resultType = CellType.STRING;
+                text = value.toString();
+            }
+            CellType type = resultType;
+            if (formula) {
+                type = CellType.FORMULA;
+                if (resultType==CellType.BLANK) {
+                    // A formula without a cached value is read as zero
+                    resultType = CellType.NUMERIC;
+                }
+            }
+            return new SheetCell(columnIndex, cellAddress, type, resultType, text, number, date1904);
+        }
+    }
+}
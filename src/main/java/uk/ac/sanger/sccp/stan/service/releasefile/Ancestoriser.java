@@ -3,12 +3,15 @@ package uk.ac.sanger.sccp.stan.service.releasefile;
 import org.jetbrains.annotations.NotNull;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import uk.ac.sanger.sccp.stan.config.AncestryConfig;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.repo.ActionRepo;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
+import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
 import static uk.ac.sanger.sccp.utils.BasicUtils.nullOrEmpty;
 
@@ -19,11 +22,32 @@ import static uk.ac.sanger.sccp.utils.BasicUtils.nullOrEmpty;
  */
 @Service
 public class Ancestoriser {
+    /** The ways ancestry and posterity can be looked up */
+    public enum Mode {
+        /** Look up actions one generation at a time */
+        ITERATIVE,
+        /** Look up all the relevant actions at once using the slot-sample lineage table */
+        CLOSURE,
+        /** Look up all the relevant actions at once using a recursive query over the action table */
+        RECURSIVE,
+    }
+
     private final ActionRepo actionRepo;
+    private final Mode mode;
 
     @Autowired
-    public Ancestoriser(ActionRepo actionRepo) {
+    public Ancestoriser(ActionRepo actionRepo, AncestryConfig ancestryConfig) {
+        this(actionRepo, ancestryConfig.getMode());
+    }
+
+    public Ancestoriser(ActionRepo actionRepo, Mode mode) {
         this.actionRepo = actionRepo;
+        this.mode = (mode==null ? Mode.ITERATIVE : mode);
+    }
+
+    /** The mode this ancestoriser uses to look up actions */
+    public Mode getMode() {
+        return this.mode;
     }
 
     /**
@@ -33,12 +57,32 @@ public class Ancestoriser {
      * @return the ancestry for all the specified slot-samples
      */
     public Ancestry findAncestry(Collection<SlotSample> slotSamples) {
+        Function<Set<Slot>, List<Action>> actionLoader;
+        if (mode==Mode.ITERATIVE || slotSamples.isEmpty()) {
+            actionLoader = actionRepo::findAllByDestinationIn;
+        } else {
+            Set<Integer> slotIds = slotIds(slotSamples);
+            Set<Integer> sampleIds = sampleIds(slotSamples);
+            List<Action> actions = (mode==Mode.CLOSURE ? actionRepo.findAllAncestralActions(slotIds, sampleIds)
+                    : actionRepo.findAllAncestralActionsRecursive(slotIds, sampleIds));
+            actionLoader = preloadedActions(actions, Action::getDestination);
+        }
+        return findAncestry(slotSamples, actionLoader);
+    }
+
+    /**
+     * Builds the ancestry of the given slot-samples one generation at a time
+     * @param slotSamples the slot-samples to get the ancestry for
+     * @param actionLoader function to get the actions into a set of slots
+     * @return the ancestry for all the specified slot-samples
+     */
+    Ancestry findAncestry(Collection<SlotSample> slotSamples, Function<Set<Slot>, List<Action>> actionLoader) {
         Ancestry ancestry = new Ancestry();
         Set<SlotSample> newSlotSamples = new HashSet<>(slotSamples);
         Set<SlotSample> done = new HashSet<>();
         while (!newSlotSamples.isEmpty()) {
             Set<Slot> slots = newSlotSamples.stream().map(SlotSample::slot).collect(toSet());
-            List<Action> actions = actionRepo.findAllByDestinationIn(slots);
+            List<Action> actions = actionLoader.apply(slots);
             Map<Integer, List<Action>> destSlotIdActions = new HashMap<>();
             for (Action action : actions) {
                 Integer destSlotId = action.getDestination().getId();
@@ -79,12 +123,32 @@ public class Ancestoriser {
      * @return the posterity for all the given slot samples
      */
     public Posterity findPosterity(Collection<SlotSample> slotSamples) {
+        Function<Set<Slot>, List<Action>> actionLoader;
+        if (mode==Mode.ITERATIVE || slotSamples.isEmpty()) {
+            actionLoader = actionRepo::findAllBySourceIn;
+        } else {
+            Set<Integer> slotIds = slotIds(slotSamples);
+            Set<Integer> sampleIds = sampleIds(slotSamples);
+            List<Action> actions = (mode==Mode.CLOSURE ? actionRepo.findAllDescendantActions(slotIds, sampleIds)
+                    : actionRepo.findAllDescendantActionsRecursive(slotIds, sampleIds));
+            actionLoader = preloadedActions(actions, Action::getSource);
+        }
+        return findPosterity(slotSamples, actionLoader);
+    }
+
+    /**
+     * Builds the posterity of the given slot-samples one generation at a time
+     * @param slotSamples the slot samples to look up descendents of
+     * @param actionLoader function to get the actions out of a set of slots
+     * @return the posterity for all the given slot samples
+     */
+    Posterity findPosterity(Collection<SlotSample> slotSamples, Function<Set<Slot>, List<Action>> actionLoader) {
         Posterity posterity = new Posterity();
         Set<SlotSample> newSlotSamples = new HashSet<>(slotSamples);
         Set<SlotSample> done = new HashSet<>();
         while (!newSlotSamples.isEmpty()) {
             Set<Slot> slots = newSlotSamples.stream().map(SlotSample::slot).collect(toSet());
-            List<Action> actions = actionRepo.findAllBySourceIn(slots);
+            List<Action> actions = actionLoader.apply(slots);
             Map<Integer, List<Action>> sourceSlotIdActions = new HashMap<>();
             for (Action action : actions) {
                 Integer sourceSlotId = action.getSource().getId();
@@ -119,6 +183,31 @@ public class Ancestoriser {
         return posterity;
     }
 
+    /**
+     * Makes a function that serves actions from an already loaded list instead of the database.
+     * @param actions the loaded actions
+     * @param slotFunction the slot (source or destination) by which the actions are looked up
+     * @return a function giving the loaded actions for any set of slots
+     */
+    static Function<Set<Slot>, List<Action>> preloadedActions(Collection<Action> actions,
+                                                              Function<Action, Slot> slotFunction) {
+        Map<Integer, List<Action>> slotIdActions = new HashMap<>();
+        for (Action action : actions) {
+            slotIdActions.computeIfAbsent(slotFunction.apply(action).getId(), k -> new ArrayList<>()).add(action);
+        }
+        return slots -> slots.stream()
+                .flatMap(slot -> slotIdActions.getOrDefault(slot.getId(), List.of()).stream())
+                .collect(toList());
+    }
+
+    private static Set<Integer> slotIds(Collection<SlotSample> slotSamples) {
+        return slotSamples.stream().map(SlotSample::slotId).collect(toSet());
+    }
+
+    private static Set<Integer> sampleIds(Collection<SlotSample> slotSamples) {
+        return slotSamples.stream().map(SlotSample::sampleId).collect(toSet());
+    }
+
     /**
      * A representation of the ancestry of samples (through slots and other samples).
      * It is modelled something like a map with a slot-sample key mapping to the set
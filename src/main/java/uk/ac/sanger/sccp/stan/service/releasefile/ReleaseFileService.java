@@ -3,23 +3,34 @@ package uk.ac.sanger.sccp.stan.service.releasefile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import uk.ac.sanger.sccp.stan.Transactor;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.repo.*;
 import uk.ac.sanger.sccp.stan.request.FlagDetail;
 import uk.ac.sanger.sccp.stan.service.ComplexStainServiceImp;
 import uk.ac.sanger.sccp.stan.service.flag.FlagLookupService;
 import uk.ac.sanger.sccp.stan.service.history.ReagentActionDetailService;
+import uk.ac.sanger.sccp.stan.service.load.LoadStages;
+import uk.ac.sanger.sccp.stan.service.load.LoaderExecutor;
 import uk.ac.sanger.sccp.stan.service.operation.AnalyserServiceImp;
 import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.Ancestry;
 import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.SlotSample;
 import uk.ac.sanger.sccp.utils.UCMap;
+import uk.ac.sanger.sccp.utils.tsv.TableSpool;
 import uk.ac.sanger.sccp.utils.tsv.TsvColumn;
 
+import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.stream.Stream;
 
@@ -41,6 +52,9 @@ public class ReleaseFileService {
 
     Logger log = LoggerFactory.getLogger(ReleaseFileService.class);
 
+    /** The number of releases whose entries are loaded together when a release file is streamed */
+    public static final int STREAM_CHUNK_SIZE = 50;
+
     private final ReleaseRepo releaseRepo;
     private final SampleRepo sampleRepo;
     private final LabwareRepo labwareRepo;
@@ -60,6 +74,9 @@ public class ReleaseFileService {
     private final OperationSolutionRepo opSolRepo;
     private final ResultOpRepo roRepo;
     private final FlagLookupService flagLookupService;
+    private final EntityManager entityManager;
+    private final Transactor transactor;
+    private final Executor loaderExecutor;
 
     @Autowired
     public ReleaseFileService(Ancestoriser ancestoriser,
@@ -71,7 +88,9 @@ public class ReleaseFileService {
                               LabwareProbeRepo lwProbeRepo, RoiRepo roiRepo,
                               ReagentActionDetailService reagentActionDetailService,
                               SolutionRepo solutionRepo, OperationSolutionRepo opSolRepo, ResultOpRepo roRepo,
-                              FlagLookupService flagLookupService) {
+                              FlagLookupService flagLookupService, EntityManager entityManager,
+                              Transactor transactor,
+                              @Qualifier("releaseFileLoaderExecutor") LoaderExecutor loaderExecutor) {
         this.releaseRepo = releaseRepo;
         this.sampleRepo = sampleRepo;
         this.labwareRepo = labwareRepo;
@@ -91,6 +110,9 @@ public class ReleaseFileService {
         this.opSolRepo = opSolRepo;
         this.roRepo = roRepo;
         this.flagLookupService = flagLookupService;
+        this.entityManager = entityManager;
+        this.transactor = transactor;
+        this.loaderExecutor = loaderExecutor.getExecutor();
     }
 
     /**
@@ -109,40 +131,225 @@ public class ReleaseFileService {
         Set<ReleaseFileMode> modes = checkModes(samples.values());
 
         final StorageDetail detail = storageDetail(releases);
+        List<ReleaseEntry> entries = loadEntries(releases, snapshots, samples, modes, detail, options);
+        return new ReleaseFileContent(modes, entries, options);
+    }
 
+    /**
+     * Creates the release entries for the given releases and loads all their details.
+     * The details are loaded in {@link LoadStages stages}, which run concurrently if
+     * {@link uk.ac.sanger.sccp.stan.config.ReleaseFileConfig#getLoaderThreads loader threads} are configured.
+     * Each concurrent stage is given the ids of the slots, samples and labware it needs, and loads its data
+     * in its own transaction; the data is then put into the entries on the calling thread.
+     * Stages that look up ancestry run on the calling thread, because ancestry is matched
+     * against the entities already loaded for the entries.
+     * @param releases the releases
+     * @param snapshots the snapshots for the releases
+     * @param samples the samples for the releases
+     * @param modes the release file modes
+     * @param detail level of detail to include about storage
+     * @param options the release file options selected
+     * @return the loaded release entries
+     */
+    public List<ReleaseEntry> loadEntries(List<Release> releases, Map<Integer, Snapshot> snapshots,
+                                          Map<Integer, Sample> samples, Set<ReleaseFileMode> modes,
+                                          StorageDetail detail, Set<ReleaseFileOption> options) {
         List<ReleaseEntry> entries = releases.stream()
                 .flatMap(r -> toReleaseEntries(r, samples, snapshots, detail))
                 .collect(toList());
 
-        loadLastSection(entries);
-        Ancestry ancestry = findAncestry(entries);
-        Set<Integer> slotIds = entries.stream()
+        final Set<Integer> slotIds = entries.stream()
                 .map(ReleaseEntry::getSlot)
                 .map(s -> s==null ? null : s.getId())
                 .filter(Objects::nonNull)
                 .collect(toSet());
-        loadSources(entries, ancestry, modes);
-        loadMeasurements(entries, ancestry);
-        loadSectionDate(entries, ancestry);
-        loadStains(entries, ancestry);
-        loadReagentSources(entries);
-        loadSamplePositions(entries);
-        loadSectionComments(entries);
-        loadSolutions(entries);
+        final Set<Integer> labwareIds = entries.stream()
+                .map(e -> e.getLabware().getId())
+                .collect(toSet());
+        final AtomicReference<Ancestry> ancestryRef = new AtomicReference<>();
+        final AtomicReference<Set<Integer>> ancestrySlotIdsRef = new AtomicReference<>();
+        final AtomicReference<Set<Integer>> ancestryLabwareIdsRef = new AtomicReference<>();
+        LoadStages stages = new LoadStages(loaderExecutor, transactor, "Release file");
+        stages.addSessionBound("last section", () -> loadLastSection(entries));
+        stages.addSessionBound("ancestry", () -> {
+            Ancestry ancestry = findAncestry(entries);
+            ancestryRef.set(ancestry);
+            ancestrySlotIdsRef.set(ancestorSlotIds(ancestry));
+            ancestryLabwareIdsRef.set(ancestorLabwareIds(ancestry));
+        });
+        stages.add("sources", () -> loadLabwareBarcodes(ancestryLabwareIdsRef.get()),
+                barcodes -> loadSources(entries, ancestryRef.get(), modes, barcodes), "ancestry");
+        stages.add("measurements", () -> findMeasurements(ancestrySlotIdsRef.get()),
+                data -> setMeasurements(entries, ancestryRef.get(), data), "ancestry");
+        stages.add("section date", () -> findSectionDates(ancestrySlotIdsRef.get()),
+                data -> setSectionDates(entries, ancestryRef.get(), data), "ancestry");
+        stages.add("stains", () -> findStains(ancestrySlotIdsRef.get()),
+                data -> setStains(entries, ancestryRef.get(), data), "ancestry");
+        stages.addSessionBound("reagent sources", () -> loadReagentSources(entries));
+        stages.add("sample positions", () -> findSamplePositions(slotIds),
+                positions -> setSamplePositions(entries, positions));
+        stages.add("section comments", () -> findSectionComments(slotIds),
+                comments -> setSectionComments(entries, comments));
+        stages.add("solutions", () -> findSolutions(labwareIds),
+                data -> setSolutions(entries, data));
         if (options.contains(ReleaseFileOption.Visium)) {
-            loadVisiumBarcodes(entries, ancestry);
-            loadSizeRanges(entries, slotIds);
-            loadQpcrComments(entries, ancestry);
+            stages.add("visium barcodes", () -> loadLabwareMap(ancestryLabwareIdsRef.get()),
+                    lwMap -> setVisiumBarcodes(entries, ancestryRef.get(), lwMap), "ancestry");
+            stages.add("size ranges", () -> findSizeRanges(slotIds),
+                    sizeRanges -> setSizeRanges(entries, sizeRanges));
+            stages.add("qpcr comments", () -> findQpcrComments(ancestrySlotIdsRef.get()),
+                    comments -> setQpcrComments(entries, ancestryRef.get(), comments), "ancestry");
         }
         if (options.contains(ReleaseFileOption.Histology)) {
-            loadRnaAnalysis(entries, slotIds);
+            stages.add("rna analysis", () -> findRnaAnalysis(slotIds),
+                    data -> setRnaAnalysis(entries, data));
         }
         if (options.contains(ReleaseFileOption.Sample_processing)) {
-            loadParaffinProcessingProgram(entries, slotIds);
+            stages.add("paraffin processing program", () -> findParaffinProcessingProgram(slotIds),
+                    programs -> setParaffinProcessingProgram(entries, programs));
+        }
+        stages.add("xenium", () -> findXeniumData(slotIds), data -> setXeniumFields(entries, data));
+        stages.addSessionBound("flags", () -> loadFlags(entries));
+
+        long start = System.nanoTime();
+        Map<String, Long> timings = stages.run();
+        log.info("Loaded {} release entries in {} ms. Stage times (ms): {}",
+                entries.size(), (System.nanoTime()-start)/1_000_000, timings);
+        return entries;
+    }
+
+    /**
+     * Gets the ids of all the slots in the given ancestry
+     * @param ancestry the ancestry
+     * @return the ids of the key slots in the ancestry
+     */
+    static Set<Integer> ancestorSlotIds(Ancestry ancestry) {
+        return ancestry.keySet().stream().map(SlotSample::slotId).collect(toSet());
+    }
+
+    /**
+     * Gets the ids of all the labware in the given ancestry, including the roots
+     * @param ancestry the ancestry
+     * @return the ids of the labware of slots in the ancestry
+     */
+    static Set<Integer> ancestorLabwareIds(Ancestry ancestry) {
+        Set<Integer> labwareIds = new HashSet<>();
+        for (SlotSample ss : ancestry.keySet()) {
+            labwareIds.add(ss.slot().getLabwareId());
+            for (SlotSample source : ancestry.get(ss)) {
+                labwareIds.add(source.slot().getLabwareId());
+            }
+        }
+        return labwareIds;
+    }
+
+    /**
+     * Loads the content for a release file in chunks of {@link #STREAM_CHUNK_SIZE} releases.
+     * The header of the file cannot be worked out until every entry has been loaded, so each chunk
+     * is loaded once, and the values of its entries are written to a {@link TableSpool spool}
+     * before the entities are released. The rows of the file are then read back from the spool,
+     * so the entries for all the releases are never held in memory together.
+     * The rows of the returned stream should be consumed or closed, so that the spool is deleted.
+     * @param releaseIds the ids of the releases
+     * @param options the release file options selected
+     * @return the modes, columns and rows for the release file
+     * @exception UncheckedIOException the spool could not be written
+     */
+    public ReleaseFileStream streamReleaseFileContent(Collection<Integer> releaseIds, Set<ReleaseFileOption> options) {
+        try {
+            TableSpool<ReleaseEntry> spool = new TableSpool<>();
+            try {
+                return spoolReleaseFileContent(spool, releaseIds, options);
+            } catch (IOException | RuntimeException e) {
+                spool.close();
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Loads the entries for the given releases into the given spool.
+     * @param spool the spool to hold the values of the entries
+     * @param releaseIds the ids of the releases
+     * @param options the release file options selected
+     * @return the modes, columns and rows for the release file
+     * @exception IOException the spool could not be written
+     */
+    ReleaseFileStream spoolReleaseFileContent(TableSpool<ReleaseEntry> spool, Collection<Integer> releaseIds,
+                                              Set<ReleaseFileOption> options) throws IOException {
+        EnumSet<ReleaseFileMode> modes = EnumSet.noneOf(ReleaseFileMode.class);
+        LinkedHashSet<String> tagDataColumnNames = new LinkedHashSet<>();
+        if (!releaseIds.isEmpty()) {
+            List<Release> releases = getReleases(releaseIds);
+            final StorageDetail detail = storageDetail(releases);
+            final List<List<Integer>> chunks = chunkIds(releases.stream().map(Release::getId).toList(), STREAM_CHUNK_SIZE);
+            // Every column any entry could need; the columns actually used depend on the modes found
+            final List<ReleaseColumn> candidateColumns = ReleaseColumn.forModesAndOptions(EnumSet.allOf(ReleaseFileMode.class), options);
+            for (List<Integer> chunkIds : chunks) {
+                for (ReleaseEntry entry : loadChunkEntries(chunkIds, detail, options)) {
+                    modes.add(mode(entry.getSample()));
+                    Map<String, String> tagData = entry.getTagData();
+                    if (nullOrEmpty(tagData)) {
+                        spool.add(entry, candidateColumns);
+                    } else {
+                        tagDataColumnNames.addAll(tagData.keySet());
+                        List<TsvColumn<ReleaseEntry>> entryColumns = new ArrayList<>(candidateColumns);
+                        tagData.keySet().stream().map(TagDataColumn::new).forEach(entryColumns::add);
+                        spool.add(entry, entryColumns);
+                    }
+                }
+            }
+            releaseLoadedEntities();
+        }
+        if (modes.isEmpty()) {
+            modes.add(ReleaseFileMode.NORMAL);
+        }
+        var columns = combineColumns(ReleaseColumn.forModesAndOptions(modes, options), tagDataColumnNames);
+        return new ReleaseFileStream(modes, options, spool.columns(columns), spool.rows());
+    }
+
+    /**
+     * Loads the entries for one chunk of releases, first releasing the entities loaded for any previous chunk.
+     * The sources of the entries are loaded according to the modes of the samples in this chunk.
+     * @param chunkIds the ids of the releases in the chunk
+     * @param detail level of detail to include about storage
+     * @param options the release file options selected
+     * @return the loaded release entries, in the order of the given release ids
+     */
+    public List<ReleaseEntry> loadChunkEntries(List<Integer> chunkIds, StorageDetail detail,
+                                               Set<ReleaseFileOption> options) {
+        releaseLoadedEntities();
+        List<Release> releases = new ArrayList<>(getReleases(chunkIds));
+        releases.sort(Comparator.comparing(r -> chunkIds.indexOf(r.getId())));
+        Map<Integer, Snapshot> snapshots = loadSnapshots(releases);
+        Map<Integer, Sample> samples = loadSamples(releases, snapshots);
+        return loadEntries(releases, snapshots, samples, checkModes(samples.values()), detail, options);
+    }
+
+    /**
+     * Splits the given ids into consecutive chunks of the given size
+     * @param ids the ids to split
+     * @param chunkSize the maximum size of each chunk
+     * @return a list of chunks
+     */
+    public static List<List<Integer>> chunkIds(List<Integer> ids, int chunkSize) {
+        List<List<Integer>> chunks = new ArrayList<>((ids.size() + chunkSize - 1) / chunkSize);
+        for (int i = 0; i < ids.size(); i += chunkSize) {
+            chunks.add(ids.subList(i, Math.min(ids.size(), i + chunkSize)));
+        }
+        return chunks;
+    }
+
+    /**
+     * Detaches everything loaded into the persistence context so that it can be garbage collected.
+     * This is skipped inside a transaction, where it could discard unflushed changes.
+     */
+    public void releaseLoadedEntities() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            entityManager.clear();
         }
-        loadXeniumFields(entries, slotIds);
-        loadFlags(entries);
-        return new ReleaseFileContent(modes, entries, options);
     }
 
     /**
@@ -199,7 +406,7 @@ public class ReleaseFileService {
      * @param sample the sample
      * @return the mode appropriate for the sample
      */
-    private ReleaseFileMode mode(Sample sample) {
+    ReleaseFileMode mode(Sample sample) {
         if (sample.getBioState().getName().equalsIgnoreCase("cDNA")) {
             return ReleaseFileMode.CDNA;
         }
@@ -342,14 +549,45 @@ public class ReleaseFileService {
      * @param modes the release file mode
      */
     public void loadSources(Collection<ReleaseEntry> entries, Ancestry ancestry, Set<ReleaseFileMode> modes) {
+        loadSources(entries, ancestry, modes, Map.of());
+    }
+
+    /**
+     * Loads the "sources", whatever that means for the release mode.
+     * @param entries the contents of the things that were released
+     * @param ancestry the ancestors of the released things
+     * @param modes the release file mode
+     * @param knownBarcodes barcodes already loaded, mapped from labware id
+     */
+    public void loadSources(Collection<ReleaseEntry> entries, Ancestry ancestry, Set<ReleaseFileMode> modes,
+                            Map<Integer, String> knownBarcodes) {
         if (modes.contains(ReleaseFileMode.CDNA)) {
-            loadSourcesForCDNA(entries, ancestry);
+            loadSourcesForCDNA(entries, ancestry, knownBarcodes);
         }
         if (modes.contains(ReleaseFileMode.NORMAL)) {
-            loadOriginalBarcodes(entries, ancestry);
+            loadOriginalBarcodes(entries, ancestry, knownBarcodes);
         }
     }
 
+    /**
+     * Loads the barcodes of the specified labware
+     * @param labwareIds the ids of the labware
+     * @return a map of labware id to barcode
+     */
+    public Map<Integer, String> loadLabwareBarcodes(Collection<Integer> labwareIds) {
+        return labwareRepo.findAllByIdIn(labwareIds).stream()
+                .collect(toMap(Labware::getId, Labware::getBarcode));
+    }
+
+    /**
+     * Loads the specified labware
+     * @param labwareIds the ids of the labware
+     * @return a map of labware from its id
+     */
+    public Map<Integer, Labware> loadLabwareMap(Collection<Integer> labwareIds) {
+        return labwareRepo.findAllByIdIn(labwareIds).stream().collect(inMap(Labware::getId));
+    }
+
     /**
      * Loads the most recent visium barcode for each entry
      * @param entries the release entries
@@ -359,7 +597,16 @@ public class ReleaseFileService {
         Set<Integer> labwareIds = ancestry.keySet().stream()
                 .map(ss -> ss.slot().getLabwareId())
                 .collect(toSet());
-        Map<Integer, Labware> idToLabware = labwareRepo.findAllByIdIn(labwareIds).stream().collect(inMap(Labware::getId));
+        setVisiumBarcodes(entries, ancestry, loadLabwareMap(labwareIds));
+    }
+
+    /**
+     * Sets the most recent visium barcode for each entry
+     * @param entries the release entries
+     * @param ancestry the ancestry map
+     * @param idToLabware map to look up labware from its id
+     */
+    public void setVisiumBarcodes(Collection<ReleaseEntry> entries, Ancestry ancestry, Map<Integer, Labware> idToLabware) {
         for (ReleaseEntry entry : entries) {
             entry.setVisiumBarcode(visiumBarcode(entry, ancestry, idToLabware));
         }
@@ -370,15 +617,35 @@ public class ReleaseFileService {
      * @param entries the release entries
      */
     public void loadSizeRanges(Collection<ReleaseEntry> entries, Set<Integer> slotIds) {
+        setSizeRanges(entries, findSizeRanges(slotIds));
+    }
+
+    /**
+     * Finds size range comments in the specified slots
+     * @param slotIds the ids of the slots
+     * @return a map of slot/sample id to size range
+     */
+    public Map<SlotIdSampleId, String> findSizeRanges(Set<Integer> slotIds) {
         List<OperationComment> opcoms = opComRepo.findAllBySlotIdInAndCommentCategory(slotIds, "size range");
-        if (!opcoms.isEmpty()) {
-            Map<SlotIdSampleId, Set<String>> ssIdOpComs = new HashMap<>();
-            for (OperationComment oc : opcoms) {
-                SlotIdSampleId ssId = new SlotIdSampleId(oc.getSlotId(), oc.getSampleId());
-                ssIdOpComs.computeIfAbsent(ssId, s -> new HashSet<>()).add(oc.getComment().getText());
-            }
-            Map<SlotIdSampleId, String> ssIdSizeRange = ssIdOpComs.entrySet().stream()
-                    .collect(toMap(Map.Entry::getKey, e -> String.join(",", e.getValue())));
+        if (opcoms.isEmpty()) {
+            return Map.of();
+        }
+        Map<SlotIdSampleId, Set<String>> ssIdOpComs = new HashMap<>();
+        for (OperationComment oc : opcoms) {
+            SlotIdSampleId ssId = new SlotIdSampleId(oc.getSlotId(), oc.getSampleId());
+            ssIdOpComs.computeIfAbsent(ssId, s -> new HashSet<>()).add(oc.getComment().getText());
+        }
+        return ssIdOpComs.entrySet().stream()
+                .collect(toMap(Map.Entry::getKey, e -> String.join(",", e.getValue())));
+    }
+
+    /**
+     * Sets size ranges in the release entries
+     * @param entries the release entries
+     * @param ssIdSizeRange map of slot/sample id to size range
+     */
+    public void setSizeRanges(Collection<ReleaseEntry> entries, Map<SlotIdSampleId, String> ssIdSizeRange) {
+        if (!ssIdSizeRange.isEmpty()) {
             for (ReleaseEntry entry : entries) {
                 SlotIdSampleId ssId =  new SlotIdSampleId(entry.getSlot(), entry.getSample());
                 entry.setSizeRange(ssIdSizeRange.get(ssId));
@@ -415,7 +682,18 @@ public class ReleaseFileService {
      * @param ancestry the ancestry map
      */
     public void loadOriginalBarcodes(Collection<ReleaseEntry> entries, Ancestry ancestry) {
-        Map<Integer, String> labwareIdBarcode = new HashMap<>();
+        loadOriginalBarcodes(entries, ancestry, Map.of());
+    }
+
+    /**
+     * Sets the original (block) barcodes for the release entries.
+     * Barcodes not already known are looked up.
+     * @param entries the release entries
+     * @param ancestry the ancestry map
+     * @param knownBarcodes barcodes already loaded, mapped from labware id
+     */
+    public void loadOriginalBarcodes(Collection<ReleaseEntry> entries, Ancestry ancestry, Map<Integer, String> knownBarcodes) {
+        Map<Integer, String> labwareIdBarcode = new HashMap<>(knownBarcodes);
         for (ReleaseEntry entry : entries) {
             Labware lw = entry.getLabware();
             labwareIdBarcode.put(lw.getId(), lw.getBarcode());
@@ -445,7 +723,18 @@ public class ReleaseFileService {
      * @param ancestry the ancestry info for the samples and labware involved
      */
     public void loadSourcesForCDNA(Collection<ReleaseEntry> entries, Ancestry ancestry) {
-        Map<Integer, String> labwareIdBarcode = new HashMap<>();
+        loadSourcesForCDNA(entries, ancestry, Map.of());
+    }
+
+    /**
+     * Sets the source barcode and source address to the tissue that originated it.
+     * Barcodes not already known are looked up.
+     * @param entries the release entries
+     * @param ancestry the ancestry info for the samples and labware involved
+     * @param knownBarcodes barcodes already loaded, mapped from labware id
+     */
+    public void loadSourcesForCDNA(Collection<ReleaseEntry> entries, Ancestry ancestry, Map<Integer, String> knownBarcodes) {
+        Map<Integer, String> labwareIdBarcode = new HashMap<>(knownBarcodes);
         for (ReleaseEntry entry : entries) {
             if (mode(entry.getSample()) != ReleaseFileMode.CDNA) {
                 continue;
@@ -469,9 +758,18 @@ public class ReleaseFileService {
         Set<Integer> lwIds = entries.stream()
                 .map(re -> re.getLabware().getId())
                 .collect(toSet());
+        setSolutions(entries, findSolutions(lwIds));
+    }
+
+    /**
+     * Finds the solutions used in the specified labware
+     * @param lwIds the ids of the labware
+     * @return the operation solutions mapped from labware id, and the solutions they refer to; or null
+     */
+    public SolutionData findSolutions(Set<Integer> lwIds) {
         final List<OperationSolution> allOpSols = opSolRepo.findAllByLabwareIdIn(lwIds);
         if (allOpSols.isEmpty()) {
-            return;
+            return null;
         }
         final Set<Integer> solutionIds = allOpSols.stream().map(OperationSolution::getSolutionId).collect(toSet());
         Map<Integer, Solution> idSolutions = stream(solutionRepo.findAllById(solutionIds))
@@ -479,6 +777,20 @@ public class ReleaseFileService {
 
         Map<Integer, List<OperationSolution>> lwSols = allOpSols.stream()
                 .collect(groupingBy(OperationSolution::getLabwareId));
+        return new SolutionData(lwSols, idSolutions);
+    }
+
+    /**
+     * Sets the solutions in the release entries
+     * @param entries the release entries
+     * @param data the solutions found, or null
+     */
+    public void setSolutions(Collection<ReleaseEntry> entries, SolutionData data) {
+        if (data==null) {
+            return;
+        }
+        final Map<Integer, List<OperationSolution>> lwSols = data.labwareOpSolutions();
+        final Map<Integer, Solution> idSolutions = data.solutions();
         for (ReleaseEntry entry : entries) {
             List<OperationSolution> opSols = lwSols.get(entry.getLabware().getId());
             if (nullOrEmpty(opSols)) {
@@ -582,11 +894,33 @@ public class ReleaseFileService {
      * @param ancestry the ancestry map
      */
     public void loadSectionDate(Collection<ReleaseEntry> entries, Ancestry ancestry) {
-        Set<Integer> slotIds = ancestry.keySet().stream().map(SlotSample::slotId).collect(toSet());
+        setSectionDates(entries, ancestry, findSectionDates(ancestorSlotIds(ancestry)));
+    }
+
+    /**
+     * Finds the section operations and recorded section dates for the specified slots
+     * @param slotIds the ids of the slots
+     * @return the section ops mapped from labware id, and section dates mapped from slot/sample id
+     */
+    public SectionDateData findSectionDates(Set<Integer> slotIds) {
         OperationType opType = opTypeRepo.getByName("Section");
         List<Operation> sectionOps = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(opType, slotIds);
-        if (!sectionOps.isEmpty()) {
-            Map<Integer, Operation> labwareSectionOp = labwareIdToOp(sectionOps);
+        Map<Integer, Operation> labwareSectionOp = (sectionOps.isEmpty() ? Map.of() : labwareIdToOp(sectionOps));
+        Map<SlotIdSampleId, LocalDate> slotSampleSectionDates = findSlotSampleDates(
+                measurementRepo.findAllBySlotIdInAndName(slotIds, "Date sectioned")
+        );
+        return new SectionDateData(labwareSectionOp, slotSampleSectionDates);
+    }
+
+    /**
+     * Sets the section date for samples that have been sectioned
+     * @param entries the release entries
+     * @param ancestry the ancestry map
+     * @param data the section ops and dates found
+     */
+    public void setSectionDates(Collection<ReleaseEntry> entries, Ancestry ancestry, SectionDateData data) {
+        Map<Integer, Operation> labwareSectionOp = data.labwareSectionOps();
+        if (!labwareSectionOp.isEmpty()) {
             Map<ReleaseEntry, Operation> entrySectionOp = findEntryOps(entries, labwareSectionOp, ancestry);
             entrySectionOp.forEach((entry, op) -> {
                 if (op != null) {
@@ -595,9 +929,7 @@ public class ReleaseFileService {
             });
         }
 
-        Map<SlotIdSampleId, LocalDate> slotSampleSectionDates = findSlotSampleDates(
-                measurementRepo.findAllBySlotIdInAndName(slotIds, "Date sectioned")
-        );
+        Map<SlotIdSampleId, LocalDate> slotSampleSectionDates = data.slotSampleDates();
         if (!slotSampleSectionDates.isEmpty()) {
             for (ReleaseEntry entry : entries) {
                 if (entry.getSlot() != null && entry.getSample() != null && entry.getSectionDate() == null) {
@@ -661,26 +993,64 @@ public class ReleaseFileService {
      * @param slotIds the ids of slots for these entries
      */
     public void loadXeniumFields(Collection<ReleaseEntry> entries, Set<Integer> slotIds) {
-        loadProbeHybridisation(entries, slotIds);
-        loadProbeHybridisationQC(entries, slotIds);
-        loadXeniumAnalyser(entries, slotIds);
-        loadXeniumQC(entries, slotIds);
+        setXeniumFields(entries, findXeniumData(slotIds));
+    }
+
+    /**
+     * Finds the xenium ops into the specified slots, and their details
+     * @param slotIds the ids of the slots
+     * @return the xenium data found
+     */
+    public XeniumData findXeniumData(Set<Integer> slotIds) {
+        return new XeniumData(findProbeHybridisation(slotIds), findProbeHybridisationQC(slotIds),
+                findXeniumAnalyser(slotIds), findXeniumQC(slotIds));
+    }
+
+    /**
+     * Sets the various fields associated with xenium ops
+     * @param entries the release entries under construction
+     * @param data the xenium data found
+     */
+    public void setXeniumFields(Collection<ReleaseEntry> entries, XeniumData data) {
+        setProbeHybridisation(entries, data.probeHybridisation());
+        setProbeHybridisationQC(entries, data.probeHybridisationQC());
+        setXeniumAnalyser(entries, data.analyser());
+        setXeniumQC(entries, data.qc());
     }
 
     /**
      * Loads timestamps and probe info for probe hybridisation ops
      */
     public void loadProbeHybridisation(Collection<ReleaseEntry> entries, Set<Integer> slotIds) {
+        setProbeHybridisation(entries, findProbeHybridisation(slotIds));
+    }
+
+    /**
+     * Finds probe hybridisation ops and their probes
+     * @return the latest op on each labware, and the probes mapped from op id; or null
+     */
+    public OpDetails<LabwareProbe> findProbeHybridisation(Set<Integer> slotIds) {
         OperationType opType = opTypeRepo.getByName("Probe hybridisation Xenium");
         List<Operation> ops = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(opType, slotIds);
         if (ops.isEmpty()) {
-            return;
+            return null;
         }
         List<Integer> opIds = ops.stream().map(Operation::getId).collect(toList());
         List<LabwareProbe> lwProbes = lwProbeRepo.findAllByOperationIdIn(opIds);
         Map<Integer, List<LabwareProbe>> opIdProbes = lwProbes.stream()
                 .collect(groupingBy(LabwareProbe::getOperationId));
-        Map<Integer, Operation> labwareProbeOp = labwareIdToOp(ops);
+        return new OpDetails<>(labwareIdToOp(ops), opIdProbes);
+    }
+
+    /**
+     * Sets timestamps and probe info for probe hybridisation ops
+     */
+    public void setProbeHybridisation(Collection<ReleaseEntry> entries, OpDetails<LabwareProbe> details) {
+        if (details==null) {
+            return;
+        }
+        final Map<Integer, Operation> labwareProbeOp = details.labwareOps();
+        final Map<Integer, List<LabwareProbe>> opIdProbes = details.opItems();
         for (ReleaseEntry entry : entries) {
             final Integer lwId = entry.getLabware().getId();
             Operation op = labwareProbeOp.get(lwId);
@@ -719,16 +1089,35 @@ public class ReleaseFileService {
      * Loads timestamps and comments for probe hybridisation qc
      */
     public void loadProbeHybridisationQC(Collection<ReleaseEntry> entries, Set<Integer> slotIds) {
+        setProbeHybridisationQC(entries, findProbeHybridisationQC(slotIds));
+    }
+
+    /**
+     * Finds probe hybridisation qc ops and their comments
+     * @return the latest op on each labware, and the comments mapped from op id; or null
+     */
+    public OpDetails<OperationComment> findProbeHybridisationQC(Set<Integer> slotIds) {
         OperationType opType = opTypeRepo.getByName("Probe hybridisation QC");
         List<Operation> ops = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(opType, slotIds);
         if (ops.isEmpty()) {
-            return;
+            return null;
         }
         List<Integer> opIds = ops.stream().map(Operation::getId).collect(toList());
         List<OperationComment> opcoms = opComRepo.findAllByOperationIdIn(opIds);
         Map<Integer, List<OperationComment>> opIdComs = opcoms.stream()
                 .collect(groupingBy(OperationComment::getOperationId));
-        Map<Integer, Operation> lwOp = labwareIdToOp(ops);
+        return new OpDetails<>(labwareIdToOp(ops), opIdComs);
+    }
+
+    /**
+     * Sets timestamps and comments for probe hybridisation qc
+     */
+    public void setProbeHybridisationQC(Collection<ReleaseEntry> entries, OpDetails<OperationComment> details) {
+        if (details==null) {
+            return;
+        }
+        final Map<Integer, Operation> lwOp = details.labwareOps();
+        final Map<Integer, List<OperationComment>> opIdComs = details.opItems();
         for (ReleaseEntry entry : entries) {
             final Integer lwId = entry.getLabware().getId();
             Operation op = lwOp.get(lwId);
@@ -750,10 +1139,18 @@ public class ReleaseFileService {
      * Loads timestamps, ROI and labware notes from Xenium analyser ops.
      */
     public void loadXeniumAnalyser(Collection<ReleaseEntry> entries, Set<Integer> slotIds) {
+        setXeniumAnalyser(entries, findXeniumAnalyser(slotIds));
+    }
+
+    /**
+     * Finds Xenium analyser ops and their labware notes and ROIs
+     * @return the latest op on each labware, and the notes and ROIs mapped from op id; or null
+     */
+    public AnalyserData findXeniumAnalyser(Set<Integer> slotIds) {
         OperationType opType = opTypeRepo.getByName("Xenium analyser");
         List<Operation> ops = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(opType, slotIds);
         if (ops.isEmpty()) {
-            return;
+            return null;
         }
         List<Integer> opIds = ops.stream().map(Operation::getId).collect(toList());
         Map<Integer, Operation> lwOp = labwareIdToOp(ops);
@@ -761,6 +1158,19 @@ public class ReleaseFileService {
                 .collect(groupingBy(LabwareNote::getOperationId));
         Map<Integer, List<Roi>> opIdRoi = roiRepo.findAllByOperationIdIn(opIds).stream()
                 .collect(groupingBy(Roi::getOperationId));
+        return new AnalyserData(lwOp, opIdNotes, opIdRoi);
+    }
+
+    /**
+     * Sets timestamps, ROI and labware notes from Xenium analyser ops.
+     */
+    public void setXeniumAnalyser(Collection<ReleaseEntry> entries, AnalyserData data) {
+        if (data==null) {
+            return;
+        }
+        final Map<Integer, Operation> lwOp = data.labwareOps();
+        final Map<Integer, List<LabwareNote>> opIdNotes = data.notes();
+        final Map<Integer, List<Roi>> opIdRoi = data.rois();
         for (ReleaseEntry entry : entries) {
             final Integer lwId = entry.getLabware().getId();
             Operation op = lwOp.get(lwId);
@@ -803,15 +1213,34 @@ public class ReleaseFileService {
      * Loads timestamps and comments from Xenium QC ops.
      */
     public void loadXeniumQC(Collection<ReleaseEntry> entries, Set<Integer> slotIds) {
+        setXeniumQC(entries, findXeniumQC(slotIds));
+    }
+
+    /**
+     * Finds Xenium QC ops and their comments
+     * @return the latest op on each labware, and the comments mapped from op id; or null
+     */
+    public OpDetails<OperationComment> findXeniumQC(Set<Integer> slotIds) {
         OperationType opType = opTypeRepo.getByName("Xenium analyser QC");
         List<Operation> ops = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(opType, slotIds);
         if (ops.isEmpty()) {
-            return;
+            return null;
         }
         List<Integer> opIds = ops.stream().map(Operation::getId).collect(toList());
         Map<Integer, List<OperationComment>> opIdComs = opComRepo.findAllByOperationIdIn(opIds).stream()
                 .collect(groupingBy(OperationComment::getOperationId));
-        Map<Integer, Operation> lwIdOps = labwareIdToOp(ops);
+        return new OpDetails<>(labwareIdToOp(ops), opIdComs);
+    }
+
+    /**
+     * Sets timestamps and comments from Xenium QC ops.
+     */
+    public void setXeniumQC(Collection<ReleaseEntry> entries, OpDetails<OperationComment> details) {
+        if (details==null) {
+            return;
+        }
+        final Map<Integer, Operation> lwIdOps = details.labwareOps();
+        final Map<Integer, List<OperationComment>> opIdComs = details.opItems();
         for (ReleaseEntry entry : entries) {
             Integer lwId = entry.getLabware().getId();
             Operation op = lwIdOps.get(lwId);
@@ -890,18 +1319,22 @@ public class ReleaseFileService {
      * @param ancestry the ancestry map
      */
     public void loadStains(Collection<ReleaseEntry> entries, Ancestry ancestry) {
-        Set<Integer> slotIds = ancestry.keySet().stream().map(SlotSample::slotId).collect(toSet());
+        setStains(entries, ancestry, findStains(ancestorSlotIds(ancestry)));
+    }
+
+    /**
+     * Finds the latest stain on each labware of the specified slots, along with the details of those stains.
+     * @param slotIds the ids of the slots
+     * @return the stain ops and their details; or null if there are no stain ops
+     */
+    public StainData findStains(Set<Integer> slotIds) {
         OperationType opType = opTypeRepo.getByName("Stain");
         List<Operation> stainOps = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(opType, slotIds);
         if (stainOps.isEmpty()) {
-            return;
+            return null;
         }
         Map<Integer, Operation> labwareStainOp = labwareIdToOp(stainOps);
-        Map<ReleaseEntry, Operation> entryStainOp = findEntryOps(entries, labwareStainOp, ancestry);
-        if (entryStainOp.isEmpty()) {
-            return;
-        }
-        Set<Integer> opIds = entryStainOp.values().stream().map(Operation::getId).collect(toSet());
+        Set<Integer> opIds = labwareStainOp.values().stream().map(Operation::getId).collect(toSet());
 
         Map<Integer, String> stainOpTypes = stainTypeRepo.loadOperationStainTypes(opIds).entrySet().stream()
                 .collect(toMap(Map.Entry::getKey, e -> e.getValue().stream().map(StainType::getName).collect(joining(", "))));
@@ -930,18 +1363,35 @@ public class ReleaseFileService {
                 }
             }
         }
+        return new StainData(labwareStainOp, stainOpTypes, opBondBarcodes, opRnaPlex, opIhcPlex,
+                findImagingQcComments(opIds));
+    }
 
+    /**
+     * Sets the info about stains on the labware or its antecedents.
+     * @param entries the release entries
+     * @param ancestry the ancestry map
+     * @param data the stain data found, or null
+     */
+    public void setStains(Collection<ReleaseEntry> entries, Ancestry ancestry, StainData data) {
+        if (data==null) {
+            return;
+        }
+        Map<ReleaseEntry, Operation> entryStainOp = findEntryOps(entries, data.labwareStainOps(), ancestry);
+        if (entryStainOp.isEmpty()) {
+            return;
+        }
         for (ReleaseEntry entry : entries) {
             Operation op = entryStainOp.get(entry);
             if (op!=null) {
-                entry.setStainType(stainOpTypes.get(op.getId()));
-                entry.setBondBarcode(opBondBarcodes.get(op.getId()));
-                entry.setRnascopePlex(opRnaPlex.get(op.getId()));
-                entry.setIhcPlex(opIhcPlex.get(op.getId()));
+                entry.setStainType(data.stainTypes().get(op.getId()));
+                entry.setBondBarcode(data.bondBarcodes().get(op.getId()));
+                entry.setRnascopePlex(data.rnaPlex().get(op.getId()));
+                entry.setIhcPlex(data.ihcPlex().get(op.getId()));
             }
         }
         Set<Integer> stainOpIds = entryStainOp.values().stream().map(Operation::getId).collect(toSet());
-        loadImagingQcComments(entries, ancestry, stainOpIds);
+        setImagingQcComments(entries, ancestry, stainOpIds, data.imagingQc());
     }
 
     /**
@@ -952,13 +1402,42 @@ public class ReleaseFileService {
      * @param stainOpIds the stain operation ids that we look up the results for
      */
     public void loadImagingQcComments(Collection<ReleaseEntry> entries, Ancestry ancestry, Collection<Integer> stainOpIds) {
+        setImagingQcComments(entries, ancestry, stainOpIds, findImagingQcComments(stainOpIds));
+    }
+
+    /**
+     * Finds comments from the result-ops for the given stain op ids.
+     * @param stainOpIds the stain operation ids that we look up the results for
+     * @return the comments found and the stain ops their result-ops refer to; or null
+     */
+    public ImagingQcData findImagingQcComments(Collection<Integer> stainOpIds) {
         List<ResultOp> rops = roRepo.findAllByRefersToOpIdIn(stainOpIds);
         if (rops.isEmpty()) {
+            return null;
+        }
+        Map<Integer, Set<Integer>> resultOpStainOpIds = new HashMap<>();
+        for (ResultOp rop : rops) {
+            resultOpStainOpIds.computeIfAbsent(rop.getOperationId(), k -> new HashSet<>()).add(rop.getRefersToOpId());
+        }
+        List<OperationComment> opcoms = opComRepo.findAllByOperationIdIn(resultOpStainOpIds.keySet());
+        return new ImagingQcData(opcoms, resultOpStainOpIds);
+    }
+
+    /**
+     * Puts the comments from the result-ops for the given stain op ids into the imagingQcComment field in the
+     * ReleaseEntries. Follows the ancestry to see which operations are relevant to which entries.
+     * @param entries the release entries under construction
+     * @param ancestry the ancestry of the entities referred to in the entries
+     * @param stainOpIds the stain operation ids whose results are relevant
+     * @param data the comments found, or null
+     */
+    public void setImagingQcComments(Collection<ReleaseEntry> entries, Ancestry ancestry,
+                                     Collection<Integer> stainOpIds, ImagingQcData data) {
+        if (data==null) {
             return;
         }
-        Set<Integer> resultOpIds = rops.stream().map(ResultOp::getOperationId).collect(toSet());
-        List<OperationComment> opcoms = opComRepo.findAllByOperationIdIn(resultOpIds);
-        Map<SlotIdSampleId, List<OperationComment>> opComMap = opcoms.stream()
+        Map<SlotIdSampleId, List<OperationComment>> opComMap = data.comments().stream()
+                .filter(oc -> data.refersTo(oc.getOperationId(), stainOpIds))
                 .collect(groupingBy(oc -> new SlotIdSampleId(oc.getSlotId(), oc.getSampleId())));
         if (opComMap.isEmpty()) {
             return;
@@ -988,15 +1467,36 @@ public class ReleaseFileService {
 
     /** Loads comments from qpcr operations */
     public void loadQpcrComments(Collection<ReleaseEntry> entries, Ancestry ancestry) {
+        setQpcrComments(entries, ancestry, findQpcrComments(ancestorSlotIds(ancestry)));
+    }
+
+    /**
+     * Finds comments from qpcr operations into the specified slots
+     * @param slotIds the ids of the slots
+     * @return the comments mapped from slot/sample id
+     */
+    public Map<SlotIdSampleId, List<OperationComment>> findQpcrComments(Set<Integer> slotIds) {
         OperationType qpcrOpType = opTypeRepo.getByName("qPCR results");
-        Set<Integer> allSlotIds = ancestry.keySet().stream().map(SlotSample::slotId).collect(toSet());
-        List<Operation> ops = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(qpcrOpType, allSlotIds);
+        List<Operation> ops = opRepo.findAllByOperationTypeAndDestinationSlotIdIn(qpcrOpType, slotIds);
         if (ops.isEmpty()) {
-            return;
+            return Map.of();
         }
         List<OperationComment> opcoms = opComRepo.findAllByOperationIdIn(ops.stream().map(Operation::getId).collect(toList()));
-        Map<SlotIdSampleId, List<OperationComment>> slotIdComs = opcoms.stream()
+        return opcoms.stream()
                 .collect(groupingBy(oc -> new SlotIdSampleId(oc.getSlotId(), oc.getSampleId())));
+    }
+
+    /**
+     * Sets comments from qpcr operations in the release entries
+     * @param entries the release entries
+     * @param ancestry the ancestry map
+     * @param slotIdComs the qpcr comments mapped from slot/sample id
+     */
+    public void setQpcrComments(Collection<ReleaseEntry> entries, Ancestry ancestry,
+                                Map<SlotIdSampleId, List<OperationComment>> slotIdComs) {
+        if (slotIdComs.isEmpty()) {
+            return;
+        }
         for (ReleaseEntry entry : entries) {
             SlotSample key = new SlotSample(entry.getSlot(), entry.getSample());
             Set<OperationComment> entryOcs = new HashSet<>();
@@ -1020,7 +1520,15 @@ public class ReleaseFileService {
      * @param ancestry the ancestry map
      */
     public void loadMeasurements(Collection<ReleaseEntry> entries, Ancestry ancestry) {
-        Set<Integer> slotIds = ancestry.keySet().stream().map(SlotSample::slotId).collect(toSet());
+        setMeasurements(entries, ancestry, findMeasurements(ancestorSlotIds(ancestry)));
+    }
+
+    /**
+     * Finds the measurements of interest in the specified slots, sorted by kind
+     * @param slotIds the ids of the slots
+     * @return the measurements found
+     */
+    public MeasurementData findMeasurements(Set<Integer> slotIds) {
         List<Measurement> measurements = measurementRepo.findAllBySlotIdIn(slotIds);
         Map<Integer, List<Measurement>> slotIdToThickness = new HashMap<>();
         Map<Integer, List<Measurement>> slotIdToCoverage = new HashMap<>();
@@ -1036,7 +1544,6 @@ public class ReleaseFileService {
         final String CYCLES = MeasurementType.Cycles.friendlyName();
         final String VISIUM_CONCENTRATION = "Visium Concentration";
         final String PERM_TIME= MeasurementType.Permeabilisation_time.friendlyName();
-        final String VISIUM_TO = "Visium TO", VISIUM_LP = "Visium LP", PLATE_96 = "96 well plate";
         Map<Integer, OperationType> opTypeCache = new HashMap<>();
 
         for (Measurement measurement : measurements) {
@@ -1072,6 +1579,28 @@ public class ReleaseFileService {
                 slotIdMeasurements.add(measurement);
             }
         }
+        return new MeasurementData(slotIdToThickness, slotIdToCoverage, slotIdToCq, slotIdToVisiumConc,
+                slotIdToPermTimes, slotIdToCycles);
+    }
+
+    /**
+     * Sets various measurements for the release entries.
+     * The measurements may be recorded on the specified slot, or any ancestral slot
+     * found through the given ancestry map.
+     * @param entries the release entries
+     * @param ancestry the ancestry map
+     * @param data the measurements found
+     */
+    public void setMeasurements(Collection<ReleaseEntry> entries, Ancestry ancestry, MeasurementData data) {
+        final String CDNA_CONC = MeasurementType.cDNA_concentration.friendlyName();
+        final String LIBRARY_CONC = MeasurementType.Library_concentration.friendlyName();
+        final String VISIUM_TO = "Visium TO", VISIUM_LP = "Visium LP", PLATE_96 = "96 well plate";
+        final Map<Integer, List<Measurement>> slotIdToThickness = data.thickness();
+        final Map<Integer, List<Measurement>> slotIdToCoverage = data.coverage();
+        final Map<Integer, List<Measurement>> slotIdToCq = data.cq();
+        final Map<Integer, List<Measurement>> slotIdToVisiumConc = data.visiumConcentration();
+        final Map<Integer, List<Measurement>> slotIdToPermTimes = data.permTimes();
+        final Map<Integer, List<Measurement>> slotIdToCycles = data.cycles();
         for (ReleaseEntry entry : entries) {
             Measurement thicknessMeasurement = selectMeasurement(entry, slotIdToThickness, ancestry);
             if (thicknessMeasurement!=null) {
@@ -1207,8 +1736,25 @@ public class ReleaseFileService {
         Set<Integer> slotIds = entries.stream()
                 .map(e -> e.getSlot().getId())
                 .collect(toSet());
-        Map<SlotIdSampleId, String> positionMap = samplePositionRepo.findAllBySlotIdIn(slotIds).stream()
+        setSamplePositions(entries, findSamplePositions(slotIds));
+    }
+
+    /**
+     * Finds sample positions in the specified slots
+     * @param slotIds the ids of the slots
+     * @return the names of the sample positions, mapped from slot/sample id
+     */
+    public Map<SlotIdSampleId, String> findSamplePositions(Set<Integer> slotIds) {
+        return samplePositionRepo.findAllBySlotIdIn(slotIds).stream()
                 .collect(toMap(sp -> new SlotIdSampleId(sp.getSlotId(), sp.getSampleId()), sp -> sp.getSlotRegion().getName()));
+    }
+
+    /**
+     * Sets sample positions in the given entries
+     * @param entries the release entries
+     * @param positionMap the names of the sample positions, mapped from slot/sample id
+     */
+    public void setSamplePositions(Collection<ReleaseEntry> entries, Map<SlotIdSampleId, String> positionMap) {
         for (ReleaseEntry entry : entries) {
             entry.setSamplePosition(positionMap.get(new SlotIdSampleId(entry.getSlot().getId(), entry.getSample().getId())));
         }
@@ -1217,9 +1763,26 @@ public class ReleaseFileService {
     /** Loads comments from sectioning operations */
     public void loadSectionComments(Collection<ReleaseEntry> entries) {
         Set<Integer> slotIds = entries.stream().map(e -> e.getSlot().getId()).collect(toSet());
+        setSectionComments(entries, findSectionComments(slotIds));
+    }
+
+    /**
+     * Finds comments from sectioning operations into the specified slots
+     * @param slotIds the ids of the slots
+     * @return the comments mapped from slot/sample id
+     */
+    public Map<SlotIdSampleId, List<OperationComment>> findSectionComments(Set<Integer> slotIds) {
         OperationType sectionOpType = opTypeRepo.getByName("Section");
-        Map<SlotIdSampleId, List<OperationComment>> commentMap = opComRepo.findAllBySlotAndOpType(slotIds, sectionOpType).stream()
+        return opComRepo.findAllBySlotAndOpType(slotIds, sectionOpType).stream()
                 .collect(groupingBy(oc -> new SlotIdSampleId(oc.getSlotId(), oc.getSampleId())));
+    }
+
+    /**
+     * Sets comments from sectioning operations in the given entries
+     * @param entries the release entries
+     * @param commentMap the comments mapped from slot/sample id
+     */
+    public void setSectionComments(Collection<ReleaseEntry> entries, Map<SlotIdSampleId, List<OperationComment>> commentMap) {
         if (commentMap.isEmpty()) {
             return;
         }
@@ -1241,12 +1804,21 @@ public class ReleaseFileService {
      * @param entries the entries about the items being released
      */
     public void loadRnaAnalysis(Collection<ReleaseEntry> entries, Set<Integer> slotIds) {
+        setRnaAnalysis(entries, findRnaAnalysis(slotIds));
+    }
+
+    /**
+     * Finds the comments and measurements recorded by RNA analysis in the specified slots
+     * @param slotIds the ids of the slots
+     * @return the comments and measurements found; or null
+     */
+    public RnaAnalysisData findRnaAnalysis(Set<Integer> slotIds) {
         List<OperationType> opTypes = Stream.of(DV200_OP_NAME, RIN_OP_NAME)
                 .map(opTypeRepo::getByName)
                 .toList();
         List<Operation> ops = opRepo.findAllByOperationTypeInAndDestinationSlotIdIn(opTypes, slotIds);
         if (nullOrEmpty(ops)) {
-            return;
+            return null;
         }
         Set<Integer> opIds = ops.stream().map(Operation::getId).collect(toSet());
         List<OperationComment> opcoms = opComRepo.findAllByOperationIdIn(opIds);
@@ -1261,6 +1833,20 @@ public class ReleaseFileService {
             ssMeasurements.computeIfAbsent(new SlotIdSampleId(m.getSlotId(), m.getSampleId()), k -> new HashSet<>())
                     .add(m.getName()+": "+m.getValue());
         }
+        return new RnaAnalysisData(ssComments, ssMeasurements);
+    }
+
+    /**
+     * Sets the RNA analysis comments and results in the given entries
+     * @param entries the entries about the items being released
+     * @param data the comments and measurements found, or null
+     */
+    public void setRnaAnalysis(Collection<ReleaseEntry> entries, RnaAnalysisData data) {
+        if (data==null) {
+            return;
+        }
+        final Map<SlotIdSampleId, Set<String>> ssComments = data.comments();
+        final Map<SlotIdSampleId, Set<String>> ssMeasurements = data.measurements();
         for (ReleaseEntry entry : entries) {
             Set<String> comments = ssComments.get(new SlotIdSampleId(entry.getSlot(), entry.getSample()));
             if (!nullOrEmpty(comments)) {
@@ -1278,16 +1864,37 @@ public class ReleaseFileService {
      * @param entries the entries about the items being released
      */
     public void loadParaffinProcessingProgram(Collection<ReleaseEntry> entries, Set<Integer> slotIds) {
+        setParaffinProcessingProgram(entries, findParaffinProcessingProgram(slotIds));
+    }
+
+    /**
+     * Finds the paraffin processing program comments in the specified slots
+     * @param slotIds the ids of the slots
+     * @return the comment texts mapped from slot/sample id
+     */
+    public Map<SlotIdSampleId, Set<String>> findParaffinProcessingProgram(Set<Integer> slotIds) {
         OperationType opType = opTypeRepo.getByName("Paraffin processing");
         List<OperationComment> opcoms = opComRepo.findAllBySlotAndOpType(slotIds, opType);
         if (nullOrEmpty(opcoms)) {
-            return;
+            return Map.of();
         }
         Map<SlotIdSampleId, Set<String>> ssComments = new HashMap<>();
         for (OperationComment oc : opcoms) {
             ssComments.computeIfAbsent(new SlotIdSampleId(oc.getSlotId(), oc.getSampleId()), k -> new HashSet<>())
                     .add(oc.getComment().getText());
         }
+        return ssComments;
+    }
+
+    /**
+     * Sets the paraffin processing program in the given entries
+     * @param entries the entries about the items being released
+     * @param ssComments the comment texts mapped from slot/sample id
+     */
+    public void setParaffinProcessingProgram(Collection<ReleaseEntry> entries, Map<SlotIdSampleId, Set<String>> ssComments) {
+        if (ssComments.isEmpty()) {
+            return;
+        }
         for (ReleaseEntry entry : entries) {
             Set<String> comments = ssComments.get(new SlotIdSampleId(entry.getSlot(), entry.getSample()));
             if (!nullOrEmpty(comments)) {
@@ -1393,17 +2000,35 @@ public class ReleaseFileService {
 
     public List<? extends TsvColumn<ReleaseEntry>> computeColumns(ReleaseFileContent rfc) {
         List<ReleaseColumn> modeColumns = ReleaseColumn.forModesAndOptions(rfc.getModes(), rfc.getOptions());
-        int dualColumnIndex = modeColumns.indexOf(ReleaseColumn.Dual_index_plate_name);
-        if (dualColumnIndex < 0 || rfc.getEntries().stream().allMatch(e -> nullOrEmpty(e.getTagData()))) {
+        if (!modeColumns.contains(ReleaseColumn.Dual_index_plate_name)) {
             return modeColumns;
         }
+        return combineColumns(modeColumns, tagDataColumnNames(rfc.getEntries()));
+    }
 
-        LinkedHashSet<String> tagDataColumnNames = rfc.getEntries().stream()
+    /**
+     * Gets the names of the tag data columns needed for the given entries, in the order they are found
+     * @param entries the release entries
+     * @return the names of the tag data fields in the entries
+     */
+    public LinkedHashSet<String> tagDataColumnNames(Collection<ReleaseEntry> entries) {
+        return entries.stream()
                 .map(ReleaseEntry::getTagData)
                 .filter(e -> !nullOrEmpty(e))
                 .flatMap(e -> e.keySet().stream())
                 .collect(toLinkedHashSet());
-        if (tagDataColumnNames.isEmpty()) {
+    }
+
+    /**
+     * Inserts columns for the given tag data fields after the dual index plate column
+     * @param modeColumns the columns for the release file modes and options
+     * @param tagDataColumnNames the names of the tag data fields
+     * @return the combined list of columns
+     */
+    public List<? extends TsvColumn<ReleaseEntry>> combineColumns(List<ReleaseColumn> modeColumns,
+                                                                 Collection<String> tagDataColumnNames) {
+        int dualColumnIndex = modeColumns.indexOf(ReleaseColumn.Dual_index_plate_name);
+        if (dualColumnIndex < 0 || tagDataColumnNames.isEmpty()) {
             return modeColumns;
         }
 
@@ -1414,4 +2039,43 @@ public class ReleaseFileService {
         combinedList.addAll(modeColumns.subList(dualColumnIndex+1, modeColumns.size()));
         return combinedList;
     }
+
+    /** Operation solutions mapped from labware id, and the solutions they refer to mapped from their ids */
+    public record SolutionData(Map<Integer, List<OperationSolution>> labwareOpSolutions, Map<Integer, Solution> solutions) {}
+
+    /** Section ops mapped from labware id, and section dates mapped from slot/sample id */
+    public record SectionDateData(Map<Integer, Operation> labwareSectionOps, Map<SlotIdSampleId, LocalDate> slotSampleDates) {}
+
+    /** Measurements of interest, each kind mapped from slot id */
+    public record MeasurementData(Map<Integer, List<Measurement>> thickness, Map<Integer, List<Measurement>> coverage,
+                                  Map<Integer, List<Measurement>> cq, Map<Integer, List<Measurement>> visiumConcentration,
+                                  Map<Integer, List<Measurement>> permTimes, Map<Integer, List<Measurement>> cycles) {}
+
+    /** The latest stain op on each labware, and the details of those ops mapped from op id */
+    public record StainData(Map<Integer, Operation> labwareStainOps, Map<Integer, String> stainTypes,
+                            Map<Integer, String> bondBarcodes, Map<Integer, Integer> rnaPlex,
+                            Map<Integer, Integer> ihcPlex, ImagingQcData imagingQc) {}
+
+    /** Comments on result ops, and the ids of the ops that each result op refers to */
+    public record ImagingQcData(List<OperationComment> comments, Map<Integer, Set<Integer>> resultOpRefersTo) {
+        /** Does the given result op refer to any of the given ops? */
+        boolean refersTo(Integer resultOpId, Collection<Integer> opIds) {
+            Set<Integer> refersTo = resultOpRefersTo.get(resultOpId);
+            return (refersTo!=null && refersTo.stream().anyMatch(opIds::contains));
+        }
+    }
+
+    /** Comments and measurements from RNA analysis, mapped from slot/sample id */
+    public record RnaAnalysisData(Map<SlotIdSampleId, Set<String>> comments, Map<SlotIdSampleId, Set<String>> measurements) {}
+
+    /** The latest op on each labware, and items recorded in ops mapped from op id */
+    public record OpDetails<T>(Map<Integer, Operation> labwareOps, Map<Integer, List<T>> opItems) {}
+
+    /** The latest xenium analyser op on each labware, and the notes and ROIs recorded mapped from op id */
+    public record AnalyserData(Map<Integer, Operation> labwareOps, Map<Integer, List<LabwareNote>> notes,
+                               Map<Integer, List<Roi>> rois) {}
+
+    /** The details of the various xenium ops; each part may be null if no ops were found */
+    public record XeniumData(OpDetails<LabwareProbe> probeHybridisation, OpDetails<OperationComment> probeHybridisationQC,
+                             AnalyserData analyser, OpDetails<OperationComment> qc) {}
 }
@@ -0,0 +1,20 @@
+package uk.ac.sanger.sccp.stan.service.releasefile;
+
+import uk.ac.sanger.sccp.stan.model.ReleaseFileOption;
+import uk.ac.sanger.sccp.utils.tsv.TableSpool;
+import uk.ac.sanger.sccp.utils.tsv.TsvColumn;
+
+import java.util.*;
+
+/**
+ * The content of a release file whose rows are read back from a spool as they are iterated.
+ * @param modes the modes of the release file
+ * @param options the options selected for the release file
+ * @param columns the columns of the release file
+ * @param rows iterator supplying the rows in the release file; closing it deletes the spool
+ * @author dr6
+ */
+public record ReleaseFileStream(Set<ReleaseFileMode> modes, Set<ReleaseFileOption> options,
+                                List<? extends TsvColumn<TableSpool.Row>> columns,
+                                TableSpool<ReleaseEntry>.RowIterator rows) {
+}
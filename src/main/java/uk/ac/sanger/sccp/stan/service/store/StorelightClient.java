@@ -1,5 +1,6 @@
 package uk.ac.sanger.sccp.stan.service.store;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import uk.ac.sanger.sccp.stan.config.StorelightConfig;
@@ -7,9 +8,14 @@ import uk.ac.sanger.sccp.utils.GraphQLClient;
 
 import java.io.IOException;
 import java.net.*;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
 
 /**
- * Client for talking to storelight
+ * Client for talking to storelight.
+ * All requests share one http client, so connections to storelight are kept alive and reused.
  * @author dr6
  */
 @Component
@@ -19,7 +25,14 @@ public class StorelightClient extends GraphQLClient {
     @Autowired
     public StorelightClient(StorelightConfig storelightConfig) {
         this.storelightConfig = storelightConfig;
-        setTimeout(10_000); // in case requests might take a while
+        setTimeout(storelightConfig.getTimeout());
+        setConnectTimeout(storelightConfig.getConnectTimeout());
+        setMaxRequests(storelightConfig.getMaxRequests());
+        setVersion(storelightConfig.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1);
+        if (storelightConfig.getThreads() > 0) {
+            setExecutor(Executors.newFixedThreadPool(storelightConfig.getThreads(),
+                    new ThreadFactoryBuilder().setNameFormat("storelight-%d").setDaemon(true).build()));
+        }
     }
 
     protected URL getURL() throws MalformedURLException {
@@ -27,20 +40,38 @@ public class StorelightClient extends GraphQLClient {
     }
 
     public GraphQLResponse postQuery(String query, String user) throws IOException {
-        HttpURLConnection connection = openConnection(getURL());
-        try {
-            setHeaders(connection, user);
-            return postQuery(connection, query);
-        } finally {
-            connection.disconnect();
-        }
+        return postQuery(requestBuilder(user), query);
     }
 
-    protected void setHeaders(HttpURLConnection connection, String user) {
-        setUsualHeaders(connection);
-        connection.setRequestProperty("STORELIGHT-APIKEY", storelightConfig.getApiKey());
+    /**
+     * Posts the given query to storelight without waiting for the response
+     * @param query the graphql query
+     * @param user the name of the user responsible for the query, if any
+     * @return a future of the response; if the request fails, the future completes exceptionally
+     *         with an {@code IOException}
+     * @exception IOException if the storelight address is invalid
+     */
+    public CompletableFuture<GraphQLResponse> postQueryAsync(String query, String user) throws IOException {
+        return postQueryAsync(requestBuilder(user), query);
+    }
+
+    /**
+     * Starts building a request to storelight with the appropriate headers
+     * @param user the name of the user responsible for the request, if any
+     * @return a request builder
+     * @exception IOException if the storelight address is invalid
+     */
+    protected HttpRequest.Builder requestBuilder(String user) throws IOException {
+        HttpRequest.Builder builder;
+        try {
+            builder = requestBuilder(getURL().toURI());
+        } catch (URISyntaxException e) {
+            throw new MalformedURLException(e.getMessage());
+        }
+        builder.header("STORELIGHT-APIKEY", storelightConfig.getApiKey());
         if (user!=null && !user.isEmpty()) {
-            connection.setRequestProperty("STORELIGHT-USER", user);
+            builder.header("STORELIGHT-USER", user);
         }
+        return builder;
     }
 }
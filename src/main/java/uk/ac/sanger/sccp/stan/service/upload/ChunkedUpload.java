@@ -0,0 +1,152 @@
+package uk.ac.sanger.sccp.stan.service.upload;
+
+import uk.ac.sanger.sccp.utils.BasicUtils;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * The state of a chunked upload: the file being uploaded, and the chunks received so far with their checksums.
+ * The file is split into chunks of {@link #getChunkSize chunkSize} bytes, except that the last chunk may be shorter.
+ * @author dr6
+ */
+public class ChunkedUpload {
+    private final String id;
+    private final String username;
+    private final String name;
+    private final long size;
+    private final int chunkSize;
+    private final List<String> workNumbers;
+    private final SortedMap<Integer, String> chunkChecksums;
+
+    public ChunkedUpload(String id, String username, String name, long size, int chunkSize,
+                         List<String> workNumbers, Map<Integer, String> chunkChecksums) {
+        this.id = id;
+        this.username = username;
+        this.name = name;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.workNumbers = List.copyOf(workNumbers);
+        this.chunkChecksums = new TreeMap<>(chunkChecksums);
+    }
+
+    /** The id of the upload */
+    public String getId() {
+        return this.id;
+    }
+
+    /** The name of the user who started the upload */
+    public String getUsername() {
+        return this.username;
+    }
+
+    /** The name of the file being uploaded */
+    public String getName() {
+        return this.name;
+    }
+
+    /** The size of the complete file, in bytes */
+    public long getSize() {
+        return this.size;
+    }
+
+    /** The size of each chunk (except maybe the last), in bytes */
+    public int getChunkSize() {
+        return this.chunkSize;
+    }
+
+    /** The work numbers the file will be linked to */
+    public List<String> getWorkNumbers() {
+        return this.workNumbers;
+    }
+
+    /** The hex-encoded SHA-256 checksum of each received chunk, keyed by chunk index */
+    public SortedMap<Integer, String> getChunkChecksums() {
+        return Collections.unmodifiableSortedMap(this.chunkChecksums);
+    }
+
+    /** The number of chunks in the file */
+    public int getNumChunks() {
+        return numChunks(size, chunkSize);
+    }
+
+    /**
+     * The number of chunks needed for a file of the given size
+     * @param size the size of the file in bytes
+     * @param chunkSize the size of each chunk in bytes
+     * @return the number of chunks
+     */
+    public static int numChunks(long size, int chunkSize) {
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    /** The position in the file of the first byte of the indicated chunk */
+    public long chunkStart(int index) {
+        return (long) index * chunkSize;
+    }
+
+    /** The number of bytes in the indicated chunk */
+    public int chunkLength(int index) {
+        return (int) Math.min(chunkSize, size - chunkStart(index));
+    }
+
+    /** Has the indicated chunk been received? */
+    public boolean hasChunk(int index) {
+        return chunkChecksums.containsKey(index);
+    }
+
+    /** Records that the indicated chunk has been received with the given checksum */
+    public void addChunk(int index, String checksum) {
+        chunkChecksums.put(index, checksum);
+    }
+
+    /** The indexes of the chunks not yet received, in order */
+    public List<Integer> getMissingChunks() {
+        return IntStream.range(0, getNumChunks())
+                .filter(i -> !hasChunk(i))
+                .boxed()
+                .toList();
+    }
+
+    /** The number of bytes received so far */
+    public long getReceivedBytes() {
+        return chunkChecksums.keySet().stream().mapToLong(this::chunkLength).sum();
+    }
+
+    /** Have all the chunks been received? */
+    public boolean isComplete() {
+        return (chunkChecksums.size()==getNumChunks());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || o.getClass() != this.getClass()) return false;
+        ChunkedUpload that = (ChunkedUpload) o;
+        return (this.size == that.size
+                && this.chunkSize == that.chunkSize
+                && Objects.equals(this.id, that.id)
+                && Objects.equals(this.username, that.username)
+                && Objects.equals(this.name, that.name)
+                && Objects.equals(this.workNumbers, that.workNumbers)
+                && Objects.equals(this.chunkChecksums, that.chunkChecksums));
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, size);
+    }
+
+    @Override
+    public String toString() {
+        return BasicUtils.describe(this)
+                .add("id", id)
+                .addRepr("username", username)
+                .addRepr("name", name)
+                .add("size", size)
+                .add("chunkSize", chunkSize)
+                .add("workNumbers", workNumbers)
+                .add("receivedChunks", chunkChecksums.size())
+                .toString();
+    }
+}
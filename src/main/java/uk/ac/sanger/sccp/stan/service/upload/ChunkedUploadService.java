@@ -0,0 +1,98 @@
+package uk.ac.sanger.sccp.stan.service.upload;
+
+import uk.ac.sanger.sccp.stan.model.StanFile;
+import uk.ac.sanger.sccp.stan.model.User;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Service for uploading files to the file store in chunks, so that an interrupted upload can be resumed.
+ * An upload is started with {@link #initiate}, its chunks are sent (in any order, and as often as needed) with
+ * {@link #receiveChunk}, and it is finished with {@link #complete}, which saves the file like a normal upload.
+ * Only the user who started an upload may add to it or complete it.
+ * @author dr6
+ */
+public interface ChunkedUploadService {
+    /**
+     * Starts a new upload
+     * @param user the user uploading the file
+     * @param name the name of the file
+     * @param size the size of the complete file, in bytes
+     * @param chunkSize the requested chunk size in bytes, or null for the default
+     * @param workNumbers the work numbers to link the file to
+     * @return the new upload
+     * @exception IllegalArgumentException if the size, chunk size, name or work numbers are invalid
+     * @exception javax.persistence.EntityNotFoundException if any of the works do not exist
+     * @exception org.springframework.security.authentication.InsufficientAuthenticationException
+     *            if the user is not allowed to upload files for the works
+     * @exception IOException if the upload cannot be created in the store
+     */
+    ChunkedUpload initiate(User user, String name, long size, Integer chunkSize, List<String> workNumbers)
+            throws IOException;
+
+    /**
+     * Receives one chunk of an upload.
+     * Chunks may arrive in any order. A chunk that has already been received may be sent again, as long as it
+     * has the same content.
+     * @param user the user uploading the file
+     * @param uploadId the id of the upload
+     * @param index the index of the chunk (starting from zero)
+     * @param checksum the hex-encoded SHA-256 checksum of the chunk, if supplied by the client
+     * @param data the data of the chunk
+     * @return the updated state of the upload
+     * @exception IllegalArgumentException if the index is invalid, or the data has the wrong length or checksum
+     * @exception IllegalStateException if the chunk has already been received with different content
+     * @exception javax.persistence.EntityNotFoundException if the upload does not exist
+     * @exception org.springframework.security.authentication.InsufficientAuthenticationException
+     *            if the upload belongs to a different user
+     * @exception IOException if the data cannot be read or written
+     */
+    ChunkedUpload receiveChunk(User user, String uploadId, int index, String checksum, InputStream data)
+            throws IOException;
+
+    /**
+     * Gets the current state of an upload
+     * @param user the user uploading the file
+     * @param uploadId the id of the upload
+     * @return the state of the upload
+     * @exception javax.persistence.EntityNotFoundException if the upload does not exist
+     * @exception org.springframework.security.authentication.InsufficientAuthenticationException
+     *            if the upload belongs to a different user
+     * @exception IOException if the state of the upload cannot be read
+     */
+    ChunkedUpload getUpload(User user, String uploadId) throws IOException;
+
+    /**
+     * Completes an upload, saving the file and linking it to the upload's works.
+     * The upload is removed once the file has been saved; if saving fails, the upload is kept
+     * so that completing it can be retried.
+     * @param user the user uploading the file
+     * @param uploadId the id of the upload
+     * @return the new stan files
+     * @exception IllegalStateException if some chunks have not been received
+     * @exception javax.persistence.EntityNotFoundException if the upload does not exist
+     * @exception org.springframework.security.authentication.InsufficientAuthenticationException
+     *            if the upload belongs to a different user
+     * @exception IOException if the upload cannot be read
+     */
+    Iterable<StanFile> complete(User user, String uploadId) throws IOException;
+
+    /**
+     * Abandons an upload, deleting what has been received
+     * @param user the user uploading the file
+     * @param uploadId the id of the upload
+     * @exception javax.persistence.EntityNotFoundException if the upload does not exist
+     * @exception org.springframework.security.authentication.InsufficientAuthenticationException
+     *            if the upload belongs to a different user
+     * @exception IOException if the upload cannot be deleted
+     */
+    void abort(User user, String uploadId) throws IOException;
+
+    /**
+     * Deletes uploads that have not received any chunks within the configured expiry time
+     * @return the number of uploads deleted
+     */
+    int deleteExpired();
+}
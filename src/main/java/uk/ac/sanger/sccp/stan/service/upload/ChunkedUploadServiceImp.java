@@ -0,0 +1,353 @@
+package uk.ac.sanger.sccp.stan.service.upload;
+
+import com.google.common.util.concurrent.Striped;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.stereotype.Service;
+import uk.ac.sanger.sccp.stan.config.StanFileConfig;
+import uk.ac.sanger.sccp.stan.model.StanFile;
+import uk.ac.sanger.sccp.stan.model.User;
+import uk.ac.sanger.sccp.stan.service.FileStoreService;
+
+import javax.persistence.EntityNotFoundException;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.*;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static uk.ac.sanger.sccp.utils.BasicUtils.repr;
+
+/**
+ * Each upload is kept in its own directory under {@code <dir>/uploads} in the file store:
+ * <ul>
+ *     <li>{@code upload.properties} describes the file being uploaded;</li>
+ *     <li>{@code data} is the staging file, into which each chunk is written at its own position;</li>
+ *     <li>{@code chunks/<index>} records the checksum of each chunk once it has been written.</li>
+ * </ul>
+ * Because the state is kept on disk, uploads survive a restart of the application.
+ * Different chunks of an upload may be written at the same time; completing or aborting an upload waits
+ * for chunks being written to finish.
+ * @author dr6
+ */
+@Service
+public class ChunkedUploadServiceImp implements ChunkedUploadService {
+    private static final Logger log = LoggerFactory.getLogger(ChunkedUploadServiceImp.class);
+
+    /** The subdirectory of the store directory containing uploads in progress */
+    static final String UPLOAD_DIR = "uploads";
+    static final String PROPERTIES_FILE = "upload.properties", DATA_FILE = "data", CHUNK_DIR = "chunks";
+    /** The most chunks an upload may have */
+    static final int MAX_CHUNKS = 100_000;
+    static final String CHECKSUM_ALGORITHM = "SHA-256";
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    private final StanFileConfig config;
+    private final Clock clock;
+    private final FileStoreService fileStoreService;
+
+    /** Chunks are written holding the read lock for their upload; completing or aborting needs the write lock */
+    private final Striped<ReadWriteLock> uploadLocks = Striped.readWriteLock(64);
+    /** Prevents the same chunk being written by two requests at once */
+    private final Striped<Lock> chunkLocks = Striped.lock(256);
+
+    @Autowired
+    public ChunkedUploadServiceImp(StanFileConfig config, Clock clock, FileStoreService fileStoreService) {
+        this.config = config;
+        this.clock = clock;
+        this.fileStoreService = fileStoreService;
+    }
+
+    @Override
+    public ChunkedUpload initiate(User user, String name, long size, Integer chunkSize, List<String> workNumbers)
+            throws IOException {
+        String filename = fileStoreService.validateUpload(user, name, workNumbers);
+        if (size < 0) {
+            throw new IllegalArgumentException("Invalid file size: "+size);
+        }
+        final int actualChunkSize = (chunkSize==null ? config.getUploadChunkSize() : chunkSize);
+        if (actualChunkSize <= 0 || actualChunkSize > config.getUploadMaxChunkSize()) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and "+config.getUploadMaxChunkSize()
+                    +" bytes.");
+        }
+        if (ChunkedUpload.numChunks(size, actualChunkSize) > MAX_CHUNKS) {
+            throw new IllegalArgumentException("Chunk size "+actualChunkSize+" is too small for a file of "+size
+                    +" bytes.");
+        }
+        ChunkedUpload upload = new ChunkedUpload(UUID.randomUUID().toString(), user.getUsername(), filename,
+                size, actualChunkSize, workNumbers, Map.of());
+        Path dir = uploadDir(upload.getId());
+        Files.createDirectories(dir.resolve(CHUNK_DIR));
+        Files.createFile(dir.resolve(DATA_FILE));
+        writeProperties(dir, upload);
+        log.info("Started upload {}", upload);
+        return upload;
+    }
+
+    @Override
+    public ChunkedUpload receiveChunk(User user, String uploadId, int index, String checksum, InputStream data)
+            throws IOException {
+        Path dir = uploadDir(uploadId);
+        Lock uploadLock = uploadLocks.get(uploadId).readLock();
+        uploadLock.lock();
+        try {
+            ChunkedUpload upload = loadUpload(user, uploadId, dir);
+            if (index < 0 || index >= upload.getNumChunks()) {
+                throw new IllegalArgumentException("Invalid chunk index "+index+" for an upload of "
+                        +upload.getNumChunks()+" chunks.");
+            }
+            Lock chunkLock = chunkLocks.get(uploadId+"/"+index);
+            chunkLock.lock();
+            try {
+                Path chunkPath = dir.resolve(CHUNK_DIR).resolve(String.valueOf(index));
+                String existing = (Files.exists(chunkPath) ? Files.readString(chunkPath).trim() : null);
+                final int length = upload.chunkLength(index);
+                final String received;
+                if (existing!=null) {
+                    received = transferChunk(index, length, data, null, 0);
+                    if (!received.equals(existing)) {
+                        throw new IllegalStateException("Chunk "+index+" has already been received with different content.");
+                    }
+                } else {
+                    try (FileChannel channel = FileChannel.open(dir.resolve(DATA_FILE), StandardOpenOption.WRITE)) {
+                        received = transferChunk(index, length, data, channel, upload.chunkStart(index));
+                    }
+                }
+                if (checksum!=null && !checksum.trim().equalsIgnoreCase(received)) {
+                    throw new IllegalArgumentException("Checksum mismatch for chunk "+index+": expected "
+                            +repr(checksum)+" but received "+received+".");
+                }
+                if (existing==null) {
+                    Path temp = chunkPath.resolveSibling(index+".tmp");
+                    Files.writeString(temp, received);
+                    Files.move(temp, chunkPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                }
+                upload.addChunk(index, received);
+                return upload;
+            } finally {
+                chunkLock.unlock();
+            }
+        } finally {
+            uploadLock.unlock();
+        }
+    }
+
+    /**
+     * Reads a chunk from the given stream, hashing it and (optionally) writing it to the given channel.
+     * @param index the index of the chunk
+     * @param length the number of bytes the chunk should have
+     * @param in the stream to read the chunk from
+     * @param channel the channel to write the chunk to, or null if it should not be written
+     * @param position the position in the channel at which to write the chunk
+     * @return the hex-encoded checksum of the chunk
+     * @exception IllegalArgumentException if the stream has the wrong number of bytes
+     * @exception IOException if the chunk cannot be read or written
+     */
+    String transferChunk(int index, int length, InputStream in, FileChannel channel, long position)
+            throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int total = 0;
+        while (total < length) {
+            int n = in.read(buffer, 0, Math.min(buffer.length, length - total));
+            if (n < 0) {
+                throw new IllegalArgumentException("Chunk "+index+" is too short: expected "+length
+                        +" bytes but received "+total+".");
+            }
+            digest.update(buffer, 0, n);
+            if (channel!=null) {
+                ByteBuffer bb = ByteBuffer.wrap(buffer, 0, n);
+                while (bb.hasRemaining()) {
+                    channel.write(bb, position + total + bb.position());
+                }
+            }
+            total += n;
+        }
+        if (in.read()!=-1) {
+            throw new IllegalArgumentException("Chunk "+index+" is too long: expected "+length+" bytes.");
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    @Override
+    public ChunkedUpload getUpload(User user, String uploadId) throws IOException {
+        return loadUpload(user, uploadId, uploadDir(uploadId));
+    }
+
+    @Override
+    public Iterable<StanFile> complete(User user, String uploadId) throws IOException {
+        Path dir = uploadDir(uploadId);
+        Lock lock = uploadLocks.get(uploadId).writeLock();
+        lock.lock();
+        try {
+            ChunkedUpload upload = loadUpload(user, uploadId, dir);
+            if (!upload.isComplete()) {
+                List<Integer> missing = upload.getMissingChunks();
+                throw new IllegalStateException("Upload is missing "+missing.size()+" chunk"
+                        +(missing.size()==1 ? "" : "s")+", starting with chunk "+missing.getFirst()+".");
+            }
+            Path data = dir.resolve(DATA_FILE);
+            long dataSize = Files.size(data);
+            if (dataSize!=upload.getSize()) {
+                throw new IllegalStateException("Upload data has "+dataSize+" bytes; expected "+upload.getSize()+".");
+            }
+            Iterable<StanFile> stanFiles = fileStoreService.save(user, upload.getName(), data, upload.getWorkNumbers());
+            log.info("Completed upload {}", upload);
+            deleteUpload(dir);
+            return stanFiles;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void abort(User user, String uploadId) throws IOException {
+        Path dir = uploadDir(uploadId);
+        Lock lock = uploadLocks.get(uploadId).writeLock();
+        lock.lock();
+        try {
+            ChunkedUpload upload = loadUpload(user, uploadId, dir);
+            deleteUpload(dir);
+            log.info("Aborted upload {}", upload);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int deleteExpired() {
+        Path uploadsDir = Paths.get(config.getRoot(), config.getDir(), UPLOAD_DIR);
+        if (!Files.isDirectory(uploadsDir)) {
+            return 0;
+        }
+        final long cutoff = clock.millis() - Duration.ofHours(config.getUploadExpiryHours()).toMillis();
+        int count = 0;
+        try (Stream<Path> dirs = Files.list(uploadsDir)) {
+            for (Path dir : (Iterable<Path>) dirs::iterator) {
+                String uploadId = dir.getFileName().toString();
+                Lock lock = uploadLocks.get(uploadId).writeLock();
+                lock.lock();
+                try {
+                    Path activity = dir.resolve(CHUNK_DIR);
+                    if (!Files.isDirectory(activity)) {
+                        activity = dir;
+                    }
+                    if (Files.getLastModifiedTime(activity).toMillis() < cutoff) {
+                        deleteUpload(dir);
+                        ++count;
+                    }
+                } catch (IOException e) {
+                    log.error("Failed to delete expired upload "+dir, e);
+                } finally {
+                    lock.unlock();
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to list uploads in "+uploadsDir, e);
+        }
+        if (count > 0) {
+            log.info("Deleted {} expired uploads", count);
+        }
+        return count;
+    }
+
+    /**
+     * Deletes expired uploads, triggered on a schedule.
+     */
+    @Scheduled(cron = "${stan.store.upload.cleanup.schedule:-}", zone = "GMT")
+    public void scheduledDeleteExpired() {
+        deleteExpired();
+    }
+
+    /**
+     * Gets the directory for the indicated upload
+     * @param uploadId the id of the upload
+     * @return the directory for the upload
+     * @exception EntityNotFoundException if the id is not a valid upload id
+     */
+    Path uploadDir(String uploadId) {
+        if (uploadId==null || !ID_PATTERN.matcher(uploadId).matches()) {
+            throw new EntityNotFoundException("No upload found with id "+repr(uploadId)+".");
+        }
+        return Paths.get(config.getRoot(), config.getDir(), UPLOAD_DIR, uploadId);
+    }
+
+    /**
+     * Reads the state of an upload from its directory, and checks that it belongs to the given user
+     * @exception EntityNotFoundException if the upload does not exist
+     * @exception InsufficientAuthenticationException if the upload belongs to a different user
+     */
+    ChunkedUpload loadUpload(User user, String uploadId, Path dir) throws IOException {
+        Path propertiesPath = dir.resolve(PROPERTIES_FILE);
+        if (!Files.isRegularFile(propertiesPath)) {
+            throw new EntityNotFoundException("No upload found with id "+repr(uploadId)+".");
+        }
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(propertiesPath, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        String username = props.getProperty("username");
+        if (!username.equalsIgnoreCase(user.getUsername())) {
+            throw new InsufficientAuthenticationException("Upload "+uploadId+" belongs to a different user.");
+        }
+        List<String> workNumbers = new ArrayList<>();
+        for (int i = 0; props.containsKey("workNumber."+i); ++i) {
+            workNumbers.add(props.getProperty("workNumber."+i));
+        }
+        Map<Integer, String> checksums = new HashMap<>();
+        try (Stream<Path> chunkFiles = Files.list(dir.resolve(CHUNK_DIR))) {
+            for (Path chunkFile : (Iterable<Path>) chunkFiles::iterator) {
+                String chunkName = chunkFile.getFileName().toString();
+                if (chunkName.chars().allMatch(Character::isDigit)) {
+                    checksums.put(Integer.valueOf(chunkName), Files.readString(chunkFile).trim());
+                }
+            }
+        }
+        return new ChunkedUpload(uploadId, username, props.getProperty("name"),
+                Long.parseLong(props.getProperty("size")), Integer.parseInt(props.getProperty("chunkSize")),
+                workNumbers, checksums);
+    }
+
+    private static void writeProperties(Path dir, ChunkedUpload upload) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("username", upload.getUsername());
+        props.setProperty("name", upload.getName());
+        props.setProperty("size", String.valueOf(upload.getSize()));
+        props.setProperty("chunkSize", String.valueOf(upload.getChunkSize()));
+        List<String> workNumbers = upload.getWorkNumbers();
+        for (int i = 0; i < workNumbers.size(); ++i) {
+            props.setProperty("workNumber."+i, workNumbers.get(i));
+        }
+        try (Writer writer = Files.newBufferedWriter(dir.resolve(PROPERTIES_FILE), StandardCharsets.UTF_8)) {
+            props.store(writer, null);
+        }
+    }
+
+    private static void deleteUpload(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(CHECKSUM_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
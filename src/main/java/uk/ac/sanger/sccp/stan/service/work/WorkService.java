@@ -127,7 +127,7 @@ public interface WorkService {
      * Updates the existing work linking it to the given operations and samples in slots in the ops' actions
      * @param workNumber the string identifying an existing work
      * @param operations the operations to link
-     * @return the updated and saved work
+     * @return the work
      * @exception javax.persistence.EntityNotFoundException if the work does not exist
      * @exception IllegalArgumentException if the work is not active
      */
@@ -137,7 +137,7 @@ public interface WorkService {
      * Updates the existing work linking it to the given operations and samples in slots in the ops' actions
      * @param work the work
      * @param operations the operations to link
-     * @return the updated and saved work
+     * @return the work
      * @exception IllegalArgumentException if the work is not active
      */
     default Work link(Work work, Collection<Operation> operations) {
@@ -145,11 +145,12 @@ public interface WorkService {
     }
 
     /**
-     * Updates the existing work linking it to the given operations and samples in slots in the ops' actions
+     * Updates the existing work linking it to the given operations and samples in slots in the ops' actions.
+     * The links are inserted directly, so the link collections in the work object are not updated.
      * @param work the work
      * @param operations the operations to link
      * @param evenIfUnusable pass true to let inactive work be linked
-     * @return the updated and saved work
+     * @return the work
      * @exception IllegalArgumentException if the work is not active and <tt>evenIfUnusable</tt> if false
      */
     Work link(Work work, Collection<Operation> operations, boolean evenIfUnusable);
@@ -173,7 +174,7 @@ public interface WorkService {
      * Updates the given work linking it to the given releases and samples in the released labware
      * @param work the work to link the release to
      * @param releases the releases to link to the work
-     * @return the updated work
+     * @return the work
      * @exception IllegalArgumentException if the work is not usable
      */
     Work linkReleases(Work work, List<Release> releases);
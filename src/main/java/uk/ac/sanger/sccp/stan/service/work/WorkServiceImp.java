@@ -11,6 +11,7 @@ import uk.ac.sanger.sccp.stan.model.Work.Status;
 import uk.ac.sanger.sccp.stan.repo.*;
 import uk.ac.sanger.sccp.stan.request.*;
 import uk.ac.sanger.sccp.stan.service.Validator;
+import uk.ac.sanger.sccp.stan.service.WorkProgressService;
 import uk.ac.sanger.sccp.utils.BasicUtils;
 import uk.ac.sanger.sccp.utils.UCMap;
 
@@ -20,8 +21,7 @@ import java.util.function.*;
 import java.util.stream.Stream;
 
 import static java.util.Objects.requireNonNull;
-import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toSet;
+import static java.util.stream.Collectors.*;
 import static uk.ac.sanger.sccp.utils.BasicUtils.*;
 
 @Service
@@ -31,6 +31,7 @@ public class WorkServiceImp implements WorkService {
     private final CostCodeRepo costCodeRepo;
     private final WorkTypeRepo workTypeRepo;
     private final WorkRepo workRepo;
+    private final WorkLinkRepo workLinkRepo;
     private final LabwareRepo lwRepo;
     private final OmeroProjectRepo omeroProjectRepo;
     private final DnapStudyRepo dnapStudyRepo;
@@ -39,20 +40,23 @@ public class WorkServiceImp implements WorkService {
     private final WorkEventRepo workEventRepo;
     private final TreatmentTypeRepo treatmentTypeRepo;
     private final WorkEventService workEventService;
+    private final WorkProgressService workProgressService;
     private final Validator<String> priorityValidator;
 
     @Autowired
     public WorkServiceImp(ProjectRepo projectRepo, ProgramRepo programRepo, CostCodeRepo costCodeRepo,
-                          WorkTypeRepo workTypeRepo, WorkRepo workRepo, LabwareRepo lwRepo, OmeroProjectRepo omeroProjectRepo,
+                          WorkTypeRepo workTypeRepo, WorkRepo workRepo, WorkLinkRepo workLinkRepo,
+                          LabwareRepo lwRepo, OmeroProjectRepo omeroProjectRepo,
                           DnapStudyRepo dnapStudyRepo, ReleaseRecipientRepo recipientRepo, ReleaseDestinationRepo destinationRepo,
                           WorkEventRepo workEventRepo, TreatmentTypeRepo treatmentTypeRepo,
-                          WorkEventService workEventService,
+                          WorkEventService workEventService, WorkProgressService workProgressService,
                           @Qualifier("workPriorityValidator") Validator<String> priorityValidator) {
         this.projectRepo = projectRepo;
         this.programRepo = programRepo;
         this.costCodeRepo = costCodeRepo;
         this.workTypeRepo = workTypeRepo;
         this.workRepo = workRepo;
+        this.workLinkRepo = workLinkRepo;
         this.lwRepo = lwRepo;
         this.omeroProjectRepo = omeroProjectRepo;
         this.dnapStudyRepo = dnapStudyRepo;
@@ -61,6 +65,7 @@ public class WorkServiceImp implements WorkService {
         this.workEventRepo = workEventRepo;
         this.treatmentTypeRepo = treatmentTypeRepo;
         this.workEventService = workEventService;
+        this.workProgressService = workProgressService;
         this.priorityValidator = priorityValidator;
     }
 
@@ -317,16 +322,25 @@ public class WorkServiceImp implements WorkService {
         if (!evenIfUnusable && !work.isUsable()) {
             throw new IllegalArgumentException(work.getWorkNumber()+" cannot be used because it is "+ work.getStatus()+".");
         }
-        Set<Integer> opIds = work.getOperationIds();
-        Set<SampleSlotId> ssIds = work.getSampleSlotIds();
-        for (Operation op : operations) {
-            opIds.add(op.getId());
-            for (Action action : op.getActions()) {
-                SampleSlotId ssId = new SampleSlotId(action.getSample().getId(), action.getDestination().getId());
-                ssIds.add(ssId);
-            }
-        }
-        return workRepo.save(work);
+        Set<Integer> opIds = opIds(operations);
+        workLinkRepo.insertOperationLinks(work.getId(), opIds);
+        workLinkRepo.insertSampleSlotLinks(work.getId(), opSampleSlotIds(operations));
+        workLinkRepo.refreshLinks(work);
+        workProgressService.recordOperations(List.of(work.getId()), opIds);
+        return work;
+    }
+
+    /** Gets the ids of the given operations */
+    static Set<Integer> opIds(Collection<Operation> operations) {
+        return operations.stream().map(Operation::getId).collect(toCollection(LinkedHashSet::new));
+    }
+
+    /** Gets the sample/slot ids of the destinations of the actions in the given operations */
+    static Set<SampleSlotId> opSampleSlotIds(Collection<Operation> operations) {
+        return operations.stream()
+                .flatMap(op -> op.getActions().stream())
+                .map(a -> new SampleSlotId(a.getSample().getId(), a.getDestination().getId()))
+                .collect(toCollection(LinkedHashSet::new));
     }
 
     @Override
@@ -354,8 +368,8 @@ public class WorkServiceImp implements WorkService {
         if (!work.isUsable()) {
             throw new IllegalArgumentException("Work "+work.getWorkNumber()+" is not usable because it is "+work.getStatus().name()+".");
         }
-        Set<Integer> releaseIds = work.getReleaseIds();
-        Set<SampleSlotId> ssIds = work.getSampleSlotIds();
+        Set<Integer> releaseIds = new LinkedHashSet<>(releases.size());
+        Set<SampleSlotId> ssIds = new LinkedHashSet<>();
         for (Release release : releases) {
             releaseIds.add(release.getId());
             for (Slot slot : release.getLabware().getSlots()) {
@@ -364,7 +378,10 @@ public class WorkServiceImp implements WorkService {
                 }
             }
         }
-        return workRepo.save(work);
+        workLinkRepo.insertReleaseLinks(work.getId(), releaseIds);
+        workLinkRepo.insertSampleSlotLinks(work.getId(), ssIds);
+        workLinkRepo.refreshLinks(work);
+        return work;
     }
 
     @Override
@@ -383,18 +400,15 @@ public class WorkServiceImp implements WorkService {
         if (!inactiveWorkNumbers.isEmpty()) {
             throw new IllegalArgumentException("Specified work cannot be used because it is not active: "+inactiveWorkNumbers);
         }
-        Set<Integer> opIds = operations.stream().map(Operation::getId).collect(toSet());
-        Set<SampleSlotId> ssIds = operations.stream()
-                .flatMap(op -> op.getActions().stream()
-                        .map(a -> new SampleSlotId(a.getSample().getId(), a.getDestination().getId())))
-                .collect(toSet());
+        Set<Integer> opIds = opIds(operations);
+        Set<SampleSlotId> ssIds = opSampleSlotIds(operations);
 
         for (Work work : works) {
-            work.getOperationIds().addAll(opIds);
-            work.getSampleSlotIds().addAll(ssIds);
+            workLinkRepo.insertOperationLinks(work.getId(), opIds);
+            workLinkRepo.insertSampleSlotLinks(work.getId(), ssIds);
+            workLinkRepo.refreshLinks(work);
         }
-
-        workRepo.saveAll(works);
+        workProgressService.recordOperations(works.stream().map(Work::getId).toList(), opIds);
     }
 
     @Override
@@ -19,8 +19,9 @@ public class WorkTypeService extends BaseAdminService<WorkType, WorkTypeRepo> {
     @Autowired
     public WorkTypeService(WorkTypeRepo workTypeRepo,
                            @Qualifier("workTypeNameValidator") Validator<String> nameValidator,
-                           Transactor transactor, AdminNotifyService notifyService) {
-        super(workTypeRepo, "WorkType", "Name", nameValidator, transactor, notifyService);
+                           Transactor transactor, AdminNotifyService notifyService,
+                           ReferenceDataCache refDataCache) {
+        super(workTypeRepo, "WorkType", "Name", nameValidator, transactor, notifyService, refDataCache);
     }
 
     @Override
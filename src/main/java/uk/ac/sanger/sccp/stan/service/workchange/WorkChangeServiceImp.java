@@ -1,5 +1,6 @@
 package uk.ac.sanger.sccp.stan.service.workchange;
 
+import com.google.common.collect.Iterators;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +10,7 @@ import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.repo.*;
 import uk.ac.sanger.sccp.stan.request.OpWorkRequest;
 import uk.ac.sanger.sccp.stan.service.ValidationException;
+import uk.ac.sanger.sccp.stan.service.WorkProgressService;
 import uk.ac.sanger.sccp.stan.service.work.WorkService;
 import uk.ac.sanger.sccp.utils.UCMap;
 
@@ -23,27 +25,35 @@ import static uk.ac.sanger.sccp.utils.BasicUtils.nullOrEmpty;
  */
 @Service
 public class WorkChangeServiceImp implements WorkChangeService {
+    /** The number of linked operations or releases whose slot/samples are loaded at once */
+    static final int PAGE_SIZE = 1000;
+
     Logger log = LoggerFactory.getLogger(WorkChangeServiceImp.class);
 
     private final WorkChangeValidationService validationService;
     private final WorkService workService;
     private final WorkRepo workRepo;
+    private final WorkLinkRepo workLinkRepo;
     private final OperationRepo opRepo;
     private final ReleaseRepo releaseRepo;
     private final WorkChangeRepo workChangeRepo;
     private final WorkChangeLinkRepo linkRepo;
+    private final WorkProgressService workProgressService;
 
     @Autowired
     public WorkChangeServiceImp(WorkChangeValidationService validationService, WorkService workService,
-                                WorkRepo workRepo, OperationRepo opRepo, ReleaseRepo releaseRepo,
-                                WorkChangeRepo workChangeRepo, WorkChangeLinkRepo linkRepo) {
+                                WorkRepo workRepo, WorkLinkRepo workLinkRepo, OperationRepo opRepo, ReleaseRepo releaseRepo,
+                                WorkChangeRepo workChangeRepo, WorkChangeLinkRepo linkRepo,
+                                WorkProgressService workProgressService) {
         this.validationService = validationService;
         this.workService = workService;
         this.workRepo = workRepo;
+        this.workLinkRepo = workLinkRepo;
         this.opRepo = opRepo;
         this.releaseRepo = releaseRepo;
         this.workChangeRepo = workChangeRepo;
         this.linkRepo = linkRepo;
+        this.workProgressService = workProgressService;
     }
 
     @Override
@@ -97,54 +107,39 @@ public class WorkChangeServiceImp implements WorkChangeService {
     }
 
     /**
-     * Finds slot/samples that a work should still be linked to without the indicated unlinked operations
+     * Finds which of the given slot/samples each work should still be linked to without the indicated unlinked operations.
+     * The works' operations and releases are read a page at a time, so a large work's links are never all loaded at once.
      * @param works the works to check
      * @param excludedOpIds the operation ids to exclude
-     * @return map from work id to relevant slot/sample ids
+     * @param candidates the slot/samples that may need to be unlinked
+     * @return map from work id to the candidate slot/sample ids the work is still linked to
      */
-    public Map<Integer, Set<SlotIdSampleId>> workExtantSlotSampleIds(Collection<Work> works,
-                                                                     Set<Integer> excludedOpIds) {
-        // All the operation ids that the works are still linked to
-        Set<Integer> otherOpIds = works.stream()
-                .filter(work -> !nullOrEmpty(work.getOperationIds()))
-                .flatMap(work -> work.getOperationIds().stream())
-                .filter(opId -> !excludedOpIds.contains(opId))
-                .collect(toSet());
-        // All the release ids that the works are linked to
-        Set<Integer> releaseIds = works.stream()
-                .filter(work -> !nullOrEmpty(work.getReleaseIds()))
-                .flatMap(work -> work.getReleaseIds().stream())
-                .collect(toSet());
-        // Find slotSampleIds for each operation (that is still linked to a work)
-        Map<Integer, Set<SlotIdSampleId>> otherOpSlotSampleIds = opRepo.findOpSlotSampleIds(otherOpIds);
-        Map<Integer, Set<SlotIdSampleId>> releaseSlotSampleIds = releaseRepo.findReleaseSlotSampleIds(releaseIds);
+    public Map<Integer, Set<SlotIdSampleId>> workExtantSlotSampleIds(Collection<Work> works, Set<Integer> excludedOpIds,
+                                                                     Set<SlotIdSampleId> candidates) {
         Map<Integer, Set<SlotIdSampleId>> workExtantSlotSampleIds = new HashMap<>(works.size());
         for (Work work : works) {
-            if (nullOrEmpty(work.getOperationIds()) && nullOrEmpty(work.getReleaseIds())) {
-                workExtantSlotSampleIds.put(work.getId(), Set.of());
-            } else {
-                Set<SlotIdSampleId> wssids = new HashSet<>();
-                if (!nullOrEmpty(work.getOperationIds())) {
-                    for (Integer opId : work.getOperationIds()) {
-                        Set<SlotIdSampleId> ssids = otherOpSlotSampleIds.get(opId);
-                        if (!nullOrEmpty(ssids)) {
-                            wssids.addAll(ssids);
-                        }
-                    }
-                }
-                if (!nullOrEmpty(work.getReleaseIds())) {
-                    for (Integer releaseId : work.getReleaseIds()) {
-                        Set<SlotIdSampleId> rssids = releaseSlotSampleIds.get(releaseId);
-                        if (!nullOrEmpty(rssids)) {
-                            wssids.addAll(rssids);
-                        }
-                    }
+            Set<SlotIdSampleId> wssids = new HashSet<>();
+            Iterator<Integer> opIds = workLinkRepo.streamOperationIds(work.getId())
+                    .filter(opId -> !excludedOpIds.contains(opId))
+                    .iterator();
+            Iterators.partition(opIds, PAGE_SIZE).forEachRemaining(page ->
+                    addCandidates(wssids, opRepo.findOpSlotSampleIds(page), candidates));
+            Iterators.partition(workLinkRepo.streamReleaseIds(work.getId()).iterator(), PAGE_SIZE).forEachRemaining(page ->
+                    addCandidates(wssids, releaseRepo.findReleaseSlotSampleIds(page), candidates));
+            workExtantSlotSampleIds.put(work.getId(), wssids);
+        }
+        return workExtantSlotSampleIds;
+    }
+
+    private static void addCandidates(Set<SlotIdSampleId> dest, Map<Integer, Set<SlotIdSampleId>> ssidMap,
+                                      Set<SlotIdSampleId> candidates) {
+        for (Set<SlotIdSampleId> ssids : ssidMap.values()) {
+            for (SlotIdSampleId ssid : ssids) {
+                if (candidates.contains(ssid)) {
+                    dest.add(ssid);
                 }
-                workExtantSlotSampleIds.put(work.getId(), wssids);
             }
         }
-
-        return workExtantSlotSampleIds;
     }
 
     /** Gets the slot/samples that are targeted by a given operation */
@@ -164,13 +159,23 @@ public class WorkChangeServiceImp implements WorkChangeService {
     @NotNull
     public Map<Integer, Set<Work.SampleSlotId>> findSampleSlotIdsToRemove(List<Operation> ops, Map<Integer, Work> workIdMap,
                                                                           Map<Integer, Set<Work>> opIdWorks) {
-        Map<Integer, Set<SlotIdSampleId>> extantWorkSsIds = workExtantSlotSampleIds(workIdMap.values(), opIdWorks.keySet());
+        Map<Integer, Set<SlotIdSampleId>> opSsids = new HashMap<>(ops.size());
+        for (Operation op : ops) {
+            if (!nullOrEmpty(opIdWorks.get(op.getId()))) {
+                opSsids.put(op.getId(), getOpSlotSampleIds(op));
+            }
+        }
+        Set<SlotIdSampleId> candidates = opSsids.values().stream()
+                .flatMap(Collection::stream)
+                .collect(toSet());
+        Map<Integer, Set<SlotIdSampleId>> extantWorkSsIds = workExtantSlotSampleIds(workIdMap.values(),
+                opIdWorks.keySet(), candidates);
         Map<Integer, Set<Work.SampleSlotId>> workSsidsToRemove = new HashMap<>();
 
         // Note that SlotIdSampleId and Work.SampleSlotId are distinct types with similar structures
         for (Operation op : ops) {
-            if (!nullOrEmpty(opIdWorks.get(op.getId()))) {
-                Set<SlotIdSampleId> opSlotSampleIds = getOpSlotSampleIds(op);
+            Set<SlotIdSampleId> opSlotSampleIds = opSsids.get(op.getId());
+            if (opSlotSampleIds!=null) {
                 for (Work work : opIdWorks.get(op.getId())) {
                     Set<SlotIdSampleId> workSsids = extantWorkSsIds.get(work.getId());
                     var toRemove = opSlotSampleIds.stream()
@@ -194,6 +199,7 @@ public class WorkChangeServiceImp implements WorkChangeService {
      *              that are not in <tt>Y</tt></li>
      *      </ul></li>
      *  </ul>
+     * The stored progress of the works having operations removed is recalculated.
      * @param ops operations having their works removed
      * @return map of ops to their previously linked works
      */
@@ -214,7 +220,7 @@ public class WorkChangeServiceImp implements WorkChangeService {
 
         workSsidsToRemove.forEach((workId, toRemove) -> {
             if (!nullOrEmpty(toRemove)) {
-                workIdMap.get(workId).getSampleSlotIds().removeAll(toRemove);
+                workLinkRepo.deleteSampleSlotLinks(workId, toRemove);
             }
         });
 
@@ -222,9 +228,10 @@ public class WorkChangeServiceImp implements WorkChangeService {
 
         // remove the affected op ids from the works
         for (Work work : workIdMap.values()) {
-            work.getOperationIds().removeAll(opIdWorks.keySet());
+            workLinkRepo.deleteOperationLinks(work.getId(), opIdWorks.keySet());
+            workLinkRepo.refreshLinks(work);
         }
-        workRepo.saveAll(workIdMap.values());
+        workProgressService.refresh(workIdMap.keySet());
         return opIdWorks;
     }
 
@@ -4,8 +4,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import uk.ac.sanger.sccp.stan.model.Operation;
 import uk.ac.sanger.sccp.stan.model.Work;
-import uk.ac.sanger.sccp.stan.repo.OperationRepo;
-import uk.ac.sanger.sccp.stan.repo.WorkRepo;
+import uk.ac.sanger.sccp.stan.repo.*;
 import uk.ac.sanger.sccp.stan.request.OpWorkRequest;
 import uk.ac.sanger.sccp.stan.service.ValidationException;
 
@@ -19,11 +18,13 @@ import static uk.ac.sanger.sccp.utils.BasicUtils.*;
 @Service
 public class WorkChangeValidationServiceImp implements WorkChangeValidationService {
     private final WorkRepo workRepo;
+    private final WorkLinkRepo workLinkRepo;
     private final OperationRepo opRepo;
 
     @Autowired
-    public WorkChangeValidationServiceImp(WorkRepo workRepo, OperationRepo opRepo) {
+    public WorkChangeValidationServiceImp(WorkRepo workRepo, WorkLinkRepo workLinkRepo, OperationRepo opRepo) {
         this.workRepo = workRepo;
+        this.workLinkRepo = workLinkRepo;
         this.opRepo = opRepo;
     }
 
@@ -76,7 +77,7 @@ public class WorkChangeValidationServiceImp implements WorkChangeValidationServi
                 // Make sure we have a mutable list
                 opIds = new ArrayList<>(opIds);
             }
-            opIds.removeAll(work.getOperationIds());
+            opIds.removeAll(workLinkRepo.findLinkedOperationIds(work.getId(), opIds));
             if (opIds.isEmpty()) {
                 problems.add(String.format("Specified operations are already linked to work %s.", work.getWorkNumber()));
                 return List.of();
@@ -4,20 +4,34 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.io.*;
 import java.net.*;
+import java.net.http.*;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.function.Function;
 
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
 
 /**
  * Base class for a client that needs to post and get json.
+ * Requests are sent through a single {@link HttpClient}, created when it is first needed, so connections
+ * are kept alive and reused between requests. HTTP/1.1 is used unless a different {@link #setVersion version} is set.
+ * Changing the settings of the client causes a new {@code HttpClient} to be created for subsequent requests.
  * @author dr6
  */
 public abstract class BaseHttpClient {
     private int timeout = 2000; // 2 s
+    private int connectTimeout = 2000; // 2 s
     private Proxy proxy;
+    private HttpClient.Version version = HttpClient.Version.HTTP_1_1;
+    private Executor executor;
+    private Semaphore requestPermits;
+    private volatile HttpClient httpClient;
     protected final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
-     * Gets the connect and read timeout (milliseconds). Zero is no timeout.
+     * Gets the request timeout (milliseconds): how long to wait for the response once connected.
+     * Zero is no timeout.
      * @return the timeout in milliseconds.
      */
     public int getTimeout() {
@@ -25,7 +39,10 @@ public abstract class BaseHttpClient {
     }
 
     /**
-     * Sets the connect and read timeout (milliseconds). Zero is no timeout.
+     * Sets the request timeout (milliseconds). Zero is no timeout.
+     * The timeout limits the time from sending the request until the response headers arrive.
+     * Unlike the read timeout of a {@code URLConnection}, it does not limit each read of the response body,
+     * so once the headers have arrived, a slow body is not timed out.
      * @param timeout the timeout in milliseconds
      * @exception IllegalArgumentException if {@code timeout} is negative
      */
@@ -34,14 +51,117 @@ public abstract class BaseHttpClient {
             throw new IllegalArgumentException("timeout cannot be negative");
         }
         this.timeout = timeout;
+        this.httpClient = null;
+    }
+
+    /**
+     * Gets the connect timeout (milliseconds). Zero is no timeout.
+     * @return the connect timeout in milliseconds
+     */
+    public int getConnectTimeout() {
+        return this.connectTimeout;
+    }
+
+    /**
+     * Sets the connect timeout (milliseconds). Zero is no timeout.
+     * @param connectTimeout the connect timeout in milliseconds
+     * @exception IllegalArgumentException if {@code connectTimeout} is negative
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        if (connectTimeout < 0) {
+            throw new IllegalArgumentException("connect timeout cannot be negative");
+        }
+        this.connectTimeout = connectTimeout;
+        this.httpClient = null;
     }
 
     public Proxy getProxy() {
         return this.proxy;
     }
 
+    /**
+     * Sets the proxy to send requests through, or null to use the default proxy selector.
+     * A {@link Proxy.Type#DIRECT direct} proxy means requests are not sent through any proxy.
+     * @param proxy the proxy
+     * @exception IllegalArgumentException if the proxy is not an HTTP or direct proxy
+     */
     public void setProxy(Proxy proxy) {
+        if (proxy!=null && proxy.type()!=Proxy.Type.HTTP && proxy.type()!=Proxy.Type.DIRECT) {
+            throw new IllegalArgumentException("Unsupported proxy type: "+proxy.type());
+        }
         this.proxy = proxy;
+        this.httpClient = null;
+    }
+
+    /** The preferred HTTP version. HTTP/2 falls back to HTTP/1.1 if the server does not support it. */
+    public HttpClient.Version getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(HttpClient.Version version) {
+        this.version = version;
+        this.httpClient = null;
+    }
+
+    /**
+     * The executor used to process the responses of asynchronous requests, or null to process them
+     * on the http client's own threads. Synchronous requests do not use it.
+     */
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Sets the maximum number of requests this client will have in progress at once.
+     * Since each HTTP/1.1 connection carries one request at a time, this also limits the number of
+     * connections opened to the server.
+     * Requests made while the limit is reached wait for an earlier request to finish.
+     * @param maxRequests the maximum number of requests in progress, or zero for no limit
+     * @exception IllegalArgumentException if {@code maxRequests} is negative
+     */
+    public void setMaxRequests(int maxRequests) {
+        if (maxRequests < 0) {
+            throw new IllegalArgumentException("max requests cannot be negative");
+        }
+        this.requestPermits = (maxRequests==0 ? null : new Semaphore(maxRequests, true));
+    }
+
+    /**
+     * Gets the shared http client, creating it if necessary.
+     * @return the http client
+     */
+    public HttpClient getHttpClient() {
+        HttpClient client = this.httpClient;
+        if (client==null) {
+            synchronized (this) {
+                client = this.httpClient;
+                if (client==null) {
+                    client = createHttpClient();
+                    this.httpClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    protected HttpClient createHttpClient() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(getVersion())
+                .followRedirects(HttpClient.Redirect.NORMAL);
+        int connectTimeout = getConnectTimeout();
+        if (connectTimeout > 0) {
+            builder.connectTimeout(Duration.ofMillis(connectTimeout));
+        }
+        Proxy proxy = getProxy();
+        if (proxy!=null) {
+            builder.proxy(proxy.type()==Proxy.Type.DIRECT ? HttpClient.Builder.NO_PROXY
+                    : ProxySelector.of((InetSocketAddress) proxy.address()));
+        }
+        return builder.build();
     }
 
     protected boolean responseIsGood(int responseCode) {
@@ -49,18 +169,40 @@ public abstract class BaseHttpClient {
     }
 
     /**
-     * Reads the response from a connection's inputstream and converts it to the given type.
-     * @param connection the connection to read
+     * Starts building a request to the given address, with the usual headers and the request timeout.
+     * @param uri the address of the request
+     * @return a request builder
+     */
+    public HttpRequest.Builder requestBuilder(URI uri) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri);
+        setUsualHeaders(builder);
+        int timeout = getTimeout();
+        if (timeout > 0) {
+            builder.timeout(Duration.ofMillis(timeout));
+        }
+        return builder;
+    }
+
+    /**
+     * Reads the body of a response and converts it to the given type.
+     * @param response the response to read
      * @param returnType the class of the expected return type
      * @param <T> the expected return type
-     * @return a response of the given type read from the given connection
-     * @exception IOException communication problem
+     * @return a response of the given type read from the given response
+     * @exception IOException the response was unsuccessful or could not be parsed
      */
-    protected <T> T readReturnValue(URLConnection connection, Class<T> returnType) throws IOException {
+    protected <T> T readReturnValue(HttpResponse<String> response, Class<T> returnType) throws IOException {
+        int responseCode = response.statusCode();
+        if (!responseIsGood(responseCode)) {
+            if (responseCode == HTTP_NOT_FOUND) {
+                throw new Http404Exception();
+            }
+            throw new IOException(responseCode + " - " + response.body());
+        }
         if (returnType==null || returnType==Void.class) {
             return null;
         }
-        String string = getResponseString(connection.getInputStream());
+        String string = response.body();
         if (returnType==String.class) {
             //noinspection unchecked
             return (T) string;
@@ -78,80 +220,95 @@ public abstract class BaseHttpClient {
      * @exception IOException there was a communication problem
      */
     protected <T> T postJson(URL url, Object data, Class<T> jsonReturnType) throws IOException {
-        HttpURLConnection connection = openConnection(url);
         try {
-            setHeaders(connection);
-            attemptPost(data, connection);
-            return readReturnValue(connection, jsonReturnType);
-        } finally {
-            connection.disconnect();
+            return postJson(requestBuilder(url.toURI()), data, jsonReturnType);
+        } catch (URISyntaxException e) {
+            throw new MalformedURLException(e.getMessage());
         }
     }
 
-    // public to allow for mocking in unit tests
-    public HttpURLConnection openConnection(URL url) throws IOException {
-        Proxy proxy = getProxy();
-        URLConnection con;
-        if (proxy==null) {
-            con = url.openConnection();
-        } else {
-            con = url.openConnection(proxy);
-        }
-        int timeout = getTimeout();
-        con.setReadTimeout(timeout);
-        con.setConnectTimeout(timeout);
-        return (HttpURLConnection) con;
-    }
-
-    protected void attemptPost(Object data, HttpURLConnection connection) throws IOException {
-        connection.setRequestMethod("POST");
-        connection.setDoOutput(true);
-        connection.connect();
-        try (OutputStreamWriter out = new OutputStreamWriter(connection.getOutputStream())) {
-            out.write(data.toString());
-            out.flush();
-            int responseCode = connection.getResponseCode();
-            if (!responseIsGood(responseCode)) {
-                if (responseCode == HTTP_NOT_FOUND) {
-                    throw new Http404Exception();
+    /**
+     * Posts some JSON using the given request, and returns a response whose type is as indicated by the supplied class.
+     * @param request a builder for the request, with its address and headers
+     * @param data the data to post
+     * @param jsonReturnType the class of the expected return type
+     * @param <T> the expected return type
+     * @return a response whose type is indicated by the {@code jsonReturnType} argument
+     * @exception IOException there was a communication problem
+     */
+    protected <T> T postJson(HttpRequest.Builder request, Object data, Class<T> jsonReturnType) throws IOException {
+        HttpRequest httpRequest = request.POST(HttpRequest.BodyPublishers.ofString(data.toString())).build();
+        final Semaphore permits = this.requestPermits;
+        try {
+            if (permits!=null) {
+                permits.acquire();
+            }
+            try {
+                return readReturnValue(getHttpClient().send(httpRequest, BodyHandlers.ofString()), jsonReturnType);
+            } finally {
+                if (permits!=null) {
+                    permits.release();
                 }
-                throw new IOException(responseCode + " - " + getResponseString(connection.getErrorStream()));
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for "+httpRequest.uri());
         }
     }
 
-    protected void setHeaders(HttpURLConnection connection) {
-        setUsualHeaders(connection);
-    }
-
     /**
-     * Reads from an {@code InputStream} line by line, concatenates the lines and returns the result.
-     * @param is stream to read
-     * @return the text read from the input stream
-     * @exception IOException there was a communication problem
+     * Posts some JSON using the given request without waiting for the response.
+     * If too many requests are in progress, this waits for one to finish before sending the request.
+     * @param request a builder for the request, with its address and headers
+     * @param data the data to post
+     * @param jsonReturnType the class of the expected return type
+     * @param <T> the expected return type
+     * @return a future of the response, whose type is indicated by the {@code jsonReturnType} argument;
+     *         if the request fails, the future completes exceptionally with an {@code IOException}
      */
-    public static String getResponseString(InputStream is) throws IOException {
-        if (is==null) {
-            return null;
+    protected <T> CompletableFuture<T> postJsonAsync(HttpRequest.Builder request, Object data, Class<T> jsonReturnType) {
+        HttpRequest httpRequest = request.POST(HttpRequest.BodyPublishers.ofString(data.toString())).build();
+        final Semaphore permits = this.requestPermits;
+        if (permits!=null) {
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.failedFuture(
+                        new InterruptedIOException("Interrupted waiting for "+httpRequest.uri()));
+            }
         }
-        try (BufferedReader in = new BufferedReader(new InputStreamReader(is))) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = in.readLine()) != null) {
-                sb.append(line);
+        CompletableFuture<HttpResponse<String>> future;
+        try {
+            future = getHttpClient().sendAsync(httpRequest, BodyHandlers.ofString());
+        } catch (RuntimeException e) {
+            if (permits!=null) {
+                permits.release();
             }
-            return sb.toString();
+            throw e;
         }
+        if (permits!=null) {
+            future = future.whenComplete((response, error) -> permits.release());
+        }
+        final Function<HttpResponse<String>, T> reader = response -> {
+            try {
+                return readReturnValue(response, jsonReturnType);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        };
+        final Executor executor = getExecutor();
+        return (executor==null ? future.thenApply(reader) : future.thenApplyAsync(reader, executor));
     }
 
     /**
-     * Sets up the headers on a connection.
+     * Sets up the headers on a request.
      * The headers specify JSON in and JSON out
-     * @param connection the connection to set the headers on
+     * @param request the request to set the headers on
      */
-    public static void setUsualHeaders(HttpURLConnection connection) {
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("Accept", "application/json");
+    public static void setUsualHeaders(HttpRequest.Builder request) {
+        request.header("Content-Type", "application/json");
+        request.header("Accept", "application/json");
     }
 
     /**
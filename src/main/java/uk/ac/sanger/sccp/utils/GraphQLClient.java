@@ -5,8 +5,9 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
+import java.net.http.HttpRequest;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author dr6
@@ -19,10 +20,20 @@ public abstract class GraphQLClient extends BaseHttpClient {
     }
 
     // public to allow for mocking in unit tests
-    public GraphQLResponse postQuery(HttpURLConnection connection, String query) throws IOException {
-        ObjectNode objectNode = queryObject(query);
-        attemptPost(objectNode, connection);
-        return toGraphQLResponse(readReturnValue(connection, ObjectNode.class));
+    public GraphQLResponse postQuery(HttpRequest.Builder request, String query) throws IOException {
+        return toGraphQLResponse(postJson(request, queryObject(query), ObjectNode.class));
+    }
+
+    /**
+     * Posts the given query without waiting for the response
+     * @param request a builder for the request, with its address and headers
+     * @param query the graphql query
+     * @return a future of the response; if the request fails, the future completes exceptionally
+     *         with an {@code IOException}
+     */
+    public CompletableFuture<GraphQLResponse> postQueryAsync(HttpRequest.Builder request, String query) {
+        return postJsonAsync(request, queryObject(query), ObjectNode.class)
+                .thenApply(GraphQLClient::toGraphQLResponse);
     }
 
     public static GraphQLResponse toGraphQLResponse(ObjectNode object) {
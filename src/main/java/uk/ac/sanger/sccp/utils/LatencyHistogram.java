@@ -0,0 +1,128 @@
+package uk.ac.sanger.sccp.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of durations, counted in fixed millisecond buckets.
+ * Percentiles are estimated as the upper bound of the bucket they fall into.
+ * @author dr6
+ */
+public class LatencyHistogram {
+    /** The upper bounds (inclusive) of the buckets, in milliseconds. The last bucket is unbounded. */
+    static final long[] BUCKET_BOUNDS_MS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000};
+
+    private final LongAdder[] buckets;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+        buckets = new LongAdder[BUCKET_BOUNDS_MS.length + 1];
+        for (int i = 0; i < buckets.length; ++i) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a duration
+     * @param nanos the duration in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets[bucketIndex(nanos)].increment();
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    static int bucketIndex(long nanos) {
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; ++i) {
+            if (nanos <= BUCKET_BOUNDS_MS[i] * 1_000_000L) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS_MS.length;
+    }
+
+    /** The number of durations recorded */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /** The total of the durations recorded, in nanoseconds */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /** The longest duration recorded, in nanoseconds */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * Estimates the given percentile of the recorded durations
+     * @param percentile a number between 0 and 100
+     * @return the upper bound in milliseconds of the bucket containing the percentile,
+     *         or the maximum recorded duration if it falls in the unbounded bucket
+     */
+    public double getPercentileMs(double percentile) {
+        long[] counts = bucketCounts();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        if (total==0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; ++i) {
+            seen += counts[i];
+            if (seen >= target && seen > 0) {
+                return BUCKET_BOUNDS_MS[i];
+            }
+        }
+        return toMs(getMaxNanos());
+    }
+
+    private long[] bucketCounts() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; ++i) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /**
+     * Describes the state of this histogram as a map, suitable for serialising to json
+     * @return a map of measurement names to values
+     */
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        long n = getCount();
+        map.put("count", n);
+        map.put("totalMs", toMs(getTotalNanos()));
+        map.put("meanMs", n==0 ? 0.0 : toMs(getTotalNanos()) / n);
+        map.put("maxMs", toMs(getMaxNanos()));
+        map.put("p50Ms", getPercentileMs(50));
+        map.put("p95Ms", getPercentileMs(95));
+        map.put("p99Ms", getPercentileMs(99));
+        long[] counts = bucketCounts();
+        Map<String, Long> bucketMap = new LinkedHashMap<>(counts.length);
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; ++i) {
+            bucketMap.put("le"+BUCKET_BOUNDS_MS[i], counts[i]);
+        }
+        bucketMap.put("inf", counts[BUCKET_BOUNDS_MS.length]);
+        map.put("buckets", bucketMap);
+        return map;
+    }
+
+    private static double toMs(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
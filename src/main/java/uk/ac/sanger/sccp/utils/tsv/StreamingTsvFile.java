@@ -0,0 +1,44 @@
+package uk.ac.sanger.sccp.utils.tsv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A file whose rows are supplied by an iterator as the file is written, so they need not all
+ * be held in memory at once. It can only be written once.
+ * If the iterator is {@link Closeable}, it is closed after the file is written.
+ * @author dr6
+ */
+public class StreamingTsvFile<E> implements TableFile {
+    private final String filename;
+    private final List<? extends TsvColumn<E>> columns;
+    private final Iterator<? extends E> entries;
+
+    public StreamingTsvFile(String filename, List<? extends TsvColumn<E>> columns, Iterator<? extends E> entries) {
+        this.filename = filename;
+        this.columns = columns;
+        this.entries = entries;
+    }
+
+    @Override
+    public String getFilename() {
+        return this.filename;
+    }
+
+    public List<? extends TsvColumn<E>> getColumns() {
+        return this.columns;
+    }
+
+    @Override
+    public void writeTo(TableFileWriter writer) throws IOException {
+        try {
+            writer.write(columns, entries);
+        } finally {
+            if (entries instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package uk.ac.sanger.sccp.utils.tsv;
+
+import java.io.IOException;
+
+/**
+ * A named table of data that can be written out by a {@link TableFileWriter}.
+ * @author dr6
+ */
+public interface TableFile {
+    /**
+     * The name of the file, whose extension indicates what format it should be written in
+     * @return the filename
+     */
+    String getFilename();
+
+    /**
+     * Writes the contents of this file using the given writer
+     * @param writer the writer to use
+     * @exception IOException if a problem happened during writing
+     */
+    void writeTo(TableFileWriter writer) throws IOException;
+}
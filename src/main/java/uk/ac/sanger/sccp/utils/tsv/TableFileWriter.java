@@ -2,6 +2,8 @@ package uk.ac.sanger.sccp.utils.tsv;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
 
 public interface TableFileWriter extends Closeable {
     /**
@@ -12,4 +14,13 @@ public interface TableFileWriter extends Closeable {
      * @exception IOException if a problem happened during writing
      */
     <C, V> void write(TsvData<C, V> data) throws IOException;
+
+    /**
+     * Writes the table data to this writer's output stream, consuming the rows one at a time
+     * @param columns the columns of the table
+     * @param rows iterator supplying the rows of the table
+     * @param <E> the type of the rows
+     * @exception IOException if a problem happened during writing
+     */
+    <E> void write(List<? extends TsvColumn<E>> columns, Iterator<? extends E> rows) throws IOException;
 }
@@ -0,0 +1,192 @@
+package uk.ac.sanger.sccp.utils.tsv;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * The values of a table worked out row by row and kept in a temporary file.
+ * This lets a table whose columns are not known until every row has been seen be written out
+ * without its rows all being held in memory.
+ * Each row records the values of whichever columns it is added with; the columns of the
+ * finished table are chosen afterwards.
+ * The spool should be closed when it is finished with, to delete its file.
+ * @param <E> the type of row the values are taken from
+ * @author dr6
+ */
+public class TableSpool<E> implements Closeable {
+    private final Path path;
+    private final Map<TsvColumn<E>, Integer> columnIndexes = new HashMap<>();
+    private DataOutputStream out;
+    private DataInputStream in;
+    private int numRows;
+
+    public TableSpool() throws IOException {
+        this.path = Files.createTempFile("table", ".spool");
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+    }
+
+    /**
+     * Records the values of the given columns for a row.
+     * @param row the row to get the values from
+     * @param columns the columns whose values to record
+     * @exception IOException the values could not be written
+     * @exception IllegalStateException if the rows have already been read
+     */
+    public void add(E row, Collection<? extends TsvColumn<E>> columns) throws IOException {
+        if (out==null) {
+            throw new IllegalStateException("Rows cannot be added after the spool has been read.");
+        }
+        List<Integer> indexes = new ArrayList<>(columns.size());
+        List<String> values = new ArrayList<>(columns.size());
+        for (TsvColumn<E> column : columns) {
+            String value = column.get(row);
+            if (value!=null) {
+                indexes.add(columnIndexes.computeIfAbsent(column, c -> columnIndexes.size()));
+                values.add(value);
+            }
+        }
+        out.writeInt(indexes.size());
+        for (int i = 0; i < indexes.size(); ++i) {
+            out.writeInt(indexes.get(i));
+            byte[] bytes = values.get(i).getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        ++numRows;
+    }
+
+    /** The number of rows added */
+    public int getNumRows() {
+        return this.numRows;
+    }
+
+    /**
+     * Gets columns that read the recorded values of the given columns.
+     * A column that was never recorded with a value reads null for every row.
+     * @param columns the columns to read
+     * @return columns reading the spooled rows, with the same titles as the given columns
+     */
+    public List<TsvColumn<Row>> columns(List<? extends TsvColumn<E>> columns) {
+        return columns.stream()
+                .map(column -> new SpooledColumn(column.toString(), columnIndexes.getOrDefault(column, -1)))
+                .collect(toList());
+    }
+
+    /**
+     * Finishes adding rows, and gets an iterator reading them back in the order they were added.
+     * This can only be called once. The spool is closed when the iterator reaches the end,
+     * or when the iterator is closed.
+     * @return an iterator of the rows
+     * @exception IOException the file could not be read
+     */
+    public RowIterator rows() throws IOException {
+        if (out==null) {
+            throw new IllegalStateException("The rows have already been read.");
+        }
+        out.close();
+        out = null;
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        return new RowIterator(columnIndexes.size());
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (out!=null) {
+                out.close();
+            }
+            if (in!=null) {
+                in.close();
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private Row readRow(int numColumns) throws IOException {
+        String[] values = new String[numColumns];
+        int count = in.readInt();
+        for (int i = 0; i < count; ++i) {
+            int index = in.readInt();
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            values[index] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new Row(values);
+    }
+
+    /**
+     * A row read back from the spool.
+     */
+    public static class Row {
+        private final String[] values;
+
+        Row(String[] values) {
+            this.values = values;
+        }
+
+        /** The value at the given column index, or null */
+        public String get(int index) {
+            return (index < 0 || index >= values.length ? null : values[index]);
+        }
+    }
+
+    /**
+     * A column reading one of the recorded columns from the spooled rows
+     */
+    private record SpooledColumn(String title, int index) implements TsvColumn<Row> {
+        @Override
+        public String get(Row row) {
+            return row.get(index);
+        }
+
+        @Override
+        public String toString() {
+            return this.title;
+        }
+    }
+
+    /**
+     * Iterator reading the rows back from the spool
+     */
+    public class RowIterator implements Iterator<Row>, Closeable {
+        private final int numColumns;
+        private int rowsRead;
+
+        RowIterator(int numColumns) {
+            this.numColumns = numColumns;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return (rowsRead < numRows);
+        }
+
+        @Override
+        public Row next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            try {
+                Row row = readRow(numColumns);
+                ++rowsRead;
+                if (rowsRead >= numRows) {
+                    TableSpool.this.close();
+                }
+                return row;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            TableSpool.this.close();
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package uk.ac.sanger.sccp.utils.tsv;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
  * The data associated with a tsv file (a filename and some contents)
  * @author dr6
  */
-public class TsvFile<E> implements TsvData<TsvColumn<E>, String> {
+public class TsvFile<E> implements TsvData<TsvColumn<E>, String>, TableFile {
     private final String filename;
     private final List<E> entries;
     private final List<? extends TsvColumn<E>> columns;
@@ -32,7 +33,13 @@ public class TsvFile<E> implements TsvData<TsvColumn<E>, String> {
         return column.get(entries.get(row));
     }
 
+    @Override
     public String getFilename() {
         return this.filename;
     }
+
+    @Override
+    public void writeTo(TableFileWriter writer) throws IOException {
+        writer.write(this);
+    }
 }
@@ -11,7 +11,7 @@ import java.io.OutputStream;
 /**
  * @author dr6
  */
-public class TsvFileConverter extends AbstractHttpMessageConverter<TsvFile<?>> {
+public class TsvFileConverter extends AbstractHttpMessageConverter<TableFile> {
     public static final MediaType TSV_MEDIA_TYPE = new MediaType("text", "tsv"),
             XLSX_MEDIA_TYPE = new MediaType("application", "vnd.openxmlformats-officedocument.spreadsheetml.sheet");
 
@@ -21,24 +21,24 @@ public class TsvFileConverter extends AbstractHttpMessageConverter<TsvFile<?>> {
 
     @Override
     protected boolean supports(@NotNull Class<?> cls) {
-        return TsvFile.class.isAssignableFrom(cls);
+        return TableFile.class.isAssignableFrom(cls);
     }
 
     @NotNull
     @Override
-    protected TsvFile<?> readInternal(@NotNull Class<? extends TsvFile<?>> cls, @NotNull HttpInputMessage message)
+    protected TableFile readInternal(@NotNull Class<? extends TableFile> cls, @NotNull HttpInputMessage message)
             throws IOException, HttpMessageNotReadableException {
         throw new UnsupportedOperationException();
     }
 
     @Override
-    protected void writeInternal(TsvFile<?> rel, HttpOutputMessage output) throws IOException, HttpMessageNotWritableException {
+    protected void writeInternal(TableFile rel, HttpOutputMessage output) throws IOException, HttpMessageNotWritableException {
         boolean useTsv = BasicUtils.endsWithIgnoreCase(rel.getFilename(), "tsv");
         output.getHeaders().setContentType(useTsv ? TSV_MEDIA_TYPE : XLSX_MEDIA_TYPE);
         output.getHeaders().set("Content-Disposition", "attachment; filename=\"" + rel.getFilename() + "\"");
         OutputStream out = output.getBody();
         try (TableFileWriter writer = useTsv ? new TsvWriter(out) : new XlsxWriter(out)) {
-            writer.write(rel);
+            rel.writeTo(writer);
         }
     }
 }
@@ -46,6 +46,17 @@ public class TsvWriter implements TableFileWriter {
         }
     }
 
+    @Override
+    public <E> void write(List<? extends TsvColumn<E>> columns, Iterator<? extends E> rows) throws IOException {
+        writeLn(columns.stream().map(Object::toString).iterator());
+        while (rows.hasNext()) {
+            final E row = rows.next();
+            writeLn(columns.stream()
+                    .map(column -> column.get(row))
+                    .iterator());
+        }
+    }
+
     protected String valueToString(Object value) {
         return (value==null ? null : value.toString());
     }
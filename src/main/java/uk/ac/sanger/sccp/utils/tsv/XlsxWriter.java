@@ -1,6 +1,7 @@
 package uk.ac.sanger.sccp.utils.tsv;
 
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -10,9 +11,13 @@ import java.util.stream.Stream;
 
 /**
  * Utility to write data as an xlsx file to an OutputStream.
+ * Rows are written through a streaming workbook, so only a window of recent rows is held in memory.
  * @author dr6
  */
 public class XlsxWriter implements TableFileWriter {
+    /** The number of rows kept in memory before they are flushed to a temporary file */
+    public static final int ROW_ACCESS_WINDOW = 100;
+
     private final OutputStream out;
 
     public XlsxWriter(OutputStream out) {
@@ -24,21 +29,51 @@ public class XlsxWriter implements TableFileWriter {
         final List<? extends C> columns = data.getColumns();
         final int numRows = data.getNumRows();
         try (Workbook wb = createWorkbook()) {
-            Sheet sheet = wb.createSheet();
-            createRow(sheet, 0, columns.stream().map(Object::toString), createHeadingsStyle(wb));
-            for (int fileRow = 1; fileRow <= numRows; fileRow++) {
-                final int dataRow = fileRow - 1;
-                createRow(sheet, fileRow, columns.stream()
-                                .map(column -> valueToString(data.getValue(dataRow, column))),
-                        null);
+            try {
+                Sheet sheet = wb.createSheet();
+                createRow(sheet, 0, columns.stream().map(Object::toString), createHeadingsStyle(wb));
+                for (int fileRow = 1; fileRow <= numRows; fileRow++) {
+                    final int dataRow = fileRow - 1;
+                    createRow(sheet, fileRow, columns.stream()
+                                    .map(column -> valueToString(data.getValue(dataRow, column))),
+                            null);
+                }
+                wb.write(out);
+            } finally {
+                dispose(wb);
+            }
+        }
+    }
+
+    @Override
+    public <E> void write(List<? extends TsvColumn<E>> columns, Iterator<? extends E> rows) throws IOException {
+        try (Workbook wb = createWorkbook()) {
+            try {
+                Sheet sheet = wb.createSheet();
+                createRow(sheet, 0, columns.stream().map(Object::toString), createHeadingsStyle(wb));
+                int fileRow = 1;
+                while (rows.hasNext()) {
+                    final E row = rows.next();
+                    createRow(sheet, fileRow, columns.stream().map(column -> column.get(row)), null);
+                    ++fileRow;
+                }
+                wb.write(out);
+            } finally {
+                dispose(wb);
             }
-            wb.write(out);
         }
     }
 
-    /** Creates a new Xssf workbook from the POI factory */
+    /** Creates a new streaming workbook that keeps a limited window of rows in memory */
     public Workbook createWorkbook() throws IOException {
-        return WorkbookFactory.create(true);
+        return new SXSSFWorkbook(ROW_ACCESS_WINDOW);
+    }
+
+    /** Deletes any temporary files backing the given workbook */
+    protected void dispose(Workbook wb) {
+        if (wb instanceof SXSSFWorkbook) {
+            ((SXSSFWorkbook) wb).dispose();
+        }
     }
 
     /** Creates a style suitable for headings in the given workbook */
@@ -171,6 +171,7 @@ public class EntityCreator {
                 })
                 .collect(Collectors.toList());
         slotRepo.saveAll(slots);
+        entityManager.flush();
         entityManager.refresh(lw);
         return lw;
     }
@@ -186,6 +187,7 @@ public class EntityCreator {
                 })
                 .collect(Collectors.toList());
         slotRepo.saveAll(slots);
+        entityManager.flush();
         entityManager.refresh(lw);
         return lw;
     }
@@ -253,6 +253,10 @@ public class Matchers {
             Supplier<?> sup = invocation.getArgument(1);
             return sup.get();
         });
+        when(mockTransactor.transactReadOnly(any(), any())).then(invocation -> {
+            Supplier<?> sup = invocation.getArgument(1);
+            return sup.get();
+        });
         return mockTransactor;
     }
 
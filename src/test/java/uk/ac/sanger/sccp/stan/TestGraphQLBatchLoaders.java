@@ -0,0 +1,150 @@
+package uk.ac.sanger.sccp.stan;
+
+import graphql.schema.DataFetchingEnvironment;
+import org.dataloader.DataLoader;
+import org.dataloader.DataLoaderRegistry;
+import org.hibernate.collection.internal.PersistentBag;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.*;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static uk.ac.sanger.sccp.stan.Matchers.sameElements;
+
+/**
+ * Tests {@link GraphQLBatchLoaders}
+ * @author dr6
+ */
+public class TestGraphQLBatchLoaders {
+    private LabwareRepo mockLwRepo;
+    private SlotRepo mockSlotRepo;
+    private OperationRepo mockOpRepo;
+    private WorkRepo mockWorkRepo;
+
+    private GraphQLBatchLoaders batchLoaders;
+
+    @BeforeEach
+    void setup() {
+        mockLwRepo = mock(LabwareRepo.class);
+        mockSlotRepo = mock(SlotRepo.class);
+        mockOpRepo = mock(OperationRepo.class);
+        mockWorkRepo = mock(WorkRepo.class);
+        batchLoaders = spy(new GraphQLBatchLoaders(mockLwRepo, mockSlotRepo, mockOpRepo, mockWorkRepo));
+    }
+
+    @Test
+    public void testNewRegistry() {
+        DataLoaderRegistry registry = batchLoaders.newRegistry();
+        assertThat(registry.getKeys()).containsExactlyInAnyOrder(GraphQLBatchLoaders.LABWARE_LOADER,
+                GraphQLBatchLoaders.SLOT_LOADER, GraphQLBatchLoaders.OPERATION_LOADER, GraphQLBatchLoaders.WORK_LOADER);
+        assertNotSame(registry.getDataLoader(GraphQLBatchLoaders.LABWARE_LOADER),
+                batchLoaders.newRegistry().getDataLoader(GraphQLBatchLoaders.LABWARE_LOADER));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans={false,true})
+    public void testLabwareSlots(boolean initialised) throws Exception {
+        Labware lw = EntityFactory.makeLabware(EntityFactory.getTubeType(), EntityFactory.getSample());
+        List<Slot> slots = lw.getSlots();
+        DataFetchingEnvironment dfe = mockDfe(lw);
+        if (!initialised) {
+            uninitialise(lw, "slots");
+            Labware loaded = new Labware(lw.getId(), lw.getBarcode(), lw.getLabwareType(), slots);
+            when(mockLwRepo.findAllWithSlotsByIdIn(any())).thenReturn(List.of(loaded));
+        }
+        CompletableFuture<List<Slot>> future = batchLoaders.labwareSlots().get(dfe);
+        dispatch(dfe, GraphQLBatchLoaders.LABWARE_LOADER);
+        assertEquals(slots, future.get());
+        if (initialised) {
+            verifyNoInteractions(mockLwRepo);
+        } else {
+            verify(mockLwRepo).findAllWithSlotsByIdIn(Set.of(lw.getId()));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans={false,true})
+    public void testSlotSamples(boolean initialised) throws Exception {
+        Sample sample = EntityFactory.getSample();
+        Slot slot = new Slot(50, 10, new Address(1,1), new ArrayList<>(List.of(sample)));
+        DataFetchingEnvironment dfe = mockDfe(slot);
+        if (!initialised) {
+            uninitialise(slot, "samples");
+            when(mockSlotRepo.findAllWithSamplesByIdIn(any())).thenReturn(List.of(
+                    new Slot(50, 10, new Address(1,1), List.of(sample))
+            ));
+        }
+        CompletableFuture<List<Sample>> future = batchLoaders.slotSamples().get(dfe);
+        dispatch(dfe, GraphQLBatchLoaders.SLOT_LOADER);
+        assertEquals(List.of(sample), future.get());
+        if (initialised) {
+            verifyNoInteractions(mockSlotRepo);
+        } else {
+            verify(mockSlotRepo).findAllWithSamplesByIdIn(Set.of(50));
+        }
+    }
+
+    @Test
+    public void testLoadLabwareWithSlots() throws Exception {
+        Sample sample = EntityFactory.getSample();
+        Slot loadedSlot = new Slot(50, 10, new Address(1,1), new ArrayList<>(List.of(sample)));
+        Slot unloadedSlot = new Slot(51, 10, new Address(1,2), List.of());
+        uninitialise(unloadedSlot, "samples");
+        LabwareType lt = EntityFactory.makeLabwareType(1, 2);
+        Labware lw = new Labware(10, "STAN-10", lt, List.of(loadedSlot, unloadedSlot));
+        when(mockLwRepo.findAllWithSlotsByIdIn(any())).thenReturn(List.of(lw));
+
+        Map<Integer, Labware> result = batchLoaders.loadLabwareWithSlots(Set.of(10)).get();
+
+        assertEquals(Map.of(10, lw), result);
+        verify(mockLwRepo).findAllWithSlotsByIdIn(Set.of(10));
+        verify(mockSlotRepo).findAllWithSamplesByIdIn(List.of(51));
+    }
+
+    @Test
+    public void testLoadOperationsWithActions() throws Exception {
+        Operation op = new Operation();
+        op.setId(5);
+        when(mockOpRepo.findAllWithActionsByIdIn(any())).thenReturn(List.of(op));
+        assertEquals(Map.of(5, op), batchLoaders.loadOperationsWithActions(Set.of(5)).get());
+        verify(mockOpRepo).findAllWithActionsByIdIn(Set.of(5));
+    }
+
+    @Test
+    public void testLoadWorksWithTreatmentTypes() throws Exception {
+        Work work = EntityFactory.makeWork("SGP1");
+        when(mockWorkRepo.findAllWithTreatmentTypesByIdIn(any())).thenReturn(List.of(work));
+        assertEquals(Map.of(work.getId(), work), batchLoaders.loadWorksWithTreatmentTypes(Set.of(work.getId())).get());
+        verify(mockWorkRepo).findAllWithTreatmentTypesByIdIn(sameElements(Set.of(work.getId()), true));
+    }
+
+    private DataFetchingEnvironment mockDfe(Object source) {
+        DataFetchingEnvironment dfe = mock(DataFetchingEnvironment.class);
+        DataLoaderRegistry registry = batchLoaders.newRegistry();
+        when(dfe.getSource()).thenReturn(source);
+        when(dfe.getDataLoader(any())).then(invocation -> registry.getDataLoader(invocation.getArgument(0)));
+        return dfe;
+    }
+
+    /** Replaces a collection in an entity with an uninitialised persistent collection */
+    private static void uninitialise(Object entity, String fieldName) throws ReflectiveOperationException {
+        Field field = entity.getClass().getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(entity, new PersistentBag());
+    }
+
+    private static void dispatch(DataFetchingEnvironment dfe, String loaderName) {
+        DataLoader<?, ?> loader = dfe.getDataLoader(loaderName);
+        loader.dispatchAndJoin();
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.sanger.sccp.stan;
+
+import graphql.ExecutionInput;
+import graphql.GraphqlErrorBuilder;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.language.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link GraphQLDocumentCache}
+ * @author dr6
+ */
+public class TestGraphQLDocumentCache {
+    private GraphQLDocumentCache cache;
+    private Function<ExecutionInput, PreparsedDocumentEntry> mockParser;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setup() {
+        cache = new GraphQLDocumentCache(2, 2);
+        mockParser = mock(Function.class);
+        when(mockParser.apply(any())).then(invocation -> new PreparsedDocumentEntry(Document.newDocument().build()));
+    }
+
+    @Test
+    public void testGetDocumentCachesByQueryAndOperationName() {
+        PreparsedDocumentEntry entry1 = cache.getDocument(input("query A { x }", "A"), mockParser);
+        assertSame(entry1, cache.getDocument(input("query A { x }", "A"), mockParser));
+        PreparsedDocumentEntry entry2 = cache.getDocument(input("query A { x }", null), mockParser);
+        assertNotSame(entry1, entry2);
+        assertSame(entry2, cache.getDocument(input("query A { x }", null), mockParser));
+
+        verify(mockParser, times(2)).apply(any());
+        assertEquals(2, cache.getStats().hitCount());
+        assertEquals(2, cache.getStats().missCount());
+        assertEquals(2, cache.getSize());
+    }
+
+    @Test
+    public void testGetDocumentEvicts() {
+        PreparsedDocumentEntry entry = cache.getDocument(input("{ a }", null), mockParser);
+        cache.getDocument(input("{ b }", null), mockParser);
+        cache.getDocument(input("{ c }", null), mockParser);
+        assertThat(cache.getStats().evictionCount()).isPositive();
+        assertEquals(2, cache.getSize());
+        assertNotSame(entry, cache.getDocument(input("{ a }", null), mockParser));
+    }
+
+    @Test
+    public void testGetDocumentDoesNotCacheErrors() {
+        PreparsedDocumentEntry errorEntry = new PreparsedDocumentEntry(List.of(
+                GraphqlErrorBuilder.newError().message("Bad query.").build()
+        ));
+        when(mockParser.apply(any())).thenReturn(errorEntry);
+        assertSame(errorEntry, cache.getDocument(input("{ bad }", null), mockParser));
+        assertSame(errorEntry, cache.getDocument(input("{ bad }", null), mockParser));
+        verify(mockParser, times(2)).apply(any());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testZeroSizeDisablesCache() {
+        cache = new GraphQLDocumentCache(0, 0);
+        cache.getDocument(input("{ a }", null), mockParser);
+        cache.getDocument(input("{ a }", null), mockParser);
+        verify(mockParser, times(2)).apply(any());
+    }
+
+    @Test
+    public void testPersistedQueries() {
+        final String query = "{ a }";
+        final String hash = GraphQLDocumentCache.sha256Hex(query);
+        assertThat(hash).hasSize(64).matches("[0-9a-f]+");
+        assertNull(cache.getPersistedQuery(hash));
+        cache.persistQuery(hash.toUpperCase(), query);
+        assertEquals(query, cache.getPersistedQuery(hash));
+        assertEquals(query, cache.getPersistedQuery(hash.toUpperCase()));
+        assertEquals(1, cache.getPersistedQueryCount());
+    }
+
+    @Test
+    public void testPersistQueryWrongHash() {
+        String hash = GraphQLDocumentCache.sha256Hex("{ b }");
+        assertThat(assertThrows(IllegalArgumentException.class, () -> cache.persistQuery(hash, "{ a }")))
+                .hasMessage("The query hash does not match the query.");
+        assertNull(cache.getPersistedQuery(hash));
+    }
+
+    private static ExecutionInput input(String query, String operationName) {
+        return ExecutionInput.newExecutionInput().query(query).operationName(operationName).build();
+    }
+}
@@ -0,0 +1,103 @@
+package uk.ac.sanger.sccp.stan;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Resources;
+import graphql.ExecutionInput;
+import graphql.ParseAndValidate;
+import graphql.ParseAndValidateResult;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.idl.SchemaParser;
+import graphql.schema.idl.UnExecutableSchemaGenerator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the cost of parsing and validating the test queries against the real schema
+ * with and without the document cache.
+ * @author dr6
+ */
+@Tag("benchmark")
+public class TestGraphQLDocumentCacheBenchmark {
+    private static final int ROUNDS = 20;
+
+    private final Logger log = LoggerFactory.getLogger(TestGraphQLDocumentCacheBenchmark.class);
+
+    private GraphQLSchema schema;
+    private List<String> queries;
+
+    @BeforeEach
+    void setup() throws IOException {
+        String sdl = Resources.toString(Resources.getResource("schema.graphqls"), Charsets.UTF_8);
+        schema = UnExecutableSchemaGenerator.makeUnExecutableSchema(new SchemaParser().parse(sdl));
+        Path dir = Paths.get(Resources.getResource("graphql").getPath());
+        try (Stream<Path> paths = Files.list(dir)) {
+            queries = paths.filter(p -> p.toString().endsWith(".graphql"))
+                    .sorted()
+                    .map(TestGraphQLDocumentCacheBenchmark::read)
+                    .filter(query -> !parseAndValidate(input(query)).hasErrors())
+                    .toList();
+        }
+        assertThat(queries).isNotEmpty();
+    }
+
+    @Test
+    public void testCacheBenchmark() {
+        Function<ExecutionInput, PreparsedDocumentEntry> uncached = this::parseAndValidate;
+        GraphQLDocumentCache cache = new GraphQLDocumentCache(500, 0);
+        Function<ExecutionInput, PreparsedDocumentEntry> cached = in -> cache.getDocument(in, this::parseAndValidate);
+
+        // warm up
+        run(uncached, 1);
+        run(cached, 1);
+
+        long uncachedNanos = run(uncached, ROUNDS);
+        long cachedNanos = run(cached, ROUNDS);
+
+        assertEquals((long) queries.size(), cache.getStats().missCount());
+        assertEquals((long) queries.size() * ROUNDS, cache.getStats().hitCount());
+        log.info("Parse and validate {} queries x {} rounds: uncached {} ms, cached {} ms, hit rate {}",
+                queries.size(), ROUNDS, uncachedNanos/1_000_000, cachedNanos/1_000_000, cache.getStats().hitRate());
+        assertThat(cachedNanos).isLessThan(uncachedNanos);
+    }
+
+    private long run(Function<ExecutionInput, PreparsedDocumentEntry> func, int rounds) {
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; ++i) {
+            for (String query : queries) {
+                func.apply(input(query));
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private PreparsedDocumentEntry parseAndValidate(ExecutionInput input) {
+        ParseAndValidateResult result = ParseAndValidate.parseAndValidate(schema, input);
+        return (result.isFailure() ? new PreparsedDocumentEntry(result.getErrors())
+                : new PreparsedDocumentEntry(result.getDocument()));
+    }
+
+    private static ExecutionInput input(String query) {
+        return ExecutionInput.newExecutionInput().query(query).build();
+    }
+
+    private static String read(Path path) {
+        try {
+            return Files.readString(path);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package uk.ac.sanger.sccp.stan;
+
+import graphql.GraphQLContext;
+import graphql.execution.ExecutionContext;
+import graphql.execution.ExecutionStepInfo;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.language.OperationDefinition;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import uk.ac.sanger.sccp.stan.config.GraphQLConfig;
+
+import java.util.Map;
+
+import static graphql.Scalars.GraphQLString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link GraphQLMetricsInstrumentation}
+ * @author dr6
+ */
+public class TestGraphQLMetricsInstrumentation {
+    private StanMetrics mockMetrics;
+    private SqlStatementCounter mockCounter;
+    private GraphQLConfig mockConfig;
+    private GraphQLMetricsInstrumentation instrumentation;
+
+    @BeforeEach
+    void setup() {
+        mockMetrics = mock(StanMetrics.class);
+        mockCounter = mock(SqlStatementCounter.class);
+        mockConfig = mock(GraphQLConfig.class);
+        instrumentation = new GraphQLMetricsInstrumentation(mockMetrics, mockCounter, mockConfig);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans={false,true})
+    public void testBeginExecuteOperation(boolean slowLog) {
+        when(mockConfig.getSlowQueryMs()).thenReturn(slowLog ? 1L : 0L);
+        ExecutionContext executionContext = mock(ExecutionContext.class);
+        when(executionContext.getOperationDefinition()).thenReturn(
+                OperationDefinition.newOperationDefinition().name("FindLabware")
+                        .operation(OperationDefinition.Operation.QUERY).build()
+        );
+        when(executionContext.getGraphQLContext()).thenReturn(GraphQLContext.of(Map.of("username", "user1")));
+        when(mockCounter.getCount()).thenReturn(10L, 17L);
+
+        InstrumentationContext<?> ctx = instrumentation.beginExecuteOperation(
+                new InstrumentationExecuteOperationParameters(executionContext), null);
+        ctx.onCompleted(null, null);
+
+        verify(mockMetrics).recordOperation(eq("query FindLabware"), anyLong());
+        verify(mockMetrics).recordOperationStatements("query FindLabware", 7L);
+    }
+
+    @Test
+    public void testBeginFieldFetch() {
+        InstrumentationFieldFetchParameters params = mockFieldFetchParameters(false);
+        InstrumentationContext<Object> ctx = instrumentation.beginFieldFetch(params, null);
+        verifyNoInteractions(mockMetrics);
+        ctx.onCompleted("value", null);
+        verify(mockMetrics).recordField(eq("Labware.slots"), anyLong());
+    }
+
+    @Test
+    public void testBeginFieldFetchTrivial() {
+        InstrumentationFieldFetchParameters params = mockFieldFetchParameters(true);
+        instrumentation.beginFieldFetch(params, null).onCompleted("value", null);
+        verifyNoInteractions(mockMetrics);
+    }
+
+    @Test
+    public void testOperationKey() {
+        assertEquals("mutation Register", GraphQLMetricsInstrumentation.operationKey(
+                OperationDefinition.newOperationDefinition().name("Register")
+                        .operation(OperationDefinition.Operation.MUTATION).build()));
+        assertEquals("query (anonymous)", GraphQLMetricsInstrumentation.operationKey(
+                OperationDefinition.newOperationDefinition().operation(OperationDefinition.Operation.QUERY).build()));
+    }
+
+    private InstrumentationFieldFetchParameters mockFieldFetchParameters(boolean trivial) {
+        InstrumentationFieldFetchParameters params = mock(InstrumentationFieldFetchParameters.class);
+        when(params.isTrivialDataFetcher()).thenReturn(trivial);
+        ExecutionStepInfo stepInfo = mock(ExecutionStepInfo.class);
+        when(stepInfo.getObjectType()).thenReturn(GraphQLObjectType.newObject().name("Labware")
+                .field(f -> f.name("barcode").type(GraphQLString)).build());
+        when(params.getExecutionStepInfo()).thenReturn(stepInfo);
+        when(params.getField()).thenReturn(GraphQLFieldDefinition.newFieldDefinition().name("slots").type(GraphQLString).build());
+        return params;
+    }
+}
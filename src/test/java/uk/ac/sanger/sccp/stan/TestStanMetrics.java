@@ -0,0 +1,47 @@
+package uk.ac.sanger.sccp.stan;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link StanMetrics}
+ * @author dr6
+ */
+public class TestStanMetrics {
+    @Test
+    public void testNamesAreLimited() {
+        StanMetrics metrics = new StanMetrics(2);
+        metrics.recordOperation("query Alpha", 1000);
+        metrics.recordOperation("query Beta", 1000);
+        metrics.recordOperation("query Gamma", 1000);
+        metrics.recordOperation("query Delta", 1000);
+        metrics.recordOperation("query Alpha", 1000);
+        metrics.recordOperationStatements("query Alpha", 3);
+        metrics.recordOperationStatements("query Gamma", 4);
+
+        Map<String, Map<String, Object>> operations = metrics.getOperationMetrics();
+        assertThat(operations.keySet()).containsExactlyInAnyOrder("query Alpha", "query Beta", StanMetrics.OTHER);
+        assertEquals(2L, operations.get("query Alpha").get("count"));
+        assertEquals(2L, operations.get(StanMetrics.OTHER).get("count"));
+        assertThat(operations.get("query Alpha")).containsKey("sqlStatements");
+        assertThat(operations.get(StanMetrics.OTHER)).containsKey("sqlStatements");
+        assertThat(operations.get("query Beta")).doesNotContainKey("sqlStatements");
+    }
+
+    @Test
+    public void testEachKindIsLimitedSeparately() {
+        StanMetrics metrics = new StanMetrics(1);
+        metrics.recordField("Labware.slots", 1000);
+        metrics.recordStage("Release file stains", 1000);
+        metrics.recordStage("Release file flags", 1000);
+        metrics.recordTransactionWait("Release", 1000);
+
+        assertThat(metrics.getFieldMetrics().keySet()).containsExactly("Labware.slots");
+        assertThat(metrics.getStageMetrics().keySet()).containsExactlyInAnyOrder("Release file stains", StanMetrics.OTHER);
+        assertThat(metrics.getTransactionWaitMetrics().keySet()).containsExactly("Release");
+    }
+}
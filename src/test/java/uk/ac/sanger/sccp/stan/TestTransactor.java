@@ -15,7 +15,7 @@ import java.util.function.Supplier;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 /**
@@ -24,6 +24,7 @@ import static org.mockito.Mockito.*;
  */
 public class TestTransactor {
     private PlatformTransactionManager mockPtm;
+    private StanMetrics mockMetrics;
     private Transactor transactor;
     private TransactionStatus txStatus;
     private final String TXNAME = "TXNAME";
@@ -31,7 +32,8 @@ public class TestTransactor {
     @BeforeEach
     void setup() {
         mockPtm = mock(PlatformTransactionManager.class);
-        transactor = new Transactor(mockPtm);
+        mockMetrics = mock(StanMetrics.class);
+        transactor = new Transactor(mockPtm, mockMetrics);
         txStatus = mock(TransactionStatus.class);
         when(mockPtm.getTransaction(any())).thenReturn(txStatus);
     }
@@ -95,16 +97,62 @@ public class TestTransactor {
         verifyTransaction(success);
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans={false, true})
+    public void testTransactReadOnly(boolean success) {
+        final IllegalArgumentException ex = success ? null : new IllegalArgumentException("Everything.");
+        final Supplier<String> supplier;
+        if (success) {
+            supplier = () -> "OK";
+        } else {
+            supplier = () -> { throw ex; };
+        }
+        if (success) {
+            assertEquals("OK", transactor.transactReadOnly(TXNAME, supplier));
+        } else {
+            assertException(ex, () -> transactor.transactReadOnly(TXNAME, supplier));
+        }
+        verifyTransaction(success, true);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans={false, true})
+    public void testTransactNew(boolean success) {
+        final IllegalArgumentException ex = success ? null : new IllegalArgumentException("Everything.");
+        final Supplier<String> supplier;
+        if (success) {
+            supplier = () -> "OK";
+        } else {
+            supplier = () -> { throw ex; };
+        }
+        if (success) {
+            assertEquals("OK", transactor.transactNew(TXNAME, supplier));
+        } else {
+            assertException(ex, () -> transactor.transactNew(TXNAME, supplier));
+        }
+        verifyTransaction(success, TransactionDefinition.PROPAGATION_REQUIRES_NEW, false);
+    }
+
     private void assertException(Exception ex, Executable exec) {
         assertThat(assertThrows(ex.getClass(), exec)).isSameAs(ex);
     }
 
     private void verifyTransaction(boolean success) {
+        verifyTransaction(success, false);
+    }
+
+    private void verifyTransaction(boolean success, boolean readOnly) {
+        verifyTransaction(success, TransactionDefinition.PROPAGATION_REQUIRED, readOnly);
+    }
+
+    private void verifyTransaction(boolean success, int propagation, boolean readOnly) {
         DefaultTransactionDefinition txDef = new DefaultTransactionDefinition();
         txDef.setName(TXNAME);
-        txDef.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRED);
+        txDef.setPropagationBehavior(propagation);
+        txDef.setReadOnly(readOnly);
 
         verify(mockPtm).getTransaction(txDef);
+        verify(mockMetrics).recordTransactionWait(eq(TXNAME), anyLong());
 
         verify(mockPtm, times(success ? 1 : 0)).commit(txStatus);
         verify(mockPtm, times(success ? 0 : 1)).rollback(txStatus);
@@ -0,0 +1,119 @@
+package uk.ac.sanger.sccp.stan.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.ehcache.config.CacheRuntimeConfiguration;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import uk.ac.sanger.sccp.stan.config.HibernateConfig.BoundedRegionFactory;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link HibernateConfig}
+ */
+class TestHibernateConfig {
+    @ParameterizedTest
+    @ValueSource(booleans={false,true})
+    public void testSecondLevelCacheCustomizer(boolean enabled) {
+        HibernateConfig config = new HibernateConfig();
+        config.secondLevelCacheEnabled = enabled;
+        config.queryCacheSize = 10;
+        config.regionSize = 10;
+        config.cacheTtlSeconds = 60;
+        try (CacheManager cacheManager = config.hibernateCacheManager()) {
+            Map<String, Object> props = new HashMap<>();
+            config.secondLevelCacheCustomizer(cacheManager).customize(props);
+            assertEquals(enabled, props.get(AvailableSettings.USE_SECOND_LEVEL_CACHE));
+            assertEquals(enabled, props.get(AvailableSettings.USE_QUERY_CACHE));
+            if (enabled) {
+                assertThat(props.get(AvailableSettings.CACHE_REGION_FACTORY)).isInstanceOf(BoundedRegionFactory.class);
+                assertSame(cacheManager, props.get(ConfigSettings.CACHE_MANAGER));
+            } else {
+                assertNull(props.get(AvailableSettings.CACHE_REGION_FACTORY));
+            }
+        }
+    }
+
+    @Test
+    public void testHibernateCacheManager() {
+        HibernateConfig config = new HibernateConfig();
+        config.queryCacheSize = 10;
+        config.cacheTtlSeconds = 60;
+        try (CacheManager cm1 = config.hibernateCacheManager();
+             CacheManager cm2 = config.hibernateCacheManager()) {
+            assertNotSame(cm1, cm2);
+            Cache<Object, Object> queryCache = cm1.getCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME);
+            assertNotNull(queryCache);
+            for (int i = 0; i < 20; ++i) {
+                queryCache.put(i, i);
+            }
+            int size = 0;
+            for (Cache.Entry<Object, Object> ignored : queryCache) {
+                ++size;
+            }
+            assertTrue(size <= 10, "Query cache size: "+size);
+            assertEquals(Duration.ofSeconds(60), expiry(queryCache));
+            Cache<Object, Object> timestamps = cm1.getCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME);
+            assertNotNull(timestamps);
+            assertEquals(org.ehcache.expiry.ExpiryPolicy.INFINITE, expiry(timestamps));
+            cm2.close();
+            assertFalse(cm1.isClosed());
+        }
+    }
+
+    @Test
+    public void testExpiringRegion() {
+        HibernateConfig config = new HibernateConfig();
+        config.queryCacheSize = 10;
+        try (CacheManager cm = config.hibernateCacheManager()) {
+            Cache<Object, Object> region = cm.createCache("region", Eh107Configuration.fromEhcacheCacheConfiguration(
+                    HibernateConfig.expiringRegion(5, Duration.ofSeconds(30))));
+            for (int i = 0; i < 20; ++i) {
+                region.put(i, i);
+            }
+            int size = 0;
+            for (Cache.Entry<Object, Object> ignored : region) {
+                ++size;
+            }
+            assertTrue(size <= 5, "Region size: "+size);
+            assertEquals(Duration.ofSeconds(30), expiry(region));
+        }
+    }
+
+    /** Gets the time to live of entries in the given cache */
+    private static Object expiry(Cache<Object, Object> cache) {
+        @SuppressWarnings("unchecked")
+        Eh107Configuration<Object, Object> eh107Config = cache.getConfiguration(Eh107Configuration.class);
+        @SuppressWarnings("unchecked")
+        CacheRuntimeConfiguration<Object, Object> runtimeConfig = eh107Config.unwrap(CacheRuntimeConfiguration.class);
+        return runtimeConfig.getExpiryPolicy().getExpiryForCreation(1, 1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans={false,true})
+    public void testRewriteBatchedStatementsPostProcessor(boolean enabled) {
+        BeanPostProcessor processor = HibernateConfig.rewriteBatchedStatementsPostProcessor(enabled);
+        try (HikariDataSource ds = new HikariDataSource(); HikariDataSource configured = new HikariDataSource()) {
+            configured.addDataSourceProperty("rewriteBatchedStatements", "false");
+            assertSame(ds, processor.postProcessBeforeInitialization(ds, "dataSource"));
+            processor.postProcessBeforeInitialization(configured, "dataSource");
+            assertEquals(enabled ? "true" : null, ds.getDataSourceProperties().get("rewriteBatchedStatements"));
+            assertEquals("false", configured.getDataSourceProperties().get("rewriteBatchedStatements"));
+        }
+        Object other = new Object();
+        assertSame(other, processor.postProcessBeforeInitialization(other, "other"));
+    }
+}
@@ -0,0 +1,92 @@
+package uk.ac.sanger.sccp.stan.integrationtest;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import uk.ac.sanger.sccp.stan.repo.BarcodeIntRepo;
+import uk.ac.sanger.sccp.stan.service.BarcodeAllocator;
+
+import javax.persistence.EntityManager;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Allocates barcodes from several threads at once, using the {@link BarcodeAllocator} and using
+ * {@link BarcodeIntRepo#next(int)} directly, and logs the throughput of each.
+ * Every transaction is rolled back, so no seeds are used up.
+ * @author dr6
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+public class TestBarcodeAllocatorStress {
+    private static final Logger log = LoggerFactory.getLogger(TestBarcodeAllocatorStress.class);
+    private static final int NUM_THREADS = 4, NUM_ROUNDS = 25, SEEDS_PER_ROUND = 2;
+
+    @Autowired
+    private BarcodeAllocator barcodeAllocator;
+    @Autowired
+    private BarcodeIntRepo barcodeIntRepo;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private EntityManager entityManager;
+
+    @AfterEach
+    void releaseReservations() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                entityManager.createNativeQuery("update barcode_int set reserved_by=null, reserved_at=null where not used")
+                        .executeUpdate());
+    }
+
+    @Test
+    public void testConcurrentAllocation() throws Exception {
+        double repoRate = allocate(barcodeIntRepo::next);
+        double allocatorRate = allocate(barcodeAllocator::nextSeeds);
+        log.info("Seeds per second: BarcodeIntRepo {}, BarcodeAllocator {}", repoRate, allocatorRate);
+        assertThat(allocatorRate).isPositive();
+        assertThat(repoRate).isPositive();
+    }
+
+    /**
+     * Allocates seeds from several threads in transactions that are rolled back,
+     * and returns the number of seeds allocated per second
+     */
+    private double allocate(IntFunction<List<Integer>> allocator) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>(NUM_THREADS);
+            long start = System.nanoTime();
+            for (int t = 0; t < NUM_THREADS; ++t) {
+                futures.add(executor.submit(() -> {
+                    TransactionTemplate tt = new TransactionTemplate(transactionManager);
+                    int count = 0;
+                    for (int round = 0; round < NUM_ROUNDS; ++round) {
+                        List<Integer> seeds = tt.execute(status -> {
+                            status.setRollbackOnly();
+                            return allocator.apply(SEEDS_PER_ROUND);
+                        });
+                        assertThat(seeds).hasSize(SEEDS_PER_ROUND).doesNotHaveDuplicates();
+                        count += seeds.size();
+                    }
+                    return count;
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> future : futures) {
+                total += future.get(60, TimeUnit.SECONDS);
+            }
+            return total * 1e9 / (System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package uk.ac.sanger.sccp.stan.integrationtest;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.GraphQLTester;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.TreatmentTypeRepo;
+import uk.ac.sanger.sccp.stan.repo.WorkRepo;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Transactional;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static uk.ac.sanger.sccp.stan.integrationtest.IntegrationTestUtils.assertNoErrors;
+import static uk.ac.sanger.sccp.stan.integrationtest.IntegrationTestUtils.chainGetList;
+import static uk.ac.sanger.sccp.utils.BasicUtils.stream;
+
+/**
+ * Tests that nested entity fields are batch loaded, so the number of queries run for a request
+ * does not grow with the number of results.
+ * @author dr6
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc(addFilters = false)
+@ActiveProfiles("test")
+@Import({GraphQLTester.class, EntityCreator.class})
+public class TestBatchLoadingQueries {
+    @Autowired
+    private GraphQLTester tester;
+    @Autowired
+    private EntityCreator entityCreator;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private WorkRepo workRepo;
+    @Autowired
+    private TreatmentTypeRepo treatmentTypeRepo;
+
+    @Test
+    @Transactional
+    public void testLabwareOperationsQueryCount() throws Exception {
+        Sample sample = entityCreator.createSample(entityCreator.createTissue(entityCreator.createDonor("DNR1"), "EXT1"), 1);
+        Labware lw = entityCreator.createLabware("STAN-100", entityCreator.createLabwareType("pair", 1, 2), sample);
+        OperationType opType = entityCreator.createOpType("Bake", null, OperationTypeFlag.IN_PLACE);
+        User user = entityCreator.createUser("user1");
+        final String query = "query { labwareOperations(barcode: \"STAN-100\", operationType: \"Bake\") " +
+                "{ id actions { source { samples { id } } destination { address samples { id } } sample { id } } } }";
+
+        for (int i = 0; i < 2; ++i) {
+            entityCreator.simpleOp(opType, user, lw, lw);
+        }
+        long fewerOpsCount = countStatements(query, 2, "labwareOperations");
+
+        for (int i = 0; i < 8; ++i) {
+            entityCreator.simpleOp(opType, user, lw, lw);
+        }
+        long moreOpsCount = countStatements(query, 10, "labwareOperations");
+
+        assertEquals(fewerOpsCount, moreOpsCount);
+    }
+
+    @Test
+    @Transactional
+    public void testWorksQueryCount() throws Exception {
+        WorkType wt = entityCreator.createWorkType("Drywalling");
+        Project project = entityCreator.createProject("Stargate");
+        Program program = entityCreator.createProgram("Hello");
+        CostCode cc = entityCreator.createCostCode("S400");
+        TreatmentType tt = treatmentTypeRepo.save(new TreatmentType("Heat"));
+        final String query = "query { works(status: [active]) { workNumber treatmentTypes { name } } }";
+        int numWorks = (int) stream(workRepo.findAllByStatusIn(List.of(Work.Status.active))).count();
+
+        for (int i = 0; i < 2; ++i) {
+            createWork(wt, project, program, cc, tt);
+        }
+        long fewerWorksCount = countStatements(query, numWorks + 2, "works");
+
+        for (int i = 0; i < 8; ++i) {
+            createWork(wt, project, program, cc, tt);
+        }
+        long moreWorksCount = countStatements(query, numWorks + 10, "works");
+
+        assertEquals(fewerWorksCount, moreWorksCount);
+    }
+
+    private void createWork(WorkType wt, Project project, Program program, CostCode cc, TreatmentType tt) {
+        Work work = entityCreator.createWork(wt, project, program, cc, null);
+        work.setTreatmentTypes(Set.of(tt));
+        workRepo.save(work);
+    }
+
+    /**
+     * Flushes and clears the persistence context, posts the query, and counts the statements it prepared
+     */
+    private long countStatements(String query, int expectedResults, String resultName) throws Exception {
+        entityManager.flush();
+        entityManager.clear();
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+        Object result = tester.post(query);
+        long count = stats.getPrepareStatementCount();
+        assertNoErrors(result);
+        assertEquals(expectedResults, chainGetList(result, "data", resultName).size());
+        return count;
+    }
+}
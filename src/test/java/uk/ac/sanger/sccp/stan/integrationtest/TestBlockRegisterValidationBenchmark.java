@@ -0,0 +1,138 @@
+package uk.ac.sanger.sccp.stan.integrationtest;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.request.register.BlockRegisterRequest;
+import uk.ac.sanger.sccp.stan.request.register.RegisterResult;
+import uk.ac.sanger.sccp.stan.service.register.FileRegisterService;
+import uk.ac.sanger.sccp.stan.service.register.RegisterValidationFactory;
+import uk.ac.sanger.sccp.stan.service.register.filereader.BlockRegisterFileReader;
+import uk.ac.sanger.sccp.stan.service.register.filereader.BlockRegisterFileReader.Column;
+
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Transactional;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Validates and registers a synthetic file of 2,000 blocks, and logs the statement count and time.
+ * Validation is also run on a small file from the same template, to show how the statement count
+ * changes with the number of rows.
+ * @author dr6
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@Import(EntityCreator.class)
+@Tag("benchmark")
+public class TestBlockRegisterValidationBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(TestBlockRegisterValidationBenchmark.class);
+    private static final int NUM_BLOCKS = 2000, NUM_SMALL = 20, NUM_DONORS = 200;
+
+    @Autowired
+    private EntityCreator entityCreator;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private BlockRegisterFileReader fileReader;
+    @Autowired
+    private RegisterValidationFactory validationFactory;
+    @Autowired
+    private FileRegisterService fileRegisterService;
+
+    @Test
+    @Transactional
+    public void testRegisterBlocks() throws IOException {
+        entityCreator.createBioRisk("biorisk1");
+        Work work = entityCreator.createWork(null, null, null, null, null);
+        User user = entityCreator.createUser("user1");
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        long smallStatements = validate(stats, makeFile(NUM_SMALL, work.getWorkNumber()), NUM_SMALL);
+        MockMultipartFile file = makeFile(NUM_BLOCKS, work.getWorkNumber());
+        long statements = validate(stats, file, NUM_BLOCKS);
+        log.info("Validating {} blocks used {} statements; validating {} blocks used {} statements",
+                NUM_SMALL, smallStatements, NUM_BLOCKS, statements);
+        assertThat(statements).isLessThan(50);
+
+        stats.clear();
+        long start = System.nanoTime();
+        RegisterResult result = fileRegisterService.registerBlocks(user, file);
+        long nanos = System.nanoTime() - start;
+        log.info("Registered {} blocks from a file with {} statements in {} ms", NUM_BLOCKS,
+                stats.getPrepareStatementCount(), nanos / 1_000_000);
+        assertThat(result.getLabware()).hasSize(NUM_BLOCKS);
+    }
+
+    private long validate(Statistics stats, MockMultipartFile file, int numBlocks) throws IOException {
+        BlockRegisterRequest request = fileReader.read(file);
+        stats.clear();
+        long start = System.nanoTime();
+        Collection<String> problems = validationFactory.createBlockRegisterValidation(request).validate();
+        long nanos = System.nanoTime() - start;
+        long statements = stats.getPrepareStatementCount();
+        log.info("Validated {} blocks with {} statements in {} ms", numBlocks, statements, nanos / 1_000_000);
+        assertThat(problems).isEmpty();
+        return statements;
+    }
+
+    static MockMultipartFile makeFile(int numBlocks, String workNumber) throws IOException {
+        try (Workbook wb = new XSSFWorkbook()) {
+            for (int i = 0; i <= BlockRegisterFileReader.SHEET_INDEX; ++i) {
+                wb.createSheet("Sheet" + i);
+            }
+            Sheet sheet = wb.getSheetAt(BlockRegisterFileReader.SHEET_INDEX);
+            Row headingRow = sheet.createRow(1);
+            for (Column column : Column.values()) {
+                headingRow.createCell(column.ordinal())
+                        .setCellValue(column==Column._preamble ? "Mandatory fields" : column.toString());
+            }
+            for (int i = 0; i < numBlocks; ++i) {
+                Row row = sheet.createRow(3 + i);
+                for (Column column : Column.values()) {
+                    String value = switch (column) {
+                        case Work_number -> workNumber;
+                        case Donor_identifier -> "BENCHDONOR" + (i % NUM_DONORS);
+                        case Life_stage -> "adult";
+                        case Species -> Species.HUMAN_NAME;
+                        case Cell_class -> "Tissue";
+                        case Bio_risk -> "biorisk1";
+                        case HuMFre -> "20/0002";
+                        case Slot_address -> "A1";
+                        case Tissue_type -> "Bone";
+                        case External_identifier -> "BENCHEXT" + i;
+                        case Replicate_number -> String.valueOf(1 + i / NUM_DONORS);
+                        case Labware_type -> "Proviasette";
+                        case Fixative, Embedding_medium -> "None";
+                        case External_barcode -> "BENCHXB" + i;
+                        default -> null;
+                    };
+                    Cell cell = row.createCell(column.ordinal());
+                    if (value != null) {
+                        cell.setCellValue(value);
+                    } else if (column==Column.Spatial_location || column==Column.Last_known_section) {
+                        cell.setCellValue(0);
+                    }
+                }
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            wb.write(out);
+            return new MockMultipartFile("file", "blocks.xlsx", null, out.toByteArray());
+        }
+    }
+}
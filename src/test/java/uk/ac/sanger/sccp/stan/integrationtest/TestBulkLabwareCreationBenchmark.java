@@ -0,0 +1,104 @@
+package uk.ac.sanger.sccp.stan.integrationtest;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.LabwareRepo;
+import uk.ac.sanger.sccp.stan.repo.SlotRepo;
+import uk.ac.sanger.sccp.stan.service.LabwareService;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares creating labware the way it used to be created (saving and refreshing each labware in turn)
+ * with creating it in bulk, and logs the statement counts and times.
+ * The labware is given barcodes so that the benchmark does not use up barcode seeds.
+ * @author dr6
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@Import(EntityCreator.class)
+@Tag("benchmark")
+public class TestBulkLabwareCreationBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(TestBulkLabwareCreationBenchmark.class);
+
+    @Autowired
+    private EntityCreator entityCreator;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private LabwareService labwareService;
+    @Autowired
+    private LabwareRepo labwareRepo;
+    @Autowired
+    private SlotRepo slotRepo;
+
+    @ParameterizedTest
+    @ValueSource(ints={1, 10, 100, 1000})
+    @Transactional
+    public void testCreateLabware(int number) {
+        LabwareType lt = entityCreator.createLabwareType("plate", 8, 12);
+        entityManager.flush();
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        stats.clear();
+        long start = System.nanoTime();
+        for (Labware unsaved : unsavedLabware(lt, "STAN-SINGLE", number)) {
+            createAndRefresh(unsaved);
+        }
+        long singleNanos = System.nanoTime() - start;
+        long singleStatements = stats.getPrepareStatementCount();
+
+        stats.clear();
+        start = System.nanoTime();
+        List<Labware> labware = labwareService.createAll(unsavedLabware(lt, "STAN-BULK", number));
+        long bulkNanos = System.nanoTime() - start;
+        long bulkStatements = stats.getPrepareStatementCount();
+
+        assertThat(labware).hasSize(number)
+                .allSatisfy(lw -> assertThat(lw.getSlots()).hasSize(lt.getNumRows() * lt.getNumColumns()));
+        log.info("Created {} labware one at a time (save and refresh) with {} statements in {} ms; in bulk with {} statements in {} ms",
+                number, singleStatements, singleNanos / 1_000_000, bulkStatements, bulkNanos / 1_000_000);
+        assertThat(bulkStatements).isLessThanOrEqualTo(singleStatements);
+    }
+
+    /**
+     * Creates labware the way {@code LabwareService.create} did before labware could be created in bulk:
+     * saves the labware, saves its slots, flushes, and then refreshes the labware to load its slots and
+     * its created time.
+     */
+    private Labware createAndRefresh(Labware unsaved) {
+        Labware lw = labwareRepo.save(unsaved);
+        LabwareType lt = lw.getLabwareType();
+        slotRepo.saveAll(Address.stream(lt.getNumRows(), lt.getNumColumns())
+                .map(address -> new Slot(null, lw.getId(), address, null))
+                .toList());
+        entityManager.flush();
+        entityManager.refresh(lw);
+        return lw;
+    }
+
+    private static List<Labware> unsavedLabware(LabwareType lt, String prefix, int number) {
+        return IntStream.range(0, number)
+                .mapToObj(i -> LabwareService.newLabware(lt, prefix + i, null))
+                .toList();
+    }
+}
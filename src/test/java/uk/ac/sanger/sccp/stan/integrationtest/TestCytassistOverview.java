@@ -260,6 +260,12 @@ public class TestCytassistOverview {
         assertEquals(time(28), co.getLatestBarcodeReleased());
         assertEquals("Strange flag", co.getFlags());
         assertEquals(user.getUsername(), co.getUsers());
+        assertEquals(cyt2.getId(), co.getCytassistOperationId());
+
+        assertEquals(0, coService.checkConsistency());
+        // Nothing has been recorded since the full update
+        assertEquals(0, coService.updateIncremental());
+        assertThat(coRepo.findAll()).containsExactlyInAnyOrderElementsOf(cos);
     }
 
     private Operation createOp(OperationType opType, int timeOffset, Labware lw1, Labware lw2) {
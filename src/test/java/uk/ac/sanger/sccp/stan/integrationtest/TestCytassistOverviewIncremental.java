@@ -0,0 +1,86 @@
+package uk.ac.sanger.sccp.stan.integrationtest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.CytassistOverviewRepo;
+import uk.ac.sanger.sccp.stan.repo.WorkRepo;
+import uk.ac.sanger.sccp.stan.service.LineageService;
+import uk.ac.sanger.sccp.stan.service.cytassistoverview.CytassistOverviewService;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static uk.ac.sanger.sccp.utils.BasicUtils.stream;
+
+/**
+ * Tests the incremental update of the cytassist overview table against the database,
+ * with the slot-sample lineage being recorded
+ * @author dr6
+ */
+@SpringBootTest(properties = "stan.lineage.record=true")
+@ActiveProfiles("test")
+@Import(EntityCreator.class)
+public class TestCytassistOverviewIncremental {
+    @Autowired
+    private EntityCreator entityCreator;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private CytassistOverviewService coService;
+    @Autowired
+    private CytassistOverviewRepo coRepo;
+    @Autowired
+    private LineageService lineageService;
+    @Autowired
+    private WorkRepo workRepo;
+
+    @Test
+    @Transactional
+    public void testUpdateIncremental() {
+        User user = entityCreator.createUser("user1");
+        Work work = entityCreator.createWork(null, null, null, null, null);
+        Sample sample = entityCreator.createSample(null, null);
+        LabwareType lt = entityCreator.getTubeType();
+        Labware[] lws = IntStream.range(0, 3)
+                .mapToObj(i -> entityCreator.createLabware("STAN-"+i, lt, sample))
+                .toArray(Labware[]::new);
+        OperationType cytOpType = entityCreator.createOpType("Cytassist", null, OperationTypeFlag.IN_PLACE);
+        OperationType transferOpType = entityCreator.createOpType("Transfer", null);
+        Operation cytOp = entityCreator.simpleOp(cytOpType, user, lws[0], lws[1]);
+        work.getOperationIds().add(cytOp.getId());
+        workRepo.save(work);
+        entityManager.flush();
+        lineageService.backfill();
+        assertTrue(lineageService.isComplete());
+
+        coService.update();
+        assertEquals(lws[1].getBarcode(), getRow(cytOp).getLatestBarcode());
+
+        // Nothing has been recorded since the full update
+        assertEquals(0, coService.updateIncremental());
+
+        Operation transferOp = entityCreator.simpleOp(transferOpType, user, lws[1], lws[2]);
+        lineageService.recordLineage(transferOp, transferOp.getActions());
+        entityManager.flush();
+
+        assertEquals(1, coService.updateIncremental());
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals(lws[2].getBarcode(), getRow(cytOp).getLatestBarcode());
+        assertEquals(0, coService.checkConsistency());
+    }
+
+    private CytassistOverview getRow(Operation cytOp) {
+        return stream(coRepo.findAll())
+                .filter(co -> cytOp.getId().equals(co.getCytassistOperationId()))
+                .findAny()
+                .orElseThrow();
+    }
+}
@@ -19,8 +19,7 @@ import uk.ac.sanger.sccp.stan.repo.WorkRepo;
 import javax.transaction.Transactional;
 import java.io.IOException;
 import java.nio.file.*;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
@@ -94,6 +93,7 @@ public class TestFileStore {
         String url = upload(filename1, fileContent1, workNumber, workNumber2);
 
         assertEquals(fileContent1, download(url, filename1));
+        checkConditionalDownloads(url, fileContent1);
 
         var filesData = listFiles(workNumber);
         assertThat(filesData).hasSize(1);
@@ -135,6 +135,66 @@ public class TestFileStore {
 
         assertFileData(filesData.get(index0), filename1, url, username, workNumber);
         assertFileData(filesData.get(1-index0), filename2, url2, username, workNumber);
+
+        // The first content is still used by the second work, so three blobs are stored
+        assertEquals(3, countStoredFiles());
+        String url3 = upload(filename2, fileContent2, workNumber2);
+        assertEquals(fileContent2, download(url3, filename2));
+        assertEquals(3, countStoredFiles());
+    }
+
+    @Test
+    @Transactional
+    public void testChunkedUpload() throws Exception {
+        Work work = entityCreator.createWork(null, null, null, null, null);
+        User user = entityCreator.createUser("user1", User.Role.enduser);
+        workEventRepo.save(new WorkEvent(work, WorkEvent.Type.create, user, null));
+        tester.setUser(user);
+        final String content = "Alpha beta gamma!";
+        final String filename = "chunked.txt";
+
+        var r = tester.getMockMvc().perform(MockMvcRequestBuilders.post("/files/uploads")
+                        .queryParam("name", filename)
+                        .queryParam("size", String.valueOf(content.length()))
+                        .queryParam("chunkSize", "4")
+                        .queryParam("workNumber", work.getWorkNumber()))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse();
+        String uploadUrl = r.getHeader("location");
+        assertNotNull(uploadUrl);
+
+        for (int index : List.of(3, 0, 4, 0, 2)) {
+            String chunk = content.substring(4 * index, Math.min(content.length(), 4 * index + 4));
+            tester.getMockMvc().perform(MockMvcRequestBuilders.put(uploadUrl + "/chunks/" + index)
+                    .content(chunk.getBytes())).andExpect(status().isOk());
+        }
+        tester.getMockMvc().perform(MockMvcRequestBuilders.put(uploadUrl + "/chunks/1")
+                .header("X-Chunk-SHA256", "0".repeat(64))
+                .content("a be".getBytes())).andExpect(status().isBadRequest());
+        tester.getMockMvc().perform(MockMvcRequestBuilders.post(uploadUrl + "/complete"))
+                .andExpect(status().isConflict());
+        String progress = tester.getMockMvc().perform(MockMvcRequestBuilders.get(uploadUrl))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(progress).contains("\"missingChunks\":[1]");
+
+        tester.getMockMvc().perform(MockMvcRequestBuilders.put(uploadUrl + "/chunks/1")
+                .content("a be".getBytes())).andExpect(status().isOk());
+        String fileUrl = tester.getMockMvc().perform(MockMvcRequestBuilders.post(uploadUrl + "/complete"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getHeader("location");
+
+        assertEquals(content, download(fileUrl, filename));
+        var filesData = listFiles(work.getWorkNumber());
+        assertThat(filesData).hasSize(1);
+        assertFileData(filesData.getFirst(), filename, fileUrl, user.getUsername(), work.getWorkNumber());
+        tester.getMockMvc().perform(MockMvcRequestBuilders.get(uploadUrl)).andExpect(status().isNotFound());
+    }
+
+    private long countStoredFiles() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            return paths.filter(Files::isRegularFile).count();
+        }
     }
 
     private static String nextFileUrl(String url) {
@@ -167,6 +227,21 @@ public class TestFileStore {
         return r.getContentAsString();
     }
 
+    private void checkConditionalDownloads(String downloadUrl, String content) throws Exception {
+        String eTag = tester.getMockMvc().perform(MockMvcRequestBuilders.get(downloadUrl))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(eTag).startsWith("\"").hasSize(66);
+        var r = tester.getMockMvc().perform(MockMvcRequestBuilders.get(downloadUrl)
+                        .header("Range", "bytes=1-3").header("If-Range", eTag))
+                .andExpect(status().isPartialContent())
+                .andReturn().getResponse();
+        assertEquals(content.substring(1, 4), r.getContentAsString());
+        assertEquals("bytes 1-3/" + content.length(), r.getHeader("Content-Range"));
+        tester.getMockMvc().perform(MockMvcRequestBuilders.get(downloadUrl).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+    }
+
     private void assertFileData(Map<String, ?> data, String filename, String url, String username, String workNumber) throws IOException {
         assertNotNull(data.get("created"));
         assertEquals(filename, data.get("name"));
@@ -176,10 +251,12 @@ public class TestFileStore {
     }
 
     private void deleteTestFiles(Path directory) throws IOException {
-        try (Stream<Path> files = Files.list(directory)) {
-            Iterable<Path> pathIter = files::iterator;
+        try (Stream<Path> files = Files.walk(directory)) {
+            Iterable<Path> pathIter = files.sorted(Comparator.reverseOrder())::iterator;
             for (Path path : pathIter) {
-                Files.delete(path);
+                if (!path.equals(directory)) {
+                    Files.delete(path);
+                }
             }
         }
     }
@@ -0,0 +1,136 @@
+package uk.ac.sanger.sccp.stan.integrationtest;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.config.FlagLookupConfig;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.model.LabwareFlag.Priority;
+import uk.ac.sanger.sccp.stan.repo.*;
+import uk.ac.sanger.sccp.stan.request.LabwareFlagged;
+import uk.ac.sanger.sccp.stan.service.flag.*;
+import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Transactional;
+import java.util.*;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Looks up flags on a synthetic set of mostly unflagged labware with and without the {@link FlagFilter},
+ * along the paths used by history (a batch of labware) and by finding a single labware,
+ * and logs the statement counts and times.
+ * @author dr6
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@Import(EntityCreator.class)
+@Tag("benchmark")
+public class TestFlagFilterBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(TestFlagFilterBenchmark.class);
+    private static final int NUM_LABWARE = 2000;
+
+    @Autowired
+    private EntityCreator entityCreator;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private Ancestoriser ancestoriser;
+    @Autowired
+    private LabwareFlagRepo flagRepo;
+    @Autowired
+    private LabwareFlagEffectiveRepo effectiveRepo;
+    @Autowired
+    private OperationRepo opRepo;
+    @Autowired
+    private ActionRepo actionRepo;
+    @Autowired
+    private FlagEffectiveService flagEffectiveService;
+
+    @ParameterizedTest
+    @ValueSource(booleans={false,true})
+    @Transactional
+    public void testLookUpFlags(boolean useEffectiveFlags) {
+        User user = entityCreator.createUser("user1");
+        Sample sample = entityCreator.createSample(entityCreator.createTissue(entityCreator.createDonor("DONOR1"), "EXT1"), 1);
+        OperationType opType = entityCreator.createOpType("opname", null);
+        List<Labware> labware = new ArrayList<>(NUM_LABWARE);
+        for (int i = 0; i < NUM_LABWARE; ++i) {
+            labware.add(entityCreator.createTube("STAN-" + (1000 + i), sample));
+        }
+        // A chain of three labware flagged at the start
+        Labware flaggedLw = labware.get(0);
+        for (int i = 1; i < 3; ++i) {
+            Operation op = opRepo.save(new Operation(null, opType, null, null, user));
+            actionRepo.save(new Action(null, op.getId(), labware.get(i-1).getFirstSlot(), labware.get(i).getFirstSlot(), sample, sample));
+        }
+        Operation flagOp = opRepo.save(new Operation(null, opType, null, null, user));
+        actionRepo.save(new Action(null, flagOp.getId(), flaggedLw.getFirstSlot(), flaggedLw.getFirstSlot(), sample, sample));
+        LabwareFlag flag = flagRepo.save(new LabwareFlag(null, flaggedLw, "Alpha", user, flagOp.getId(), Priority.flag));
+        entityManager.flush();
+        flagEffectiveService.recordFlags(List.of(flag));
+        entityManager.flush();
+
+        FlagFilter filter = new FlagFilter(true, 10_000, 0.01);
+        filter.add(labware.subList(0, 3).stream().map(Labware::getId).toList());
+        filter.markReady(0);
+        FlagLookupConfig config = mock(FlagLookupConfig.class);
+        when(config.isUseEffectiveFlags()).thenReturn(useEffectiveFlags);
+        // Between polls of the shared version, the filter is checked without touching the database
+        FlagEffectiveService filterChecker = mock(FlagEffectiveService.class);
+        when(filterChecker.checkFilter()).thenReturn(true);
+        FlagLookupService filtered = new FlagLookupServiceImp(ancestoriser, flagRepo, opRepo, effectiveRepo, filter,
+                filterChecker, config);
+        FlagLookupService unfiltered = new FlagLookupServiceImp(ancestoriser, flagRepo, opRepo, effectiveRepo,
+                new FlagFilter(false, 1, 0.01), mock(FlagEffectiveService.class), config);
+        String mode = (useEffectiveFlags ? "effective" : "ancestry");
+
+        long unfilteredHistory = measure(mode + " history, unfiltered", unfiltered::getLabwareFlagged, labware);
+        long filteredHistory = measure(mode + " history, filtered", filtered::getLabwareFlagged, labware);
+        long unfilteredFind = measure(mode + " find, unfiltered",
+                lws -> lws.stream().map(unfiltered::getLabwareFlagged).toList(), labware);
+        long filteredFind = measure(mode + " find, filtered",
+                lws -> lws.stream().map(filtered::getLabwareFlagged).toList(), labware);
+
+        log.info("Flag filter stats ({}): {}", mode, filter.getStats());
+        assertThat(filteredHistory).isLessThanOrEqualTo(unfilteredHistory);
+        assertThat(filteredFind).isLessThan(unfilteredFind);
+    }
+
+    /**
+     * Looks up flags on the labware, checks the result and logs the statements and time taken
+     * @return the number of statements prepared
+     */
+    private long measure(String description, Function<List<Labware>, List<LabwareFlagged>> lookup, List<Labware> labware) {
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManager.clear();
+        stats.clear();
+        long start = System.nanoTime();
+        List<LabwareFlagged> lfs = lookup.apply(labware);
+        long nanos = System.nanoTime() - start;
+        long statements = stats.getPrepareStatementCount();
+        log.info("Looked up flags ({}) for {} labware with {} statements in {} ms", description, labware.size(),
+                statements, nanos / 1_000_000);
+        assertThat(lfs).hasSize(labware.size());
+        for (int i = 0; i < lfs.size(); ++i) {
+            assertThat(lfs.get(i).getFlagPriority()).isEqualTo(i < 3 ? Priority.flag : null);
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.sanger.sccp.stan.integrationtest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.Transactor;
+import uk.ac.sanger.sccp.stan.config.FlagLookupConfig;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.model.LabwareFlag.Priority;
+import uk.ac.sanger.sccp.stan.repo.*;
+import uk.ac.sanger.sccp.stan.service.ReferenceDataVersionService;
+import uk.ac.sanger.sccp.stan.service.flag.FlagEffectiveServiceImp;
+import uk.ac.sanger.sccp.stan.service.flag.FlagFilter;
+import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.time.Clock;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests that the flag filters of two instances of the application sharing a database
+ * stay in step when one of them flags labware
+ * @author dr6
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(EntityCreator.class)
+public class TestFlagFilterInstances {
+    @Autowired
+    private EntityCreator entityCreator;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private Transactor transactor;
+    @Autowired
+    private Ancestoriser ancestoriser;
+    @Autowired
+    private ActionRepo actionRepo;
+    @Autowired
+    private LabwareFlagEffectiveRepo effectiveRepo;
+    @Autowired
+    private LabwareFlagRepo flagRepo;
+    @Autowired
+    private ReferenceDataVersionService versionService;
+    @Autowired
+    private Clock clock;
+
+    @Test
+    @Transactional
+    public void testFlagOnOtherInstance() {
+        User user = entityCreator.createUser("user1");
+        Sample sample = entityCreator.createSample(null, null);
+        OperationType flagOpType = entityCreator.createOpType("Flag labware", null, OperationTypeFlag.IN_PLACE);
+        Labware lw1 = entityCreator.createTube("STAN-1", sample);
+        Labware lw2 = entityCreator.createTube("STAN-2", sample);
+        flag(lw1, flagOpType, user);
+
+        FlagLookupConfig config = mock(FlagLookupConfig.class);
+        when(config.isFilterEnabled()).thenReturn(true);
+        FlagFilter filterA = new FlagFilter(true, 1000, 0.001);
+        FlagFilter filterB = new FlagFilter(true, 1000, 0.001);
+        FlagEffectiveServiceImp instanceA = instance(filterA, config);
+        FlagEffectiveServiceImp instanceB = instance(filterB, config);
+        instanceA.loadFilter();
+        instanceB.loadFilter();
+        assertTrue(instanceB.checkFilter());
+        assertTrue(filterB.mightBeFlagged(lw1.getId()));
+        assertFalse(filterB.mightBeFlagged(lw2.getId()));
+
+        LabwareFlag flag2 = flag(lw2, flagOpType, user);
+        instanceA.recordFlags(List.of(flag2));
+        entityManager.flush();
+        assertTrue(filterA.mightBeFlagged(lw2.getId()));
+        assertFalse(filterB.mightBeFlagged(lw2.getId()));
+
+        // Instance B sees the shared version has changed and reloads its filter
+        assertTrue(instanceB.checkFilter());
+        assertTrue(filterB.mightBeFlagged(lw2.getId()));
+        assertEquals(versionService.loadVersion(FlagFilter.VERSION_NAME), filterB.getVersion());
+    }
+
+    private FlagEffectiveServiceImp instance(FlagFilter filter, FlagLookupConfig config) {
+        return new FlagEffectiveServiceImp(transactor, ancestoriser, actionRepo, effectiveRepo, flagRepo, filter,
+                versionService, clock, config);
+    }
+
+    private LabwareFlag flag(Labware lw, OperationType opType, User user) {
+        Operation op = entityCreator.simpleOp(opType, user, lw, lw);
+        LabwareFlag flag = flagRepo.save(new LabwareFlag(null, lw, "Alpha", user, op.getId(), Priority.flag));
+        entityManager.flush();
+        return flag;
+    }
+}
@@ -0,0 +1,87 @@
+package uk.ac.sanger.sccp.stan.integrationtest;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.service.LabwareService;
+import uk.ac.sanger.sccp.stan.service.OperationService;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that slots and actions are inserted in JDBC batches, and logs the write throughput.
+ * @author dr6
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@Import(EntityCreator.class)
+@Tag("benchmark")
+public class TestJdbcBatchingBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(TestJdbcBatchingBenchmark.class);
+    private static final int NUM_LABWARE = 20;
+
+    @Autowired
+    private EntityCreator entityCreator;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private LabwareService labwareService;
+    @Autowired
+    private OperationService opService;
+
+    @Test
+    @Transactional
+    public void testBatchedInserts() {
+        LabwareType lt = entityCreator.createLabwareType("plate", 8, 12);
+        Sample sample = entityCreator.createSample(entityCreator.createTissue(entityCreator.createDonor("DONOR1"), "EXT1"), 1);
+        Labware source = entityCreator.createLabware("STAN-SRC", entityCreator.getTubeType(), sample);
+        OperationType opType = entityCreator.createOpType("Transfer", null);
+        User user = entityCreator.createUser("user1");
+        entityManager.flush();
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        stats.clear();
+        long start = System.nanoTime();
+        List<Labware> labware = labwareService.create(lt, NUM_LABWARE);
+        long slotNanos = System.nanoTime() - start;
+        long slotStatements = stats.getPrepareStatementCount();
+        final int numSlots = NUM_LABWARE * lt.getNumRows() * lt.getNumColumns();
+        assertEquals(numSlots, labware.stream().mapToInt(lw -> lw.getSlots().size()).sum());
+
+        Slot sourceSlot = source.getFirstSlot();
+        List<Action> actions = new ArrayList<>(numSlots);
+        for (Labware lw : labware) {
+            for (Slot slot : lw.getSlots()) {
+                actions.add(new Action(null, null, sourceSlot, slot, sample, sample));
+            }
+        }
+        stats.clear();
+        start = System.nanoTime();
+        opService.createOperation(opType, user, actions, null);
+        long actionNanos = System.nanoTime() - start;
+        long actionStatements = stats.getPrepareStatementCount();
+
+        log.info("Inserted {} slots with {} statements in {} ms; {} actions with {} statements in {} ms",
+                numSlots, slotStatements, slotNanos / 1_000_000, actions.size(), actionStatements, actionNanos / 1_000_000);
+        assertThat(slotStatements).isLessThan(numSlots / 10);
+        assertThat(actionStatements).isLessThan(numSlots / 10);
+    }
+}
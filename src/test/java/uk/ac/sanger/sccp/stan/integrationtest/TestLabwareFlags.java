@@ -67,10 +67,16 @@ public class TestLabwareFlags {
 
     private Labware createOp(Labware source, LabwareType lt, OperationType ot, User user, Sample sample, String barcode) {
         Labware lw = entityCreator.createLabware(barcode, lt, sample);
-        entityCreator.simpleOp(ot, user, source, lw);
+        recordOperation(entityCreator.simpleOp(ot, user, source, lw));
         return lw;
     }
 
+    /**
+     * Hook for subclasses to record anything else that the operation service would record
+     * for an operation created directly in the test
+     */
+    void recordOperation(Operation op) {}
+
     private void testLookUpFlags() throws Exception {
         String query = tester.readGraphQL("lookupflags.graphql");
         Object response = tester.post(query);
@@ -0,0 +1,21 @@
+package uk.ac.sanger.sccp.stan.integrationtest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import uk.ac.sanger.sccp.stan.model.Operation;
+import uk.ac.sanger.sccp.stan.service.flag.FlagEffectiveService;
+
+/**
+ * Runs the {@link TestLabwareFlags labware flag tests} with flags looked up in the effective flags table
+ * @author dr6
+ */
+@SpringBootTest(properties = "stan.flag.lookup.effective=true")
+public class TestLabwareFlagsEffective extends TestLabwareFlags {
+    @Autowired
+    FlagEffectiveService flagEffectiveService;
+
+    @Override
+    void recordOperation(Operation op) {
+        flagEffectiveService.recordOperation(op, op.getActions());
+    }
+}
@@ -0,0 +1,101 @@
+package uk.ac.sanger.sccp.stan.integrationtest;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.GraphQLTester;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.SlotRepo;
+import uk.ac.sanger.sccp.stan.service.store.StorelightClient;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.sanger.sccp.stan.integrationtest.IntegrationTestUtils.*;
+
+/**
+ * Compares the number of SQL statements run by a slot copy request with a cold and a warm
+ * second-level cache.
+ * @author dr6
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc(addFilters = false)
+@ActiveProfiles("test")
+@Import({GraphQLTester.class, EntityCreator.class})
+@Tag("benchmark")
+public class TestSecondLevelCacheBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(TestSecondLevelCacheBenchmark.class);
+
+    @Autowired
+    private GraphQLTester tester;
+    @Autowired
+    private EntityCreator entityCreator;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private SlotRepo slotRepo;
+
+    @MockBean
+    StorelightClient mockStorelightClient;
+
+    @Test
+    @Transactional
+    public void testSlotCopyStatementCount() throws Exception {
+        Tissue tissue = entityCreator.createTissue(entityCreator.createDonor("DONOR1"), "TISSUE1");
+        Sample sample = entityCreator.createSample(tissue, 1);
+        LabwareType slideType = entityCreator.createLabwareType("4x1", 4, 1);
+        final Address A1 = new Address(1,1);
+        final Address B1 = new Address(2,1);
+        for (String barcode : List.of("STAN-01", "STAN-02")) {
+            Labware slide = entityCreator.createLabware(barcode, slideType);
+            slide.getSlot(A1).getSamples().add(sample);
+            slide.getSlot(B1).getSamples().add(sample);
+            slotRepo.saveAll(List.of(slide.getSlot(A1), slide.getSlot(B1)));
+        }
+        stubStorelightUnstore(mockStorelightClient);
+        Work work = entityCreator.createWork(null, null, null, null, null);
+        tester.setUser(entityCreator.createUser("user1"));
+        String mutation = tester.readGraphQL("slotcopy.graphql").replace("SGP5000", work.getWorkNumber());
+
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+
+        long coldCount = countStatements(stats, mutation);
+        long warmCount = countStatements(stats, mutation.replace("STAN-01", "STAN-02"));
+        long warmHits = stats.getSecondLevelCacheHitCount() + stats.getQueryCacheHitCount();
+
+        log.info("slotCopy SQL statements: cold cache {}, warm cache {} ({} cache hits)",
+                coldCount, warmCount, warmHits);
+        assertThat(warmHits).isPositive();
+        assertThat(warmCount).isLessThan(coldCount);
+    }
+
+    /**
+     * Flushes and clears the persistence context, posts the mutation, and counts the statements it prepared
+     */
+    private long countStatements(Statistics stats, String mutation) throws Exception {
+        entityManager.flush();
+        entityManager.clear();
+        stats.clear();
+        Object result = tester.post(mutation);
+        long count = stats.getPrepareStatementCount();
+        assertNoErrors(result);
+        assertThat(chainGetList(result, "data", "slotCopy", "labware")).hasSize(1);
+        return count;
+    }
+}
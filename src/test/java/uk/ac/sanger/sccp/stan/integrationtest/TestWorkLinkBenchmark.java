@@ -0,0 +1,138 @@
+package uk.ac.sanger.sccp.stan.integrationtest;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.*;
+import uk.ac.sanger.sccp.stan.service.work.WorkService;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import javax.transaction.Transactional;
+import java.lang.reflect.*;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Links operations to one work in repeated rounds, and logs the time and statement count of each round
+ * as the number of existing links grows.
+ * Statements are counted as they are executed on the JDBC connections, so the batches that
+ * {@link WorkLinkRepo} sends directly through the session's connection are counted
+ * as well as the statements run by Hibernate.
+ * @author dr6
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Import({EntityCreator.class, TestWorkLinkBenchmark.StatementCountingConfig.class})
+@Tag("benchmark")
+public class TestWorkLinkBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(TestWorkLinkBenchmark.class);
+    private static final int NUM_ROUNDS = 10, OPS_PER_ROUND = 200;
+
+    @Autowired
+    private EntityCreator entityCreator;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private AtomicLong executedStatements;
+    @Autowired
+    private WorkService workService;
+    @Autowired
+    private WorkLinkRepo workLinkRepo;
+    @Autowired
+    private OperationRepo opRepo;
+    @Autowired
+    private OperationTypeRepo opTypeRepo;
+    @Autowired
+    private UserRepo userRepo;
+
+    @Test
+    @Transactional
+    public void testLinkingAsWorkGrows() {
+        Work work = entityCreator.createWork(null, null, null, null, null);
+        OperationType opType = entityCreator.getAny(opTypeRepo);
+        User user = entityCreator.getAny(userRepo);
+        entityManager.flush();
+
+        List<Long> statementCounts = new ArrayList<>(NUM_ROUNDS);
+        for (int round = 0; round < NUM_ROUNDS; ++round) {
+            List<Operation> ops = IntStream.range(0, OPS_PER_ROUND)
+                    .mapToObj(i -> opRepo.save(new Operation(null, opType, null, List.of(), user)))
+                    .toList();
+            entityManager.flush();
+            long statementsBefore = executedStatements.get();
+            long start = System.nanoTime();
+            workService.link(work, ops);
+            entityManager.flush();
+            long nanos = System.nanoTime() - start;
+            long statements = executedStatements.get() - statementsBefore;
+            statementCounts.add(statements);
+            log.info("Linked {} operations to a work with {} existing links using {} statements in {} ms",
+                    OPS_PER_ROUND, round * OPS_PER_ROUND, statements, nanos / 1_000_000);
+            assertThat(workLinkRepo.findLinkedOperationIds(work.getId(), ops.stream().map(Operation::getId).toList()))
+                    .hasSize(OPS_PER_ROUND);
+        }
+        assertThat(workLinkRepo.streamOperationIds(work.getId())).hasSize(NUM_ROUNDS * OPS_PER_ROUND);
+        assertThat(statementCounts).containsOnly(statementCounts.getFirst());
+    }
+
+    /**
+     * Wraps the data source so that every statement executed on its connections is counted
+     */
+    @TestConfiguration
+    static class StatementCountingConfig {
+        private final AtomicLong executedStatements = new AtomicLong();
+
+        @Bean
+        public AtomicLong executedStatements() {
+            return this.executedStatements;
+        }
+
+        @Bean
+        public BeanPostProcessor statementCountingPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return (bean instanceof DataSource ? proxy(DataSource.class, bean) : bean);
+                }
+            };
+        }
+
+        private Object proxy(Class<?> type, Object target) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+                if (method.getName().startsWith("execute")) {
+                    executedStatements.incrementAndGet();
+                }
+                Object result;
+                try {
+                    result = method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+                if (result instanceof Connection && method.getReturnType()==Connection.class) {
+                    return proxy(Connection.class, result);
+                }
+                if (result instanceof Statement && Statement.class.isAssignableFrom(method.getReturnType())) {
+                    return proxy(method.getReturnType(), result);
+                }
+                return result;
+            });
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package uk.ac.sanger.sccp.stan.integrationtest;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.*;
+import uk.ac.sanger.sccp.stan.request.WorkProgress;
+import uk.ac.sanger.sccp.stan.service.WorkProgressServiceImp;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static uk.ac.sanger.sccp.utils.BasicUtils.asList;
+
+/**
+ * Records and loads the progress of a synthetic set of works, and logs the statement count and time.
+ * @author dr6
+ */
+@SpringBootTest(properties = {"spring.jpa.properties.hibernate.generate_statistics=true", "stan.workprogress.stored=true"})
+@ActiveProfiles("test")
+@Import(EntityCreator.class)
+@Tag("benchmark")
+public class TestWorkProgressBenchmark {
+    private static final Logger log = LoggerFactory.getLogger(TestWorkProgressBenchmark.class);
+    private static final int NUM_WORKS = 5000;
+
+    @Autowired
+    private EntityCreator entityCreator;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private WorkProgressServiceImp workProgressService;
+    @Autowired
+    private WorkRepo workRepo;
+    @Autowired
+    private WorkLinkRepo workLinkRepo;
+    @Autowired
+    private OperationRepo opRepo;
+    @Autowired
+    private ActionRepo actionRepo;
+    @Autowired
+    private OperationTypeRepo opTypeRepo;
+    @Autowired
+    private LabwareTypeRepo lwTypeRepo;
+
+    @Test
+    @Transactional
+    public void testLoadProgress() {
+        Work template = entityCreator.createWork(null, null, null, null, null);
+        List<Work> works = asList(workRepo.saveAll(IntStream.range(0, NUM_WORKS)
+                .mapToObj(i -> new Work(null, "SGPB" + i, template.getWorkType(), null, template.getProject(),
+                        template.getProgram(), template.getCostCode(), Work.Status.active))
+                .toList()));
+
+        OperationType sectionType = opTypeRepo.getByName("Section");
+        OperationType stainType = opTypeRepo.getByName("Stain");
+        User user = entityCreator.createUser("user1");
+        Sample sample = entityCreator.createSample(entityCreator.createTissue(entityCreator.createDonor("DONOR1"), "EXT1"), 1);
+        Labware source = entityCreator.createTube("STAN-SRC", sample);
+        Labware dest = entityCreator.createLabware("STAN-DST", lwTypeRepo.getByName("96 well plate"), sample);
+
+        List<Operation> ops = new ArrayList<>(2 * NUM_WORKS);
+        for (int i = 0; i < NUM_WORKS; ++i) {
+            ops.add(new Operation(null, sectionType, null, List.of(), user));
+            ops.add(new Operation(null, stainType, null, List.of(), user));
+        }
+        opRepo.saveAll(ops);
+        actionRepo.saveAll(ops.stream()
+                .map(op -> new Action(null, op.getId(), source.getFirstSlot(), dest.getFirstSlot(), sample, sample))
+                .toList());
+        for (int i = 0; i < NUM_WORKS; ++i) {
+            workLinkRepo.insertOperationLinks(works.get(i).getId(), List.of(ops.get(2*i).getId(), ops.get(2*i+1).getId()));
+        }
+        entityManager.flush();
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        stats.clear();
+        long start = System.nanoTime();
+        workProgressService.refresh(works.stream().map(Work::getId).toList());
+        long nanos = System.nanoTime() - start;
+        log.info("Recorded progress for {} works with {} statements in {} ms", NUM_WORKS,
+                stats.getPrepareStatementCount(), nanos / 1_000_000);
+
+        stats.clear();
+        start = System.nanoTime();
+        List<WorkProgress> wps = workProgressService.getProgressForWorks(works);
+        nanos = System.nanoTime() - start;
+        long statements = stats.getPrepareStatementCount();
+
+        log.info("Loaded progress for {} works with {} statements in {} ms", NUM_WORKS, statements, nanos / 1_000_000);
+        assertThat(wps).hasSize(NUM_WORKS)
+                .allSatisfy(wp -> assertThat(wp.getTimestamps()).extracting(WorkProgress.WorkProgressTimestamp::getType)
+                        .contains("Section", "Stain"));
+        assertThat(statements).isLessThan(10);
+    }
+}
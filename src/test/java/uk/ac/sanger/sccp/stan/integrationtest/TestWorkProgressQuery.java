@@ -25,7 +25,7 @@ import static uk.ac.sanger.sccp.stan.integrationtest.IntegrationTestUtils.chainG
  * Tests the work progress query
  * @author dr6
  */
-@SpringBootTest
+@SpringBootTest(properties = "stan.workprogress.stored=true")
 @AutoConfigureMockMvc(addFilters = false)
 @ActiveProfiles("test")
 @Import({GraphQLTester.class, EntityCreator.class})
@@ -112,6 +112,10 @@ public class TestWorkProgressQuery {
         work.setOperationIds(Arrays.stream(ops).map(Operation::getId).collect(toSet()));
         work.setStatus(Work.Status.paused);
         work = workRepo.save(work);
+        entityManager.flush();
+        tester.setUser(entityCreator.createUser("admo", User.Role.admin));
+        Object rebuildResult = tester.post("mutation { rebuildWorkProgress }");
+        assertThat((Integer) chainGet(rebuildResult, "data", "rebuildWorkProgress")).isGreaterThanOrEqualTo(1);
 
         // Setup for making workComment use the correct workEvent
         Comment pausedComment = new Comment(100, "This work is paused", "work status");
@@ -54,4 +54,52 @@ public class TestActionRepo {
         assertThat(actionRepo.findSourceLabwareIdsForDestinationLabwareIds(List.of(lw2.getId()))).containsExactly(lw1.getId());
         assertThat(actionRepo.findSourceLabwareIdsForDestinationLabwareIds(List.of(lw1.getId()))).isEmpty();
     }
+
+    @Transactional
+    @Test
+    public void testLineage() {
+        User user = entityCreator.createUser("user1");
+        Donor donor = entityCreator.createDonor("DONOR1");
+        Tissue tissue = entityCreator.createTissue(donor, "TISSUE1");
+        Sample sample = entityCreator.createSample(tissue, null);
+
+        LabwareType lt = entityCreator.createLabwareType("lwtype", 1, 1);
+        Slot slot1 = entityCreator.createLabware("STAN-01", lt, sample).getFirstSlot();
+        Slot slot2 = entityCreator.createLabware("STAN-02", lt, sample).getFirstSlot();
+        Slot slot3 = entityCreator.createLabware("STAN-03", lt, sample).getFirstSlot();
+        OperationType opType = entityCreator.createOpType("optype", null);
+        Operation op1 = opRepo.save(new Operation(null, opType, null, null, user));
+        Action action1 = actionRepo.save(new Action(null, op1.getId(), slot1, slot2, sample, sample));
+        Operation op2 = opRepo.save(new Operation(null, opType, null, null, user));
+        Action action2 = actionRepo.save(new Action(null, op2.getId(), slot2, slot3, sample, sample));
+
+        final List<Integer> sampleIds = List.of(sample.getId());
+        assertThat(actionRepo.findAllAncestralActions(List.of(slot3.getId()), sampleIds)).isEmpty();
+
+        // The recursive queries do not need the lineage table
+        assertThat(actionRepo.findAllAncestralActionsRecursive(List.of(slot3.getId()), sampleIds)).containsExactlyInAnyOrder(action1, action2);
+        assertThat(actionRepo.findAllAncestralActionsRecursive(List.of(slot2.getId()), sampleIds)).containsExactly(action1);
+        assertThat(actionRepo.findAllAncestralActionsRecursive(List.of(slot1.getId()), sampleIds)).isEmpty();
+        assertThat(actionRepo.findAllDescendantActionsRecursive(List.of(slot1.getId()), sampleIds)).containsExactlyInAnyOrder(action1, action2);
+        assertThat(actionRepo.findAllDescendantActionsRecursive(List.of(slot2.getId()), sampleIds)).containsExactly(action2);
+        assertThat(actionRepo.findAllDescendantActionsRecursive(List.of(slot3.getId()), sampleIds)).isEmpty();
+
+        int minOpId = op1.getId();
+        int maxOpId = op2.getId();
+        assertThat(actionRepo.insertReflexiveLineage(minOpId, maxOpId)).isEqualTo(3);
+        int added = 0;
+        int n;
+        while ((n = actionRepo.insertLineageClosure(minOpId, maxOpId)) > 0) {
+            added += n;
+        }
+        assertThat(added).isEqualTo(3);
+
+        assertThat(actionRepo.findAllAncestralActions(List.of(slot3.getId()), sampleIds)).containsExactlyInAnyOrder(action1, action2);
+        assertThat(actionRepo.findAllAncestralActions(List.of(slot2.getId()), sampleIds)).containsExactly(action1);
+        assertThat(actionRepo.findAllAncestralActions(List.of(slot1.getId()), sampleIds)).isEmpty();
+        assertThat(actionRepo.findAllDescendantActions(List.of(slot1.getId()), sampleIds)).containsExactlyInAnyOrder(action1, action2);
+        assertThat(actionRepo.findAllDescendantActions(List.of(slot2.getId()), sampleIds)).containsExactly(action2);
+        assertThat(actionRepo.findAllDescendantActions(List.of(slot3.getId()), sampleIds)).isEmpty();
+        assertThat(actionRepo.findMaxOperationId()).isEqualTo(maxOpId);
+    }
 }
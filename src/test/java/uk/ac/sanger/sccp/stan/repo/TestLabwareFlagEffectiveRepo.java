@@ -0,0 +1,88 @@
+package uk.ac.sanger.sccp.stan.repo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.model.LabwareFlag.Priority;
+
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests {@link LabwareFlagEffectiveRepo}
+ * @author dr6
+ */
+@SpringBootTest
+@ActiveProfiles(profiles = "test")
+@Import(EntityCreator.class)
+public class TestLabwareFlagEffectiveRepo {
+    @Autowired
+    EntityCreator entityCreator;
+    @Autowired
+    LabwareFlagEffectiveRepo effectiveRepo;
+    @Autowired
+    LabwareFlagRepo flagRepo;
+    @Autowired
+    ActionRepo actionRepo;
+    @Autowired
+    OperationRepo opRepo;
+
+    @Transactional
+    @Test
+    public void testEffectiveFlags() {
+        User user = entityCreator.createUser("user1");
+        Donor donor = entityCreator.createDonor("DONOR1");
+        Tissue tissue = entityCreator.createTissue(donor, "TISSUE1");
+        Sample sample = entityCreator.createSample(tissue, null);
+
+        LabwareType lt = entityCreator.createLabwareType("lwtype", 1, 1);
+        Labware lw1 = entityCreator.createLabware("STAN-01", lt, sample);
+        Labware lw2 = entityCreator.createLabware("STAN-02", lt, sample);
+        Labware lw3 = entityCreator.createLabware("STAN-03", lt, sample);
+        Slot slot1 = lw1.getFirstSlot(), slot2 = lw2.getFirstSlot(), slot3 = lw3.getFirstSlot();
+        OperationType opType = entityCreator.createOpType("optype", null);
+        Operation flagOp = opRepo.save(new Operation(null, opType, null, null, user));
+        actionRepo.save(new Action(null, flagOp.getId(), slot1, slot1, sample, sample));
+        LabwareFlag flag1 = flagRepo.save(new LabwareFlag(null, lw1, "Alpha", user, flagOp.getId(), Priority.note));
+        LabwareFlag flag2 = flagRepo.save(new LabwareFlag(null, lw1, "Beta", user, flagOp.getId(), Priority.flag));
+        Operation op1 = opRepo.save(new Operation(null, opType, null, null, user));
+        actionRepo.save(new Action(null, op1.getId(), slot1, slot2, sample, sample));
+        Operation op2 = opRepo.save(new Operation(null, opType, null, null, user));
+        actionRepo.save(new Action(null, op2.getId(), slot2, slot3, sample, sample));
+
+        final List<Integer> lwIds = List.of(lw1.getId(), lw2.getId(), lw3.getId());
+        assertThat(effectiveRepo.findFlagIds(lwIds)).isEmpty();
+
+        assertThat(effectiveRepo.insertDirectFlags(flag1.getId(), flag1.getId())).isEqualTo(1);
+        assertThat(effectiveRepo.findFlagIds(lwIds)).isEqualTo(Map.of(lw1.getId(), Set.of(flag1.getId())));
+
+        // Propagating op2 before op1 passes nothing on, since slot2 is not yet flagged
+        assertThat(effectiveRepo.propagate(op2.getId(), op2.getId())).isZero();
+        assertThat(effectiveRepo.propagate(op1.getId(), op2.getId())).isEqualTo(1);
+        assertThat(effectiveRepo.propagate(op1.getId(), op2.getId())).isEqualTo(1);
+        assertThat(effectiveRepo.propagate(op1.getId(), op2.getId())).isZero();
+
+        effectiveRepo.insertFlags(List.of(new LabwareFlagEffectiveRepo.EffectiveFlag(slot3.getId(), sample.getId(),
+                lw3.getId(), flag2.getId())));
+
+        assertThat(effectiveRepo.findFlagIds(lwIds)).isEqualTo(Map.of(
+                lw1.getId(), Set.of(flag1.getId()),
+                lw2.getId(), Set.of(flag1.getId()),
+                lw3.getId(), Set.of(flag1.getId(), flag2.getId())
+        ));
+        assertThat(effectiveRepo.findPriorities(lwIds)).isEqualTo(Map.of(
+                lw1.getId(), Priority.note,
+                lw2.getId(), Priority.note,
+                lw3.getId(), Priority.flag
+        ));
+        assertThat(effectiveRepo.findMaxFlagId()).isEqualTo(flag2.getId());
+    }
+}
@@ -0,0 +1,141 @@
+package uk.ac.sanger.sccp.stan.repo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.model.Work.SampleSlotId;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests {@link WorkLinkRepo}
+ * @author dr6
+ */
+@SpringBootTest
+@ActiveProfiles(profiles = "test")
+@Import(EntityCreator.class)
+public class TestWorkLinkRepo {
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityCreator entityCreator;
+    @Autowired
+    private WorkLinkRepo workLinkRepo;
+    @Autowired
+    private OperationRepo opRepo;
+    @Autowired
+    private OperationTypeRepo opTypeRepo;
+    @Autowired
+    private UserRepo userRepo;
+    @Autowired
+    private ReleaseRepo releaseRepo;
+
+    private List<Integer> createOpIds(int number) {
+        OperationType opType = entityCreator.getAny(opTypeRepo);
+        User user = entityCreator.getAny(userRepo);
+        return IntStream.range(0, number)
+                .mapToObj(i -> opRepo.save(new Operation(null, opType, null, List.of(), user)).getId())
+                .toList();
+    }
+
+    @Test
+    @Transactional
+    public void testOperationLinks() {
+        Work work = entityCreator.createWork(null, null, null, null, null);
+        Work otherWork = entityCreator.createWorkLike(work);
+        List<Integer> opIds = createOpIds(5);
+
+        workLinkRepo.insertOperationLinks(work.getId(), opIds.subList(0, 3));
+        workLinkRepo.insertOperationLinks(work.getId(), opIds.subList(1, 4));
+        workLinkRepo.insertOperationLinks(otherWork.getId(), opIds.subList(4, 5));
+
+        assertThat(workLinkRepo.streamOperationIds(work.getId())).containsExactlyElementsOf(opIds.subList(0, 4));
+        assertThat(workLinkRepo.findOperationIds(work.getId(), 0, 2)).containsExactlyElementsOf(opIds.subList(0, 2));
+        assertThat(workLinkRepo.findOperationIds(work.getId(), opIds.get(1), 5)).containsExactlyElementsOf(opIds.subList(2, 4));
+        assertThat(workLinkRepo.findLinkedOperationIds(work.getId(), List.of(opIds.get(0), opIds.get(4))))
+                .containsExactly(opIds.get(0));
+        assertThat(workLinkRepo.findLinkedOperationIds(work.getId(), List.of())).isEmpty();
+
+        workLinkRepo.deleteOperationLinks(work.getId(), opIds.subList(0, 2));
+        assertThat(workLinkRepo.streamOperationIds(work.getId())).containsExactlyElementsOf(opIds.subList(2, 4));
+        assertThat(workLinkRepo.streamOperationIds(otherWork.getId())).containsExactly(opIds.get(4));
+
+        entityManager.refresh(work);
+        assertThat(work.getOperationIds()).containsExactlyInAnyOrderElementsOf(opIds.subList(2, 4));
+    }
+
+    @Test
+    @Transactional
+    public void testRefreshLinks() {
+        Work work = entityCreator.createWork(null, null, null, null, null);
+        List<Integer> opIds = createOpIds(3);
+        workLinkRepo.insertOperationLinks(work.getId(), opIds.subList(0, 1));
+        workLinkRepo.refreshLinks(work);
+        assertThat(work.getOperationIds()).containsExactly(opIds.getFirst());
+
+        workLinkRepo.insertOperationLinks(work.getId(), opIds.subList(1, 3));
+        workLinkRepo.refreshLinks(work);
+        assertThat(work.getOperationIds()).containsExactlyInAnyOrderElementsOf(opIds);
+
+        // A later flush of the work must not rewrite its links
+        work.setNumBlocks(4);
+        entityManager.flush();
+        assertThat(workLinkRepo.streamOperationIds(work.getId())).containsExactlyElementsOf(opIds);
+    }
+
+    @Test
+    @Transactional
+    public void testSampleSlotLinks() {
+        Work work = entityCreator.createWork(null, null, null, null, null);
+        Tissue tissue = entityCreator.createTissue(entityCreator.createDonor("DONOR1"), "TISSUE1");
+        Sample sam1 = entityCreator.createSample(tissue, 1);
+        Sample sam2 = entityCreator.createSample(tissue, 2);
+        Labware lw = entityCreator.createLabware("STAN-A1", entityCreator.createLabwareType("lt", 1, 2), sam1, sam2);
+        Slot slot1 = lw.getFirstSlot();
+        Slot slot2 = lw.getSlots().get(1);
+        List<SampleSlotId> ssIds = List.of(new SampleSlotId(sam1.getId(), slot1.getId()),
+                new SampleSlotId(sam2.getId(), slot1.getId()),
+                new SampleSlotId(sam1.getId(), slot2.getId()));
+
+        workLinkRepo.insertSampleSlotLinks(work.getId(), ssIds);
+        workLinkRepo.insertSampleSlotLinks(work.getId(), ssIds.subList(0, 1));
+
+        assertThat(workLinkRepo.streamSampleSlotIds(work.getId())).containsExactlyInAnyOrderElementsOf(ssIds);
+        List<SampleSlotId> page = workLinkRepo.findSampleSlotIds(work.getId(), null, 2);
+        assertThat(page).hasSize(2);
+        assertThat(workLinkRepo.findSampleSlotIds(work.getId(), page.getLast(), 2))
+                .hasSize(1)
+                .doesNotContainAnyElementsOf(page);
+
+        workLinkRepo.deleteSampleSlotLinks(work.getId(), ssIds.subList(1, 3));
+        assertThat(workLinkRepo.streamSampleSlotIds(work.getId())).containsExactly(ssIds.getFirst());
+    }
+
+    @Test
+    @Transactional
+    public void testReleaseLinks() {
+        Work work = entityCreator.createWork(null, null, null, null, null);
+        Labware lw = entityCreator.createTube("STAN-A1");
+        User user = entityCreator.getAny(userRepo);
+        ReleaseDestination dest = entityCreator.createReleaseDestination("Moon");
+        ReleaseRecipient rec = entityCreator.createReleaseRecipient("uatu");
+        List<Integer> releaseIds = IntStream.range(0, 3)
+                .mapToObj(i -> releaseRepo.save(new Release(lw, user, dest, rec, entityCreator.createSnapshot(lw).getId())).getId())
+                .toList();
+
+        workLinkRepo.insertReleaseLinks(work.getId(), releaseIds);
+        workLinkRepo.insertReleaseLinks(work.getId(), releaseIds.subList(0, 1));
+
+        assertThat(workLinkRepo.streamReleaseIds(work.getId())).containsExactlyElementsOf(releaseIds);
+        assertThat(workLinkRepo.findReleaseIds(work.getId(), releaseIds.getFirst(), 1)).containsExactly(releaseIds.get(1));
+    }
+}
@@ -0,0 +1,57 @@
+package uk.ac.sanger.sccp.stan.repo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import uk.ac.sanger.sccp.stan.EntityCreator;
+import uk.ac.sanger.sccp.stan.model.Work;
+
+import javax.transaction.Transactional;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests the stored progress in {@link WorkProgressRepo}
+ * @author dr6
+ */
+@SpringBootTest
+@ActiveProfiles(profiles = "test")
+@Import(EntityCreator.class)
+public class TestWorkProgressRepo {
+    @Autowired
+    private EntityCreator entityCreator;
+    @Autowired
+    private WorkProgressRepo workProgressRepo;
+
+    @Test
+    @Transactional
+    public void testStoredTimes() {
+        Work work1 = entityCreator.createWork(null, null, null, null, null);
+        Work work2 = entityCreator.createWorkLike(work1);
+        final int id1 = work1.getId(), id2 = work2.getId();
+        LocalDateTime time1 = LocalDateTime.of(2021, 9, 10, 12, 0);
+        LocalDateTime time2 = time1.plusDays(1);
+        LocalDateTime time3 = time1.plusDays(2);
+
+        workProgressRepo.storeTimes(Map.of(
+                id1, Map.of("Section", time2, "Stain", time1),
+                id2, Map.of("Section", time1)
+        ));
+        // Earlier times do not replace later ones
+        workProgressRepo.storeTimes(Map.of(id1, Map.of("Section", time1, "Stain", time3, "Image", time2)));
+
+        assertThat(workProgressRepo.loadStoredTimes(List.of(id1, id2))).isEqualTo(Map.of(
+                id1, Map.of("Section", time2, "Stain", time3, "Image", time2),
+                id2, Map.of("Section", time1)
+        ));
+
+        workProgressRepo.deleteStoredTimes(List.of(id1));
+        assertThat(workProgressRepo.loadStoredTimes(List.of(id1, id2))).isEqualTo(Map.of(id2, Map.of("Section", time1)));
+        assertThat(workProgressRepo.findAllWorkIds()).contains(id1, id2);
+    }
+}
@@ -37,6 +37,7 @@ public abstract class AdminServiceTestUtils<E extends HasEnabled, R extends Crud
 
     protected Transactor mockTransactor;
     protected AdminNotifyService mockNotifyService;
+    protected ReferenceDataCache mockRefDataCache;
 
     protected AdminServiceTestUtils(String entityTypeName, BiFunction<Integer, String, E> newEntityFunction,
                           BiFunction<R, String, Optional<E>> repoFindFunction,
@@ -51,6 +52,7 @@ public abstract class AdminServiceTestUtils<E extends HasEnabled, R extends Crud
     protected void setupBase() {
         this.mockTransactor = mock(Transactor.class);
         this.mockNotifyService = mock(AdminNotifyService.class);
+        this.mockRefDataCache = mock(ReferenceDataCache.class);
     }
 
     protected E newEntity(Integer id, String string) {
@@ -65,6 +67,7 @@ public abstract class AdminServiceTestUtils<E extends HasEnabled, R extends Crud
         if (expectedException != null) {
             assertException(expectedException, () -> serviceAddFunction.apply(service, user, string));
             verify(mockRepo, never()).save(any());
+            verifyNoInteractions(mockRefDataCache);
             return;
         }
         E expectedResult = newEntity(20, expectedResultString);
@@ -75,6 +78,7 @@ public abstract class AdminServiceTestUtils<E extends HasEnabled, R extends Crud
             verifyNoInteractions(mockNotifyService);
         }
         verify(mockTransactor).transact(any(), any());
+        verify(mockRefDataCache).invalidate(expectedResult.getClass());
     }
 
     protected String expectedMessage(Exception expectedException) {
@@ -130,8 +134,10 @@ public abstract class AdminServiceTestUtils<E extends HasEnabled, R extends Crud
         assertEquals(newValue, entity.isEnabled());
         if (newValue==oldValue) {
             verify(mockRepo, never()).save(any());
+            verifyNoInteractions(mockRefDataCache);
         } else {
             verify(mockRepo).save(entity);
+            verify(mockRefDataCache).invalidate(entity.getClass());
         }
     }
 
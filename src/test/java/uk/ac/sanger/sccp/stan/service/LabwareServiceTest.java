@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.InOrder;
 import uk.ac.sanger.sccp.stan.EntityFactory;
 import uk.ac.sanger.sccp.stan.Matchers;
 import uk.ac.sanger.sccp.stan.model.*;
@@ -14,6 +15,8 @@ import uk.ac.sanger.sccp.utils.Zip;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Stream;
 
@@ -30,7 +33,7 @@ import static org.mockito.Mockito.*;
 public class LabwareServiceTest {
     private LabwareRepo mockLabwareRepo;
     private SlotRepo mockSlotRepo;
-    private BarcodeIntRepo mockBarcodeIntRepo;
+    private BarcodeAllocator mockBarcodeAllocator;
     private EntityManager mockEntityManager;
     private LabelTypeRepo mockLabelTypeRepo;
     private OperationRepo mockOperationRepo;
@@ -46,7 +49,7 @@ public class LabwareServiceTest {
     void setup() {
         mockLabwareRepo = mock(LabwareRepo.class);
         mockSlotRepo = mock(SlotRepo.class);
-        mockBarcodeIntRepo = mock(BarcodeIntRepo.class);
+        mockBarcodeAllocator = mock(BarcodeAllocator.class);
         mockEntityManager = mock(EntityManager.class);
         mockLabelTypeRepo = mock(LabelTypeRepo.class);
         mockOperationRepo = mock(OperationRepo.class);
@@ -56,15 +59,15 @@ public class LabwareServiceTest {
 
         mockLabwareSave();
         mockSlotSave();
-        mockRefresh();
 
-        labwareService = spy(new LabwareService(mockEntityManager, mockLabwareRepo, mockSlotRepo, mockBarcodeIntRepo, mockLabelTypeRepo,
+        labwareService = spy(new LabwareService(mockEntityManager, mockLabwareRepo, mockSlotRepo, mockBarcodeAllocator, mockLabelTypeRepo,
                                                 mockOperationRepo, mockOperationTypeRepo, mockNoteRepo, mockBioRiskRepo));
         savedLabware = new ArrayList<>();
         savedSlots = new ArrayList<>();
     }
 
     void mockLabwareSave() {
+        when(mockLabwareRepo.getDatabaseTimestamp()).thenReturn(Timestamp.valueOf("2026-10-17 09:30:15.6"));
         when(mockLabwareRepo.save(any())).then(invocation -> {
             Labware lw = invocation.getArgument(0);
             assertNull(lw.getId());
@@ -102,19 +105,10 @@ public class LabwareServiceTest {
         });
     }
 
-    void mockRefresh() {
-        doAnswer(invocation -> {
-            Labware lw = invocation.getArgument(0);
-            final int lwId = lw.getId();
-            lw.setSlots(savedSlots.stream().filter(slot -> slot.getLabwareId()==lwId).collect(toList()));
-            return null;
-        }).when(mockEntityManager).refresh(any(Labware.class));
-    }
-
     @Test
     public void testCreateNoBarcode() {
         String barcode = "STAN-ABC";
-        when(mockBarcodeIntRepo.createStanBarcode()).thenReturn(barcode);
+        when(mockBarcodeAllocator.createStanBarcode()).thenReturn(barcode);
         Labware lw = EntityFactory.getTube();
         LabwareType lt = lw.getLabwareType();
         doReturn(lw).when(labwareService).create(any(Labware.class));
@@ -136,6 +130,12 @@ public class LabwareServiceTest {
         assertThat(savedLabware).hasSize(1).contains(lw);
         assertThat(lw.getSlots()).hasSize(6);
         assertThat(savedSlots).hasSameSizeAs(lw.getSlots()).hasSameElementsAs(lw.getSlots());
+        InOrder inOrder = inOrder(mockLabwareRepo, mockSlotRepo, mockEntityManager);
+        inOrder.verify(mockLabwareRepo).saveAll(any());
+        inOrder.verify(mockSlotRepo).saveAll(any());
+        inOrder.verify(mockEntityManager).flush();
+        verify(mockEntityManager, never()).refresh(any());
+        verifyNoInteractions(mockBarcodeAllocator);
         Zip.of(Address.stream(lt.getNumRows(), lt.getNumColumns()), lw.getSlots().stream()).forEach((address, slot) -> {
             assertEquals(address, slot.getAddress());
             assertEquals(slot.getLabwareId(), lw.getId());
@@ -147,7 +147,7 @@ public class LabwareServiceTest {
     public void testCreateMultiple() {
         LabwareType lt = EntityFactory.makeLabwareType(1, 2);
         List<String> barcodes = List.of("STAN-AA", "STAN-BB", "STAN-CC");
-        when(mockBarcodeIntRepo.createStanBarcodes(3)).thenReturn(barcodes);
+        when(mockBarcodeAllocator.createStanBarcodes(3)).thenReturn(barcodes);
         List<Labware> lws = labwareService.create(lt, 3);
         assertThat(lws).hasSize(3);
         assertThat(savedLabware).hasSameSizeAs(lws).hasSameElementsAs(lws);
@@ -162,6 +162,66 @@ public class LabwareServiceTest {
             allSlots.addAll(lw.getSlots());
         });
         assertThat(savedSlots).hasSameSizeAs(allSlots).hasSameElementsAs(allSlots);
+        verify(mockLabwareRepo).saveAll(any());
+        verify(mockSlotRepo).saveAll(any());
+        verify(mockEntityManager).flush();
+        verify(mockEntityManager, never()).refresh(any());
+    }
+
+    @Test
+    public void testCreateAll() {
+        LabwareType lt1 = EntityFactory.makeLabwareType(1, 1);
+        LabwareType lt2 = EntityFactory.makeLabwareType(2, 2);
+        when(mockBarcodeAllocator.createStanBarcodes(2)).thenReturn(List.of("STAN-AA", "STAN-BB"));
+        List<Labware> unsaved = List.of(
+                LabwareService.newLabware(lt1, null, null),
+                LabwareService.newLabware(lt2, "pre1", "ext1"),
+                LabwareService.newLabware(lt2, null, "ext2")
+        );
+        final LocalDateTime preset = LocalDateTime.of(2026, 1, 2, 3, 4, 5);
+        unsaved.get(1).setCreated(preset);
+        List<Labware> lws = labwareService.createAll(unsaved);
+        assertThat(lws).containsExactlyElementsOf(unsaved);
+        final LocalDateTime dbTime = LocalDateTime.of(2026, 10, 17, 9, 30, 15);
+        assertThat(lws.stream().map(Labware::getCreated)).containsExactly(dbTime, preset, dbTime);
+        verify(mockLabwareRepo, times(1)).getDatabaseTimestamp();
+        assertThat(lws.stream().map(Labware::getBarcode)).containsExactly("STAN-AA", "PRE1", "STAN-BB");
+        assertThat(lws.stream().map(Labware::getExternalBarcode)).containsExactly(null, "EXT1", "EXT2");
+        verify(mockBarcodeAllocator).createStanBarcodes(2);
+        final List<Slot> allSlots = new ArrayList<>(9);
+        for (Labware lw : lws) {
+            assertNotNull(lw.getId());
+            LabwareType lt = lw.getLabwareType();
+            Zip.of(Address.stream(lt.getNumRows(), lt.getNumColumns()), lw.getSlots().stream()).forEach((address, slot) -> {
+                assertEquals(address, slot.getAddress());
+                assertEquals(lw.getId(), slot.getLabwareId());
+            });
+            assertThat(lw.getSlots()).hasSize(lt.getNumRows() * lt.getNumColumns());
+            allSlots.addAll(lw.getSlots());
+        }
+        assertThat(savedSlots).containsExactlyElementsOf(allSlots);
+        verify(mockSlotRepo).saveAll(any());
+        verify(mockEntityManager).flush();
+        verify(mockEntityManager, never()).refresh(any());
+    }
+
+    @Test
+    public void testCreateAll_none() {
+        assertThat(labwareService.createAll(List.of())).isEmpty();
+        verifyNoInteractions(mockLabwareRepo, mockSlotRepo, mockBarcodeAllocator, mockEntityManager);
+    }
+
+    @Test
+    public void testNewLabware() {
+        LabwareType lt = EntityFactory.getTubeType();
+        Labware lw = LabwareService.newLabware(lt, "stan-a1", "ext-1");
+        assertNull(lw.getId());
+        assertSame(lt, lw.getLabwareType());
+        assertEquals("STAN-A1", lw.getBarcode());
+        assertEquals("EXT-1", lw.getExternalBarcode());
+        lw = LabwareService.newLabware(lt, null, null);
+        assertNull(lw.getBarcode());
+        assertNull(lw.getExternalBarcode());
     }
 
     @Test
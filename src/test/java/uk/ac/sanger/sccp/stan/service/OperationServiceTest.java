@@ -3,11 +3,13 @@ package uk.ac.sanger.sccp.stan.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import uk.ac.sanger.sccp.stan.EntityFactory;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.repo.ActionRepo;
 import uk.ac.sanger.sccp.stan.repo.OperationRepo;
+import uk.ac.sanger.sccp.stan.service.flag.FlagEffectiveService;
 
 import javax.persistence.EntityManager;
 import java.util.*;
@@ -27,6 +29,8 @@ public class OperationServiceTest {
     private EntityManager mockEntityManager;
     private OperationRepo mockOpRepo;
     private ActionRepo mockActionRepo;
+    private LineageService mockLineageService;
+    private FlagEffectiveService mockFlagEffectiveService;
     private OperationService opService;
 
     private List<Operation> savedOps;
@@ -38,10 +42,13 @@ public class OperationServiceTest {
         mockEntityManager = mock(EntityManager.class);
         mockOpRepo = mock(OperationRepo.class);
         mockActionRepo = mock(ActionRepo.class);
+        mockLineageService = mock(LineageService.class);
+        mockFlagEffectiveService = mock(FlagEffectiveService.class);
         mockOpSave();
         mockActionSaveAll();
         mockRefresh();
-        opService = new OperationService(mockEntityManager, mockOpRepo, mockActionRepo);
+        opService = new OperationService(mockEntityManager, mockOpRepo, mockActionRepo, mockLineageService,
+                mockFlagEffectiveService);
         savedActions = new ArrayList<>();
         savedOps = new ArrayList<>();
     }
@@ -87,6 +94,8 @@ public class OperationServiceTest {
         assertThrows(IllegalArgumentException.class, () -> opService.createOperation(opType, user, List.of(), null));
         assertThat(savedOps).isEmpty();
         assertThat(savedActions).isEmpty();
+        verifyNoInteractions(mockLineageService);
+        verifyNoInteractions(mockFlagEffectiveService);
     }
 
     @ParameterizedTest
@@ -118,9 +127,28 @@ public class OperationServiceTest {
         for (Action action : op.getActions()) {
             assertNotNull(action.getId());
         }
+        verify(mockLineageService).recordLineage(op, actions);
+        verify(mockFlagEffectiveService).recordOperation(op, actions);
         verify(mockEntityManager).refresh(op);
     }
 
+    @ParameterizedTest
+    @CsvSource({"false,false,false", "true,false,true", "false,true,true", "true,true,true"})
+    public void testCreateOperationFlush(boolean recordingLineage, boolean propagatingFlags, boolean expectFlush) {
+        when(mockLineageService.isRecording()).thenReturn(recordingLineage);
+        when(mockFlagEffectiveService.isPropagating()).thenReturn(propagatingFlags);
+        OperationType opType = new OperationType(1, "Passage");
+        User user = EntityFactory.getUser();
+        Slot slot0 = EntityFactory.getTube().getFirstSlot();
+        Sample sample = slot0.getSamples().get(0);
+        Slot slot1 = EntityFactory.makeEmptyLabware(EntityFactory.getTubeType()).getFirstSlot();
+        List<Action> actions = List.of(new Action(null, null, slot0, slot1, sample, sample));
+
+        opService.createOperation(opType, user, actions, null);
+
+        verify(mockEntityManager, times(expectFlush ? 1 : 0)).flush();
+    }
+
     @Test
     public void testCreateOperationFromSlots() {
         OperationType opType = new OperationType(1, "Passage");
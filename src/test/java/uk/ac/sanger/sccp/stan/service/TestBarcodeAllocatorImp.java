@@ -0,0 +1,222 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import org.junit.jupiter.api.*;
+import uk.ac.sanger.sccp.stan.Transactor;
+import uk.ac.sanger.sccp.stan.config.BarcodeConfig;
+import uk.ac.sanger.sccp.stan.repo.BarcodeIntRepo;
+
+import javax.persistence.TransactionRequiredException;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.transaction.support.TransactionSynchronization.STATUS_COMMITTED;
+import static org.springframework.transaction.support.TransactionSynchronization.STATUS_ROLLED_BACK;
+import static org.springframework.transaction.support.TransactionSynchronizationManager.*;
+
+/**
+ * Tests {@link BarcodeAllocatorImp}
+ */
+public class TestBarcodeAllocatorImp {
+    private static final int BLOCK_SIZE = 5, LEASE_MINUTES = 60;
+
+    private BarcodeIntRepo mockRepo;
+    private Transactor mockTransactor;
+    private long now;
+    private AtomicInteger seedCounter;
+
+    private BarcodeAllocatorImp allocator;
+
+    @BeforeEach
+    void setup() {
+        mockRepo = mock(BarcodeIntRepo.class);
+        mockTransactor = mock(Transactor.class);
+        BarcodeConfig mockConfig = mock(BarcodeConfig.class);
+        when(mockConfig.getBlockSize()).thenReturn(BLOCK_SIZE);
+        when(mockConfig.getLeaseMinutes()).thenReturn(LEASE_MINUTES);
+        Clock mockClock = mock(Clock.class);
+        now = 1_000_000L;
+        when(mockClock.millis()).then(invocation -> now);
+        when(mockClock.instant()).then(invocation -> Instant.ofEpochMilli(now));
+        when(mockClock.getZone()).thenReturn(ZoneOffset.UTC);
+        seedCounter = new AtomicInteger(100);
+
+        when(mockTransactor.transactNew(any(), any())).then(invocation -> {
+            Supplier<?> supplier = invocation.getArgument(1);
+            return supplier.get();
+        });
+        when(mockRepo.reserve(any(), any(), anyInt())).then(invocation -> {
+            int n = invocation.getArgument(2);
+            List<Integer> seeds = new ArrayList<>(n);
+            for (int i = 0; i < n; ++i) {
+                seeds.add(seedCounter.getAndIncrement());
+            }
+            return seeds;
+        });
+        when(mockRepo.markUsed(any(), any())).then(invocation -> ((Collection<?>) invocation.getArgument(1)).size());
+
+        allocator = new BarcodeAllocatorImp(mockRepo, mockTransactor, mockConfig, mockClock);
+        beginTransaction();
+    }
+
+    @AfterEach
+    void cleanup() {
+        endTransaction();
+    }
+
+    private static void beginTransaction() {
+        initSynchronization();
+        setActualTransactionActive(true);
+    }
+
+    private static void endTransaction() {
+        if (isSynchronizationActive()) {
+            clearSynchronization();
+        }
+        setActualTransactionActive(false);
+    }
+
+    @Test
+    public void testNextSeeds_reservesBlocks() {
+        assertEquals(List.of(100, 101), allocator.nextSeeds(2));
+        assertEquals(List.of(102, 103, 104), allocator.nextSeeds(3));
+        final LocalDateTime reservedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneOffset.UTC);
+        verify(mockRepo, times(1)).reserve(allocator.getReserverId(), reservedAt, BLOCK_SIZE);
+        assertEquals(List.of(105), allocator.nextSeeds(1));
+        verify(mockRepo, times(2)).reserve(allocator.getReserverId(), reservedAt, BLOCK_SIZE);
+        verify(mockRepo).markUsed(allocator.getReserverId(), List.of(100, 101));
+        verify(mockRepo).markUsed(allocator.getReserverId(), List.of(102, 103, 104));
+        verify(mockRepo).markUsed(allocator.getReserverId(), List.of(105));
+        verify(mockRepo, never()).releaseExpired(any());
+    }
+
+    @Test
+    public void testNextSeeds_moreThanBlock() {
+        assertThat(allocator.nextSeeds(8)).containsExactly(100, 101, 102, 103, 104, 105, 106, 107);
+        verify(mockRepo).reserve(any(), any(), eq(8));
+    }
+
+    @Test
+    public void testNextSeeds_partlyFromBlock() {
+        allocator.nextSeeds(3);
+        assertThat(allocator.nextSeeds(4)).containsExactly(103, 104, 105, 106);
+        verify(mockRepo, times(2)).reserve(any(), any(), eq(BLOCK_SIZE));
+    }
+
+    @Test
+    public void testCreateStanBarcodes() {
+        assertEquals(List.of(BarcodeUtils.barcode("STAN-", 100), BarcodeUtils.barcode("STAN-", 101)),
+                allocator.createStanBarcodes(2));
+        assertEquals(BarcodeUtils.barcode("STAN-", 102), allocator.createStanBarcode());
+    }
+
+    @Test
+    public void testNextSeeds_zeroOrNegative() {
+        assertThat(allocator.nextSeeds(0)).isEmpty();
+        assertThat(assertThrows(IllegalArgumentException.class, () -> allocator.nextSeeds(-1)))
+                .hasMessage("Cannot allocate a negative number of barcodes.");
+        verifyNoInteractions(mockRepo);
+    }
+
+    @Test
+    public void testNextSeeds_noTransaction() {
+        endTransaction();
+        assertThrows(TransactionRequiredException.class, () -> allocator.nextSeeds(1));
+        verifyNoInteractions(mockRepo);
+    }
+
+    @Test
+    public void testNextSeeds_notMarked() {
+        doReturn(1).when(mockRepo).markUsed(any(), any());
+        assertThat(assertThrows(IllegalStateException.class, () -> allocator.nextSeeds(2)))
+                .hasMessage("Reserved barcode seeds are no longer available.");
+    }
+
+    @Test
+    public void testNextSeeds_rollbackReturnsSeeds() {
+        assertEquals(List.of(100, 101, 102, 103), allocator.nextSeeds(4));
+        getSynchronizations().forEach(sync -> sync.afterCompletion(STATUS_ROLLED_BACK));
+        endTransaction();
+        beginTransaction();
+        assertThat(allocator.nextSeeds(5)).containsExactlyInAnyOrder(100, 101, 102, 103, 104);
+        verify(mockRepo, times(1)).reserve(any(), any(), anyInt());
+    }
+
+    @Test
+    public void testNextSeeds_commitKeepsSeeds() {
+        assertEquals(List.of(100, 101), allocator.nextSeeds(2));
+        getSynchronizations().forEach(sync -> sync.afterCompletion(STATUS_COMMITTED));
+        endTransaction();
+        beginTransaction();
+        assertEquals(List.of(102, 103, 104), allocator.nextSeeds(3));
+    }
+
+    @Test
+    public void testNextSeeds_expiredSeedsDiscarded() {
+        assertEquals(List.of(100), allocator.nextSeeds(1));
+        now += LEASE_MINUTES * 30_000L;
+        assertEquals(List.of(105), allocator.nextSeeds(1));
+        verify(mockRepo, times(2)).reserve(any(), any(), eq(BLOCK_SIZE));
+    }
+
+    @Test
+    public void testNextSeeds_releasesExpiredReservations() {
+        doReturn(List.of(100, 101), List.of(200, 201, 202)).when(mockRepo).reserve(any(), any(), anyInt());
+        when(mockRepo.releaseExpired(any())).thenReturn(10);
+        assertThat(allocator.nextSeeds(5)).containsExactly(100, 101, 200, 201, 202);
+        final LocalDateTime reservedAt = LocalDateTime.ofInstant(Instant.ofEpochMilli(now), ZoneOffset.UTC);
+        verify(mockRepo).releaseExpired(reservedAt.minusMinutes(LEASE_MINUTES));
+        verify(mockRepo).reserve(any(), any(), eq(BLOCK_SIZE));
+        verify(mockRepo).reserve(any(), any(), eq(3));
+    }
+
+    @Test
+    public void testNextSeeds_noneAvailable() {
+        doReturn(List.of()).when(mockRepo).reserve(any(), any(), anyInt());
+        assertThat(assertThrows(IllegalStateException.class, () -> allocator.nextSeeds(1)))
+                .hasMessage("No barcode seeds are available.");
+        verify(mockRepo).releaseExpired(any());
+    }
+
+    @Test
+    public void testConcurrentAllocation() throws Exception {
+        final int numThreads = 8, numRounds = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<List<Integer>>> futures = new ArrayList<>(numThreads);
+            for (int t = 0; t < numThreads; ++t) {
+                final int threadIndex = t;
+                futures.add(executor.submit(() -> {
+                    List<Integer> seeds = new ArrayList<>();
+                    for (int i = 0; i < numRounds; ++i) {
+                        beginTransaction();
+                        try {
+                            List<Integer> allocated = allocator.nextSeeds(1 + (i + threadIndex) % 3);
+                            if (i % 7 == 0) {
+                                getSynchronizations().forEach(sync -> sync.afterCompletion(STATUS_ROLLED_BACK));
+                            } else {
+                                seeds.addAll(allocated);
+                            }
+                        } finally {
+                            endTransaction();
+                        }
+                    }
+                    return seeds;
+                }));
+            }
+            List<Integer> allSeeds = new ArrayList<>();
+            for (Future<List<Integer>> future : futures) {
+                allSeeds.addAll(future.get(30, TimeUnit.SECONDS));
+            }
+            assertThat(allSeeds).isNotEmpty().doesNotHaveDuplicates();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -34,7 +34,7 @@ class TestBioRiskService extends AdminServiceTestUtils<BioRisk, BioRiskRepo, Bio
     @BeforeEach
     void setUp() {
         mockRepo = mock(BioRiskRepo.class);
-        service = spy(new BioRiskService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService));
+        service = spy(new BioRiskService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService, mockRefDataCache));
     }
 
     @ParameterizedTest
@@ -27,15 +27,17 @@ import static org.mockito.Mockito.*;
  */
 public class TestCommentAdminService {
     private CommentRepo mockCommentRepo;
+    private ReferenceDataCache mockRefDataCache;
     private CommentAdminService service;
 
     @BeforeEach
     void setup() {
         mockCommentRepo = mock(CommentRepo.class);
+        mockRefDataCache = mock(ReferenceDataCache.class);
 
         service = new CommentAdminService(mockCommentRepo,
                 new StringValidator("category", 2, 16, StringValidator.CharacterType.ALPHA),
-                new StringValidator("text", 2, 32, StringValidator.CharacterType.ALPHA));
+                new StringValidator("text", 2, 32, StringValidator.CharacterType.ALPHA), mockRefDataCache);
     }
 
     private void setupCommentLists(List<Comment> comments) {
@@ -92,6 +94,7 @@ public class TestCommentAdminService {
             when(mockCommentRepo.save(any())).thenReturn(expectedComment);
             assertEquals(expectedComment, service.addComment(category, text));
             verify(mockCommentRepo).save(new Comment(null, expectedComment.getText(), expectedComment.getCategory()));
+            verify(mockRefDataCache).invalidate(Comment.class);
             return;
         }
         Exception expectedException = (Exception) expectedResult;
@@ -143,6 +146,7 @@ public class TestCommentAdminService {
         assertSame(comment, result);
         assertEquals(enabled, comment.isEnabled());
         verify(mockCommentRepo, times(noop ? 0 : 1)).save(any());
+        verify(mockRefDataCache, times(noop ? 0 : 1)).invalidate(Comment.class);
     }
 
     static Stream<Arguments> setCommentEnabledArgs() {
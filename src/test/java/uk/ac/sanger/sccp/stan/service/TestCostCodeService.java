@@ -26,7 +26,7 @@ public class TestCostCodeService extends AdminServiceTestUtils<CostCode, CostCod
     @BeforeEach
     void setup() {
         mockRepo = mock(CostCodeRepo.class);
-        service = spy(new CostCodeService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService));
+        service = spy(new CostCodeService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService, mockRefDataCache));
     }
 
     @ParameterizedTest
@@ -24,15 +24,17 @@ import static uk.ac.sanger.sccp.stan.Matchers.returnArgument;
  */
 public class TestEquipmentAdminService {
     private EquipmentRepo mockEquipmentRepo;
+    private ReferenceDataCache mockRefDataCache;
 
     private EquipmentAdminService service;
 
     @BeforeEach
     void setup() {
         mockEquipmentRepo = mock(EquipmentRepo.class);
+        mockRefDataCache = mock(ReferenceDataCache.class);
         service = new EquipmentAdminService(mockEquipmentRepo,
                 new StringValidator("Equipment category", 2, 8, StringValidator.CharacterType.ALPHA),
-                new StringValidator("Equipment name", 2, 8, StringValidator.CharacterType.ALPHA));
+                new StringValidator("Equipment name", 2, 8, StringValidator.CharacterType.ALPHA), mockRefDataCache);
     }
 
     @ParameterizedTest
@@ -74,6 +76,7 @@ public class TestEquipmentAdminService {
             Equipment equipment = service.addEquipment(category, name);
             assertNotNull(equipment);
             verify(mockEquipmentRepo).save(equipment);
+            verify(mockRefDataCache).invalidate(Equipment.class);
             assertEquals(category.trim().toLowerCase(), equipment.getCategory());
             assertEquals(name.trim(), equipment.getName());
             assertTrue(equipment.isEnabled());
@@ -108,6 +111,7 @@ public class TestEquipmentAdminService {
             verify(mockEquipmentRepo, never()).save(any());
         } else {
             verify(mockEquipmentRepo).save(equipment);
+            verify(mockRefDataCache).invalidate(Equipment.class);
         }
     }
 
@@ -142,6 +146,7 @@ public class TestEquipmentAdminService {
             verify(mockEquipmentRepo, never()).save(any());
         } else {
             verify(mockEquipmentRepo).save(eq);
+            verify(mockRefDataCache).invalidate(Equipment.class);
         }
     }
 }
@@ -0,0 +1,265 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import uk.ac.sanger.sccp.stan.model.StanFile;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link FileDownloadServiceImp}
+ * @author dr6
+ */
+public class TestFileDownloadService {
+    private static final String CONTENT = "Alpha beta gamma";
+    private static final String HASH = "abc123";
+    private static final Instant MODIFIED = Instant.parse("2024-03-04T05:06:07Z");
+
+    @Mock
+    private FileStoreService mockFileStoreService;
+    @TempDir
+    Path tempDir;
+
+    private FileDownloadServiceImp service;
+    private Path path;
+    private StanFile stanFile;
+
+    private AutoCloseable mocking;
+
+    @BeforeEach
+    void setup() throws IOException {
+        mocking = MockitoAnnotations.openMocks(this);
+        service = spy(new FileDownloadServiceImp(mockFileStoreService));
+        path = tempDir.resolve("file.txt");
+        Files.writeString(path, CONTENT);
+        Files.setLastModifiedTime(path, FileTime.from(MODIFIED));
+        stanFile = new StanFile(10, null, null, null, "file.txt", "dir/file.txt", null);
+        stanFile.setContentHash(HASH);
+        when(mockFileStoreService.getStoredPath(stanFile)).thenReturn(path);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocking.close();
+    }
+
+    private MockHttpServletResponse serve(MockHttpServletRequest request) throws IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.serve(stanFile, request, response);
+        return response;
+    }
+
+    @Test
+    public void testServeWholeFile() throws IOException {
+        MockHttpServletResponse response = serve(new MockHttpServletRequest());
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+        assertEquals(CONTENT.length(), response.getContentLengthLong());
+        assertEquals("\"" + HASH + "\"", response.getHeader("ETag"));
+        assertEquals("bytes", response.getHeader("Accept-Ranges"));
+        assertEquals(MODIFIED.toEpochMilli(), response.getDateHeader("Last-Modified"));
+        assertEquals("attachment; filename=\"file.txt\"", response.getHeader("Content-Disposition"));
+        assertEquals("text/plain", response.getContentType());
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "bytes=6-9, 206, beta, bytes 6-9/16",
+            "bytes=6-, 206, beta gamma, bytes 6-15/16",
+            "bytes=-5, 206, gamma, bytes 11-15/16",
+            "bytes=11-100, 206, gamma, bytes 11-15/16",
+            "bytes=16-, 416, '', bytes */16",
+            "bytes=-0, 416, '', bytes */16",
+            "bytes=0-1;2-3, 200, " + CONTENT + ",",
+            "'bytes=0-1,3-4', 200, " + CONTENT + ",",
+            "bytes=9-2, 200, " + CONTENT + ",",
+    })
+    public void testServeRange(String range, int expectedStatus, String expectedContent, String expectedContentRange)
+            throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", range);
+        MockHttpServletResponse response = serve(request);
+        assertEquals(expectedStatus, response.getStatus());
+        assertEquals(expectedContent, response.getContentAsString());
+        assertEquals(expectedContentRange, response.getHeader("Content-Range"));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "'\"abc123\"', true",
+            "'W/\"abc123\"', true",
+            "'\"other\", \"abc123\"', true",
+            "*, true",
+            "'\"other\"', false",
+    })
+    public void testIfNoneMatch(String ifNoneMatch, boolean notModified) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", ifNoneMatch);
+        MockHttpServletResponse response = serve(request);
+        if (notModified) {
+            assertEquals(304, response.getStatus());
+            assertEquals(0, response.getContentAsByteArray().length);
+        } else {
+            assertEquals(200, response.getStatus());
+            assertEquals(CONTENT, response.getContentAsString());
+        }
+        assertEquals("\"" + HASH + "\"", response.getHeader("ETag"));
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "'\"abc123\"', true, true",
+            "'\"other\"', true, false",
+            "'W/\"abc123\"', true, false",
+            "'\"abc123\"', false, false",
+            "'Mon, 04 Mar 2024 05:06:07 GMT', true, true",
+            "'Mon, 04 Mar 2024 05:06:07 GMT', false, true",
+            "'Mon, 04 Mar 2024 05:06:08 GMT', true, false",
+            "not a date, true, false",
+    })
+    public void testIfRange(String ifRange, boolean hasHash, boolean expectPartial) throws IOException {
+        if (!hasHash) {
+            stanFile.setContentHash(null);
+        }
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=0-4");
+        request.addHeader("If-Range", ifRange);
+        MockHttpServletResponse response = serve(request);
+        if (expectPartial) {
+            assertEquals(206, response.getStatus());
+            assertEquals("Alpha", response.getContentAsString());
+        } else {
+            assertEquals(200, response.getStatus());
+            assertEquals(CONTENT, response.getContentAsString());
+        }
+    }
+
+    @Test
+    public void testWeakETag() throws IOException {
+        stanFile.setContentHash(null);
+        MockHttpServletResponse response = serve(new MockHttpServletRequest());
+        String expectedETag = "W/\"10-" + Long.toHexString(MODIFIED.toEpochMilli()) + "\"";
+        assertEquals(expectedETag, response.getHeader("ETag"));
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("If-None-Match", expectedETag);
+        assertEquals(304, serve(request).getStatus());
+    }
+
+    @Test
+    public void testServeInactive() {
+        when(mockFileStoreService.getStoredPath(stanFile)).thenThrow(IllegalStateException.class);
+        assertThrows(IllegalStateException.class, () -> serve(new MockHttpServletRequest()));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"100000, true", "1000, false"})
+    public void testSendfile(int size, boolean expectSendfile) throws IOException {
+        byte[] data = new byte[size];
+        Files.write(path, data);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setAttribute(FileDownloadServiceImp.SENDFILE_SUPPORT, Boolean.TRUE);
+        request.addHeader("Range", "bytes=10-");
+        MockHttpServletResponse response = serve(request);
+        assertEquals(206, response.getStatus());
+        assertEquals(size - 10, response.getContentLengthLong());
+        if (expectSendfile) {
+            assertEquals(path.toAbsolutePath().toString(), request.getAttribute(FileDownloadServiceImp.SENDFILE_FILENAME));
+            assertEquals(10L, request.getAttribute(FileDownloadServiceImp.SENDFILE_START));
+            assertEquals((long) size, request.getAttribute(FileDownloadServiceImp.SENDFILE_END));
+            assertEquals(0, response.getContentAsByteArray().length);
+        } else {
+            assertNull(request.getAttribute(FileDownloadServiceImp.SENDFILE_FILENAME));
+            assertEquals(size - 10, response.getContentAsByteArray().length);
+        }
+    }
+
+    /**
+     * Serves a sparse file larger than 2 GB, in full and as a range past the 2 GB mark,
+     * checking that the memory allocated while serving does not grow with the file.
+     */
+    @Test
+    @Tag("benchmark")
+    public void testServeMultiGigabyteFile() throws IOException {
+        final long length = 3L << 30;
+        Path bigPath = tempDir.resolve("big.bin");
+        try (RandomAccessFile raf = new RandomAccessFile(bigPath.toFile(), "rw")) {
+            raf.setLength(length);
+            raf.seek(length - 4);
+            raf.write(new byte[] {1, 2, 3, 4});
+        }
+        when(mockFileStoreService.getStoredPath(stanFile)).thenReturn(bigPath);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        CountingResponse response = new CountingResponse();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        service.serve(stanFile, new MockHttpServletRequest(), response);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        assertEquals(200, response.getStatus());
+        assertEquals(length, response.out.count);
+        assertEquals(length, response.getContentLengthLong());
+        assertThat(allocated).isLessThan(16L << 20);
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Range", "bytes=" + (length - 6) + "-");
+        response = new CountingResponse();
+        service.serve(stanFile, request, response);
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes " + (length - 6) + "-" + (length - 1) + "/" + length, response.getHeader("Content-Range"));
+        assertEquals(6, response.out.count);
+        assertEquals(1 + 2 + 3 + 4, response.out.sum);
+    }
+
+    /** A response that counts the bytes written instead of keeping them */
+    static class CountingResponse extends MockHttpServletResponse {
+        final CountingOutputStream out = new CountingOutputStream();
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            return out;
+        }
+    }
+
+    static class CountingOutputStream extends ServletOutputStream {
+        long count, sum;
+
+        @Override
+        public void write(int b) {
+            ++count;
+            sum += b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+            for (int i = off; i < off + len; ++i) {
+                sum += b[i];
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {}
+    }
+}
@@ -1,10 +1,13 @@
 package uk.ac.sanger.sccp.stan.service;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.authentication.InsufficientAuthenticationException;
 import org.springframework.web.multipart.MultipartFile;
 import uk.ac.sanger.sccp.stan.*;
@@ -14,6 +17,7 @@ import uk.ac.sanger.sccp.stan.repo.*;
 
 import java.io.*;
 import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
 import java.time.*;
 import java.util.*;
 import java.util.stream.IntStream;
@@ -30,6 +34,11 @@ import static uk.ac.sanger.sccp.utils.BasicUtils.asCollection;
  * @author dr6
  */
 public class TestFileStoreService {
+    private static final String HASH = "ab" + "0".repeat(62),
+            BLOB_PATH = "path-to-folder/blobs/ab/" + HASH,
+            HELLO_HASH = "46e0ea795802f17d0b340983ca7d7068c94d7d9172ee4daea37a1ab1168649ec";
+    private static final Path TEMP_PATH = Paths.get("/ROOT/path-to-folder/tmp/upload.tmp");
+
     @Mock private StanFileConfig mockConfig;
     @Mock private StanFileRepo mockFileRepo;
     @Mock private WorkRepo mockWorkRepo;
@@ -57,18 +66,11 @@ public class TestFileStoreService {
     }
 
     @ParameterizedTest
-    @CsvSource({"folder/alpha,alpha,alpha", "/Robot/SW/R2D2 *&^%,R2D2 *&^%,R2D2", "Alpha/^%^&*,^%^&*, unnamed", ",unnamed,unnamed",
-
-            "folder/Alabama Alaska Arizona Arkansas California Colorado Connecticut Delaware Florida Georgia Hawaii Idah," +
-            "Alabama Alaska Arizona Arkansas California Colorado Connecticut Delaware Florida Georgia Hawaii Idah," +
-            "AlabamaAlaskaArizonaArkansasCaliforniaColoradoConnecticutDelawareFloridaGeorgiaHawaiiIdah",
-
+    @CsvSource({"folder/alpha,alpha", "/Robot/SW/R2D2 *&^%,R2D2 *&^%", ",unnamed",
             "folder/AlabamaAlaskaArizonaArkansasCaliforniaColoradoConnecticutDelawareFloridaGeorgiaHawaiiIdahoIllinoisIn," +
-            "AlabamaAlaskaArizonaArkansasCaliforniaColoradoConnecticutDelawareFloridaGeorgiaHawaiiIdahoIllinoisIn," +
-            "AlabamaAlaskaArizonaArkansasCaliforniaColoradoConnecticutDelawareFloridaGeorgiaHawaiiIdahoIllino",
-
-            "folder/Alabama Alaska Arizona Arkansas California Colorado Connecticut Delaware Florida Georgia Hawaii Idaho,,"})
-    public void testSave(String name, String expectedName, String expectedPathFragment) throws IOException {
+            "AlabamaAlaskaArizonaArkansasCaliforniaColoradoConnecticutDelawareFloridaGeorgiaHawaiiIdahoIllinoisIn",
+            "folder/Alabama Alaska Arizona Arkansas California Colorado Connecticut Delaware Florida Georgia Hawaii Idaho,"})
+    public void testSave(String name, String expectedName) throws IOException {
         Work work = new Work(500, "SGP500", null, null, null, null, null, Work.Status.active);
         MultipartFile data = mock(MultipartFile.class);
         LocalDateTime time = LocalDateTime.now(clock);
@@ -88,11 +90,13 @@ public class TestFileStoreService {
         when(mockWorkRepo.getSetByWorkNumberIn(List.of(work.getWorkNumber()))).thenReturn(works);
         User user = EntityFactory.getUser();
         doNothing().when(service).checkAuthorisation(any(), any());
+        stubStore();
+        doNothing().when(service).releaseBlobs(any());
         Matchers.mockTransactor(mockTransactor);
 
         if (expectedName==null) {
             assertThrows(IllegalArgumentException.class, () -> service.save(user, data, List.of(work.getWorkNumber())));
-            verify(data, never()).transferTo(any(Path.class));
+            verify(service, never()).store(any(), any());
             verifyNoInteractions(mockTransactor);
             verifyNoInteractions(mockFileRepo);
             verify(service).checkAuthorisation(user, works);
@@ -102,24 +106,29 @@ public class TestFileStoreService {
         var sfs = asCollection(service.save(user, data, List.of(work.getWorkNumber())));
         assertThat(sfs).hasSize(1);
         var sf = sfs.iterator().next();
-        String expectedPath = "path-to-folder/"+time+"_"+expectedPathFragment;
-        assertEquals(expectedPath, sf.getPath());
+        assertEquals(BLOB_PATH, sf.getPath());
         assertEquals(expectedName, sf.getName());
         assertEquals(300, sf.getId());
         assertEquals(user, sf.getUser());
+        assertEquals(HASH, sf.getContentHash());
 
-        verify(data).transferTo(Paths.get("/ROOT/"+expectedPath));
+        verify(service).store(data, TEMP_PATH);
+        verify(service).linkBlob(TEMP_PATH, Paths.get("/ROOT", BLOB_PATH));
         verify(service).checkAuthorisation(user, works);
         verify(service).deprecateOldFiles(expectedName, List.of(work.getId()), time);
         verify(mockFileRepo).saveAll(any());
         verify(mockTransactor).transact(eq("updateStanFiles"), notNull());
+        InOrder inOrder = inOrder(mockFileRepo, service);
+        inOrder.verify(mockFileRepo).lockBlobs();
+        inOrder.verify(service).linkBlob(TEMP_PATH, Paths.get("/ROOT", BLOB_PATH));
+        inOrder.verify(mockFileRepo).saveAll(any());
+        verify(service).releaseBlobs(Set.of());
     }
 
     @Test
     public void testSaveToMultipleWorks() throws IOException {
         String originalFilename = "Alpha/ABC @-%.txt";
         String originalBasename = "ABC @-%.txt";
-        String expectedPathFragment = "ABC-txt";
         List<Integer> workIds = IntStream.range(500, 503).boxed().collect(toList());
         Set<Work> works = workIds.stream()
                 .map(i -> new Work(i, "SGP"+i, null, null, null, null, null, Work.Status.active))
@@ -143,26 +152,36 @@ public class TestFileStoreService {
         when(mockWorkRepo.getSetByWorkNumberIn(Matchers.sameElements(workNumbers, true))).thenReturn(works);
         User user = EntityFactory.getUser();
         Matchers.mockTransactor(mockTransactor);
+        stubStore();
+        doNothing().when(service).releaseBlobs(any());
+        List<StanFile> oldFiles = List.of(
+                new StanFile(10, null, null, null, originalBasename, "path-to-folder/oldfile", null),
+                new StanFile(11, null, null, null, originalBasename, "path-to-folder/blobs/ab/ab1", null),
+                new StanFile(12, null, null, null, originalBasename, "path-to-folder/blobs/ab/ab1", null)
+        );
+        doReturn(oldFiles).when(service).deprecateOldFiles(any(), any(), any());
 
         var sfs = asCollection(service.save(user, data, workNumbers));
         assertThat(sfs).hasSize(works.size());
-        String expectedPath = "path-to-folder/" + time + "_" + expectedPathFragment;
         int index = 0;
         for (var sf : sfs) {
-            assertEquals(expectedPath, sf.getPath());
+            assertEquals(BLOB_PATH, sf.getPath());
             assertEquals(originalBasename, sf.getName());
             assertEquals(300+index, sf.getId());
             assertEquals(user, sf.getUser());
+            assertEquals(HASH, sf.getContentHash());
             assertThat(works).contains(sf.getWork());
             assertEquals(sf.getWork().getId(), 500+index);
             ++index;
         }
 
-        verify(data).transferTo(Paths.get("/ROOT/"+expectedPath));
+        verify(service).store(data, TEMP_PATH);
+        verify(service).linkBlob(TEMP_PATH, Paths.get("/ROOT", BLOB_PATH));
         verify(service).checkAuthorisation(user, works);
         verify(service).deprecateOldFiles(eq(originalBasename), Matchers.sameElements(workIds, true), eq(time));
         verify(mockFileRepo).saveAll(any());
         verify(mockTransactor).transact(eq("updateStanFiles"), notNull());
+        verify(service).releaseBlobs(Set.of("path-to-folder/oldfile", "path-to-folder/blobs/ab/ab1"));
     }
 
     @ParameterizedTest
@@ -215,29 +234,28 @@ public class TestFileStoreService {
     }
 
     @Test
-    public void testFileTransferPathExists() throws IOException {
-        Matchers.mockTransactor(mockTransactor);
+    public void testSaveTransactionFails() throws IOException {
         MultipartFile data = mock(MultipartFile.class);
-        final String name = "FILENAME.txt";
         Work work = new Work(500, "SGP500", null, null, null, null, null, Work.Status.active);
-
-        when(data.getOriginalFilename()).thenReturn(name);
+        when(data.getOriginalFilename()).thenReturn("FILENAME.txt");
         when(mockWorkRepo.getSetByWorkNumberIn(List.of(work.getWorkNumber()))).thenReturn(Set.of(work));
-        User user = EntityFactory.getUser();
-        final LocalDateTime time = LocalDateTime.now(clock);
-        when(mockFileRepo.existsByPath("path-to-folder/"+time+"_FILENAMEtxt")).thenReturn(true);
-
-        assertThrows(IllegalArgumentException.class, () -> service.save(user, data, List.of(work.getWorkNumber())));
-        verify(data, never()).transferTo(any(Path.class));
-        verify(mockWorkRepo, never()).save(any());
-        verify(mockTransactor, never()).transact(any(), any());
+        doNothing().when(service).checkAuthorisation(any(), any());
+        stubStore();
+        doNothing().when(service).releaseBlobs(any());
+        RuntimeException failure = new IllegalStateException("Bad");
+        when(mockTransactor.transact(any(), any())).thenThrow(failure);
+
+        assertSame(failure, assertThrows(RuntimeException.class,
+                () -> service.save(EntityFactory.getUser(), data, List.of(work.getWorkNumber()))));
+        verify(service).releaseBlobs(List.of(BLOB_PATH));
     }
 
     @Test
     public void testFileTransferError() throws IOException {
         Matchers.mockTransactor(mockTransactor);
         MultipartFile data = mock(MultipartFile.class);
-        doThrow(IOException.class).when(data).transferTo(any(Path.class));
+        doReturn(TEMP_PATH).when(service).createTempFile();
+        doThrow(IOException.class).when(service).store(any(), any());
         final String name = "FILENAME.txt";
         Work work = new Work(500, "SGP500", null, null, null, null, null, Work.Status.active);
 
@@ -245,12 +263,205 @@ public class TestFileStoreService {
         when(mockWorkRepo.getByWorkNumber(work.getWorkNumber())).thenReturn(work);
         User user = EntityFactory.getUser();
 
-        final LocalDateTime time = LocalDateTime.now(clock);
-
         assertThrows(UncheckedIOException.class, () -> service.save(user, data, List.of(work.getWorkNumber())));
-        final String expectedPath = "path-to-folder/"+time+"_FILENAMEtxt";
-        verify(data).transferTo(Paths.get("/ROOT/"+expectedPath));
-        verify(mockFileRepo, never()).save(any());
+        verify(service).store(data, TEMP_PATH);
+        verify(service, never()).linkBlob(any(), any());
+        verify(mockFileRepo, never()).saveAll(any());
+        verify(mockTransactor, never()).transact(any(), any());
+    }
+
+    private void stubStore() throws IOException {
+        doReturn(TEMP_PATH).when(service).createTempFile();
+        doReturn(HASH).when(service).store(any(), any());
+        doNothing().when(service).linkBlob(any(), any());
+    }
+
+    @Test
+    public void testSaveFromPath() throws IOException {
+        Work work = new Work(500, "SGP500", null, null, null, null, null, Work.Status.active);
+        Set<Work> works = Set.of(work);
+        List<String> workNumbers = List.of(work.getWorkNumber());
+        User user = EntityFactory.getUser();
+        Path data = Paths.get("/ROOT/path-to-folder/uploads/data");
+        doReturn(works).when(service).loadWorks(any(), any());
+        doReturn(HASH).when(service).hash(any());
+        List<StanFile> sfs = List.of(new StanFile(work, user, "file.txt", BLOB_PATH));
+        doReturn(sfs).when(service).saveBlob(any(), any(), any(), any(), any());
+
+        assertSame(sfs, service.save(user, "dir/file.txt", data, workNumbers));
+        verify(service).loadWorks(user, workNumbers);
+        verify(service).hash(data);
+        verify(service).saveBlob(user, "file.txt", works, data, HASH);
+    }
+
+    @Test
+    public void testSaveFromPath_error() throws IOException {
+        Work work = new Work(500, "SGP500", null, null, null, null, null, Work.Status.active);
+        doReturn(Set.of(work)).when(service).loadWorks(any(), any());
+        doThrow(IOException.class).when(service).hash(any());
+        assertThrows(UncheckedIOException.class, () -> service.save(EntityFactory.getUser(), "file.txt",
+                Paths.get("/ROOT/data"), List.of(work.getWorkNumber())));
+        verify(service, never()).saveBlob(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testValidateUpload() {
+        User user = EntityFactory.getUser();
+        List<String> workNumbers = List.of("SGP1");
+        doReturn(Set.of()).when(service).loadWorks(any(), any());
+        assertEquals("file.txt", service.validateUpload(user, "alpha/file.txt", workNumbers));
+        verify(service).loadWorks(user, workNumbers);
+    }
+
+    @Test
+    public void testLoadWorks() {
+        assertThrows(IllegalArgumentException.class, () -> service.loadWorks(EntityFactory.getUser(), List.of()));
+        Set<Work> works = Set.of(makeWork(11));
+        User user = EntityFactory.getUser();
+        when(mockWorkRepo.getSetByWorkNumberIn(List.of("SGP11"))).thenReturn(works);
+        doNothing().when(service).checkAuthorisation(any(), any());
+        assertSame(works, service.loadWorks(user, List.of("SGP11")));
+        verify(service).checkAuthorisation(user, works);
+    }
+
+    @Test
+    public void testLinkBlob(@TempDir Path tempDir) throws IOException {
+        doReturn(tempDir.toString()).when(mockConfig).getRoot();
+        Path temp = service.createTempFile();
+        assertTrue(temp.startsWith(tempDir.resolve("path-to-folder").resolve(FileStoreServiceImp.TEMP_DIR)));
+        Files.writeString(temp, "Hello\nworld");
+        Path blob = tempDir.resolve(service.blobPath(HELLO_HASH));
+        service.linkBlob(temp, blob);
+        assertEquals("Hello\nworld", Files.readString(blob));
+        // The data is left in place for the caller to delete
+        assertEquals("Hello\nworld", Files.readString(temp));
+        FileTime modified = Files.getLastModifiedTime(blob);
+
+        Path temp2 = service.createTempFile();
+        Files.writeString(temp2, "Other");
+        service.linkBlob(temp2, blob);
+        assertTrue(Files.exists(temp2));
+        assertEquals("Hello\nworld", Files.readString(blob));
+        assertEquals(modified, Files.getLastModifiedTime(blob));
+    }
+
+    @Test
+    public void testBlobPath() {
+        assertEquals(BLOB_PATH, service.blobPath(HASH));
+        doReturn("x".repeat(60)).when(mockConfig).getDir();
+        assertThrows(IllegalStateException.class, () -> service.blobPath(HASH));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"path-to-folder/blobs/ab/abc, true", "path-to-folder/2022-11-04T14:00_file, false",
+            "path-to-folder/blobsfile, false", "other/blobs/ab/abc, false"})
+    public void testIsBlobPath(String path, boolean expected) {
+        assertEquals(expected, service.isBlobPath(path));
+    }
+
+    @Test
+    public void testReleaseBlobs(@TempDir Path tempDir) throws IOException {
+        Matchers.mockTransactor(mockTransactor);
+        doReturn(tempDir.toString()).when(mockConfig).getRoot();
+        String unusedBlob = "path-to-folder/blobs/ab/ab1", usedBlob = "path-to-folder/blobs/ab/ab2",
+                missingBlob = "path-to-folder/blobs/ab/ab3", legacyPath = "path-to-folder/legacy";
+        for (String path : List.of(unusedBlob, usedBlob, legacyPath)) {
+            Path full = tempDir.resolve(path);
+            Files.createDirectories(full.getParent());
+            Files.writeString(full, path);
+        }
+        when(mockFileRepo.countActiveByPath(any())).thenReturn(0L);
+        when(mockFileRepo.countActiveByPath(usedBlob)).thenReturn(2L);
+
+        service.releaseBlobs(List.of(unusedBlob, usedBlob, missingBlob, legacyPath));
+
+        assertFalse(Files.exists(tempDir.resolve(unusedBlob)));
+        assertTrue(Files.exists(tempDir.resolve(usedBlob)));
+        assertTrue(Files.exists(tempDir.resolve(legacyPath)));
+        verify(mockFileRepo, never()).countActiveByPath(legacyPath);
+        InOrder inOrder = inOrder(mockTransactor, mockFileRepo);
+        inOrder.verify(mockTransactor).transact(eq("releaseBlobs"), any());
+        inOrder.verify(mockFileRepo).lockBlobs();
+        inOrder.verify(mockFileRepo).countActiveByPath(unusedBlob);
+    }
+
+    @Test
+    public void testReleaseBlobs_noBlobs() {
+        service.releaseBlobs(List.of("path-to-folder/legacy"));
+        verifyNoInteractions(mockTransactor);
+        verifyNoInteractions(mockFileRepo);
+    }
+
+    @Test
+    public void testHash(@TempDir Path tempDir) throws IOException {
+        Path path = tempDir.resolve("hello");
+        Files.writeString(path, "Hello\nworld");
+        assertEquals(HELLO_HASH, service.hash(path));
+    }
+
+    @Test
+    public void testDedupe() throws IOException {
+        Matchers.mockTransactor(mockTransactor);
+        List<StanFile> activeFiles = List.of(
+                new StanFile(10, null, null, null, "a", "path-to-folder/a", null),
+                new StanFile(11, null, null, null, "a", "path-to-folder/a", null),
+                new StanFile(12, null, null, null, "b", "path-to-folder/b", null),
+                new StanFile(13, null, null, null, "c", "path-to-folder/c", null),
+                new StanFile(14, null, null, null, "d", "path-to-folder/d", null),
+                new StanFile(15, null, null, null, "e", BLOB_PATH, null)
+        );
+        when(mockFileRepo.findAllActive()).thenReturn(activeFiles);
+        doReturn(true).when(service).moveToBlob(any());
+        doReturn(false).when(service).moveToBlob("path-to-folder/b");
+        doThrow(IOException.class).when(service).moveToBlob("path-to-folder/c");
+
+        assertEquals(2, service.dedupe());
+        for (String path : List.of("a", "b", "c", "d")) {
+            verify(service).moveToBlob("path-to-folder/"+path);
+        }
+        verify(service, never()).moveToBlob(BLOB_PATH);
+    }
+
+    @Test
+    public void testDedupe_none() throws IOException {
+        Matchers.mockTransactor(mockTransactor);
+        when(mockFileRepo.findAllActive()).thenReturn(List.of(
+                new StanFile(15, null, null, null, "e", BLOB_PATH, null)
+        ));
+        assertEquals(0, service.dedupe());
+        verify(service, never()).moveToBlob(any());
+    }
+
+    @Test
+    public void testMoveToBlob(@TempDir Path tempDir) throws IOException {
+        Matchers.mockTransactor(mockTransactor);
+        doReturn(tempDir.toString()).when(mockConfig).getRoot();
+        String path1 = "path-to-folder/2022-11-04T14:00_a", path2 = "path-to-folder/2022-11-05T14:00_a";
+        Files.createDirectories(tempDir.resolve("path-to-folder"));
+        for (String path : List.of(path1, path2)) {
+            Files.writeString(tempDir.resolve(path), "Hello\nworld");
+        }
+        StanFile sf1 = new StanFile(10, null, null, null, "a", path1, null);
+        StanFile sf2 = new StanFile(11, null, null, null, "a", path1, LocalDateTime.now(clock));
+        StanFile sf3 = new StanFile(12, null, null, null, "a", path2, null);
+        when(mockFileRepo.findAllByPath(path1)).thenReturn(List.of(sf1, sf2));
+        when(mockFileRepo.findAllByPath(path2)).thenReturn(List.of(sf3));
+
+        assertTrue(service.moveToBlob(path1));
+        assertTrue(service.moveToBlob(path2));
+        assertFalse(service.moveToBlob("path-to-folder/missing"));
+
+        String blobPath = service.blobPath(HELLO_HASH);
+        for (StanFile sf : List.of(sf1, sf2, sf3)) {
+            assertEquals(blobPath, sf.getPath());
+            assertEquals(HELLO_HASH, sf.getContentHash());
+        }
+        assertEquals("Hello\nworld", Files.readString(tempDir.resolve(blobPath)));
+        assertFalse(Files.exists(tempDir.resolve(path1)));
+        assertFalse(Files.exists(tempDir.resolve(path2)));
+        verify(mockFileRepo).saveAll(List.of(sf1, sf2));
+        verify(mockFileRepo).saveAll(List.of(sf3));
+        verify(mockFileRepo, times(2)).lockBlobs();
     }
 
     @Test
@@ -274,6 +485,25 @@ public class TestFileStoreService {
         }
     }
 
+    @Test
+    public void testStore(@TempDir Path tempDir) throws IOException {
+        byte[] content = "Hello\nworld".getBytes();
+        MultipartFile data = new MockMultipartFile("file", "hello.txt", null, content);
+        Path dest = tempDir.resolve("hello");
+        Files.write(dest, List.of("Old content"));
+        String hash = service.store(data, dest);
+        assertArrayEquals(content, Files.readAllBytes(dest));
+        assertEquals(HELLO_HASH, hash);
+    }
+
+    @Test
+    public void testGetStoredPath() {
+        StanFile sf = new StanFile(200, null, null, null, "filename", "path-to-folder/file", null);
+        assertEquals(Paths.get("/ROOT", "path-to-folder", "file"), service.getStoredPath(sf));
+        sf.setDeprecated(LocalDateTime.now());
+        assertThrows(IllegalStateException.class, () -> service.getStoredPath(sf));
+    }
+
     @Test
     public void testLoadResource_inactive() {
         StanFile sf = new StanFile(200, null, null, null, "filename",
@@ -291,7 +521,7 @@ public class TestFileStoreService {
     @Test
     public void testDeprecateOldFiles_none() {
         when(mockFileRepo.findAllActiveByWorkIdAndName(any(), any())).thenReturn(List.of());
-        service.deprecateOldFiles("name", List.of(24), LocalDateTime.now());
+        assertThat(service.deprecateOldFiles("name", List.of(24), LocalDateTime.now())).isEmpty();
         verify(mockFileRepo, never()).save(any());
         verify(mockFileRepo, never()).saveAll(any());
     }
@@ -308,7 +538,7 @@ public class TestFileStoreService {
         List<Integer> workIds = List.of(24,25);
         when(mockFileRepo.findAllActiveByWorkIdAndName(workIds, "name")).thenReturn(sfs);
         final LocalDateTime time = LocalDateTime.now();
-        service.deprecateOldFiles("name", workIds, time);
+        assertSame(sfs, service.deprecateOldFiles("name", workIds, time));
         verify(mockFileRepo).saveAll(sfs);
         sfs.forEach(sf -> assertEquals(time, sf.getDeprecated()));
         sfs.forEach(sf -> assertFalse(sf.isActive()));
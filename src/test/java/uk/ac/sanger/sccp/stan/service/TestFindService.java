@@ -42,6 +42,7 @@ public class TestFindService {
     private TissueTypeRepo mockTissueTypeRepo;
     private WorkRepo mockWorkRepo;
     private SlotRepo mockSlotRepo;
+    private WorkLinkRepo mockWorkLinkRepo;
 
     private FindService findService;
 
@@ -56,9 +57,11 @@ public class TestFindService {
         mockTissueTypeRepo = mock(TissueTypeRepo.class);
         mockWorkRepo = mock(WorkRepo.class);
         mockSlotRepo = mock(SlotRepo.class);
+        mockWorkLinkRepo = mock(WorkLinkRepo.class);
 
         findService = spy(new FindService(mockLabwareService, mockStoreService, mockLabwareRepo, mockDonorRepo,
-                mockTissueRepo, mockSampleRepo, mockTissueTypeRepo, mockWorkRepo, mockSlotRepo));
+                mockTissueRepo, mockSampleRepo, mockTissueTypeRepo, mockWorkRepo, mockSlotRepo,
+                mockWorkLinkRepo));
     }
 
     @ParameterizedTest
@@ -346,9 +349,14 @@ public class TestFindService {
         WorkType workType = new WorkType(1, "worktype", true);
         ReleaseRecipient workRequester = new ReleaseRecipient(1, "test1");
         Work work = new Work(1, "SGP404", workType, workRequester, pr, null, cc, Work.Status.active);
-        work.getSampleSlotIds().add(new Work.SampleSlotId(sample.getId(), lw.getSlots().getFirst().getId()));
+        Sample sample2 = new Sample(sample.getId()+1, "2", sample.getTissue(), sample.getBioState());
 
         when(mockWorkRepo.getByWorkNumber(work.getWorkNumber())).thenReturn(work);
+        // The same slot appears twice, but is only loaded once
+        when(mockWorkLinkRepo.streamSampleSlotIds(work.getId())).thenReturn(Stream.of(
+                new Work.SampleSlotId(sample.getId(), lw.getFirstSlot().getId()),
+                new Work.SampleSlotId(sample2.getId(), lw.getFirstSlot().getId())
+        ));
         when(mockSlotRepo.findAllByIdIn(List.of(lw.getSlots().getFirst().getId()))).thenReturn(List.of(lw.getSlots().getFirst()));
         when(mockLabwareRepo.findAllByIdIn(Set.of(lw.getId()))).thenReturn(List.of(lw));
         when(mockWorkRepo.findWorkForSampleIdAndSlotId(sample.getId(), lw.getFirstSlot().getId())).thenReturn(Set.of(work));
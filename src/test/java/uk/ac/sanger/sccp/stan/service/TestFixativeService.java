@@ -21,7 +21,7 @@ public class TestFixativeService extends AdminServiceTestUtils<Fixative, Fixativ
     @BeforeEach
     void setup() {
         mockRepo = mock(FixativeRepo.class);
-        service = new FixativeService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService);
+        service = new FixativeService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService, mockRefDataCache);
     }
 
     @ParameterizedTest
@@ -0,0 +1,141 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import org.junit.jupiter.api.*;
+import org.mockito.*;
+import uk.ac.sanger.sccp.stan.EntityFactory;
+import uk.ac.sanger.sccp.stan.Transactor;
+import uk.ac.sanger.sccp.stan.config.AncestryConfig;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.ActionRepo;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+import static uk.ac.sanger.sccp.stan.Matchers.mockTransactor;
+
+/**
+ * Test {@link LineageServiceImp}
+ */
+class TestLineageService {
+    @Mock
+    private Transactor mockTransactor;
+    @Mock
+    private ActionRepo mockActionRepo;
+    @Mock
+    private AncestryConfig mockAncestryConfig;
+
+    private LineageServiceImp service;
+
+    private AutoCloseable mocking;
+
+    private Sample sample;
+    private Slot slot1, slot2, slot3;
+    private Operation op;
+
+    @BeforeEach
+    void setup() {
+        mocking = MockitoAnnotations.openMocks(this);
+        when(mockAncestryConfig.isRecordLineage()).thenReturn(true);
+        service = spy(new LineageServiceImp(mockTransactor, mockActionRepo, mockAncestryConfig));
+        sample = EntityFactory.getSample();
+        LabwareType lt = EntityFactory.getTubeType();
+        slot1 = EntityFactory.makeEmptyLabware(lt).getFirstSlot();
+        slot2 = EntityFactory.makeEmptyLabware(lt).getFirstSlot();
+        slot3 = EntityFactory.makeEmptyLabware(lt).getFirstSlot();
+        op = new Operation();
+        op.setId(50);
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        mocking.close();
+    }
+
+    @Test
+    void testIsComplete() {
+        when(mockActionRepo.existsActionMissingLineage()).thenReturn(1, 0);
+        assertFalse(service.isComplete());
+        assertTrue(service.isComplete());
+        assertTrue(service.isComplete());
+        verify(mockActionRepo, times(2)).existsActionMissingLineage();
+    }
+
+    @Test
+    void testIsComplete_notRecording() {
+        when(mockAncestryConfig.isRecordLineage()).thenReturn(false);
+        service = new LineageServiceImp(mockTransactor, mockActionRepo, mockAncestryConfig);
+        assertFalse(service.isComplete());
+        verifyNoInteractions(mockActionRepo);
+    }
+
+    @Test
+    void testRecordLineage_inPlace() {
+        service.recordLineage(op, List.of(new Action(null, 50, slot1, slot1, sample, sample)));
+        verifyNoInteractions(mockActionRepo);
+    }
+
+    @Test
+    void testRecordLineage_notRecording() {
+        when(mockAncestryConfig.isRecordLineage()).thenReturn(false);
+        service = new LineageServiceImp(mockTransactor, mockActionRepo, mockAncestryConfig);
+        assertFalse(service.isRecording());
+        service.recordLineage(op, List.of(new Action(null, 50, slot1, slot2, sample, sample)));
+        verifyNoInteractions(mockActionRepo);
+    }
+
+    @Test
+    void testRecordLineage_singleGeneration() {
+        when(mockActionRepo.insertLineageClosure(anyInt(), anyInt())).thenReturn(2);
+        service.recordLineage(op, List.of(new Action(null, 50, slot1, slot2, sample, sample),
+                new Action(null, 50, slot1, slot3, sample, sample)));
+        verify(mockActionRepo).insertReflexiveLineage(50, 50);
+        verify(mockActionRepo, times(1)).insertLineageClosure(50, 50);
+    }
+
+    @Test
+    void testRecordLineage_chain() {
+        when(mockActionRepo.insertLineageClosure(anyInt(), anyInt())).thenReturn(2, 1, 0);
+        service.recordLineage(op, List.of(new Action(null, 50, slot1, slot2, sample, sample),
+                new Action(null, 50, slot2, slot3, sample, sample)));
+        verify(mockActionRepo).insertReflexiveLineage(50, 50);
+        verify(mockActionRepo, times(3)).insertLineageClosure(50, 50);
+    }
+
+    @Test
+    void testHasInternalChain() {
+        assertFalse(LineageServiceImp.hasInternalChain(List.of(new Action(null, 50, slot1, slot2, sample, sample),
+                new Action(null, 50, slot2, slot2, sample, sample))));
+        assertTrue(LineageServiceImp.hasInternalChain(List.of(new Action(null, 50, slot1, slot2, sample, sample),
+                new Action(null, 50, slot2, slot3, sample, sample))));
+    }
+
+    @Test
+    void testBackfill_noActions() {
+        when(mockActionRepo.findMaxOperationId()).thenReturn(null);
+        assertEquals(0, service.backfill());
+        verify(mockActionRepo, never()).insertReflexiveLineage(anyInt(), anyInt());
+    }
+
+    @Test
+    void testBackfill() {
+        mockTransactor(mockTransactor);
+        final int batchSize = LineageServiceImp.BACKFILL_BATCH_SIZE;
+        when(mockActionRepo.findMaxOperationId()).thenReturn(batchSize + 5);
+        doReturn(10).when(service).backfillRange(anyInt(), anyInt());
+        assertEquals(20, service.backfill());
+        verify(service).backfillRange(0, batchSize-1);
+        verify(service).backfillRange(batchSize, batchSize+5);
+        verify(mockTransactor, times(2)).transact(any(), any());
+    }
+
+    @Test
+    void testBackfillRange() {
+        when(mockActionRepo.insertReflexiveLineage(anyInt(), anyInt())).thenReturn(5);
+        when(mockActionRepo.insertLineageClosure(anyInt(), anyInt())).thenReturn(4, 2, 0);
+        assertEquals(11, service.backfillRange(1, 10));
+        verify(mockActionRepo, times(3)).insertLineageClosure(1, 10);
+    }
+}
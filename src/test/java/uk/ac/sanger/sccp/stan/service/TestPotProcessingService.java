@@ -534,9 +534,9 @@ public class TestPotProcessingService {
                 .map(lt -> new PotProcessingDestination(lt.getName(), "fix1"))
                 .collect(toList());
         List<Sample> samples = List.of(sample1, sample1, sample1, sample2);
-        when(mockLwService.create(any(LabwareType.class))).thenAnswer(invocation -> {
-            LabwareType lt = invocation.getArgument(0);
-            return EntityFactory.makeEmptyLabware(lt);
+        when(mockLwService.createAll(any())).thenAnswer(invocation -> {
+            List<Labware> unsaved = invocation.getArgument(0);
+            return unsaved.stream().map(lw -> EntityFactory.makeEmptyLabware(lw.getLabwareType())).toList();
         });
 
         List<Labware> labware = service.createDestinations(ppds, ltMap, samples);
@@ -549,7 +549,7 @@ public class TestPotProcessingService {
             assertSame(lts.get(i), lw.getLabwareType());
         }
 
-        verify(mockLwService, times(samples.size())).create(any(LabwareType.class));
+        verify(mockLwService).createAll(any());
     }
 
     @Test
@@ -21,6 +21,7 @@ import static uk.ac.sanger.sccp.stan.Matchers.returnArgument;
  */
 public class TestProbePanelService {
     ProbePanelRepo mockRepo;
+    ReferenceDataCache mockRefDataCache;
     Validator<String> validator;
     ProbePanelService service;
 
@@ -28,7 +29,8 @@ public class TestProbePanelService {
     void setup() {
         mockRepo = mock(ProbePanelRepo.class);
         validator = new StringValidator("name", 1, 16, StringValidator.CharacterType.ALPHA);
-        service = new ProbePanelService(mockRepo, validator);
+        mockRefDataCache = mock(ReferenceDataCache.class);
+        service = new ProbePanelService(mockRepo, validator, mockRefDataCache);
     }
 
     @ParameterizedTest
@@ -50,6 +52,7 @@ public class TestProbePanelService {
         when(mockRepo.save(any())).thenReturn(savedProbe);
         assertSame(savedProbe, service.addProbePanel(type, name));
         verify(mockRepo).save(new ProbePanel(type, name));
+        verify(mockRefDataCache).invalidate(ProbePanel.class);
     }
 
     @ParameterizedTest
@@ -78,6 +81,7 @@ public class TestProbePanelService {
         assertEquals(enable, probe.isEnabled());
         if (enable != state) {
             verify(mockRepo).save(probe);
+            verify(mockRefDataCache).invalidate(ProbePanel.class);
         }
     }
 }
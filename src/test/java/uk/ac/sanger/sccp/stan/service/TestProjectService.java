@@ -26,7 +26,7 @@ public class TestProjectService extends AdminServiceTestUtils<Project, ProjectRe
     @BeforeEach
     void setup() {
         mockRepo = mock(ProjectRepo.class);
-        service = spy(new ProjectService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService));
+        service = spy(new ProjectService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService, mockRefDataCache));
     }
 
     @ParameterizedTest
@@ -0,0 +1,272 @@
+package uk.ac.sanger.sccp.stan.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.ac.sanger.sccp.stan.config.ReferenceDataConfig;
+import uk.ac.sanger.sccp.stan.model.Fixative;
+import uk.ac.sanger.sccp.stan.model.Species;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManagerFactory;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link ReferenceDataCache}
+ */
+public class TestReferenceDataCache {
+    private static final long POLL_MS = 1000;
+
+    private ReferenceDataConfig mockConfig;
+    private FakeVersionService versionService;
+    private MutableClock clock;
+    private EntityManagerFactory mockEmf;
+    private org.hibernate.Cache mockHibernateCache;
+    private ReferenceDataCache cache;
+
+    @BeforeEach
+    void setup() {
+        mockConfig = mock(ReferenceDataConfig.class);
+        when(mockConfig.isCacheEnabled()).thenReturn(true);
+        when(mockConfig.getPollMs()).thenReturn(POLL_MS);
+        versionService = new FakeVersionService();
+        clock = new MutableClock();
+        mockEmf = mock(EntityManagerFactory.class);
+        Cache mockJpaCache = mock(Cache.class);
+        mockHibernateCache = mock(org.hibernate.Cache.class);
+        when(mockEmf.getCache()).thenReturn(mockJpaCache);
+        when(mockJpaCache.unwrap(org.hibernate.Cache.class)).thenReturn(mockHibernateCache);
+        cache = new ReferenceDataCache(mockConfig, versionService, clock, mockEmf);
+    }
+
+    @Test
+    public void testGet_cachesValue() {
+        CountingLoader<List<String>> loader = new CountingLoader<>(List.of("Alpha"));
+        assertEquals(List.of("Alpha"), cache.get(Fixative.class, false, loader));
+        assertEquals(List.of("Alpha"), cache.get(Fixative.class, false, loader));
+        assertEquals(1, loader.count.get());
+    }
+
+    @Test
+    public void testGet_distinctKeys() {
+        CountingLoader<String> enabledLoader = new CountingLoader<>("enabled");
+        CountingLoader<String> allLoader = new CountingLoader<>("all");
+        CountingLoader<String> nullLoader = new CountingLoader<>("null");
+        assertEquals("enabled", cache.get(Fixative.class, false, enabledLoader));
+        assertEquals("all", cache.get(Fixative.class, true, allLoader));
+        assertEquals("null", cache.get(Fixative.class, null, nullLoader));
+        assertEquals("enabled", cache.get(Fixative.class, false, enabledLoader));
+        assertEquals("all", cache.get(Fixative.class, true, allLoader));
+        assertEquals("null", cache.get(Fixative.class, null, nullLoader));
+        assertEquals(1, enabledLoader.count.get());
+        assertEquals(1, allLoader.count.get());
+        assertEquals(1, nullLoader.count.get());
+    }
+
+    @Test
+    public void testGet_disabled() {
+        when(mockConfig.isCacheEnabled()).thenReturn(false);
+        CountingLoader<String> loader = new CountingLoader<>("Alpha");
+        cache.get(Fixative.class, null, loader);
+        cache.get(Fixative.class, null, loader);
+        assertEquals(2, loader.count.get());
+        assertEquals(0, versionService.loadCount);
+    }
+
+    @Test
+    public void testGet_nullNotCached() {
+        CountingLoader<String> loader = new CountingLoader<>(null);
+        assertNull(cache.get(Fixative.class, null, loader));
+        assertNull(cache.get(Fixative.class, null, loader));
+        assertEquals(2, loader.count.get());
+    }
+
+    @Test
+    public void testInvalidate() {
+        CountingLoader<String> fixLoader = new CountingLoader<>("fix");
+        CountingLoader<String> speciesLoader = new CountingLoader<>("species");
+        cache.get(Fixative.class, null, fixLoader);
+        cache.get(Species.class, null, speciesLoader);
+
+        cache.invalidate(Fixative.class);
+        assertEquals(1L, versionService.versions.get("Fixative"));
+        assertNull(versionService.versions.get("Species"));
+
+        cache.get(Fixative.class, null, fixLoader);
+        cache.get(Species.class, null, speciesLoader);
+        assertEquals(2, fixLoader.count.get());
+        assertEquals(1, speciesLoader.count.get());
+    }
+
+    @Test
+    public void testInvalidate_otherInstance() {
+        ReferenceDataCache otherCache = new ReferenceDataCache(mockConfig, versionService, clock, mockEmf);
+        CountingLoader<String> loader = new CountingLoader<>("fix");
+        cache.get(Fixative.class, null, loader);
+        assertEquals(1, loader.count.get());
+
+        otherCache.invalidate(Fixative.class);
+        // Before the poll interval has passed, the old value is still used
+        cache.get(Fixative.class, null, loader);
+        assertEquals(1, loader.count.get());
+
+        clock.advance(POLL_MS);
+        cache.get(Fixative.class, null, loader);
+        assertEquals(2, loader.count.get());
+        // The new version is now known, so the value is not dropped again
+        clock.advance(POLL_MS);
+        cache.get(Fixative.class, null, loader);
+        assertEquals(2, loader.count.get());
+    }
+
+    @Test
+    public void testCheckVersions_evictsSecondLevelCache() {
+        versionService.versions.put("Fixative", 1L);
+        cache.checkVersions();
+        // The first check establishes the known versions
+        verifyNoInteractions(mockHibernateCache);
+
+        clock.advance(POLL_MS);
+        cache.checkVersions();
+        verifyNoInteractions(mockHibernateCache);
+
+        versionService.versions.put("Fixative", 2L);
+        versionService.versions.put("Species", 1L);
+        clock.advance(POLL_MS);
+        cache.checkVersions();
+        verify(mockHibernateCache).evictEntityData();
+        verify(mockHibernateCache).evictCollectionData();
+        verify(mockHibernateCache).evictQueryRegions();
+        verifyNoMoreInteractions(mockHibernateCache);
+    }
+
+    @Test
+    public void testCheckVersions_evictError() {
+        cache.checkVersions();
+        doThrow(IllegalStateException.class).when(mockHibernateCache).evictEntityData();
+        CountingLoader<String> loader = new CountingLoader<>("fix");
+        cache.get(Fixative.class, null, loader);
+        versionService.versions.put("Fixative", 1L);
+        clock.advance(POLL_MS);
+        cache.get(Fixative.class, null, loader);
+        assertEquals(2, loader.count.get());
+    }
+
+    @Test
+    public void testCheckVersions_pollInterval() {
+        cache.checkVersions();
+        assertEquals(1, versionService.loadCount);
+        clock.advance(POLL_MS-1);
+        cache.checkVersions();
+        assertEquals(1, versionService.loadCount);
+        clock.advance(1);
+        cache.checkVersions();
+        assertEquals(2, versionService.loadCount);
+    }
+
+    @Test
+    public void testCheckVersions_error() {
+        CountingLoader<String> loader = new CountingLoader<>("fix");
+        cache.get(Fixative.class, null, loader);
+        versionService.failLoad = true;
+        clock.advance(POLL_MS);
+        assertEquals("fix", cache.get(Fixative.class, null, loader));
+        assertEquals(1, loader.count.get());
+    }
+
+    @Test
+    public void testGet_invalidatedDuringLoad() {
+        AtomicInteger count = new AtomicInteger();
+        Supplier<String> loader = () -> {
+            if (count.incrementAndGet()==1) {
+                // Simulates the data changing while it is being loaded
+                cache.clearLocal("Fixative");
+                return "old";
+            }
+            return "new";
+        };
+        assertEquals("old", cache.get(Fixative.class, null, loader));
+        assertEquals("new", cache.get(Fixative.class, null, loader));
+        assertEquals("new", cache.get(Fixative.class, null, loader));
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void testCategoryName() {
+        assertEquals("Fixative", ReferenceDataCache.categoryName(Fixative.class));
+    }
+
+    private static class CountingLoader<T> implements Supplier<T> {
+        final T value;
+        final AtomicInteger count = new AtomicInteger();
+
+        CountingLoader(T value) {
+            this.value = value;
+        }
+
+        @Override
+        public T get() {
+            count.incrementAndGet();
+            return value;
+        }
+    }
+
+    /** Version service keeping its versions in memory, so it can be shared between caches */
+    private static class FakeVersionService implements ReferenceDataVersionService {
+        final Map<String, Long> versions = new HashMap<>();
+        int loadCount;
+        boolean failLoad;
+
+        @Override
+        public Map<String, Long> loadVersions() {
+            ++loadCount;
+            if (failLoad) {
+                throw new IllegalStateException("Bad database");
+            }
+            return new HashMap<>(versions);
+        }
+
+        @Override
+        public long loadVersion(String category) {
+            return versions.getOrDefault(category, 0L);
+        }
+
+        @Override
+        public void increment(String category) {
+            versions.merge(category, 1L, Long::sum);
+        }
+    }
+
+    private static class MutableClock extends Clock {
+        private long millis = 1_000_000;
+
+        void advance(long ms) {
+            millis += ms;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+    }
+}
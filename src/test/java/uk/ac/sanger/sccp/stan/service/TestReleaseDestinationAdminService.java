@@ -20,7 +20,7 @@ public class TestReleaseDestinationAdminService extends AdminServiceTestUtils<Re
     @BeforeEach
     void setup() {
         mockRepo = mock(ReleaseDestinationRepo.class);
-        service = new ReleaseDestinationAdminService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService);
+        service = new ReleaseDestinationAdminService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService, mockRefDataCache);
     }
 
     @ParameterizedTest
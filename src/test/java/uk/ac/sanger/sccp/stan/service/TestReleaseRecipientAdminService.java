@@ -27,7 +27,7 @@ public class TestReleaseRecipientAdminService extends AdminServiceTestUtils<Rele
     @BeforeEach
     void setup() {
         mockRepo = mock(ReleaseRecipientRepo.class);
-        service = new ReleaseRecipientAdminService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService);
+        service = new ReleaseRecipientAdminService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService, mockRefDataCache);
     }
 
     @ParameterizedTest
@@ -51,6 +51,7 @@ public class TestReleaseRecipientAdminService extends AdminServiceTestUtils<Rele
         if (expectedException != null) {
             assertException(expectedException, () -> service.updateFullName(userName, fullName));
             verify(mockRepo, never()).save(any());
+            verifyNoInteractions(mockRefDataCache);
             return;
         }
         ReleaseRecipient expectedResult = new ReleaseRecipient(20, userName, expectedUserName);
@@ -58,6 +59,7 @@ public class TestReleaseRecipientAdminService extends AdminServiceTestUtils<Rele
         when(mockRepo.save(any())).thenReturn(expectedResult);
         assertSame(expectedResult, service.updateFullName(userName, fullName));
         verify(mockRepo).save( new ReleaseRecipient(20, userName, fullName));
+        verify(mockRefDataCache).invalidate(ReleaseRecipient.class);
     }
 
     private static Stream<Arguments> updateReleaseRecipientArgs() {
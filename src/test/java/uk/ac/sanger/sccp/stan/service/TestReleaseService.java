@@ -56,6 +56,7 @@ public class TestReleaseService {
     private LabwareType labwareType;
     private EmailService mockEmailService;
     private WorkService mockWorkService;
+    private WorkProgressService mockWorkProgressService;
 
     private ReleaseServiceImp service;
 
@@ -77,6 +78,7 @@ public class TestReleaseService {
         when(mockRecipientRepo.getByUsername(recipient.getUsername())).thenReturn(recipient);
         mockEmailService = mock(EmailService.class);
         mockWorkService = mock(WorkService.class);
+        mockWorkProgressService = mock(WorkProgressService.class);
 
         sample = EntityFactory.getSample();
         sample1 = new Sample(sample.getId()+1, "7", sample.getTissue(), EntityFactory.getBioState());
@@ -85,7 +87,7 @@ public class TestReleaseService {
 
         service = spy(new ReleaseServiceImp(mockStanConfig, mockTransactor, mockEntityManager,
                 mockDestinationRepo, mockRecipientRepo, mockLabwareRepo, mockStoreService,
-                mockReleaseRepo, mockSnapshotService, mockEmailService, mockWorkService));
+                mockReleaseRepo, mockSnapshotService, mockEmailService, mockWorkService, mockWorkProgressService));
 
         when(mockTransactor.transact(any(), any())).then(invocation -> {
             Supplier<List<Release>> supplier = invocation.getArgument(1);
@@ -330,6 +332,7 @@ public class TestReleaseService {
         verify(service).updateReleasedLabware(lws);
         verify(service).link(releases, workMap);
         verify(service).recordReleases(user, destination, recipient, otherRecs, lws, locations);
+        verify(mockWorkProgressService).recordReleases(List.of(100));
     }
 
     @Test
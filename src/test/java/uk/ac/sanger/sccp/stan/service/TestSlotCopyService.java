@@ -230,6 +230,9 @@ public class TestSlotCopyService {
                 .when(service).executeOp(any(), any(), any(), any(), any(), any(), any(), any(), any(), any(), any(),
                         any(), any(), any(), any(), any(), any(), any(), any(), any());
         doReturn(sourceLps).when(service).loadLpNumbers(any());
+        Labware created1 = EntityFactory.makeEmptyLabware(lt1);
+        Labware created2 = EntityFactory.makeEmptyLabware(lt2);
+        doReturn(List.of(created1, created2)).when(service).createNewDestinations(any(), any(), any());
 
         final ExecutionType exType = ExecutionType.manual;
 
@@ -238,14 +241,38 @@ public class TestSlotCopyService {
         assertThat(result.getLabware()).containsExactly(newLw1, newLw2, dest1);
 
         verify(service).loadLpNumbers(sources.values());
-        verify(service).executeOp(same(user), same(firstDest.getContents()), same(opType), same(lt1), eq("pb1"), eq(sources), eq(sourceLps), same(SlideCosting.SGP), eq("1234567"), eq("777777"), same(bs), eq("LP1"), eq("0000"), eq("1111"), eq("2222"), eq("123456"), same(SlideCosting.Faculty), isNull(), same(exType), any());
-        verify(service).executeOp(same(user), same(dests.get(1).getContents()), same(opType), same(lt2), isNull(), eq(sources), eq(sourceLps), same(SlideCosting.Faculty), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(),isNull(), same(exType), any());
+        verify(service).executeOp(same(user), same(firstDest.getContents()), same(opType), same(lt1), eq("pb1"), eq(sources), eq(sourceLps), same(SlideCosting.SGP), eq("1234567"), eq("777777"), same(bs), eq("LP1"), eq("0000"), eq("1111"), eq("2222"), eq("123456"), same(SlideCosting.Faculty), same(created1), same(exType), any());
+        verify(service).executeOp(same(user), same(dests.get(1).getContents()), same(opType), same(lt2), isNull(), eq(sources), eq(sourceLps), same(SlideCosting.Faculty), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(), same(created2), same(exType), any());
+        verify(service).createNewDestinations(dests, lwTypes, existingDests);
         verify(service).executeOp(same(user), same(dests.get(2).getContents()), same(opType), isNull(), isNull(), eq(sources), eq(sourceLps), isNull(), isNull(), isNull(), isNull(), isNull(), isNull(),isNull(), isNull(), isNull(), isNull(), same(dest1), same(exType), any());
 
         verify(mockBioRiskService).copyOpSampleBioRisks(result.getOperations());
         verify(mockWorkService).link(work, result.getOperations());
     }
 
+    @Test
+    public void testCreateNewDestinations() {
+        final LabwareType lt1 = EntityFactory.makeLabwareType(1, 1, "lt1");
+        final LabwareType lt2 = EntityFactory.makeLabwareType(1, 2, "lt2");
+        UCMap<LabwareType> lwTypes = UCMap.from(LabwareType::getName, lt1, lt2);
+        Labware existing = EntityFactory.makeEmptyLabware(lt1, "STAN-E");
+        List<SlotCopyDestination> dests = IntStream.range(0, 3)
+                .mapToObj(i -> new SlotCopyDestination())
+                .toList();
+        dests.get(0).setLabwareType("lt1");
+        dests.get(0).setPreBarcode("pb1");
+        dests.get(1).setBarcode("STAN-E");
+        dests.get(2).setLabwareType("lt2");
+        List<Labware> created = List.of(EntityFactory.makeEmptyLabware(lt1), EntityFactory.makeEmptyLabware(lt2));
+        when(mockLwService.createAll(any())).thenReturn(created);
+
+        assertSame(created, service.createNewDestinations(dests, lwTypes, UCMap.from(Labware::getBarcode, existing)));
+        verify(mockLwService).createAll(argThat(unsaved -> unsaved.size()==2
+                && unsaved.get(0).getLabwareType()==lt1 && "PB1".equals(unsaved.get(0).getBarcode())
+                && "PB1".equals(unsaved.get(0).getExternalBarcode())
+                && unsaved.get(1).getLabwareType()==lt2 && unsaved.get(1).getBarcode()==null));
+    }
+
     @ParameterizedTest
     @CsvSource({"false,false,false,false,false,false,",
             "false,false,false,true,false,false,",
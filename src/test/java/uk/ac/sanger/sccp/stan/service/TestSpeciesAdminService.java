@@ -20,7 +20,7 @@ public class TestSpeciesAdminService extends AdminServiceTestUtils<Species, Spec
     @BeforeEach
     void setup() {
         mockRepo = mock(SpeciesRepo.class);
-        service = new SpeciesAdminService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService);
+        service = new SpeciesAdminService(mockRepo, simpleValidator(), mockTransactor, mockNotifyService, mockRefDataCache);
     }
 
     @ParameterizedTest
@@ -34,6 +34,8 @@ class TestTissueTypeService {
     Validator<String> mockTtCodeValidator;
     @Mock
     Validator<String> mockSlNameValidator;
+    @Mock
+    ReferenceDataCache mockRefDataCache;
 
     private TissueTypeServiceImp service;
 
@@ -43,7 +45,7 @@ class TestTissueTypeService {
     void setup() {
         mocking = MockitoAnnotations.openMocks(this);
         service = spy(new TissueTypeServiceImp(mockTtRepo, mockSlRepo,
-                mockTtNameValidator, mockTtCodeValidator, mockSlNameValidator));
+                mockTtNameValidator, mockTtCodeValidator, mockSlNameValidator, mockRefDataCache));
     }
 
     @AfterEach
@@ -387,6 +389,7 @@ class TestTissueTypeService {
         assertEquals(expected.getSpatialLocations(), result.getSpatialLocations());
         verify(mockTtRepo).save(result);
         verify(mockSlRepo).saveAll(result.getSpatialLocations());
+        verify(mockRefDataCache).invalidate(TissueType.class);
     }
 
     @Test
@@ -419,5 +422,6 @@ class TestTissueTypeService {
         );
         verify(mockSlRepo).saveAll(List.of(new SpatialLocation(200, "sl1", 1, result),
                 new SpatialLocation(201, "sl2", 2, result)));
+        verify(mockRefDataCache).invalidate(TissueType.class);
     }
 }
\ No newline at end of file
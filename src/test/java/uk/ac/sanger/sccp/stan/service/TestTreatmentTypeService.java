@@ -21,7 +21,7 @@ public class TestTreatmentTypeService extends AdminServiceTestUtils<TreatmentTyp
     @BeforeEach
     void setup() {
         mockRepo = mock(TreatmentTypeRepo.class);
-        service = new TreatmentTypeService(mockRepo, simpleValidator(), mockTransactor);
+        service = new TreatmentTypeService(mockRepo, simpleValidator(), mockTransactor, mockRefDataCache);
     }
 
     @ParameterizedTest
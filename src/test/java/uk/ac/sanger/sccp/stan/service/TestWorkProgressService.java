@@ -6,6 +6,8 @@ import org.junit.jupiter.params.provider.*;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import uk.ac.sanger.sccp.stan.EntityFactory;
+import uk.ac.sanger.sccp.stan.Transactor;
+import uk.ac.sanger.sccp.stan.config.WorkProgressConfig;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.model.Work.Status;
 import uk.ac.sanger.sccp.stan.repo.*;
@@ -16,12 +18,10 @@ import uk.ac.sanger.sccp.stan.service.work.WorkEventService;
 import javax.persistence.EntityNotFoundException;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.toList;
-import static java.util.stream.Collectors.toSet;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -32,13 +32,13 @@ import static org.mockito.Mockito.*;
  */
 
 public class TestWorkProgressService {
+    @Mock private Transactor mockTransactor;
+    @Mock private WorkProgressConfig mockWorkProgressConfig;
     @Mock private WorkRepo mockWorkRepo;
     @Mock private WorkTypeRepo mockWorkTypeRepo;
     @Mock private ProgramRepo mockProgramRepo;
-    @Mock private OperationRepo mockOpRepo;
-    @Mock private LabwareRepo mockLwRepo;
-    @Mock private ReleaseRepo mockReleaseRepo;
-    @Mock private StainTypeRepo mockStainTypeRepo;
+    @Mock private OperationTypeRepo mockOpTypeRepo;
+    @Mock private WorkProgressRepo mockWorkProgressRepo;
     @Mock private ReleaseRecipientRepo mockRecipientRepo;
     @Mock private WorkEventService mockWorkEventService;
     private WorkProgressServiceImp service;
@@ -48,9 +48,8 @@ public class TestWorkProgressService {
     void setup() {
         mocking = MockitoAnnotations.openMocks(this);
 
-        service = spy(new WorkProgressServiceImp(mockWorkRepo, mockWorkTypeRepo, mockProgramRepo, mockOpRepo,
-                mockLwRepo, mockReleaseRepo, mockStainTypeRepo, mockRecipientRepo,
-                mockWorkEventService));
+        service = spy(new WorkProgressServiceImp(mockTransactor, mockWorkProgressConfig, mockWorkRepo, mockWorkTypeRepo, mockProgramRepo, mockOpTypeRepo,
+                mockWorkProgressRepo, mockRecipientRepo, mockWorkEventService));
     }
 
     @AfterEach
@@ -80,7 +79,7 @@ public class TestWorkProgressService {
             assertThat(assertThrows(EntityNotFoundException.class,
                     () -> service.getProgress(workNumber, workTypeNames, programNames, statuses, requesterNames)))
                     .hasMessage(expectedError);
-            verify(service, never()).getProgressForWork(any(), any(), any(), any(), any(), any(), any());
+            verify(service, never()).getProgressForWorks(any());
         } else {
             List<WorkProgress> wps = service.getProgress(workNumber, workTypeNames, programNames, statuses, requesterNames);
             verifyProgress(wps, works);
@@ -300,178 +299,195 @@ public class TestWorkProgressService {
 
     private void verifyProgress(List<WorkProgress> wps, List<Work> works) {
         assertThat(wps.stream().map(WorkProgress::getWork)).containsExactlyElementsOf(works);
-        verify(service, times(works.size())).getProgressForWork(notNull(), notNull(), notNull(), notNull(), notNull(), notNull(), notNull());
+        if (!works.isEmpty()) {
+            verify(service).getProgressForWorks(works);
+        }
     }
 
-    @Test
-    public void testGetProgressForWork() {
-        Work work = workWithId(17);
+    @ParameterizedTest
+    @ValueSource(booleans={false,true})
+    public void testGetProgressForWorks(boolean readStored) {
+        when(mockWorkProgressConfig.isReadStored()).thenReturn(readStored);
+        List<Work> works = List.of(workWithId(17), workWithId(18), workWithId(19));
         final LocalDateTime sectionTime = LocalDateTime.of(2021, 9, 23, 11, 0);
         final LocalDateTime stainTime = LocalDateTime.of(2021, 9, 22, 12, 0);
-        Map<String, LocalDateTime> times = Map.of("Section", sectionTime,"Stain", stainTime);
-        Predicate<OperationType> opTypeFilter = x -> true;
-        Predicate<StainType> stainTypeFilter = x -> true;
-        Predicate<LabwareType> lwTypeFilter = x -> true;
-        Predicate<LabwareType> releaseFilter = x -> true;
-        Sample sample = EntityFactory.getSample();
-        Map<Integer, Labware> lwIdTypeMap = Map.of(4, EntityFactory.makeLabware(EntityFactory.getTubeType(), sample) );
-        final Map<String,Set<String>> labwareTypeStainMap = Map.of("Visium ADH",Set.of("H&E"));
-        doReturn(times).when(service).loadOpTimes(work, opTypeFilter, stainTypeFilter, lwTypeFilter,releaseFilter, lwIdTypeMap,labwareTypeStainMap);
-        WorkProgress wp = service.getProgressForWork(work, opTypeFilter, stainTypeFilter, lwTypeFilter,releaseFilter, lwIdTypeMap,labwareTypeStainMap);
-        assertSame(work, wp.getWork());
-        assertThat(wp.getTimestamps()).containsExactlyInAnyOrder(
+        Map<Integer, Map<String, LocalDateTime>> workTimes = Map.of(
+                17, Map.of("Section", sectionTime, "Stain", stainTime),
+                18, Map.of("Stain", stainTime)
+        );
+        if (readStored) {
+            when(mockWorkProgressRepo.loadStoredTimes(any())).thenReturn(workTimes);
+        } else {
+            doReturn(workTimes).when(service).loadOpTimes(any(), any());
+        }
+        doReturn(Map.of(18, "Paused for lunch.")).when(service).loadWorkComments(any());
+
+        List<WorkProgress> wps = service.getProgressForWorks(works);
+        if (readStored) {
+            verify(mockWorkProgressRepo).loadStoredTimes(List.of(17, 18, 19));
+            verify(service, never()).loadOpTimes(any(), any());
+        } else {
+            verify(service).loadOpTimes(List.of(17, 18, 19), null);
+            verify(mockWorkProgressRepo, never()).loadStoredTimes(any());
+        }
+        verify(service).loadWorkComments(works);
+        assertThat(wps).hasSize(works.size());
+        for (int i = 0; i < works.size(); ++i) {
+            assertSame(works.get(i), wps.get(i).getWork());
+        }
+        assertThat(wps.get(0).getTimestamps()).containsExactlyInAnyOrder(
                 new WorkProgressTimestamp("Section", sectionTime),
                 new WorkProgressTimestamp("Stain", stainTime)
         );
-        assertEquals(wp.getMostRecentOperation(), "Section");
+        assertEquals("Section", wps.get(0).getMostRecentOperation());
+        assertNull(wps.get(0).getWorkComment());
+        assertThat(wps.get(1).getTimestamps()).containsExactly(new WorkProgressTimestamp("Stain", stainTime));
+        assertEquals("Stain", wps.get(1).getMostRecentOperation());
+        assertEquals("Paused for lunch.", wps.get(1).getWorkComment());
+        assertThat(wps.get(2).getTimestamps()).isEmpty();
+        assertNull(wps.get(2).getMostRecentOperation());
     }
 
     @Test
-    public void testLoadOpTimes() {
-        OperationType sectionType = EntityFactory.makeOperationType( "Section", null, OperationTypeFlag.SOURCE_IS_BLOCK);
+    public void testGetProgressForWorks_none() {
+        assertThat(service.getProgressForWorks(List.of())).isEmpty();
+        verifyNoInteractions(mockWorkProgressRepo, mockOpTypeRepo, mockWorkEventService);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans={false,true})
+    public void testLoadOpTimes(boolean restrictOps) {
+        OperationType sectionType = EntityFactory.makeOperationType("Section", null, OperationTypeFlag.SOURCE_IS_BLOCK);
         OperationType stainOpType = EntityFactory.makeOperationType("Stain", null, OperationTypeFlag.STAIN, OperationTypeFlag.IN_PLACE);
         OperationType rinOpType = EntityFactory.makeOperationType("RIN analysis", null, OperationTypeFlag.ANALYSIS);
         OperationType dv200OpType = EntityFactory.makeOperationType("DV200 analysis", null, OperationTypeFlag.ANALYSIS);
         OperationType otherType = EntityFactory.makeOperationType("Bananas", null);
+        when(mockOpTypeRepo.findAll()).thenReturn(List.of(sectionType, stainOpType, rinOpType, dv200OpType, otherType));
 
-        StainType st1 = new StainType(1, "RNAscope");
-        StainType st2 = new StainType(2, "IHC");
-        StainType st3 = new StainType(3, "Rhubarb");
-        StainType st4 = new StainType(4, "H&E");
-
-        LabwareType lt1 = new LabwareType(1, "jar", 1, 1, null, false);
-        LabwareType lt2 = new LabwareType(2, "box", 1, 1, null, false);
-        LabwareType lt3 = new LabwareType(3, "96 well plate", 12, 8, null, false);
-        LabwareType lt4 = new LabwareType(4, "Visium ADH", 1, 1, null, false);
-
-        final Map<String,Set<String>> labwareTypeStainMap = Map.of("visium adh", Set.of("h&e"));
-
-        Predicate<OperationType> opTypeFilter = x -> (x==sectionType || x==stainOpType || x==rinOpType || x==dv200OpType);
-        Predicate<StainType> stainTypeFilter = x -> (x==st1 || x==st2);
-        Predicate<LabwareType> lwTypeFilter = x -> (x==lt1 || x==lt2);
-        Predicate<LabwareType> releaseFilter = x-> (x==lt3);
-        Map<Integer, Labware> lwIdLabwareMap = new HashMap<>();
-
-        OperationType[] opTypes = { sectionType, stainOpType, otherType, sectionType, sectionType,
-                stainOpType, stainOpType, stainOpType, stainOpType,stainOpType, rinOpType, dv200OpType };
-        StainType[] stainTypes = {null, st1, null, null, null, st1, st2, st3, st3,st4, null, null};
-        LocalDateTime[] times = IntStream.of(10,11,12,13,9, 14, 15, 16, 17, 18, 19,20)
+        LocalDateTime[] times = IntStream.range(10, 20)
                 .mapToObj(d -> LocalDateTime.of(2021,9, d, 12,0))
                 .toArray(LocalDateTime[]::new);
-        List<Operation> ops = IntStream.range(0, opTypes.length)
-                .mapToObj(i -> {
-                    Operation op = new Operation();
-                    op.setId(5+i);
-                    op.setOperationType(opTypes[i]);
-                    op.setPerformed(times[i]);
-                    op.setActions(List.of());
-                    return op;
-                }).collect(toList());
-
-        Sample sample = EntityFactory.getSample();
-        Labware lw1 = EntityFactory.makeLabware(lt1, sample);
-        Labware lw2 = EntityFactory.makeLabware(lt2, sample);
-        Labware lw3 = EntityFactory.makeLabware(lt3, sample);
-        lw3.setReleased(true);
-        Labware lw4 = EntityFactory.makeLabware(lt4, sample);
-        Labware[][] opLw = {
-                null, null, null, null, null, {lw1}, {lw1, lw2}, {lw2}, {lw3},{lw4}, null, null,
-        };
-
-        IntStream.range(0, ops.size()).forEach(i -> {
-            Labware[] lts = opLw[i];
-            doReturn((lts==null ? Set.of() : Set.of(lts)))
-                    .when(service).opLabwares(same(ops.get(i)), same(lwIdLabwareMap));
-        });
-
-        Map<Integer, List<StainType>> opStainTypes = new HashMap<>(ops.size());
-        for (int i = 0; i < ops.size(); ++i) {
-            StainType st = stainTypes[i];
-            if (st!=null) {
-                opStainTypes.put(ops.get(i).getId(), List.of(st));
-            }
-        }
-
-        when(mockStainTypeRepo.loadOperationStainTypes(any())).thenReturn(opStainTypes);
-        Set<Integer> opIds = ops.stream().map(Operation::getId).collect(toSet());
-        Work work = workWithId(17);
-        work.setOperationIds(opIds);
-        when(mockOpRepo.findAllById(opIds)).thenReturn(ops);
-
-        /*Mock findAllByLabwareIdIn method in Release Repo to return labware lw3*/
-        Release release = new Release();
-        release.setId(5);
-        release.setLabware(lw3);
-        release.setReleased(times[8]);
-
-        when(mockReleaseRepo.findAllByLabwareIdIn(any()))
-                .thenReturn(List.of(release));
-
-        doAnswer(invocation -> {
-            Map<String, LocalDateTime> opTimes = invocation.getArgument(0);
-            opTimes.put("Release 96 well plate", times[8]);
-            return null;
-        }).when(service).loadReleases(any(), any(), any(), any());
-
-        var result = service.loadOpTimes(work, opTypeFilter, stainTypeFilter, lwTypeFilter,
-                releaseFilter, lwIdLabwareMap, labwareTypeStainMap);
-
-        assertThat(result).containsExactlyInAnyOrderEntriesOf(Map.of(
-                sectionType.getName(), times[3],
-                stainOpType.getName(), times[9],
-                "RNAscope/IHC stain", times[6],
-                "Stain "+lt1.getName(), times[6],
-                "Stain "+lt2.getName(), times[7],
-                lt4.getName()+" "+st4.getName()+" stain", times[9],
-                "Analysis", times[11],
-                "Release "+lt3.getName(), times[8]
+        final int workId1 = 1, workId2 = 2;
+        List<Integer> workIds = List.of(workId1, workId2);
+        List<Integer> opIds = (restrictOps ? List.of(100, 101) : null);
+        when(mockWorkProgressRepo.findOpTypeTimes(any(), any(), any())).thenReturn(List.of(
+                new WorkProgressRepo.OpTypeTime(workId1, sectionType.getId(), times[0]),
+                new WorkProgressRepo.OpTypeTime(workId1, stainOpType.getId(), times[5]),
+                new WorkProgressRepo.OpTypeTime(workId1, rinOpType.getId(), times[2]),
+                new WorkProgressRepo.OpTypeTime(workId1, dv200OpType.getId(), times[3]),
+                new WorkProgressRepo.OpTypeTime(workId2, sectionType.getId(), times[1])
+        ));
+        when(mockWorkProgressRepo.findStainTimes(any(), any(), any())).thenReturn(List.of(
+                new WorkProgressRepo.StainTime(workId1, "Visium TO", "RNAscope", times[4]),
+                new WorkProgressRepo.StainTime(workId1, "Visium TO", null, times[5]),
+                new WorkProgressRepo.StainTime(workId1, "jar", "IHC", times[3]),
+                new WorkProgressRepo.StainTime(workId1, "Visium ADH", "H&E", times[5]),
+                new WorkProgressRepo.StainTime(workId1, "Visium ADH", "Rhubarb", times[6]),
+                new WorkProgressRepo.StainTime(workId2, null, "Rhubarb", times[7])
+        ));
+        when(mockWorkProgressRepo.findReleaseTimes(any(), any(), any())).thenReturn(List.of(
+                new WorkProgressRepo.ReleaseTime(workId2, "96 well plate", times[8])
         ));
 
-        verify(service).loadReleases(any(), eq(ops), same(releaseFilter), eq(lwIdLabwareMap));
-        verify(mockStainTypeRepo).loadOperationStainTypes(work.getOperationIds());
+        var result = service.loadOpTimes(workIds, opIds);
+
+        verify(mockWorkProgressRepo).findOpTypeTimes(workIds, opIds,
+                Set.of(sectionType.getId(), stainOpType.getId(), rinOpType.getId(), dv200OpType.getId()));
+        verify(mockWorkProgressRepo).findStainTimes(workIds, opIds, List.of(stainOpType.getId()));
+        verify(mockWorkProgressRepo).findReleaseTimes(workIds, opIds, Set.of("96 well plate"));
+
+        assertThat(result).containsOnlyKeys(workId1, workId2);
+        assertThat(result.get(workId1)).containsExactlyInAnyOrderEntriesOf(Map.of(
+                sectionType.getName(), times[0],
+                stainOpType.getName(), times[5],
+                "Analysis", times[3],
+                "Stain Visium TO", times[5],
+                "RNAscope/IHC stain", times[4],
+                "Visium ADH H&E stain", times[5]
+        ));
+        assertThat(result.get(workId2)).containsExactlyInAnyOrderEntriesOf(Map.of(
+                sectionType.getName(), times[1],
+                "Release 96 well plate", times[8]
+        ));
     }
 
     @Test
-    public void testOpLabwares() {
-        LabwareType lt0 = EntityFactory.makeLabwareType(1,1);
-        LabwareType lt1 = EntityFactory.makeLabwareType(1,1);
-        LabwareType lt2 = EntityFactory.makeLabwareType(1,1);
-        Sample sample = EntityFactory.getSample();
-        Labware lw0 = EntityFactory.makeLabware(lt0, sample);
-        Labware lw1A = EntityFactory.makeLabware(lt1, sample);
-        Labware lw1B = EntityFactory.makeLabware(lt1, sample);
-        Labware lw2 = EntityFactory.makeLabware(lt2, sample);
-        List<Labware> dests = List.of(lw1A, lw1B, lw2);
-        OperationType opType = EntityFactory.makeOperationType("Splat", null);
-        Operation op = EntityFactory.makeOpForLabware(opType, List.of(lw0), dests);
-        Map<Integer, Labware> lwIdToLabware = Map.of();
-        dests.forEach(lw ->
-                doReturn(lw).when(service).getLabware(eq(lw.getId()), same(lwIdToLabware))
-        );
-        assertThat(service.opLabwares(op, lwIdToLabware)).containsExactlyInAnyOrder(lw1A, lw1B, lw2);
-        dests.forEach(lw -> verify(service).getLabware(eq(lw.getId()), same(lwIdToLabware)));
+    public void testRecordOperations() {
+        List<Integer> workIds = List.of(1, 2);
+        List<Integer> opIds = List.of(10, 11);
+        Map<Integer, Map<String, LocalDateTime>> workTimes = Map.of(1, Map.of("Section", LocalDateTime.now()));
+        doReturn(workTimes).when(service).loadOpTimes(any(), any());
+        service.recordOperations(workIds, opIds);
+        verify(service).loadOpTimes(workIds, opIds);
+        verify(mockWorkProgressRepo).storeTimes(workTimes);
     }
 
     @ParameterizedTest
     @ValueSource(booleans={false,true})
-    public void testGetLabware(boolean cached) {
-        Labware lw = EntityFactory.getTube();
-        Integer id = lw.getId();
-        Map<Integer, Labware> cache;
-        if (cached) {
-            cache = Map.of(id, lw);
-        } else {
-            cache = new HashMap<>(1);
-            when(mockLwRepo.getById(id)).thenReturn(lw);
-        }
-        assertSame(lw, service.getLabware(id, cache));
-        if (cached) {
-            verifyNoInteractions(mockLwRepo);
-        } else {
-            assertSame(lw, cache.get(id));
-        }
+    public void testRecordOperations_none(boolean anyWorks) {
+        List<Integer> workIds = (anyWorks ? List.of(1) : List.of());
+        List<Integer> opIds = (anyWorks ? List.of() : List.of(10));
+        service.recordOperations(workIds, opIds);
+        verify(service, never()).loadOpTimes(any(), any());
+        verifyNoInteractions(mockWorkProgressRepo);
     }
 
+    @Test
+    public void testRecordReleases() {
+        LocalDateTime time1 = LocalDateTime.of(2021, 9, 10, 12, 0);
+        LocalDateTime time2 = LocalDateTime.of(2021, 9, 11, 12, 0);
+        List<Integer> releaseIds = List.of(20, 21);
+        when(mockWorkProgressRepo.findReleaseTimesForReleases(any(), any())).thenReturn(List.of(
+                new WorkProgressRepo.ReleaseTime(1, "96 well plate", time1),
+                new WorkProgressRepo.ReleaseTime(2, "96 well plate", time2)
+        ));
+        service.recordReleases(releaseIds);
+        verify(mockWorkProgressRepo).findReleaseTimesForReleases(releaseIds, Set.of("96 well plate"));
+        verify(mockWorkProgressRepo).storeTimes(Map.of(
+                1, Map.of("Release 96 well plate", time1),
+                2, Map.of("Release 96 well plate", time2)
+        ));
+    }
+
+    @Test
+    public void testRecordReleases_none() {
+        service.recordReleases(List.of());
+        verifyNoInteractions(mockWorkProgressRepo);
+    }
+
+    @Test
+    public void testRefresh() {
+        List<Integer> workIds = List.of(1, 2);
+        Map<Integer, Map<String, LocalDateTime>> workTimes = Map.of(1, Map.of("Section", LocalDateTime.now()));
+        doReturn(workTimes).when(service).loadOpTimes(any(), any());
+        service.refresh(workIds);
+        var inOrder = inOrder(mockWorkProgressRepo, service);
+        inOrder.verify(mockWorkProgressRepo).deleteStoredTimes(workIds);
+        inOrder.verify(service).loadOpTimes(workIds, null);
+        inOrder.verify(mockWorkProgressRepo).storeTimes(workTimes);
+    }
+
+    @Test
+    public void testRefresh_none() {
+        service.refresh(List.of());
+        verifyNoInteractions(mockWorkProgressRepo);
+    }
+
+    @Test
+    public void testRebuild() {
+        List<Integer> workIds = IntStream.rangeClosed(1, WorkProgressServiceImp.REBUILD_BATCH_SIZE + 1).boxed().toList();
+        when(mockWorkProgressRepo.findAllWorkIds()).thenReturn(workIds);
+        when(mockTransactor.transact(any(), any())).then(invocation -> {
+            Supplier<?> supplier = invocation.getArgument(1);
+            return supplier.get();
+        });
+        doNothing().when(service).refresh(any());
+
+        assertEquals(workIds.size(), service.rebuild());
+        verify(mockTransactor, times(2)).transact(eq("rebuild work progress"), any());
+        verify(service).refresh(workIds.subList(0, WorkProgressServiceImp.REBUILD_BATCH_SIZE));
+        verify(service).refresh(workIds.subList(WorkProgressServiceImp.REBUILD_BATCH_SIZE, workIds.size()));
+    }
 
     @ParameterizedTest
     @CsvSource({"-1,false",",true","1,true"})
@@ -491,38 +507,6 @@ public class TestWorkProgressService {
         assertThat(opTimes).containsExactly(Map.entry(key, shouldReplace ? thisTime : savedTime));
     }
 
-    @Test
-    public void testLoadReleases() {
-        Labware lw1 = EntityFactory.getTube();
-        Sample sample = EntityFactory.getSample();
-        LabwareType includedLwType = new LabwareType(500, "Tub", 1, 1, EntityFactory.getLabelType(), false);
-        Labware lw2 = EntityFactory.makeLabware(includedLwType, sample);
-        List<Action> op1Actions = List.of(
-                new Action(100, 10, lw1.getFirstSlot(), lw1.getFirstSlot(), sample, sample)
-        );
-        Operation op1 = new Operation(10, null, null, op1Actions, null);
-        List<Action> op2Actions = List.of(
-                new Action(110, 11, lw1.getFirstSlot(), lw2.getFirstSlot(), sample, sample)
-        );
-        Operation op2 = new Operation(11, null, null, op2Actions, null);
-
-        Predicate<LabwareType> lwTypeFilter = lt -> lt.getName().equalsIgnoreCase("Tub");
-        Map<Integer, Labware> labwareIdCache = Map.of(lw1.getId(), lw1, lw2.getId(), lw2);
-
-        Release release = new Release();
-        release.setLabware(lw2);
-        release.setReleased(LocalDateTime.of(2022,4,19,9,50));
-
-        when(mockReleaseRepo.findAllByLabwareIdIn(any())).thenReturn(List.of(release));
-        Map<String, LocalDateTime> opTimes = new HashMap<>(1);
-
-        service.loadReleases(opTimes, List.of(op1, op2), lwTypeFilter, labwareIdCache);
-
-        assertThat(opTimes).hasSize(1).containsEntry("Release Tub", release.getReleased());
-
-        verify(mockReleaseRepo).findAllByLabwareIdIn(Set.of(lw2.getId()));
-    }
-
     @Test
     public void testGetMostRecentOperation() {
         List<WorkProgressTimestamp> wpts = new ArrayList<>(List.of(
@@ -538,7 +522,7 @@ public class TestWorkProgressService {
     }
 
     @Test
-    public void testGetWorkComment() {
+    public void testLoadWorkComments() {
         Work workA = new Work(1, "SGP1", null, null, null, null, null, Status.active);
         Work workC = new Work(2, "SGP2", null, null, null, null, null, Status.completed);
         Work workF = new Work(3, "SGP3", null, null, null, null, null, Status.failed);
@@ -553,16 +537,22 @@ public class TestWorkProgressService {
         WorkEvent eventP = new WorkEvent(workP, WorkEvent.Type.pause, null, pausedComment);
         WorkEvent eventW = new WorkEvent(workW, WorkEvent.Type.withdraw, null, withdrawnComment);
 
-        when(mockWorkEventService.loadLatestEvents(List.of(workF.getId()))).thenReturn(Map.of(workF.getId(), eventF));
-        when(mockWorkEventService.loadLatestEvents(List.of(workP.getId()))).thenReturn(Map.of(workP.getId(), eventP));
-        when(mockWorkEventService.loadLatestEvents(List.of(workW.getId()))).thenReturn(Map.of(workW.getId(), eventW));
+        when(mockWorkEventService.loadLatestEvents(any())).thenReturn(Map.of(workF.getId(), eventF,
+                workP.getId(), eventP, workW.getId(), eventW));
 
-        assertNull(service.getWorkComment(workA));
-        assertNull(service.getWorkComment(workC));
-        assertEquals(service.getWorkComment(workF),"This work failed");
-        assertEquals(service.getWorkComment(workP),"This work is paused");
-        assertEquals(service.getWorkComment(workW),"This work is withdrawn");
+        assertThat(service.loadWorkComments(List.of(workA, workC, workF, workP, workW))).containsExactlyInAnyOrderEntriesOf(Map.of(
+                workF.getId(), "This work failed",
+                workP.getId(), "This work is paused",
+                workW.getId(), "This work is withdrawn"
+        ));
+        verify(mockWorkEventService).loadLatestEvents(Set.of(workF.getId(), workP.getId(), workW.getId()));
+    }
 
+    @Test
+    public void testLoadWorkComments_none() {
+        Work work = new Work(1, "SGP1", null, null, null, null, null, Status.active);
+        assertThat(service.loadWorkComments(List.of(work))).isEmpty();
+        verifyNoInteractions(mockWorkEventService);
     }
 
     private static Work workWithId(int id) {
@@ -2,12 +2,13 @@ package uk.ac.sanger.sccp.stan.service.cytassistoverview;
 
 import org.junit.jupiter.api.*;
 import org.mockito.*;
-import uk.ac.sanger.sccp.stan.EntityFactory;
+import uk.ac.sanger.sccp.stan.*;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.model.reagentplate.ReagentAction;
 import uk.ac.sanger.sccp.stan.model.reagentplate.ReagentPlate;
 import uk.ac.sanger.sccp.stan.repo.*;
-import uk.ac.sanger.sccp.stan.service.cytassistoverview.CytassistOverviewDataCompilerImp.CytData;
+import uk.ac.sanger.sccp.stan.service.cytassistoverview.CytassistOverviewDataCompilerImp.*;
+import uk.ac.sanger.sccp.stan.service.load.LoaderExecutor;
 import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser;
 import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.Posterity;
 import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.SlotSample;
@@ -16,6 +17,7 @@ import uk.ac.sanger.sccp.utils.Zip;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 import java.util.stream.IntStream;
@@ -26,8 +28,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.same;
 import static org.mockito.Mockito.*;
-import static uk.ac.sanger.sccp.stan.Matchers.eqCi;
-import static uk.ac.sanger.sccp.stan.Matchers.genericCaptor;
+import static uk.ac.sanger.sccp.stan.Matchers.*;
 import static uk.ac.sanger.sccp.utils.BasicUtils.inMap;
 
 /** Test {@link CytassistOverviewDataCompilerImp} */
@@ -60,6 +61,12 @@ class TestCytassistOverviewDataCompiler {
     WorkRepo mockWorkRepo;
     @Mock
     Ancestoriser mockAncestoriser;
+    @Mock
+    Transactor mockTransactor;
+    @Mock
+    StanMetrics mockMetrics;
+    @Mock
+    LoaderExecutor mockLoaderExecutor;
 
     @InjectMocks
     CytassistOverviewDataCompilerImp dataCompiler;
@@ -103,24 +110,57 @@ class TestCytassistOverviewDataCompiler {
         Set<Integer> allDestSlotIds = Stream.of(lw2, lw3).flatMap(lw -> lw.getSlots().stream())
                 .map(Slot::getId).collect(toSet());
         doReturn(allDestSlotIds).when(dataCompiler).destSlotIds(same(posterity));
+        Set<Integer> opIds = Set.of(op1.getId(), op2.getId());
+        Set<Integer> leafLwIds = Set.of(lw3.getId());
+        doReturn(leafLwIds).when(dataCompiler).leafLabwareIds(same(posterity));
+        Set<Integer> flagLwIds = Set.of(lw1.getId(), lw2.getId(), lw3.getId());
+        doReturn(flagLwIds).when(dataCompiler).flagLabwareIds(any(), same(posterity));
+
+        Map<Integer, Operation> sourceCreation = Map.of(1, op1);
+        Map<List<Integer>, String> lps = Map.of(List.of(1, 2), "LP");
+        StainData stains = new StainData(Map.of(), Map.of());
+        Map<Integer, Operation> images = Map.of(2, op1);
+        ProbeData probes = new ProbeData(Map.of(), Map.of());
+        Map<Integer, Operation> probeQc = Map.of(3, op1);
+        CoverageData coverage = new CoverageData(Map.of(), Map.of());
+        MeasurementData qpcr = new MeasurementData(Map.of(), Map.of());
+        MeasurementData amp = new MeasurementData(Map.of(), Map.of());
+        DualIndexData dualIndex = new DualIndexData(Map.of(), Map.of(), Map.of());
+        VisiumConcentrationData conc = new VisiumConcentrationData(Map.of(), Map.of(), Map.of());
+        LatestLabwareData latest = new LatestLabwareData(Map.of(), Map.of(), Map.of());
+        Map<Integer, Set<String>> flags = Map.of(4, Set.of("flag"));
+        Map<Integer, Set<String>> workNumbers = Map.of(5, Set.of("SGP1"));
 
         doReturn(null).when(dataCompiler).loadCytLabware(any());
-        doNothing().when(dataCompiler).loadSourceCreation(any(), any());
         doNothing().when(dataCompiler).fillCytassistData(any());
-        doNothing().when(dataCompiler).loadLp(any());
-        doNothing().when(dataCompiler).loadSourceCreation(any(), any());
-        doNothing().when(dataCompiler).loadStains(any(), any());
-        doNothing().when(dataCompiler).loadImages(any(), any());
-        doNothing().when(dataCompiler).loadProbes(any(), any());
-        doNothing().when(dataCompiler).loadProbeQC(any(), any());
-        doNothing().when(dataCompiler).loadTissueCoverage(any(), any());
-        doNothing().when(dataCompiler).loadQPCR(any(), any(), any());
-        doNothing().when(dataCompiler).loadAmpMeasurements(any(), any(), any());
-        doNothing().when(dataCompiler).loadDualIndex(any(), any(), any());
-        doNothing().when(dataCompiler).loadVisiumConcentration(any(), any(), any());
-        doNothing().when(dataCompiler).loadLatestLabware(any(), any());
-        doNothing().when(dataCompiler).loadFlags(any(), any());
-        doNothing().when(dataCompiler).loadWorkNumbers(any());
+        doReturn(sourceCreation).when(dataCompiler).findSourceCreation(any());
+        doReturn(lps).when(dataCompiler).findLp(any());
+        doReturn(stains).when(dataCompiler).findStains(any());
+        doReturn(images).when(dataCompiler).findLatestOps(eq("Image"), any());
+        doReturn(probes).when(dataCompiler).findProbes(any());
+        doReturn(probeQc).when(dataCompiler).findLatestOps(eq("Probe hybridisation QC"), any());
+        doReturn(coverage).when(dataCompiler).findTissueCoverage(any());
+        doReturn(qpcr).when(dataCompiler).findMeasurements(any(), eq("qPCR results"), any());
+        doReturn(amp).when(dataCompiler).findMeasurements(any(), eq("Amplification"), any());
+        doReturn(dualIndex).when(dataCompiler).findDualIndex(any());
+        doReturn(conc).when(dataCompiler).findVisiumConcentration(any());
+        doReturn(latest).when(dataCompiler).findLatestLabware(any());
+        doReturn(flags).when(dataCompiler).findFlags(any());
+        when(mockWorkRepo.findWorkNumbersForOpIds(any())).thenReturn(workNumbers);
+
+        doNothing().when(dataCompiler).setSourceCreation(any(), any());
+        doNothing().when(dataCompiler).setLp(any(), any());
+        doNothing().when(dataCompiler).setStains(any(), any());
+        doNothing().when(dataCompiler).setImages(any(), any());
+        doNothing().when(dataCompiler).setProbes(any(), any());
+        doNothing().when(dataCompiler).setProbeQC(any(), any());
+        doNothing().when(dataCompiler).setTissueCoverage(any(), any());
+        doNothing().when(dataCompiler).setMeasurements(any(), any(), any(), any());
+        doNothing().when(dataCompiler).setDualIndex(any(), any(), any());
+        doNothing().when(dataCompiler).setVisiumConcentration(any(), any(), any());
+        doNothing().when(dataCompiler).setLatestLabware(any(), any(), any());
+        doNothing().when(dataCompiler).setFlags(any(), any(), any());
+        doNothing().when(dataCompiler).setWorkNumbers(any(), any());
         doNothing().when(dataCompiler).setUsers(any());
 
         List<CytassistOverview> result = dataCompiler.execute();
@@ -134,27 +174,154 @@ class TestCytassistOverviewDataCompiler {
         Set<Integer> cytSlotIds = ops.stream()
                 .flatMap(op -> op.getActions().stream().map(a -> a.getDestination().getId()))
                 .collect(toSet());
-        verify(dataCompiler).loadSourceCreation(same(data), eq(sourceSlotIds));
-        verify(dataCompiler).loadCytLabware(same(data));
+        verify(dataCompiler).flagLabwareIds(same(data), same(posterity));
         verify(dataCompiler).fillCytassistData(same(data));
-        verify(dataCompiler).loadLp(same(data));
-        verify(dataCompiler).loadStains(same(data), eq(sourceSlotIds));
-        verify(dataCompiler).loadImages(same(data), eq(sourceSlotIds));
-        verify(dataCompiler).loadProbes(same(data), eq(sourceSlotIds));
-        verify(dataCompiler).loadProbeQC(same(data), eq(sourceSlotIds));
-        verify(dataCompiler).loadTissueCoverage(same(data), eq(cytSlotIds));
-        verify(dataCompiler).loadQPCR(same(data), same(posterity), same(allDestSlotIds));
-        verify(dataCompiler).loadAmpMeasurements(same(data), same(posterity), same(allDestSlotIds));
-        verify(dataCompiler).loadDualIndex(same(data), same(posterity), same(allDestSlotIds));
-        verify(dataCompiler).loadVisiumConcentration(same(data), same(posterity), same(allDestSlotIds));
-        verify(dataCompiler).loadLatestLabware(same(data), same(posterity));
-        verify(dataCompiler).loadFlags(same(data), same(posterity));
-        verify(dataCompiler).loadWorkNumbers(same(data));
+        verify(dataCompiler).findSourceCreation(sourceSlotIds);
+        verify(dataCompiler).setSourceCreation(same(data), same(sourceCreation));
+        verify(dataCompiler).findLp(opIds);
+        verify(dataCompiler).setLp(same(data), same(lps));
+        verify(dataCompiler).findStains(sourceSlotIds);
+        verify(dataCompiler).setStains(same(data), same(stains));
+        verify(dataCompiler).findLatestOps("Image", sourceSlotIds);
+        verify(dataCompiler).setImages(same(data), same(images));
+        verify(dataCompiler).findProbes(sourceSlotIds);
+        verify(dataCompiler).setProbes(same(data), same(probes));
+        verify(dataCompiler).findLatestOps("Probe hybridisation QC", sourceSlotIds);
+        verify(dataCompiler).setProbeQC(same(data), same(probeQc));
+        verify(dataCompiler).findTissueCoverage(cytSlotIds);
+        verify(dataCompiler).setTissueCoverage(same(data), same(coverage));
+        verify(dataCompiler).findMeasurements(same(allDestSlotIds), eq("qPCR results"), same(CytassistOverviewDataCompilerImp.QPCR_SETTERS));
+        verify(dataCompiler).setMeasurements(same(data), same(posterity), same(CytassistOverviewDataCompilerImp.QPCR_SETTERS), same(qpcr));
+        verify(dataCompiler).findMeasurements(same(allDestSlotIds), eq("Amplification"), same(CytassistOverviewDataCompilerImp.AMP_SETTERS));
+        verify(dataCompiler).setMeasurements(same(data), same(posterity), same(CytassistOverviewDataCompilerImp.AMP_SETTERS), same(amp));
+        verify(dataCompiler).findDualIndex(same(allDestSlotIds));
+        verify(dataCompiler).setDualIndex(same(data), same(posterity), same(dualIndex));
+        verify(dataCompiler).findVisiumConcentration(same(allDestSlotIds));
+        verify(dataCompiler).setVisiumConcentration(same(data), same(posterity), same(conc));
+        verify(dataCompiler).findLatestLabware(same(leafLwIds));
+        verify(dataCompiler).setLatestLabware(same(data), same(posterity), same(latest));
+        verify(dataCompiler).findFlags(same(flagLwIds));
+        verify(dataCompiler).setFlags(same(data), same(posterity), same(flags));
+        verify(mockWorkRepo).findWorkNumbersForOpIds(opIds);
+        verify(dataCompiler).setWorkNumbers(same(data), same(workNumbers));
         verify(dataCompiler).setUsers(same(data));
+        verify(mockMetrics, times(16)).recordStage(startsWith("Cytassist overview "), anyLong());
+        verify(mockMetrics).recordStage(eq("Cytassist overview stains"), anyLong());
+        verifyNoInteractions(mockTransactor);
 
         assertThat(result).containsExactlyElementsOf(data.stream().map(d -> d.row).toList());
     }
 
+    @Test
+    void testExecute_concurrent() {
+        mockTransactor(mockTransactor);
+        LoaderExecutor loaderExecutor = new LoaderExecutor(3, "test-loader-");
+        try {
+            CytassistOverviewDataCompilerImp compiler = spy(new CytassistOverviewDataCompilerImp(mockOpTypeRepo,
+                    mockOpRepo, mockLwRepo, mockStainTypeRepo, mockLwProbeRepo, mockLwNoteRepo, mockMeasurementRepo,
+                    mockReagentActionRepo, mockReagentPlateRepo, mockOpComRepo, mockReleaseRepo, mockLwFlagRepo,
+                    mockWorkRepo, mockAncestoriser, mockTransactor, mockMetrics, loaderExecutor));
+            OperationType opType = EntityFactory.makeOperationType("cytassist", null);
+            Labware lw1 = EntityFactory.getTube();
+            Labware lw2 = EntityFactory.makeEmptyLabware(lw1.getLabwareType());
+            User user1 = EntityFactory.getUser();
+            User user2 = new User(user1.getId()+1, "user2", User.Role.normal);
+            Operation op = EntityFactory.makeOpForLabware(opType, List.of(lw1), List.of(lw2), user1);
+            Posterity posterity = new Posterity();
+            doReturn(posterity).when(compiler).loadPosterity(any());
+
+            final Thread caller = Thread.currentThread();
+            Set<Thread> loaderThreads = ConcurrentHashMap.newKeySet();
+            Set<Thread> applierThreads = ConcurrentHashMap.newKeySet();
+            StainData stains = new StainData(Map.of(), Map.of());
+            doAnswer(invocation -> {
+                assertSame(caller, Thread.currentThread());
+                return null;
+            }).when(compiler).loadCytLabware(any());
+            doNothing().when(compiler).fillCytassistData(any());
+            doAnswer(invocation -> {
+                loaderThreads.add(Thread.currentThread());
+                return stains;
+            }).when(compiler).findStains(any());
+            doAnswer(invocation -> {
+                applierThreads.add(Thread.currentThread());
+                List<CytData> data = invocation.getArgument(0);
+                data.forEach(d -> d.users.add(user2));
+                return null;
+            }).when(compiler).setStains(any(), same(stains));
+            doAnswer(invocation -> {
+                loaderThreads.add(Thread.currentThread());
+                return Map.of();
+            }).when(compiler).findLatestOps(any(), any());
+            doReturn(Map.of()).when(compiler).findSourceCreation(any());
+            doReturn(Map.of()).when(compiler).findLp(any());
+            doReturn(null).when(compiler).findProbes(any());
+            doReturn(null).when(compiler).findTissueCoverage(any());
+            doReturn(null).when(compiler).findMeasurements(any(), any(), any());
+            doReturn(null).when(compiler).findDualIndex(any());
+            doReturn(null).when(compiler).findVisiumConcentration(any());
+            doReturn(null).when(compiler).findLatestLabware(any());
+            doReturn(Map.of()).when(compiler).findFlags(any());
+            doAnswer(invocation -> {
+                applierThreads.add(Thread.currentThread());
+                return null;
+            }).when(compiler).setImages(any(), any());
+            doNothing().when(compiler).setSourceCreation(any(), any());
+            doNothing().when(compiler).setLp(any(), any());
+            doNothing().when(compiler).setProbes(any(), any());
+            doNothing().when(compiler).setProbeQC(any(), any());
+            doNothing().when(compiler).setTissueCoverage(any(), any());
+            doNothing().when(compiler).setMeasurements(any(), any(), any(), any());
+            doNothing().when(compiler).setDualIndex(any(), any(), any());
+            doNothing().when(compiler).setVisiumConcentration(any(), any(), any());
+            doNothing().when(compiler).setLatestLabware(any(), any(), any());
+            doNothing().when(compiler).setFlags(any(), any(), any());
+
+            List<CytassistOverview> rows = compiler.compile(List.of(op));
+
+            assertThat(rows).hasSize(1);
+            assertThat(rows.getFirst().getUsers().split(", ")).containsExactlyInAnyOrder(user1.getUsername(), "user2");
+            assertThat(loaderThreads).isNotEmpty().doesNotContain(caller);
+            assertThat(applierThreads).containsExactly(caller);
+            verify(mockTransactor).transactReadOnly(eq("Cytassist overview stains"), any());
+            verify(mockTransactor).transactReadOnly(eq("Cytassist overview images"), any());
+            verify(mockTransactor, never()).transactReadOnly(eq("Cytassist overview labware"), any());
+            verify(mockTransactor, times(14)).transactReadOnly(any(), any());
+            verify(mockMetrics, times(16)).recordStage(startsWith("Cytassist overview "), anyLong());
+        } finally {
+            loaderExecutor.shutdown();
+        }
+    }
+
+    @Test
+    void testExecuteIds() {
+        OperationType opType = mockOpType("cytassist");
+        OperationType otherOpType = EntityFactory.makeOperationType("Bananas", null);
+        Operation op1 = new Operation(1, opType, null, List.of(), null);
+        Operation op2 = new Operation(2, otherOpType, null, List.of(), null);
+        when(mockOpRepo.findAllWithActionsByIdIn(any())).thenReturn(List.of(op1, op2));
+        List<CytassistOverview> rows = List.of(new CytassistOverview());
+        doReturn(rows).when(dataCompiler).compile(any());
+
+        assertSame(rows, dataCompiler.execute(List.of(1, 2)));
+        verify(mockOpRepo).findAllWithActionsByIdIn(List.of(1, 2));
+        verify(dataCompiler).compile(List.of(op1));
+        verify(mockOpRepo, never()).findAllByOperationType(any());
+    }
+
+    @Test
+    void testExecuteIds_none() {
+        assertThat(dataCompiler.execute(List.of())).isEmpty();
+        verifyNoInteractions(mockOpRepo);
+        verify(dataCompiler, never()).compile(any());
+    }
+
+    @Test
+    void testCompile_none() {
+        assertThat(dataCompiler.compile(List.of())).isEmpty();
+        verify(dataCompiler, never()).loadPosterity(any());
+    }
+
     @Test
     void testLoadPosterity() {
         final Address A1 = new Address(1,1), A2 = new Address(1,2);
@@ -341,6 +508,7 @@ class TestCytassistOverviewDataCompiler {
         assertEquals(lts[0].getName(), row.getSourceLabwareType());
         assertEquals(lts[1].getName(), row.getCytassistLabwareType());
         assertEquals(opTimes[0], row.getCytassistPerformed());
+        assertEquals(cytOps[0].getId(), row.getCytassistOperationId());
         row = data.get(1).row;
         assertEquals("1", row.getSection());
         assertEquals(lws[2].getBarcode(), row.getSourceBarcode());
@@ -352,6 +520,7 @@ class TestCytassistOverviewDataCompiler {
         assertEquals(lts[0].getName(), row.getSourceLabwareType());
         assertEquals(lts[1].getName(), row.getCytassistLabwareType());
         assertEquals(opTimes[1], row.getCytassistPerformed());
+        assertEquals(cytOps[1].getId(), row.getCytassistOperationId());
     }
 
     @Test
@@ -2,15 +2,22 @@ package uk.ac.sanger.sccp.stan.service.cytassistoverview;
 
 import org.junit.jupiter.api.*;
 import org.mockito.*;
+import uk.ac.sanger.sccp.stan.EntityFactory;
 import uk.ac.sanger.sccp.stan.Transactor;
-import uk.ac.sanger.sccp.stan.model.CytassistOverview;
-import uk.ac.sanger.sccp.stan.repo.CytassistOverviewRepo;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.*;
+import uk.ac.sanger.sccp.stan.service.LineageService;
 
 import javax.persistence.EntityManager;
 import java.util.List;
+import java.util.Optional;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 import static uk.ac.sanger.sccp.stan.Matchers.mockTransactor;
+import static uk.ac.sanger.sccp.stan.service.cytassistoverview.CytassistOverviewServiceImp.OP_MARK_NAME;
+import static uk.ac.sanger.sccp.stan.service.cytassistoverview.CytassistOverviewServiceImp.RELEASE_MARK_NAME;
 
 class TestCytassistOverviewService {
     @Mock
@@ -18,6 +25,16 @@ class TestCytassistOverviewService {
     @Mock
     private CytassistOverviewRepo mockRepo;
     @Mock
+    private OperationTypeRepo mockOpTypeRepo;
+    @Mock
+    private OperationRepo mockOpRepo;
+    @Mock
+    private ReleaseRepo mockReleaseRepo;
+    @Mock
+    private HighWaterMarkRepo mockMarkRepo;
+    @Mock
+    private LineageService mockLineageService;
+    @Mock
     private EntityManager mockEntityManager;
     @Mock
     private Transactor mockTransactor;
@@ -41,14 +58,142 @@ class TestCytassistOverviewService {
     void testUpdate() {
         List<CytassistOverview> data = List.of(new CytassistOverview());
         mockTransactor(mockTransactor);
+        int[] marks = {10, 20};
+        doReturn(marks).when(service).currentMaxIds();
+        doNothing().when(service).saveMarks(any());
         when(mockDataCompiler.execute()).thenReturn(data);
         service.update();
-        InOrder order = inOrder(mockTransactor, mockDataCompiler, mockEntityManager, mockRepo);
+        InOrder order = inOrder(mockTransactor, service, mockDataCompiler, mockEntityManager, mockRepo);
         order.verify(mockTransactor).transact(any(), any());
+        order.verify(service).currentMaxIds();
         order.verify(mockDataCompiler).execute();
         order.verify(mockRepo).deleteAllInBatch();
         order.verify(mockEntityManager).flush();
         order.verify(mockRepo).saveAll(same(data));
+        order.verify(service).saveMarks(marks);
+    }
+
+    private void mockMarks(Integer opMark, Integer releaseMark) {
+        when(mockMarkRepo.findById(OP_MARK_NAME)).thenReturn(Optional.ofNullable(opMark)
+                .map(id -> new HighWaterMark(OP_MARK_NAME, id)));
+        when(mockMarkRepo.findById(RELEASE_MARK_NAME)).thenReturn(Optional.ofNullable(releaseMark)
+                .map(id -> new HighWaterMark(RELEASE_MARK_NAME, id)));
+    }
+
+    @Test
+    void testUpdateIncremental() {
+        mockTransactor(mockTransactor);
+        when(mockLineageService.isComplete()).thenReturn(true);
+        mockMarks(10, 20);
+        int[] marks = {15, 25};
+        doReturn(marks).when(service).currentMaxIds();
+        doNothing().when(service).saveMarks(any());
+        OperationType opType = EntityFactory.makeOperationType("Cytassist", null);
+        when(mockOpTypeRepo.getByName("cytassist")).thenReturn(opType);
+        List<Integer> cytOpIds = List.of(3, 4);
+        when(mockRepo.findAffectedCytassistOperationIds(anyInt(), anyInt(), anyInt())).thenReturn(cytOpIds);
+        List<CytassistOverview> data = List.of(new CytassistOverview(), new CytassistOverview());
+        when(mockDataCompiler.execute(any())).thenReturn(data);
+
+        assertEquals(2, service.updateIncremental());
+
+        InOrder order = inOrder(mockRepo, mockDataCompiler, mockEntityManager, service);
+        order.verify(mockRepo).findAffectedCytassistOperationIds(opType.getId(), 10, 20);
+        order.verify(mockDataCompiler).execute(cytOpIds);
+        order.verify(mockRepo).deleteAllByCytassistOperationIdIn(cytOpIds);
+        order.verify(mockEntityManager).flush();
+        order.verify(mockRepo).saveAll(same(data));
+        order.verify(service).saveMarks(marks);
+        verify(service, never()).update();
+        verify(mockDataCompiler, never()).execute();
+    }
+
+    @Test
+    void testUpdateIncremental_nothingAffected() {
+        mockTransactor(mockTransactor);
+        when(mockLineageService.isComplete()).thenReturn(true);
+        mockMarks(10, 20);
+        int[] marks = {15, 25};
+        doReturn(marks).when(service).currentMaxIds();
+        doNothing().when(service).saveMarks(any());
+        when(mockOpTypeRepo.getByName("cytassist")).thenReturn(EntityFactory.makeOperationType("Cytassist", null));
+        when(mockRepo.findAffectedCytassistOperationIds(anyInt(), anyInt(), anyInt())).thenReturn(List.of());
+
+        assertEquals(0, service.updateIncremental());
+        verifyNoInteractions(mockDataCompiler);
+        verify(mockRepo, never()).deleteAllByCytassistOperationIdIn(any());
+        verify(mockRepo, never()).saveAll(any());
+        verify(service).saveMarks(marks);
+    }
+
+    @Test
+    void testUpdateIncremental_lineageIncomplete() {
+        mockTransactor(mockTransactor);
+        when(mockLineageService.isComplete()).thenReturn(false);
+        doNothing().when(service).update();
+
+        assertEquals(0, service.updateIncremental());
+        verify(service).update();
+        verifyNoInteractions(mockMarkRepo, mockDataCompiler);
+        verify(mockRepo, never()).findAffectedCytassistOperationIds(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void testUpdateIncremental_noMarks() {
+        mockTransactor(mockTransactor);
+        when(mockLineageService.isComplete()).thenReturn(true);
+        mockMarks(10, null);
+        doNothing().when(service).update();
+
+        assertEquals(0, service.updateIncremental());
+        verify(service).update();
+        verifyNoInteractions(mockDataCompiler);
+        verify(mockRepo, never()).findAffectedCytassistOperationIds(anyInt(), anyInt(), anyInt());
+    }
+
+    private static CytassistOverview row(int opId, String workNumber) {
+        CytassistOverview row = new CytassistOverview();
+        row.setCytassistOperationId(opId);
+        row.setWorkNumber(workNumber);
+        return row;
+    }
+
+    @Test
+    void testCheckConsistency() {
+        mockTransactor(mockTransactor);
+        when(mockDataCompiler.execute()).thenReturn(List.of(row(1, "SGP1"), row(2, "SGP2"), row(3, "SGP3")));
+        List<CytassistOverview> stored = List.of(row(1, "SGP1"), row(2, "SGP4"), row(3, "SGP3"), row(3, "SGP3"));
+        for (int i = 0; i < stored.size(); ++i) {
+            stored.get(i).setId(100+i);
+        }
+        when(mockRepo.findAll()).thenReturn(stored);
+
+        assertEquals(3, service.checkConsistency());
+    }
+
+    @Test
+    void testCheckConsistency_consistent() {
+        mockTransactor(mockTransactor);
+        when(mockDataCompiler.execute()).thenReturn(List.of(row(1, "SGP1"), row(2, "SGP2")));
+        CytassistOverview storedRow = row(2, "SGP2");
+        storedRow.setId(100);
+        when(mockRepo.findAll()).thenReturn(List.of(storedRow, row(1, "SGP1")));
+
+        assertEquals(0, service.checkConsistency());
+    }
+
+    @Test
+    void testCurrentMaxIds() {
+        when(mockOpRepo.findMaxId()).thenReturn(15);
+        when(mockReleaseRepo.findMaxId()).thenReturn(null);
+        assertArrayEquals(new int[] {15, 0}, service.currentMaxIds());
+    }
+
+    @Test
+    void testSaveMarks() {
+        service.saveMarks(new int[] {15, 25});
+        verify(mockMarkRepo).saveAll(List.of(new HighWaterMark(OP_MARK_NAME, 15),
+                new HighWaterMark(RELEASE_MARK_NAME, 25)));
     }
 
     @Test
@@ -58,4 +203,17 @@ class TestCytassistOverviewService {
         verify(service).update();
     }
 
-}
\ No newline at end of file
+    @Test
+    void testScheduledIncrementalUpdate() {
+        doReturn(0).when(service).updateIncremental();
+        service.scheduledIncrementalUpdate();
+        verify(service).updateIncremental();
+    }
+
+    @Test
+    void testScheduledCheck() {
+        doReturn(0).when(service).checkConsistency();
+        service.scheduledCheck();
+        verify(service).checkConsistency();
+    }
+}
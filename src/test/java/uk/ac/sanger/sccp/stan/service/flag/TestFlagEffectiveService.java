@@ -0,0 +1,304 @@
+package uk.ac.sanger.sccp.stan.service.flag;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.*;
+import uk.ac.sanger.sccp.stan.EntityFactory;
+import uk.ac.sanger.sccp.stan.Transactor;
+import uk.ac.sanger.sccp.stan.config.FlagLookupConfig;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.model.LabwareFlag.Priority;
+import uk.ac.sanger.sccp.stan.repo.*;
+import uk.ac.sanger.sccp.stan.repo.LabwareFlagEffectiveRepo.EffectiveFlag;
+import uk.ac.sanger.sccp.stan.service.ReferenceDataVersionService;
+import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser;
+import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.Posterity;
+import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.SlotSample;
+
+import java.time.Clock;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+import static uk.ac.sanger.sccp.stan.Matchers.genericCaptor;
+import static uk.ac.sanger.sccp.stan.Matchers.mockTransactor;
+
+/**
+ * Tests {@link FlagEffectiveServiceImp}
+ */
+class TestFlagEffectiveService {
+    @Mock
+    private Transactor mockTransactor;
+    @Mock
+    private Ancestoriser mockAncestoriser;
+    @Mock
+    private ActionRepo mockActionRepo;
+    @Mock
+    private LabwareFlagEffectiveRepo mockEffectiveRepo;
+    @Mock
+    private LabwareFlagRepo mockFlagRepo;
+    @Mock
+    private FlagFilter mockFlagFilter;
+    @Mock
+    private ReferenceDataVersionService mockVersionService;
+    @Mock
+    private Clock mockClock;
+    @Mock
+    private FlagLookupConfig mockConfig;
+
+    @InjectMocks
+    private FlagEffectiveServiceImp service;
+
+    private AutoCloseable mocking;
+
+    private Sample sample;
+    private Labware lw1;
+    private Slot slot1, slot2, slot3;
+    private Operation op;
+
+    @BeforeEach
+    void setup() {
+        mocking = MockitoAnnotations.openMocks(this);
+        service = spy(service);
+        sample = EntityFactory.getSample();
+        LabwareType lt = EntityFactory.getTubeType();
+        lw1 = EntityFactory.makeLabware(lt, sample);
+        slot1 = lw1.getFirstSlot();
+        slot2 = EntityFactory.makeLabware(lt, sample).getFirstSlot();
+        slot3 = EntityFactory.makeLabware(lt, sample).getFirstSlot();
+        op = new Operation();
+        op.setId(50);
+    }
+
+    @AfterEach
+    void teardown() throws Exception {
+        mocking.close();
+    }
+
+    @Test
+    void testRecordFlags_none() {
+        service.recordFlags(List.of());
+        verifyNoInteractions(mockAncestoriser);
+        verifyNoInteractions(mockEffectiveRepo);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans={false,true})
+    void testRecordFlags(boolean filterEnabled) {
+        when(mockFlagFilter.isEnabled()).thenReturn(filterEnabled);
+        SlotSample ss1 = new SlotSample(slot1, sample);
+        SlotSample ss2 = new SlotSample(slot2, sample);
+        SlotSample ss3 = new SlotSample(slot3, sample);
+        Posterity posterity = new Posterity();
+        posterity.put(ss1, new LinkedHashSet<>(List.of(ss2)));
+        posterity.put(ss2, new LinkedHashSet<>(List.of(ss3)));
+        when(mockAncestoriser.findPosterity(any())).thenReturn(posterity);
+        LabwareFlag flag1 = new LabwareFlag(100, lw1, "Alpha", null, 10, Priority.flag);
+        LabwareFlag flag2 = new LabwareFlag(101, lw1, "Beta", null, 11, Priority.note);
+
+        service.recordFlags(List.of(flag1, flag2));
+
+        verify(mockAncestoriser).findPosterity(Set.of(ss1));
+        ArgumentCaptor<Collection<EffectiveFlag>> captor = genericCaptor(Collection.class);
+        verify(mockEffectiveRepo).insertFlags(captor.capture());
+        List<EffectiveFlag> expected = new ArrayList<>(6);
+        for (LabwareFlag flag : List.of(flag1, flag2)) {
+            for (Slot slot : List.of(slot1, slot2, slot3)) {
+                expected.add(new EffectiveFlag(slot.getId(), sample.getId(), slot.getLabwareId(), flag.getId()));
+            }
+        }
+        assertThat(captor.getValue()).containsExactlyInAnyOrderElementsOf(expected);
+        verify(mockFlagFilter).add(Set.of(slot1.getLabwareId(), slot2.getLabwareId(), slot3.getLabwareId()));
+        verify(mockVersionService, times(filterEnabled ? 1 : 0)).increment(FlagFilter.VERSION_NAME);
+    }
+
+    @Test
+    void testRecordOperation_inPlace() {
+        service.recordOperation(op, List.of(new Action(null, 50, slot1, slot1, sample, sample)));
+        verifyNoInteractions(mockEffectiveRepo);
+        verifyNoInteractions(mockFlagFilter);
+        verifyNoInteractions(mockVersionService);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans={false,true})
+    void testIsPropagating(boolean useEffective) {
+        when(mockConfig.isUseEffectiveFlags()).thenReturn(useEffective);
+        service = new FlagEffectiveServiceImp(mockTransactor, mockAncestoriser, mockActionRepo, mockEffectiveRepo,
+                mockFlagRepo, mockFlagFilter, mockVersionService, mockClock, mockConfig);
+        assertEquals(useEffective, service.isPropagating());
+    }
+
+    @Test
+    void testRecordOperation() {
+        service = propagatingService();
+        when(mockFlagFilter.isEnabled()).thenReturn(true);
+        when(mockEffectiveRepo.propagate(anyInt(), anyInt())).thenReturn(2, 1, 0);
+        when(mockFlagFilter.mightBeFlagged(slot1.getLabwareId())).thenReturn(true);
+        service.recordOperation(op, List.of(new Action(null, 50, slot1, slot2, sample, sample),
+                new Action(null, 50, slot2, slot3, sample, sample)));
+        verify(mockEffectiveRepo, times(3)).propagate(50, 50);
+        verify(mockFlagFilter).add(Set.of(slot2.getLabwareId()));
+        verify(mockVersionService).increment(FlagFilter.VERSION_NAME);
+    }
+
+    @Test
+    void testRecordOperation_notFlagged() {
+        service = propagatingService();
+        when(mockFlagFilter.isEnabled()).thenReturn(true);
+        when(mockEffectiveRepo.propagate(anyInt(), anyInt())).thenReturn(0);
+        service.recordOperation(op, List.of(new Action(null, 50, slot1, slot2, sample, sample)));
+        verify(mockEffectiveRepo).propagate(50, 50);
+        verify(mockFlagFilter).add(Set.of());
+        verifyNoInteractions(mockVersionService);
+    }
+
+    @Test
+    void testRecordOperation_notPropagating() {
+        when(mockFlagFilter.isEnabled()).thenReturn(true);
+        when(mockFlagFilter.mightBeFlagged(slot1.getLabwareId())).thenReturn(true);
+        service.recordOperation(op, List.of(new Action(null, 50, slot1, slot2, sample, sample)));
+        verifyNoInteractions(mockEffectiveRepo);
+        verify(mockFlagFilter).add(Set.of(slot2.getLabwareId()));
+        verify(mockVersionService).increment(FlagFilter.VERSION_NAME);
+    }
+
+    private FlagEffectiveServiceImp propagatingService() {
+        when(mockConfig.isUseEffectiveFlags()).thenReturn(true);
+        return new FlagEffectiveServiceImp(mockTransactor, mockAncestoriser, mockActionRepo, mockEffectiveRepo,
+                mockFlagRepo, mockFlagFilter, mockVersionService, mockClock, mockConfig);
+    }
+
+    @Test
+    void testBackfill_noFlags() {
+        when(mockEffectiveRepo.findMaxFlagId()).thenReturn(null);
+        assertEquals(0, service.backfill());
+        verify(mockEffectiveRepo, never()).insertDirectFlags(anyInt(), anyInt());
+        verify(mockEffectiveRepo, never()).propagate(anyInt(), anyInt());
+    }
+
+    @Test
+    void testBackfill() {
+        mockTransactor(mockTransactor);
+        when(mockEffectiveRepo.findMaxFlagId()).thenReturn(1500);
+        when(mockActionRepo.findMaxOperationId()).thenReturn(1200);
+        when(mockEffectiveRepo.insertDirectFlags(anyInt(), anyInt())).thenReturn(10, 5);
+        // The first pass adds rows in both ranges; the second pass adds nothing
+        doReturn(7, 3, 0, 0).when(service).propagateRange(anyInt(), anyInt());
+
+        assertEquals(25, service.backfill());
+
+        verify(mockEffectiveRepo).insertDirectFlags(0, 999);
+        verify(mockEffectiveRepo).insertDirectFlags(1000, 1500);
+        verify(service, times(2)).propagateRange(0, 999);
+        verify(service, times(2)).propagateRange(1000, 1200);
+    }
+
+    @Test
+    void testPropagateRange() {
+        when(mockEffectiveRepo.propagate(anyInt(), anyInt())).thenReturn(4, 2, 0);
+        assertEquals(6, service.propagateRange(1, 10));
+        verify(mockEffectiveRepo, times(3)).propagate(1, 10);
+    }
+
+    @Test
+    void testLoadFilter() {
+        mockTransactor(mockTransactor);
+        when(mockVersionService.loadVersion(FlagFilter.VERSION_NAME)).thenReturn(7L);
+        doReturn(Set.of(1,2,3)).when(service).loadPossiblyFlaggedLabwareIds();
+        assertEquals(3, service.loadFilter());
+        InOrder inOrder = inOrder(mockVersionService, service, mockFlagFilter);
+        inOrder.verify(mockVersionService).loadVersion(FlagFilter.VERSION_NAME);
+        inOrder.verify(service).loadPossiblyFlaggedLabwareIds();
+        inOrder.verify(mockFlagFilter).add(Set.of(1,2,3));
+        inOrder.verify(mockFlagFilter).markReady(7L);
+    }
+
+    @Test
+    void testLoadFilterOnStartup_failure() {
+        when(mockFlagFilter.isEnabled()).thenReturn(true);
+        doThrow(IllegalStateException.class).when(service).loadFilter();
+        service.loadFilterOnStartup();
+        verify(mockFlagFilter, never()).markReady(anyLong());
+    }
+
+    private FlagEffectiveServiceImp pollingService() {
+        when(mockConfig.getFilterPollMs()).thenReturn(1000L);
+        when(mockFlagFilter.isActive()).thenReturn(true);
+        when(mockFlagFilter.getVersion()).thenReturn(3L);
+        return spy(new FlagEffectiveServiceImp(mockTransactor, mockAncestoriser, mockActionRepo, mockEffectiveRepo,
+                mockFlagRepo, mockFlagFilter, mockVersionService, mockClock, mockConfig));
+    }
+
+    @Test
+    void testCheckFilter_inactive() {
+        when(mockFlagFilter.isActive()).thenReturn(false);
+        assertFalse(service.checkFilter());
+        verifyNoInteractions(mockVersionService);
+    }
+
+    @Test
+    void testCheckFilter_upToDate() {
+        service = pollingService();
+        when(mockClock.millis()).thenReturn(5000L, 5500L, 6000L);
+        when(mockVersionService.loadVersion(FlagFilter.VERSION_NAME)).thenReturn(3L);
+        assertTrue(service.checkFilter());
+        // Not time to poll again
+        assertTrue(service.checkFilter());
+        verify(mockVersionService, times(1)).loadVersion(any());
+        // Time to poll again
+        assertTrue(service.checkFilter());
+        verify(mockVersionService, times(2)).loadVersion(any());
+        verify(service, never()).loadFilter();
+    }
+
+    @Test
+    void testCheckFilter_stale() {
+        service = pollingService();
+        when(mockClock.millis()).thenReturn(5000L);
+        when(mockVersionService.loadVersion(FlagFilter.VERSION_NAME)).thenReturn(4L);
+        doReturn(10).when(service).loadFilter();
+        assertTrue(service.checkFilter());
+        verify(service).loadFilter();
+    }
+
+    @Test
+    void testCheckFilter_reloadFails() {
+        service = pollingService();
+        when(mockClock.millis()).thenReturn(5000L);
+        when(mockVersionService.loadVersion(FlagFilter.VERSION_NAME)).thenReturn(4L);
+        doThrow(IllegalStateException.class).when(service).loadFilter();
+        assertFalse(service.checkFilter());
+    }
+
+    @Test
+    void testLoadPossiblyFlaggedLabwareIds_effective() {
+        when(mockConfig.isUseEffectiveFlags()).thenReturn(true);
+        service = new FlagEffectiveServiceImp(mockTransactor, mockAncestoriser, mockActionRepo, mockEffectiveRepo,
+                mockFlagRepo, mockFlagFilter, mockVersionService, mockClock, mockConfig);
+        when(mockEffectiveRepo.findFlaggedLabwareIds()).thenReturn(Set.of(4,5));
+        assertEquals(Set.of(4,5), service.loadPossiblyFlaggedLabwareIds());
+        verifyNoInteractions(mockFlagRepo);
+        verifyNoInteractions(mockAncestoriser);
+    }
+
+    @Test
+    void testLoadPossiblyFlaggedLabwareIds_posterity() {
+        LabwareFlag flag = new LabwareFlag(100, lw1, "Alpha", null, 10, Priority.flag);
+        when(mockFlagRepo.findAll()).thenReturn(List.of(flag));
+        SlotSample ss1 = new SlotSample(slot1, sample);
+        Posterity posterity = new Posterity();
+        posterity.put(ss1, new LinkedHashSet<>(List.of(new SlotSample(slot2, sample))));
+        posterity.put(new SlotSample(slot2, sample), new LinkedHashSet<>());
+        when(mockAncestoriser.findPosterity(any())).thenReturn(posterity);
+
+        assertEquals(Set.of(slot1.getLabwareId(), slot2.getLabwareId()), service.loadPossiblyFlaggedLabwareIds());
+        verify(mockAncestoriser).findPosterity(Set.of(ss1));
+        verifyNoInteractions(mockEffectiveRepo);
+    }
+}
@@ -0,0 +1,64 @@
+package uk.ac.sanger.sccp.stan.service.flag;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Tests {@link FlagFilter} */
+class TestFlagFilter {
+    @Test
+    void testNotReady() {
+        FlagFilter filter = new FlagFilter(true, 100, 0.01);
+        assertFalse(filter.isActive());
+        assertTrue(filter.mightBeFlagged(5));
+        filter.markReady(3);
+        assertTrue(filter.isActive());
+        assertEquals(3, filter.getVersion());
+        assertFalse(filter.mightBeFlagged(5));
+    }
+
+    @Test
+    void testDisabled() {
+        FlagFilter filter = new FlagFilter(false, 100, 0.01);
+        filter.add(List.of(1, 2));
+        filter.markReady(0);
+        assertFalse(filter.isEnabled());
+        assertFalse(filter.isActive());
+        assertTrue(filter.mightBeFlagged(3));
+        assertEquals(0L, filter.getStats().get("approximateLabware"));
+    }
+
+    @Test
+    void testMightBeFlagged() {
+        FlagFilter filter = new FlagFilter(true, 1000, 0.01);
+        filter.add(IntStream.range(0, 1000).boxed().toList());
+        filter.markReady(0);
+        assertThat(IntStream.range(0, 1000)).allMatch(filter::mightBeFlagged);
+        long falsePositives = IntStream.range(1000, 11_000).filter(filter::mightBeFlagged).count();
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    @Test
+    void testStats() {
+        FlagFilter filter = new FlagFilter(true, 100, 0.01);
+        filter.add(List.of(1, 2, 3));
+        filter.markReady(0);
+        filter.recordLookup(10, 3, 2);
+        filter.recordLookup(5, 1, 1);
+        Map<String, Object> stats = filter.getStats();
+        assertEquals(true, stats.get("enabled"));
+        assertEquals(true, stats.get("ready"));
+        assertThat((long) stats.get("approximateLabware")).isPositive();
+        assertEquals(15L, stats.get("checked"));
+        assertEquals(11L, stats.get("excluded"));
+        assertEquals(4L, stats.get("possibleHits"));
+        assertEquals(1L, stats.get("falsePositives"));
+        assertEquals(1.0/12, (double) stats.get("falsePositiveRate"), 1e-9);
+        assertThat((double) stats.get("expectedFpp")).isBetween(0.0, 0.01);
+    }
+}
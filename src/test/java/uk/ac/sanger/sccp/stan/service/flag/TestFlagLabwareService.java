@@ -30,6 +30,8 @@ class TestFlagLabwareService {
     private OperationService mockOpService;
     @Mock
     private WorkService mockWorkService;
+    @Mock
+    private FlagEffectiveService mockFlagEffectiveService;
 
     @Mock
     private LabwareFlagRepo mockFlagRepo;
@@ -236,6 +238,7 @@ class TestFlagLabwareService {
                 .map((lw, op) -> new LabwareFlag(null, lw, desc, user, op.getId(), priority))
                 .toList();
         verify(mockFlagRepo).saveAll(expectedFlags);
+        verify(mockFlagEffectiveService).recordFlags(expectedFlags);
         if (hasWork) {
             verify(mockWorkService).link(work, returnedOps);
         } else {
@@ -5,10 +5,10 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.*;
 import uk.ac.sanger.sccp.stan.EntityFactory;
+import uk.ac.sanger.sccp.stan.config.FlagLookupConfig;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.model.LabwareFlag.Priority;
-import uk.ac.sanger.sccp.stan.repo.LabwareFlagRepo;
-import uk.ac.sanger.sccp.stan.repo.OperationRepo;
+import uk.ac.sanger.sccp.stan.repo.*;
 import uk.ac.sanger.sccp.stan.request.LabwareFlagged;
 import uk.ac.sanger.sccp.stan.service.flag.FlagLookupServiceImp.OpIdLwId;
 import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser;
@@ -34,6 +34,14 @@ class TestFlagLookupService {
     private LabwareFlagRepo mockFlagRepo;
     @Mock
     private OperationRepo mockOpRepo;
+    @Mock
+    private LabwareFlagEffectiveRepo mockEffectiveRepo;
+    @Mock
+    private FlagFilter mockFlagFilter;
+    @Mock
+    private FlagEffectiveService mockFlagEffectiveService;
+    @Mock
+    private FlagLookupConfig mockConfig;
 
     @InjectMocks
     private FlagLookupServiceImp service;
@@ -93,6 +101,68 @@ class TestFlagLookupService {
         verify(service, times(labware.size())).flagsForLabware(any(), any(), any());
     }
 
+    private FlagLookupServiceImp effectiveService() {
+        when(mockConfig.isUseEffectiveFlags()).thenReturn(true);
+        return spy(new FlagLookupServiceImp(mockAncestoriser, mockFlagRepo, mockOpRepo, mockEffectiveRepo, mockFlagFilter,
+                mockFlagEffectiveService, mockConfig));
+    }
+
+    @Test
+    void testLookUp_effective() {
+        FlagLookupServiceImp service = effectiveService();
+        List<Labware> labware = getLabware(3);
+        Labware lw1 = labware.get(0), lw2 = labware.get(1), lw3 = labware.get(2);
+        LabwareFlag flag1 = new LabwareFlag(100, lw1, "Alpha", null, 200, Priority.flag);
+        LabwareFlag flag2 = new LabwareFlag(101, lw1, "Beta", null, 201, Priority.note);
+        when(mockEffectiveRepo.findFlagIds(any())).thenReturn(Map.of(
+                lw1.getId(), new TreeSet<>(Set.of(100)),
+                lw2.getId(), new TreeSet<>(Set.of(100, 101))
+        ));
+        when(mockFlagRepo.findAllById(any())).thenReturn(List.of(flag1, flag2));
+
+        UCMap<List<LabwareFlag>> result = service.lookUp(labware);
+
+        assertThat(result).hasSize(3);
+        assertThat(result.get(lw1.getBarcode())).containsExactly(flag1);
+        assertThat(result.get(lw2.getBarcode())).containsExactly(flag1, flag2);
+        assertThat(result.get(lw3.getBarcode())).isEmpty();
+        verify(mockEffectiveRepo).findFlagIds(List.of(lw1.getId(), lw2.getId(), lw3.getId()));
+        verify(mockFlagRepo).findAllById(Set.of(100, 101));
+        verifyNoInteractions(mockAncestoriser);
+        verifyNoInteractions(mockOpRepo);
+    }
+
+    @Test
+    void testLookUp_effectiveNoFlags() {
+        FlagLookupServiceImp service = effectiveService();
+        List<Labware> labware = getLabware(2);
+        when(mockEffectiveRepo.findFlagIds(any())).thenReturn(Map.of());
+        assertThat(service.lookUp(labware)).isEmpty();
+        verifyNoInteractions(mockFlagRepo);
+        verifyNoInteractions(mockAncestoriser);
+    }
+
+    @Test
+    void testGetLabwareFlagged_effective() {
+        FlagLookupServiceImp service = effectiveService();
+        List<Labware> labware = getLabware(3);
+        when(mockEffectiveRepo.findPriorities(any())).thenReturn(Map.of(
+                labware.get(0).getId(), Priority.note,
+                labware.get(2).getId(), Priority.flag
+        ));
+        List<LabwareFlagged> lfs = service.getLabwareFlagged(labware);
+        assertThat(lfs).hasSize(3);
+        assertThat(lfs.stream().map(LabwareFlagged::getLabware)).containsExactlyElementsOf(labware);
+        assertThat(lfs.stream().map(LabwareFlagged::getFlagPriority)).containsExactly(Priority.note, null, Priority.flag);
+        verify(mockEffectiveRepo).findPriorities(labware.stream().map(Labware::getId).toList());
+        verifyNoInteractions(mockAncestoriser);
+
+        Labware lw = labware.get(2);
+        assertEquals(Priority.flag, service.labwareFlagPriority(lw));
+        verify(mockEffectiveRepo).findPriorities(List.of(lw.getId()));
+        verifyNoInteractions(mockFlagRepo);
+    }
+
     @Test
     void testLookUp_noLabware() {
         assertThat(service.lookUp(List.of())).isEmpty();
@@ -311,4 +381,57 @@ class TestFlagLookupService {
         verify(mockOpRepo).findAllById(Set.of(flag.getOperationId()));
     }
 
-}
\ No newline at end of file
+    @Test
+    void testGetLabwareFlagged_filtered() {
+        List<Labware> labware = getLabware(4);
+        Labware lw1 = labware.get(0), lw2 = labware.get(1), lw3 = labware.get(2), lw4 = labware.get(3);
+        when(mockFlagEffectiveService.checkFilter()).thenReturn(true);
+        when(mockFlagFilter.mightBeFlagged(anyInt())).then(invocation -> {
+            int id = invocation.getArgument(0);
+            return (id==lw1.getId() || id==lw3.getId());
+        });
+        doReturn(List.of(new LabwareFlagged(lw1, Priority.note), new LabwareFlagged(lw3, null)))
+                .when(service).loadLabwareFlagged(any());
+
+        assertThat(service.getLabwareFlagged(labware)).containsExactly(
+                new LabwareFlagged(lw1, Priority.note), new LabwareFlagged(lw2, null),
+                new LabwareFlagged(lw3, null), new LabwareFlagged(lw4, null)
+        );
+        verify(service).loadLabwareFlagged(List.of(lw1, lw3));
+        verify(mockFlagFilter).recordLookup(4, 2, 1);
+    }
+
+    @Test
+    void testGetLabwareFlagged_allExcluded() {
+        List<Labware> labware = getLabware(2);
+        when(mockFlagEffectiveService.checkFilter()).thenReturn(true);
+        when(mockFlagFilter.mightBeFlagged(anyInt())).thenReturn(false);
+
+        assertThat(service.getLabwareFlagged(labware)).containsExactly(
+                new LabwareFlagged(labware.get(0), null), new LabwareFlagged(labware.get(1), null)
+        );
+        verify(service, never()).loadLabwareFlagged(any());
+        verifyNoInteractions(mockAncestoriser);
+        verify(mockFlagFilter).recordLookup(2, 0, 0);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings={"excluded", "unflagged", "flagged"})
+    void testGetLabwareFlagged_singleFiltered(String mode) {
+        Labware lw = EntityFactory.getTube();
+        when(mockFlagEffectiveService.checkFilter()).thenReturn(true);
+        when(mockFlagFilter.mightBeFlagged(lw.getId())).thenReturn(!mode.equals("excluded"));
+        Priority priority = (mode.equals("flagged") ? Priority.flag : null);
+        doReturn(priority).when(service).labwareFlagPriority(any());
+
+        assertEquals(new LabwareFlagged(lw, priority), service.getLabwareFlagged(lw));
+
+        if (mode.equals("excluded")) {
+            verify(service, never()).labwareFlagPriority(any());
+            verify(mockFlagFilter).recordLookup(1, 0, 0);
+        } else {
+            verify(service).labwareFlagPriority(lw);
+            verify(mockFlagFilter).recordLookup(1, 1, priority==null ? 0 : 1);
+        }
+    }
+}
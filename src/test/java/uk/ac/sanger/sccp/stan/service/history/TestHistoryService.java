@@ -63,6 +63,8 @@ public class TestHistoryService {
     @Mock
     private WorkRepo mockWorkRepo;
     @Mock
+    private WorkLinkRepo mockWorkLinkRepo;
+    @Mock
     private MeasurementRepo mockMeasurementRepo;
     @Mock
     private LabwareNoteRepo mockLwNoteRepo;
@@ -103,7 +105,7 @@ public class TestHistoryService {
 
         service = spy(new HistoryServiceImp(mockOpRepo, mockOpTypeRepo, mockLwRepo, mockSampleRepo, mockTissueRepo, mockDonorRepo,
                 mockReleaseRepo, mockDestructionRepo, mockOpCommentRepo, mockRoiRepo, mockSnapshotRepo, mockWorkRepo,
-                mockMeasurementRepo, mockLwNoteRepo, mockResultOpRepo, mockStainTypeRepo, mockLwProbeRepo,
+                mockWorkLinkRepo, mockMeasurementRepo, mockLwNoteRepo, mockResultOpRepo, mockStainTypeRepo, mockLwProbeRepo,
                 mockFlagRepo, mockOpSolRepo, mockSolutionRepo, mockOpPanelRepo,
                 mockRadService, mockSlotRegionService, mockFlagLookupService, mockDetailerFactory));
     }
@@ -192,20 +194,16 @@ public class TestHistoryService {
                 new Operation(20, null, null, null, null),
                 new Operation(21, null, null, null, null)
         );
-        final Set<Integer> opIds = Set.of(20, 21);
-        work.setOperationIds(opIds);
-        final Set<Integer> releaseIds = Set.of(30,31);
         Labware rlw1 = EntityFactory.makeEmptyLabware(EntityFactory.getTubeType());
         Labware rlw2 = EntityFactory.makeEmptyLabware(EntityFactory.getTubeType());
         List<Release> releases = List.of(
                 new Release(30, rlw1, null, null, null, null, null),
                 new Release(31, rlw2, null, null, null, null, null)
         );
-        work.setReleaseIds(releaseIds);
         String workNumber = "sgp10";
         when(mockWorkRepo.getByWorkNumber(workNumber)).thenReturn(work);
-        when(mockOpRepo.findAllById(opIds)).thenReturn(ops);
-        when(mockReleaseRepo.findAllByIdIn(releaseIds)).thenReturn(releases);
+        doReturn(ops).when(service).loadWorkOps(work, null);
+        doReturn(releases).when(service).loadWorkReleases(work);
         Sample sam1 = EntityFactory.getSample();
         Sample sam2 = new Sample(sam1.getId()+1, sam1.getSection()+1, sam1.getTissue(), sam1.getBioState());
         Labware lw1 = EntityFactory.getTube();
@@ -251,7 +249,6 @@ public class TestHistoryService {
         String workNumber = "SGP1";
         Work work = EntityFactory.makeWork(workNumber);
         when(mockWorkRepo.getByWorkNumber(workNumber)).thenReturn(work);
-        work.setOperationIds(includeOps ? Set.of(2, 3, 4) : Set.of());
         Set<Integer> opLwIds = includeOps ? Set.of(10,11) : Set.of();
         doReturn(opLwIds).when(service).labwareIdsFromOps(any());
         LabwareType lt = EntityFactory.getTubeType();
@@ -261,12 +258,12 @@ public class TestHistoryService {
             Operation op1 = new Operation(1, otherOpType, null, null, null);
             Operation op2 = new Operation(2, requiredOpType, null, null, null);
             workOps = List.of(op1, op2);
-            when(mockOpRepo.findAllById(work.getOperationIds())).thenReturn(workOps);
+            doReturn(workOps.subList(1,2)).when(service).loadWorkOps(work, requiredOpType);
         } else if (includeOps) {
             OperationType opType = EntityFactory.makeOperationType("opname", null);
             workOps = Stream.of(1,2).map(i -> new Operation(i, opType, null, null, null))
                     .collect(toList());
-            when(mockOpRepo.findAllById(work.getOperationIds())).thenReturn(workOps);
+            doReturn(workOps).when(service).loadWorkOps(work, null);
         } else {
             workOps = List.of();
         }
@@ -274,7 +271,6 @@ public class TestHistoryService {
         List<Labware> opLw = (includeOps ? List.of(new Labware(2, "STAN-2", lt, null)) : List.of());
         doReturn(opLw).when(mockLwRepo).findAllByIdIn(opLwIds);
 
-        work.setReleaseIds(includeReleases ? Set.of(5,6,7) : Set.of());
         List<Release> releases;
         List<Labware> releaseLw;
         if (includeReleases) {
@@ -290,7 +286,7 @@ public class TestHistoryService {
             releases = List.of();
         }
 
-        doReturn(releases).when(mockReleaseRepo).findAllByIdIn(work.getReleaseIds());
+        doReturn(releases).when(service).loadWorkReleases(work);
 
         List<Sample> samples = includeOps || includeReleases ? List.of(EntityFactory.getSample()) : List.of();
         doReturn(samples).when(service).referencedSamples(any(), any());
@@ -315,6 +311,11 @@ public class TestHistoryService {
         }
         if (includeReleases) {
             verify(service).createEntriesForReleases(releases, null, null, work.getWorkNumber());
+        } else {
+            verify(service, never()).loadWorkReleases(any());
+        }
+        if (!includeOps) {
+            verify(service, never()).loadWorkOps(any(), any());
         }
         if (!samples.isEmpty()) {
             verify(service).referencedSamples(allEntries, allLabware);
@@ -324,13 +325,48 @@ public class TestHistoryService {
     @Test
     public void testGetHistoryForWorkNumber_noOps() {
         Work work = new Work(10, "SGP10", null, null, null, null, null, Work.Status.active);
-        work.setOperationIds(Set.of());
         final String workNumber = "sgp10";
         when(mockWorkRepo.getByWorkNumber(workNumber)).thenReturn(work);
+        when(mockWorkLinkRepo.streamOperationIds(work.getId())).thenReturn(Stream.empty());
+        when(mockWorkLinkRepo.streamReleaseIds(work.getId())).thenReturn(Stream.empty());
         History history = service.getHistoryForWorkNumber(workNumber);
         assertThat(history.getEntries()).isEmpty();
         assertThat(history.getLabware()).isEmpty();
         assertThat(history.getSamples()).isEmpty();
+        verifyNoInteractions(mockOpRepo);
+        verifyNoInteractions(mockReleaseRepo);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans={false,true})
+    public void testLoadWorkOps(boolean filtered) {
+        Work work = EntityFactory.makeWork("SGP1");
+        final int numOps = HistoryServiceImp.LINK_PAGE_SIZE + 2;
+        OperationType opType = EntityFactory.makeOperationType("Bananas", null);
+        OperationType otherOpType = EntityFactory.makeOperationType("Custard", null);
+        when(mockWorkLinkRepo.streamOperationIds(work.getId())).thenReturn(IntStream.rangeClosed(1, numOps).boxed());
+        when(mockOpRepo.findAllById(any())).then(invocation -> {
+            Iterable<Integer> ids = invocation.getArgument(0);
+            return stream(ids).map(id -> new Operation(id, id%2==0 ? opType : otherOpType, null, null, null))
+                    .toList();
+        });
+
+        List<Operation> result = service.loadWorkOps(work, filtered ? opType : null);
+        verify(mockOpRepo, times(2)).findAllById(any());
+        verify(mockOpRepo).findAllById(List.of(numOps-1, numOps));
+        assertThat(result).hasSize(filtered ? numOps/2 : numOps);
+        if (filtered) {
+            assertThat(result).allMatch(op -> op.getOperationType()==opType);
+        }
+    }
+
+    @Test
+    public void testLoadWorkReleases() {
+        Work work = EntityFactory.makeWork("SGP1");
+        when(mockWorkLinkRepo.streamReleaseIds(work.getId())).thenReturn(Stream.of(5,6));
+        List<Release> releases = List.of(new Release(), new Release());
+        when(mockReleaseRepo.findAllByIdIn(List.of(5,6))).thenReturn(releases);
+        assertEquals(releases, service.loadWorkReleases(work));
     }
 
     @Test
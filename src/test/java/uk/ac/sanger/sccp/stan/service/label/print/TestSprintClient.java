@@ -12,15 +12,18 @@ import uk.ac.sanger.sccp.stan.model.LabelType;
 import uk.ac.sanger.sccp.stan.service.label.LabelPrintRequest;
 import uk.ac.sanger.sccp.stan.service.label.LabwareLabelData;
 import uk.ac.sanger.sccp.stan.service.label.LabwareLabelData.LabelContent;
+import uk.ac.sanger.sccp.stan.service.store.StubStorelightServer;
 import uk.ac.sanger.sccp.utils.StringTemplate;
 
 import java.io.IOException;
-import java.net.URL;
+import java.net.*;
+import java.net.http.HttpClient;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 /**
@@ -105,4 +108,59 @@ public class TestSprintClient {
         verify(sprintClient).toJson("printer1", request);
         verify(sprintClient).postJson(new URL(mockSprintConfig.getHost()), requestJson, ObjectNode.class);
     }
+
+    @Test
+    public void testDefaults() {
+        assertEquals(2000, sprintClient.getTimeout());
+        assertEquals(2000, sprintClient.getConnectTimeout());
+        assertEquals(HttpClient.Version.HTTP_1_1, sprintClient.getVersion());
+        assertNull(sprintClient.getExecutor());
+        sprintClient.setTimeout(5000);
+        assertEquals(2000, sprintClient.getConnectTimeout());
+        HttpClient httpClient = sprintClient.getHttpClient();
+        assertEquals(HttpClient.Version.HTTP_1_1, httpClient.version());
+        assertEquals(Optional.of(Duration.ofMillis(2000)), httpClient.connectTimeout());
+        assertTrue(httpClient.executor().isEmpty());
+        assertEquals(HttpClient.Redirect.NORMAL, httpClient.followRedirects());
+        assertTrue(httpClient.proxy().isEmpty());
+    }
+
+    @Test
+    public void testProxy() {
+        URI uri = URI.create("http://sprint.example/graphql");
+        Proxy proxy = new Proxy(Proxy.Type.HTTP, InetSocketAddress.createUnresolved("proxy.example", 3128));
+        sprintClient.setProxy(proxy);
+        assertEquals(List.of(proxy), sprintClient.getHttpClient().proxy().orElseThrow().select(uri));
+
+        sprintClient.setProxy(Proxy.NO_PROXY);
+        assertEquals(List.of(Proxy.NO_PROXY), sprintClient.getHttpClient().proxy().orElseThrow().select(uri));
+
+        sprintClient.setProxy(null);
+        assertTrue(sprintClient.getHttpClient().proxy().isEmpty());
+    }
+
+    @Test
+    public void testProxy_unsupported() {
+        Proxy proxy = new Proxy(Proxy.Type.SOCKS, InetSocketAddress.createUnresolved("proxy.example", 1080));
+        assertThrows(IllegalArgumentException.class, () -> sprintClient.setProxy(proxy));
+        assertNull(sprintClient.getProxy());
+    }
+
+    @Test
+    public void testPrintToServer() throws IOException {
+        try (StubStorelightServer server = new StubStorelightServer()) {
+            when(mockSprintConfig.getHost()).thenReturn(server.getUrl());
+            ObjectNode requestJson = new ObjectMapper().createObjectNode().put("query", "{ print }");
+            doReturn(requestJson).when(sprintClient).toJson(anyString(), any());
+            LabelPrintRequest request = new LabelPrintRequest(EntityFactory.getLabelType(), List.of());
+
+            sprintClient.print("printer1", request);
+            assertThat(server.getRequestBodies()).containsExactly("{\"query\":\"{ print }\"}");
+            assertEquals("application/json", server.getRequestHeaders().getFirst().get("content-type"));
+
+            server.setStatus(500);
+            assertThat(assertThrows(IOException.class, () -> sprintClient.print("printer1", request)))
+                    .hasMessage("500 - Failed");
+        }
+    }
 }
@@ -0,0 +1,166 @@
+package uk.ac.sanger.sccp.stan.service.load;
+
+import org.junit.jupiter.api.*;
+import uk.ac.sanger.sccp.stan.Transactor;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static uk.ac.sanger.sccp.stan.Matchers.mockTransactor;
+
+/**
+ * Tests {@link LoadStages}
+ * @author dr6
+ */
+public class TestLoadStages {
+    private Transactor mockTransactor;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setup() {
+        mockTransactor = mock(Transactor.class);
+        mockTransactor(mockTransactor);
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterEach
+    void cleanup() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testInvalidStages() {
+        LoadStages stages = new LoadStages(null, mockTransactor, "Release file");
+        stages.add("alpha", () -> 1, v -> {});
+        assertThat(assertThrows(IllegalArgumentException.class, () -> stages.add("alpha", () -> 1, v -> {})))
+                .hasMessage("Repeated stage name: alpha");
+        assertThat(assertThrows(IllegalArgumentException.class, () -> stages.add("beta", () -> 1, v -> {}, "gamma")))
+                .hasMessage("Stage beta depends on unknown stage gamma");
+        assertThat(stages.getStageNames()).containsExactly("alpha");
+    }
+
+    @Test
+    public void testRunSequentially() {
+        final Thread caller = Thread.currentThread();
+        List<String> ran = new ArrayList<>();
+        LoadStages stages = new LoadStages(null, mockTransactor, "Release file");
+        stages.add("alpha", () -> "alpha", ran::add);
+        stages.addSessionBound("beta", () -> ran.add("beta"));
+        stages.add("gamma", () -> {
+            assertSame(caller, Thread.currentThread());
+            return "gamma";
+        }, ran::add, "alpha");
+
+        Map<String, Long> timings = stages.run();
+
+        assertEquals(List.of("alpha", "beta", "gamma"), ran);
+        assertThat(timings.keySet()).containsExactly("alpha", "beta", "gamma");
+        verifyNoInteractions(mockTransactor);
+    }
+
+    @Test
+    public void testRunConcurrently() {
+        final Thread caller = Thread.currentThread();
+        final CountDownLatch latch = new CountDownLatch(2);
+        List<String> loaded = Collections.synchronizedList(new ArrayList<>());
+        List<String> applied = new ArrayList<>();
+        Set<Thread> applierThreads = ConcurrentHashMap.newKeySet();
+        LoadStages stages = new LoadStages(executor, mockTransactor, "Release file");
+        stages.add("alpha", () -> {
+            assertNotSame(caller, Thread.currentThread());
+            countDownAndAwait(latch);
+            loaded.add("alpha");
+            return "A";
+        }, v -> {
+            applierThreads.add(Thread.currentThread());
+            applied.add(v);
+        });
+        stages.add("beta", () -> {
+            assertNotSame(caller, Thread.currentThread());
+            countDownAndAwait(latch);
+            loaded.add("beta");
+            return "B";
+        }, v -> {
+            applierThreads.add(Thread.currentThread());
+            applied.add(v);
+        });
+        stages.addSessionBound("gamma", () -> {
+            assertSame(caller, Thread.currentThread());
+            loaded.add("gamma");
+            applied.add("G");
+        }, "alpha");
+        stages.add("delta", () -> {
+            loaded.add("delta");
+            return "D";
+        }, v -> {
+            applierThreads.add(Thread.currentThread());
+            applied.add(v);
+        }, "gamma", "beta");
+
+        Map<String, Long> timings = stages.run();
+
+        assertThat(loaded).containsExactlyInAnyOrder("alpha", "beta", "gamma", "delta");
+        assertThat(loaded.indexOf("gamma")).isGreaterThan(loaded.indexOf("alpha"));
+        assertEquals("delta", loaded.get(3));
+        assertThat(applied).containsExactlyInAnyOrder("A", "B", "G", "D");
+        assertThat(applied.indexOf("G")).isGreaterThan(applied.indexOf("A"));
+        assertThat(applierThreads).containsExactly(caller);
+        assertThat(timings.keySet()).containsExactly("alpha", "beta", "gamma", "delta");
+        verify(mockTransactor).transactReadOnly(eq("Release file alpha"), any());
+        verify(mockTransactor).transactReadOnly(eq("Release file beta"), any());
+        verify(mockTransactor).transactReadOnly(eq("Release file delta"), any());
+        verifyNoMoreInteractions(mockTransactor);
+    }
+
+    @Test
+    public void testConcurrentFailure() {
+        final IllegalStateException ex = new IllegalStateException("Bad alpha.");
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        List<String> applied = new ArrayList<>();
+        LoadStages stages = new LoadStages(executor, mockTransactor, "Release file");
+        stages.<String>add("alpha", () -> { throw ex; }, applied::add);
+        stages.add("beta", () -> { ran.add("beta"); return "beta"; }, applied::add);
+        stages.addSessionBound("gamma", () -> ran.add("gamma"), "alpha");
+        stages.add("delta", () -> { ran.add("delta"); return "delta"; }, applied::add, "gamma");
+
+        assertSame(ex, assertThrows(IllegalStateException.class, stages::run));
+        assertEquals(List.of("beta"), ran);
+        assertThat(applied).isEmpty();
+    }
+
+    @Test
+    public void testSessionBoundFailure() {
+        final IllegalStateException ex = new IllegalStateException("Bad alpha.");
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        LoadStages stages = new LoadStages(executor, mockTransactor, "Release file");
+        stages.addSessionBound("alpha", () -> { throw ex; });
+        stages.addSessionBound("beta", () -> ran.add("beta"));
+        stages.add("gamma", () -> ran.add("gamma"), v -> {}, "alpha");
+        stages.add("delta", () -> ran.add("delta"), v -> {});
+
+        assertSame(ex, assertThrows(IllegalStateException.class, stages::run));
+        assertEquals(List.of("delta"), ran);
+    }
+
+    @Test
+    public void testDescription() {
+        LoadStages stages = new LoadStages(executor, mockTransactor, "Overview");
+        stages.add("alpha", () -> 1, v -> {});
+        stages.run();
+        verify(mockTransactor).transactReadOnly(eq("Overview alpha"), any());
+    }
+
+    private static void countDownAndAwait(CountDownLatch latch) {
+        latch.countDown();
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS), "Stages did not run concurrently.");
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package uk.ac.sanger.sccp.stan.service.load;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link LoaderExecutor}
+ * @author dr6
+ */
+public class TestLoaderExecutor {
+    @Test
+    public void testNoThreads() {
+        LoaderExecutor loaderExecutor = new LoaderExecutor(0, "loader-");
+        assertNull(loaderExecutor.getExecutor());
+        loaderExecutor.shutdown();
+    }
+
+    @Test
+    public void testThreads() throws Exception {
+        LoaderExecutor loaderExecutor = new LoaderExecutor(2, "loader-");
+        ExecutorService executor = (ExecutorService) loaderExecutor.getExecutor();
+        assertNotNull(executor);
+        Thread thread = CompletableFuture.supplyAsync(Thread::currentThread, executor).get(10, TimeUnit.SECONDS);
+        assertThat(thread.getName()).startsWith("loader-");
+        assertTrue(thread.isDaemon());
+        loaderExecutor.shutdown();
+        assertTrue(executor.isShutdown());
+    }
+}
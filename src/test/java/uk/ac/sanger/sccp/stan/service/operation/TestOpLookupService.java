@@ -26,6 +26,8 @@ class TestOpLookupService {
     @Mock
     WorkRepo mockWorkRepo;
     @Mock
+    WorkLinkRepo mockWorkLinkRepo;
+    @Mock
     OperationRepo mockOpRepo;
     @Mock
     LabwareNoteRepo mockLwNoteRepo;
@@ -125,7 +127,7 @@ class TestOpLookupService {
         Work work = mockWork();
         String run = (hasRun ? "RUN1" : null);
         mockOps(2);
-        work.setOperationIds(Set.of());
+        when(mockWorkLinkRepo.findLinkedOperationIds(anyInt(), any())).thenReturn(Set.of());
         assertThat(service.findOps(opType.getName(), lw.getBarcode(), run, work.getWorkNumber())).isEmpty();
         verify(mockOpRepo).findAllByOperationTypeAndDestinationLabwareIdIn(opType, List.of(lw.getId()));
         verifyNoInteractions(mockLwNoteRepo);
@@ -150,7 +152,8 @@ class TestOpLookupService {
         Work work = mockWork();
         String run = "RUN1";
         List<Operation> ops = mockOps(5);
-        work.setOperationIds(Set.of(ops.get(0).getId(), ops.get(1).getId(), ops.get(2).getId(), ops.get(3).getId()));
+        when(mockWorkLinkRepo.findLinkedOperationIds(anyInt(), any()))
+                .thenReturn(Set.of(ops.get(0).getId(), ops.get(1).getId(), ops.get(2).getId(), ops.get(3).getId()));
         List<LabwareNote> lwNotes = IntStream.of(1,2,3,4)
                 .mapToObj(i -> new LabwareNote(200+i, lw.getId(), ops.get(i).getId(), "run", (i < 3 ? run : "RUN2")))
                 .toList();
@@ -163,6 +166,7 @@ class TestOpLookupService {
         verify(mockLwRepo).findByBarcode(lw.getBarcode());
         verify(mockWorkRepo).findByWorkNumber(work.getWorkNumber());
         verify(mockOpRepo).findAllByOperationTypeAndDestinationLabwareIdIn(opType, List.of(lw.getId()));
+        verify(mockWorkLinkRepo).findLinkedOperationIds(work.getId(), ops.stream().map(Operation::getId).toList());
         verify(mockLwNoteRepo).findAllByLabwareIdInAndName(List.of(lw.getId()), "run");
     }
 }
\ No newline at end of file
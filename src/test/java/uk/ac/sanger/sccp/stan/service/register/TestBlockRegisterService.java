@@ -342,9 +342,9 @@ class TestBlockRegisterService {
             Labware lw = EntityFactory.makeEmptyLabware(lt);
             lw.setExternalBarcode(xb);
             lw.setBarcode("STAN-"+i);
-            when(mockLabwareService.create(any(), any(), eqCi(xb))).thenReturn(lw);
             return lw;
         }).toArray(Labware[]::new);
+        when(mockLabwareService.createAll(any())).thenReturn(List.of(lws));
 
         final int[] idCounter = {20};
         when(mockSampleRepo.save(any())).then(invocation -> {
@@ -380,9 +380,10 @@ class TestBlockRegisterService {
 
         verify(service).createTissues(request, val);
         verify(mockOpTypeRepo).getByName(eqCi(opType.getName()));
-        for (Labware lw : lws) {
-            verify(mockLabwareService).create(lt, null, lw.getExternalBarcode());
-        }
+        verify(mockLabwareService).createAll(argThat(unsaved -> unsaved.size()==lws.length
+                && IntStream.range(0, lws.length).allMatch(i -> unsaved.get(i).getLabwareType()==lt
+                && unsaved.get(i).getBarcode()==null
+                && unsaved.get(i).getExternalBarcode().equals(lws[i].getExternalBarcode()))));
         verifyNoMoreInteractions(mockLabwareService);
         verify(mockSampleRepo, times(3)).save(any());
         Arrays.stream(lws).forEach(lw -> verify(mockEntityManager).refresh(lw));
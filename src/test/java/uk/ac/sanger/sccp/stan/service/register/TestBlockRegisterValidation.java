@@ -154,12 +154,10 @@ class TestBlockRegisterValidation {
         Species hamster = new Species(2, "Hamster");
         Species mutant = new Species(3, "Mutant");
         mutant.setEnabled(false);
-        when(mockSpeciesRepo.findByName(anyString())).thenReturn(Optional.empty());
-        Stream.of(human, hamster, mutant).forEach(s -> doReturn(Optional.of(s)).when(mockSpeciesRepo).findByName(eqCi(s.getName())));
+        when(mockSpeciesRepo.findAllByNameIn(any())).thenReturn(List.of(human, hamster, mutant));
         Donor donora = new Donor(10, "DONORA", LifeStage.adult, human);
         Donor donorb = new Donor(11, "DONORB", LifeStage.adult, human);
-        when(mockDonorRepo.findByDonorName(anyString())).thenReturn(Optional.empty());
-        Stream.of(donora, donorb).forEach(d -> doReturn(Optional.of(d)).when(mockDonorRepo).findByDonorName(eqCi(d.getDonorName())));
+        when(mockDonorRepo.findAllByDonorNameIn(any())).thenReturn(List.of(donora, donorb));
         mockStringValidator(mockDonorNameValidator, "donor name");
         BlockRegisterValidationImp val = makeVal(request);
         val.validateDonors();
@@ -178,6 +176,9 @@ class TestBlockRegisterValidation {
         assertSame(donora, val.getDonor("donorA"));
         assertSame(donorb, val.getDonor("donorb"));
         assertNotNull(val.getDonor("donor4"));
+        verify(mockSpeciesRepo).findAllByNameIn(Set.of("Human", "Humming", "Mutant", "Hamster"));
+        verify(mockDonorRepo).findAllByDonorNameIn(Set.of("DONOR!", "DONOR1", "DONOR2", "DONOR3", "DONOR4", "DONOR5", "DONORA", "DONORB"));
+        verifyNoMoreInteractions(mockSpeciesRepo, mockDonorRepo);
     }
 
     @Test
@@ -188,10 +189,9 @@ class TestBlockRegisterValidation {
                 brsForDonor("donora", "Human", LifeStage.adult)
         );
         Species human = new Species(1, "Human");
-        when(mockSpeciesRepo.findByName(eqCi(human.getName()))).thenReturn(Optional.of(human));
+        when(mockSpeciesRepo.findAllByNameIn(any())).thenReturn(List.of(human));
         Donor donora = new Donor(1, "DONORA", LifeStage.adult, human);
-        when(mockDonorRepo.findByDonorName(anyString())).thenReturn(Optional.empty());
-        doReturn(Optional.of(donora)).when(mockDonorRepo).findByDonorName(eqCi(donora.getDonorName()));
+        when(mockDonorRepo.findAllByDonorNameIn(any())).thenReturn(List.of(donora));
         BlockRegisterRequest request = toRequest(brss);
         BlockRegisterValidationImp val = makeVal(request);
         val.validateDonors();
@@ -214,8 +214,7 @@ class TestBlockRegisterValidation {
         Hmdmc hmdmc0 = new Hmdmc(10, "20/000");
         Hmdmc hmdmcX = new Hmdmc(11, "20/001");
         hmdmcX.setEnabled(false);
-        when(mockHmdmcRepo.findByHmdmc(anyString())).thenReturn(Optional.empty());
-        Stream.of(hmdmc0, hmdmcX).forEach(h -> doReturn(Optional.of(h)).when(mockHmdmcRepo).findByHmdmc(h.getHmdmc()));
+        when(mockHmdmcRepo.findAllByHmdmcIn(any())).thenReturn(List.of(hmdmc0, hmdmcX));
 
         List<BlockRegisterSample> brss = List.of(
                 brsForHmdmc(null, HUMAN_NAME),
@@ -233,13 +232,15 @@ class TestBlockRegisterValidation {
         );
         assertSame(hmdmc0, val.getHmdmc("20/000"));
         assertSame(hmdmcX, val.getHmdmc("20/001"));
+        verify(mockHmdmcRepo).findAllByHmdmcIn(Set.of("20/000", "20/001", "20/002"));
+        verifyNoMoreInteractions(mockHmdmcRepo);
     }
 
     @Test
     void testValidateHmdmcs_ok() {
         final String HUMAN_NAME = Species.HUMAN_NAME;
         Hmdmc hmdmc0 = new Hmdmc(10, "20/000");
-        when(mockHmdmcRepo.findByHmdmc(hmdmc0.getHmdmc())).thenReturn(Optional.of(hmdmc0));
+        when(mockHmdmcRepo.findAllByHmdmcIn(any())).thenReturn(List.of(hmdmc0));
 
         List<BlockRegisterSample> brss = List.of(
                 brsForHmdmc("20/000", HUMAN_NAME),
@@ -276,8 +277,7 @@ class TestBlockRegisterValidation {
         leg.setSpatialLocations(List.of(new SpatialLocation(20, "Alpha", 0, leg),
                 new SpatialLocation(21, "Beta", 1, leg)));
         leg.getSpatialLocations().getLast().setEnabled(false);
-        when(mockTtRepo.findByName(anyString())).thenReturn(Optional.empty());
-        Stream.of(tail, leg).forEach(tt -> doReturn(Optional.of(tt)).when(mockTtRepo).findByName(eqCi(tt.getName())));
+        when(mockTtRepo.findAllByNameIn(any())).thenReturn(List.of(tail, leg));
         BlockRegisterRequest request = toRequest(brss);
         BlockRegisterValidationImp val = makeVal(request);
         val.validateSpatialLocations();
@@ -289,6 +289,8 @@ class TestBlockRegisterValidation {
                 "Spatial location is disabled: 1 for tissue type Leg."
         );
         assertSame(leg.getSpatialLocations().getFirst(), val.getSpatialLocation("LEG", 0));
+        verify(mockTtRepo).findAllByNameIn(Set.of("Legg", "Tail", "Leg", "LEG"));
+        verifyNoMoreInteractions(mockTtRepo);
     }
 
     @Test
@@ -296,7 +298,7 @@ class TestBlockRegisterValidation {
         List<BlockRegisterSample> brss = List.of(brsForSL("Leg", 0));
         TissueType leg = new TissueType(1, "Leg", "Leg");
         leg.setSpatialLocations(List.of(new SpatialLocation(10, "Alpha", 0, leg)));
-        when(mockTtRepo.findByName(eqCi(leg.getName()))).thenReturn(Optional.of(leg));
+        when(mockTtRepo.findAllByNameIn(any())).thenReturn(List.of(leg));
         BlockRegisterRequest request = toRequest(brss);
         BlockRegisterValidationImp val = makeVal(request);
         val.validateSpatialLocations();
@@ -314,7 +316,7 @@ class TestBlockRegisterValidation {
     @Test
     void testValidateLabwareTypes() {
         testGeneric(EntityFactory.getTubeType(), LabwareType::getName, "labware type",
-                mockLtRepo, BlockRegisterLabware::setLabwareType, LabwareTypeRepo::findByName,
+                mockLtRepo, BlockRegisterLabware::setLabwareType, LabwareTypeRepo::findAllByNameIn,
                 BlockRegisterValidationImp::validateLabwareTypes,
                 BlockRegisterValidationImp::getLabwareType);
     }
@@ -322,7 +324,7 @@ class TestBlockRegisterValidation {
     @Test
     void testValidateMediums() {
         testGeneric(EntityFactory.getMedium(),  Medium::getName, "medium",
-                mockMediumRepo, BlockRegisterLabware::setMedium, MediumRepo::findByName,
+                mockMediumRepo, BlockRegisterLabware::setMedium, MediumRepo::findAllByNameIn,
                 BlockRegisterValidationImp::validateMediums,
                 BlockRegisterValidationImp::getMedium);
     }
@@ -330,7 +332,7 @@ class TestBlockRegisterValidation {
     @Test
     void testValidateFixatives() {
         testGeneric(EntityFactory.getFixative(), Fixative::getName, "fixative",
-                mockFixativeRepo, BlockRegisterLabware::setFixative, FixativeRepo::findByName,
+                mockFixativeRepo, BlockRegisterLabware::setFixative, FixativeRepo::findAllByNameIn,
                 BlockRegisterValidationImp::validateFixatives,
                 BlockRegisterValidationImp::getFixative);
     }
@@ -338,12 +340,12 @@ class TestBlockRegisterValidation {
     <R, E> void testGeneric(E validEntity, Function<E,String> entityNameGetter, String entityTypeName,
                             R repo,
                             BiConsumer<BlockRegisterLabware, String> nameSetter,
-                            BiFunction<R, String, Optional<E>> lkp,
+                            BiFunction<R, Collection<String>, List<E>> lkp,
                             Consumer<BlockRegisterValidationImp> valMethod,
                             BiFunction<BlockRegisterValidationImp, String, E> retriever) {
         String entityName = entityNameGetter.apply(validEntity);
-        lkp.apply(doReturn(Optional.empty()).when(repo), any());
-        lkp.apply(doReturn(Optional.of(validEntity)).when(repo), eqCi(entityName));
+        lkp.apply(doReturn(List.of()).when(repo), any());
+        lkp.apply(doReturn(List.of(validEntity)).when(repo), argThat(names -> names.contains(entityName)));
 
         BlockRegisterLabware brl = new BlockRegisterLabware();
         nameSetter.accept(brl, entityName);
@@ -369,6 +371,8 @@ class TestBlockRegisterValidation {
         val = makeVal(request);
         valMethod.accept(val);
         assertThat(val.getProblems()).containsExactly("Missing " + entityTypeName + ".");
+        lkp.apply(verify(repo, times(2)), any());
+        verifyNoMoreInteractions(repo);
     }
 
 
@@ -508,7 +512,7 @@ class TestBlockRegisterValidation {
         mockStringValidator(mockExternalNameValidator, "external name");
         mockStringValidator(mockReplicateValidator, "replicate");
         Tissue tis = tissueWithExtName("EXTB");
-        when(mockTissueRepo.findAllByExternalName(eqCi("EXTB"))).thenReturn(List.of(tis));
+        when(mockTissueRepo.findAllByExternalNameIn(any())).thenReturn(List.of(tis));
 
         var val = makeVal(request);
         val.validateNewTissues();
@@ -528,6 +532,22 @@ class TestBlockRegisterValidation {
                 "Bad replicate: R!",
                 "There is already tissue in the database with external identifier EXTB."
         );
+        verify(mockTissueRepo).findAllByExternalNameIn(Set.of("Ext1", "Ext2", "EXTB", "EXT3", "Ext3", "EXT!", "EXT4"));
+        verifyNoMoreInteractions(mockTissueRepo);
+    }
+
+    @Test
+    void testValidateNewTissues_duplicateExistingTissues() {
+        List<BlockRegisterSample> brss = List.of(brsForNewTissue("ext1", "R1", 1));
+        BlockRegisterRequest request = toRequest(brss);
+        // External names are not unique, and may differ only in case
+        when(mockTissueRepo.findAllByExternalNameIn(any())).thenReturn(List.of(tissueWithExtName("EXT1"),
+                tissueWithExtName("Ext1")));
+
+        var val = makeVal(request);
+        val.validateNewTissues();
+        assertThat(val.getProblems()).containsExactly(
+                "There is already tissue in the database with external identifier ext1.");
     }
 
     @Test
@@ -543,7 +563,7 @@ class TestBlockRegisterValidation {
         verifyNoMoreInteractions(mockReplicateValidator);
         verify(mockExternalNameValidator).validate(eq("Ext1"), any());
         verifyNoMoreInteractions(mockExternalNameValidator);
-        verify(mockTissueRepo).findAllByExternalName(eqCi("Ext1"));
+        verify(mockTissueRepo).findAllByExternalNameIn(Set.of("Ext1"));
         verifyNoMoreInteractions(mockTissueRepo);
         assertThat(val.getProblems()).isEmpty();
     }
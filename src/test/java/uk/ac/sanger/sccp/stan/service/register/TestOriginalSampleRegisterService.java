@@ -131,7 +131,7 @@ public class TestOriginalSampleRegisterService {
 
         doNothing().when(service).checkHmdmcsForSpecies(any(), any());
         doNothing().when(service).checkCollectionDates(any(), any());
-        doNothing().when(service).checkExistence(any(), any(), any(), any(), any(), any());
+        doNothing().when(service).checkExistence(any(), any(), any(), any(), any(), any(), any());
 
         doNothing().when(service).checkWorks(any(), any());
         doNothing().when(service).loadDonors(any());
@@ -178,7 +178,7 @@ public class TestOriginalSampleRegisterService {
         doNothing().when(service).checkCollectionDates(any(), any());
         doNothing().when(service).checkBioRisks(any(), any());
 
-        doNothing().when(service).checkExistence(any(), any(), any(), any(), any(), any());
+        doNothing().when(service).checkExistence(any(), any(), any(), any(), any(), any(), any());
 
         doNothing().when(service).checkWorks(any(), any());
         doNothing().when(service).loadDonors(any());
@@ -228,13 +228,13 @@ public class TestOriginalSampleRegisterService {
         ArgumentCaptor<List<DataStruct>> dataStructArgCaptor = genericCaptor(List.class);
 
         verify(service).checkCollectionDates(same(problems), same(request));
-        verify(service).checkExistence(same(problems), dataStructArgCaptor.capture(), eq("HuMFre number"), any(), any(), any());
+        verify(service).checkExistence(same(problems), dataStructArgCaptor.capture(), eq("HuMFre number"), any(), any(), any(), any());
         List<DataStruct> datas = dataStructArgCaptor.getValue();
         verify(service).checkHmdmcsForSpecies(same(problems), same(datas));
-        verify(service).checkExistence(same(problems), same(datas), eq("species"), any(), any(), any());
-        verify(service).checkExistence(same(problems), same(datas), eq("fixative"), any(), any(), any());
-        verify(service).checkExistence(same(problems), same(datas), eq("solution"), any(), any(), any());
-        verify(service).checkExistence(same(problems), same(datas), eq("labware type"), any(), any(), any());
+        verify(service).checkExistence(same(problems), same(datas), eq("species"), any(), any(), any(), any());
+        verify(service).checkExistence(same(problems), same(datas), eq("fixative"), any(), any(), any(), any());
+        verify(service).checkExistence(same(problems), same(datas), eq("solution"), any(), any(), any(), any());
+        verify(service).checkExistence(same(problems), same(datas), eq("labware type"), any(), any(), any(), any());
         verify(service).checkWorks(same(problems), same(datas));
         verify(service).loadDonors(same(datas));
         verify(service).checkDonorFieldsAreConsistent(same(problems), same(datas));
@@ -313,9 +313,13 @@ public class TestOriginalSampleRegisterService {
         BiConsumer<DataStruct, Fixative> setter = DataStruct::setFixative;
 
         List<Fixative> fixatives = List.of(new Fixative(1, "fix1"), new Fixative(2, "fix2"));
-        Function<String, Optional<Fixative>> repoFunc = string -> fixatives.stream()
-                .filter(f -> f.getName().equalsIgnoreCase(string))
-                .findAny();
+        List<Set<String>> lookups = new ArrayList<>(1);
+        Function<Set<String>, List<Fixative>> repoFunc = strings -> {
+            lookups.add(Set.copyOf(strings));
+            return fixatives.stream()
+                    .filter(f -> strings.stream().anyMatch(f.getName()::equalsIgnoreCase))
+                    .toList();
+        };
         List<String> expectedProblems;
         if (anyUnknown) {
             expectedProblems = List.of("Unknown FIELD: [FIXX]");
@@ -323,8 +327,9 @@ public class TestOriginalSampleRegisterService {
             expectedProblems = List.of();
         }
         List<String> problems = new ArrayList<>(expectedProblems.size());
-        service.checkExistence(problems, datas, "FIELD", fieldFunc, repoFunc, setter);
+        service.checkExistence(problems, datas, "FIELD", fieldFunc, repoFunc, Fixative::getName, setter);
         assertThat(problems).containsExactlyInAnyOrderElementsOf(expectedProblems);
+        assertThat(lookups).containsExactly(anyUnknown ? Set.of("FIX1", "FIX2", "FIXX") : Set.of("FIX1", "FIX2"));
         assertSame(fixatives.get(0), datas.get(0).fixative);
         assertSame(fixatives.get(1), datas.get(1).fixative);
         assertSame(fixatives.get(0), datas.get(2).fixative);
@@ -978,14 +983,13 @@ public class TestOriginalSampleRegisterService {
         datas[2].labwareType = EntityFactory.makeLabwareType(1,1);
         List<List<DataStruct>> groups = List.of(List.of(datas[0], datas[1]), List.of(datas[2]));
         Labware[] lws = Stream.of(datas[0].labwareType, datas[2].labwareType)
-                .map(lt -> {
-                    Labware lw = EntityFactory.makeEmptyLabware(lt);
-                    when(mockLabwareService.create(lt)).thenReturn(lw);
-                    return lw;
-                })
+                .map(EntityFactory::makeEmptyLabware)
                 .toArray(Labware[]::new);
+        when(mockLabwareService.createAll(any())).thenReturn(List.of(lws));
         service.createNewLabware(groups);
-        verify(mockLabwareService, times(groups.size())).create(any(LabwareType.class));
+        verify(mockLabwareService).createAll(argThat(unsaved -> unsaved.size()==lws.length
+                && unsaved.get(0).getLabwareType()==datas[0].labwareType
+                && unsaved.get(1).getLabwareType()==datas[2].labwareType));
         for (int i = 0; i < groups.size(); ++i) {
             List<DataStruct> group = groups.get(i);
             for (DataStruct data : group) {
@@ -997,8 +1001,8 @@ public class TestOriginalSampleRegisterService {
             } else {
                 assertThat(slot.getSamples()).containsExactly(samples[2]);
             }
-            verify(mockSlotRepo).save(slot);
         }
+        verify(mockSlotRepo).saveAll(List.of(lws[0].getFirstSlot(), lws[1].getFirstSlot()));
     }
 
     @Test
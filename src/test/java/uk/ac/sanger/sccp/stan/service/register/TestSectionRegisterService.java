@@ -255,23 +255,44 @@ public class TestSectionRegisterService {
         List<SectionRegisterLabware> srls = labware.stream()
                 .map(lw -> new SectionRegisterLabware(lw.getExternalBarcode(), lt.getName(), null))
                 .collect(toList());
+        List<Labware> unsaved = srls.stream()
+                .map(srl -> LabwareService.newLabware(lt, null, srl.getExternalBarcode()))
+                .collect(toList());
 
         UCMap<LabwareType> lwTypes = UCMap.from(LabwareType::getName, lt);
         UCMap<Sample> sampleMap = UCMap.from(sam -> sam.getTissue().getExternalName(), EntityFactory.getSample());
-        IntStream.range(0,2).forEach(i -> doReturn(labware.get(i)).when(regService).createLabware(srls.get(i), lwTypes, sampleMap));
+        IntStream.range(0,2).forEach(i -> {
+            doReturn(unsaved.get(i)).when(regService).unsavedLabware(srls.get(i), lwTypes);
+            doReturn(List.of(labware.get(i).getFirstSlot())).when(regService).fillLabware(srls.get(i), labware.get(i), sampleMap);
+        });
+        when(mockLwService.createAll(any())).thenReturn(labware);
 
         UCMap<Labware> lwMap = regService.createAllLabware(new SectionRegisterRequest(srls, "SGP1"), lwTypes, sampleMap);
 
-        srls.forEach(srl -> verify(regService).createLabware(srl, lwTypes, sampleMap));
+        verify(mockLwService).createAll(unsaved);
+        verify(mockSlotRepo).saveAll(List.of(labware.get(0).getFirstSlot(), labware.get(1).getFirstSlot()));
         assertEquals(UCMap.from(labware, Labware::getExternalBarcode), lwMap);
     }
 
     @ParameterizedTest
     @ValueSource(booleans = {false, true})
-    public void testCreateLabware(boolean prebarcode) {
+    public void testUnsavedLabware(boolean prebarcode) {
         LabwareType lt = EntityFactory.makeLabwareType(2, 2);
         lt.setPrebarcoded(prebarcode);
         UCMap<LabwareType> ltMap = UCMap.from(LabwareType::getName, lt);
+        SectionRegisterLabware srl = new SectionRegisterLabware("ext1", lt.getName(), List.of());
+
+        Labware lw = regService.unsavedLabware(srl, ltMap);
+
+        assertNull(lw.getId());
+        assertSame(lt, lw.getLabwareType());
+        assertEquals("EXT1", lw.getExternalBarcode());
+        assertEquals(prebarcode ? "EXT1" : null, lw.getBarcode());
+    }
+
+    @Test
+    public void testFillLabware() {
+        LabwareType lt = EntityFactory.makeLabwareType(2, 2);
         Tissue tissue1 = EntityFactory.getTissue();
         Tissue tissue2 = EntityFactory.makeTissue(tissue1.getDonor(), tissue1.getSpatialLocation());
         Tissue tissue3 = EntityFactory.makeTissue(tissue1.getDonor(), tissue1.getSpatialLocation());
@@ -282,7 +303,6 @@ public class TestSectionRegisterService {
         String xb = "EXT1";
         Labware lw = EntityFactory.makeEmptyLabware(lt);
         lw.setExternalBarcode(xb);
-        when(mockLwService.create(any(), any(), any())).thenReturn(lw);
         final Address A1 = new Address(1, 1);
         final Address B2 = new Address(2,2);
         SectionRegisterLabware srl = new SectionRegisterLabware(xb, lt.getName(), List.of(
@@ -291,14 +311,10 @@ public class TestSectionRegisterService {
                 content(B2, tissue3.getExternalName())
         ));
 
-        Labware result = regService.createLabware(srl, ltMap, UCMap.from(sam -> sam.getTissue().getExternalName(), sample1, sample2, sample3));
-
-        verify(mockLwService).create(lt, prebarcode ? xb : null, xb);
-
-        verify(mockSlotRepo, times(2)).saveAll(List.of(lw.getSlot(A1)));
-        verify(mockSlotRepo).saveAll(List.of(lw.getSlot(B2)));
+        List<Slot> filled = regService.fillLabware(srl, lw, UCMap.from(sam -> sam.getTissue().getExternalName(), sample1, sample2, sample3));
 
-        assertEquals(lw, result);
+        assertThat(filled).containsExactly(lw.getSlot(A1), lw.getSlot(A1), lw.getSlot(B2));
+        verifyNoInteractions(mockSlotRepo);
         assertThat(lw.getSlot(A1).getSamples()).containsExactlyInAnyOrder(sample1, sample2);
         assertThat(lw.getSlot(B2).getSamples()).containsExactly(sample3);
         assertThat(lw.getSlot(new Address(1,2)).getSamples()).isEmpty();
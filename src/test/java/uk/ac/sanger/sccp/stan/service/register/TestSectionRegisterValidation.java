@@ -413,6 +413,28 @@ public class TestSectionRegisterValidation {
         assertThat(validation.getProblems()).containsExactlyInAnyOrderElementsOf(nullToEmpty(expectedProblems));
     }
 
+    @Test
+    public void testValidateBarcodes_used() {
+        SectionRegisterRequest request = new SectionRegisterRequest(Stream.of("Alpha", "Beta", "Gamma")
+                .map(bc -> new SectionRegisterLabware(bc, "Xenium", null))
+                .collect(toList()), "SGP1");
+        request.getLabware().get(1).setPreBarcode("Delta");
+        mockValidator(mockExternalBarcodeValidation);
+        mockValidator(mockXeniumBarcodeValidator);
+        when(mockLwRepo.findExternalBarcodesIn(any())).thenReturn(Set.of("alpha"));
+        when(mockLwRepo.findBarcodesByBarcodeIn(any())).thenReturn(Set.of("DELTA"));
+        LabwareType xeniumLt = new LabwareType(3, "Xenium", 1, 1, null, true);
+
+        SectionRegisterValidation validation = makeValidation(request);
+        validation.validateBarcodes(UCMap.from(LabwareType::getName, xeniumLt));
+        assertThat(validation.getProblems()).containsExactlyInAnyOrder(
+                "External barcode already used: [Alpha]", "Labware barcode already used: [Delta]");
+        Set<String> expectedBarcodes = Set.of("ALPHA", "BETA", "GAMMA", "DELTA");
+        verify(mockLwRepo).findExternalBarcodesIn(expectedBarcodes);
+        verify(mockLwRepo).findBarcodesByBarcodeIn(expectedBarcodes);
+        verifyNoMoreInteractions(mockLwRepo);
+    }
+
     static Stream<Arguments> validateBarcodesArgs() {
         LabwareType normalLt = new LabwareType(1, "lt", 1, 1, null, false);
         LabwareType visiumLt = new LabwareType(2, "Visium LP", 1, 1, null, true);
@@ -472,16 +494,19 @@ public class TestSectionRegisterValidation {
     })
     public void testFindBarcodeProblem(String barcode, String mode, String expectedProblem) {
         Set<String> seen = new HashSet<>(1);
+        Set<String> usedExternal = new HashSet<>(1);
+        Set<String> used = new HashSet<>(1);
         if (mode!=null) {
             String upper = barcode.toUpperCase();
             switch (mode) {
                 case "seen": seen.add(upper); break;
-                case "existsExternal": when(mockLwRepo.existsByExternalBarcode(upper)).thenReturn(true); break;
-                case "exists": when(mockLwRepo.existsByBarcode(upper)).thenReturn(true); break;
+                case "existsExternal": usedExternal.add(upper); break;
+                case "exists": used.add(upper); break;
             }
         }
         SectionRegisterValidation validation = makeValidation(null);
-        assertEquals(expectedProblem, validation.findBarcodeProblem(barcode, seen));
+        assertEquals(expectedProblem, validation.findBarcodeProblem(barcode, seen, usedExternal, used));
+        verifyNoInteractions(mockLwRepo);
     }
 
     @ParameterizedTest
@@ -0,0 +1,92 @@
+package uk.ac.sanger.sccp.stan.service.register.filereader;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.sanger.sccp.stan.request.register.BlockRegisterRequest;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static uk.ac.sanger.sccp.stan.service.register.filereader.TestStreamingSheetReader.*;
+
+/**
+ * Reads a synthetic 10k-row block registration file by loading the workbook and by streaming it,
+ * and logs the time taken, the memory allocated, and the heap retained by the loaded workbook.
+ * @author dr6
+ */
+@Tag("benchmark")
+public class TestRegisterFileReaderBenchmark {
+    private static final int NUM_ROWS = 10_000;
+
+    private final Logger log = LoggerFactory.getLogger(TestRegisterFileReaderBenchmark.class);
+
+    @Test
+    public void testReadLargeFile() throws Exception {
+        byte[] data = makeFile(NUM_ROWS);
+        BlockRegisterFileReaderImp reader = new BlockRegisterFileReaderImp();
+        byte[] warmup = makeFile(100);
+        readLoaded(warmup, reader);
+        reader.readStreaming(new ByteArrayInputStream(warmup));
+
+        Measurement loaded = measure(() -> readLoaded(data, reader));
+        Measurement streamed = measure(() -> reader.readStreaming(new ByteArrayInputStream(data)));
+
+        long retained;
+        long before = usedHeap();
+        try (Workbook wb = WorkbookFactory.create(new ByteArrayInputStream(data))) {
+            retained = usedHeap() - before;
+            assertThat(wb.getSheetAt(BlockRegisterFileReader.SHEET_INDEX).getLastRowNum()).isEqualTo(NUM_ROWS + 2);
+        }
+
+        log.info("Loaded {} rows ({} KB file) in {} ms, allocating {} MB; the loaded workbook retains {} MB",
+                NUM_ROWS, data.length / 1024, loaded.millis, loaded.allocated >> 20, retained >> 20);
+        log.info("Streamed {} rows in {} ms, allocating {} MB", NUM_ROWS, streamed.millis, streamed.allocated >> 20);
+
+        assertEquals(loaded.result, streamed.result);
+        assertThat(((BlockRegisterRequest) streamed.result).getLabware()).hasSize(NUM_ROWS);
+        assertThat(streamed.allocated).isLessThan(loaded.allocated);
+    }
+
+    record Measurement(Object result, long millis, long allocated) {}
+
+    static Measurement measure(Callable<?> callable) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        Object result = callable.call();
+        long nanos = System.nanoTime() - start;
+        return new Measurement(result, nanos / 1_000_000, threads.getCurrentThreadAllocatedBytes() - allocatedBefore);
+    }
+
+    static BlockRegisterRequest readLoaded(byte[] data, BlockRegisterFileReaderImp reader) throws IOException {
+        try (Workbook wb = WorkbookFactory.create(new ByteArrayInputStream(data))) {
+            return reader.read(wb.getSheetAt(BlockRegisterFileReader.SHEET_INDEX));
+        }
+    }
+
+    static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    static byte[] makeFile(int numRows) throws IOException {
+        try (SXSSFWorkbook wb = new SXSSFWorkbook()) {
+            populateBlockSheets(wb, true);
+            Sheet sheet = wb.getSheetAt(BlockRegisterFileReader.SHEET_INDEX);
+            for (int i = 0; i < numRows; ++i) {
+                setBlockRow(sheet.createRow(3 + i), i);
+            }
+            byte[] data = toBytes(wb);
+            wb.dispose();
+            return data;
+        }
+    }
+}
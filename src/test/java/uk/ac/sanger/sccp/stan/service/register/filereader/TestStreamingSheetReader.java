@@ -0,0 +1,240 @@
+package uk.ac.sanger.sccp.stan.service.register.filereader;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.web.MockMultipartFile;
+import uk.ac.sanger.sccp.stan.service.ValidationException;
+import uk.ac.sanger.sccp.stan.service.register.filereader.BlockRegisterFileReader.Column;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests {@link StreamingSheetReader} and the streamed reading in {@link BaseRegisterFileReader},
+ * checking that it gives the same results as reading a loaded workbook.
+ */
+class TestStreamingSheetReader {
+    /** The outcome of reading a file: either a request or the problems found */
+    record Outcome(Object request, Collection<?> problems) {}
+
+    static Outcome readLoaded(BaseRegisterFileReader<?, ?> reader, byte[] data) throws IOException {
+        try (Workbook wb = WorkbookFactory.create(new ByteArrayInputStream(data))) {
+            return new Outcome(reader.read(wb.getSheetAt(reader.sheetIndex)), null);
+        } catch (ValidationException e) {
+            return new Outcome(null, List.copyOf(e.getProblems()));
+        }
+    }
+
+    static Outcome readStreamed(BaseRegisterFileReader<?, ?> reader, byte[] data) throws IOException {
+        try {
+            return new Outcome(reader.readStreaming(new ByteArrayInputStream(data)), null);
+        } catch (ValidationException e) {
+            return new Outcome(null, List.copyOf(e.getProblems()));
+        }
+    }
+
+    static byte[] resource(String path) throws IOException {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    static byte[] toBytes(Workbook wb) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        wb.write(out);
+        return out.toByteArray();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings={"block_reg", "block_reg_existing", "reg_empty", "section_reg"})
+    void testTestDataFiles(String name) throws IOException {
+        BaseRegisterFileReader<?, ?> reader = (name.startsWith("section") ? new SectionRegisterFileReaderImp()
+                : new BlockRegisterFileReaderImp());
+        byte[] data = resource("testdata/" + name + ".xlsx");
+        Outcome streamed = readStreamed(reader, data);
+        assertEquals(readLoaded(reader, data), streamed);
+        if (name.startsWith("section")) {
+            assertNotNull(streamed.request());
+        }
+    }
+
+    @Test
+    void testReadMultipartFile() throws IOException {
+        byte[] data = resource("testdata/section_reg.xlsx");
+        SectionRegisterFileReaderImp reader = new SectionRegisterFileReaderImp();
+        Object request = reader.read(new MockMultipartFile("file", "section_reg.xlsx", null, data));
+        assertNotNull(request);
+        assertEquals(readLoaded(reader, data).request(), request);
+    }
+
+    @Test
+    void testReadFile(@TempDir Path tempDir) throws IOException {
+        byte[] data = resource("testdata/section_reg.xlsx");
+        Path file = tempDir.resolve("section_reg.xlsx");
+        Files.write(file, data);
+        List<Integer> fromFile = new ArrayList<>();
+        List<Integer> fromStream = new ArrayList<>();
+        StreamingSheetReader.read(file, SectionRegisterFileReader.SHEET_INDEX, (rowIndex, cells) -> fromFile.add(rowIndex));
+        StreamingSheetReader.read(new ByteArrayInputStream(data), SectionRegisterFileReader.SHEET_INDEX,
+                (rowIndex, cells) -> fromStream.add(rowIndex));
+        assertThat(fromFile).isNotEmpty().isEqualTo(fromStream);
+        // The file is only read, not rewritten
+        assertArrayEquals(data, Files.readAllBytes(file));
+    }
+
+    @Test
+    void testMissingSheet() throws IOException {
+        byte[] data;
+        try (Workbook wb = new XSSFWorkbook()) {
+            wb.createSheet("Only");
+            data = toBytes(wb);
+        }
+        ValidationException ex = assertThrows(ValidationException.class,
+                () -> new BlockRegisterFileReaderImp().readStreaming(new ByteArrayInputStream(data)));
+        assertEquals(List.of("Workbook does not have a worksheet at index 2"), List.copyOf(ex.getProblems()));
+    }
+
+    @Test
+    void testMissingHeadings() throws IOException {
+        Outcome outcome = readStreamed(new BlockRegisterFileReaderImp(), blockWorkbook(false, wb -> {}));
+        assertThat(outcome.problems()).hasSize(1);
+        assertThat((String) outcome.problems().iterator().next()).startsWith("Missing columns: ");
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans={false,true})
+    void testCellTypes(boolean valid) throws IOException {
+        byte[] data = blockWorkbook(true, wb -> {
+            Sheet sheet = wb.getSheetAt(2);
+            CellStyle dateStyle = wb.createCellStyle();
+            dateStyle.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("dd/mm/yyyy"));
+            for (int i = 0; i < 4; ++i) {
+                Row row = sheet.createRow(3 + i);
+                setBlockRow(row, i);
+                Cell dateCell = row.getCell(Column.Collection_date.ordinal());
+                if (i%2==0) {
+                    dateCell.setCellValue(LocalDateTime.of(2021, 3, 4 + i, 0, 0));
+                    dateCell.setCellStyle(dateStyle);
+                } else {
+                    dateCell.setCellValue("0"+(4+i)+"/03/2021");
+                }
+                row.getCell(Column.Spatial_location.ordinal()).setCellFormula("1+" + i);
+                row.getCell(Column.Replicate_number.ordinal()).setCellValue(i + 1);
+                row.getCell(Column.Fixative.ordinal()).setBlank();
+            }
+            if (!valid) {
+                Row row = sheet.getRow(4);
+                row.getCell(Column.Last_known_section.ordinal()).setCellValue(2.5);
+                row.getCell(Column.Replicate_number.ordinal()).setCellValue(1.5);
+                row.getCell(Column.Collection_date.ordinal()).setCellValue("March");
+                sheet.getRow(5).getCell(Column.Spatial_location.ordinal()).setCellFormula("\"x\"&1");
+            }
+            wb.getCreationHelper().createFormulaEvaluator().evaluateAll();
+        });
+        BlockRegisterFileReaderImp reader = new BlockRegisterFileReaderImp();
+        Outcome streamed = readStreamed(reader, data);
+        assertEquals(readLoaded(reader, data), streamed);
+        if (valid) {
+            assertNotNull(streamed.request());
+        } else {
+            assertThat(streamed.problems()).hasSize(4);
+        }
+    }
+
+    @Test
+    void testInlineStrings() throws IOException {
+        byte[] data;
+        try (SXSSFWorkbook wb = new SXSSFWorkbook()) {
+            populateBlockSheets(wb, true);
+            Sheet sheet = wb.getSheetAt(2);
+            for (int i = 0; i < 3; ++i) {
+                setBlockRow(sheet.createRow(3 + i), i);
+            }
+            data = toBytes(wb);
+            wb.dispose();
+        }
+        BlockRegisterFileReaderImp reader = new BlockRegisterFileReaderImp();
+        Outcome streamed = readStreamed(reader, data);
+        assertNotNull(streamed.request());
+        assertEquals(readLoaded(reader, data), streamed);
+    }
+
+    @Test
+    void testSheetCell() {
+        SheetCell numeric = new SheetCell(0, "A1", CellType.NUMERIC, CellType.NUMERIC, null, 44197.0, false);
+        assertEquals(44197.0, numeric.getNumericCellValue());
+        assertEquals(LocalDate.of(2021, 1, 1), numeric.getLocalDateTimeCellValue().toLocalDate());
+        assertEquals("Cannot get a STRING value from a NUMERIC cell",
+                assertThrows(IllegalStateException.class, numeric::getStringCellValue).getMessage());
+        SheetCell formula = new SheetCell(1, "B1", CellType.FORMULA, CellType.STRING, "x", 0.0, false);
+        assertEquals("x", formula.getStringCellValue());
+        assertEquals("Cannot get a NUMERIC value from a STRING cell",
+                assertThrows(IllegalStateException.class, formula::getNumericCellValue).getMessage());
+        SheetCell blank = new SheetCell(2, "C1", CellType.BLANK, CellType.BLANK, null, 0.0, false);
+        assertEquals("", blank.getStringCellValue());
+        assertNull(blank.getLocalDateTimeCellValue());
+    }
+
+    /** Sets the cells of a row with valid block registration values */
+    static void setBlockRow(Row row, int i) {
+        for (Column column : Column.values()) {
+            Cell cell = row.createCell(column.ordinal());
+            switch (column) {
+                case Work_number -> cell.setCellValue("SGP1");
+                case Donor_identifier -> cell.setCellValue("DONOR" + i);
+                case Life_stage -> cell.setCellValue("adult");
+                case Collection_date -> cell.setCellValue("01/02/2020");
+                case Species -> cell.setCellValue("Human");
+                case Cell_class -> cell.setCellValue("tissue");
+                case Bio_risk -> cell.setCellValue("biorisk1");
+                case HuMFre -> cell.setCellValue("HuMFre1");
+                case Slot_address -> cell.setCellValue("A1");
+                case Tissue_type -> cell.setCellValue("Bone");
+                case External_identifier -> cell.setCellValue("EXT" + i);
+                case Spatial_location -> cell.setCellValue(1);
+                case Replicate_number -> cell.setCellValue("1");
+                case Last_known_section -> cell.setCellValue(5);
+                case Labware_type -> cell.setCellValue("Proviasette");
+                case Fixative -> cell.setCellValue("None");
+                case Embedding_medium -> cell.setCellValue("OCT");
+                case External_barcode -> cell.setCellValue("XB" + i);
+                default -> cell.setBlank();
+            }
+        }
+    }
+
+    /** Creates the sheets of a block registration workbook, optionally with headings */
+    static void populateBlockSheets(Workbook wb, boolean headings) {
+        for (int i = 0; i <= BlockRegisterFileReader.SHEET_INDEX; ++i) {
+            wb.createSheet("Sheet" + i);
+        }
+        if (headings) {
+            Row headingRow = wb.getSheetAt(BlockRegisterFileReader.SHEET_INDEX).createRow(1);
+            for (Column column : Column.values()) {
+                headingRow.createCell(column.ordinal())
+                        .setCellValue(column==Column._preamble ? "Mandatory fields" : column.toString());
+            }
+        }
+    }
+
+    static byte[] blockWorkbook(boolean headings, java.util.function.Consumer<Workbook> populate) throws IOException {
+        try (Workbook wb = new XSSFWorkbook()) {
+            populateBlockSheets(wb, headings);
+            populate.accept(wb);
+            return toBytes(wb);
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package uk.ac.sanger.sccp.stan.service.releasefile;
 
 import org.junit.jupiter.api.BeforeEach;
-import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import uk.ac.sanger.sccp.stan.EntityFactory;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.repo.ActionRepo;
+import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.Mode;
 import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.SlotSample;
 
 import java.util.*;
@@ -12,9 +14,9 @@ import java.util.*;
 import static java.util.stream.Collectors.toList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyCollection;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 /**
  * Test {@link Ancestoriser}
@@ -36,7 +38,6 @@ public class TestAncestoriser {
     @BeforeEach
     void setup() {
         mockActionRepo = mock(ActionRepo.class);
-        ancestoriser = new Ancestoriser(mockActionRepo);
         lt = EntityFactory.getTubeType();
         user = EntityFactory.getUser();
 
@@ -56,8 +57,10 @@ public class TestAncestoriser {
         sampleB1b = new Sample(6, "1", tissue2, bs2);
     }
 
-    @Test
-    public void testFindAncestry() {
+    @ParameterizedTest
+    @EnumSource(Mode.class)
+    public void testFindAncestry(Mode mode) {
+        ancestoriser = new Ancestoriser(mockActionRepo, mode);
         Labware lw = EntityFactory.makeLabware(lt, sample);
         Labware lw1 = EntityFactory.makeLabware(lt, sample1);
         Labware lw2 = EntityFactory.makeLabware(lt, sample2);
@@ -87,13 +90,30 @@ public class TestAncestoriser {
                     .filter(ac -> slots.contains(ac.getDestination()))
                     .collect(toList());
         });
+        // The lineage table may return more actions than necessary
+        when(mockActionRepo.findAllAncestralActions(any(), any())).thenReturn(actions);
+        when(mockActionRepo.findAllAncestralActionsRecursive(any(), any())).thenReturn(actions);
 
         var ancestry = ancestoriser.findAncestry(makeSlotSamples(
                 lwB1, sampleB1b,
                 lw3, sample2,
                 lw3, sample
         ));
-
+        final Set<Integer> slotIds = Set.of(lwB1.getFirstSlot().getId(), lw3.getFirstSlot().getId());
+        final Set<Integer> sampleIds = Set.of(sampleB1b.getId(), sample2.getId(), sample.getId());
+        if (mode==Mode.CLOSURE) {
+            verify(mockActionRepo).findAllAncestralActions(slotIds, sampleIds);
+        } else {
+            verify(mockActionRepo, never()).findAllAncestralActions(any(), any());
+        }
+        if (mode==Mode.RECURSIVE) {
+            verify(mockActionRepo).findAllAncestralActionsRecursive(slotIds, sampleIds);
+        } else {
+            verify(mockActionRepo, never()).findAllAncestralActionsRecursive(any(), any());
+        }
+        if (mode!=Mode.ITERATIVE) {
+            verify(mockActionRepo, never()).findAllByDestinationIn(any());
+        }
 
         Object[][] expectedData = {
                 { lwB1, sampleB1b, lwB1, sampleB1 },
@@ -131,8 +151,10 @@ public class TestAncestoriser {
                         slotSample(lw2beta, sample2), slotSample(lw, sample));
     }
 
-    @Test
-    public void testFindPosterity() {
+    @ParameterizedTest
+    @EnumSource(Mode.class)
+    public void testFindPosterity(Mode mode) {
+        ancestoriser = new Ancestoriser(mockActionRepo, mode);
         Labware lw = EntityFactory.makeLabware(lt, sample);
         Labware lw1 = EntityFactory.makeLabware(lt, sample1);
         Labware lw2 = EntityFactory.makeLabware(lt, sample2);
@@ -162,12 +184,28 @@ public class TestAncestoriser {
                     .filter(ac -> slots.contains(ac.getSource()))
                     .collect(toList());
         });
+        when(mockActionRepo.findAllDescendantActions(any(), any())).thenReturn(actions);
+        when(mockActionRepo.findAllDescendantActionsRecursive(any(), any())).thenReturn(actions);
 
         var posterity = ancestoriser.findPosterity(makeSlotSamples(
                 lw, sample,
                 lwB, sampleB
         ));
-
+        final Set<Integer> slotIds = Set.of(lw.getFirstSlot().getId(), lwB.getFirstSlot().getId());
+        final Set<Integer> sampleIds = Set.of(sample.getId(), sampleB.getId());
+        if (mode==Mode.CLOSURE) {
+            verify(mockActionRepo).findAllDescendantActions(slotIds, sampleIds);
+        } else {
+            verify(mockActionRepo, never()).findAllDescendantActions(any(), any());
+        }
+        if (mode==Mode.RECURSIVE) {
+            verify(mockActionRepo).findAllDescendantActionsRecursive(slotIds, sampleIds);
+        } else {
+            verify(mockActionRepo, never()).findAllDescendantActionsRecursive(any(), any());
+        }
+        if (mode!=Mode.ITERATIVE) {
+            verify(mockActionRepo, never()).findAllBySourceIn(any());
+        }
         Object[][] expectedData = {
                 { lw, sample, lw1, sample1, lw2, sample2, lw2beta, sample2, lw3, sample },
                 { lw1, sample1, lw3, sample1 },
@@ -0,0 +1,147 @@
+package uk.ac.sanger.sccp.stan.service.releasefile;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.sanger.sccp.stan.EntityFactory;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.ActionRepo;
+import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.*;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares the ancestoriser modes on a synthetic deep lineage:
+ * checks that they give the same results and counts the database round trips each one makes.
+ * @author dr6
+ */
+@Tag("benchmark")
+public class TestAncestoriserBenchmark {
+    private static final int NUM_SEEDS = 10_000;
+    private static final int GENERATIONS = 21;
+
+    private final Logger log = LoggerFactory.getLogger(TestAncestoriserBenchmark.class);
+
+    private ActionRepo mockActionRepo;
+    private AtomicInteger roundTrips;
+    private List<Action> actions;
+    private List<SlotSample> seeds;
+    private List<SlotSample> roots;
+
+    @BeforeEach
+    void setup() {
+        Tissue tissue = EntityFactory.getTissue();
+        BioState bs = EntityFactory.getBioState();
+        Sample[] samples = new Sample[NUM_SEEDS];
+        for (int i = 0; i < NUM_SEEDS; ++i) {
+            samples[i] = new Sample(i+1, null, tissue, bs);
+        }
+        Slot[] previous = null;
+        actions = new ArrayList<>(NUM_SEEDS * (GENERATIONS + GENERATIONS/10 + 1));
+        int actionId = 0;
+        int slotId = 0;
+        for (int gen = 0; gen <= GENERATIONS; ++gen) {
+            Slot[] current = new Slot[NUM_SEEDS];
+            for (int i = 0; i < NUM_SEEDS; ++i) {
+                current[i] = new Slot(++slotId, slotId, new Address(1,1), new ArrayList<>(List.of(samples[i])));
+                if (previous!=null) {
+                    actions.add(new Action(++actionId, gen, previous[i], current[i], samples[i], samples[i]));
+                    if (i%10==0) {
+                        // Some slots are pooled from a neighbour
+                        int j = (i+1)%NUM_SEEDS;
+                        actions.add(new Action(++actionId, gen, previous[j], current[i], samples[i], samples[j]));
+                    }
+                }
+            }
+            if (gen==0) {
+                roots = Arrays.stream(current).map(slot -> new SlotSample(slot, slot.getSamples().get(0))).collect(toList());
+            }
+            previous = current;
+        }
+        seeds = Arrays.stream(previous).map(slot -> new SlotSample(slot, slot.getSamples().get(0))).collect(toList());
+
+        roundTrips = new AtomicInteger();
+        mockActionRepo = mock(ActionRepo.class);
+        Map<Integer, List<Action>> destActions = new HashMap<>();
+        Map<Integer, List<Action>> sourceActions = new HashMap<>();
+        for (Action action : actions) {
+            destActions.computeIfAbsent(action.getDestination().getId(), k -> new ArrayList<>()).add(action);
+            sourceActions.computeIfAbsent(action.getSource().getId(), k -> new ArrayList<>()).add(action);
+        }
+        when(mockActionRepo.findAllByDestinationIn(anyCollection())).then(invocation -> {
+            roundTrips.incrementAndGet();
+            Collection<Slot> slots = invocation.getArgument(0);
+            return slots.stream().flatMap(slot -> destActions.getOrDefault(slot.getId(), List.of()).stream()).collect(toList());
+        });
+        when(mockActionRepo.findAllBySourceIn(anyCollection())).then(invocation -> {
+            roundTrips.incrementAndGet();
+            Collection<Slot> slots = invocation.getArgument(0);
+            return slots.stream().flatMap(slot -> sourceActions.getOrDefault(slot.getId(), List.of()).stream()).collect(toList());
+        });
+        when(mockActionRepo.findAllAncestralActionsRecursive(any(), any())).then(invocation -> {
+            roundTrips.incrementAndGet();
+            return actions;
+        });
+        when(mockActionRepo.findAllDescendantActionsRecursive(any(), any())).then(invocation -> {
+            roundTrips.incrementAndGet();
+            return actions;
+        });
+    }
+
+    @Test
+    public void testAncestryRoundTrips() {
+        Ancestry iterative = timeAncestry(Mode.ITERATIVE);
+        assertEquals(GENERATIONS + 1, roundTrips.get());
+        roundTrips.set(0);
+        Ancestry recursive = timeAncestry(Mode.RECURSIVE);
+        assertEquals(1, roundTrips.get());
+
+        assertEquals(iterative.keySet(), recursive.keySet());
+        for (SlotSample key : iterative.keySet()) {
+            assertEquals(iterative.get(key), recursive.get(key));
+        }
+        assertThat(recursive.getRoots(seeds.get(0))).containsExactlyInAnyOrder(roots.get(0), roots.get(1));
+    }
+
+    @Test
+    public void testPosterityRoundTrips() {
+        Posterity iterative = timePosterity(Mode.ITERATIVE);
+        assertEquals(GENERATIONS + 1, roundTrips.get());
+        roundTrips.set(0);
+        Posterity recursive = timePosterity(Mode.RECURSIVE);
+        assertEquals(1, roundTrips.get());
+
+        assertEquals(iterative.keySet(), recursive.keySet());
+        for (SlotSample key : iterative.keySet()) {
+            assertEquals(iterative.get(key), recursive.get(key));
+        }
+        assertEquals(new HashSet<>(seeds), recursive.getLeafs());
+    }
+
+    private Ancestry timeAncestry(Mode mode) {
+        Ancestoriser ancestoriser = new Ancestoriser(mockActionRepo, mode);
+        long start = System.nanoTime();
+        Ancestry ancestry = ancestoriser.findAncestry(seeds);
+        log.info("Ancestry in {} mode: {} round trips, {} ms", mode, roundTrips.get(), (System.nanoTime()-start)/1_000_000);
+        return ancestry;
+    }
+
+    private Posterity timePosterity(Mode mode) {
+        Ancestoriser ancestoriser = new Ancestoriser(mockActionRepo, mode);
+        long start = System.nanoTime();
+        Posterity posterity = ancestoriser.findPosterity(roots);
+        log.info("Posterity in {} mode: {} round trips, {} ms", mode, roundTrips.get(), (System.nanoTime()-start)/1_000_000);
+        return posterity;
+    }
+}
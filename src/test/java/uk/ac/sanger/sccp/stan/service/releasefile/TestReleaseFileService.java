@@ -6,18 +6,23 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.*;
 import uk.ac.sanger.sccp.stan.EntityFactory;
+import uk.ac.sanger.sccp.stan.Transactor;
 import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.repo.*;
 import uk.ac.sanger.sccp.stan.request.FlagDetail;
 import uk.ac.sanger.sccp.stan.service.flag.FlagLookupService;
 import uk.ac.sanger.sccp.stan.service.history.ReagentActionDetailService;
 import uk.ac.sanger.sccp.stan.service.history.ReagentActionDetailService.ReagentActionDetail;
+import uk.ac.sanger.sccp.stan.service.load.LoaderExecutor;
 import uk.ac.sanger.sccp.stan.service.operation.AnalyserServiceImp;
 import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.Ancestry;
 import uk.ac.sanger.sccp.stan.service.releasefile.Ancestoriser.SlotSample;
 import uk.ac.sanger.sccp.stan.service.releasefile.ReleaseFileService.StorageDetail;
+import uk.ac.sanger.sccp.utils.tsv.TableSpool;
 
+import javax.persistence.EntityManager;
 import javax.persistence.EntityNotFoundException;
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
@@ -58,6 +63,8 @@ public class TestReleaseFileService {
 
     ReagentActionDetailService mockRadService;
     FlagLookupService mockFlagLookupService;
+    EntityManager mockEntityManager;
+    Transactor mockTransactor;
 
     ReleaseFileService service;
 
@@ -90,11 +97,14 @@ public class TestReleaseFileService {
         mockOpSolRepo = mock(OperationSolutionRepo.class);
         mockRoRepo = mock(ResultOpRepo.class);
         mockFlagLookupService = mock(FlagLookupService.class);
+        mockEntityManager = mock(EntityManager.class);
+        mockTransactor = mock(Transactor.class);
 
         service = spy(new ReleaseFileService(mockAncestoriser, mockSampleRepo, mockLabwareRepo, mockMeasurementRepo,
                 mockSnapshotRepo, mockReleaseRepo, mockOpTypeRepo, mockOpRepo, mockLwNoteRepo, mockStainTypeRepo,
                 mockSamplePositionRepo, mockOpComRepo, mockLwProbeRepo, mockRoiRepo, mockRadService, mockSolutionRepo,
-                mockOpSolRepo, mockRoRepo, mockFlagLookupService));
+                mockOpSolRepo, mockRoRepo, mockFlagLookupService, mockEntityManager,
+                mockTransactor, new LoaderExecutor(0, "release-loader-")));
 
         user = EntityFactory.getUser();
         destination = new ReleaseDestination(50, "Venus");
@@ -190,17 +200,51 @@ public class TestReleaseFileService {
         ReleaseFileMode mode = ReleaseFileMode.NORMAL;
         Set<ReleaseFileMode> modes = EnumSet.of(mode);
         doReturn(modes).when(service).checkModes(any());
+        Set<Integer> ancestorSlotIds = ReleaseFileService.ancestorSlotIds(ancestry);
+        Set<Integer> ancestorLabwareIds = ReleaseFileService.ancestorLabwareIds(ancestry);
+        Set<Integer> labwareIds = entries.stream().map(e -> e.getLabware().getId()).collect(toSet());
+        Map<Integer, String> barcodes = Map.of(lw1.getId(), lw1.getBarcode());
+        Map<Integer, Labware> lwMap = Map.of(lw1.getId(), lw1);
+        var measurementData = new ReleaseFileService.MeasurementData(Map.of(), Map.of(), Map.of(), Map.of(), Map.of(), Map.of());
+        var sectionDateData = new ReleaseFileService.SectionDateData(Map.of(), Map.of());
+        var stainData = new ReleaseFileService.StainData(Map.of(), Map.of(), Map.of(), Map.of(), Map.of(), null);
+        var solutionData = new ReleaseFileService.SolutionData(Map.of(), Map.of());
+        Map<SlotIdSampleId, String> positions = Map.of();
+        Map<SlotIdSampleId, List<OperationComment>> sectionComments = Map.of();
+        Map<SlotIdSampleId, String> sizeRanges = Map.of();
+        Map<SlotIdSampleId, List<OperationComment>> qpcrComments = Map.of();
+        var rnaData = new ReleaseFileService.RnaAnalysisData(Map.of(), Map.of());
+        Map<SlotIdSampleId, Set<String>> programs = Map.of();
+        var xeniumData = new ReleaseFileService.XeniumData(null, null, null, null);
+
         doNothing().when(service).loadLastSection(any());
-        doNothing().when(service).loadSources(any(), any(), any());
-        doNothing().when(service).loadMeasurements(any(), any());
-        doNothing().when(service).loadStains(any(), any());
-        doNothing().when(service).loadSamplePositions(any());
-        doNothing().when(service).loadSectionComments(any());
-        doNothing().when(service).loadVisiumBarcodes(any(), any());
-        doNothing().when(service).loadSizeRanges(any(), any());
-        doNothing().when(service).loadQpcrComments(any(), any());
-        doNothing().when(service).loadXeniumFields(any(), any());
-        doNothing().when(service).loadSolutions(any());
+        doReturn(barcodes).when(service).loadLabwareBarcodes(any());
+        doNothing().when(service).loadSources(any(), any(), any(), any());
+        doReturn(measurementData).when(service).findMeasurements(any());
+        doNothing().when(service).setMeasurements(any(), any(), any());
+        doReturn(sectionDateData).when(service).findSectionDates(any());
+        doNothing().when(service).setSectionDates(any(), any(), any());
+        doReturn(stainData).when(service).findStains(any());
+        doNothing().when(service).setStains(any(), any(), any());
+        doNothing().when(service).loadReagentSources(any());
+        doReturn(positions).when(service).findSamplePositions(any());
+        doNothing().when(service).setSamplePositions(any(), any());
+        doReturn(sectionComments).when(service).findSectionComments(any());
+        doNothing().when(service).setSectionComments(any(), any());
+        doReturn(solutionData).when(service).findSolutions(any());
+        doNothing().when(service).setSolutions(any(), any());
+        doReturn(lwMap).when(service).loadLabwareMap(any());
+        doNothing().when(service).setVisiumBarcodes(any(), any(), any());
+        doReturn(sizeRanges).when(service).findSizeRanges(any());
+        doNothing().when(service).setSizeRanges(any(), any());
+        doReturn(qpcrComments).when(service).findQpcrComments(any());
+        doNothing().when(service).setQpcrComments(any(), any(), any());
+        doReturn(rnaData).when(service).findRnaAnalysis(any());
+        doNothing().when(service).setRnaAnalysis(any(), any());
+        doReturn(programs).when(service).findParaffinProcessingProgram(any());
+        doNothing().when(service).setParaffinProcessingProgram(any(), any());
+        doReturn(xeniumData).when(service).findXeniumData(any());
+        doNothing().when(service).setXeniumFields(any(), any());
         doNothing().when(service).loadFlags(any());
 
         Set<ReleaseFileOption> options = EnumSet.allOf(ReleaseFileOption.class);
@@ -220,18 +264,35 @@ public class TestReleaseFileService {
         verify(service).toReleaseEntries(release2, sampleMap, snapshots, detail);
         verify(service).loadLastSection(entries);
         verify(service).findAncestry(entries);
-        verify(service).loadSources(entries, ancestry, modes);
-        verify(service).loadMeasurements(entries, ancestry);
-        verify(service).loadStains(entries, ancestry);
+        verify(service).loadLabwareBarcodes(ancestorLabwareIds);
+        verify(service).loadSources(entries, ancestry, modes, barcodes);
+        verify(service).findMeasurements(ancestorSlotIds);
+        verify(service).setMeasurements(entries, ancestry, measurementData);
+        verify(service).findSectionDates(ancestorSlotIds);
+        verify(service).setSectionDates(entries, ancestry, sectionDateData);
+        verify(service).findStains(ancestorSlotIds);
+        verify(service).setStains(entries, ancestry, stainData);
         verify(service).loadReagentSources(entries);
-        verify(service).loadSamplePositions(entries);
-        verify(service).loadSectionComments(entries);
-        verify(service, times(includeVisium ? 1 : 0)).loadVisiumBarcodes(entries, ancestry);
-        verify(service, times(includeVisium ? 1 : 0)).loadSizeRanges(entries, slotIds);
-        verify(service, times(includeVisium ? 1 : 0)).loadQpcrComments(entries, ancestry);
-        verify(service).loadXeniumFields(entries, slotIds);
-        verify(service).loadSolutions(entries);
+        verify(service).findSamplePositions(slotIds);
+        verify(service).setSamplePositions(entries, positions);
+        verify(service).findSectionComments(slotIds);
+        verify(service).setSectionComments(entries, sectionComments);
+        verify(service).findSolutions(labwareIds);
+        verify(service).setSolutions(entries, solutionData);
+        verify(service, times(includeVisium ? 1 : 0)).loadLabwareMap(ancestorLabwareIds);
+        verify(service, times(includeVisium ? 1 : 0)).setVisiumBarcodes(entries, ancestry, lwMap);
+        verify(service, times(includeVisium ? 1 : 0)).findSizeRanges(slotIds);
+        verify(service, times(includeVisium ? 1 : 0)).setSizeRanges(entries, sizeRanges);
+        verify(service, times(includeVisium ? 1 : 0)).findQpcrComments(ancestorSlotIds);
+        verify(service, times(includeVisium ? 1 : 0)).setQpcrComments(entries, ancestry, qpcrComments);
+        verify(service).findRnaAnalysis(slotIds);
+        verify(service).setRnaAnalysis(entries, rnaData);
+        verify(service).findParaffinProcessingProgram(slotIds);
+        verify(service).setParaffinProcessingProgram(entries, programs);
+        verify(service).findXeniumData(slotIds);
+        verify(service).setXeniumFields(entries, xeniumData);
         verify(service).loadFlags(entries);
+        verifyNoInteractions(mockTransactor);
     }
 
     @ParameterizedTest
@@ -417,11 +478,12 @@ public class TestReleaseFileService {
         var ancestry = makeAncestry(
                 lw2, sample, lw1, sample
         );
-        doNothing().when(service).loadOriginalBarcodes(any(), any());
-        doNothing().when(service).loadSourcesForCDNA(any(), any());
-        service.loadSources(entries, ancestry, EnumSet.of(mode));
-        verify(service, times(mode==ReleaseFileMode.NORMAL ? 1 : 0)).loadOriginalBarcodes(entries, ancestry);
-        verify(service, times(mode==ReleaseFileMode.CDNA ? 1 : 0)).loadSourcesForCDNA(entries, ancestry);
+        Map<Integer, String> barcodes = Map.of(lw2.getId(), lw2.getBarcode());
+        doNothing().when(service).loadOriginalBarcodes(any(), any(), any());
+        doNothing().when(service).loadSourcesForCDNA(any(), any(), any());
+        service.loadSources(entries, ancestry, EnumSet.of(mode), barcodes);
+        verify(service, times(mode==ReleaseFileMode.NORMAL ? 1 : 0)).loadOriginalBarcodes(entries, ancestry, barcodes);
+        verify(service, times(mode==ReleaseFileMode.CDNA ? 1 : 0)).loadSourcesForCDNA(entries, ancestry, barcodes);
     }
 
     @Test
@@ -700,7 +762,7 @@ public class TestReleaseFileService {
         verify(mockOpRepo).findAllByOperationTypeAndDestinationSlotIdIn(opType, Set.of(lw.getFirstSlot().getId()));
         verify(service, never()).labwareIdToOp(any());
         verify(service, never()).findEntryOps(any(), any(), any());
-        verify(service, never()).loadImagingQcComments(any(), any(), any());
+        verify(service, never()).setImagingQcComments(any(), any(), any(), any());
         verifyNoInteractions(mockStainTypeRepo);
         verifyNoInteractions(mockLwNoteRepo);
     }
@@ -719,17 +781,16 @@ public class TestReleaseFileService {
         Map<Integer, Operation> labwareStainOp = Map.of(lw.getId(), op);
         doReturn(labwareStainOp).when(service).labwareIdToOp(any());
         doReturn(Map.of()).when(service).findEntryOps(any(), any(), any());
-        doNothing().when(service).loadImagingQcComments(any(), any(), any());
+        doReturn(null).when(service).findImagingQcComments(any());
         final List<ReleaseEntry> entries = List.of(entry);
         service.loadStains(entries, ancestry);
         verify(mockOpTypeRepo).getByName("Stain");
         verify(mockOpRepo).findAllByOperationTypeAndDestinationSlotIdIn(opType, Set.of(lw.getFirstSlot().getId()));
         verify(service).labwareIdToOp(ops);
         verify(service).findEntryOps(entries, labwareStainOp, ancestry);
-        verify(service, never()).loadImagingQcComments(any(), any(), any());
-
-        verifyNoInteractions(mockStainTypeRepo);
-        verifyNoInteractions(mockLwNoteRepo);
+        verify(service, never()).setImagingQcComments(any(), any(), any(), any());
+        assertNull(entry.getStainType());
+        assertNull(entry.getBondBarcode());
     }
 
     @Test
@@ -754,7 +815,9 @@ public class TestReleaseFileService {
                 new ReleaseEntry(labware[2], labware[2].getFirstSlot(), sample)
         );
 
-        doNothing().when(service).loadImagingQcComments(any(), any(), any());
+        var imagingQc = new ReleaseFileService.ImagingQcData(List.of(), Map.of());
+        doReturn(imagingQc).when(service).findImagingQcComments(any());
+        doNothing().when(service).setImagingQcComments(any(), any(), any(), any());
 
         Ancestry ancestry = makeAncestry(labware[1], sample, labware[0], sample);
 
@@ -799,7 +862,8 @@ public class TestReleaseFileService {
         final Set<Integer> opIds = Set.of(ops[0].getId(), ops[1].getId());
         verify(mockStainTypeRepo).loadOperationStainTypes(opIds);
         verify(mockLwNoteRepo).findAllByOperationIdIn(opIds);
-        verify(service).loadImagingQcComments(entries, ancestry, Set.of(100,101));
+        verify(service).findImagingQcComments(opIds);
+        verify(service).setImagingQcComments(entries, ancestry, Set.of(100,101), imagingQc);
     }
 
     @Test
@@ -847,7 +911,9 @@ public class TestReleaseFileService {
 
         List<ResultOp> rops = List.of(new ResultOp(), new ResultOp());
         rops.get(0).setOperationId(13);
+        rops.get(0).setRefersToOpId(3);
         rops.get(1).setOperationId(14);
+        rops.get(1).setRefersToOpId(4);
         when(mockRoRepo.findAllByRefersToOpIdIn(any())).thenReturn(rops);
 
         final List<OperationComment> opcoms = makeOpComs(lw3);
@@ -1258,22 +1324,107 @@ public class TestReleaseFileService {
         assertThat(partition.get(false)).containsExactlyElementsOf(modeColumns);
     }
 
+    @Test
+    public void testStreamReleaseFileContent_empty() throws IOException {
+        ReleaseFileStream rfs = service.streamReleaseFileContent(List.of(), Set.of());
+        assertEquals(EnumSet.of(ReleaseFileMode.NORMAL), rfs.modes());
+        assertFalse(rfs.rows().hasNext());
+        rfs.rows().close();
+        verify(service, never()).getReleases(any());
+    }
+
+    @Test
+    public void testStreamReleaseFileContent() throws IOException {
+        setupReleases();
+        List<Release> releases = List.of(release1, release2);
+        doReturn(releases).when(service).getReleases(anyCollection());
+        doReturn(StorageDetail.NONE).when(service).storageDetail(any());
+        Sample cdnaSample = new Sample(sample.getId()+1, null, sample.getTissue(), new BioState(20, "cDNA"));
+        List<ReleaseEntry> entries = List.of(
+                new ReleaseEntry(lw1, lw1.getFirstSlot(), sample),
+                new ReleaseEntry(lw2, lw2.getFirstSlot(), cdnaSample)
+        );
+        entries.get(0).setSourceBarcode("STAN-SRC");
+        entries.get(1).setTagData(Map.of("Alpha", "A1"));
+        doReturn(entries).when(service).loadChunkEntries(any(), any(), any());
+        Set<ReleaseFileOption> options = EnumSet.of(ReleaseFileOption.Visium);
+
+        ReleaseFileStream rfs = service.streamReleaseFileContent(List.of(release1.getId(), release2.getId()), options);
+
+        verify(service).loadChunkEntries(List.of(release1.getId(), release2.getId()), StorageDetail.NONE, options);
+        assertEquals(EnumSet.of(ReleaseFileMode.NORMAL, ReleaseFileMode.CDNA), rfs.modes());
+        assertSame(options, rfs.options());
+        var expectedColumns = service.combineColumns(ReleaseColumn.forModesAndOptions(rfs.modes(), options), List.of("Alpha"));
+        assertThat(rfs.columns().stream().map(Object::toString))
+                .containsExactlyElementsOf(expectedColumns.stream().map(Object::toString).toList());
+
+        List<TableSpool.Row> rows = new ArrayList<>();
+        rfs.rows().forEachRemaining(rows::add);
+        assertThat(rows).hasSize(2);
+        for (int i = 0; i < expectedColumns.size(); ++i) {
+            var column = expectedColumns.get(i);
+            var spooledColumn = rfs.columns().get(i);
+            for (int j = 0; j < entries.size(); ++j) {
+                assertEquals(column.get(entries.get(j)), spooledColumn.get(rows.get(j)), column.toString());
+            }
+        }
+        verify(mockEntityManager, atLeastOnce()).clear();
+    }
+
+    @Test
+    public void testLoadChunkEntries() {
+        setupReleases();
+        doReturn(List.of(release1, release2)).when(service).getReleases(anyCollection());
+        final Map<Integer, Snapshot> snapshots = snapMap();
+        doReturn(snapshots).when(service).loadSnapshots(any());
+        Map<Integer, Sample> sampleMap = Map.of(sample.getId(), sample);
+        doReturn(sampleMap).when(service).loadSamples(anyCollection(), any());
+        List<ReleaseEntry> entries = List.of(new ReleaseEntry(lw1, lw1.getFirstSlot(), sample));
+        doReturn(entries).when(service).loadEntries(any(), any(), any(), any(), any(), any());
+        Set<ReleaseFileMode> modes = EnumSet.of(ReleaseFileMode.NORMAL);
+        Set<ReleaseFileOption> options = EnumSet.noneOf(ReleaseFileOption.class);
+        List<Integer> chunkIds = List.of(release2.getId(), release1.getId());
+
+        assertSame(entries, service.loadChunkEntries(chunkIds, StorageDetail.NONE, options));
+        verify(mockEntityManager).clear();
+        verify(service).getReleases(chunkIds);
+        verify(service).loadEntries(List.of(release2, release1), snapshots, sampleMap, modes, StorageDetail.NONE, options);
+    }
+
+    @Test
+    public void testChunkIds() {
+        assertThat(ReleaseFileService.chunkIds(List.of(), 2)).isEmpty();
+        assertEquals(List.of(List.of(1,2), List.of(3,4), List.of(5)), ReleaseFileService.chunkIds(List.of(1,2,3,4,5), 2));
+        assertEquals(List.of(List.of(1,2)), ReleaseFileService.chunkIds(List.of(1,2), 2));
+    }
+
     @Test
     public void testLoadXeniumFields() {
         Collection<ReleaseEntry> entries = List.of(new ReleaseEntry(null, null, null));
         Set<Integer> slotIds = Set.of(17);
-
-        List<TriConsumer<ReleaseFileService, Collection<ReleaseEntry>, Set<Integer>>> methods = List.of(
-                ReleaseFileService::loadProbeHybridisation,
-                ReleaseFileService::loadProbeHybridisationQC,
-                ReleaseFileService::loadXeniumAnalyser,
-                ReleaseFileService::loadXeniumQC
-        );
-        methods.forEach(method -> method.accept(doNothing().when(service), any(), any()));
+        var probes = new ReleaseFileService.OpDetails<LabwareProbe>(Map.of(), Map.of());
+        var probeQc = new ReleaseFileService.OpDetails<OperationComment>(Map.of(), Map.of());
+        var analyser = new ReleaseFileService.AnalyserData(Map.of(), Map.of(), Map.of());
+        var qc = new ReleaseFileService.OpDetails<OperationComment>(Map.of(), Map.of());
+        doReturn(probes).when(service).findProbeHybridisation(any());
+        doReturn(probeQc).when(service).findProbeHybridisationQC(any());
+        doReturn(analyser).when(service).findXeniumAnalyser(any());
+        doReturn(qc).when(service).findXeniumQC(any());
+        doNothing().when(service).setProbeHybridisation(any(), any());
+        doNothing().when(service).setProbeHybridisationQC(any(), any());
+        doNothing().when(service).setXeniumAnalyser(any(), any());
+        doNothing().when(service).setXeniumQC(any(), any());
 
         service.loadXeniumFields(entries, slotIds);
 
-        methods.forEach(method -> method.accept(verify(service), entries, slotIds));
+        verify(service).findProbeHybridisation(slotIds);
+        verify(service).findProbeHybridisationQC(slotIds);
+        verify(service).findXeniumAnalyser(slotIds);
+        verify(service).findXeniumQC(slotIds);
+        verify(service).setProbeHybridisation(same(entries), same(probes));
+        verify(service).setProbeHybridisationQC(same(entries), same(probeQc));
+        verify(service).setXeniumAnalyser(same(entries), same(analyser));
+        verify(service).setXeniumQC(same(entries), same(qc));
     }
 
     @ParameterizedTest
@@ -1661,9 +1812,4 @@ public class TestReleaseFileService {
         }
         return (Slot) arg;
     }
-
-    @FunctionalInterface
-    private interface TriConsumer<A, B, C> {
-        void accept(A a, B b, C c);
-    }
 }
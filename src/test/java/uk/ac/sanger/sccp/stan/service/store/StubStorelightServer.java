@@ -0,0 +1,110 @@
+package uk.ac.sanger.sccp.stan.service.store;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local http server standing in for storelight in tests.
+ * It answers every post with a fixed response, and records the requests and the connections they arrived on.
+ * @author dr6
+ */
+public class StubStorelightServer implements AutoCloseable {
+    public static final String RESPONSE = "{\"data\":{\"location\":{\"barcode\":\"STO-1\"}}}";
+
+    static {
+        // without this, small responses are held back by Nagle's algorithm and every request takes ~40 ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private final List<Map<String, String>> requestHeaders = new CopyOnWriteArrayList<>();
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long delayMillis;
+
+    public StubStorelightServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newFixedThreadPool(16);
+        server.setExecutor(executor);
+        server.createContext("/graphql", this::handle);
+        server.start();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            connections.add(exchange.getRemoteAddress());
+            requestCount.incrementAndGet();
+            Map<String, String> headers = new HashMap<>();
+            exchange.getRequestHeaders().forEach((k, v) -> headers.put(k.toLowerCase(), v.getFirst()));
+            requestHeaders.add(headers);
+            requestBodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            byte[] body = (status==200 ? RESPONSE : "Failed").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** The address of the stub graphql endpoint */
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/graphql";
+    }
+
+    /** The number of distinct client connections requests have arrived on */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /** The headers of each request received, with lower case names */
+    public List<Map<String, String>> getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    public List<String> getRequestBodies() {
+        return requestBodies;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public void setDelayMillis(long delayMillis) {
+        this.delayMillis = delayMillis;
+    }
+
+    /** Forgets the requests and connections recorded so far */
+    public void reset() {
+        connections.clear();
+        requestHeaders.clear();
+        requestBodies.clear();
+        requestCount.set(0);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
@@ -1,15 +1,21 @@
 package uk.ac.sanger.sccp.stan.service.store;
 
-import org.junit.jupiter.api.BeforeEach;
-import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import uk.ac.sanger.sccp.stan.config.StorelightConfig;
+import uk.ac.sanger.sccp.utils.BaseHttpClient.Http404Exception;
 import uk.ac.sanger.sccp.utils.GraphQLClient.GraphQLResponse;
 
 import java.io.IOException;
 import java.net.*;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -21,24 +27,99 @@ public class TestStorelightClient {
     private StorelightConfig mockStorelightConfig;
     private StorelightClient storelightClient;
 
+    private static StubStorelightServer server;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        server = new StubStorelightServer();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
     @BeforeEach
     void setup() {
         mockStorelightConfig = mock(StorelightConfig.class);
         storelightClient = spy(new StorelightClient(mockStorelightConfig));
+        server.reset();
+        server.setStatus(200);
+        server.setDelayMillis(0);
+    }
+
+    /** Creates a client configured to talk to the stub server */
+    private StorelightClient stubClient(int maxRequests) {
+        when(mockStorelightConfig.getHost()).thenReturn(server.getUrl());
+        when(mockStorelightConfig.getApiKey()).thenReturn("Squirrel");
+        when(mockStorelightConfig.getTimeout()).thenReturn(5000);
+        when(mockStorelightConfig.getConnectTimeout()).thenReturn(2000);
+        when(mockStorelightConfig.getThreads()).thenReturn(2);
+        when(mockStorelightConfig.getMaxRequests()).thenReturn(maxRequests);
+        when(mockStorelightConfig.isHttp2()).thenReturn(true);
+        return new StorelightClient(mockStorelightConfig);
+    }
+
+    @Test
+    public void testConfig() {
+        when(mockStorelightConfig.getTimeout()).thenReturn(3000);
+        when(mockStorelightConfig.getConnectTimeout()).thenReturn(500);
+        when(mockStorelightConfig.isHttp2()).thenReturn(false);
+        StorelightClient client = new StorelightClient(mockStorelightConfig);
+        assertEquals(3000, client.getTimeout());
+        assertEquals(500, client.getConnectTimeout());
+        assertEquals(HttpClient.Version.HTTP_1_1, client.getVersion());
+        assertNull(client.getExecutor());
+        HttpClient httpClient = client.getHttpClient();
+        assertEquals(Optional.of(Duration.ofMillis(500)), httpClient.connectTimeout());
+        assertEquals(HttpClient.Version.HTTP_1_1, httpClient.version());
+        assertSame(httpClient, client.getHttpClient());
     }
 
     @Test
-    public void testSetHeaders() {
-        HttpURLConnection mockConnection = mock(HttpURLConnection.class);
-        String user = "dr6";
-        String apiKey = "Squirrel";
-        when(mockStorelightConfig.getApiKey()).thenReturn(apiKey);
-
-        storelightClient.setHeaders(mockConnection, user);
-        verify(mockConnection).setRequestProperty("Content-Type", "application/json");
-        verify(mockConnection).setRequestProperty("Accept", "application/json");
-        verify(mockConnection).setRequestProperty("STORELIGHT-APIKEY", apiKey);
-        verify(mockConnection).setRequestProperty("STORELIGHT-USER", user);
+    public void testConfigWithThreads() {
+        when(mockStorelightConfig.getThreads()).thenReturn(2);
+        when(mockStorelightConfig.isHttp2()).thenReturn(true);
+        StorelightClient client = new StorelightClient(mockStorelightConfig);
+        assertNotNull(client.getExecutor());
+        assertEquals(HttpClient.Version.HTTP_2, client.getVersion());
+        HttpClient httpClient = client.getHttpClient();
+        assertEquals(HttpClient.Version.HTTP_2, httpClient.version());
+        // The executor only handles asynchronous responses; the http client uses its own
+        assertTrue(httpClient.executor().isEmpty());
+    }
+
+    @Test
+    public void testExecutorOnlyUsedAsync() throws Exception {
+        StorelightClient client = stubClient(0);
+        Executor executor = mock(Executor.class);
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(any());
+        client.setExecutor(executor);
+        client.postQuery("{ location }", null);
+        verifyNoInteractions(executor);
+        client.postQueryAsync("{ location }", null).get(10, TimeUnit.SECONDS);
+        verify(executor).execute(any());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"dr6", ""})
+    public void testRequestBuilder(String user) throws IOException {
+        String host = "http://storelighturl/graphql";
+        when(mockStorelightConfig.getHost()).thenReturn(host);
+        when(mockStorelightConfig.getApiKey()).thenReturn("Squirrel");
+        storelightClient.setTimeout(4000);
+
+        HttpRequest request = storelightClient.requestBuilder(user).build();
+        assertEquals(URI.create(host), request.uri());
+        assertEquals(Optional.of(Duration.ofMillis(4000)), request.timeout());
+        var headers = request.headers();
+        assertEquals(Optional.of("application/json"), headers.firstValue("Content-Type"));
+        assertEquals(Optional.of("application/json"), headers.firstValue("Accept"));
+        assertEquals(Optional.of("Squirrel"), headers.firstValue("STORELIGHT-APIKEY"));
+        assertEquals(user.isEmpty() ? Optional.empty() : Optional.of(user), headers.firstValue("STORELIGHT-USER"));
     }
 
     @Test
@@ -51,27 +132,81 @@ public class TestStorelightClient {
     @ParameterizedTest
     @ValueSource(booleans = { true, false })
     public void testPostQuery(boolean successful) throws IOException {
-        String host = "http://storelighturl/graphql";
-        String apiKey = "Squirrel";
-        when(mockStorelightConfig.getHost()).thenReturn(host);
-        HttpURLConnection mockConnection = mock(HttpURLConnection.class);
-        doReturn(mockConnection).when(storelightClient).openConnection(any());
-        when(mockStorelightConfig.getApiKey()).thenReturn(apiKey);
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://storelighturl/graphql"));
+        doReturn(builder).when(storelightClient).requestBuilder("dr6");
 
         String query = "{ Something }";
-        String user = "dr6";
         if (successful) {
             GraphQLResponse response = new GraphQLResponse(null, null);
-            doReturn(response).when(storelightClient).postQuery(mockConnection, query);
-            assertSame(response, storelightClient.postQuery(query, user));
+            doReturn(response).when(storelightClient).postQuery(builder, query);
+            assertSame(response, storelightClient.postQuery(query, "dr6"));
+        } else {
+            doThrow(IOException.class).when(storelightClient).postQuery(builder, query);
+            assertThrows(IOException.class, () -> storelightClient.postQuery(query, "dr6"));
+        }
+        verify(storelightClient).requestBuilder("dr6");
+        verify(storelightClient).postQuery(builder, query);
+    }
+
+    @Test
+    public void testPostQueryToServer() throws IOException {
+        StorelightClient client = stubClient(0);
+        GraphQLResponse response = client.postQuery("{ location }", "dr6");
+        assertFalse(response.hasErrors());
+        assertEquals("STO-1", response.getData().path("location").path("barcode").asText());
+        assertThat(server.getRequestBodies()).containsExactly("{\"query\":\"{ location }\"}");
+        Map<String, String> headers = server.getRequestHeaders().getFirst();
+        assertEquals("Squirrel", headers.get("storelight-apikey"));
+        assertEquals("dr6", headers.get("storelight-user"));
+        assertEquals("application/json", headers.get("content-type"));
+    }
+
+    @Test
+    public void testConnectionReuse() throws IOException {
+        StorelightClient client = stubClient(0);
+        for (int i = 0; i < 20; ++i) {
+            client.postQuery("{ location }", null);
+        }
+        assertEquals(20, server.getRequestCount());
+        assertEquals(1, server.getConnectionCount());
+    }
+
+    @Test
+    public void testPostQueryAsync() throws Exception {
+        StorelightClient client = stubClient(4);
+        server.setDelayMillis(20);
+        List<CompletableFuture<GraphQLResponse>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; ++i) {
+            futures.add(client.postQueryAsync("{ location }", "dr6"));
+        }
+        for (var future : futures) {
+            assertEquals("STO-1", future.get(10, TimeUnit.SECONDS).getData().path("location").path("barcode").asText());
+        }
+        assertEquals(20, server.getRequestCount());
+        assertThat(server.getConnectionCount()).isBetween(1, 4);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {404, 500})
+    public void testPostQueryError(int status) throws IOException {
+        StorelightClient client = stubClient(0);
+        server.setStatus(status);
+        IOException ex = assertThrows(IOException.class, () -> client.postQuery("{ location }", null));
+        if (status==404) {
+            assertThat(ex).isInstanceOf(Http404Exception.class);
         } else {
-            doThrow(IOException.class).when(storelightClient).postQuery(mockConnection, query);
-            assertThrows(IOException.class, () -> storelightClient.postQuery(query, user));
+            assertEquals("500 - Failed", ex.getMessage());
         }
+        var future = client.postQueryAsync("{ location }", null);
+        ExecutionException ee = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+        assertThat(ee.getCause()).isInstanceOf(status==404 ? Http404Exception.class : IOException.class);
+    }
 
-        verify(storelightClient).openConnection(new URL(host));
-        verify(storelightClient).setHeaders(mockConnection, user);
-        verify(storelightClient).postQuery(mockConnection, query);
-        verify(mockConnection).disconnect();
+    @Test
+    public void testTimeout() {
+        StorelightClient client = stubClient(0);
+        client.setTimeout(100);
+        server.setDelayMillis(1000);
+        assertThrows(IOException.class, () -> client.postQuery("{ location }", null));
     }
 }
@@ -0,0 +1,169 @@
+package uk.ac.sanger.sccp.stan.service.store;
+
+import org.junit.jupiter.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.sanger.sccp.stan.config.StorelightConfig;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares posting queries to a local stub storelight with an {@code HttpURLConnection} per request
+ * (as the client used to) against the shared, pooled client.
+ * Timings and connection counts are logged; only the connection use of the shared client is asserted.
+ * The sequential timings are taken after a long warm-up: with fewer requests the shared client is measured
+ * mostly before it has been compiled, which made it look several times slower than it is.
+ * @author dr6
+ */
+@Tag("benchmark")
+public class TestStorelightClientBenchmark {
+    private static final int REQUESTS = 1000;
+    private static final int THREADS = 16;
+    /** Both clients take several thousand requests before the JIT has settled */
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 3;
+    private static final String QUERY = "{\"query\":\"{ location }\"}";
+
+    private final Logger log = LoggerFactory.getLogger(TestStorelightClientBenchmark.class);
+
+    private StubStorelightServer server;
+    private StorelightClient client;
+
+    @BeforeEach
+    void setup() throws IOException {
+        server = new StubStorelightServer();
+        StorelightConfig config = mock(StorelightConfig.class);
+        when(config.getHost()).thenReturn(server.getUrl());
+        when(config.getApiKey()).thenReturn("Squirrel");
+        when(config.getTimeout()).thenReturn(10_000);
+        when(config.getConnectTimeout()).thenReturn(2000);
+        when(config.getThreads()).thenReturn(4);
+        when(config.getMaxRequests()).thenReturn(THREADS);
+        when(config.isHttp2()).thenReturn(true);
+        client = new StorelightClient(config);
+    }
+
+    @AfterEach
+    void cleanup() {
+        server.close();
+    }
+
+    @Test
+    public void testSequentialBenchmark() throws Exception {
+        for (int i = 0; i < WARMUP_ROUNDS; ++i) {
+            postPerConnection(REQUESTS);
+            postShared(REQUESTS);
+        }
+        server.reset();
+
+        // Take the best of a few rounds of each, since single timings on a shared machine are noisy
+        long perConnectionNanos = Long.MAX_VALUE, sharedNanos = Long.MAX_VALUE;
+        int perConnectionConnections = 0, sharedConnections = 0;
+        for (int i = 0; i < ROUNDS; ++i) {
+            server.reset();
+            perConnectionNanos = Math.min(perConnectionNanos, time(() -> postPerConnection(REQUESTS)));
+            perConnectionConnections = server.getConnectionCount();
+            server.reset();
+            sharedNanos = Math.min(sharedNanos, time(() -> postShared(REQUESTS)));
+            sharedConnections = server.getConnectionCount();
+        }
+
+        log.info("{} sequential storelight requests: per connection {} ms over {} connections; shared client {} ms over {} connections",
+                REQUESTS, perConnectionNanos/1_000_000, perConnectionConnections,
+                sharedNanos/1_000_000, sharedConnections);
+        assertEquals(REQUESTS, server.getRequestCount());
+        assertEquals(1, sharedConnections);
+    }
+
+    @Test
+    public void testConcurrentBenchmark() throws Exception {
+        server.setDelayMillis(5);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long perConnectionNanos = time(() -> {
+                List<Future<?>> futures = new ArrayList<>(REQUESTS);
+                for (int i = 0; i < REQUESTS; ++i) {
+                    futures.add(executor.submit(() -> { postPerConnection(1); return null; }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            });
+            int perConnectionConnections = server.getConnectionCount();
+            server.reset();
+
+            long sharedNanos = time(() -> {
+                List<CompletableFuture<?>> futures = new ArrayList<>(REQUESTS);
+                for (int i = 0; i < REQUESTS; ++i) {
+                    futures.add(client.postQueryAsync("{ location }", "dr6"));
+                }
+                CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+            });
+            int sharedConnections = server.getConnectionCount();
+
+            log.info("{} storelight requests over {} threads: per connection {} ms over {} connections; shared async client {} ms over {} connections",
+                    REQUESTS, THREADS, perConnectionNanos/1_000_000, perConnectionConnections,
+                    sharedNanos/1_000_000, sharedConnections);
+            assertEquals(REQUESTS, server.getRequestCount());
+            assertThat(sharedConnections).isLessThanOrEqualTo(THREADS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Posts queries the way the old client did: a new {@code HttpURLConnection} for each request, disconnected afterwards.
+     * The JDK may still reuse the socket underneath from its keep-alive cache.
+     */
+    private void postPerConnection(int count) throws IOException {
+        URL url = new URL(server.getUrl());
+        byte[] body = QUERY.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < count; ++i) {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            try {
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                connection.setRequestProperty("Accept", "application/json");
+                connection.setRequestProperty("STORELIGHT-APIKEY", "Squirrel");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+                assertEquals(200, connection.getResponseCode());
+                try (InputStream in = connection.getInputStream()) {
+                    in.readAllBytes();
+                }
+            } finally {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private void postShared(int count) throws IOException {
+        for (int i = 0; i < count; ++i) {
+            client.postQuery("{ location }", "dr6");
+        }
+    }
+
+    private static long time(Task task) throws Exception {
+        long start = System.nanoTime();
+        task.run();
+        return System.nanoTime() - start;
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws Exception;
+    }
+}
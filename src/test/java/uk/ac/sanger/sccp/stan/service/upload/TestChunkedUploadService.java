@@ -0,0 +1,363 @@
+package uk.ac.sanger.sccp.stan.service.upload;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import uk.ac.sanger.sccp.stan.Matchers;
+import uk.ac.sanger.sccp.stan.Transactor;
+import uk.ac.sanger.sccp.stan.config.StanFileConfig;
+import uk.ac.sanger.sccp.stan.model.*;
+import uk.ac.sanger.sccp.stan.repo.*;
+import uk.ac.sanger.sccp.stan.service.FileStoreService;
+import uk.ac.sanger.sccp.stan.service.FileStoreServiceImp;
+
+import javax.persistence.EntityNotFoundException;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+import static uk.ac.sanger.sccp.utils.BasicUtils.asCollection;
+
+/**
+ * Tests {@link ChunkedUploadServiceImp}
+ * @author dr6
+ */
+public class TestChunkedUploadService {
+    private static final String CONTENT = "Alpha beta gamma!";
+    private static final List<String> WORK_NUMBERS = List.of("SGP1", "SGP2");
+
+    @Mock
+    private StanFileConfig mockConfig;
+    @Mock
+    private FileStoreService mockFileStoreService;
+    @TempDir
+    Path root;
+
+    private final Instant now = Instant.parse("2024-05-06T12:00:00Z");
+    private User user;
+    private ChunkedUploadServiceImp service;
+
+    private AutoCloseable mocking;
+
+    @BeforeEach
+    void setup() {
+        mocking = MockitoAnnotations.openMocks(this);
+        when(mockConfig.getRoot()).thenReturn(root.toString());
+        when(mockConfig.getDir()).thenReturn("test");
+        when(mockConfig.getUploadChunkSize()).thenReturn(4);
+        when(mockConfig.getUploadMaxChunkSize()).thenReturn(16);
+        when(mockConfig.getUploadExpiryHours()).thenReturn(48);
+        when(mockFileStoreService.validateUpload(any(), any(), any())).then(invocation -> {
+            String name = invocation.getArgument(1);
+            return name.substring(name.lastIndexOf('/') + 1);
+        });
+        user = new User(10, "user1", User.Role.enduser);
+        service = spy(new ChunkedUploadServiceImp(mockConfig, Clock.fixed(now, ZoneOffset.UTC), mockFileStoreService));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        mocking.close();
+    }
+
+    private ChunkedUpload initiate() throws IOException {
+        return service.initiate(user, "dir/file.txt", CONTENT.length(), null, WORK_NUMBERS);
+    }
+
+    private ChunkedUpload send(ChunkedUpload upload, int index) throws IOException {
+        return send(upload.getId(), index, chunk(upload, index), null);
+    }
+
+    private ChunkedUpload send(String uploadId, int index, String data, String checksum) throws IOException {
+        return service.receiveChunk(user, uploadId, index, checksum,
+                new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String chunk(ChunkedUpload upload, int index) {
+        int start = (int) upload.chunkStart(index);
+        return CONTENT.substring(start, start + upload.chunkLength(index));
+    }
+
+    private static String sha256(String data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path uploadDir(ChunkedUpload upload) {
+        return root.resolve("test").resolve(ChunkedUploadServiceImp.UPLOAD_DIR).resolve(upload.getId());
+    }
+
+    /** Stubs the file store to check the saved data, and returns a list that receives the saved data */
+    private List<String> mockSave() {
+        List<String> saved = new ArrayList<>();
+        when(mockFileStoreService.save(any(), any(), any(Path.class), anyList())).then(invocation -> {
+            Path data = invocation.getArgument(2);
+            saved.add(Files.readString(data));
+            return List.of(new StanFile(null, user, invocation.getArgument(1), "test/blobs/ab/ab1"));
+        });
+        return saved;
+    }
+
+    @Test
+    public void testInitiate() throws IOException {
+        ChunkedUpload upload = initiate();
+        verify(mockFileStoreService).validateUpload(user, "dir/file.txt", WORK_NUMBERS);
+        assertEquals("file.txt", upload.getName());
+        assertEquals(user.getUsername(), upload.getUsername());
+        assertEquals(CONTENT.length(), upload.getSize());
+        assertEquals(4, upload.getChunkSize());
+        assertEquals(5, upload.getNumChunks());
+        assertEquals(WORK_NUMBERS, upload.getWorkNumbers());
+        assertEquals(List.of(0, 1, 2, 3, 4), upload.getMissingChunks());
+        assertEquals(0L, upload.getReceivedBytes());
+        assertFalse(upload.isComplete());
+
+        Path dir = uploadDir(upload);
+        assertTrue(Files.isRegularFile(dir.resolve(ChunkedUploadServiceImp.DATA_FILE)));
+        assertTrue(Files.isDirectory(dir.resolve(ChunkedUploadServiceImp.CHUNK_DIR)));
+        assertEquals(upload, service.getUpload(user, upload.getId()));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"-1,", "10,0", "10,17", "100001,1"})
+    public void testInitiate_invalid(long size, Integer chunkSize) {
+        assertThrows(IllegalArgumentException.class,
+                () -> service.initiate(user, "file.txt", size, chunkSize, WORK_NUMBERS));
+        assertFalse(Files.exists(root.resolve("test").resolve(ChunkedUploadServiceImp.UPLOAD_DIR)));
+    }
+
+    @Test
+    public void testInitiate_validationFails() {
+        doThrow(new InsufficientAuthenticationException("Bad"))
+                .when(mockFileStoreService).validateUpload(any(), any(), any());
+        assertThrows(InsufficientAuthenticationException.class, this::initiate);
+    }
+
+    @Test
+    public void testOutOfOrderChunks() throws IOException {
+        ChunkedUpload upload = initiate();
+        List<String> saved = mockSave();
+        long expectedBytes = 0;
+        for (int index : List.of(4, 2, 0, 3, 1)) {
+            assertThrows(IllegalStateException.class, () -> service.complete(user, upload.getId()));
+            ChunkedUpload progress = send(upload, index);
+            expectedBytes += upload.chunkLength(index);
+            assertEquals(expectedBytes, progress.getReceivedBytes());
+            assertEquals(sha256(chunk(upload, index)), progress.getChunkChecksums().get(index));
+            assertThat(progress.getMissingChunks()).doesNotContain(index);
+        }
+        ChunkedUpload progress = service.getUpload(user, upload.getId());
+        assertTrue(progress.isComplete());
+        assertEquals(CONTENT.length(), progress.getReceivedBytes());
+        verify(mockFileStoreService, never()).save(any(), any(), any(Path.class), anyList());
+
+        var sfs = service.complete(user, upload.getId());
+        assertThat(sfs).hasSize(1);
+        assertEquals(List.of(CONTENT), saved);
+        verify(mockFileStoreService).save(user, "file.txt", uploadDir(upload).resolve(ChunkedUploadServiceImp.DATA_FILE),
+                WORK_NUMBERS);
+        assertFalse(Files.exists(uploadDir(upload)));
+        assertThrows(EntityNotFoundException.class, () -> service.getUpload(user, upload.getId()));
+    }
+
+    @Test
+    public void testRepeatedChunk() throws IOException {
+        ChunkedUpload upload = initiate();
+        send(upload, 1);
+        ChunkedUpload progress = send(upload.getId(), 1, chunk(upload, 1), sha256(chunk(upload, 1)));
+        assertEquals(Set.of(1), progress.getChunkChecksums().keySet());
+        assertEquals(upload.chunkLength(1), progress.getReceivedBytes());
+        try (var files = Files.list(uploadDir(upload).resolve(ChunkedUploadServiceImp.CHUNK_DIR))) {
+            assertThat(files).hasSize(1);
+        }
+    }
+
+    @Test
+    public void testRepeatedChunk_differentContent() throws IOException {
+        ChunkedUpload upload = initiate();
+        send(upload, 0);
+        assertThrows(IllegalStateException.class, () -> send(upload.getId(), 0, "XXXX", null));
+        for (int i = 1; i < upload.getNumChunks(); ++i) {
+            send(upload, i);
+        }
+        List<String> saved = mockSave();
+        service.complete(user, upload.getId());
+        assertEquals(List.of(CONTENT), saved);
+    }
+
+    @Test
+    public void testChecksumMismatch() throws IOException {
+        ChunkedUpload upload = initiate();
+        String data = chunk(upload, 2);
+        assertThrows(IllegalArgumentException.class, () -> send(upload.getId(), 2, data, sha256("other")));
+        assertFalse(service.getUpload(user, upload.getId()).hasChunk(2));
+        ChunkedUpload progress = send(upload.getId(), 2, data, sha256(data).toUpperCase());
+        assertTrue(progress.hasChunk(2));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"0, Alp", "0, Alpha", "4, a!!", "4, ''", "-1, Alph", "5, Alph"})
+    public void testInvalidChunk(int index, String data) throws IOException {
+        ChunkedUpload upload = initiate();
+        assertThrows(IllegalArgumentException.class, () -> send(upload.getId(), index, data, null));
+        assertThat(service.getUpload(user, upload.getId()).getChunkChecksums()).isEmpty();
+    }
+
+    @Test
+    public void testResumeAfterRestart() throws IOException {
+        ChunkedUpload upload = initiate();
+        send(upload, 0);
+        send(upload, 3);
+        service = new ChunkedUploadServiceImp(mockConfig, Clock.systemUTC(), mockFileStoreService);
+        ChunkedUpload progress = service.getUpload(user, upload.getId());
+        assertEquals(List.of(1, 2, 4), progress.getMissingChunks());
+        for (int index : progress.getMissingChunks()) {
+            send(upload, index);
+        }
+        List<String> saved = mockSave();
+        service.complete(user, upload.getId());
+        assertEquals(List.of(CONTENT), saved);
+    }
+
+    @Test
+    public void testConcurrentChunks() throws Exception {
+        ChunkedUpload upload = initiate();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ChunkedUpload>> futures = new ArrayList<>();
+            for (int i = 0; i < upload.getNumChunks(); ++i) {
+                final int index = i;
+                futures.add(executor.submit(() -> send(upload, index)));
+                futures.add(executor.submit(() -> send(upload, index)));
+            }
+            for (Future<ChunkedUpload> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        List<String> saved = mockSave();
+        service.complete(user, upload.getId());
+        assertEquals(List.of(CONTENT), saved);
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException {
+        ChunkedUpload upload = service.initiate(user, "empty.txt", 0, null, WORK_NUMBERS);
+        assertEquals(0, upload.getNumChunks());
+        assertTrue(upload.isComplete());
+        List<String> saved = mockSave();
+        service.complete(user, upload.getId());
+        assertEquals(List.of(""), saved);
+    }
+
+    @Test
+    public void testCompleteSaveFails() throws IOException {
+        ChunkedUpload upload = initiate();
+        for (int i = 0; i < upload.getNumChunks(); ++i) {
+            send(upload, i);
+        }
+        when(mockFileStoreService.save(any(), any(), any(Path.class), anyList())).thenThrow(IllegalArgumentException.class);
+        assertThrows(IllegalArgumentException.class, () -> service.complete(user, upload.getId()));
+        assertTrue(service.getUpload(user, upload.getId()).isComplete());
+    }
+
+    @Test
+    public void testCompleteSaveFails_realStore() throws IOException {
+        user = new User(11, "user2", User.Role.normal);
+        Transactor mockTransactor = mock(Transactor.class);
+        Matchers.mockTransactor(mockTransactor);
+        StanFileRepo mockFileRepo = mock(StanFileRepo.class);
+        WorkRepo mockWorkRepo = mock(WorkRepo.class);
+        Set<Work> works = Set.of(new Work(1, WORK_NUMBERS.get(0), null, null, null, null, null, Work.Status.active),
+                new Work(2, WORK_NUMBERS.get(1), null, null, null, null, null, Work.Status.active));
+        when(mockWorkRepo.getSetByWorkNumberIn(WORK_NUMBERS)).thenReturn(works);
+        when(mockFileRepo.saveAll(any())).thenThrow(new IllegalStateException("Bad database"))
+                .then(invocation -> invocation.getArgument(0));
+        Clock clock = Clock.fixed(now, ZoneOffset.UTC);
+        FileStoreServiceImp fileStore = new FileStoreServiceImp(mockConfig, clock, mockTransactor, mockFileRepo,
+                mockWorkRepo, mock(WorkEventRepo.class));
+        service = new ChunkedUploadServiceImp(mockConfig, clock, fileStore);
+        ChunkedUpload upload = initiate();
+        for (int i = 0; i < upload.getNumChunks(); ++i) {
+            send(upload, i);
+        }
+        final String blobPath = fileStore.blobPath(sha256(CONTENT));
+        final Path dataPath = uploadDir(upload).resolve(ChunkedUploadServiceImp.DATA_FILE);
+
+        assertThrows(IllegalStateException.class, () -> service.complete(user, upload.getId()));
+        // The unused blob is released, but the staged data is kept
+        assertFalse(Files.exists(root.resolve(blobPath)));
+        assertEquals(CONTENT, Files.readString(dataPath));
+        assertTrue(service.getUpload(user, upload.getId()).isComplete());
+
+        var sfs = asCollection(service.complete(user, upload.getId()));
+        assertThat(sfs).hasSize(2).allMatch(sf -> sf.getPath().equals(blobPath));
+        assertEquals(CONTENT, Files.readString(root.resolve(blobPath)));
+        assertFalse(Files.exists(uploadDir(upload)));
+    }
+
+    @Test
+    public void testWrongUser() throws IOException {
+        ChunkedUpload upload = initiate();
+        User other = new User(11, "user2", User.Role.enduser);
+        assertThrows(InsufficientAuthenticationException.class, () -> service.getUpload(other, upload.getId()));
+        assertThrows(InsufficientAuthenticationException.class, () -> service.receiveChunk(other, upload.getId(), 0,
+                null, new ByteArrayInputStream(chunk(upload, 0).getBytes())));
+        assertThrows(InsufficientAuthenticationException.class, () -> service.complete(other, upload.getId()));
+        assertThrows(InsufficientAuthenticationException.class, () -> service.abort(other, upload.getId()));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"00000000-0000-0000-0000-000000000000", "../../etc", "''"})
+    public void testUnknownUpload(String uploadId) {
+        assertThrows(EntityNotFoundException.class, () -> service.getUpload(user, uploadId));
+        assertThrows(EntityNotFoundException.class, () -> send(uploadId, 0, "Alph", null));
+        assertThrows(EntityNotFoundException.class, () -> service.complete(user, uploadId));
+        assertThrows(EntityNotFoundException.class, () -> service.abort(user, uploadId));
+    }
+
+    @Test
+    public void testAbort() throws IOException {
+        ChunkedUpload upload = initiate();
+        send(upload, 0);
+        service.abort(user, upload.getId());
+        assertFalse(Files.exists(uploadDir(upload)));
+        assertThrows(EntityNotFoundException.class, () -> service.getUpload(user, upload.getId()));
+    }
+
+    @Test
+    public void testDeleteExpired() throws IOException {
+        assertEquals(0, service.deleteExpired());
+        ChunkedUpload oldUpload = initiate();
+        ChunkedUpload newUpload = initiate();
+        Files.setLastModifiedTime(uploadDir(oldUpload).resolve(ChunkedUploadServiceImp.CHUNK_DIR),
+                FileTime.from(now.minus(Duration.ofHours(49))));
+        Files.setLastModifiedTime(uploadDir(newUpload).resolve(ChunkedUploadServiceImp.CHUNK_DIR),
+                FileTime.from(now.minus(Duration.ofHours(47))));
+
+        assertEquals(1, service.deleteExpired());
+        assertFalse(Files.exists(uploadDir(oldUpload)));
+        assertTrue(Files.exists(uploadDir(newUpload)));
+    }
+}
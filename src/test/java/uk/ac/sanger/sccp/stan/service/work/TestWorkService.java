@@ -12,6 +12,7 @@ import uk.ac.sanger.sccp.stan.model.Work.Status;
 import uk.ac.sanger.sccp.stan.repo.*;
 import uk.ac.sanger.sccp.stan.request.*;
 import uk.ac.sanger.sccp.stan.service.Validator;
+import uk.ac.sanger.sccp.stan.service.WorkProgressService;
 import uk.ac.sanger.sccp.stan.service.work.WorkService.WorkOp;
 import uk.ac.sanger.sccp.utils.BasicUtils;
 import uk.ac.sanger.sccp.utils.UCMap;
@@ -23,6 +24,7 @@ import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -38,6 +40,7 @@ public class TestWorkService {
     @Mock private ProgramRepo mockProgramRepo;
     @Mock private CostCodeRepo mockCostCodeRepo;
     @Mock private WorkRepo mockWorkRepo;
+    @Mock private WorkLinkRepo mockWorkLinkRepo;
     @Mock private LabwareRepo mockLwRepo;
     @Mock private OmeroProjectRepo mockOmeroProjectRepo;
     @Mock private DnapStudyRepo mockDnapStudyRepo;
@@ -47,6 +50,7 @@ public class TestWorkService {
     @Mock private WorkEventRepo mockWorkEventRepo;
     @Mock private TreatmentTypeRepo mockTreatmentTypeRepo;
     @Mock private WorkEventService mockWorkEventService;
+    @Mock private WorkProgressService mockWorkProgressService;
     @Mock private Validator<String> mockPriorityValidator;
 
     private AutoCloseable mocking;
@@ -750,21 +754,18 @@ public class TestWorkService {
         Work work = new Work(50, "SGP5000", null, null, null, null, null, Status.active);
 
         when(mockWorkRepo.getByWorkNumber(work.getWorkNumber())).thenReturn(work);
-        work.setOperationIds(hashSetOf(1,2,3));
-        work.setSampleSlotIds(hashSetOf(new SampleSlotId(sam1.getId(), 2)));
-
-        when(mockWorkRepo.save(any())).then(Matchers.returnArgument());
 
         assertEquals(work, workService.link(work.getWorkNumber(), List.of(op1, op2)));
-        verify(mockWorkRepo).save(work);
-        assertThat(work.getOperationIds()).containsExactlyInAnyOrder(1,2,3,10,11);
-        assertThat(work.getSampleSlotIds()).containsExactlyInAnyOrder(
-                new SampleSlotId(sam1.getId(), 2),
+        verify(mockWorkLinkRepo).insertOperationLinks(work.getId(), Set.of(10,11));
+        verify(mockWorkLinkRepo).insertSampleSlotLinks(work.getId(), Set.of(
                 new SampleSlotId(sam1.getId(), lw1.getFirstSlot().getId()),
                 new SampleSlotId(sam2.getId(), lw1.getSlot(new Address(1,2)).getId()),
                 new SampleSlotId(sam1.getId(), lw2.getFirstSlot().getId()),
                 new SampleSlotId(sam2.getId(), lw2.getFirstSlot().getId())
-        );
+        ));
+        verify(mockWorkLinkRepo).refreshLinks(work);
+        verify(mockWorkProgressService).recordOperations(List.of(work.getId()), Set.of(10,11));
+        verify(mockWorkRepo, never()).save(any());
     }
 
     @ParameterizedTest
@@ -826,31 +827,23 @@ public class TestWorkService {
         OperationType opType = EntityFactory.makeOperationType("Section", null);
         Operation op1 = makeOp(opType, 10, lw0, lw1);
         Operation op2 = makeOp(opType, 11, lw0, lw2);
-        final Integer existingOpId = 1;
-        final SampleSlotId existingSsid = new SampleSlotId(3, 4);
 
         List<Work> works = IntStream.rangeClosed(51,52).mapToObj(i -> {
             Work w = new Work();
             w.setId(i);
             w.setWorkNumber("SGP"+i);
             w.setStatus(Status.active);
-            w.setOperationIds(i==51 ? hashSetOf(existingOpId) : hashSetOf());
-            w.setSampleSlotIds(i==51 ? hashSetOf(existingSsid) : hashSetOf());
             return w;
         }).collect(toList());
         workService.link(works, List.of(op1, op2));
-        assertThat(works.get(0).getOperationIds()).containsExactlyInAnyOrder(existingOpId, 10, 11);
-        assertThat(works.get(1).getOperationIds()).containsExactlyInAnyOrder(10, 11);
-        assertThat(works.get(0).getSampleSlotIds()).containsExactlyInAnyOrder(
-                Stream.concat(Stream.of(existingSsid),
-                        Stream.concat(opSsids(op1), opSsids(op2)))
-                        .toArray(SampleSlotId[]::new)
-        );
-        assertThat(works.get(1).getSampleSlotIds()).containsExactlyInAnyOrder(
-                Stream.concat(opSsids(op1), opSsids(op2)).toArray(SampleSlotId[]::new)
-        );
-
-        verify(mockWorkRepo).saveAll(works);
+        Set<SampleSlotId> ssids = Stream.concat(opSsids(op1), opSsids(op2)).collect(toSet());
+        for (Work work : works) {
+            verify(mockWorkLinkRepo).insertOperationLinks(work.getId(), Set.of(10, 11));
+            verify(mockWorkLinkRepo).insertSampleSlotLinks(work.getId(), ssids);
+            verify(mockWorkLinkRepo).refreshLinks(work);
+        }
+        verify(mockWorkProgressService).recordOperations(List.of(51, 52), Set.of(10, 11));
+        verifyNoInteractions(mockWorkRepo);
     }
 
     static Stream<SampleSlotId> opSsids(Operation op) {
@@ -884,20 +877,17 @@ public class TestWorkService {
         lw2.getFirstSlot().addSample(sam2);
         Release rel1 = quickRelease(100, lw1);
         Release rel2 = quickRelease(101, lw2);
-        when(mockWorkRepo.save(any())).then(Matchers.returnArgument());
         Work work = quickWork(Status.active);
-        work.setReleaseIds(hashSetOf(1));
-        work.setSampleSlotIds(hashSetOf(new SampleSlotId(2,3)));
         assertSame(work, workService.linkReleases(work, List.of(rel1, rel2)));
-        verify(mockWorkRepo).save(work);
-        assertThat(work.getReleaseIds()).containsExactlyInAnyOrder(1, 100, 101);
-        assertThat(work.getSampleSlotIds()).containsExactlyInAnyOrder(
-                new SampleSlotId(2,3),
+        verify(mockWorkLinkRepo).insertReleaseLinks(work.getId(), Set.of(100, 101));
+        verify(mockWorkLinkRepo).insertSampleSlotLinks(work.getId(), Set.of(
                 new SampleSlotId(sam1.getId(), lw1.getFirstSlot().getId()),
                 new SampleSlotId(sam1.getId(), lw2.getFirstSlot().getId()),
                 new SampleSlotId(sam2.getId(), lw2.getFirstSlot().getId()),
                 new SampleSlotId(sam2.getId(), lw2.getSlot(new Address(1,2)).getId())
-        );
+        ));
+        verify(mockWorkLinkRepo).refreshLinks(work);
+        verifyNoInteractions(mockWorkRepo);
     }
 
     @Test
@@ -917,7 +907,6 @@ public class TestWorkService {
                 new WorkOp(works[0], ops[0]), new WorkOp(works[0], ops[1]),
                 new WorkOp(works[1], ops[2]), new WorkOp(works[2], ops[3])
         );
-        when(mockWorkRepo.save(any())).then(Matchers.returnArgument());
 
         List<Work> result = workService.linkWorkOps(workOps);
         assertThat(result).containsExactlyInAnyOrder(works);
@@ -7,18 +7,20 @@ import uk.ac.sanger.sccp.stan.model.*;
 import uk.ac.sanger.sccp.stan.repo.*;
 import uk.ac.sanger.sccp.stan.request.OpWorkRequest;
 import uk.ac.sanger.sccp.stan.service.ValidationException;
+import uk.ac.sanger.sccp.stan.service.WorkProgressService;
 import uk.ac.sanger.sccp.stan.service.work.WorkService;
 import uk.ac.sanger.sccp.utils.UCMap;
 
 import java.util.*;
 import java.util.stream.IntStream;
 
+import static java.util.stream.Collectors.toMap;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 import static uk.ac.sanger.sccp.stan.Matchers.assertValidationException;
-import static uk.ac.sanger.sccp.stan.Matchers.sameElements;
 import static uk.ac.sanger.sccp.utils.BasicUtils.inMap;
 
 /** Test {@link WorkChangeServiceImp} */
@@ -31,6 +33,8 @@ class TestWorkChangeService {
     @Mock
     WorkRepo mockWorkRepo;
     @Mock
+    WorkLinkRepo mockWorkLinkRepo;
+    @Mock
     OperationRepo mockOpRepo;
     @Mock
     ReleaseRepo mockReleaseRepo;
@@ -38,6 +42,8 @@ class TestWorkChangeService {
     WorkChangeRepo mockWorkChangeRepo;
     @Mock
     WorkChangeLinkRepo mockLinkRepo;
+    @Mock
+    WorkProgressService mockWorkProgressService;
 
     @InjectMocks
     WorkChangeServiceImp service;
@@ -127,11 +133,14 @@ class TestWorkChangeService {
     @Test
     void testWorkExtantSlotSampleIds() {
         List<Work> works = IntStream.rangeClosed(1,4).mapToObj(i -> EntityFactory.makeWork("SGP"+i)).toList();
-        works.get(0).setOperationIds(Set.of(1,2,4));
-        works.get(1).setOperationIds(Set.of(2,3,4,5));
-        works.get(2).setOperationIds(Set.of(3));
-        works.get(2).setReleaseIds(Set.of(11,12));
         int[] workIds = works.stream().mapToInt(Work::getId).toArray();
+        Map<Integer, List<Integer>> workOpIds = Map.of(workIds[0], List.of(1,2,4), workIds[1], List.of(2,3,4,5),
+                workIds[2], List.of(3));
+        Map<Integer, List<Integer>> workReleaseIds = Map.of(workIds[2], List.of(11,12));
+        when(mockWorkLinkRepo.streamOperationIds(anyInt())).then(invocation ->
+                workOpIds.getOrDefault(invocation.<Integer>getArgument(0), List.of()).stream());
+        when(mockWorkLinkRepo.streamReleaseIds(anyInt())).then(invocation ->
+                workReleaseIds.getOrDefault(invocation.<Integer>getArgument(0), List.of()).stream());
         Map<Integer, Set<SlotIdSampleId>> opSsids = Map.of(
                 1, Set.of(new SlotIdSampleId(20,30),
                         new SlotIdSampleId(21,31)),
@@ -144,32 +153,58 @@ class TestWorkChangeService {
                         new SlotIdSampleId(20,33)),
                 12, Set.of(new SlotIdSampleId(25,35))
         );
-        when(mockOpRepo.findOpSlotSampleIds(any())).thenReturn(opSsids);
-        when(mockReleaseRepo.findReleaseSlotSampleIds(any())).thenReturn(releaseSsids);
+        when(mockOpRepo.findOpSlotSampleIds(any())).then(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return ids.stream().filter(opSsids::containsKey).collect(toMap(id -> id, opSsids::get));
+        });
+        when(mockReleaseRepo.findReleaseSlotSampleIds(any())).then(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return ids.stream().filter(releaseSsids::containsKey).collect(toMap(id -> id, releaseSsids::get));
+        });
+        // (21,31) is not a candidate, so it is not reported even though it is still linked
+        Set<SlotIdSampleId> candidates = Set.of(new SlotIdSampleId(20,30), new SlotIdSampleId(20,31),
+                new SlotIdSampleId(22,32), new SlotIdSampleId(20,33), new SlotIdSampleId(40,50));
 
-        Map<Integer, Set<SlotIdSampleId>> result = service.workExtantSlotSampleIds(works, Set.of(4,5,6));
+        Map<Integer, Set<SlotIdSampleId>> result = service.workExtantSlotSampleIds(works, Set.of(4,5,6), candidates);
 
-        verify(mockOpRepo).findOpSlotSampleIds(Set.of(1,2,3));
-        verify(mockReleaseRepo).findReleaseSlotSampleIds(Set.of(11,12));
+        verify(mockOpRepo).findOpSlotSampleIds(List.of(1,2));
+        verify(mockOpRepo).findOpSlotSampleIds(List.of(2,3));
+        verify(mockOpRepo).findOpSlotSampleIds(List.of(3));
+        verify(mockReleaseRepo).findReleaseSlotSampleIds(List.of(11,12));
 
-        assertThat(result).containsKeys(workIds[0], workIds[1], workIds[2]);
+        assertThat(result).containsOnlyKeys(workIds[0], workIds[1], workIds[2], workIds[3]);
         assertThat(result.get(workIds[0])).containsExactlyInAnyOrder(
                 new SlotIdSampleId(20,30),
-                new SlotIdSampleId(21,31),
                 new SlotIdSampleId(20,31)
         );
         assertThat(result.get(workIds[1])).containsExactlyInAnyOrder(
                 new SlotIdSampleId(20,31),
-                new SlotIdSampleId(21,31),
                 new SlotIdSampleId(22,32)
         );
         assertThat(result.get(workIds[2])).containsExactlyInAnyOrder(
                 new SlotIdSampleId(22,32),
                 new SlotIdSampleId(20,30),
-                new SlotIdSampleId(20,33),
-                new SlotIdSampleId(25,35)
+                new SlotIdSampleId(20,33)
         );
-        assertThat(result.get(workIds[3])).isNullOrEmpty();
+        assertThat(result.get(workIds[3])).isEmpty();
+    }
+
+    @Test
+    void testWorkExtantSlotSampleIds_paged() {
+        Work work = EntityFactory.makeWork("SGP1");
+        final int numOps = WorkChangeServiceImp.PAGE_SIZE + 5;
+        when(mockWorkLinkRepo.streamOperationIds(work.getId())).then(invocation -> IntStream.rangeClosed(1, numOps).boxed());
+        when(mockWorkLinkRepo.streamReleaseIds(work.getId())).then(invocation -> IntStream.empty().boxed());
+        SlotIdSampleId ssid = new SlotIdSampleId(20,30);
+        when(mockOpRepo.findOpSlotSampleIds(any())).then(invocation -> {
+            Collection<Integer> ids = invocation.getArgument(0);
+            return ids.contains(numOps) ? Map.of(numOps, Set.of(ssid)) : Map.of();
+        });
+
+        Map<Integer, Set<SlotIdSampleId>> result = service.workExtantSlotSampleIds(List.of(work), Set.of(), Set.of(ssid));
+        verify(mockOpRepo, times(2)).findOpSlotSampleIds(any());
+        verifyNoInteractions(mockReleaseRepo);
+        assertThat(result.get(work.getId())).containsExactly(ssid);
     }
 
     @Test
@@ -205,7 +240,7 @@ class TestWorkChangeService {
                 works[0].getId(), Set.of(new SlotIdSampleId(10,20), new SlotIdSampleId(11,21)),
                 works[1].getId(), Set.of(new SlotIdSampleId(12,22), new SlotIdSampleId(13,23))
         );
-        doReturn(extantWorkSsids).when(service).workExtantSlotSampleIds(any(), any());
+        doReturn(extantWorkSsids).when(service).workExtantSlotSampleIds(any(), any(), any());
         Set<SlotIdSampleId> op1ssids = Set.of(new SlotIdSampleId(10,20), new SlotIdSampleId(13,23),
                 new SlotIdSampleId(14,24), new SlotIdSampleId(15,25));
         Set<SlotIdSampleId> op2ssids = Set.of(new SlotIdSampleId(11,21), new SlotIdSampleId(12,22));
@@ -213,7 +248,9 @@ class TestWorkChangeService {
         doReturn(op2ssids).when(service).getOpSlotSampleIds(ops.get(1));
 
         Map<Integer, Set<Work.SampleSlotId>> toRemove = service.findSampleSlotIdsToRemove(ops, workIdMap, opIdWorks);
-        verify(service).workExtantSlotSampleIds(workIdMap.values(), opIdWorks.keySet());
+        Set<SlotIdSampleId> candidates = new HashSet<>(op1ssids);
+        candidates.addAll(op2ssids);
+        verify(service).workExtantSlotSampleIds(workIdMap.values(), opIdWorks.keySet(), candidates);
 
         assertThat(toRemove).containsKeys(works[0].getId(), works[1].getId());
         assertThat(toRemove.get(works[0].getId())).containsExactlyInAnyOrder(
@@ -235,23 +272,17 @@ class TestWorkChangeService {
                 works[1].getId(), Set.of(new Work.SampleSlotId(22,12), new Work.SampleSlotId(23,13))
         );
 
-        works[0].setSampleSlotIds(new HashSet<>(Set.of(new Work.SampleSlotId(20,10), new Work.SampleSlotId(22,12))));
-        works[1].setSampleSlotIds(new HashSet<>(Set.of(new Work.SampleSlotId(23,13), new Work.SampleSlotId(24,14))));
-
-        works[0].setOperationIds(new HashSet<>(Set.of(1,2,3,4)));
-        works[1].setOperationIds(new HashSet<>(Set.of(2,5)));
-
         doReturn(opIdWorks).when(service).loadOpIdWorks(ops);
         doReturn(toRemove).when(service).findSampleSlotIdsToRemove(ops, workIdMap, opIdWorks);
 
         Map<Integer, Set<Work>> removed = service.clearOutPriorWorks(ops);
-        verify(mockWorkRepo).saveAll(sameElements(workIdMap.values(), true));
-
-        assertThat(works[0].getSampleSlotIds()).containsExactlyInAnyOrder(new Work.SampleSlotId(22,12));
-        assertThat(works[1].getSampleSlotIds()).containsExactlyInAnyOrder(new Work.SampleSlotId(24,14));
-
-        assertThat(works[0].getOperationIds()).containsExactlyInAnyOrder(3,4);
-        assertThat(works[1].getOperationIds()).containsExactlyInAnyOrder(5);
+        for (Work work : works) {
+            verify(mockWorkLinkRepo).deleteSampleSlotLinks(work.getId(), toRemove.get(work.getId()));
+            verify(mockWorkLinkRepo).deleteOperationLinks(work.getId(), opIdWorks.keySet());
+            verify(mockWorkLinkRepo).refreshLinks(work);
+        }
+        verify(mockWorkProgressService).refresh(workIdMap.keySet());
+        verifyNoInteractions(mockWorkRepo);
         assertEquals(opIdWorks, removed);
     }
 
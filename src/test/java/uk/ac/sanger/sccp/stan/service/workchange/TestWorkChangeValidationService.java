@@ -7,13 +7,13 @@ import org.mockito.*;
 import uk.ac.sanger.sccp.stan.EntityFactory;
 import uk.ac.sanger.sccp.stan.model.Operation;
 import uk.ac.sanger.sccp.stan.model.Work;
-import uk.ac.sanger.sccp.stan.repo.OperationRepo;
-import uk.ac.sanger.sccp.stan.repo.WorkRepo;
+import uk.ac.sanger.sccp.stan.repo.*;
 import uk.ac.sanger.sccp.stan.request.OpWorkRequest;
 
 import java.util.*;
 import java.util.stream.IntStream;
 
+import static java.util.stream.Collectors.toSet;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertSame;
@@ -26,6 +26,8 @@ class TestWorkChangeValidationService {
     @Mock
     WorkRepo mockWorkRepo;
     @Mock
+    WorkLinkRepo mockWorkLinkRepo;
+    @Mock
     OperationRepo mockOpRepo;
     @InjectMocks
     WorkChangeValidationServiceImp service;
@@ -127,7 +129,7 @@ class TestWorkChangeValidationService {
         List<Operation> ops = List.of(makeOp(1), makeOp(2));
         when(mockOpRepo.findAllById(any())).thenReturn(ops);
         Work work = EntityFactory.makeWork("SGP1");
-        work.setOperationIds(Set.of(3,4,5));
+        mockLinkedOpIds(work, Set.of(3,4,5));
         List<String> problems = new ArrayList<>(1);
         assertThat(service.loadOps(problems, work, List.of(1,1,2,3)))
                 .containsExactly(ops.get(0), ops.get(1));
@@ -152,7 +154,7 @@ class TestWorkChangeValidationService {
     void testLoadOps_allLinked() {
         List<Integer> opIds = List.of(1,2);
         Work work = EntityFactory.makeWork("SGP1");
-        work.setOperationIds(Set.of(1,2,3));
+        mockLinkedOpIds(work, Set.of(1,2,3));
         List<String> problems = new ArrayList<>(1);
         assertThat(service.loadOps(problems, work, opIds)).isEmpty();
         assertProblem(problems, "Specified operations are already linked to work SGP1.");
@@ -164,7 +166,7 @@ class TestWorkChangeValidationService {
     void testLoadOps_valid() {
         List<Integer> opIds = List.of(1,2,3);
         Work work = EntityFactory.makeWork("SGP1");
-        work.setOperationIds(Set.of(3,4));
+        mockLinkedOpIds(work, Set.of(3,4));
         List<Operation> ops = List.of(makeOp(1), makeOp(2));
         when(mockOpRepo.findAllById(any())).thenReturn(ops.reversed());
         List<String> problems = new ArrayList<>(0);
@@ -174,6 +176,13 @@ class TestWorkChangeValidationService {
         verify(mockOpRepo).findAllById(List.of(1,2));
     }
 
+    private void mockLinkedOpIds(Work work, Set<Integer> linkedOpIds) {
+        when(mockWorkLinkRepo.findLinkedOperationIds(eq(work.getId()), any())).then(invocation -> {
+            Collection<Integer> opIds = invocation.getArgument(1);
+            return opIds.stream().filter(linkedOpIds::contains).collect(toSet());
+        });
+    }
+
     @Test
     void testDedupe() {
         List<String> problems = new ArrayList<>();
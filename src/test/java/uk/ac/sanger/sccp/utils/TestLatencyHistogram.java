@@ -0,0 +1,63 @@
+package uk.ac.sanger.sccp.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link LatencyHistogram}
+ * @author dr6
+ */
+public class TestLatencyHistogram {
+    private static final long MS = 1_000_000L;
+
+    @ParameterizedTest
+    @CsvSource({"0,0", "1000000,0", "1000001,1", "7000000,3", "30000000000,13", "30000000001,14"})
+    public void testBucketIndex(long nanos, int expected) {
+        assertEquals(expected, LatencyHistogram.bucketIndex(nanos));
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram hist = new LatencyHistogram();
+        assertEquals(0, hist.getCount());
+        assertEquals(0.0, hist.getPercentileMs(50));
+        assertEquals(0.0, hist.toMap().get("meanMs"));
+    }
+
+    @Test
+    public void testRecord() {
+        LatencyHistogram hist = new LatencyHistogram();
+        for (int i = 0; i < 90; ++i) {
+            hist.record(3 * MS);
+        }
+        for (int i = 0; i < 9; ++i) {
+            hist.record(200 * MS);
+        }
+        hist.record(60_000 * MS);
+
+        assertEquals(100, hist.getCount());
+        assertEquals(60_000 * MS, hist.getMaxNanos());
+        assertEquals((90 * 3 + 9 * 200 + 60_000) * MS, hist.getTotalNanos());
+        assertEquals(5.0, hist.getPercentileMs(50));
+        assertEquals(5.0, hist.getPercentileMs(90));
+        assertEquals(250.0, hist.getPercentileMs(95));
+        assertEquals(250.0, hist.getPercentileMs(99));
+        assertEquals(60_000.0, hist.getPercentileMs(100));
+
+        Map<String, Object> map = hist.toMap();
+        assertEquals(100L, map.get("count"));
+        assertEquals(620.7, (double) map.get("meanMs"), 0.001);
+        @SuppressWarnings("unchecked")
+        Map<String, Long> buckets = (Map<String, Long>) map.get("buckets");
+        assertEquals(90L, buckets.get("le5"));
+        assertEquals(9L, buckets.get("le250"));
+        assertEquals(1L, buckets.get("inf"));
+        assertThat(buckets.values().stream().mapToLong(Long::longValue).sum()).isEqualTo(100L);
+    }
+}
@@ -0,0 +1,79 @@
+package uk.ac.sanger.sccp.utils.tsv;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test {@link TableSpool}
+ * @author dr6
+ */
+public class TestTableSpool {
+    private static final Column ALPHA = new Column("Alpha"), BETA = new Column("Beta"), GAMMA = new Column("Gamma");
+
+    @Test
+    public void testSpoolAndRead() throws IOException {
+        String longValue = "x".repeat(70_000);
+        try (TableSpool<Map<String, String>> spool = new TableSpool<>()) {
+            spool.add(Map.of("Alpha", "Apples", "Beta", "Bananas"), List.of(ALPHA, BETA));
+            spool.add(Map.of("Beta", "Ü\t", "Gamma", longValue), List.of(ALPHA, BETA, GAMMA));
+            spool.add(Map.of("Alpha", "Not recorded"), List.of(BETA));
+            assertEquals(3, spool.getNumRows());
+
+            List<TsvColumn<TableSpool.Row>> columns = spool.columns(List.of(GAMMA, ALPHA, new Column("Delta")));
+            assertThat(columns.stream().map(Object::toString)).containsExactly("Gamma", "Alpha", "Delta");
+
+            TableSpool<Map<String, String>>.RowIterator iter = spool.rows();
+            List<List<String>> values = new ArrayList<>();
+            iter.forEachRemaining(row -> values.add(columns.stream().map(c -> c.get(row)).toList()));
+            assertEquals(List.of(
+                    Arrays.asList(null, "Apples", null),
+                    Arrays.asList(longValue, null, null),
+                    Arrays.asList(null, null, null)
+            ), values);
+            assertThrows(NoSuchElementException.class, iter::next);
+            assertThrows(IllegalStateException.class, spool::rows);
+            assertThrows(IllegalStateException.class, () -> spool.add(Map.of(), List.of(ALPHA)));
+        }
+    }
+
+    @Test
+    public void testSpoolFileIsDeleted() throws IOException {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"));
+        Set<Path> before = spoolFiles(dir);
+        TableSpool<Map<String, String>> spool = new TableSpool<>();
+        spool.add(Map.of("Alpha", "A"), List.of(ALPHA));
+        assertThat(spoolFiles(dir)).hasSize(before.size() + 1);
+        StreamingTsvFile<TableSpool.Row> file = new StreamingTsvFile<>("file.tsv", spool.columns(List.of(ALPHA)), spool.rows());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        file.writeTo(new TsvWriter(out));
+        assertEquals("Alpha\nA\n", out.toString());
+        assertEquals(before, spoolFiles(dir));
+    }
+
+    private static Set<Path> spoolFiles(Path dir) throws IOException {
+        Set<Path> paths = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "table*.spool")) {
+            stream.forEach(paths::add);
+        }
+        return paths;
+    }
+
+    private record Column(String name) implements TsvColumn<Map<String, String>> {
+        @Override
+        public String get(Map<String, String> entry) {
+            return entry.get(this.name);
+        }
+
+        @Override
+        public String toString() {
+            return this.name;
+        }
+    }
+}
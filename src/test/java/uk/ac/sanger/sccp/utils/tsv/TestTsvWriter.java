@@ -51,6 +51,19 @@ public class TestTsvWriter {
         assertEquals(expectedOutput, getOutput());
     }
 
+    @Test
+    public void testWriteRows() throws IOException {
+        List<Column> columns = List.of(new Column("Alpha"), new Column("Beta"));
+        List<Map<String, String>> rows = List.of(
+                Map.of("Alpha", "Apples", "Beta", "Bananas"),
+                Map.of("Beta", "Tab\t")
+        );
+
+        tsvWriter.write(columns, rows.iterator());
+
+        assertEquals("Alpha\tBeta\nApples\tBananas\n\t\"Tab\t\"\n", getOutput());
+    }
+
     @Test
     public void testClose() throws IOException {
         OutputStream mockOut = mock(OutputStream.class);
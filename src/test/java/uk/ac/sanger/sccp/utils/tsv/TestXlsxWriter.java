@@ -1,6 +1,7 @@
 package uk.ac.sanger.sccp.utils.tsv;
 
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -82,9 +83,39 @@ public class TestXlsxWriter {
         verify(wb).write(out);
     }
 
+    @Test
+    void testWriteRows() throws IOException {
+        List<TsvColumn<String>> columns = List.of(new SuffixColumn("Alpha"), new SuffixColumn("Beta"));
+        Iterator<String> rows = List.of("0", "1").iterator();
+        Workbook wb = mock(Workbook.class);
+        doReturn(wb).when(writer).createWorkbook();
+        Sheet sheet = mock(Sheet.class);
+        doReturn(sheet).when(wb).createSheet();
+        CellStyle style = mock(CellStyle.class);
+        doReturn(style).when(writer).createHeadingsStyle(wb);
+        doReturn(null).when(writer).createRow(any(), anyInt(), any(), any());
+
+        writer.write(columns, rows);
+
+        ArgumentCaptor<Stream<String>> headingsCaptor = streamCaptor();
+        verify(writer).createRow(same(sheet), eq(0), headingsCaptor.capture(), same(style));
+        assertThat(headingsCaptor.getValue()).containsExactly("Alpha", "Beta");
+        for (int i = 1; i <= 2; ++i) {
+            ArgumentCaptor<Stream<String>> rowCaptor = streamCaptor();
+            verify(writer).createRow(same(sheet), eq(i), rowCaptor.capture(), isNull());
+            assertThat(rowCaptor.getValue()).containsExactly("Alpha"+(i-1), "Beta"+(i-1));
+        }
+        verify(wb).write(out);
+        verify(writer).dispose(wb);
+        verify(wb).close();
+    }
+
     @Test
     void testCreateWorkbook() throws IOException {
-        assertNotNull(writer.createWorkbook());
+        try (Workbook wb = writer.createWorkbook()) {
+            assertThat(wb).isInstanceOf(SXSSFWorkbook.class);
+            writer.dispose(wb);
+        }
     }
 
     @Test
@@ -148,4 +179,16 @@ public class TestXlsxWriter {
         writer.close();
         verify(out).close();
     }
+
+    private record SuffixColumn(String name) implements TsvColumn<String> {
+        @Override
+        public String get(String entry) {
+            return name + entry;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
 }